@@ -0,0 +1,309 @@
+package com.craxiom.networksurvey.logging;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.craxiom.networksurvey.constants.MessageConstants;
+import com.craxiom.networksurvey.model.GeoPackageIndexMode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import mil.nga.geopackage.BoundingBox;
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.GeoPackageFactory;
+import mil.nga.geopackage.GeoPackageManager;
+import mil.nga.geopackage.contents.Contents;
+import mil.nga.geopackage.contents.ContentsDataType;
+import mil.nga.geopackage.db.GeoPackageDataType;
+import mil.nga.geopackage.extension.rtree.RTreeIndexExtension;
+import mil.nga.geopackage.features.columns.GeometryColumns;
+import mil.nga.geopackage.features.user.FeatureColumn;
+import mil.nga.geopackage.features.user.FeatureCursor;
+import mil.nga.geopackage.features.user.FeatureTable;
+import mil.nga.geopackage.srs.SpatialReferenceSystem;
+import mil.nga.proj.ProjectionConstants;
+import mil.nga.sf.GeometryEnvelope;
+import mil.nga.sf.GeometryType;
+
+/**
+ * Measures what each {@link GeoPackageIndexMode} costs when writing records, and how much it speeds up the area and
+ * time range queries on the finished file. The results are written to logcat so that the mode can be chosen per
+ * deployment based on the numbers from the target devices.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GeoPackageIndexBenchmarkTest
+{
+    private static final String LOG_TAG = GeoPackageIndexBenchmarkTest.class.getSimpleName();
+    private static final String TABLE_NAME = "Benchmark";
+    private static final String FILE_NAME_PREFIX = "index-benchmark-";
+    private static final int ROW_COUNT = 20_000;
+    /**
+     * Matches the maximum number of rows that the loggers write in one transaction.
+     */
+    private static final int BATCH_SIZE = 500;
+    private static final int QUERY_REPEAT_COUNT = 10;
+    private static final long START_TIME_MS = 1_700_000_000_000L;
+    private static final double MIN_LONGITUDE = -77.5;
+    private static final double MIN_LATITUDE = 38.5;
+    private static final BoundingBox QUERY_BOX = new BoundingBox(-77.1, 38.9, -77.0, 39.0);
+    private static final long QUERY_START_TIME_MS = START_TIME_MS + 5_000_000L;
+    private static final long QUERY_END_TIME_MS = QUERY_START_TIME_MS + 200_000L;
+
+    private GeoPackageManager geoPackageManager;
+
+    @Before
+    public void setUp()
+    {
+        geoPackageManager = GeoPackageFactory.getManager(InstrumentationRegistry.getInstrumentation().getTargetContext());
+        deleteBenchmarkFiles();
+    }
+
+    @After
+    public void tearDown()
+    {
+        deleteBenchmarkFiles();
+    }
+
+    @Test
+    public void benchmarkIndexModes() throws SQLException
+    {
+        final List<BenchmarkResult> results = new ArrayList<>();
+        for (GeoPackageIndexMode indexMode : GeoPackageIndexMode.values())
+        {
+            results.add(runBenchmark(indexMode));
+        }
+
+        final BenchmarkResult baseline = results.get(0);
+        for (BenchmarkResult result : results)
+        {
+            Log.i(LOG_TAG, result.toString());
+
+            assertWithMessage("The area query finds the same rows with the %s mode", result.indexMode)
+                    .that(result.areaCount).isEqualTo(baseline.areaCount);
+            assertWithMessage("The time query finds the same rows with the %s mode", result.indexMode)
+                    .that(result.timeCount).isEqualTo(baseline.timeCount);
+        }
+
+        assertWithMessage("The query area contains some of the rows").that(baseline.areaCount).isGreaterThan(0);
+        assertWithMessage("The query time range contains some of the rows").that(baseline.timeCount).isGreaterThan(0);
+    }
+
+    private BenchmarkResult runBenchmark(GeoPackageIndexMode indexMode) throws SQLException
+    {
+        final String name = FILE_NAME_PREFIX + indexMode.name().toLowerCase(Locale.US);
+        assertWithMessage("Created the %s GeoPackage", name).that(geoPackageManager.create(name)).isTrue();
+
+        final BenchmarkResult result = new BenchmarkResult(indexMode);
+        GeoPackage geoPackage = geoPackageManager.open(name);
+        try
+        {
+            createTable(geoPackage);
+            if (indexMode == GeoPackageIndexMode.INCREMENTAL) GeoPackageIndexer.createEmptyIndexes(geoPackage);
+
+            final GeoPackageIndexer indexer = GeoPackageIndexer.create(geoPackage, indexMode);
+            final BenchmarkRowEncoder encoder = new BenchmarkRowEncoder(geoPackage);
+            final Random random = new Random(42);
+
+            final long writeStartNs = System.nanoTime();
+            for (int row = 0; row < ROW_COUNT; row += BATCH_SIZE)
+            {
+                geoPackage.beginTransaction();
+                try
+                {
+                    for (int i = row; i < row + BATCH_SIZE; i++)
+                    {
+                        encoder.insert(new double[]{MIN_LONGITUDE + random.nextDouble(), MIN_LATITUDE + random.nextDouble(), START_TIME_MS + i * 1_000L});
+                    }
+                } finally
+                {
+                    geoPackage.endTransaction(true);
+                }
+
+                if (indexer != null) indexer.indexNewRows();
+            }
+            result.writeMs = (System.nanoTime() - writeStartNs) / 1_000_000.0;
+            encoder.close();
+
+            final long completeStartNs = System.nanoTime();
+            if (indexer != null) indexer.completeIndexes();
+            result.completeMs = (System.nanoTime() - completeStartNs) / 1_000_000.0;
+        } finally
+        {
+            geoPackage.close();
+        }
+
+        // Query the file the way a downstream tool would after opening it
+        geoPackage = geoPackageManager.open(name);
+        try
+        {
+            final boolean indexed = new RTreeIndexExtension(geoPackage).has(TABLE_NAME);
+            assertWithMessage("The %s file has the RTree index", indexMode)
+                    .that(indexed).isEqualTo(indexMode != GeoPackageIndexMode.NONE);
+
+            final long areaStartNs = System.nanoTime();
+            for (int i = 0; i < QUERY_REPEAT_COUNT; i++)
+            {
+                result.areaCount = indexed ? countInAreaWithIndex(geoPackage) : countInAreaWithScan(geoPackage);
+            }
+            result.areaQueryMs = (System.nanoTime() - areaStartNs) / 1_000_000.0 / QUERY_REPEAT_COUNT;
+
+            final long timeStartNs = System.nanoTime();
+            for (int i = 0; i < QUERY_REPEAT_COUNT; i++)
+            {
+                result.timeCount = countInTimeRange(geoPackage);
+            }
+            result.timeQueryMs = (System.nanoTime() - timeStartNs) / 1_000_000.0 / QUERY_REPEAT_COUNT;
+        } finally
+        {
+            geoPackage.close();
+        }
+
+        result.fileSizeBytes = geoPackageManager.getFile(name).length();
+
+        return result;
+    }
+
+    private static int countInAreaWithIndex(GeoPackage geoPackage)
+    {
+        return new RTreeIndexExtension(geoPackage).getTableDao(TABLE_NAME).count(QUERY_BOX);
+    }
+
+    /**
+     * Reads every row and checks its geometry, which is what has to happen without a spatial index.
+     */
+    private static int countInAreaWithScan(GeoPackage geoPackage)
+    {
+        int count = 0;
+        try (FeatureCursor cursor = geoPackage.getFeatureDao(TABLE_NAME).queryForAll())
+        {
+            while (cursor.moveToNext())
+            {
+                final GeometryEnvelope envelope = cursor.getRow().getGeometryEnvelope();
+                if (envelope != null
+                        && envelope.getMinX() <= QUERY_BOX.getMaxLongitude() && envelope.getMaxX() >= QUERY_BOX.getMinLongitude()
+                        && envelope.getMinY() <= QUERY_BOX.getMaxLatitude() && envelope.getMaxY() >= QUERY_BOX.getMinLatitude())
+                {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int countInTimeRange(GeoPackage geoPackage)
+    {
+        try (Cursor cursor = geoPackage.rawQuery("SELECT COUNT(*) FROM \"" + TABLE_NAME + "\" WHERE \""
+                        + MessageConstants.TIME_COLUMN + "\" BETWEEN ? AND ?",
+                new String[]{String.valueOf(QUERY_START_TIME_MS), String.valueOf(QUERY_END_TIME_MS)}))
+        {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        }
+    }
+
+    /**
+     * Creates a table with the same standard columns as the survey tables.
+     */
+    private static void createTable(GeoPackage geoPackage) throws SQLException
+    {
+        final SpatialReferenceSystem srs = geoPackage.getSpatialReferenceSystemDao()
+                .getOrCreateCode(ProjectionConstants.AUTHORITY_EPSG, ProjectionConstants.EPSG_WORLD_GEODETIC_SYSTEM);
+        geoPackage.createGeometryColumnsTable();
+
+        final List<FeatureColumn> tableColumns = new ArrayList<>();
+        tableColumns.add(FeatureColumn.createPrimaryKeyColumn(0, MessageConstants.ID_COLUMN));
+        tableColumns.add(FeatureColumn.createGeometryColumn(1, MessageConstants.GEOMETRY_COLUMN, GeometryType.POINT, false, null));
+        tableColumns.add(FeatureColumn.createColumn(2, MessageConstants.TIME_COLUMN, GeoPackageDataType.INT, false, null));
+        geoPackage.createFeatureTable(new FeatureTable(TABLE_NAME, tableColumns));
+
+        final Contents contents = new Contents();
+        contents.setTableName(TABLE_NAME);
+        contents.setDataType(ContentsDataType.FEATURES);
+        contents.setIdentifier(TABLE_NAME);
+        contents.setSrs(srs);
+        geoPackage.getContentsDao().create(contents);
+
+        final GeometryColumns geometryColumns = new GeometryColumns();
+        geometryColumns.setContents(contents);
+        geometryColumns.setColumnName(MessageConstants.GEOMETRY_COLUMN);
+        geometryColumns.setGeometryType(GeometryType.POINT);
+        geometryColumns.setSrs(srs);
+        geometryColumns.setZ((byte) 0);
+        geometryColumns.setM((byte) 0);
+        geoPackage.getGeometryColumnsDao().create(geometryColumns);
+    }
+
+    private void deleteBenchmarkFiles()
+    {
+        for (GeoPackageIndexMode indexMode : GeoPackageIndexMode.values())
+        {
+            geoPackageManager.delete(FILE_NAME_PREFIX + indexMode.name().toLowerCase(Locale.US));
+        }
+    }
+
+    /**
+     * Writes the benchmark rows the same way that the loggers write the survey records. Each row is the longitude,
+     * latitude, and time.
+     */
+    private static final class BenchmarkRowEncoder extends GeoPackageRowEncoder<double[]>
+    {
+        private final int geometryIndex;
+        private final int timeIndex;
+
+        BenchmarkRowEncoder(GeoPackage geoPackage)
+        {
+            super(geoPackage, TABLE_NAME);
+
+            geometryIndex = bindIndex(MessageConstants.GEOMETRY_COLUMN);
+            timeIndex = bindIndex(MessageConstants.TIME_COLUMN);
+        }
+
+        @Override
+        void bind(double[] data)
+        {
+            bindPoint(geometryIndex, data[0], data[1], 0);
+            bindLong(timeIndex, (long) data[2]);
+        }
+    }
+
+    private static final class BenchmarkResult
+    {
+        private final GeoPackageIndexMode indexMode;
+        private double writeMs;
+        private double completeMs;
+        private double areaQueryMs;
+        private double timeQueryMs;
+        private int areaCount;
+        private int timeCount;
+        private long fileSizeBytes;
+
+        private BenchmarkResult(GeoPackageIndexMode indexMode)
+        {
+            this.indexMode = indexMode;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format(Locale.US,
+                    "%s: wrote %d rows in %.1f ms (%.1f µs per row), completed the indexes in %.1f ms, "
+                            + "area query %.2f ms (%d rows), time query %.2f ms (%d rows), file size %d bytes",
+                    indexMode, ROW_COUNT, writeMs, writeMs * 1_000 / ROW_COUNT, completeMs,
+                    areaQueryMs, areaCount, timeQueryMs, timeCount, fileSizeBytes);
+        }
+    }
+}
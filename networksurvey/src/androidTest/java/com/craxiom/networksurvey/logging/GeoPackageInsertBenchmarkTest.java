@@ -0,0 +1,327 @@
+package com.craxiom.networksurvey.logging;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.craxiom.networksurvey.constants.MessageConstants;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.GeoPackageFactory;
+import mil.nga.geopackage.GeoPackageManager;
+import mil.nga.geopackage.contents.Contents;
+import mil.nga.geopackage.contents.ContentsDataType;
+import mil.nga.geopackage.db.GeoPackageDataType;
+import mil.nga.geopackage.features.columns.GeometryColumns;
+import mil.nga.geopackage.features.user.FeatureColumn;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.features.user.FeatureTable;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.srs.SpatialReferenceSystem;
+import mil.nga.proj.ProjectionConstants;
+import mil.nga.sf.GeometryType;
+import mil.nga.sf.Point;
+
+/**
+ * Compares writing survey rows through a {@link FeatureRow} with writing them through the prepared statement of a
+ * {@link GeoPackageRowEncoder}. The results are written to logcat so that the numbers from the target devices can be
+ * compared.
+ * <p>
+ * This is an instrumented test because both paths write through the Android SQLite bindings, which the JVM unit tests
+ * do not have. Whether the encoders write empty strings or NULLs for the text columns the same way the
+ * {@link FeatureRow} path did is checked in {@code GeoPackageRowEncoderTest} instead.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GeoPackageInsertBenchmarkTest
+{
+    private static final String LOG_TAG = GeoPackageInsertBenchmarkTest.class.getSimpleName();
+    private static final String TABLE_NAME = "Benchmark";
+    private static final String FEATURE_ROW_FILE_NAME = "insert-benchmark-feature-row";
+    private static final String ENCODER_FILE_NAME = "insert-benchmark-encoder";
+    private static final int ROW_COUNT = 20_000;
+    /**
+     * Matches the maximum number of rows that the loggers write in one transaction.
+     */
+    private static final int BATCH_SIZE = 500;
+    private static final long START_TIME_MS = 1_700_000_000_000L;
+
+    private static final String DEVICE_SERIAL_NUMBER_COLUMN = "DeviceSerialNumber";
+    private static final String SPEED_COLUMN = "Speed";
+    private static final String EARFCN_COLUMN = "EARFCN";
+    private static final String RSRP_COLUMN = "RSRP";
+    private static final String PROVIDER_COLUMN = "Provider";
+
+    private GeoPackageManager geoPackageManager;
+
+    @Before
+    public void setUp()
+    {
+        geoPackageManager = GeoPackageFactory.getManager(InstrumentationRegistry.getInstrumentation().getTargetContext());
+        deleteBenchmarkFiles();
+    }
+
+    @After
+    public void tearDown()
+    {
+        deleteBenchmarkFiles();
+    }
+
+    @Test
+    public void benchmarkInsertPaths() throws SQLException
+    {
+        final List<BenchmarkRecord> records = createRecords();
+
+        final double featureRowMs = writeRecords(FEATURE_ROW_FILE_NAME, records, false);
+        final double encoderMs = writeRecords(ENCODER_FILE_NAME, records, true);
+
+        Log.i(LOG_TAG, String.format(Locale.US,
+                "Wrote %d rows: FeatureRow %.1f ms (%.1f µs per row), prepared statement %.1f ms (%.1f µs per row)",
+                ROW_COUNT, featureRowMs, featureRowMs * 1_000 / ROW_COUNT, encoderMs, encoderMs * 1_000 / ROW_COUNT));
+
+        for (String name : new String[]{FEATURE_ROW_FILE_NAME, ENCODER_FILE_NAME})
+        {
+            final GeoPackage geoPackage = geoPackageManager.open(name);
+            try
+            {
+                assertWithMessage("The row count in %s", name)
+                        .that(count(geoPackage)).isEqualTo(ROW_COUNT);
+            } finally
+            {
+                geoPackage.close();
+            }
+        }
+    }
+
+    private static List<BenchmarkRecord> createRecords()
+    {
+        final Random random = new Random(42);
+        final List<BenchmarkRecord> records = new ArrayList<>(ROW_COUNT);
+        for (int i = 0; i < ROW_COUNT; i++)
+        {
+            final BenchmarkRecord record = new BenchmarkRecord();
+            record.longitude = -77.5 + random.nextDouble();
+            record.latitude = 38.5 + random.nextDouble();
+            record.altitude = random.nextInt(100);
+            record.timeMs = START_TIME_MS + i * 1_000L;
+            record.deviceSerialNumber = "benchmark-device";
+            record.missionId = "";
+            record.recordNumber = i;
+            record.speed = random.nextFloat() * 30;
+            record.accuracy = random.nextInt(20);
+            record.earfcn = 5_230 + random.nextInt(10);
+            record.rsrp = -140 + random.nextFloat() * 96;
+            record.provider = i % 2 == 0 ? "Benchmark Wireless" : "";
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * Writes the records to a new file in batches, the same way the loggers commit each scan group.
+     *
+     * @return The time it took to write the records, in milliseconds.
+     */
+    private double writeRecords(String name, List<BenchmarkRecord> records, boolean useEncoder) throws SQLException
+    {
+        assertWithMessage("Created the %s GeoPackage", name).that(geoPackageManager.create(name)).isTrue();
+
+        final GeoPackage geoPackage = geoPackageManager.open(name);
+        try
+        {
+            createTable(geoPackage);
+
+            final FeatureDao featureDao = geoPackage.getFeatureDao(TABLE_NAME);
+            final BenchmarkRowEncoder encoder = useEncoder ? new BenchmarkRowEncoder(geoPackage) : null;
+
+            final long startNs = System.nanoTime();
+            for (int row = 0; row < records.size(); row += BATCH_SIZE)
+            {
+                geoPackage.beginTransaction();
+                try
+                {
+                    for (int i = row; i < Math.min(row + BATCH_SIZE, records.size()); i++)
+                    {
+                        if (encoder != null)
+                        {
+                            encoder.insert(records.get(i));
+                        } else
+                        {
+                            insertFeatureRow(featureDao, records.get(i));
+                        }
+                    }
+                } finally
+                {
+                    geoPackage.endTransaction(true);
+                }
+            }
+            final double elapsedMs = (System.nanoTime() - startNs) / 1_000_000.0;
+
+            if (encoder != null) encoder.close();
+            return elapsedMs;
+        } finally
+        {
+            geoPackage.close();
+        }
+    }
+
+    /**
+     * Writes the record the way the loggers did before the row encoders were added.
+     */
+    private static void insertFeatureRow(FeatureDao featureDao, BenchmarkRecord record)
+    {
+        final FeatureRow row = featureDao.newRow();
+
+        final GeoPackageGeometryData geomData = new GeoPackageGeometryData(SurveyRecordLogger.WGS84_SRS);
+        geomData.setGeometry(new Point(record.longitude, record.latitude, record.altitude));
+        row.setGeometry(geomData);
+
+        row.setValue(DEVICE_SERIAL_NUMBER_COLUMN, record.deviceSerialNumber);
+        row.setValue(MessageConstants.TIME_COLUMN, record.timeMs);
+        row.setValue(MessageConstants.MISSION_ID_COLUMN, record.missionId);
+        row.setValue(MessageConstants.RECORD_NUMBER_COLUMN, record.recordNumber);
+        row.setValue(SPEED_COLUMN, record.speed);
+        row.setValue(MessageConstants.ACCURACY, record.accuracy);
+        row.setValue(EARFCN_COLUMN, record.earfcn);
+        row.setValue(RSRP_COLUMN, record.rsrp);
+        if (!record.provider.isEmpty()) row.setValue(PROVIDER_COLUMN, record.provider);
+
+        featureDao.insert(row);
+    }
+
+    private static int count(GeoPackage geoPackage)
+    {
+        try (Cursor cursor = geoPackage.rawQuery("SELECT COUNT(*) FROM \"" + TABLE_NAME + "\"", null))
+        {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        }
+    }
+
+    /**
+     * Creates a table with the standard columns of the survey tables plus a few cellular columns.
+     */
+    private static void createTable(GeoPackage geoPackage) throws SQLException
+    {
+        final SpatialReferenceSystem srs = geoPackage.getSpatialReferenceSystemDao()
+                .getOrCreateCode(ProjectionConstants.AUTHORITY_EPSG, ProjectionConstants.EPSG_WORLD_GEODETIC_SYSTEM);
+        geoPackage.createGeometryColumnsTable();
+
+        int columnNumber = 0;
+        final List<FeatureColumn> tableColumns = new ArrayList<>();
+        tableColumns.add(FeatureColumn.createPrimaryKeyColumn(columnNumber++, MessageConstants.ID_COLUMN));
+        tableColumns.add(FeatureColumn.createGeometryColumn(columnNumber++, MessageConstants.GEOMETRY_COLUMN, GeometryType.POINT, false, null));
+        tableColumns.add(FeatureColumn.createColumn(columnNumber++, DEVICE_SERIAL_NUMBER_COLUMN, GeoPackageDataType.TEXT, false, null));
+        tableColumns.add(FeatureColumn.createColumn(columnNumber++, MessageConstants.TIME_COLUMN, GeoPackageDataType.INT, false, null));
+        tableColumns.add(FeatureColumn.createColumn(columnNumber++, MessageConstants.MISSION_ID_COLUMN, GeoPackageDataType.TEXT, false, null));
+        tableColumns.add(FeatureColumn.createColumn(columnNumber++, MessageConstants.RECORD_NUMBER_COLUMN, GeoPackageDataType.MEDIUMINT, false, null));
+        tableColumns.add(FeatureColumn.createColumn(columnNumber++, SPEED_COLUMN, GeoPackageDataType.FLOAT, false, null));
+        tableColumns.add(FeatureColumn.createColumn(columnNumber++, MessageConstants.ACCURACY, GeoPackageDataType.MEDIUMINT, false, null));
+        tableColumns.add(FeatureColumn.createColumn(columnNumber++, EARFCN_COLUMN, GeoPackageDataType.MEDIUMINT, false, null));
+        tableColumns.add(FeatureColumn.createColumn(columnNumber++, RSRP_COLUMN, GeoPackageDataType.FLOAT, false, null));
+        tableColumns.add(FeatureColumn.createColumn(columnNumber, PROVIDER_COLUMN, GeoPackageDataType.TEXT, false, null));
+        geoPackage.createFeatureTable(new FeatureTable(TABLE_NAME, tableColumns));
+
+        final Contents contents = new Contents();
+        contents.setTableName(TABLE_NAME);
+        contents.setDataType(ContentsDataType.FEATURES);
+        contents.setIdentifier(TABLE_NAME);
+        contents.setSrs(srs);
+        geoPackage.getContentsDao().create(contents);
+
+        final GeometryColumns geometryColumns = new GeometryColumns();
+        geometryColumns.setContents(contents);
+        geometryColumns.setColumnName(MessageConstants.GEOMETRY_COLUMN);
+        geometryColumns.setGeometryType(GeometryType.POINT);
+        geometryColumns.setSrs(srs);
+        geometryColumns.setZ((byte) 0);
+        geometryColumns.setM((byte) 0);
+        geoPackage.getGeometryColumnsDao().create(geometryColumns);
+    }
+
+    private void deleteBenchmarkFiles()
+    {
+        geoPackageManager.delete(FEATURE_ROW_FILE_NAME);
+        geoPackageManager.delete(ENCODER_FILE_NAME);
+    }
+
+    /**
+     * Writes the benchmark rows the same way that the loggers write the survey records.
+     */
+    private static final class BenchmarkRowEncoder extends GeoPackageRowEncoder<BenchmarkRecord>
+    {
+        private final int geometryIndex;
+        private final int deviceSerialNumberIndex;
+        private final int timeIndex;
+        private final int missionIdIndex;
+        private final int recordNumberIndex;
+        private final int speedIndex;
+        private final int accuracyIndex;
+        private final int earfcnIndex;
+        private final int rsrpIndex;
+        private final int providerIndex;
+
+        BenchmarkRowEncoder(GeoPackage geoPackage)
+        {
+            super(geoPackage, TABLE_NAME);
+
+            geometryIndex = bindIndex(MessageConstants.GEOMETRY_COLUMN);
+            deviceSerialNumberIndex = bindIndex(DEVICE_SERIAL_NUMBER_COLUMN);
+            timeIndex = bindIndex(MessageConstants.TIME_COLUMN);
+            missionIdIndex = bindIndex(MessageConstants.MISSION_ID_COLUMN);
+            recordNumberIndex = bindIndex(MessageConstants.RECORD_NUMBER_COLUMN);
+            speedIndex = bindIndex(SPEED_COLUMN);
+            accuracyIndex = bindIndex(MessageConstants.ACCURACY);
+            earfcnIndex = bindIndex(EARFCN_COLUMN);
+            rsrpIndex = bindIndex(RSRP_COLUMN);
+            providerIndex = bindIndex(PROVIDER_COLUMN);
+        }
+
+        @Override
+        void bind(BenchmarkRecord record)
+        {
+            bindPoint(geometryIndex, record.longitude, record.latitude, record.altitude);
+
+            bindText(deviceSerialNumberIndex, record.deviceSerialNumber);
+            bindLong(timeIndex, record.timeMs);
+            bindText(missionIdIndex, record.missionId);
+            bindLong(recordNumberIndex, record.recordNumber);
+            bindDouble(speedIndex, record.speed);
+            bindLong(accuracyIndex, record.accuracy);
+            bindLong(earfcnIndex, record.earfcn);
+            bindDouble(rsrpIndex, record.rsrp);
+            bindOptionalText(providerIndex, record.provider);
+        }
+    }
+
+    private static final class BenchmarkRecord
+    {
+        private double longitude;
+        private double latitude;
+        private double altitude;
+        private long timeMs;
+        private String deviceSerialNumber;
+        private String missionId;
+        private int recordNumber;
+        private float speed;
+        private int accuracy;
+        private int earfcn;
+        private float rsrp;
+        private String provider;
+    }
+}
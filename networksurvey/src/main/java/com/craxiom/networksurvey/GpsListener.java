@@ -4,11 +4,13 @@ import android.location.Location;
 import android.location.LocationListener;
 import android.location.LocationManager;
 import android.os.Bundle;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
 
 import timber.log.Timber;
 
@@ -24,7 +26,9 @@ public class GpsListener implements LocationListener
 {
     private final Set<LocationListener> listeners = new CopyOnWriteArraySet<>();
 
-    private Location latestLocation;
+    private final LocationHistory<Location> locationHistory = new LocationHistory<>();
+
+    private volatile Location latestLocation;
     private Runnable gnssTimeoutCallback;
 
     /**
@@ -139,6 +143,61 @@ public class GpsListener implements LocationListener
         return latestLocation;
     }
 
+    /**
+     * Returns the best guess of where we are right now. When moving, the latest location is projected forward using
+     * its speed and bearing for the time that has passed since the fix, with the accuracy reduced to account for the
+     * guess. This lets the records that are generated between location fixes get a position close to where they were
+     * actually made without requesting location updates more often.
+     *
+     * @return The estimated location, or the latest location if it can't be projected. Null if there is no location.
+     * @since 1.31.0
+     */
+    public Location getEstimatedLocation()
+    {
+        return getLocationAt(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Returns the best guess of where we were at the provided time. If the time is between two of the recent location
+     * fixes then the location is interpolated between them, and if it is after the latest fix then it is projected
+     * forward as in {@link #getEstimatedLocation()}.
+     *
+     * @param elapsedRealtimeMs The time using the {@link SystemClock#elapsedRealtime()} clock.
+     * @return The location at the time, or null if there is no location.
+     * @since 1.31.0
+     */
+    public Location getLocationAt(long elapsedRealtimeMs)
+    {
+        final Location location = latestLocation;
+        if (location == null) return null;
+
+        final LocationHistory.Position<Location> position = locationHistory.getPositionAt(elapsedRealtimeMs);
+        if (position == null) return location;
+        if (position.source == LocationHistory.Source.NEAREST) return position.nearestFix.source;
+
+        final Location nearestLocation = position.nearestFix.source;
+        final long offsetMs = elapsedRealtimeMs - position.nearestFix.elapsedMs;
+
+        final Location estimate = new Location(nearestLocation);
+        estimate.setLatitude(position.latitude);
+        estimate.setLongitude(position.longitude);
+        if (nearestLocation.hasAltitude()) estimate.setAltitude(position.altitude);
+        if (nearestLocation.hasAccuracy()) estimate.setAccuracy(position.accuracy);
+        estimate.setTime(nearestLocation.getTime() + offsetMs);
+        estimate.setElapsedRealtimeNanos(TimeUnit.MILLISECONDS.toNanos(elapsedRealtimeMs));
+        return estimate;
+    }
+
+    /**
+     * @return The time of the latest location fix using the {@link SystemClock#elapsedRealtime()} clock, or
+     * {@link Long#MIN_VALUE} if there has not been a fix.
+     * @since 1.31.0
+     */
+    public long getLatestFixElapsedRealtimeMs()
+    {
+        return locationHistory.getLatestFixElapsedMs();
+    }
+
     /**
      * Updates the cached location with the newly provided location.
      *
@@ -146,6 +205,17 @@ public class GpsListener implements LocationListener
      */
     private void updateLocation(Location newLocation)
     {
+        if (newLocation == null)
+        {
+            // Don't interpolate across the time the location was not available
+            locationHistory.clear();
+        } else
+        {
+            locationHistory.add(new LocationHistory.Fix<>(TimeUnit.NANOSECONDS.toMillis(newLocation.getElapsedRealtimeNanos()),
+                    newLocation.getLatitude(), newLocation.getLongitude(), newLocation.getAltitude(),
+                    newLocation.getAccuracy(), newLocation.hasSpeed() ? newLocation.getSpeed() : Float.NaN,
+                    newLocation.hasBearing() ? newLocation.getBearing() : Float.NaN, newLocation));
+        }
         latestLocation = newLocation;
 
         if (newLocation != null)
@@ -0,0 +1,264 @@
+package com.craxiom.networksurvey;
+
+/**
+ * A short history of the most recent location fixes, used to work out where we were at any point in time between (or
+ * shortly after) those fixes.
+ * <p>
+ * Records are often made several seconds after the last fix (and Wi-Fi and Bluetooth scan results are often several
+ * seconds old when they are delivered), so stamping them with the latest fix can put them tens of meters from where
+ * they were actually made when driving. With the history, a record can instead be given the position interpolated
+ * between the fixes before and after its own timestamp.
+ * <p>
+ * This class does not depend on the Android location classes so that it can be unit tested; the source of each fix is
+ * carried along as an opaque value.
+ *
+ * @param <T> The type of the object each fix came from.
+ * @since 1.31.0
+ */
+final class LocationHistory<T>
+{
+    /**
+     * At the shortest location interval (4 seconds) this covers a bit over 4 minutes.
+     */
+    static final int CAPACITY = 64;
+    /**
+     * Fixes further apart than this are not interpolated between, since we have no idea what happened in the gap.
+     */
+    static final long MAX_INTERPOLATION_GAP_MS = 120_000;
+    /**
+     * The position is not projected past the latest fix any further than this, since the speed and bearing of the
+     * fix are less likely to still be right the longer it has been.
+     */
+    static final long MAX_PROJECTION_MS = 15_000;
+    /**
+     * Below this speed the reported bearing is mostly noise, so the position is not projected.
+     */
+    static final float MIN_PROJECTION_SPEED_MPS = 1f;
+    /**
+     * How much the accuracy of a projected position is reduced by for each meter it was projected.
+     */
+    static final float PROJECTION_ACCURACY_FACTOR = 0.1f;
+
+    private static final double EARTH_RADIUS_METERS = 6_371_000;
+
+    /**
+     * How a position was worked out from the fixes.
+     */
+    enum Source
+    {
+        /**
+         * The time matched a fix, or was too far from the fixes to do anything better than use the nearest one.
+         */
+        NEAREST,
+        INTERPOLATED,
+        PROJECTED
+    }
+
+    /**
+     * A single location fix. The speed and bearing are {@link Float#NaN} if they are not known.
+     */
+    static final class Fix<T>
+    {
+        final long elapsedMs;
+        final double latitude;
+        final double longitude;
+        final double altitude;
+        final float accuracy;
+        final float speedMps;
+        final float bearingDegrees;
+        final T source;
+
+        Fix(long elapsedMs, double latitude, double longitude, double altitude, float accuracy, float speedMps,
+            float bearingDegrees, T source)
+        {
+            this.elapsedMs = elapsedMs;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.altitude = altitude;
+            this.accuracy = accuracy;
+            this.speedMps = speedMps;
+            this.bearingDegrees = bearingDegrees;
+            this.source = source;
+        }
+    }
+
+    /**
+     * The position at a point in time.
+     */
+    static final class Position<T>
+    {
+        final double latitude;
+        final double longitude;
+        final double altitude;
+        final float accuracy;
+        final Source source;
+        /**
+         * The fix that is closest in time to the position, which is used for the fields that are not interpolated.
+         */
+        final Fix<T> nearestFix;
+
+        Position(double latitude, double longitude, double altitude, float accuracy, Source source, Fix<T> nearestFix)
+        {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.altitude = altitude;
+            this.accuracy = accuracy;
+            this.source = source;
+            this.nearestFix = nearestFix;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private final Fix<T>[] fixes = new Fix[CAPACITY];
+    private int head;
+    private int size;
+
+    /**
+     * Adds a fix. Fixes that are older than the latest fix are ignored, which keeps the history in time order.
+     */
+    synchronized void add(Fix<T> fix)
+    {
+        if (size > 0 && fix.elapsedMs <= get(size - 1).elapsedMs) return;
+
+        fixes[(head + size) % CAPACITY] = fix;
+        if (size < CAPACITY)
+        {
+            size++;
+        } else
+        {
+            head = (head + 1) % CAPACITY;
+        }
+    }
+
+    synchronized void clear()
+    {
+        for (int i = 0; i < CAPACITY; i++)
+        {
+            fixes[i] = null;
+        }
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * @return The time of the latest fix, or {@link Long#MIN_VALUE} if there are no fixes.
+     */
+    synchronized long getLatestFixElapsedMs()
+    {
+        return size == 0 ? Long.MIN_VALUE : get(size - 1).elapsedMs;
+    }
+
+    /**
+     * Works out the position at the provided time.
+     * <ul>
+     *     <li>Between two fixes the position is interpolated between them.</li>
+     *     <li>After the latest fix the position is projected forward using the fix's speed and bearing if we are
+     *     moving, with the accuracy reduced to account for the guess.</li>
+     *     <li>Otherwise the nearest fix is used.</li>
+     * </ul>
+     *
+     * @param elapsedMs The time using the elapsed realtime clock.
+     * @return The position, or null if there are no fixes.
+     */
+    synchronized Position<T> getPositionAt(long elapsedMs)
+    {
+        if (size == 0) return null;
+
+        final Fix<T> latest = get(size - 1);
+        if (elapsedMs >= latest.elapsedMs) return project(latest, elapsedMs - latest.elapsedMs);
+
+        final Fix<T> oldest = get(0);
+        if (elapsedMs <= oldest.elapsedMs) return nearest(oldest);
+
+        // Binary search for the first fix after the time
+        int low = 1;
+        int high = size - 1;
+        while (low < high)
+        {
+            final int middle = (low + high) >>> 1;
+            if (get(middle).elapsedMs > elapsedMs)
+            {
+                high = middle;
+            } else
+            {
+                low = middle + 1;
+            }
+        }
+
+        final Fix<T> before = get(low - 1);
+        final Fix<T> after = get(low);
+        final Fix<T> closest = elapsedMs - before.elapsedMs <= after.elapsedMs - elapsedMs ? before : after;
+        if (before.elapsedMs == elapsedMs || after.elapsedMs - before.elapsedMs > MAX_INTERPOLATION_GAP_MS)
+        {
+            return nearest(closest);
+        }
+
+        final double fraction = (double) (elapsedMs - before.elapsedMs) / (after.elapsedMs - before.elapsedMs);
+
+        // Go the short way around if the fixes are on either side of the antimeridian
+        double longitudeDelta = after.longitude - before.longitude;
+        if (longitudeDelta > 180) longitudeDelta -= 360;
+        if (longitudeDelta < -180) longitudeDelta += 360;
+
+        return new Position<>(before.latitude + (after.latitude - before.latitude) * fraction,
+                normalizeLongitude(before.longitude + longitudeDelta * fraction),
+                before.altitude + (after.altitude - before.altitude) * fraction,
+                Math.max(before.accuracy, after.accuracy), Source.INTERPOLATED, closest);
+    }
+
+    /**
+     * Moves a position along a great circle.
+     *
+     * @param latitude       The starting latitude in degrees.
+     * @param longitude      The starting longitude in degrees.
+     * @param bearingDegrees The direction to move in, in degrees east of true north.
+     * @param distanceMeters How far to move.
+     * @return The new latitude and longitude in degrees.
+     */
+    static double[] projectPosition(double latitude, double longitude, double bearingDegrees, double distanceMeters)
+    {
+        final double angularDistance = distanceMeters / EARTH_RADIUS_METERS;
+        final double bearing = Math.toRadians(bearingDegrees);
+        final double lat1 = Math.toRadians(latitude);
+        final double lon1 = Math.toRadians(longitude);
+
+        final double lat2 = Math.asin(Math.sin(lat1) * Math.cos(angularDistance)
+                + Math.cos(lat1) * Math.sin(angularDistance) * Math.cos(bearing));
+        final double lon2 = lon1 + Math.atan2(Math.sin(bearing) * Math.sin(angularDistance) * Math.cos(lat1),
+                Math.cos(angularDistance) - Math.sin(lat1) * Math.sin(lat2));
+
+        return new double[]{Math.toDegrees(lat2), normalizeLongitude(Math.toDegrees(lon2))};
+    }
+
+    private Fix<T> get(int index)
+    {
+        return fixes[(head + index) % CAPACITY];
+    }
+
+    private Position<T> project(Fix<T> fix, long ageMs)
+    {
+        if (ageMs <= 0 || ageMs > MAX_PROJECTION_MS || Float.isNaN(fix.speedMps) || Float.isNaN(fix.bearingDegrees)
+                || fix.speedMps < MIN_PROJECTION_SPEED_MPS)
+        {
+            return nearest(fix);
+        }
+
+        final double distanceMeters = fix.speedMps * ageMs / 1_000d;
+        final double[] position = projectPosition(fix.latitude, fix.longitude, fix.bearingDegrees, distanceMeters);
+        return new Position<>(position[0], position[1], fix.altitude,
+                (float) (fix.accuracy + distanceMeters * PROJECTION_ACCURACY_FACTOR), Source.PROJECTED, fix);
+    }
+
+    private static <T> Position<T> nearest(Fix<T> fix)
+    {
+        return new Position<>(fix.latitude, fix.longitude, fix.altitude, fix.accuracy, Source.NEAREST, fix);
+    }
+
+    /**
+     * @return The longitude in the range -180 to 180.
+     */
+    private static double normalizeLongitude(double longitude)
+    {
+        return (longitude + 540) % 360 - 180;
+    }
+}
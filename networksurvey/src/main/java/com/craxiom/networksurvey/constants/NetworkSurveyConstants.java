@@ -22,6 +22,8 @@ public class NetworkSurveyConstants
     public static final boolean DEFAULT_MQTT_BLUETOOTH_STREAM_SETTING = false;
     public static final boolean DEFAULT_MQTT_GNSS_STREAM_SETTING = false;
     public static final boolean DEFAULT_MQTT_DEVICE_STATUS_STREAM_SETTING = true;
+    public static final int DEFAULT_MQTT_OUTBOX_SIZE_MB = 16;
+    public static final int DEFAULT_MQTT_OUTBOX_DRAIN_RATE = 50;
 
     public static final String NOTIFICATION_CHANNEL_ID = "network_survey_notification";
     public static final int GRPC_CONNECTION_NOTIFICATION_ID = 3;
@@ -29,6 +31,7 @@ public class NetworkSurveyConstants
 
     public static final String LOG_DIRECTORY_NAME = "NetworkSurveyData";
     public static final String CSV_LOG_DIRECTORY_NAME = "NetworkSurveyData/csv";
+    public static final String PROTOBUF_LOG_DIRECTORY_NAME = "NetworkSurveyData/protobuf";
 
     public static final String GSM_FILE_NAME_PREFIX = "craxiom-gsm-";
     public static final String CDMA_FILE_NAME_PREFIX = "craxiom-cdma-";
@@ -94,10 +97,19 @@ public class NetworkSurveyConstants
     public static final int DEFAULT_CELLULAR_SCAN_INTERVAL_SECONDS = 5;
     public static final int DEFAULT_WIFI_SCAN_INTERVAL_SECONDS = 8;
     public static final int DEFAULT_BLUETOOTH_SCAN_INTERVAL_SECONDS = 30;
+    public static final int DEFAULT_BLUETOOTH_COALESCE_WINDOW_SECONDS = 0;
+    public static final int DEFAULT_BLUETOOTH_COALESCE_RSSI_MODE = 0;
     public static final int DEFAULT_GNSS_SCAN_INTERVAL_SECONDS = 20;
     public static final int DEFAULT_DEVICE_STATUS_SCAN_INTERVAL_SECONDS = 120;
+    public static final int DEFAULT_LOCATION_ALIGNMENT_MAX_DELAY_SECONDS = 0;
+    public static final boolean DEFAULT_LOCATION_PROJECTION_ENABLED = false;
 
     public static final String DEFAULT_ROLLOVER_SIZE_MB = "5";
+    public static final String DEFAULT_GEOPACKAGE_INDEX_MODE = "0";
+    public static final int DEFAULT_GEOPACKAGE_BATCH_MAX_ROWS = 500;
+    public static final int DEFAULT_GEOPACKAGE_BATCH_MAX_AGE_MS = 2_000;
+    public static final int DEFAULT_CSV_MAX_FLUSH_DELAY_MS = 1_000;
+    public static final int DEFAULT_CSV_WRITE_QUEUE_OVERFLOW_POLICY = 0;
 
     public static final int LOCATION_PROVIDER_FUSED = 0;
     public static final int LOCATION_PROVIDER_GNSS = 1;
@@ -116,10 +128,19 @@ public class NetworkSurveyConstants
     public static final String PROPERTY_CELLULAR_SCAN_INTERVAL_SECONDS = "cellular_scan_interval_seconds";
     public static final String PROPERTY_WIFI_SCAN_INTERVAL_SECONDS = "wifi_scan_interval_seconds";
     public static final String PROPERTY_BLUETOOTH_SCAN_INTERVAL_SECONDS = "bluetooth_scan_interval_seconds";
+    public static final String PROPERTY_BLUETOOTH_COALESCE_WINDOW_SECONDS = "bluetooth_coalesce_window_seconds";
+    public static final String PROPERTY_BLUETOOTH_COALESCE_RSSI_MODE = "bluetooth_coalesce_rssi_mode";
     public static final String PROPERTY_GNSS_SCAN_INTERVAL_SECONDS = "gnss_scan_interval_seconds";
     public static final String PROPERTY_DEVICE_STATUS_SCAN_INTERVAL_SECONDS = "device_status_scan_interval_seconds";
+    public static final String PROPERTY_LOCATION_ALIGNMENT_MAX_DELAY_SECONDS = "location_alignment_max_delay_seconds";
+    public static final String PROPERTY_LOCATION_PROJECTION_ENABLED = "location_projection_enabled";
     public static final String PROPERTY_LOG_ROLLOVER_SIZE_MB = "log_rollover_size_mb";
     public static final String PROPERTY_LOG_FILE_TYPE = "log_file_type";
+    public static final String PROPERTY_GEOPACKAGE_INDEX_MODE = "geopackage_index_mode";
+    public static final String PROPERTY_GEOPACKAGE_BATCH_MAX_ROWS = "geopackage_batch_max_rows";
+    public static final String PROPERTY_GEOPACKAGE_BATCH_MAX_AGE_MS = "geopackage_batch_max_age_ms";
+    public static final String PROPERTY_CSV_MAX_FLUSH_DELAY_MS = "csv_max_flush_delay_ms";
+    public static final String PROPERTY_CSV_WRITE_QUEUE_OVERFLOW_POLICY = "csv_write_queue_overflow_policy";
     public static final String PROPERTY_LOCATION_PROVIDER = "location_provider";
     public static final String PROPERTY_ALLOW_INTENT_CONTROL = "allow_intent_control";
     public static final String PROPERTY_IGNORE_WIFI_SCAN_THROTTLING_WARNING = "ignore_wifi_scan_throttling_warning";
@@ -137,6 +158,9 @@ public class NetworkSurveyConstants
     public static final String PROPERTY_MQTT_BLUETOOTH_STREAM_ENABLED = "bluetooth_stream_enabled";
     public static final String PROPERTY_MQTT_GNSS_STREAM_ENABLED = "gnss_stream_enabled";
     public static final String PROPERTY_MQTT_DEVICE_STATUS_STREAM_ENABLED = "device_status_stream_enabled";
+    public static final String PROPERTY_MQTT_BATCH_TOPIC = "mqtt_batch_topic";
+    public static final String PROPERTY_MQTT_OUTBOX_SIZE_MB = "mqtt_outbox_size_mb";
+    public static final String PROPERTY_MQTT_OUTBOX_DRAIN_RATE = "mqtt_outbox_drain_rate";
 
     public static final String PROPERTY_GRPC_CELLULAR_STREAM_ENABLED = "grpc_cellular_stream_enabled";
     public static final String PROPERTY_GRPC_PHONE_STATE_STREAM_ENABLED = "grpc_phone_state_stream_enabled";
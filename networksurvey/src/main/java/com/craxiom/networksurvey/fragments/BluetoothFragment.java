@@ -41,6 +41,7 @@ import com.craxiom.networksurvey.fragments.model.BluetoothViewModel;
 import com.craxiom.networksurvey.listeners.IBluetoothSurveyRecordListener;
 import com.craxiom.networksurvey.model.SortedSet;
 import com.craxiom.networksurvey.services.NetworkSurveyService;
+import com.craxiom.networksurvey.util.FrameTimeMonitor;
 import com.craxiom.networksurvey.util.NsUtils;
 import com.craxiom.networksurvey.util.PreferenceUtils;
 
@@ -66,6 +67,7 @@ public class BluetoothFragment extends AServiceDataFragment implements IBluetoot
 
     private Context applicationContext;
     private BluetoothRecyclerViewAdapter bluetoothRecyclerViewAdapter;
+    private final FrameTimeMonitor frameTimeMonitor = new FrameTimeMonitor("Bluetooth List");
 
     private int bluetoothScanRateMs;
 
@@ -107,8 +109,9 @@ public class BluetoothFragment extends AServiceDataFragment implements IBluetoot
         final SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(applicationContext);
         viewModel.setSortByIndex(preferences.getInt(NetworkSurveyConstants.PROPERTY_BLUETOOTH_DEVICES_SORT_ORDER, 0));
 
-        bluetoothRecyclerViewAdapter = new BluetoothRecyclerViewAdapter(bluetoothRecordSortedSet, getContext(), this);
+        bluetoothRecyclerViewAdapter = new BluetoothRecyclerViewAdapter(getContext(), this);
         binding.bluetoothDeviceList.setAdapter(bluetoothRecyclerViewAdapter);
+        submitBluetoothList();
 
         binding.bluetoothDeviceList.addItemDecoration(new DividerItemDecoration(binding.bluetoothDeviceList.getContext(), DividerItemDecoration.VERTICAL));
 
@@ -138,6 +141,8 @@ public class BluetoothFragment extends AServiceDataFragment implements IBluetoot
     {
         super.onResume();
 
+        frameTimeMonitor.start(requireActivity().getWindow());
+
         showBluetoothPermissionRationaleAndRequestPermissions();
 
         if (!hasBtScanPermission())
@@ -167,6 +172,8 @@ public class BluetoothFragment extends AServiceDataFragment implements IBluetoot
     {
         unregisterBluetoothBroadcastReceiver();
 
+        frameTimeMonitor.stop();
+
         super.onPause();
     }
 
@@ -208,22 +215,17 @@ public class BluetoothFragment extends AServiceDataFragment implements IBluetoot
         //noinspection ConstantConditions
         if (viewModel.areUpdatesPaused().getValue()) return;
 
-        uiThreadHandler.post(() -> {
-            //noinspection SynchronizeOnNonFinalField
-            synchronized (bluetoothRecordSortedSet)
-            {
-                bluetoothRecordSortedSet.add(bluetoothRecord);
+        //noinspection SynchronizeOnNonFinalField
+        synchronized (bluetoothRecordSortedSet)
+        {
+            bluetoothRecordSortedSet.add(bluetoothRecord);
 
-                checkAndRemoveStaleRecords();
+            checkAndRemoveStaleRecords();
 
-                if (bluetoothRecyclerViewAdapter != null)
-                {
-                    bluetoothRecyclerViewAdapter.notifyDataSetChanged();
-                }
+            viewModel.setDevicesInScan(bluetoothRecordSortedSet.size());
+        }
 
-                viewModel.setDevicesInScan(bluetoothRecordSortedSet.size());
-            }
-        });
+        uiThreadHandler.post(this::submitBluetoothList);
     }
 
     @Override
@@ -232,24 +234,17 @@ public class BluetoothFragment extends AServiceDataFragment implements IBluetoot
         //noinspection ConstantConditions
         if (viewModel.areUpdatesPaused().getValue()) return;
 
-        uiThreadHandler.post(() -> {
-            //noinspection SynchronizeOnNonFinalField
-            synchronized (bluetoothRecordSortedSet)
-            {
-                // We can't use the SortedList#addAll method because we have not overridden that method in our custom
-                // SortedSet implementation of SortedList.
-                bluetoothRecords.forEach(bluetoothRecordSortedSet::add);
+        //noinspection SynchronizeOnNonFinalField
+        synchronized (bluetoothRecordSortedSet)
+        {
+            bluetoothRecordSortedSet.addAll(bluetoothRecords);
 
-                checkAndRemoveStaleRecords();
+            checkAndRemoveStaleRecords();
 
-                if (bluetoothRecyclerViewAdapter != null)
-                {
-                    bluetoothRecyclerViewAdapter.notifyDataSetChanged();
-                }
+            viewModel.setDevicesInScan(bluetoothRecordSortedSet.size());
+        }
 
-                viewModel.setDevicesInScan(bluetoothRecordSortedSet.size());
-            }
-        });
+        uiThreadHandler.post(this::submitBluetoothList);
     }
 
     /**
@@ -392,10 +387,39 @@ public class BluetoothFragment extends AServiceDataFragment implements IBluetoot
         return false;
     }
 
+    /**
+     * Copies the current Bluetooth list and hands it to the adapter, which works out what changed on a background
+     * thread and then only updates those rows. This must be called on the UI thread.
+     * <p>
+     * The list is copied here rather than when it was changed so that the adapter always gets the newest list, even if
+     * the list was re-sorted in the meantime.
+     *
+     * @since 1.31.0
+     */
+    private void submitBluetoothList()
+    {
+        if (bluetoothRecyclerViewAdapter == null) return;
+
+        final List<BluetoothRecord> bluetoothRecords;
+        //noinspection SynchronizeOnNonFinalField
+        synchronized (bluetoothRecordSortedSet)
+        {
+            final int sortedListSize = bluetoothRecordSortedSet.size();
+            bluetoothRecords = new ArrayList<>(sortedListSize);
+            for (int i = 0; i < sortedListSize; ++i)
+            {
+                bluetoothRecords.add(bluetoothRecordSortedSet.get(i));
+            }
+        }
+
+        bluetoothRecyclerViewAdapter.submitList(bluetoothRecords);
+    }
+
     /**
      * Runs through the records in the current view, and removes any that have timestamps that are older than n seconds.
      * <p>
-     * This method does NOT call a notify method to trigger an update to the UI. The caller must handle that on its own.
+     * This method does NOT submit the list to the adapter to trigger an update to the UI. The caller must handle that
+     * on its own.
      */
     private void checkAndRemoveStaleRecords()
     {
@@ -455,7 +479,7 @@ public class BluetoothFragment extends AServiceDataFragment implements IBluetoot
 
     /**
      * Saves the new sort by index in the shared preferences, triggers a resort of the Bluetooth sorted list, and
-     * then notifies the recycler view that the data has changed.
+     * then submits the re-sorted list to the recycler view.
      *
      * @param preferences   The SharedPreferences to store the sort by index in.
      * @param selectedIndex The newly selected sort by index (from arrays.xml)
@@ -478,17 +502,13 @@ public class BluetoothFragment extends AServiceDataFragment implements IBluetoot
                 tempBluetoothList.add(bluetoothRecordSortedSet.get(i));
             }
             bluetoothRecordSortedSet.clear();
-            // It is ok to use addAll here because we don't need the custom add() implementation that evicts duplicates
             bluetoothRecordSortedSet.addAll(tempBluetoothList);
             tempBluetoothList.clear();
 
             bluetoothRecordSortedSet.endBatchedUpdates();
-
-            if (bluetoothRecyclerViewAdapter != null)
-            {
-                bluetoothRecyclerViewAdapter.notifyDataSetChanged();
-            }
         }
+
+        submitBluetoothList();
     }
 
     /**
@@ -8,8 +8,9 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
-import androidx.recyclerview.widget.SortedList;
 
 import com.craxiom.messaging.BluetoothRecord;
 import com.craxiom.messaging.BluetoothRecordData;
@@ -17,22 +18,27 @@ import com.craxiom.networksurvey.R;
 import com.craxiom.networksurvey.constants.BluetoothMessageConstants;
 import com.craxiom.networksurvey.util.ColorUtils;
 
+import java.util.Objects;
+
 import timber.log.Timber;
 
 /**
  * The recycler view for the list of Bluetooth devices displayed in the UI.
+ * <p>
+ * Each scan update is submitted as a new list with {@link #submitList}, and the differences from the list being shown
+ * are worked out on a background thread, so only the rows that were added, removed, moved, or that show a different
+ * value are updated.
  *
  * @since 1.0.0
  */
-public class BluetoothRecyclerViewAdapter extends RecyclerView.Adapter<BluetoothRecyclerViewAdapter.ViewHolder>
+public class BluetoothRecyclerViewAdapter extends ListAdapter<BluetoothRecord, BluetoothRecyclerViewAdapter.ViewHolder>
 {
-    private final SortedList<BluetoothRecord> bluetoothRecords;
     private final Context context;
     private final BluetoothFragment bluetoothFragment;
 
-    BluetoothRecyclerViewAdapter(SortedList<BluetoothRecord> items, Context context, BluetoothFragment bluetoothFragment)
+    BluetoothRecyclerViewAdapter(Context context, BluetoothFragment bluetoothFragment)
     {
-        bluetoothRecords = items;
+        super(new BluetoothRecordItemCallback());
         this.context = context;
         this.bluetoothFragment = bluetoothFragment;
     }
@@ -50,9 +56,8 @@ public class BluetoothRecyclerViewAdapter extends RecyclerView.Adapter<Bluetooth
     @Override
     public void onBindViewHolder(final ViewHolder holder, int position)
     {
-        final BluetoothRecord bluetoothRecord = bluetoothRecords.get(position);
+        final BluetoothRecord bluetoothRecord = getItem(position);
         final BluetoothRecordData data = bluetoothRecord.getData();
-        holder.bluetoothData = data;
         final String sourceAddress = data.getSourceAddress();
         if (!sourceAddress.isEmpty())
         {
@@ -82,12 +87,6 @@ public class BluetoothRecyclerViewAdapter extends RecyclerView.Adapter<Bluetooth
         holder.supportedTechnologies.setText(BluetoothMessageConstants.getSupportedTechString(data.getSupportedTechnologies()));
     }
 
-    @Override
-    public int getItemCount()
-    {
-        return bluetoothRecords.size();
-    }
-
     /**
      * Navigates to the Bluetooth details screen for the selected Bluetooth device.
      */
@@ -107,7 +106,6 @@ public class BluetoothRecyclerViewAdapter extends RecyclerView.Adapter<Bluetooth
         final TextView signalStrength;
         final TextView otaDeviceName;
         final TextView supportedTechnologies;
-        BluetoothRecordData bluetoothData;
 
         ViewHolder(View view)
         {
@@ -119,6 +117,12 @@ public class BluetoothRecyclerViewAdapter extends RecyclerView.Adapter<Bluetooth
             supportedTechnologies = view.findViewById(R.id.supportedTechnologies);
 
             mView.setOnClickListener(v -> {
+                final int position = getBindingAdapterPosition();
+                if (position == RecyclerView.NO_POSITION) return;
+
+                // Use the latest record rather than the one this row was bound to; the row is not rebound when only
+                // fields that aren't displayed have changed
+                final BluetoothRecordData bluetoothData = getItem(position).getData();
                 if (bluetoothData.getSourceAddress().isEmpty())
                 {
                     Timber.wtf("The source address is empty so we are unable to show the bluetooth details screen.");
@@ -129,4 +133,31 @@ public class BluetoothRecyclerViewAdapter extends RecyclerView.Adapter<Bluetooth
             });
         }
     }
+
+    /**
+     * Bluetooth records are the same device if they have the same source address, and the row only needs to be
+     * rebound if one of the displayed values changed.
+     *
+     * @since 1.31.0
+     */
+    static class BluetoothRecordItemCallback extends DiffUtil.ItemCallback<BluetoothRecord>
+    {
+        @Override
+        public boolean areItemsTheSame(@NonNull BluetoothRecord oldRecord, @NonNull BluetoothRecord newRecord)
+        {
+            return Objects.equals(oldRecord.getData().getSourceAddress(), newRecord.getData().getSourceAddress());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull BluetoothRecord oldRecord, @NonNull BluetoothRecord newRecord)
+        {
+            final BluetoothRecordData oldData = oldRecord.getData();
+            final BluetoothRecordData newData = newRecord.getData();
+
+            return oldData.hasSignalStrength() == newData.hasSignalStrength()
+                    && (int) oldData.getSignalStrength().getValue() == (int) newData.getSignalStrength().getValue()
+                    && Objects.equals(oldData.getOtaDeviceName(), newData.getOtaDeviceName())
+                    && oldData.getSupportedTechnologies() == newData.getSupportedTechnologies();
+        }
+    }
 }
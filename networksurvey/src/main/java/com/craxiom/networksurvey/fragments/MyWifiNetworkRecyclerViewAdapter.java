@@ -8,10 +8,10 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
-import androidx.recyclerview.widget.SortedList;
 
-import com.craxiom.messaging.WifiBeaconRecord;
 import com.craxiom.messaging.WifiBeaconRecordData;
 import com.craxiom.messaging.wifi.WifiBandwidth;
 import com.craxiom.networksurvey.R;
@@ -21,22 +21,26 @@ import com.craxiom.networksurvey.model.WifiRecordWrapper;
 import com.craxiom.networksurvey.util.ColorUtils;
 import com.craxiom.networksurvey.util.WifiUtils;
 
+import java.util.Objects;
+
 import timber.log.Timber;
 
 /**
  * The recycler view for the list of Wi-Fi networks displayed in the UI.
+ * <p>
+ * Each scan update is submitted as a new list with {@link #submitList}, and the differences from the list being shown
+ * are worked out on a background thread, so only the rows that changed are updated.
  *
  * @since 0.1.2
  */
-public class MyWifiNetworkRecyclerViewAdapter extends RecyclerView.Adapter<MyWifiNetworkRecyclerViewAdapter.ViewHolder>
+public class MyWifiNetworkRecyclerViewAdapter extends ListAdapter<WifiRecordWrapper, MyWifiNetworkRecyclerViewAdapter.ViewHolder>
 {
-    private final SortedList<WifiRecordWrapper> wifiRecords;
     private final Context context;
     private final WifiNetworksFragment wifiNetworksFragment;
 
-    MyWifiNetworkRecyclerViewAdapter(SortedList<WifiRecordWrapper> items, Context context, WifiNetworksFragment wifiNetworksFragment)
+    MyWifiNetworkRecyclerViewAdapter(Context context, WifiNetworksFragment wifiNetworksFragment)
     {
-        wifiRecords = items;
+        super(new WifiRecordItemCallback());
         this.context = context;
         this.wifiNetworksFragment = wifiNetworksFragment;
     }
@@ -54,11 +58,9 @@ public class MyWifiNetworkRecyclerViewAdapter extends RecyclerView.Adapter<MyWif
     @Override
     public void onBindViewHolder(final ViewHolder holder, int position)
     {
-        final WifiRecordWrapper wifiRecordWrapper = wifiRecords.get(position);
+        final WifiRecordWrapper wifiRecordWrapper = getItem(position);
 
-        final WifiBeaconRecord wifiBeaconRecord = wifiRecordWrapper.getWifiBeaconRecord();
-        holder.wifiRecord = wifiBeaconRecord;
-        final WifiBeaconRecordData data = wifiBeaconRecord.getData();
+        final WifiBeaconRecordData data = wifiRecordWrapper.getWifiBeaconRecord().getData();
         final String ssid = data.getSsid();
         if (ssid.isEmpty())
         {
@@ -120,12 +122,6 @@ public class MyWifiNetworkRecyclerViewAdapter extends RecyclerView.Adapter<MyWif
         }
     }
 
-    @Override
-    public int getItemCount()
-    {
-        return wifiRecords.size();
-    }
-
     /**
      * Navigates to the Wi-Fi details screen for the selected Wi-Fi network.
      */
@@ -151,7 +147,6 @@ public class MyWifiNetworkRecyclerViewAdapter extends RecyclerView.Adapter<MyWif
         final TextView standard;
         final TextView passpoint;
         final TextView capabilities;
-        WifiBeaconRecord wifiRecord;
 
         ViewHolder(View view)
         {
@@ -169,8 +164,11 @@ public class MyWifiNetworkRecyclerViewAdapter extends RecyclerView.Adapter<MyWif
             capabilities = view.findViewById(R.id.wifi_capabilities);
 
             mView.setOnClickListener(v -> {
+                final int position = getBindingAdapterPosition();
+                if (position == RecyclerView.NO_POSITION) return;
+
                 Float signalStrength = null;
-                WifiBeaconRecordData data = wifiRecord.getData();
+                WifiBeaconRecordData data = getItem(position).getWifiBeaconRecord().getData();
                 if (data.hasSignalStrength())
                 {
                     signalStrength = data.getSignalStrength().getValue();
@@ -197,4 +195,38 @@ public class MyWifiNetworkRecyclerViewAdapter extends RecyclerView.Adapter<MyWif
             });
         }
     }
+
+    /**
+     * Wi-Fi records are the same network if they have the same BSSID, and the row only needs to be rebound if one of
+     * the displayed values changed.
+     *
+     * @since 1.31.0
+     */
+    static class WifiRecordItemCallback extends DiffUtil.ItemCallback<WifiRecordWrapper>
+    {
+        @Override
+        public boolean areItemsTheSame(@NonNull WifiRecordWrapper oldRecord, @NonNull WifiRecordWrapper newRecord)
+        {
+            return Objects.equals(oldRecord.getWifiBeaconRecord().getData().getBssid(),
+                    newRecord.getWifiBeaconRecord().getData().getBssid());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull WifiRecordWrapper oldRecord, @NonNull WifiRecordWrapper newRecord)
+        {
+            final WifiBeaconRecordData oldData = oldRecord.getWifiBeaconRecord().getData();
+            final WifiBeaconRecordData newData = newRecord.getWifiBeaconRecord().getData();
+
+            return oldData.hasSignalStrength() == newData.hasSignalStrength()
+                    && (int) oldData.getSignalStrength().getValue() == (int) newData.getSignalStrength().getValue()
+                    && Objects.equals(oldData.getSsid(), newData.getSsid())
+                    && oldData.getEncryptionType() == newData.getEncryptionType()
+                    && Objects.equals(oldData.getFrequencyMhz(), newData.getFrequencyMhz())
+                    && Objects.equals(oldData.getChannel(), newData.getChannel())
+                    && oldData.getBandwidth() == newData.getBandwidth()
+                    && oldData.getStandard() == newData.getStandard()
+                    && Objects.equals(oldData.getPasspoint(), newData.getPasspoint())
+                    && Objects.equals(oldRecord.getCapabilitiesString(), newRecord.getCapabilitiesString());
+        }
+    }
 }
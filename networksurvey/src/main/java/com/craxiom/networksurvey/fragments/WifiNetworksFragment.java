@@ -42,6 +42,7 @@ import com.craxiom.networksurvey.model.WifiNetwork;
 import com.craxiom.networksurvey.model.WifiRecordWrapper;
 import com.craxiom.networksurvey.services.NetworkSurveyService;
 import com.craxiom.networksurvey.ui.wifi.model.WifiNetworkInfoList;
+import com.craxiom.networksurvey.util.FrameTimeMonitor;
 import com.craxiom.networksurvey.util.PreferenceUtils;
 import com.google.android.material.snackbar.Snackbar;
 
@@ -66,6 +67,7 @@ public class WifiNetworksFragment extends AServiceDataFragment implements IWifiS
 
     private Context applicationContext;
     private MyWifiNetworkRecyclerViewAdapter wifiNetworkRecyclerViewAdapter;
+    private final FrameTimeMonitor frameTimeMonitor = new FrameTimeMonitor("Wi-Fi List");
 
     private long lastScanTime = 0;
     private boolean throttlingNotificationShown = false;
@@ -108,8 +110,9 @@ public class WifiNetworksFragment extends AServiceDataFragment implements IWifiS
         final SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(applicationContext);
         viewModel.setSortByIndex(preferences.getInt(NetworkSurveyConstants.PROPERTY_WIFI_NETWORKS_SORT_ORDER, 0));
 
-        wifiNetworkRecyclerViewAdapter = new MyWifiNetworkRecyclerViewAdapter(wifiRecordSortedList, getContext(), this);
+        wifiNetworkRecyclerViewAdapter = new MyWifiNetworkRecyclerViewAdapter(getContext(), this);
         binding.wifiNetworkList.setAdapter(wifiNetworkRecyclerViewAdapter);
+        wifiNetworkRecyclerViewAdapter.submitList(copyWifiList());
 
         binding.wifiNetworkList.addItemDecoration(new DividerItemDecoration(binding.wifiNetworkList.getContext(), DividerItemDecoration.VERTICAL));
 
@@ -153,6 +156,8 @@ public class WifiNetworksFragment extends AServiceDataFragment implements IWifiS
     {
         super.onResume();
 
+        frameTimeMonitor.start(requireActivity().getWindow());
+
         registerWifiBroadcastReceiver();
 
         checkWifiEnabled();
@@ -167,6 +172,8 @@ public class WifiNetworksFragment extends AServiceDataFragment implements IWifiS
     {
         unregisterWifiBroadcastReceiver();
 
+        frameTimeMonitor.stop();
+
         super.onPause();
     }
 
@@ -209,6 +216,13 @@ public class WifiNetworksFragment extends AServiceDataFragment implements IWifiS
         //noinspection ConstantConditions
         if (viewModel.areUpdatesPaused().getValue()) return;
 
+        // Sort the new scan results on this thread so that the UI thread only has to submit them to the adapter
+        synchronized (wifiRecordSortedListLock)
+        {
+            wifiRecordSortedList.clear();
+            wifiRecordSortedList.addAll(wifiBeaconRecords);
+        }
+
         // Move this back to the UI thread since we are updating the UI
         uiThreadHandler.post(() -> {
             try
@@ -218,14 +232,9 @@ public class WifiNetworksFragment extends AServiceDataFragment implements IWifiS
                 viewModel.incrementScanNumber();
                 viewModel.setApsInLastScan(wifiBeaconRecords.size());
 
-                synchronized (wifiRecordSortedListLock)
+                if (wifiNetworkRecyclerViewAdapter != null)
                 {
-                    wifiRecordSortedList.clear();
-                    wifiRecordSortedList.addAll(wifiBeaconRecords);
-                    if (wifiNetworkRecyclerViewAdapter != null)
-                    {
-                        wifiNetworkRecyclerViewAdapter.notifyDataSetChanged();
-                    }
+                    wifiNetworkRecyclerViewAdapter.submitList(copyWifiList());
                 }
             } catch (Exception e)
             {
@@ -283,19 +292,33 @@ public class WifiNetworksFragment extends AServiceDataFragment implements IWifiS
         FragmentActivity activity = getActivity();
         if (activity == null) return;
 
-        List<WifiRecordWrapper> wifiNetworks = new ArrayList<>();
+        WifiNetworkInfoList wifiNetworkInfoList = new WifiNetworkInfoList(copyWifiList());
+
+        Navigation.findNavController(activity, getId())
+                .navigate(WifiNetworksFragmentDirections.actionWifiListFragmentToWifiSpectrumFragment(wifiNetworkInfoList));
+    }
+
+    /**
+     * Copies the current Wi-Fi list, which is what gets submitted to the adapter. The adapter works out what changed
+     * between the copies on a background thread and then only updates those rows.
+     * <p>
+     * The list is copied when it is submitted rather than when it was changed so that the adapter always gets the
+     * newest list, even if the list was re-sorted in the meantime.
+     *
+     * @since 1.31.0
+     */
+    private List<WifiRecordWrapper> copyWifiList()
+    {
         synchronized (wifiRecordSortedListLock)
         {
-            int size = wifiRecordSortedList.size();
+            final int size = wifiRecordSortedList.size();
+            final List<WifiRecordWrapper> wifiNetworks = new ArrayList<>(size);
             for (int i = 0; i < size; i++)
             {
                 wifiNetworks.add(wifiRecordSortedList.get(i));
             }
+            return wifiNetworks;
         }
-        WifiNetworkInfoList wifiNetworkInfoList = new WifiNetworkInfoList(wifiNetworks);
-
-        Navigation.findNavController(activity, getId())
-                .navigate(WifiNetworksFragmentDirections.actionWifiListFragmentToWifiSpectrumFragment(wifiNetworkInfoList));
     }
 
     /**
@@ -355,7 +378,7 @@ public class WifiNetworksFragment extends AServiceDataFragment implements IWifiS
 
     /**
      * Saves the new sort by index in the shared preferences, triggers a resort of the Wi-Fi networks sorted list, and
-     * then notifies the recycler view that the data has changed.
+     * then submits the re-sorted list to the recycler view.
      *
      * @param preferences   The SharedPreferences to store the sort by index in.
      * @param selectedIndex The newly selected sort by index (from arrays.xml).
@@ -381,11 +404,11 @@ public class WifiNetworksFragment extends AServiceDataFragment implements IWifiS
             tempWifiNetworkList.clear();
 
             wifiRecordSortedList.endBatchedUpdates();
+        }
 
-            if (wifiNetworkRecyclerViewAdapter != null)
-            {
-                wifiNetworkRecyclerViewAdapter.notifyDataSetChanged();
-            }
+        if (wifiNetworkRecyclerViewAdapter != null)
+        {
+            wifiNetworkRecyclerViewAdapter.submitList(copyWifiList());
         }
     }
 
@@ -33,7 +33,8 @@ public class BluetoothViewModel extends ViewModel
 
     public BluetoothViewModel()
     {
-        bluetoothSortedList = new SortedSet<>(BluetoothRecord.class, new RecordSortedListCallback());
+        bluetoothSortedList = new SortedSet<>(BluetoothRecord.class, new RecordSortedListCallback(),
+                record -> record.getData().getSourceAddress());
     }
 
     public SortedSet<BluetoothRecord> getBluetoothList()
@@ -10,8 +10,11 @@ import androidx.recyclerview.widget.SortedList;
 
 import com.craxiom.networksurvey.R;
 import com.craxiom.networksurvey.constants.WifiBeaconMessageConstants;
+import com.craxiom.networksurvey.model.SortedSet;
 import com.craxiom.networksurvey.model.WifiRecordWrapper;
 
+import java.util.Objects;
+
 /**
  * The view model for the wifi scan results fragment. Storing the list here allows the list to live beyond the
  * fragment lifecycle. This view model can be scoped to various levels, but at the time of this writing it is being
@@ -32,7 +35,7 @@ import com.craxiom.networksurvey.model.WifiRecordWrapper;
  */
 public class WifiViewModel extends ViewModel
 {
-    private final SortedList<WifiRecordWrapper> wifiSortedList;
+    private final SortedSet<WifiRecordWrapper> wifiSortedList;
     private final MutableLiveData<Integer> scanStatusId = new MutableLiveData<>(R.string.scan_status_scanning);
     private final MutableLiveData<Integer> apsInLastScan = new MutableLiveData<>(0);
     private final MutableLiveData<Integer> scanNumber = new MutableLiveData<>(0);
@@ -42,10 +45,11 @@ public class WifiViewModel extends ViewModel
 
     public WifiViewModel()
     {
-        wifiSortedList = new SortedList<>(WifiRecordWrapper.class, new WifiRecordSortedListCallback());
+        wifiSortedList = new SortedSet<>(WifiRecordWrapper.class, new WifiRecordSortedListCallback(),
+                record -> record.getWifiBeaconRecord().getData().getBssid());
     }
 
-    public SortedList<WifiRecordWrapper> getWifiList()
+    public SortedSet<WifiRecordWrapper> getWifiList()
     {
         return wifiSortedList;
     }
@@ -166,7 +170,8 @@ public class WifiViewModel extends ViewModel
         @Override
         public boolean areItemsTheSame(WifiRecordWrapper record1, WifiRecordWrapper record2)
         {
-            return false;
+            return Objects.equals(record1.getWifiBeaconRecord().getData().getBssid(),
+                    record2.getWifiBeaconRecord().getData().getBssid());
         }
 
         @Override
@@ -1,7 +1,9 @@
 package com.craxiom.networksurvey.listeners;
 
 import com.craxiom.messaging.BluetoothRecord;
+import com.craxiom.networksurvey.model.SurveyRecordEnvelope;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -24,4 +26,34 @@ public interface IBluetoothSurveyRecordListener
      * @param bluetoothRecords the list of Bluetooth records.
      */
     void onBluetoothSurveyRecords(List<BluetoothRecord> bluetoothRecords);
+
+    /**
+     * Called when a new Bluetooth survey record is ready. Listeners that serialize the record should override this
+     * method so they can reuse the serialized forms cached in the envelope. Calls
+     * {@link #onBluetoothSurveyRecord(BluetoothRecord)} by default.
+     *
+     * @param bluetoothRecord the Bluetooth record along with its cached serialized forms.
+     * @since 1.31.0
+     */
+    default void onBluetoothSurveyRecord(SurveyRecordEnvelope<BluetoothRecord> bluetoothRecord)
+    {
+        onBluetoothSurveyRecord(bluetoothRecord.getRecord());
+    }
+
+    /**
+     * Called when a new collection of Bluetooth survey records are ready. Calls
+     * {@link #onBluetoothSurveyRecords(List)} by default.
+     *
+     * @param bluetoothRecords the list of Bluetooth records along with their cached serialized forms.
+     * @since 1.31.0
+     */
+    default void onBluetoothSurveyRecordEnvelopes(List<SurveyRecordEnvelope<BluetoothRecord>> bluetoothRecords)
+    {
+        final List<BluetoothRecord> records = new ArrayList<>(bluetoothRecords.size());
+        for (SurveyRecordEnvelope<BluetoothRecord> bluetoothRecord : bluetoothRecords)
+        {
+            records.add(bluetoothRecord.getRecord());
+        }
+        onBluetoothSurveyRecords(records);
+    }
 }
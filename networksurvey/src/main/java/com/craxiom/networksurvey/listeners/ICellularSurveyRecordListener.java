@@ -6,6 +6,7 @@ import com.craxiom.messaging.LteRecord;
 import com.craxiom.messaging.NrRecord;
 import com.craxiom.messaging.UmtsRecord;
 import com.craxiom.networksurvey.model.CellularRecordWrapper;
+import com.craxiom.networksurvey.model.SurveyRecordEnvelope;
 import com.craxiom.networksurvey.util.CalculationUtils;
 
 import java.util.List;
@@ -66,6 +67,63 @@ public interface ICellularSurveyRecordListener
     {
     }
 
+    /**
+     * Called when a new GSM Survey Record is ready. Listeners that serialize the record should override this method so
+     * they can reuse the serialized forms cached in the envelope. Calls {@link #onGsmSurveyRecord(GsmRecord)} by
+     * default.
+     *
+     * @param gsmRecord the GSM Record along with its cached serialized forms.
+     * @since 1.31.0
+     */
+    default void onGsmSurveyRecord(SurveyRecordEnvelope<GsmRecord> gsmRecord)
+    {
+        onGsmSurveyRecord(gsmRecord.getRecord());
+    }
+
+    /**
+     * Called when a new CDMA Survey Record is ready. Calls {@link #onCdmaSurveyRecord(CdmaRecord)} by default.
+     *
+     * @param cdmaRecord the CDMA Record along with its cached serialized forms.
+     * @since 1.31.0
+     */
+    default void onCdmaSurveyRecord(SurveyRecordEnvelope<CdmaRecord> cdmaRecord)
+    {
+        onCdmaSurveyRecord(cdmaRecord.getRecord());
+    }
+
+    /**
+     * Called when a new UMTS Survey Record is ready. Calls {@link #onUmtsSurveyRecord(UmtsRecord)} by default.
+     *
+     * @param umtsRecord the UMTS Record along with its cached serialized forms.
+     * @since 1.31.0
+     */
+    default void onUmtsSurveyRecord(SurveyRecordEnvelope<UmtsRecord> umtsRecord)
+    {
+        onUmtsSurveyRecord(umtsRecord.getRecord());
+    }
+
+    /**
+     * Called when a new LTE Survey Record is ready. Calls {@link #onLteSurveyRecord(LteRecord)} by default.
+     *
+     * @param lteRecord the LTE Record along with its cached serialized forms.
+     * @since 1.31.0
+     */
+    default void onLteSurveyRecord(SurveyRecordEnvelope<LteRecord> lteRecord)
+    {
+        onLteSurveyRecord(lteRecord.getRecord());
+    }
+
+    /**
+     * Called when a new NR Survey Record is ready. Calls {@link #onNrSurveyRecord(NrRecord)} by default.
+     *
+     * @param nrRecord the New Radio (5G) record along with its cached serialized forms.
+     * @since 1.31.0
+     */
+    default void onNrSurveyRecord(SurveyRecordEnvelope<NrRecord> nrRecord)
+    {
+        onNrSurveyRecord(nrRecord.getRecord());
+    }
+
     /**
      * Called when a new batch of cellular survey records are ready.
      * <p>
@@ -1,6 +1,7 @@
 package com.craxiom.networksurvey.listeners;
 
 import com.craxiom.messaging.GnssRecord;
+import com.craxiom.networksurvey.model.SurveyRecordEnvelope;
 
 /**
  * Listener interface for those interested in being notified when a new GNSS Survey Record is ready.
@@ -15,4 +16,17 @@ public interface IGnssSurveyRecordListener
      * @param gnssRecord the GNSS Record.
      */
     void onGnssSurveyRecord(GnssRecord gnssRecord);
+
+    /**
+     * Called when a new GNSS Survey Record is ready. Listeners that serialize the record should override this method
+     * so they can reuse the serialized forms cached in the envelope. Calls {@link #onGnssSurveyRecord(GnssRecord)} by
+     * default.
+     *
+     * @param gnssRecord the GNSS Record along with its cached serialized forms.
+     * @since 1.31.0
+     */
+    default void onGnssSurveyRecord(SurveyRecordEnvelope<GnssRecord> gnssRecord)
+    {
+        onGnssSurveyRecord(gnssRecord.getRecord());
+    }
 }
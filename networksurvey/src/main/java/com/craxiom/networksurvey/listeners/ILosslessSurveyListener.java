@@ -0,0 +1,15 @@
+package com.craxiom.networksurvey.listeners;
+
+/**
+ * Marker interface for survey record listeners that must see every record, such as the loggers that write the
+ * records to a file.
+ * <p>
+ * These listeners still get their own mailbox and thread, but when the mailbox is full the thread that produced the
+ * record waits for room instead of the oldest record being dropped. Such a listener should hand the records off to
+ * its own writer quickly, since a listener that falls behind slows down every producer.
+ *
+ * @since 1.31.0
+ */
+public interface ILosslessSurveyListener
+{
+}
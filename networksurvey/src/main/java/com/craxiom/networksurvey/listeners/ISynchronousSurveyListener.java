@@ -0,0 +1,14 @@
+package com.craxiom.networksurvey.listeners;
+
+/**
+ * Marker interface for survey record listeners that need to be called directly on the thread that produced the
+ * record, which was how every listener was called before each listener was given its own mailbox and thread.
+ * <p>
+ * Only implement this if the listener returns quickly and depends on being called before the producer moves on (e.g.
+ * it needs to see the record before the next scan starts). A slow synchronous listener delays every other listener.
+ *
+ * @since 1.31.0
+ */
+public interface ISynchronousSurveyListener
+{
+}
@@ -65,7 +65,7 @@ public class BluetoothCsvLogger extends CsvRecordLogger implements IBluetoothSur
     {
         try
         {
-            writeCsvRecord(convertToObjectArray(bluetoothRecord), false);
+            writeCsvRecord(convertToObjectArray(bluetoothRecord), true);
         } catch (IOException e)
         {
             Timber.e(e, "Could not log the Bluetooth record to the CSV file");
@@ -85,13 +85,7 @@ public class BluetoothCsvLogger extends CsvRecordLogger implements IBluetoothSur
             }
         });
 
-        try
-        {
-            printer.flush();
-        } catch (IOException e)
-        {
-            Timber.e(e, "Could not flush the Bluetooth records to the CSV file");
-        }
+        flushRecords();
     }
 
     /**
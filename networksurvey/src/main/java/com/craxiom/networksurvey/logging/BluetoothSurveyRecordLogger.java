@@ -1,12 +1,11 @@
 package com.craxiom.networksurvey.logging;
 
-import android.os.Looper;
-
 import com.craxiom.messaging.BluetoothRecord;
 import com.craxiom.messaging.BluetoothRecordData;
 import com.craxiom.messaging.bluetooth.SupportedTechnologies;
 import com.craxiom.messaging.bluetooth.Technology;
 import com.craxiom.networksurvey.constants.BluetoothMessageConstants;
+import com.craxiom.networksurvey.constants.MessageConstants;
 import com.craxiom.networksurvey.constants.NetworkSurveyConstants;
 import com.craxiom.networksurvey.constants.csv.BluetoothCsvConstants;
 import com.craxiom.networksurvey.listeners.IBluetoothSurveyRecordListener;
@@ -20,11 +19,7 @@ import java.util.List;
 import mil.nga.geopackage.GeoPackage;
 import mil.nga.geopackage.db.GeoPackageDataType;
 import mil.nga.geopackage.features.user.FeatureColumn;
-import mil.nga.geopackage.features.user.FeatureDao;
-import mil.nga.geopackage.features.user.FeatureRow;
-import mil.nga.geopackage.geom.GeoPackageGeometryData;
 import mil.nga.geopackage.srs.SpatialReferenceSystem;
-import mil.nga.sf.Point;
 import timber.log.Timber;
 
 /**
@@ -34,15 +29,16 @@ import timber.log.Timber;
  */
 public class BluetoothSurveyRecordLogger extends SurveyRecordLogger implements IBluetoothSurveyRecordListener
 {
+    private BluetoothRowEncoder bluetoothRowEncoder;
+
     /**
      * Constructs a Logger that writes Bluetooth Survey records to a GeoPackage SQLite database.
      *
      * @param networkSurveyService The Service instance that is running this logger.
-     * @param serviceLooper        The Looper associated with the service that can be used to do any background processing.
      */
-    public BluetoothSurveyRecordLogger(NetworkSurveyService networkSurveyService, Looper serviceLooper)
+    public BluetoothSurveyRecordLogger(NetworkSurveyService networkSurveyService)
     {
-        super(networkSurveyService, serviceLooper, NetworkSurveyConstants.LOG_DIRECTORY_NAME, NetworkSurveyConstants.BLUETOOTH_FILE_NAME_PREFIX);
+        super(networkSurveyService, NetworkSurveyConstants.LOG_DIRECTORY_NAME, NetworkSurveyConstants.BLUETOOTH_FILE_NAME_PREFIX);
     }
 
     @Override
@@ -55,6 +51,7 @@ public class BluetoothSurveyRecordLogger extends SurveyRecordLogger implements I
     public void onBluetoothSurveyRecords(List<BluetoothRecord> bluetoothRecords)
     {
         bluetoothRecords.forEach(this::writeBluetoothRecordToLogFile);
+        onScanGroupComplete();
     }
 
     @Override
@@ -63,6 +60,12 @@ public class BluetoothSurveyRecordLogger extends SurveyRecordLogger implements I
         createBluetoothRecordTable(geoPackage, srs);
     }
 
+    @Override
+    void createRowEncoders(GeoPackage geoPackage)
+    {
+        bluetoothRowEncoder = registerRowEncoder(new BluetoothRowEncoder(geoPackage));
+    }
+
     /**
      * Creates an GeoPackage Table that can be populated with 802.11 Beacon Records.
      *
@@ -92,66 +95,14 @@ public class BluetoothSurveyRecordLogger extends SurveyRecordLogger implements I
     {
         if (!loggingEnabled) return;
 
-        handler.post(() -> {
+        postWrite(() -> {
             synchronized (geoPackageLock)
             {
                 try
                 {
                     if (geoPackage != null)
                     {
-                        final BluetoothRecordData data = bluetoothRecord.getData();
-                        FeatureDao featureDao = geoPackage.getFeatureDao(BluetoothMessageConstants.BLUETOOTH_RECORDS_TABLE_NAME);
-                        FeatureRow row = featureDao.newRow();
-
-                        Point fix = new Point(data.getLongitude(), data.getLatitude(), (double) data.getAltitude());
-
-                        GeoPackageGeometryData geomData = new GeoPackageGeometryData(WGS84_SRS);
-                        geomData.setGeometry(fix);
-
-                        row.setGeometry(geomData);
-
-                        row.setValue(BluetoothCsvConstants.DEVICE_SERIAL_NUMBER, data.getDeviceSerialNumber());
-                        row.setValue(BluetoothMessageConstants.TIME_COLUMN, NsUtils.getEpochFromRfc3339(data.getDeviceTime()));
-                        row.setValue(BluetoothMessageConstants.MISSION_ID_COLUMN, data.getMissionId());
-                        row.setValue(BluetoothMessageConstants.RECORD_NUMBER_COLUMN, data.getRecordNumber());
-                        row.setValue(BluetoothCsvConstants.SPEED, data.getSpeed());
-                        row.setValue(BluetoothMessageConstants.ACCURACY, MathUtils.roundAccuracy(data.getAccuracy()));
-
-                        final String sourceAddress = data.getSourceAddress();
-                        if (!sourceAddress.isEmpty())
-                        {
-                            row.setValue(BluetoothMessageConstants.SOURCE_ADDRESS_COLUMN, sourceAddress);
-                        }
-
-                        if (data.hasSignalStrength())
-                        {
-                            row.setValue(BluetoothMessageConstants.SIGNAL_STRENGTH_COLUMN, data.getSignalStrength().getValue());
-                        }
-
-                        if (data.hasTxPower())
-                        {
-                            row.setValue(BluetoothMessageConstants.TX_POWER_COLUMN, data.getTxPower().getValue());
-                        }
-
-                        final Technology technology = data.getTechnology();
-                        if (technology != Technology.UNKNOWN)
-                        {
-                            row.setValue(BluetoothMessageConstants.TECHNOLOGY_COLUMN, BluetoothMessageConstants.getTechnologyString(technology));
-                        }
-
-                        final SupportedTechnologies supportedTech = data.getSupportedTechnologies();
-                        if (supportedTech != SupportedTechnologies.UNKNOWN)
-                        {
-                            row.setValue(BluetoothMessageConstants.SUPPORTED_TECHNOLOGIES_COLUMN, BluetoothMessageConstants.getSupportedTechString(supportedTech));
-                        }
-
-                        final String otaDeviceName = data.getOtaDeviceName();
-                        if (!otaDeviceName.isEmpty())
-                        {
-                            row.setValue(BluetoothMessageConstants.OTA_DEVICE_NAME_COLUMN, otaDeviceName);
-                        }
-
-                        featureDao.insert(row);
+                        queueRow(bluetoothRowEncoder, bluetoothRecord.getData());
 
                         checkIfRolloverNeeded();
                     }
@@ -162,4 +113,77 @@ public class BluetoothSurveyRecordLogger extends SurveyRecordLogger implements I
             }
         });
     }
+
+    /**
+     * Binds the fields of a Bluetooth record to the Bluetooth table's insert statement.
+     *
+     * @since 1.31.0
+     */
+    private static final class BluetoothRowEncoder extends GeoPackageRowEncoder<BluetoothRecordData>
+    {
+        private final int geometryIndex;
+        private final int deviceSerialNumberIndex;
+        private final int timeIndex;
+        private final int missionIdIndex;
+        private final int recordNumberIndex;
+        private final int speedIndex;
+        private final int accuracyIndex;
+        private final int sourceAddressIndex;
+        private final int signalStrengthIndex;
+        private final int txPowerIndex;
+        private final int technologyIndex;
+        private final int supportedTechnologiesIndex;
+        private final int otaDeviceNameIndex;
+
+        BluetoothRowEncoder(GeoPackage geoPackage)
+        {
+            super(geoPackage, BluetoothMessageConstants.BLUETOOTH_RECORDS_TABLE_NAME);
+
+            geometryIndex = bindIndex(MessageConstants.GEOMETRY_COLUMN);
+            deviceSerialNumberIndex = bindIndex(BluetoothCsvConstants.DEVICE_SERIAL_NUMBER);
+            timeIndex = bindIndex(BluetoothMessageConstants.TIME_COLUMN);
+            missionIdIndex = bindIndex(BluetoothMessageConstants.MISSION_ID_COLUMN);
+            recordNumberIndex = bindIndex(BluetoothMessageConstants.RECORD_NUMBER_COLUMN);
+            speedIndex = bindIndex(BluetoothCsvConstants.SPEED);
+            accuracyIndex = bindIndex(BluetoothMessageConstants.ACCURACY);
+            sourceAddressIndex = bindIndex(BluetoothMessageConstants.SOURCE_ADDRESS_COLUMN);
+            signalStrengthIndex = bindIndex(BluetoothMessageConstants.SIGNAL_STRENGTH_COLUMN);
+            txPowerIndex = bindIndex(BluetoothMessageConstants.TX_POWER_COLUMN);
+            technologyIndex = bindIndex(BluetoothMessageConstants.TECHNOLOGY_COLUMN);
+            supportedTechnologiesIndex = bindIndex(BluetoothMessageConstants.SUPPORTED_TECHNOLOGIES_COLUMN);
+            otaDeviceNameIndex = bindIndex(BluetoothMessageConstants.OTA_DEVICE_NAME_COLUMN);
+        }
+
+        @Override
+        void bind(BluetoothRecordData data)
+        {
+            bindPoint(geometryIndex, data.getLongitude(), data.getLatitude(), data.getAltitude());
+
+            bindText(deviceSerialNumberIndex, data.getDeviceSerialNumber());
+            bindLong(timeIndex, NsUtils.getEpochFromRfc3339(data.getDeviceTime()));
+            bindText(missionIdIndex, data.getMissionId());
+            bindLong(recordNumberIndex, data.getRecordNumber());
+            bindDouble(speedIndex, data.getSpeed());
+            bindLong(accuracyIndex, MathUtils.roundAccuracy(data.getAccuracy()));
+
+            bindOptionalText(sourceAddressIndex, data.getSourceAddress());
+
+            if (data.hasSignalStrength()) bindDouble(signalStrengthIndex, data.getSignalStrength().getValue());
+            if (data.hasTxPower()) bindDouble(txPowerIndex, data.getTxPower().getValue());
+
+            final Technology technology = data.getTechnology();
+            if (technology != Technology.UNKNOWN)
+            {
+                bindText(technologyIndex, BluetoothMessageConstants.getTechnologyString(technology));
+            }
+
+            final SupportedTechnologies supportedTech = data.getSupportedTechnologies();
+            if (supportedTech != SupportedTechnologies.UNKNOWN)
+            {
+                bindText(supportedTechnologiesIndex, BluetoothMessageConstants.getSupportedTechString(supportedTech));
+            }
+
+            bindOptionalText(otaDeviceNameIndex, data.getOtaDeviceName());
+        }
+    }
 }
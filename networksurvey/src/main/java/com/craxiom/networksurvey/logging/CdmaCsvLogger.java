@@ -28,9 +28,11 @@ import com.craxiom.messaging.CdmaRecord;
 import com.craxiom.messaging.CdmaRecordData;
 import com.craxiom.networksurvey.constants.NetworkSurveyConstants;
 import com.craxiom.networksurvey.listeners.ICellularSurveyRecordListener;
+import com.craxiom.networksurvey.model.CellularRecordWrapper;
 import com.craxiom.networksurvey.services.NetworkSurveyService;
 
 import java.io.IOException;
+import java.util.List;
 
 import timber.log.Timber;
 
@@ -72,6 +74,12 @@ public class CdmaCsvLogger extends CsvRecordLogger implements ICellularSurveyRec
         }
     }
 
+    @Override
+    public void onCellularBatch(List<CellularRecordWrapper> cellularGroup, int subscriptionId)
+    {
+        flushRecords();
+    }
+
     /**
      * @return A String array that contains the CDMA record values that can be written out as a CSV
      * row.
@@ -1,7 +1,5 @@
 package com.craxiom.networksurvey.logging;
 
-import android.os.Looper;
-
 import com.craxiom.messaging.CdmaRecord;
 import com.craxiom.messaging.CdmaRecordData;
 import com.craxiom.messaging.GsmRecord;
@@ -27,10 +25,10 @@ import com.craxiom.networksurvey.constants.csv.LteCsvConstants;
 import com.craxiom.networksurvey.constants.csv.NrCsvConstants;
 import com.craxiom.networksurvey.constants.csv.UmtsCsvConstants;
 import com.craxiom.networksurvey.listeners.ICellularSurveyRecordListener;
+import com.craxiom.networksurvey.model.CellularRecordWrapper;
 import com.craxiom.networksurvey.services.NetworkSurveyService;
 import com.craxiom.networksurvey.util.MathUtils;
 import com.craxiom.networksurvey.util.NsUtils;
-import com.google.common.base.Strings;
 
 import java.sql.SQLException;
 import java.util.LinkedList;
@@ -60,15 +58,17 @@ import timber.log.Timber;
  */
 public class CellularSurveyRecordLogger extends SurveyRecordLogger implements ICellularSurveyRecordListener
 {
+    private LteRowEncoder lteRowEncoder;
+    private NrRowEncoder nrRowEncoder;
+
     /**
      * Constructs a Logger that writes Cellular Survey records to a GeoPackage SQLite database.
      *
      * @param networkSurveyService The Service instance that is running this logger.
-     * @param serviceLooper        The Looper associated with the service that can be used to do any background processing.
      */
-    public CellularSurveyRecordLogger(NetworkSurveyService networkSurveyService, Looper serviceLooper)
+    public CellularSurveyRecordLogger(NetworkSurveyService networkSurveyService)
     {
-        super(networkSurveyService, serviceLooper, NetworkSurveyConstants.LOG_DIRECTORY_NAME, NetworkSurveyConstants.CELLULAR_FILE_NAME_PREFIX);
+        super(networkSurveyService, NetworkSurveyConstants.LOG_DIRECTORY_NAME, NetworkSurveyConstants.CELLULAR_FILE_NAME_PREFIX);
     }
 
     @Override
@@ -101,6 +101,16 @@ public class CellularSurveyRecordLogger extends SurveyRecordLogger implements IC
         writeNrRecordToLogFile(nrRecord);
     }
 
+    /**
+     * The records in the batch have already been written via the individual protocol listener methods, so this
+     * method is only used as the signal that the scan group is complete and the pending rows can be committed.
+     */
+    @Override
+    public void onCellularBatch(List<CellularRecordWrapper> cellularGroup, int subscriptionId)
+    {
+        onScanGroupComplete();
+    }
+
     @Override
     void createTables(GeoPackage geoPackage, SpatialReferenceSystem srs) throws SQLException
     {
@@ -111,6 +121,13 @@ public class CellularSurveyRecordLogger extends SurveyRecordLogger implements IC
         createNrRecordTable(geoPackage, srs);
     }
 
+    @Override
+    void createRowEncoders(GeoPackage geoPackage)
+    {
+        lteRowEncoder = registerRowEncoder(new LteRowEncoder(geoPackage));
+        nrRowEncoder = registerRowEncoder(new NrRowEncoder(geoPackage));
+    }
+
     /**
      * Creates an GeoPackage Table that can be populated with GSM Records.
      *
@@ -289,7 +306,7 @@ public class CellularSurveyRecordLogger extends SurveyRecordLogger implements IC
     {
         if (!loggingEnabled) return;
 
-        handler.post(() -> {
+        postWrite(() -> {
             synchronized (geoPackageLock)
             {
                 try
@@ -363,7 +380,7 @@ public class CellularSurveyRecordLogger extends SurveyRecordLogger implements IC
                             setShortValue(row, CellularCsvConstants.SLOT, data.getSlot().getValue());
                         }
 
-                        featureDao.insert(row);
+                        queueRow(featureDao, row);
 
                         checkIfRolloverNeeded();
                     }
@@ -384,7 +401,7 @@ public class CellularSurveyRecordLogger extends SurveyRecordLogger implements IC
     {
         if (!loggingEnabled) return;
 
-        handler.post(() -> {
+        postWrite(() -> {
             synchronized (geoPackageLock)
             {
                 try
@@ -449,7 +466,7 @@ public class CellularSurveyRecordLogger extends SurveyRecordLogger implements IC
                             setShortValue(row, CellularCsvConstants.SLOT, data.getSlot().getValue());
                         }
 
-                        featureDao.insert(row);
+                        queueRow(featureDao, row);
 
                         checkIfRolloverNeeded();
                     }
@@ -470,7 +487,7 @@ public class CellularSurveyRecordLogger extends SurveyRecordLogger implements IC
     {
         if (!loggingEnabled) return;
 
-        handler.post(() -> {
+        postWrite(() -> {
             synchronized (geoPackageLock)
             {
                 try
@@ -544,7 +561,7 @@ public class CellularSurveyRecordLogger extends SurveyRecordLogger implements IC
                             setShortValue(row, CellularCsvConstants.SLOT, data.getSlot().getValue());
                         }
 
-                        featureDao.insert(row);
+                        queueRow(featureDao, row);
 
                         checkIfRolloverNeeded();
                     }
@@ -565,100 +582,14 @@ public class CellularSurveyRecordLogger extends SurveyRecordLogger implements IC
     {
         if (!loggingEnabled) return;
 
-        handler.post(() -> {
+        postWrite(() -> {
             synchronized (geoPackageLock)
             {
                 try
                 {
                     if (geoPackage != null)
                     {
-                        FeatureDao featureDao = geoPackage.getFeatureDao(LteMessageConstants.LTE_RECORDS_TABLE_NAME);
-                        FeatureRow row = featureDao.newRow();
-
-                        final LteRecordData data = lteRecord.getData();
-
-                        Point fix = new Point(data.getLongitude(), data.getLatitude(), (double) data.getAltitude());
-
-                        GeoPackageGeometryData geomData = new GeoPackageGeometryData(WGS84_SRS);
-                        geomData.setGeometry(fix);
-
-                        row.setGeometry(geomData);
-
-                        row.setValue(LteCsvConstants.DEVICE_SERIAL_NUMBER, data.getDeviceSerialNumber());
-                        row.setValue(LteMessageConstants.TIME_COLUMN, NsUtils.getEpochFromRfc3339(data.getDeviceTime()));
-                        row.setValue(LteMessageConstants.MISSION_ID_COLUMN, data.getMissionId());
-                        row.setValue(LteMessageConstants.RECORD_NUMBER_COLUMN, data.getRecordNumber());
-                        row.setValue(LteMessageConstants.GROUP_NUMBER_COLUMN, data.getGroupNumber());
-                        row.setValue(LteCsvConstants.SPEED, data.getSpeed());
-                        row.setValue(LteMessageConstants.ACCURACY, MathUtils.roundAccuracy(data.getAccuracy()));
-
-                        if (data.hasMcc())
-                        {
-                            setShortValue(row, LteMessageConstants.MCC_COLUMN, data.getMcc().getValue());
-                        }
-                        if (data.hasMnc())
-                        {
-                            setShortValue(row, LteMessageConstants.MNC_COLUMN, data.getMnc().getValue());
-                        }
-                        if (data.hasTac())
-                        {
-                            setIntValue(row, LteMessageConstants.TAC_COLUMN, data.getTac().getValue());
-                        }
-                        if (data.hasEci())
-                        {
-                            setIntValue(row, LteMessageConstants.CI_COLUMN, data.getEci().getValue());
-                        }
-                        if (data.hasEarfcn())
-                        {
-                            setIntValue(row, LteMessageConstants.EARFCN_COLUMN, data.getEarfcn().getValue());
-                        }
-                        if (data.hasPci())
-                        {
-                            setShortValue(row, LteMessageConstants.PCI_COLUMN, data.getPci().getValue());
-                        }
-                        if (data.hasRsrp())
-                        {
-                            row.setValue(LteMessageConstants.RSRP_COLUMN, data.getRsrp().getValue());
-                        }
-                        if (data.hasRsrq())
-                        {
-                            row.setValue(LteMessageConstants.RSRQ_COLUMN, data.getRsrq().getValue());
-                        }
-                        if (data.hasTa())
-                        {
-                            setShortValue(row, LteMessageConstants.TA_COLUMN, data.getTa().getValue());
-                        }
-                        if (data.hasServingCell())
-                        {
-                            row.setValue(LteMessageConstants.SERVING_CELL_COLUMN, data.getServingCell().getValue());
-                        }
-
-                        final String provider = data.getProvider();
-                        if (!provider.isEmpty())
-                        {
-                            row.setValue(LteMessageConstants.PROVIDER_COLUMN, provider);
-                        }
-
-                        if (data.hasSignalStrength())
-                        {
-                            row.setValue(LteCsvConstants.SIGNAL_STRENGTH, data.getSignalStrength().getValue());
-                        }
-                        if (data.hasCqi())
-                        {
-                            row.setValue(LteCsvConstants.CQI, data.getCqi().getValue());
-                        }
-                        if (data.hasSlot())
-                        {
-                            setShortValue(row, CellularCsvConstants.SLOT, data.getSlot().getValue());
-                        }
-                        if (data.hasSnr())
-                        {
-                            row.setValue(LteCsvConstants.SNR, data.getSnr().getValue());
-                        }
-
-                        setLteBandwidth(row, data.getLteBandwidth());
-
-                        featureDao.insert(row);
+                        queueRow(lteRowEncoder, lteRecord.getData());
 
                         checkIfRolloverNeeded();
                     }
@@ -680,99 +611,14 @@ public class CellularSurveyRecordLogger extends SurveyRecordLogger implements IC
     {
         if (!loggingEnabled) return;
 
-        handler.post(() -> {
+        postWrite(() -> {
             synchronized (geoPackageLock)
             {
                 try
                 {
                     if (geoPackage != null)
                     {
-                        FeatureDao featureDao = geoPackage.getFeatureDao(NrMessageConstants.NR_RECORDS_TABLE_NAME);
-                        FeatureRow row = featureDao.newRow();
-
-                        final NrRecordData data = nrRecord.getData();
-
-                        Point fix = new Point(data.getLongitude(), data.getLatitude(), (double) data.getAltitude());
-
-                        GeoPackageGeometryData geomData = new GeoPackageGeometryData(WGS84_SRS);
-                        geomData.setGeometry(fix);
-
-                        row.setGeometry(geomData);
-
-                        row.setValue(NrCsvConstants.DEVICE_SERIAL_NUMBER, data.getDeviceSerialNumber());
-                        row.setValue(NrMessageConstants.DEVICE_TIME_COLUMN, NsUtils.getEpochFromRfc3339(data.getDeviceTime()));
-                        row.setValue(NrMessageConstants.MISSION_ID_COLUMN, data.getMissionId());
-                        row.setValue(NrMessageConstants.RECORD_NUMBER_COLUMN, data.getRecordNumber());
-                        row.setValue(NrMessageConstants.GROUP_NUMBER_COLUMN, data.getGroupNumber());
-                        row.setValue(NrCsvConstants.SPEED, data.getSpeed());
-                        row.setValue(NrMessageConstants.ACCURACY, MathUtils.roundAccuracy(data.getAccuracy()));
-
-                        if (data.hasMcc())
-                        {
-                            setShortValue(row, NrMessageConstants.MCC_COLUMN, data.getMcc().getValue());
-                        }
-                        if (data.hasMnc())
-                        {
-                            setShortValue(row, NrMessageConstants.MNC_COLUMN, data.getMnc().getValue());
-                        }
-                        if (data.hasTac())
-                        {
-                            setIntValue(row, NrMessageConstants.TAC_COLUMN, data.getTac().getValue());
-                        }
-                        if (data.hasNci())
-                        {
-                            row.setValue(NrMessageConstants.NCI_COLUMN, data.getNci().getValue());
-                        }
-                        if (data.hasNarfcn())
-                        {
-                            setIntValue(row, NrMessageConstants.NARFCN_COLUMN, data.getNarfcn().getValue());
-                        }
-                        if (data.hasPci())
-                        {
-                            setShortValue(row, NrMessageConstants.PCI_COLUMN, data.getPci().getValue());
-                        }
-
-                        if (data.hasSsRsrp())
-                        {
-                            row.setValue(NrMessageConstants.SS_RSRP_COLUMN, data.getSsRsrp().getValue());
-                        }
-                        if (data.hasSsRsrq())
-                        {
-                            row.setValue(NrMessageConstants.SS_RSRQ_COLUMN, data.getSsRsrq().getValue());
-                        }
-                        if (data.hasSsSinr())
-                        {
-                            row.setValue(NrMessageConstants.SS_SINR_COLUMN, data.getSsSinr().getValue());
-                        }
-
-                        if (data.hasCsiRsrp())
-                        {
-                            row.setValue(NrMessageConstants.CSI_RSRP_COLUMN, data.getCsiRsrp().getValue());
-                        }
-                        if (data.hasCsiRsrq())
-                        {
-                            row.setValue(NrMessageConstants.CSI_RSRQ_COLUMN, data.getCsiRsrq().getValue());
-                        }
-                        if (data.hasCsiSinr())
-                        {
-                            row.setValue(NrMessageConstants.CSI_SINR_COLUMN, data.getCsiSinr().getValue());
-                        }
-                        if (data.hasServingCell())
-                        {
-                            row.setValue(NrMessageConstants.SERVING_CELL_COLUMN, data.getServingCell().getValue());
-                        }
-
-                        final String provider = data.getProvider();
-                        if (!Strings.isNullOrEmpty(provider))
-                        {
-                            row.setValue(NrMessageConstants.PROVIDER_COLUMN, provider);
-                        }
-                        if (data.hasSlot())
-                        {
-                            setShortValue(row, CellularCsvConstants.SLOT, data.getSlot().getValue());
-                        }
-
-                        featureDao.insert(row);
+                        queueRow(nrRowEncoder, nrRecord.getData());
 
                         checkIfRolloverNeeded();
                     }
@@ -783,4 +629,196 @@ public class CellularSurveyRecordLogger extends SurveyRecordLogger implements IC
             }
         });
     }
+
+    /**
+     * Binds the fields of an LTE record to the LTE table's insert statement.
+     *
+     * @since 1.31.0
+     */
+    private static final class LteRowEncoder extends GeoPackageRowEncoder<LteRecordData>
+    {
+        private final int geometryIndex;
+        private final int deviceSerialNumberIndex;
+        private final int timeIndex;
+        private final int missionIdIndex;
+        private final int recordNumberIndex;
+        private final int groupNumberIndex;
+        private final int speedIndex;
+        private final int accuracyIndex;
+        private final int mccIndex;
+        private final int mncIndex;
+        private final int tacIndex;
+        private final int ciIndex;
+        private final int earfcnIndex;
+        private final int pciIndex;
+        private final int rsrpIndex;
+        private final int rsrqIndex;
+        private final int taIndex;
+        private final int servingCellIndex;
+        private final int providerIndex;
+        private final int signalStrengthIndex;
+        private final int cqiIndex;
+        private final int slotIndex;
+        private final int snrIndex;
+        private final int bandwidthIndex;
+
+        LteRowEncoder(GeoPackage geoPackage)
+        {
+            super(geoPackage, LteMessageConstants.LTE_RECORDS_TABLE_NAME);
+
+            geometryIndex = bindIndex(MessageConstants.GEOMETRY_COLUMN);
+            deviceSerialNumberIndex = bindIndex(LteCsvConstants.DEVICE_SERIAL_NUMBER);
+            timeIndex = bindIndex(LteMessageConstants.TIME_COLUMN);
+            missionIdIndex = bindIndex(LteMessageConstants.MISSION_ID_COLUMN);
+            recordNumberIndex = bindIndex(LteMessageConstants.RECORD_NUMBER_COLUMN);
+            groupNumberIndex = bindIndex(LteMessageConstants.GROUP_NUMBER_COLUMN);
+            speedIndex = bindIndex(LteCsvConstants.SPEED);
+            accuracyIndex = bindIndex(LteMessageConstants.ACCURACY);
+            mccIndex = bindIndex(LteMessageConstants.MCC_COLUMN);
+            mncIndex = bindIndex(LteMessageConstants.MNC_COLUMN);
+            tacIndex = bindIndex(LteMessageConstants.TAC_COLUMN);
+            ciIndex = bindIndex(LteMessageConstants.CI_COLUMN);
+            earfcnIndex = bindIndex(LteMessageConstants.EARFCN_COLUMN);
+            pciIndex = bindIndex(LteMessageConstants.PCI_COLUMN);
+            rsrpIndex = bindIndex(LteMessageConstants.RSRP_COLUMN);
+            rsrqIndex = bindIndex(LteMessageConstants.RSRQ_COLUMN);
+            taIndex = bindIndex(LteMessageConstants.TA_COLUMN);
+            servingCellIndex = bindIndex(LteMessageConstants.SERVING_CELL_COLUMN);
+            providerIndex = bindIndex(LteMessageConstants.PROVIDER_COLUMN);
+            signalStrengthIndex = bindIndex(LteCsvConstants.SIGNAL_STRENGTH);
+            cqiIndex = bindIndex(LteCsvConstants.CQI);
+            slotIndex = bindIndex(CellularCsvConstants.SLOT);
+            snrIndex = bindIndex(LteCsvConstants.SNR);
+            bandwidthIndex = bindIndex(LteMessageConstants.BANDWIDTH_COLUMN);
+        }
+
+        @Override
+        void bind(LteRecordData data)
+        {
+            bindPoint(geometryIndex, data.getLongitude(), data.getLatitude(), data.getAltitude());
+
+            bindText(deviceSerialNumberIndex, data.getDeviceSerialNumber());
+            bindLong(timeIndex, NsUtils.getEpochFromRfc3339(data.getDeviceTime()));
+            bindText(missionIdIndex, data.getMissionId());
+            bindLong(recordNumberIndex, data.getRecordNumber());
+            bindLong(groupNumberIndex, data.getGroupNumber());
+            bindDouble(speedIndex, data.getSpeed());
+            bindLong(accuracyIndex, MathUtils.roundAccuracy(data.getAccuracy()));
+
+            if (data.hasMcc()) bindLong(mccIndex, (short) data.getMcc().getValue());
+            if (data.hasMnc()) bindLong(mncIndex, (short) data.getMnc().getValue());
+            if (data.hasTac()) bindLong(tacIndex, data.getTac().getValue());
+            if (data.hasEci()) bindLong(ciIndex, data.getEci().getValue());
+            if (data.hasEarfcn()) bindLong(earfcnIndex, data.getEarfcn().getValue());
+            if (data.hasPci()) bindLong(pciIndex, (short) data.getPci().getValue());
+            if (data.hasRsrp()) bindDouble(rsrpIndex, data.getRsrp().getValue());
+            if (data.hasRsrq()) bindDouble(rsrqIndex, data.getRsrq().getValue());
+            if (data.hasTa()) bindLong(taIndex, (short) data.getTa().getValue());
+            if (data.hasServingCell()) bindBoolean(servingCellIndex, data.getServingCell().getValue());
+
+            bindOptionalText(providerIndex, data.getProvider());
+
+            if (data.hasSignalStrength()) bindDouble(signalStrengthIndex, data.getSignalStrength().getValue());
+            if (data.hasCqi()) bindLong(cqiIndex, data.getCqi().getValue());
+            if (data.hasSlot()) bindLong(slotIndex, (short) data.getSlot().getValue());
+            if (data.hasSnr()) bindDouble(snrIndex, data.getSnr().getValue());
+
+            bindOptionalText(bandwidthIndex, LteMessageConstants.getLteBandwidth(data.getLteBandwidth()));
+        }
+    }
+
+    /**
+     * Binds the fields of an NR record to the NR table's insert statement.
+     *
+     * @since 1.31.0
+     */
+    private static final class NrRowEncoder extends GeoPackageRowEncoder<NrRecordData>
+    {
+        private final int geometryIndex;
+        private final int deviceSerialNumberIndex;
+        private final int deviceTimeIndex;
+        private final int missionIdIndex;
+        private final int recordNumberIndex;
+        private final int groupNumberIndex;
+        private final int speedIndex;
+        private final int accuracyIndex;
+        private final int mccIndex;
+        private final int mncIndex;
+        private final int tacIndex;
+        private final int nciIndex;
+        private final int narfcnIndex;
+        private final int pciIndex;
+        private final int ssRsrpIndex;
+        private final int ssRsrqIndex;
+        private final int ssSinrIndex;
+        private final int csiRsrpIndex;
+        private final int csiRsrqIndex;
+        private final int csiSinrIndex;
+        private final int servingCellIndex;
+        private final int providerIndex;
+        private final int slotIndex;
+
+        NrRowEncoder(GeoPackage geoPackage)
+        {
+            super(geoPackage, NrMessageConstants.NR_RECORDS_TABLE_NAME);
+
+            geometryIndex = bindIndex(MessageConstants.GEOMETRY_COLUMN);
+            deviceSerialNumberIndex = bindIndex(NrCsvConstants.DEVICE_SERIAL_NUMBER);
+            deviceTimeIndex = bindIndex(NrMessageConstants.DEVICE_TIME_COLUMN);
+            missionIdIndex = bindIndex(NrMessageConstants.MISSION_ID_COLUMN);
+            recordNumberIndex = bindIndex(NrMessageConstants.RECORD_NUMBER_COLUMN);
+            groupNumberIndex = bindIndex(NrMessageConstants.GROUP_NUMBER_COLUMN);
+            speedIndex = bindIndex(NrCsvConstants.SPEED);
+            accuracyIndex = bindIndex(NrMessageConstants.ACCURACY);
+            mccIndex = bindIndex(NrMessageConstants.MCC_COLUMN);
+            mncIndex = bindIndex(NrMessageConstants.MNC_COLUMN);
+            tacIndex = bindIndex(NrMessageConstants.TAC_COLUMN);
+            nciIndex = bindIndex(NrMessageConstants.NCI_COLUMN);
+            narfcnIndex = bindIndex(NrMessageConstants.NARFCN_COLUMN);
+            pciIndex = bindIndex(NrMessageConstants.PCI_COLUMN);
+            ssRsrpIndex = bindIndex(NrMessageConstants.SS_RSRP_COLUMN);
+            ssRsrqIndex = bindIndex(NrMessageConstants.SS_RSRQ_COLUMN);
+            ssSinrIndex = bindIndex(NrMessageConstants.SS_SINR_COLUMN);
+            csiRsrpIndex = bindIndex(NrMessageConstants.CSI_RSRP_COLUMN);
+            csiRsrqIndex = bindIndex(NrMessageConstants.CSI_RSRQ_COLUMN);
+            csiSinrIndex = bindIndex(NrMessageConstants.CSI_SINR_COLUMN);
+            servingCellIndex = bindIndex(NrMessageConstants.SERVING_CELL_COLUMN);
+            providerIndex = bindIndex(NrMessageConstants.PROVIDER_COLUMN);
+            slotIndex = bindIndex(CellularCsvConstants.SLOT);
+        }
+
+        @Override
+        void bind(NrRecordData data)
+        {
+            bindPoint(geometryIndex, data.getLongitude(), data.getLatitude(), data.getAltitude());
+
+            bindText(deviceSerialNumberIndex, data.getDeviceSerialNumber());
+            bindLong(deviceTimeIndex, NsUtils.getEpochFromRfc3339(data.getDeviceTime()));
+            bindText(missionIdIndex, data.getMissionId());
+            bindLong(recordNumberIndex, data.getRecordNumber());
+            bindLong(groupNumberIndex, data.getGroupNumber());
+            bindDouble(speedIndex, data.getSpeed());
+            bindLong(accuracyIndex, MathUtils.roundAccuracy(data.getAccuracy()));
+
+            if (data.hasMcc()) bindLong(mccIndex, (short) data.getMcc().getValue());
+            if (data.hasMnc()) bindLong(mncIndex, (short) data.getMnc().getValue());
+            if (data.hasTac()) bindLong(tacIndex, data.getTac().getValue());
+            if (data.hasNci()) bindLong(nciIndex, data.getNci().getValue());
+            if (data.hasNarfcn()) bindLong(narfcnIndex, data.getNarfcn().getValue());
+            if (data.hasPci()) bindLong(pciIndex, (short) data.getPci().getValue());
+
+            if (data.hasSsRsrp()) bindDouble(ssRsrpIndex, data.getSsRsrp().getValue());
+            if (data.hasSsRsrq()) bindDouble(ssRsrqIndex, data.getSsRsrq().getValue());
+            if (data.hasSsSinr()) bindDouble(ssSinrIndex, data.getSsSinr().getValue());
+
+            if (data.hasCsiRsrp()) bindDouble(csiRsrpIndex, data.getCsiRsrp().getValue());
+            if (data.hasCsiRsrq()) bindDouble(csiRsrqIndex, data.getCsiRsrq().getValue());
+            if (data.hasCsiSinr()) bindDouble(csiSinrIndex, data.getCsiSinr().getValue());
+            if (data.hasServingCell()) bindBoolean(servingCellIndex, data.getServingCell().getValue());
+
+            bindOptionalText(providerIndex, data.getProvider());
+
+            if (data.hasSlot()) bindLong(slotIndex, (short) data.getSlot().getValue());
+        }
+    }
 }
@@ -4,9 +4,11 @@ import android.content.Context;
 import android.os.Environment;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.widget.Toast;
 
 import com.craxiom.networksurvey.constants.NetworkSurveyConstants;
+import com.craxiom.networksurvey.listeners.ILosslessSurveyListener;
 import com.craxiom.networksurvey.services.NetworkSurveyService;
 import com.craxiom.networksurvey.services.SurveyRecordProcessor;
 import com.craxiom.networksurvey.util.NsUtils;
@@ -15,15 +17,21 @@ import com.craxiom.networksurvey.util.PreferenceUtils;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import timber.log.Timber;
@@ -35,9 +43,11 @@ import timber.log.Timber;
  *
  * @since 1.11
  */
-public abstract class CsvRecordLogger
+public abstract class CsvRecordLogger implements ILosslessSurveyListener
 {
     private static final int RECORD_COUNT_INTERVAL = 5000;
+    private static final int WRITE_BUFFER_SIZE_CHARS = 64 * 1024;
+    private static final long WRITE_QUEUE_DRAIN_TIMEOUT_MS = 5_000;
 
     /**
      * A lock to synchronize the writing of single records and the creation of a new CSV file
@@ -45,6 +55,7 @@ public abstract class CsvRecordLogger
      */
     protected final Object csvFileLock = new Object();
 
+    private NetworkSurveyService networkSurveyService;
     private Context applicationContext;
     final Handler handler;
     private final String logDirectoryName;
@@ -58,6 +69,29 @@ public abstract class CsvRecordLogger
 
     private String loggingFileName;
 
+    /**
+     * The stream that the CSV file is being written to. It keeps track of the number of bytes that have actually
+     * been written to the file so that we don't have to ask the file system for the file size.
+     */
+    private CountingOutputStream fileOutputStream;
+    private long recordsWritten;
+
+    /**
+     * When true, records are written to a large buffer that is flushed to the file at the end of each scan group,
+     * after {@link #maxFlushDelayMs} has elapsed, when the buffer fills up, on rollover, and on shutdown. When false,
+     * the buffer is flushed every time a caller requests it, which is usually after every record.
+     */
+    private volatile boolean bufferedWritesEnabled = true;
+    private volatile long maxFlushDelayMs = NetworkSurveyConstants.DEFAULT_CSV_MAX_FLUSH_DELAY_MS;
+    private final Runnable delayedFlushTask = this::flushRecords;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    /**
+     * The queue that all rows go through so that the actual file I/O happens on a dedicated writer thread instead
+     * of the thread that delivered the survey record.
+     */
+    private final CsvWriteQueue writeQueue;
+
     /**
      * Constructs a Logger that writes Survey records to a GeoPackage SQLite database.
      *
@@ -69,15 +103,36 @@ public abstract class CsvRecordLogger
     CsvRecordLogger(NetworkSurveyService networkSurveyService, Looper serviceLooper,
                     String logDirectoryName, String fileNamePrefix, boolean lazyFileCreation)
     {
+        this.networkSurveyService = networkSurveyService;
         applicationContext = networkSurveyService.getApplicationContext();
         handler = new Handler(serviceLooper);
         this.logDirectoryName = logDirectoryName;
         this.fileNamePrefix = fileNamePrefix;
         this.lazyFileCreation = lazyFileCreation;
+
+        writeQueue = new CsvWriteQueue(getClass().getSimpleName(), CsvWriteQueue.DEFAULT_CAPACITY,
+                applicationContext.getCacheDir(), new CsvWriteQueue.RowWriter()
+        {
+            @Override
+            public void writeRow(Object[] row) throws IOException
+            {
+                writeCsvRecordNow(row);
+            }
+
+            @Override
+            public void flush()
+            {
+                flushPrinter();
+            }
+        });
+        networkSurveyService.registerCsvWriteQueue(writeQueue);
     }
 
     public void onDestroy()
     {
+        networkSurveyService.unregisterCsvWriteQueue(writeQueue);
+        writeQueue.shutdown();
+        networkSurveyService = null;
         applicationContext = null;
     }
 
@@ -99,6 +154,10 @@ public abstract class CsvRecordLogger
      */
     public boolean enableLogging(boolean enable)
     {
+        // Let the writer thread finish with the queued rows before the file is closed. This needs to happen outside
+        // of the lock because a rollover on the writer thread also needs the lock.
+        if (!enable) writeQueue.awaitDrained(WRITE_QUEUE_DRAIN_TIMEOUT_MS);
+
         synchronized (csvFileLock)
         {
             try
@@ -110,8 +169,10 @@ public abstract class CsvRecordLogger
                     {
                         loggingEnabled = false;
                         loggingFileName = null;
-                        printer.close(true);
+                        handler.removeCallbacks(delayedFlushTask);
+                        if (printer != null) printer.close(true);
                         printer = null;
+                        fileOutputStream = null;
                         rolloverWorker.reset();
                         return true;
                     }
@@ -122,6 +183,7 @@ public abstract class CsvRecordLogger
                 if (!isExternalStorageWritable()) return false;
 
                 updateRolloverWorker();
+                updateWriteQueueSettings();
 
                 if (lazyFileCreation) return true;
 
@@ -143,6 +205,7 @@ public abstract class CsvRecordLogger
                     } finally
                     {
                         printer = null;
+                        fileOutputStream = null;
                         loggingFileName = null;
                     }
                 }
@@ -151,14 +214,134 @@ public abstract class CsvRecordLogger
         }
     }
 
-    synchronized void writeCsvRecord(Object[] row, boolean flush) throws IOException
+    /**
+     * Queues the provided row to be written to the CSV file on the writer thread. The overflow policy of the write
+     * queue determines what happens if the writer thread has fallen too far behind.
+     * <p>
+     * When buffered writes are enabled, a flush request only schedules a flush for no later than
+     * {@link #maxFlushDelayMs} from now. Callers that know a scan group is complete should call
+     * {@link #flushRecords()} to push the whole group to the file at once.
+     *
+     * @param row   The values to write as a single CSV row.
+     * @param flush True if the row should make it to the file soon, false if the caller will flush it later.
+     * @throws IOException If the row could not be written.
+     */
+    void writeCsvRecord(Object[] row, boolean flush) throws IOException
+    {
+        writeQueue.enqueue(row);
+        if (flush)
+        {
+            if (bufferedWritesEnabled)
+            {
+                scheduleDelayedFlush();
+            } else
+            {
+                writeQueue.requestFlush();
+            }
+        }
+    }
+
+    /**
+     * Writes the row to the CSV file. Only called from the writer thread.
+     */
+    private synchronized void writeCsvRecordNow(Object[] row) throws IOException
     {
         if (lazyFileCreation) lazyCreateFileIfNecessary();
+        if (printer == null) return;
         printer.printRecord(row);
-        if (flush) printer.flush(); // TODO could we get away with not flushing on every record?
+        recordsWritten++;
         checkIfRolloverNeeded();
     }
 
+    /**
+     * Flushes any buffered records to the CSV file once the rows that are already queued have been written. This
+     * should be called at the end of each scan group.
+     *
+     * @since 1.31.0
+     */
+    void flushRecords()
+    {
+        handler.removeCallbacks(delayedFlushTask);
+        flushScheduled.set(false);
+        writeQueue.requestFlush();
+    }
+
+    /**
+     * Flushes the CSV printer. Only called from the writer thread, or from a thread that holds the lock on this
+     * logger.
+     */
+    private synchronized void flushPrinter()
+    {
+        if (printer == null) return;
+
+        try
+        {
+            printer.flush();
+        } catch (IOException e)
+        {
+            Timber.e(e, "Could not flush the records to the CSV file");
+        }
+    }
+
+    /**
+     * Makes sure a flush is scheduled to happen within {@link #maxFlushDelayMs} so that records never sit in the
+     * buffer for very long, even if the end of the scan group is never signaled.
+     */
+    private void scheduleDelayedFlush()
+    {
+        if (flushScheduled.compareAndSet(false, true))
+        {
+            handler.postAtTime(delayedFlushTask, SystemClock.uptimeMillis() + maxFlushDelayMs);
+        }
+    }
+
+    /**
+     * Reads the write queue overflow policy and the max flush delay from the SharedPreferences, or the MDM properties
+     * if enabled. A delay of 0 disables the buffered write mode so that every flush request from the loggers results
+     * in an immediate flush to the file.
+     *
+     * @since 1.31.0
+     */
+    private void updateWriteQueueSettings()
+    {
+        writeQueue.setOverflowPolicy(PreferenceUtils.getCsvWriteQueueOverflowPolicyPreference(applicationContext));
+
+        final int maxDelayMs = PreferenceUtils.getCsvMaxFlushDelayMsPreference(applicationContext);
+
+        maxFlushDelayMs = maxDelayMs;
+        bufferedWritesEnabled = maxDelayMs > 0;
+        if (!bufferedWritesEnabled) flushRecords();
+    }
+
+    /**
+     * @return The number of bytes that have been written to the current CSV file, not including any bytes that are
+     * still sitting in the write buffer.
+     * @since 1.31.0
+     */
+    public long getBytesWritten()
+    {
+        final CountingOutputStream outputStream = fileOutputStream;
+        return outputStream == null ? 0 : outputStream.getCount();
+    }
+
+    /**
+     * @return The number of records that have been written to the current CSV file.
+     * @since 1.31.0
+     */
+    public synchronized long getRecordsWritten()
+    {
+        return recordsWritten;
+    }
+
+    /**
+     * @return The write queue for this logger so that its depth and drop counters can be monitored.
+     * @since 1.31.0
+     */
+    public CsvWriteQueue getWriteQueue()
+    {
+        return writeQueue;
+    }
+
     /**
      * If lazy file creation is enabled, and the file has not yet been created, then this method
      * creates the CSV file.
@@ -199,7 +382,10 @@ public abstract class CsvRecordLogger
                 .build();
         try
         {
-            final FileWriter out = new FileWriter(loggingFileName);
+            fileOutputStream = new CountingOutputStream(new FileOutputStream(loggingFileName));
+            final BufferedWriter out = new BufferedWriter(
+                    new OutputStreamWriter(fileOutputStream, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE_CHARS);
+            recordsWritten = 0;
             printer = new CSVPrinter(out, csvFormat);
             printer.flush();
         } catch (IOException e)
@@ -222,6 +408,7 @@ public abstract class CsvRecordLogger
                     printer = null;
                 }
             }
+            fileOutputStream = null;
             return false;
         }
 
@@ -251,23 +438,25 @@ public abstract class CsvRecordLogger
     }
 
     /**
-     * Update the max log size if the preference has changed via shared preferences.
+     * Update the max log size and the write queue settings if the preferences have changed via shared preferences.
      *
      * @since 0.4.0
      */
     public void onSharedPreferenceChanged()
     {
         updateRolloverWorker();
+        updateWriteQueueSettings();
     }
 
     /**
-     * Update the max log size if the preference has changed via MDM.
+     * Update the max log size and the write queue settings if the preferences have changed via MDM.
      *
      * @since 0.4.0
      */
     public void onMdmPreferenceChanged()
     {
         updateRolloverWorker();
+        updateWriteQueueSettings();
     }
 
     /**
@@ -379,15 +568,11 @@ public abstract class CsvRecordLogger
 
                 if (recordCount.compareAndSet(RECORD_COUNT_INTERVAL, 0))
                 {
-                    File file;
-                    // Need to synchronize so that we don't try to get the file while a new one is being created.
-                    synchronized (csvFileLock)
-                    {
-                        file = new File(loggingFileName);
-                    }
-                    final long fileSizeBytes = file.length();
+                    // Flush the buffer first so that the byte count reflects all the records written so far
+                    flushPrinter();
+                    final long fileSizeBytes = getBytesWritten();
 
-                    Timber.v("Checking GeoPackage file size, currently at: %s bytes", fileSizeBytes);
+                    Timber.v("Checking CSV file size, currently at: %s bytes", fileSizeBytes);
                     if (fileSizeBytes >= rolloverSizeBytes)
                     {
                         // This task is protected by the {@link #csvFileLock} to prevent closing a file that is
@@ -396,6 +581,7 @@ public abstract class CsvRecordLogger
                         {
                             try
                             {
+                                handler.removeCallbacks(delayedFlushTask);
                                 printer.close(true);
 
                                 boolean fileCreated = prepareCsvForLogging();
@@ -425,4 +611,38 @@ public abstract class CsvRecordLogger
             recordCount.set(0);
         }
     }
+
+    /**
+     * An output stream that keeps track of the number of bytes written to it.
+     *
+     * @since 1.31.0
+     */
+    private static class CountingOutputStream extends FilterOutputStream
+    {
+        private volatile long count;
+
+        CountingOutputStream(OutputStream out)
+        {
+            super(out);
+        }
+
+        long getCount()
+        {
+            return count;
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
 }
@@ -0,0 +1,444 @@
+package com.craxiom.networksurvey.logging;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import timber.log.Timber;
+
+/**
+ * A bounded queue that sits between the threads that produce CSV rows (i.e. the survey record processing threads)
+ * and the single thread that writes those rows to the CSV file. Producers only ever enqueue, so a slow storage
+ * device no longer stalls the record processing for every other listener.
+ * <p>
+ * When the queue is full, the {@link OverflowPolicy} decides what happens to the new row.
+ *
+ * @since 1.31.0
+ */
+public class CsvWriteQueue
+{
+    static final int DEFAULT_CAPACITY = 2_048;
+    private static final long IDLE_POLL_TIME_MS = 500;
+    private static final String SPILL_FILE_SUFFIX = "-spill.csv";
+
+    /**
+     * A special row that indicates the consumer should flush the writer. It is compared by identity.
+     */
+    private static final Object[] FLUSH_MARKER = new Object[0];
+
+    /**
+     * What to do with a new row when the queue is full.
+     */
+    public enum OverflowPolicy
+    {
+        /**
+         * Block the producing thread until there is room in the queue. No rows are lost.
+         */
+        BLOCK,
+
+        /**
+         * Remove the oldest row in the queue to make room for the new one.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Write the new row to a spill file in the app's cache directory. The spilled rows are written to the CSV
+         * file, in order, once the consumer catches up.
+         */
+        SPILL
+    }
+
+    /**
+     * The destination of the rows that are pulled off the queue. All calls are made on the consumer thread.
+     */
+    interface RowWriter
+    {
+        void writeRow(Object[] row) throws IOException;
+
+        void flush();
+    }
+
+    private final String name;
+    private final BlockingQueue<Object[]> queue;
+    private final RowWriter rowWriter;
+    private final File spillDirectory;
+    private final Thread consumerThread;
+
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+    private volatile boolean running = true;
+    private volatile boolean flushRequested;
+
+    /**
+     * The number of rows that have been accepted but not yet written, including any rows in the spill file.
+     */
+    private final AtomicInteger outstandingRows = new AtomicInteger();
+    /**
+     * Notified when {@link #outstandingRows} drops to 0 so that {@link #awaitDrained(long)} can stop waiting.
+     */
+    private final Object drainedLock = new Object();
+    private final AtomicLong droppedRows = new AtomicLong();
+    private final AtomicLong spilledRows = new AtomicLong();
+    private final AtomicLong writtenRows = new AtomicLong();
+
+    /**
+     * Protects the spill file state below.
+     */
+    private final Object spillLock = new Object();
+    private File spillFile;
+    private CSVPrinter spillPrinter;
+    private int pendingSpillRows;
+
+    /**
+     * Creates the queue and starts the consumer thread.
+     *
+     * @param name           The name used for the consumer thread and in the metrics.
+     * @param capacity       The max number of rows to hold in memory.
+     * @param spillDirectory The directory to write spill files to. Can be null if {@link OverflowPolicy#SPILL} is
+     *                       never used.
+     * @param rowWriter      The writer that is passed each row on the consumer thread.
+     */
+    CsvWriteQueue(String name, int capacity, File spillDirectory, RowWriter rowWriter)
+    {
+        this.name = name;
+        this.spillDirectory = spillDirectory;
+        this.rowWriter = rowWriter;
+        queue = new ArrayBlockingQueue<>(capacity);
+
+        consumerThread = new Thread(this::consumeRows, "CsvWriter-" + name);
+        consumerThread.setDaemon(true);
+        consumerThread.start();
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return The number of rows that are waiting to be written, including any rows that have been spilled to disk.
+     */
+    public int getDepth()
+    {
+        return outstandingRows.get();
+    }
+
+    /**
+     * @return The total number of rows that were discarded because of the overflow policy or an error.
+     */
+    public long getDroppedCount()
+    {
+        return droppedRows.get();
+    }
+
+    /**
+     * @return The total number of rows that were written to a spill file because the queue was full.
+     */
+    public long getSpilledCount()
+    {
+        return spilledRows.get();
+    }
+
+    /**
+     * @return The total number of rows that have been handed to the writer.
+     */
+    public long getWrittenCount()
+    {
+        return writtenRows.get();
+    }
+
+    public OverflowPolicy getOverflowPolicy()
+    {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy)
+    {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Adds the row to the queue, applying the overflow policy if the queue is full.
+     *
+     * @param row The CSV row to write.
+     */
+    void enqueue(Object[] row)
+    {
+        if (!running)
+        {
+            droppedRows.incrementAndGet();
+            return;
+        }
+
+        outstandingRows.incrementAndGet();
+
+        // Once rows start spilling, keep spilling until the consumer has caught up so the rows stay in order
+        synchronized (spillLock)
+        {
+            if (pendingSpillRows > 0)
+            {
+                spillRow(row);
+                return;
+            }
+        }
+
+        switch (overflowPolicy)
+        {
+            case BLOCK:
+                try
+                {
+                    queue.put(row);
+                } catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    releaseRows(1);
+                    droppedRows.incrementAndGet();
+                }
+                break;
+
+            case DROP_OLDEST:
+                while (!queue.offer(row))
+                {
+                    final Object[] removed = queue.poll();
+                    if (removed == FLUSH_MARKER)
+                    {
+                        // Don't lose the flush, the consumer will flush as soon as it catches up
+                        flushRequested = true;
+                    } else if (removed != null)
+                    {
+                        releaseRows(1);
+                        droppedRows.incrementAndGet();
+                    }
+                }
+                break;
+
+            case SPILL:
+                if (!queue.offer(row))
+                {
+                    synchronized (spillLock)
+                    {
+                        spillRow(row);
+                    }
+                }
+                break;
+        }
+    }
+
+    /**
+     * Requests that the writer be flushed once all the rows that are currently in the queue have been written.
+     */
+    void requestFlush()
+    {
+        if (!queue.offer(FLUSH_MARKER))
+        {
+            // The queue is full, so the consumer will flush as soon as it catches up
+            flushRequested = true;
+        }
+    }
+
+    /**
+     * Blocks until all the accepted rows have been written, or the timeout has elapsed.
+     *
+     * @param timeoutMs The max amount of time to wait.
+     * @return True if the queue was drained, false if the timeout was reached first.
+     */
+    boolean awaitDrained(long timeoutMs)
+    {
+        if (Thread.currentThread() == consumerThread) return outstandingRows.get() == 0;
+
+        final long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        synchronized (drainedLock)
+        {
+            while (outstandingRows.get() > 0)
+            {
+                final long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+                if (remainingMs <= 0)
+                {
+                    Timber.w("Timed out waiting for the %s CSV write queue to drain, %d rows outstanding", name, outstandingRows.get());
+                    return false;
+                }
+
+                try
+                {
+                    drainedLock.wait(remainingMs);
+                } catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Stops the consumer thread after it has written out any rows that are already in the queue.
+     */
+    void shutdown()
+    {
+        running = false;
+        consumerThread.interrupt();
+    }
+
+    /**
+     * The consumer loop that runs on the dedicated writer thread.
+     */
+    private void consumeRows()
+    {
+        while (running || !queue.isEmpty())
+        {
+            Object[] row;
+            try
+            {
+                row = queue.poll(IDLE_POLL_TIME_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e)
+            {
+                row = queue.poll();
+            }
+
+            if (row == FLUSH_MARKER)
+            {
+                rowWriter.flush();
+            } else if (row != null)
+            {
+                writeRow(row);
+            }
+
+            if (queue.isEmpty())
+            {
+                drainSpillFile();
+
+                if (flushRequested)
+                {
+                    flushRequested = false;
+                    rowWriter.flush();
+                }
+            }
+        }
+
+        drainSpillFile();
+        rowWriter.flush();
+        Timber.d("The %s CSV writer thread has stopped", name);
+    }
+
+    private void writeRow(Object[] row)
+    {
+        try
+        {
+            rowWriter.writeRow(row);
+            writtenRows.incrementAndGet();
+        } catch (Exception e)
+        {
+            droppedRows.incrementAndGet();
+            Timber.e(e, "Could not write a row to the %s CSV file", name);
+        } finally
+        {
+            releaseRows(1);
+        }
+    }
+
+    /**
+     * Removes rows from the outstanding count, waking up any thread waiting in {@link #awaitDrained(long)} once there
+     * are none left.
+     */
+    private void releaseRows(int count)
+    {
+        if (outstandingRows.addAndGet(-count) == 0)
+        {
+            synchronized (drainedLock)
+            {
+                drainedLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Appends the row to the spill file, creating it if necessary.
+     * <p>
+     * The caller must hold the {@link #spillLock}.
+     */
+    private void spillRow(Object[] row)
+    {
+        try
+        {
+            if (spillPrinter == null)
+            {
+                spillFile = new File(spillDirectory, name + "-" + System.nanoTime() + SPILL_FILE_SUFFIX);
+                spillPrinter = new CSVPrinter(new OutputStreamWriter(new FileOutputStream(spillFile), StandardCharsets.UTF_8), CSVFormat.DEFAULT);
+            }
+
+            spillPrinter.printRecord(row);
+            pendingSpillRows++;
+            spilledRows.incrementAndGet();
+        } catch (Exception e)
+        {
+            releaseRows(1);
+            droppedRows.incrementAndGet();
+            Timber.e(e, "Could not spill a row for the %s CSV file", name);
+        }
+    }
+
+    /**
+     * Writes any spilled rows to the writer, and then deletes the spill file. New rows go back to the in-memory
+     * queue as soon as the spill file has been detached, and because the consumer reads the spill file before
+     * polling the queue again, the rows are still written in order.
+     */
+    private void drainSpillFile()
+    {
+        final File fileToDrain;
+        final int rowsInFile;
+        synchronized (spillLock)
+        {
+            if (pendingSpillRows == 0) return;
+
+            try
+            {
+                spillPrinter.close(true);
+            } catch (IOException e)
+            {
+                Timber.e(e, "Could not close the %s spill file", name);
+            }
+            fileToDrain = spillFile;
+            rowsInFile = pendingSpillRows;
+            spillPrinter = null;
+            spillFile = null;
+            pendingSpillRows = 0;
+        }
+
+        int rowsRead = 0;
+        try (CSVParser parser = CSVParser.parse(fileToDrain, StandardCharsets.UTF_8, CSVFormat.DEFAULT))
+        {
+            for (CSVRecord record : parser)
+            {
+                rowsRead++;
+                writeRow(record.toList().toArray(new String[0]));
+            }
+        } catch (Exception e)
+        {
+            Timber.e(e, "Could not read back the %s spill file", name);
+        } finally
+        {
+            if (rowsRead < rowsInFile)
+            {
+                final int lostRows = rowsInFile - rowsRead;
+                releaseRows(lostRows);
+                droppedRows.addAndGet(lostRows);
+            }
+
+            //noinspection ResultOfMethodCallIgnored
+            fileToDrain.delete();
+        }
+    }
+}
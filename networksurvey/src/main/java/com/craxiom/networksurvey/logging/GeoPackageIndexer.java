@@ -0,0 +1,165 @@
+package com.craxiom.networksurvey.logging;
+
+import com.craxiom.networksurvey.constants.MessageConstants;
+import com.craxiom.networksurvey.model.GeoPackageIndexMode;
+
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.extension.rtree.RTreeIndexExtension;
+import mil.nga.geopackage.features.user.FeatureTable;
+import timber.log.Timber;
+
+/**
+ * Maintains the GeoPackage RTree spatial index extension and an index on the time column for each of the feature
+ * tables in a survey GeoPackage file, so that downstream tools can query the records by area or time range without
+ * scanning every row.
+ * <p>
+ * The RTree triggers that the extension defines call SQL functions that are only registered on the connection that
+ * the extension uses, not on the one that the row encoders write with. So instead of relying on the triggers while
+ * logging, the new rows are copied into the RTree after each batch of rows is written, and the triggers are only added
+ * when the file is completed so that the index stays correct if the file is edited later on.
+ * <p>
+ * This class is NOT thread safe. It is only used while holding the logger's GeoPackage lock, or after the GeoPackage
+ * is no longer being logged to.
+ *
+ * @since 1.31.0
+ */
+final class GeoPackageIndexer
+{
+    private final GeoPackage geoPackage;
+    private final SurveyRTreeIndexExtension rTreeIndexExtension;
+    private final boolean incremental;
+
+    private GeoPackageIndexer(GeoPackage geoPackage, SurveyRTreeIndexExtension rTreeIndexExtension, boolean incremental)
+    {
+        this.geoPackage = geoPackage;
+        this.rTreeIndexExtension = rTreeIndexExtension;
+        this.incremental = incremental;
+    }
+
+    /**
+     * Creates empty indexes for all the feature tables so that they can be updated as records are written. Should be
+     * called right after the tables are created.
+     *
+     * @param geoPackage The GeoPackage to create the indexes in.
+     */
+    static void createEmptyIndexes(GeoPackage geoPackage)
+    {
+        final RTreeIndexExtension rTreeIndexExtension = new RTreeIndexExtension(geoPackage);
+        for (String tableName : geoPackage.getFeatureTables())
+        {
+            rTreeIndexExtension.getOrCreate(tableName, MessageConstants.GEOMETRY_COLUMN);
+            rTreeIndexExtension.createRTreeIndex(tableName, MessageConstants.GEOMETRY_COLUMN);
+            createTimeIndex(geoPackage, tableName);
+        }
+    }
+
+    /**
+     * Creates the indexer for a GeoPackage that is about to be logged to.
+     *
+     * @param geoPackage The GeoPackage that the records are going to be written to.
+     * @param indexMode  The current index mode. A file that was created with empty indexes is always updated
+     *                   incrementally, even if the index mode has changed since it was created.
+     * @return The indexer, or null if the file should not be indexed.
+     */
+    static GeoPackageIndexer create(GeoPackage geoPackage, GeoPackageIndexMode indexMode)
+    {
+        final SurveyRTreeIndexExtension rTreeIndexExtension = new SurveyRTreeIndexExtension(geoPackage);
+        if (rTreeIndexExtension.has())
+        {
+            rTreeIndexExtension.createAllFunctions();
+            return new GeoPackageIndexer(geoPackage, rTreeIndexExtension, true);
+        }
+
+        if (indexMode == GeoPackageIndexMode.ON_CLOSE)
+        {
+            return new GeoPackageIndexer(geoPackage, rTreeIndexExtension, false);
+        }
+
+        return null;
+    }
+
+    /**
+     * Adds the rows that were written since the last call to the spatial indexes. Does nothing unless the indexes are
+     * updated incrementally. Must be called after the rows have been committed.
+     */
+    void indexNewRows()
+    {
+        if (!incremental) return;
+
+        for (String tableName : geoPackage.getFeatureTables())
+        {
+            indexNewRows(tableName);
+        }
+    }
+
+    /**
+     * Brings the indexes up to date with all the rows in the file. Called once nothing else is going to be written to
+     * the file, right before it is closed.
+     */
+    void completeIndexes()
+    {
+        final long startTime = System.currentTimeMillis();
+
+        for (String tableName : geoPackage.getFeatureTables())
+        {
+            final FeatureTable table = geoPackage.getFeatureDao(tableName).getTable();
+            if (incremental)
+            {
+                indexNewRows(tableName);
+                rTreeIndexExtension.createAllTriggers(table);
+            } else
+            {
+                // Creates the functions, the RTree, loads all the rows, and adds the triggers
+                rTreeIndexExtension.create(table);
+                createTimeIndex(geoPackage, tableName);
+            }
+        }
+
+        Timber.i("Completed the indexes for %s in %d ms", geoPackage.getName(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Copies the rows with an ID higher than any row already in the RTree. The feature tables only ever have rows
+     * added, so this picks up all the rows written since the last time the RTree was updated.
+     */
+    private void indexNewRows(String tableName)
+    {
+        final String rTreeName = RTreeIndexExtension.RTREE_PREFIX + tableName + "_" + MessageConstants.GEOMETRY_COLUMN;
+        final String geometry = quote(MessageConstants.GEOMETRY_COLUMN);
+        final String id = quote(MessageConstants.ID_COLUMN);
+
+        rTreeIndexExtension.execute("INSERT OR REPLACE INTO " + quote(rTreeName)
+                + " SELECT " + id + ", ST_MinX(" + geometry + "), ST_MaxX(" + geometry + "), ST_MinY(" + geometry + "), ST_MaxY(" + geometry + ")"
+                + " FROM " + quote(tableName)
+                + " WHERE " + geometry + " NOT NULL AND NOT ST_IsEmpty(" + geometry + ")"
+                + " AND " + id + " > (SELECT IFNULL(MAX(" + quote(RTreeIndexExtension.COLUMN_ID) + "), 0) FROM " + quote(rTreeName) + ")");
+    }
+
+    private static void createTimeIndex(GeoPackage geoPackage, String tableName)
+    {
+        geoPackage.execSQL("CREATE INDEX IF NOT EXISTS " + quote(tableName + "_time_index")
+                + " ON " + quote(tableName) + " (" + quote(MessageConstants.TIME_COLUMN) + ")");
+    }
+
+    private static String quote(String identifier)
+    {
+        return "\"" + identifier + "\"";
+    }
+
+    /**
+     * Exposes the extension's SQL execution so that the new rows can be loaded on the connection that has the
+     * geometry functions registered.
+     */
+    private static final class SurveyRTreeIndexExtension extends RTreeIndexExtension
+    {
+        SurveyRTreeIndexExtension(GeoPackage geoPackage)
+        {
+            super(geoPackage);
+        }
+
+        void execute(String sql)
+        {
+            executeSQL(sql, false);
+        }
+    }
+}
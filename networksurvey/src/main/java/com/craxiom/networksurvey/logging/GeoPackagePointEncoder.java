@@ -0,0 +1,67 @@
+package com.craxiom.networksurvey.logging;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Encodes a location as a GeoPackage geometry blob (the GeoPackage binary header followed by a WKB Point Z) without
+ * creating any objects per point.
+ * <p>
+ * All the survey tables store WGS84 POINT Z values, so the header is always the same. It is written once, and only
+ * the three coordinates are rewritten for each point. The output matches what
+ * {@link mil.nga.geopackage.geom.GeoPackageGeometryData#toBytes()} produces for a {@link mil.nga.sf.Point} with a Z
+ * value and no envelope: big endian, standard (non-extended) binary type, and an ISO WKB geometry type code.
+ * <p>
+ * The returned array is reused for every call, so it must be consumed (e.g. bound to a statement and executed)
+ * before the next point is encoded. This class is NOT thread safe; each writer should have its own instance.
+ *
+ * @since 1.31.0
+ */
+final class GeoPackagePointEncoder
+{
+    private static final byte[] MAGIC = {'G', 'P'};
+    private static final byte VERSION = 0;
+
+    /**
+     * Standard binary type, not empty, no envelope, big endian.
+     */
+    private static final byte FLAGS = 0;
+    private static final byte WKB_BIG_ENDIAN = 0;
+
+    /**
+     * The ISO WKB geometry type code for a Point with a Z value.
+     */
+    private static final int WKB_POINT_Z = 1001;
+
+    private static final int HEADER_LENGTH = 8;
+    private static final int COORDINATES_OFFSET = HEADER_LENGTH + 1 + 4;
+    static final int BLOB_LENGTH = COORDINATES_OFFSET + 3 * Double.BYTES;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BLOB_LENGTH).order(ByteOrder.BIG_ENDIAN);
+
+    /**
+     * @param srsId The ID of the spatial reference system to write in the header.
+     */
+    GeoPackagePointEncoder(long srsId)
+    {
+        buffer.put(MAGIC)
+                .put(VERSION)
+                .put(FLAGS)
+                .putInt((int) srsId)
+                .put(WKB_BIG_ENDIAN)
+                .putInt(WKB_POINT_Z);
+    }
+
+    /**
+     * Encodes the provided location into the reusable buffer.
+     *
+     * @return The geometry blob. The same array is returned for every call.
+     */
+    byte[] encode(double longitude, double latitude, double altitude)
+    {
+        buffer.putDouble(COORDINATES_OFFSET, longitude)
+                .putDouble(COORDINATES_OFFSET + Double.BYTES, latitude)
+                .putDouble(COORDINATES_OFFSET + 2 * Double.BYTES, altitude);
+        return buffer.array();
+    }
+}
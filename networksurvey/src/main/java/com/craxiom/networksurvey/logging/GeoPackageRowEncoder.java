@@ -0,0 +1,252 @@
+package com.craxiom.networksurvey.logging;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.craxiom.networksurvey.constants.MessageConstants;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import mil.nga.geopackage.GeoPackage;
+
+/**
+ * Writes records to a single GeoPackage table using an {@code INSERT} statement that is compiled once when the
+ * table is created, and then reused for every row.
+ * <p>
+ * The {@link mil.nga.geopackage.features.user.FeatureRow} approach looks up each column by name and allocates a row
+ * object (and a boxed value per column) for every record. Subclasses of this class instead resolve the bind index
+ * of each column up front, and then bind the protobuf fields straight to those indexes.
+ * <p>
+ * This class is NOT thread safe. It is only used while holding the logger's GeoPackage lock.
+ *
+ * @param <T> The type of record data that is written to the table.
+ * @since 1.31.0
+ */
+abstract class GeoPackageRowEncoder<T>
+{
+    private final String tableName;
+    private final InsertStatement statement;
+    private final Map<String, Integer> bindIndexes;
+    private final GeoPackagePointEncoder pointEncoder = new GeoPackagePointEncoder(SurveyRecordLogger.WGS84_SRS);
+
+    /**
+     * Compiles the {@code INSERT} statement for all the columns in the table except for the primary key.
+     *
+     * @param geoPackage The GeoPackage that contains the table. The table must already exist.
+     * @param tableName  The name of the table to write to.
+     */
+    GeoPackageRowEncoder(GeoPackage geoPackage, String tableName)
+    {
+        this(tableName, geoPackage.getFeatureDao(tableName).getTable().getColumnNames(), sql -> {
+            final SQLiteDatabase db = geoPackage.getConnection().getDb().getAndroidSQLiteDatabase().getDb();
+            return new CompiledInsertStatement(db.compileStatement(sql));
+        });
+    }
+
+    /**
+     * Builds the {@code INSERT} statement for the provided columns, except for the primary key, and hands it to the
+     * compiler. This allows the bindings to be checked without an Android SQLite database.
+     *
+     * @param tableName   The name of the table to write to.
+     * @param columnNames The names of all the columns in the table.
+     * @param compiler    Compiles the {@code INSERT} SQL into the statement that the rows are written with.
+     */
+    GeoPackageRowEncoder(String tableName, String[] columnNames, Function<String, InsertStatement> compiler)
+    {
+        this.tableName = tableName;
+
+        bindIndexes = new HashMap<>(columnNames.length);
+
+        final StringBuilder columns = new StringBuilder();
+        final StringBuilder values = new StringBuilder();
+        int bindIndex = 1;
+        for (String columnName : columnNames)
+        {
+            if (MessageConstants.ID_COLUMN.equals(columnName)) continue; // Let SQLite assign the primary key
+
+            if (bindIndex > 1)
+            {
+                columns.append(',');
+                values.append(',');
+            }
+            columns.append('"').append(columnName).append('"');
+            values.append('?');
+            bindIndexes.put(columnName, bindIndex++);
+        }
+
+        statement = compiler.apply("INSERT INTO \"" + tableName + "\" (" + columns + ") VALUES (" + values + ")");
+    }
+
+    String getTableName()
+    {
+        return tableName;
+    }
+
+    /**
+     * Binds the values from the provided record data to the insert statement. All the bindings have already been
+     * cleared, so any column that is not bound is written as NULL.
+     *
+     * @param data The record data to write.
+     */
+    abstract void bind(T data);
+
+    /**
+     * Writes the provided record to the table.
+     *
+     * @param data The record data to write.
+     * @return The row ID of the new row.
+     */
+    long insert(T data)
+    {
+        statement.clearBindings();
+        bind(data);
+        return statement.executeInsert();
+    }
+
+    /**
+     * Releases the compiled statement. This must be called before the GeoPackage is closed.
+     */
+    void close()
+    {
+        statement.close();
+    }
+
+    /**
+     * @param columnName The name of the column to get the index for.
+     * @return The index used to bind a value for the provided column in the insert statement.
+     * @throws IllegalArgumentException If the column does not exist in the table.
+     */
+    int bindIndex(String columnName)
+    {
+        final Integer index = bindIndexes.get(columnName);
+        if (index == null)
+        {
+            throw new IllegalArgumentException("The column " + columnName + " does not exist in the " + tableName + " table");
+        }
+        return index;
+    }
+
+    void bindLong(int index, long value)
+    {
+        statement.bindLong(index, value);
+    }
+
+    void bindDouble(int index, double value)
+    {
+        statement.bindDouble(index, value);
+    }
+
+    /**
+     * Binds the boolean the same way the GeoPackage library does for {@code BOOLEAN} columns, as a 1 or 0.
+     */
+    void bindBoolean(int index, boolean value)
+    {
+        statement.bindLong(index, value ? 1 : 0);
+    }
+
+    /**
+     * Binds the provided string as is, so an empty string is written as an empty string. A null value leaves the
+     * column as NULL.
+     */
+    void bindText(int index, String value)
+    {
+        if (value != null) statement.bindString(index, value);
+    }
+
+    /**
+     * Binds the provided string, unless it is null or empty in which case the column is left as NULL. This matches
+     * the optional text columns that were only set on the {@link mil.nga.geopackage.features.user.FeatureRow} when
+     * there was a value.
+     */
+    void bindOptionalText(int index, String value)
+    {
+        if (value != null && !value.isEmpty()) statement.bindString(index, value);
+    }
+
+    /**
+     * Encodes the provided location as a GeoPackage point geometry and binds it to the geometry column.
+     */
+    void bindPoint(int index, double longitude, double latitude, double altitude)
+    {
+        // The encoder reuses its array, which is fine because the statement is executed before the next row is bound
+        statement.bindBlob(index, pointEncoder.encode(longitude, latitude, altitude));
+    }
+
+    /**
+     * The compiled {@code INSERT} statement, which is a {@link SQLiteStatement} everywhere except in the unit tests.
+     * The bind indexes start at 1.
+     */
+    interface InsertStatement
+    {
+        void clearBindings();
+
+        void bindLong(int index, long value);
+
+        void bindDouble(int index, double value);
+
+        void bindString(int index, String value);
+
+        void bindBlob(int index, byte[] value);
+
+        /**
+         * @return The row ID of the new row.
+         */
+        long executeInsert();
+
+        void close();
+    }
+
+    private static final class CompiledInsertStatement implements InsertStatement
+    {
+        private final SQLiteStatement statement;
+
+        CompiledInsertStatement(SQLiteStatement statement)
+        {
+            this.statement = statement;
+        }
+
+        @Override
+        public void clearBindings()
+        {
+            statement.clearBindings();
+        }
+
+        @Override
+        public void bindLong(int index, long value)
+        {
+            statement.bindLong(index, value);
+        }
+
+        @Override
+        public void bindDouble(int index, double value)
+        {
+            statement.bindDouble(index, value);
+        }
+
+        @Override
+        public void bindString(int index, String value)
+        {
+            statement.bindString(index, value);
+        }
+
+        @Override
+        public void bindBlob(int index, byte[] value)
+        {
+            statement.bindBlob(index, value);
+        }
+
+        @Override
+        public long executeInsert()
+        {
+            return statement.executeInsert();
+        }
+
+        @Override
+        public void close()
+        {
+            statement.close();
+        }
+    }
+}
@@ -16,8 +16,6 @@ import static com.craxiom.networksurvey.constants.GnssMessageConstants.TIME_COLU
 import static com.craxiom.networksurvey.constants.GnssMessageConstants.getConstellationString;
 import static com.craxiom.networksurvey.constants.MessageConstants.ACCURACY;
 
-import android.os.Looper;
-
 import com.craxiom.messaging.GnssRecord;
 import com.craxiom.messaging.GnssRecordData;
 import com.craxiom.messaging.gnss.Constellation;
@@ -52,11 +50,10 @@ public class GnssRecordLogger extends SurveyRecordLogger implements IGnssSurveyR
      * Constructs a Logger that writes GNSS Survey records to a GeoPackage SQLite database.
      *
      * @param networkSurveyService The Service instance that is running this logger.
-     * @param serviceLooper        The Looper associated with the service that can be used to do any background processing.
      */
-    public GnssRecordLogger(NetworkSurveyService networkSurveyService, Looper serviceLooper)
+    public GnssRecordLogger(NetworkSurveyService networkSurveyService)
     {
-        super(networkSurveyService, serviceLooper, NetworkSurveyConstants.LOG_DIRECTORY_NAME, NetworkSurveyConstants.GNSS_FILE_NAME_PREFIX);
+        super(networkSurveyService, NetworkSurveyConstants.LOG_DIRECTORY_NAME, NetworkSurveyConstants.GNSS_FILE_NAME_PREFIX);
     }
 
     @Override
@@ -105,7 +102,7 @@ public class GnssRecordLogger extends SurveyRecordLogger implements IGnssSurveyR
     {
         if (!loggingEnabled) return;
 
-        handler.post(() -> {
+        postWrite(() -> {
             synchronized (geoPackageLock)
             {
                 try
@@ -170,7 +167,7 @@ public class GnssRecordLogger extends SurveyRecordLogger implements IGnssSurveyR
                             row.setValue(CARRIER_TO_NOISE_DENSITY_DB_HZ, data.getCn0DbHz().getValue());
                         }
 
-                        featureDao.insert(row);
+                        queueRow(featureDao, row);
 
                         checkIfRolloverNeeded();
                     }
@@ -0,0 +1,117 @@
+package com.craxiom.networksurvey.logging;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The thread that a single GeoPackage logger does all its file I/O on.
+ * <p>
+ * Each log file gets its own writer thread so that a burst of inserts (or a rollover) for one file does not hold up
+ * the writes for the other files, or the scan scheduling that runs on the service's looper.
+ * <p>
+ * The writes posted through {@link #post(Runnable)} are counted so that the backlog of each writer can be monitored.
+ *
+ * @since 1.31.0
+ */
+public class LogWriterThread extends HandlerThread
+{
+    private final Handler handler;
+    private final AtomicInteger backlog = new AtomicInteger();
+    private final AtomicInteger maxBacklog = new AtomicInteger();
+    private final AtomicLong maxQueueTimeMs = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+
+    /**
+     * Creates and starts the writer thread.
+     *
+     * @param name The name of the thread, which should identify the log file.
+     */
+    LogWriterThread(String name)
+    {
+        super(name, Process.THREAD_PRIORITY_BACKGROUND);
+        start();
+        handler = new Handler(getLooper());
+    }
+
+    /**
+     * @return The handler for the writer thread, for the tasks that don't need to be counted in the backlog (e.g.
+     * delayed flushes).
+     */
+    Handler getHandler()
+    {
+        return handler;
+    }
+
+    /**
+     * Posts a write to the writer thread.
+     *
+     * @param write The write task.
+     * @return True if the write was posted, false if the writer thread has been shut down.
+     */
+    boolean post(Runnable write)
+    {
+        final long postedAtMs = SystemClock.uptimeMillis();
+        maxBacklog.accumulateAndGet(backlog.incrementAndGet(), Math::max);
+
+        final boolean posted = handler.post(() -> {
+            backlog.decrementAndGet();
+            maxQueueTimeMs.accumulateAndGet(SystemClock.uptimeMillis() - postedAtMs, Math::max);
+            try
+            {
+                write.run();
+            } finally
+            {
+                completedCount.incrementAndGet();
+            }
+        });
+
+        if (!posted) backlog.decrementAndGet();
+        return posted;
+    }
+
+    /**
+     * @return The number of writes that have been posted but have not started yet.
+     */
+    public int getBacklog()
+    {
+        return backlog.get();
+    }
+
+    /**
+     * @return The largest backlog seen since the last call to {@link #resetMaximums()}.
+     */
+    public int getMaxBacklog()
+    {
+        return maxBacklog.get();
+    }
+
+    /**
+     * @return The longest a write has waited for the writer thread since the last call to {@link #resetMaximums()}.
+     */
+    public long getMaxQueueTimeMs()
+    {
+        return maxQueueTimeMs.get();
+    }
+
+    /**
+     * @return The number of writes that have been run.
+     */
+    public long getCompletedCount()
+    {
+        return completedCount.get();
+    }
+
+    /**
+     * Resets the max backlog and max queue time so that they can be reported for a new monitoring window.
+     */
+    public void resetMaximums()
+    {
+        maxBacklog.set(backlog.get());
+        maxQueueTimeMs.set(0);
+    }
+}
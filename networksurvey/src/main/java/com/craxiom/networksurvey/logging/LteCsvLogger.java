@@ -34,9 +34,11 @@ import com.craxiom.messaging.LteRecord;
 import com.craxiom.messaging.LteRecordData;
 import com.craxiom.networksurvey.constants.NetworkSurveyConstants;
 import com.craxiom.networksurvey.listeners.ICellularSurveyRecordListener;
+import com.craxiom.networksurvey.model.CellularRecordWrapper;
 import com.craxiom.networksurvey.services.NetworkSurveyService;
 
 import java.io.IOException;
+import java.util.List;
 
 import timber.log.Timber;
 
@@ -78,6 +80,12 @@ public class LteCsvLogger extends CsvRecordLogger implements ICellularSurveyReco
         }
     }
 
+    @Override
+    public void onCellularBatch(List<CellularRecordWrapper> cellularGroup, int subscriptionId)
+    {
+        flushRecords();
+    }
+
     /**
      * @return A String array that contains the LTE record values that can be written out as a CSV
      * row.
@@ -33,9 +33,11 @@ import com.craxiom.messaging.NrRecord;
 import com.craxiom.messaging.NrRecordData;
 import com.craxiom.networksurvey.constants.NetworkSurveyConstants;
 import com.craxiom.networksurvey.listeners.ICellularSurveyRecordListener;
+import com.craxiom.networksurvey.model.CellularRecordWrapper;
 import com.craxiom.networksurvey.services.NetworkSurveyService;
 
 import java.io.IOException;
+import java.util.List;
 
 import timber.log.Timber;
 
@@ -77,6 +79,12 @@ public class NrCsvLogger extends CsvRecordLogger implements ICellularSurveyRecor
         }
     }
 
+    @Override
+    public void onCellularBatch(List<CellularRecordWrapper> cellularGroup, int subscriptionId)
+    {
+        flushRecords();
+    }
+
     /**
      * @return A String array that contains the NR record values that can be written out as a CSV
      * row.
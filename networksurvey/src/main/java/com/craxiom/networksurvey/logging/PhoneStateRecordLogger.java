@@ -14,8 +14,6 @@ import static com.craxiom.networksurvey.constants.MessageConstants.TIME_COLUMN;
 import static com.craxiom.networksurvey.constants.csv.PhoneStateCsvConstants.NON_TERRESTRIAL_NETWORK;
 import static com.craxiom.networksurvey.constants.csv.PhoneStateCsvConstants.SLOT;
 
-import android.os.Looper;
-
 import com.craxiom.messaging.DeviceStatus;
 import com.craxiom.messaging.NetworkRegistrationInfo;
 import com.craxiom.messaging.PhoneState;
@@ -58,9 +56,9 @@ public class PhoneStateRecordLogger extends SurveyRecordLogger implements IDevic
 {
     private final JsonFormat.Printer jsonFormatter;
 
-    public PhoneStateRecordLogger(NetworkSurveyService networkSurveyService, Looper serviceLooper)
+    public PhoneStateRecordLogger(NetworkSurveyService networkSurveyService)
     {
-        super(networkSurveyService, serviceLooper,
+        super(networkSurveyService,
                 NetworkSurveyConstants.LOG_DIRECTORY_NAME,
                 NetworkSurveyConstants.PHONESTATE_FILE_NAME_PREFIX);
 
@@ -94,7 +92,7 @@ public class PhoneStateRecordLogger extends SurveyRecordLogger implements IDevic
     {
         if (!loggingEnabled) return;
 
-        handler.post(() -> {
+        postWrite(() -> {
             synchronized (geoPackageLock)
             {
                 try
@@ -145,7 +143,7 @@ public class PhoneStateRecordLogger extends SurveyRecordLogger implements IDevic
                         String networkRegistrationJson = jsonList.toString();
                         row.setValue(NETWORK_REGISTRATION_COLUMN, networkRegistrationJson);
 
-                        featureDao.insert(row);
+                        queueRow(featureDao, row);
 
                         checkIfRolloverNeeded();
                     }
@@ -0,0 +1,446 @@
+package com.craxiom.networksurvey.logging;
+
+import android.content.Context;
+import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.Toast;
+
+import com.craxiom.messaging.BluetoothRecord;
+import com.craxiom.messaging.CdmaRecord;
+import com.craxiom.messaging.GnssRecord;
+import com.craxiom.messaging.GsmRecord;
+import com.craxiom.messaging.LteRecord;
+import com.craxiom.messaging.NrRecord;
+import com.craxiom.messaging.UmtsRecord;
+import com.craxiom.networksurvey.constants.NetworkSurveyConstants;
+import com.craxiom.networksurvey.listeners.IBluetoothSurveyRecordListener;
+import com.craxiom.networksurvey.listeners.ICellularSurveyRecordListener;
+import com.craxiom.networksurvey.listeners.IGnssSurveyRecordListener;
+import com.craxiom.networksurvey.listeners.ILosslessSurveyListener;
+import com.craxiom.networksurvey.listeners.IWifiSurveyRecordListener;
+import com.craxiom.networksurvey.model.SurveyRecordEnvelope;
+import com.craxiom.networksurvey.model.WifiRecordWrapper;
+import com.craxiom.networksurvey.services.NetworkSurveyService;
+import com.craxiom.networksurvey.services.SurveyRecordProcessor;
+import com.craxiom.networksurvey.util.NsUtils;
+import com.craxiom.networksurvey.util.PreferenceUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+/**
+ * Logs survey records to a protobuf survey log file (see {@link SurveyLogWriter}). This is the cheapest of the log
+ * file types to write because each record is written as the protobuf wire bytes that the other listeners (e.g. gRPC
+ * and MQTT) already share through the {@link SurveyRecordEnvelope}, so it is the one to use in environments with a
+ * lot of records. The file can be converted to CSV or GeoPackage on a computer with {@link SurveyLogCsvConverter} or
+ * {@code SurveyLogGeoPackageConverter} (see the {@code convertSurveyLogToCsv} and
+ * {@code convertSurveyLogToGeoPackage} Gradle tasks).
+ * <p>
+ * The same class is used for all the record types; each controller creates its own instance so that each one gets
+ * its own log file, the same as with the GeoPackage files. The records are written on this logger's writer thread, and
+ * the buffer is flushed to the file whenever the writer thread runs out of records to write.
+ * <p>
+ * Opening a new file only writes the short file header, so the rollover happens right away on the writer thread
+ * instead of going through a standby file like the GeoPackage loggers do.
+ *
+ * @since 1.31.0
+ */
+public class ProtobufRecordLogger implements ICellularSurveyRecordListener, IWifiSurveyRecordListener,
+        IBluetoothSurveyRecordListener, IGnssSurveyRecordListener, ILosslessSurveyListener
+{
+    private static final String FILE_EXTENSION = ".nspb";
+    private static final int BYTES_TO_MEGABYTES = 1_048_576;
+    private static final long WRITE_QUEUE_DRAIN_TIMEOUT_MS = 5_000;
+
+    private NetworkSurveyService networkSurveyService;
+    private Context applicationContext;
+    private final LogWriterThread writerThread;
+    private final String fileNamePrefix;
+
+    /**
+     * A lock to synchronize the writing of records and the creation of a new log file during rollover.
+     */
+    private final Object logFileLock = new Object();
+
+    /**
+     * Only accessed while holding the {@link #logFileLock}.
+     */
+    private SurveyLogWriter logWriter;
+    private volatile boolean loggingEnabled;
+
+    /**
+     * The max log size before a new file is created, in bytes. When this value is set to 0, rollover is de-activated.
+     */
+    private volatile long rolloverSizeBytes = Long.parseLong(NetworkSurveyConstants.DEFAULT_ROLLOVER_SIZE_MB) * BYTES_TO_MEGABYTES;
+
+    /**
+     * @param networkSurveyService The Service instance that is running this logger.
+     * @param fileNamePrefix       The prefix to use for the log file name (e.g.
+     *                             {@link NetworkSurveyConstants#CELLULAR_FILE_NAME_PREFIX}).
+     */
+    public ProtobufRecordLogger(NetworkSurveyService networkSurveyService, String fileNamePrefix)
+    {
+        this.networkSurveyService = networkSurveyService;
+        applicationContext = networkSurveyService.getApplicationContext();
+        this.fileNamePrefix = fileNamePrefix;
+        writerThread = new LogWriterThread("ProtobufWriter-" + fileNamePrefix);
+        networkSurveyService.registerLogWriterThread(writerThread);
+    }
+
+    public void onDestroy()
+    {
+        enableLogging(false);
+        networkSurveyService.unregisterLogWriterThread(writerThread);
+        networkSurveyService = null;
+        applicationContext = null;
+        writerThread.quitSafely();
+    }
+
+    /**
+     * Creates the log file so that the survey records can be written to it, or closes it out.
+     * <p>
+     * If calling this method, it is assumed that the caller will add this {@link ProtobufRecordLogger} as a listener
+     * for survey records.
+     *
+     * @param enable True if logging is being turned on, false if the log file should be closed.
+     * @return True if the toggling action was successful, false if the request could not be completed.
+     */
+    public boolean enableLogging(boolean enable)
+    {
+        if (!enable)
+        {
+            if (!loggingEnabled) return false;
+
+            loggingEnabled = false;
+            Timber.i("Closing the protobuf log file");
+
+            // Let the writer thread finish with the queued records so that they end up in the file before the footer
+            final CountDownLatch closed = new CountDownLatch(1);
+            if (writerThread.post(() -> {
+                closeLogWriter();
+                closed.countDown();
+            }))
+            {
+                try
+                {
+                    if (!closed.await(WRITE_QUEUE_DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+                    {
+                        Timber.w("Timed out waiting for the protobuf log writer to finish the queued records");
+                    }
+                } catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            closeLogWriter();
+            return true;
+        }
+
+        if (loggingEnabled) return true;
+
+        if (!Environment.MEDIA_MOUNTED.equals(Environment.getExternalStorageState())) return false;
+
+        updateRolloverSize();
+
+        synchronized (logFileLock)
+        {
+            logWriter = createLogWriter();
+            if (logWriter == null)
+            {
+                final String errorMessage = "Error: Unable to create the protobuf log file.  No logging will be recorded.";
+                new Handler(Looper.getMainLooper()).post(() -> Toast.makeText(applicationContext, errorMessage, Toast.LENGTH_SHORT).show());
+                return false;
+            }
+        }
+
+        loggingEnabled = true;
+        return true;
+    }
+
+    /**
+     * Update the max log size if the preference has changed via shared preferences.
+     */
+    public void onSharedPreferenceChanged()
+    {
+        updateRolloverSize();
+    }
+
+    /**
+     * Update the max log size if the preference has changed via MDM.
+     */
+    public void onMdmPreferenceChanged()
+    {
+        updateRolloverSize();
+    }
+
+    @Override
+    public void onGsmSurveyRecord(SurveyRecordEnvelope<GsmRecord> gsmRecord)
+    {
+        postWrite(SurveyLogRecordType.GSM, gsmRecord);
+    }
+
+    @Override
+    public void onCdmaSurveyRecord(SurveyRecordEnvelope<CdmaRecord> cdmaRecord)
+    {
+        postWrite(SurveyLogRecordType.CDMA, cdmaRecord);
+    }
+
+    @Override
+    public void onUmtsSurveyRecord(SurveyRecordEnvelope<UmtsRecord> umtsRecord)
+    {
+        postWrite(SurveyLogRecordType.UMTS, umtsRecord);
+    }
+
+    @Override
+    public void onLteSurveyRecord(SurveyRecordEnvelope<LteRecord> lteRecord)
+    {
+        postWrite(SurveyLogRecordType.LTE, lteRecord);
+    }
+
+    @Override
+    public void onNrSurveyRecord(SurveyRecordEnvelope<NrRecord> nrRecord)
+    {
+        postWrite(SurveyLogRecordType.NR, nrRecord);
+    }
+
+    @Override
+    public void onWifiBeaconSurveyRecords(List<WifiRecordWrapper> wifiBeaconRecords)
+    {
+        final List<SurveyRecordEnvelope<?>> envelopes = new ArrayList<>(wifiBeaconRecords.size());
+        for (WifiRecordWrapper wifiBeaconRecord : wifiBeaconRecords)
+        {
+            envelopes.add(wifiBeaconRecord.getEnvelope());
+        }
+        postWrite(SurveyLogRecordType.WIFI_BEACON, envelopes);
+    }
+
+    @Override
+    public void onBluetoothSurveyRecord(BluetoothRecord bluetoothRecord)
+    {
+        onBluetoothSurveyRecord(new SurveyRecordEnvelope<>(bluetoothRecord));
+    }
+
+    @Override
+    public void onBluetoothSurveyRecords(List<BluetoothRecord> bluetoothRecords)
+    {
+        final List<SurveyRecordEnvelope<?>> envelopes = new ArrayList<>(bluetoothRecords.size());
+        for (BluetoothRecord bluetoothRecord : bluetoothRecords)
+        {
+            envelopes.add(new SurveyRecordEnvelope<>(bluetoothRecord));
+        }
+        postWrite(SurveyLogRecordType.BLUETOOTH, envelopes);
+    }
+
+    @Override
+    public void onBluetoothSurveyRecord(SurveyRecordEnvelope<BluetoothRecord> bluetoothRecord)
+    {
+        postWrite(SurveyLogRecordType.BLUETOOTH, bluetoothRecord);
+    }
+
+    @Override
+    public void onBluetoothSurveyRecordEnvelopes(List<SurveyRecordEnvelope<BluetoothRecord>> bluetoothRecords)
+    {
+        postWrite(SurveyLogRecordType.BLUETOOTH, new ArrayList<>(bluetoothRecords));
+    }
+
+    @Override
+    public void onGnssSurveyRecord(GnssRecord gnssRecord)
+    {
+        onGnssSurveyRecord(new SurveyRecordEnvelope<>(gnssRecord));
+    }
+
+    @Override
+    public void onGnssSurveyRecord(SurveyRecordEnvelope<GnssRecord> gnssRecord)
+    {
+        postWrite(SurveyLogRecordType.GNSS, gnssRecord);
+    }
+
+    private void postWrite(SurveyLogRecordType type, SurveyRecordEnvelope<?> envelope)
+    {
+        if (!loggingEnabled) return;
+
+        writerThread.post(() -> {
+            synchronized (logFileLock)
+            {
+                write(type, envelope);
+                onWritesComplete();
+            }
+        });
+    }
+
+    private void postWrite(SurveyLogRecordType type, List<SurveyRecordEnvelope<?>> envelopes)
+    {
+        if (!loggingEnabled || envelopes.isEmpty()) return;
+
+        writerThread.post(() -> {
+            synchronized (logFileLock)
+            {
+                for (SurveyRecordEnvelope<?> envelope : envelopes)
+                {
+                    write(type, envelope);
+                }
+                onWritesComplete();
+            }
+        });
+    }
+
+    /**
+     * Writes the record to the log file, and rolls over to a new file if the rollover size has been reached.
+     * <p>
+     * This method is NOT thread safe and it is assumed the caller has already gotten a lock on the
+     * {@link #logFileLock} before making a call to this method.
+     */
+    private void write(SurveyLogRecordType type, SurveyRecordEnvelope<?> envelope)
+    {
+        if (logWriter == null) return;
+
+        try
+        {
+            logWriter.append(type, envelope);
+        } catch (IOException e)
+        {
+            Timber.e(e, "Could not log the %s record to the protobuf log file", type);
+            return;
+        }
+
+        final long rolloverSize = rolloverSizeBytes;
+        if (rolloverSize > 0 && logWriter.getBytesWritten() >= rolloverSize)
+        {
+            Timber.i("Rolling over the protobuf log file at %d bytes", logWriter.getBytesWritten());
+            closeQuietly(logWriter);
+            logWriter = createLogWriter();
+            if (logWriter == null) Timber.e("Failed to create a new rollover protobuf log file");
+        }
+    }
+
+    /**
+     * Flushes the buffered records to the file once there are no more writes waiting, so that a burst of records is
+     * written to the file all at once.
+     * <p>
+     * This method is NOT thread safe and it is assumed the caller has already gotten a lock on the
+     * {@link #logFileLock} before making a call to this method.
+     */
+    private void onWritesComplete()
+    {
+        if (logWriter == null || writerThread.getBacklog() > 0) return;
+
+        try
+        {
+            logWriter.flush();
+        } catch (IOException e)
+        {
+            Timber.e(e, "Could not flush the records to the protobuf log file");
+        }
+    }
+
+    private void closeLogWriter()
+    {
+        synchronized (logFileLock)
+        {
+            if (logWriter != null)
+            {
+                closeQuietly(logWriter);
+                logWriter = null;
+            }
+        }
+    }
+
+    private static void closeQuietly(SurveyLogWriter writer)
+    {
+        try
+        {
+            writer.close();
+        } catch (IOException e)
+        {
+            Timber.e(e, "Could not close the protobuf log file");
+        }
+    }
+
+    /**
+     * Creates a new log file and writes its header.
+     *
+     * @return The writer for the new file, or null if it could not be created.
+     */
+    private SurveyLogWriter createLogWriter()
+    {
+        final Context context = applicationContext;
+        if (context == null) return null;
+
+        final String loggingFileName = createPublicStorageFilePath();
+        Timber.i("Creating the log file: %s", loggingFileName);
+
+        FileOutputStream outputStream = null;
+        try
+        {
+            outputStream = new FileOutputStream(loggingFileName);
+            return new SurveyLogWriter(outputStream, "Network Survey version=" + NsUtils.getAppVersionName(context));
+        } catch (IOException e)
+        {
+            Timber.e(e, "Unable to create the protobuf log file %s", loggingFileName);
+            if (outputStream != null)
+            {
+                try
+                {
+                    outputStream.close();
+                } catch (IOException ignore)
+                {
+                }
+            }
+            return null;
+        }
+    }
+
+    private void updateRolloverSize()
+    {
+        final Context context = applicationContext;
+        if (context == null) return;
+
+        final int logRolloverSizeMb = PreferenceUtils.getRolloverSizePreference(context);
+        Timber.i("Log Rollover Size updated to %s MB", logRolloverSizeMb);
+        rolloverSizeBytes = (long) logRolloverSizeMb * BYTES_TO_MEGABYTES;
+    }
+
+    /**
+     * Creates the absolute path to the log file that this class writes to.
+     *
+     * @return The full path to the protobuf log file.
+     */
+    private String createPublicStorageFilePath()
+    {
+        final String logFileDirectoryPath = Environment.getExternalStoragePublicDirectory(
+                Environment.DIRECTORY_DOWNLOADS) + "/" + NetworkSurveyConstants.PROTOBUF_LOG_DIRECTORY_NAME + "/";
+
+        try
+        {
+            Files.createDirectories(Paths.get(logFileDirectoryPath));
+        } catch (IOException e)
+        {
+            Timber.e(e, "Could not create the protobuf log file directory");
+        }
+
+        String filePath = logFileDirectoryPath +
+                fileNamePrefix + SurveyRecordProcessor.DATE_TIME_FORMATTER.format(LocalDateTime.now()) + FILE_EXTENSION;
+
+        // A rollover can happen within the same second as the file was created, so make sure the file path is unique
+        int counter = 0;
+        while (new File(filePath).exists())
+        {
+            counter++;
+            filePath = logFileDirectoryPath + fileNamePrefix +
+                    SurveyRecordProcessor.DATE_TIME_FORMATTER.format(LocalDateTime.now()) + "-" + counter + FILE_EXTENSION;
+        }
+
+        return filePath;
+    }
+}
@@ -0,0 +1,215 @@
+package com.craxiom.networksurvey.logging;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import timber.log.Timber;
+
+/**
+ * Prepares the next log file in the background before the current one reaches its rollover size so that switching
+ * files never has to wait for the new file to be created.
+ * <p>
+ * Once the current file reaches {@link #STANDBY_THRESHOLD} of the rollover size, a standby file is created on a
+ * background thread. When the current file reaches the rollover size, {@link #check(long, long)} hands the standby
+ * file over so that the caller can swap it in. If the standby file is not ready yet, the caller keeps writing to the
+ * current file, and the standby ready callback is run as soon as it is so that the swap can happen then.
+ *
+ * @param <T> The type of the log file.
+ * @since 1.31.0
+ */
+final class StandbyFileRollover<T>
+{
+    /**
+     * The fraction of the rollover size at which the standby file is created.
+     */
+    static final double STANDBY_THRESHOLD = 0.9;
+
+    /**
+     * Creates a new log file, ready to be written to.
+     */
+    interface FileFactory<T>
+    {
+        /**
+         * @return The new file, or null if it could not be created.
+         */
+        T create() throws Exception;
+    }
+
+    private final String name;
+    private final FileFactory<T> fileFactory;
+    private final Consumer<T> fileDiscarder;
+    private final Runnable standbyReadyCallback;
+
+    private ExecutorService executor;
+    private T standbyFile;
+    private boolean preparing;
+    private boolean rolloverPending;
+    /**
+     * Incremented each time the standby file is no longer wanted so that a file that is still being created is
+     * discarded when it is done.
+     */
+    private int generation;
+
+    /**
+     * @param name                 The name of the logger, used for the thread name.
+     * @param fileFactory          Creates the standby file. Called from the background thread.
+     * @param fileDiscarder        Closes and deletes a standby file that is no longer wanted.
+     * @param standbyReadyCallback Called from the background thread when a standby file is ready and the rollover
+     *                             size has already been reached. The callback should call
+     *                             {@link #takeStandbyIfRolloverPending()} and swap in the returned file.
+     */
+    StandbyFileRollover(String name, FileFactory<T> fileFactory, Consumer<T> fileDiscarder, Runnable standbyReadyCallback)
+    {
+        this.name = name;
+        this.fileFactory = fileFactory;
+        this.fileDiscarder = fileDiscarder;
+        this.standbyReadyCallback = standbyReadyCallback;
+    }
+
+    /**
+     * Checks the size of the current file, starting the creation of the standby file if the current file is close to
+     * the rollover size.
+     *
+     * @param fileSizeBytes     The size of the current file.
+     * @param rolloverSizeBytes The size at which to roll over to a new file.
+     * @return The file to swap in if the rollover size has been reached and the standby file is ready, otherwise null.
+     */
+    synchronized T check(long fileSizeBytes, long rolloverSizeBytes)
+    {
+        if (rolloverSizeBytes <= 0) return null;
+
+        if (fileSizeBytes >= rolloverSizeBytes * STANDBY_THRESHOLD && standbyFile == null && !preparing)
+        {
+            prepareStandby();
+        }
+
+        if (fileSizeBytes < rolloverSizeBytes) return null;
+
+        if (standbyFile == null)
+        {
+            Timber.i("The %s log file reached the rollover size before the standby file was ready", name);
+            rolloverPending = true;
+            return null;
+        }
+
+        return takeStandby();
+    }
+
+    /**
+     * @return The standby file if it is ready and the rollover size has already been reached, otherwise null.
+     */
+    synchronized T takeStandbyIfRolloverPending()
+    {
+        if (!rolloverPending || standbyFile == null) return null;
+
+        return takeStandby();
+    }
+
+    synchronized boolean isStandbyReady()
+    {
+        return standbyFile != null;
+    }
+
+    /**
+     * Discards the standby file, including one that is still being created. Should be called when logging is turned
+     * off so that an empty log file is not left behind.
+     */
+    void cancel()
+    {
+        final T discardedFile;
+        synchronized (this)
+        {
+            generation++;
+            rolloverPending = false;
+            discardedFile = standbyFile;
+            standbyFile = null;
+        }
+
+        if (discardedFile != null) fileDiscarder.accept(discardedFile);
+    }
+
+    /**
+     * Discards the standby file and stops the background thread.
+     */
+    void shutdown()
+    {
+        cancel();
+
+        final ExecutorService executorToShutdown;
+        synchronized (this)
+        {
+            executorToShutdown = executor;
+            executor = null;
+        }
+        if (executorToShutdown != null) executorToShutdown.shutdown();
+    }
+
+    /**
+     * Runs a task on the background thread, after the standby file that is being created, if any. Used for work on a
+     * file that is no longer being logged to, such as completing its indexes before it is closed.
+     */
+    synchronized void runInBackground(Runnable task)
+    {
+        getExecutor().execute(task);
+    }
+
+    private T takeStandby()
+    {
+        final T file = standbyFile;
+        standbyFile = null;
+        rolloverPending = false;
+        return file;
+    }
+
+    /**
+     * Starts creating the standby file on the background thread. Must be called while holding the lock on this.
+     */
+    private void prepareStandby()
+    {
+        preparing = true;
+        final int standbyGeneration = generation;
+        Timber.i("Creating the standby %s log file", name);
+
+        getExecutor().execute(() -> {
+            T file = null;
+            try
+            {
+                file = fileFactory.create();
+            } catch (Throwable t)
+            {
+                Timber.e(t, "Could not create the standby %s log file", name);
+            }
+
+            final boolean discard;
+            final boolean notifyReady;
+            synchronized (this)
+            {
+                preparing = false;
+                discard = file != null && standbyGeneration != generation;
+                if (file != null && !discard) standbyFile = file;
+                notifyReady = standbyFile != null && rolloverPending;
+            }
+
+            if (discard) fileDiscarder.accept(file);
+            if (notifyReady) standbyReadyCallback.run();
+        });
+    }
+
+    /**
+     * Must be called while holding the lock on this.
+     */
+    private ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "StandbyFile-" + name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return executor;
+    }
+}
@@ -0,0 +1,248 @@
+package com.craxiom.networksurvey.logging;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.MessageOrBuilder;
+import com.google.protobuf.util.JsonFormat;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Converts a protobuf survey log (see {@link SurveyLogWriter}) to CSV files, one for each type of record in the log.
+ * Like {@link SurveyLogReader}, this class does not depend on Android, so the conversion can be done on a computer
+ * after the survey instead of on the device while it is running.
+ * <p>
+ * The columns are the fields of the record's {@code data} message, in the order they are defined in the network
+ * survey messaging protobuf. Wrapped values (e.g. {@code Int32Value}) are unwrapped and left empty when they are not
+ * set, enums are written by name, and any other nested or repeated fields are written as JSON so that nothing is lost.
+ *
+ * @since 1.31.0
+ */
+public final class SurveyLogCsvConverter
+{
+    static final String DATA_FIELD_NAME = "data";
+    static final String WRAPPER_PACKAGE = "google.protobuf.";
+    static final String WRAPPER_VALUE_FIELD_NAME = "value";
+    static final String LOG_FILE_EXTENSION = ".nspb";
+    private static final int WRITE_BUFFER_SIZE_CHARS = 64 * 1024;
+
+    private static final JsonFormat.Printer JSON_PRINTER = JsonFormat.printer()
+            .preservingProtoFieldNames()
+            .omittingInsignificantWhitespace();
+
+    private SurveyLogCsvConverter()
+    {
+    }
+
+    /**
+     * Converts protobuf survey logs to CSV from the command line, which is how the {@code convertSurveyLogToCsv}
+     * Gradle task runs it.
+     * <p>
+     * Usage: {@code <log file or directory> [output directory]}. When a directory is provided, every {@code .nspb}
+     * file in it is converted. The CSV files are written next to each log unless an output directory is provided.
+     *
+     * @param args The log file or directory, followed by the optional output directory.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1 || args.length > 2)
+        {
+            System.err.println("Usage: SurveyLogCsvConverter <log file or directory> [output directory]");
+            System.exit(2);
+        }
+
+        final File input = new File(args[0]);
+        final File[] logFiles = input.isDirectory()
+                ? input.listFiles((directory, name) -> name.endsWith(LOG_FILE_EXTENSION))
+                : new File[]{input};
+        if (logFiles == null || logFiles.length == 0 || !logFiles[0].isFile())
+        {
+            System.err.println("No protobuf survey logs found at " + input);
+            System.exit(1);
+        }
+
+        for (File logFile : logFiles)
+        {
+            final File outputDirectory = args.length == 2 ? new File(args[1]) : logFile.getAbsoluteFile().getParentFile();
+            for (File csvFile : convert(logFile, outputDirectory))
+            {
+                System.out.println(logFile + " -> " + csvFile);
+            }
+        }
+    }
+
+    /**
+     * Converts all the records in the log to CSV files in the provided directory. Each file is named after the log
+     * file and the record type (e.g. {@code craxiom-cellular-20240101-120000-lte.csv}).
+     *
+     * @param logFile         The protobuf survey log to convert.
+     * @param outputDirectory The directory to write the CSV files to. It is created if needed.
+     * @return The CSV files that were written, one for each type of record that is in the log.
+     * @throws IOException If the log could not be read, or a CSV file could not be written.
+     */
+    public static List<File> convert(File logFile, File outputDirectory) throws IOException
+    {
+        Files.createDirectories(outputDirectory.toPath());
+
+        String baseName = logFile.getName();
+        if (baseName.endsWith(LOG_FILE_EXTENSION))
+        {
+            baseName = baseName.substring(0, baseName.length() - LOG_FILE_EXTENSION.length());
+        }
+
+        final List<File> csvFiles = new ArrayList<>();
+        final Map<SurveyLogRecordType, CSVPrinter> printers = new EnumMap<>(SurveyLogRecordType.class);
+        try (SurveyLogReader reader = SurveyLogReader.open(logFile))
+        {
+            final String creator = reader.getCreator();
+            final String prefix = baseName;
+            reader.readAll(entry -> {
+                CSVPrinter printer = printers.get(entry.getType());
+                if (printer == null)
+                {
+                    final File csvFile = new File(outputDirectory,
+                            prefix + "-" + entry.getType().name().toLowerCase(Locale.ROOT) + ".csv");
+                    printer = createPrinter(csvFile, entry.getType(), creator);
+                    printers.put(entry.getType(), printer);
+                    csvFiles.add(csvFile);
+                }
+
+                printer.printRecord(toRow(entry.getRecord()));
+                return true;
+            });
+        } finally
+        {
+            IOException closeException = null;
+            for (CSVPrinter printer : printers.values())
+            {
+                try
+                {
+                    printer.close(true);
+                } catch (IOException e)
+                {
+                    closeException = e;
+                }
+            }
+            if (closeException != null) throw closeException;
+        }
+
+        return csvFiles;
+    }
+
+    /**
+     * @return The CSV column names for the provided record type.
+     */
+    static String[] getHeaders(SurveyLogRecordType type)
+    {
+        final List<Descriptors.FieldDescriptor> fields = getDataDescriptor(type.getDefaultInstance()).getFields();
+        final String[] headers = new String[fields.size()];
+        for (int i = 0; i < headers.length; i++)
+        {
+            headers[i] = fields.get(i).getName();
+        }
+        return headers;
+    }
+
+    /**
+     * @return The values of the record's data fields, in the same order as {@link #getHeaders(SurveyLogRecordType)}.
+     */
+    static String[] toRow(Message record)
+    {
+        final Descriptors.FieldDescriptor dataField = record.getDescriptorForType().findFieldByName(DATA_FIELD_NAME);
+        final Message data = (Message) record.getField(dataField);
+
+        final List<Descriptors.FieldDescriptor> fields = data.getDescriptorForType().getFields();
+        final String[] row = new String[fields.size()];
+        for (int i = 0; i < row.length; i++)
+        {
+            row[i] = toValue(data, fields.get(i));
+        }
+        return row;
+    }
+
+    static String toValue(Message data, Descriptors.FieldDescriptor field)
+    {
+        if (field.isRepeated())
+        {
+            if (data.getRepeatedFieldCount(field) == 0) return "";
+
+            final StringBuilder json = new StringBuilder("[");
+            for (int i = 0; i < data.getRepeatedFieldCount(field); i++)
+            {
+                if (i > 0) json.append(',');
+                final Object value = data.getRepeatedField(field, i);
+                json.append(value instanceof MessageOrBuilder ? printJson((MessageOrBuilder) value) : toScalarValue(value));
+            }
+            return json.append(']').toString();
+        }
+
+        if (field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE)
+        {
+            if (!data.hasField(field)) return "";
+
+            final Message value = (Message) data.getField(field);
+            final Descriptors.Descriptor messageType = field.getMessageType();
+            if (messageType.getFullName().startsWith(WRAPPER_PACKAGE))
+            {
+                final Descriptors.FieldDescriptor valueField = messageType.findFieldByName(WRAPPER_VALUE_FIELD_NAME);
+                if (valueField != null) return toScalarValue(value.getField(valueField));
+            }
+
+            return printJson(value);
+        }
+
+        return toScalarValue(data.getField(field));
+    }
+
+    static String toScalarValue(Object value)
+    {
+        if (value instanceof Descriptors.EnumValueDescriptor) return ((Descriptors.EnumValueDescriptor) value).getName();
+        if (value instanceof ByteString) return Base64.getEncoder().encodeToString(((ByteString) value).toByteArray());
+        return String.valueOf(value);
+    }
+
+    static String printJson(MessageOrBuilder message)
+    {
+        try
+        {
+            return JSON_PRINTER.print(message);
+        } catch (InvalidProtocolBufferException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Descriptors.Descriptor getDataDescriptor(Message defaultInstance)
+    {
+        return defaultInstance.getDescriptorForType().findFieldByName(DATA_FIELD_NAME).getMessageType();
+    }
+
+    private static CSVPrinter createPrinter(File csvFile, SurveyLogRecordType type, String creator) throws IOException
+    {
+        final CSVFormat csvFormat = CSVFormat.Builder.create()
+                .setCommentMarker('#')
+                .setHeaderComments("Converted from a protobuf survey log created by " + creator)
+                .setHeader(getHeaders(type))
+                .build();
+
+        return new CSVPrinter(new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(csvFile.toPath()),
+                StandardCharsets.UTF_8), WRITE_BUFFER_SIZE_CHARS), csvFormat);
+    }
+}
@@ -0,0 +1,298 @@
+package com.craxiom.networksurvey.logging;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A summary of a run of records in a protobuf survey log (see {@link SurveyLogWriter}). The block is written to the
+ * file right after the records that it covers, and points back to the block before it, so a reader can find all the
+ * blocks from the footer without reading any records.
+ * <p>
+ * A reader uses the blocks to skip over the records that can't match a query: records of other types, records
+ * outside a time range, and records outside a bounding box.
+ *
+ * @since 1.31.0
+ */
+public final class SurveyLogIndexBlock
+{
+    /**
+     * The size of an index block in the file, not including the entry kind and the length prefix.
+     */
+    static final int ENCODED_SIZE = 72;
+
+    /**
+     * Used for the time range of a block that does not have any records with a valid device time.
+     */
+    static final long NO_TIME = Long.MIN_VALUE;
+
+    private final long offset;
+    private final long previousOffset;
+    private final long firstRecordOffset;
+    private final int recordCount;
+    private final long minTimeMs;
+    private final long maxTimeMs;
+    private final int typeMask;
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double maxLatitude;
+    private final double maxLongitude;
+
+    private SurveyLogIndexBlock(long offset, long previousOffset, long firstRecordOffset, int recordCount,
+                                long minTimeMs, long maxTimeMs, int typeMask,
+                                double minLatitude, double minLongitude, double maxLatitude, double maxLongitude)
+    {
+        this.offset = offset;
+        this.previousOffset = previousOffset;
+        this.firstRecordOffset = firstRecordOffset;
+        this.recordCount = recordCount;
+        this.minTimeMs = minTimeMs;
+        this.maxTimeMs = maxTimeMs;
+        this.typeMask = typeMask;
+        this.minLatitude = minLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLatitude = maxLatitude;
+        this.maxLongitude = maxLongitude;
+    }
+
+    /**
+     * @return The file offset of this index block, which is also where the records it covers end.
+     */
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * @return The file offset of the index block before this one, or -1 if this is the first one.
+     */
+    public long getPreviousOffset()
+    {
+        return previousOffset;
+    }
+
+    /**
+     * @return The file offset of the first record covered by this block.
+     */
+    public long getFirstRecordOffset()
+    {
+        return firstRecordOffset;
+    }
+
+    public int getRecordCount()
+    {
+        return recordCount;
+    }
+
+    /**
+     * @return The earliest device time of the records in this block, or {@link Long#MIN_VALUE} if none of them have
+     * a valid device time.
+     */
+    public long getMinTimeMs()
+    {
+        return minTimeMs;
+    }
+
+    /**
+     * @return The latest device time of the records in this block, or {@link Long#MIN_VALUE} if none of them have a
+     * valid device time.
+     */
+    public long getMaxTimeMs()
+    {
+        return maxTimeMs;
+    }
+
+    /**
+     * @return True if at least one of the records in this block is of the provided type.
+     */
+    public boolean containsType(SurveyLogRecordType type)
+    {
+        return (typeMask & type.getMask()) != 0;
+    }
+
+    /**
+     * @return True if at least one of the records in this block has a location, in which case the bounding box is
+     * valid.
+     */
+    public boolean hasLocation()
+    {
+        return !Double.isNaN(minLatitude);
+    }
+
+    public double getMinLatitude()
+    {
+        return minLatitude;
+    }
+
+    public double getMinLongitude()
+    {
+        return minLongitude;
+    }
+
+    public double getMaxLatitude()
+    {
+        return maxLatitude;
+    }
+
+    public double getMaxLongitude()
+    {
+        return maxLongitude;
+    }
+
+    int getTypeMask()
+    {
+        return typeMask;
+    }
+
+    /**
+     * @return True if any of the records in this block could have a device time in the provided range (inclusive).
+     */
+    boolean overlapsTime(long startTimeMs, long endTimeMs)
+    {
+        return minTimeMs != NO_TIME && minTimeMs <= endTimeMs && maxTimeMs >= startTimeMs;
+    }
+
+    /**
+     * @return True if any of the records in this block could be in the provided bounding box (inclusive).
+     */
+    boolean overlapsBounds(double minLat, double minLon, double maxLat, double maxLon)
+    {
+        return hasLocation() && minLatitude <= maxLat && maxLatitude >= minLat
+                && minLongitude <= maxLon && maxLongitude >= minLon;
+    }
+
+    /**
+     * Writes this block in its file format, which is {@link #ENCODED_SIZE} big-endian bytes.
+     */
+    void writeTo(ByteBuffer buffer)
+    {
+        buffer.putLong(previousOffset)
+                .putLong(firstRecordOffset)
+                .putInt(recordCount)
+                .putLong(minTimeMs)
+                .putLong(maxTimeMs)
+                .putInt(typeMask)
+                .putDouble(minLatitude)
+                .putDouble(minLongitude)
+                .putDouble(maxLatitude)
+                .putDouble(maxLongitude);
+    }
+
+    /**
+     * Reads a block that was written by {@link #writeTo(ByteBuffer)}.
+     *
+     * @param offset The file offset of the block.
+     * @param buffer The buffer positioned at the start of the encoded block.
+     */
+    static SurveyLogIndexBlock readFrom(long offset, ByteBuffer buffer)
+    {
+        return new SurveyLogIndexBlock(offset, buffer.getLong(), buffer.getLong(), buffer.getInt(),
+                buffer.getLong(), buffer.getLong(), buffer.getInt(),
+                buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+    }
+
+    /**
+     * Collects the summary of the records as they are written, and creates the index block once the run of records
+     * is complete.
+     * <p>
+     * This class is NOT thread safe.
+     */
+    static final class Accumulator
+    {
+        private long firstRecordOffset;
+        private int recordCount;
+        private long minTimeMs;
+        private long maxTimeMs;
+        private int typeMask;
+        private double minLatitude;
+        private double minLongitude;
+        private double maxLatitude;
+        private double maxLongitude;
+
+        Accumulator()
+        {
+            reset(0);
+        }
+
+        /**
+         * Starts a new run of records.
+         *
+         * @param firstRecordOffset The file offset of the first record in the run.
+         */
+        void reset(long firstRecordOffset)
+        {
+            this.firstRecordOffset = firstRecordOffset;
+            recordCount = 0;
+            minTimeMs = NO_TIME;
+            maxTimeMs = NO_TIME;
+            typeMask = 0;
+            minLatitude = Double.NaN;
+            minLongitude = Double.NaN;
+            maxLatitude = Double.NaN;
+            maxLongitude = Double.NaN;
+        }
+
+        /**
+         * Adds a record to the summary.
+         *
+         * @param type      The type of the record.
+         * @param timeMs    The device time of the record, or {@link #NO_TIME} if it does not have a valid time.
+         * @param latitude  The latitude of the record.
+         * @param longitude The longitude of the record. A location of 0,0 means the record does not have a location.
+         */
+        void add(SurveyLogRecordType type, long timeMs, double latitude, double longitude)
+        {
+            recordCount++;
+            typeMask |= type.getMask();
+
+            if (timeMs != NO_TIME)
+            {
+                if (minTimeMs == NO_TIME || timeMs < minTimeMs) minTimeMs = timeMs;
+                if (maxTimeMs == NO_TIME || timeMs > maxTimeMs) maxTimeMs = timeMs;
+            }
+
+            if (hasLocation(latitude, longitude))
+            {
+                if (Double.isNaN(minLatitude))
+                {
+                    minLatitude = maxLatitude = latitude;
+                    minLongitude = maxLongitude = longitude;
+                } else
+                {
+                    minLatitude = Math.min(minLatitude, latitude);
+                    maxLatitude = Math.max(maxLatitude, latitude);
+                    minLongitude = Math.min(minLongitude, longitude);
+                    maxLongitude = Math.max(maxLongitude, longitude);
+                }
+            }
+        }
+
+        int getRecordCount()
+        {
+            return recordCount;
+        }
+
+        long getFirstRecordOffset()
+        {
+            return firstRecordOffset;
+        }
+
+        /**
+         * @param offset         The file offset that the block is written at.
+         * @param previousOffset The file offset of the previous block, or -1 if there isn't one.
+         * @return The index block for the records added since the last reset.
+         */
+        SurveyLogIndexBlock build(long offset, long previousOffset)
+        {
+            return new SurveyLogIndexBlock(offset, previousOffset, firstRecordOffset, recordCount, minTimeMs,
+                    maxTimeMs, typeMask, minLatitude, minLongitude, maxLatitude, maxLongitude);
+        }
+    }
+
+    /**
+     * @return True if the provided coordinates are a real location; the survey records use 0,0 when there is no
+     * location.
+     */
+    static boolean hasLocation(double latitude, double longitude)
+    {
+        return !(latitude == 0 && longitude == 0) && !Double.isNaN(latitude) && !Double.isNaN(longitude);
+    }
+}
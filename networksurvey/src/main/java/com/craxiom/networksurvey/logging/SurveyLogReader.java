@@ -0,0 +1,550 @@
+package com.craxiom.networksurvey.logging;
+
+import com.craxiom.networksurvey.model.SurveyRecordEnvelope;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads a protobuf survey log that was written by {@link SurveyLogWriter}. This class does not depend on Android, so
+ * it can be used to work with the log files on a computer as well as on the device.
+ * <p>
+ * When the file was closed normally, the index blocks are found by following the footer, and the records are only
+ * read for the blocks that can match the {@link Query}. When it was not (e.g. the app was killed), the index blocks
+ * are found by scanning the file once when it is opened, and any records after the last index block are filtered one
+ * at a time.
+ * <p>
+ * This class is NOT thread safe.
+ *
+ * @since 1.31.0
+ */
+public final class SurveyLogReader implements Closeable
+{
+    private static final int READ_BUFFER_SIZE_BYTES = 64 * 1024;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int formatVersion;
+    private final String creator;
+    private final List<SurveyLogIndexBlock> indexBlocks;
+    private final boolean complete;
+    /**
+     * Where the records that are not covered by an index block start.
+     */
+    private final long unindexedStart;
+    /**
+     * Where the last complete entry ends, which is the start of the footer when there is one.
+     */
+    private final long dataEnd;
+
+    /**
+     * Called for each record that matches the query, in the order they were written.
+     */
+    public interface EntryHandler
+    {
+        /**
+         * @param entry The record that was read.
+         * @return True to keep reading, false to stop.
+         */
+        boolean onEntry(Entry entry) throws IOException;
+    }
+
+    private SurveyLogReader(File logFile) throws IOException
+    {
+        file = new RandomAccessFile(logFile, "r");
+        channel = file.getChannel();
+
+        try
+        {
+            final DataInputStream input = openAt(0);
+            final byte[] magic = new byte[SurveyLogWriter.HEADER_MAGIC.length];
+            input.readFully(magic);
+            if (!Arrays.equals(magic, SurveyLogWriter.HEADER_MAGIC))
+            {
+                throw new IOException(logFile + " is not a protobuf survey log");
+            }
+
+            formatVersion = input.readUnsignedShort();
+            if (formatVersion > SurveyLogWriter.FORMAT_VERSION)
+            {
+                throw new IOException("The survey log " + logFile + " uses a newer format version: " + formatVersion);
+            }
+
+            final byte[] creatorBytes = new byte[input.readUnsignedShort()];
+            input.readFully(creatorBytes);
+            creator = new String(creatorBytes, StandardCharsets.UTF_8);
+            final long dataStart = SurveyLogWriter.HEADER_MAGIC.length + 4L + creatorBytes.length;
+
+            final long footerStart = findFooter();
+            complete = footerStart >= 0;
+            if (complete)
+            {
+                indexBlocks = readIndexBlocksFromFooter(footerStart);
+                dataEnd = footerStart;
+                unindexedStart = indexBlocks.isEmpty() ? dataStart : getEnd(indexBlocks.get(indexBlocks.size() - 1));
+            } else
+            {
+                final List<SurveyLogIndexBlock> scannedBlocks = new ArrayList<>();
+                dataEnd = scanIndexBlocks(dataStart, scannedBlocks);
+                indexBlocks = Collections.unmodifiableList(scannedBlocks);
+                unindexedStart = scannedBlocks.isEmpty() ? dataStart : getEnd(scannedBlocks.get(scannedBlocks.size() - 1));
+            }
+        } catch (IOException | RuntimeException e)
+        {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a protobuf survey log for reading.
+     *
+     * @param logFile The file to read.
+     * @return The reader, which must be closed when it is no longer needed.
+     * @throws IOException If the file could not be read, or is not a protobuf survey log.
+     */
+    public static SurveyLogReader open(File logFile) throws IOException
+    {
+        return new SurveyLogReader(logFile);
+    }
+
+    public int getFormatVersion()
+    {
+        return formatVersion;
+    }
+
+    /**
+     * @return The name and version of the application that created the file.
+     */
+    public String getCreator()
+    {
+        return creator;
+    }
+
+    /**
+     * @return True if the file was closed normally and has a footer, false if the writer never finished it.
+     */
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    /**
+     * @return The index blocks in the order they appear in the file.
+     */
+    public List<SurveyLogIndexBlock> getIndexBlocks()
+    {
+        return indexBlocks;
+    }
+
+    /**
+     * Reads all the records in the file.
+     *
+     * @param handler Called for each record.
+     * @throws IOException If the file could not be read.
+     */
+    public void readAll(EntryHandler handler) throws IOException
+    {
+        read(new Query(), handler);
+    }
+
+    /**
+     * Reads the records that match the provided query, skipping over the index blocks that can't match it.
+     *
+     * @param query   The records to read.
+     * @param handler Called for each matching record.
+     * @throws IOException If the file could not be read.
+     */
+    public void read(Query query, EntryHandler handler) throws IOException
+    {
+        for (SurveyLogIndexBlock indexBlock : indexBlocks)
+        {
+            if (!query.matches(indexBlock)) continue;
+
+            if (!readEntries(indexBlock.getFirstRecordOffset(), indexBlock.getOffset(), query, handler, true)) return;
+        }
+
+        if (unindexedStart < dataEnd) readEntries(unindexedStart, dataEnd, query, handler, complete);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        file.close();
+    }
+
+    /**
+     * Reads the records between the provided offsets.
+     *
+     * @param strict True if the entries are expected to be complete, false if the end of the file might have been
+     *               cut off in the middle of an entry.
+     * @return False if the handler asked to stop.
+     */
+    private boolean readEntries(long start, long end, Query query, EntryHandler handler, boolean strict) throws IOException
+    {
+        final DataInputStream input = openAt(start);
+        long offset = start;
+        while (offset < end)
+        {
+            final long entryOffset = offset;
+            try
+            {
+                final int kind = input.readUnsignedByte();
+                if (kind == SurveyLogWriter.RECORD_ENTRY)
+                {
+                    final int code = input.readUnsignedByte();
+                    final int length = readVarint(input);
+                    offset += 2 + computeVarintSize(length) + length;
+
+                    final SurveyLogRecordType type = SurveyLogRecordType.fromCode(code);
+                    if (type == null || !query.matches(type))
+                    {
+                        skipFully(input, length);
+                        continue;
+                    }
+
+                    final byte[] wireBytes = new byte[length];
+                    input.readFully(wireBytes);
+                    final Message record = type.getDefaultInstance().getParserForType().parseFrom(wireBytes);
+                    if (!query.matches(type, record)) continue;
+
+                    final Entry entry = new Entry(type, entryOffset, new SurveyRecordEnvelope<>(record, wireBytes));
+                    if (!handler.onEntry(entry)) return false;
+                } else if (kind == SurveyLogWriter.INDEX_ENTRY)
+                {
+                    final int length = readVarint(input);
+                    offset += 1 + computeVarintSize(length) + length;
+                    skipFully(input, length);
+                } else
+                {
+                    throw new InvalidProtocolBufferException("Unknown survey log entry kind " + kind + " at offset " + entryOffset);
+                }
+            } catch (EOFException e)
+            {
+                if (strict) throw e;
+                return true; // The writer was cut off in the middle of this entry
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return The offset of the footer, or -1 if the file does not end with a valid footer.
+     */
+    private long findFooter() throws IOException
+    {
+        final long footerStart = channel.size() - SurveyLogWriter.FOOTER_SIZE;
+        if (footerStart < 0) return -1;
+
+        final ByteBuffer footer = readAt(footerStart, SurveyLogWriter.FOOTER_SIZE);
+        if (footer.get() != SurveyLogWriter.FOOTER_ENTRY) return -1;
+
+        final byte[] magic = new byte[SurveyLogWriter.FOOTER_MAGIC.length];
+        footer.position(SurveyLogWriter.FOOTER_SIZE - magic.length);
+        footer.get(magic);
+        return Arrays.equals(magic, SurveyLogWriter.FOOTER_MAGIC) ? footerStart : -1;
+    }
+
+    /**
+     * Follows the chain of index blocks back from the footer.
+     */
+    private List<SurveyLogIndexBlock> readIndexBlocksFromFooter(long footerStart) throws IOException
+    {
+        final ByteBuffer footer = readAt(footerStart + 1, 12);
+        long indexOffset = footer.getLong();
+        final int indexBlockCount = footer.getInt();
+
+        final List<SurveyLogIndexBlock> blocks = new ArrayList<>(indexBlockCount);
+        while (indexOffset >= 0)
+        {
+            if (blocks.size() >= indexBlockCount)
+            {
+                throw new InvalidProtocolBufferException("The survey log has more index blocks than the footer says");
+            }
+
+            final SurveyLogIndexBlock indexBlock = readIndexBlock(indexOffset);
+            blocks.add(indexBlock);
+            indexOffset = indexBlock.getPreviousOffset();
+        }
+
+        Collections.reverse(blocks);
+        return Collections.unmodifiableList(blocks);
+    }
+
+    private SurveyLogIndexBlock readIndexBlock(long offset) throws IOException
+    {
+        final ByteBuffer entry = readAt(offset, 2 + SurveyLogIndexBlock.ENCODED_SIZE);
+        if (entry.get() != SurveyLogWriter.INDEX_ENTRY || entry.get() != SurveyLogIndexBlock.ENCODED_SIZE)
+        {
+            throw new InvalidProtocolBufferException("There is no index block at offset " + offset);
+        }
+
+        return SurveyLogIndexBlock.readFrom(offset, entry);
+    }
+
+    /**
+     * Reads the entries from the provided offset to the end of the file to find the index blocks, stopping at the
+     * first entry that is not complete.
+     *
+     * @return The offset where the last complete entry ends.
+     */
+    private long scanIndexBlocks(long start, List<SurveyLogIndexBlock> blocks) throws IOException
+    {
+        final long fileSize = channel.size();
+        final DataInputStream input = openAt(start);
+        long offset = start;
+        try
+        {
+            while (offset < fileSize)
+            {
+                final int kind = input.readUnsignedByte();
+                final long entryOffset = offset;
+                if (kind == SurveyLogWriter.RECORD_ENTRY)
+                {
+                    input.readUnsignedByte();
+                    final int length = readVarint(input);
+                    skipFully(input, length);
+                    offset += 2 + computeVarintSize(length) + length;
+                } else if (kind == SurveyLogWriter.INDEX_ENTRY)
+                {
+                    final int length = readVarint(input);
+                    final byte[] payload = new byte[length];
+                    input.readFully(payload);
+                    offset += 1 + computeVarintSize(length) + length;
+                    if (length == SurveyLogIndexBlock.ENCODED_SIZE)
+                    {
+                        blocks.add(SurveyLogIndexBlock.readFrom(entryOffset, ByteBuffer.wrap(payload)));
+                    }
+                } else
+                {
+                    break; // Either garbage at the end of the file, or a footer that was not fully written
+                }
+            }
+        } catch (EOFException | InvalidProtocolBufferException e)
+        {
+            // The last entry was cut off, so everything before it is all that can be read
+        }
+
+        return Math.min(offset, fileSize);
+    }
+
+    private DataInputStream openAt(long offset) throws IOException
+    {
+        channel.position(offset);
+        // The channel stream is not closed here because that would close the channel as well
+        return new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), READ_BUFFER_SIZE_BYTES));
+    }
+
+    private ByteBuffer readAt(long offset, int length) throws IOException
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, offset + buffer.position()) < 0)
+            {
+                throw new EOFException("The survey log ends before offset " + (offset + length));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static long getEnd(SurveyLogIndexBlock indexBlock)
+    {
+        return indexBlock.getOffset() + 2 + SurveyLogIndexBlock.ENCODED_SIZE;
+    }
+
+    private static int readVarint(DataInputStream input) throws IOException
+    {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7)
+        {
+            final int b = input.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+            {
+                if (value < 0) break;
+                return value;
+            }
+        }
+
+        throw new InvalidProtocolBufferException("Invalid length in the survey log");
+    }
+
+    private static int computeVarintSize(int value)
+    {
+        int size = 1;
+        while ((value & ~0x7F) != 0)
+        {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void skipFully(DataInputStream input, int length) throws IOException
+    {
+        int remaining = length;
+        while (remaining > 0)
+        {
+            final int skipped = input.skipBytes(remaining);
+            if (skipped <= 0)
+            {
+                // skipBytes can stop short without reaching the end, so read a byte to find out which it was
+                input.readUnsignedByte();
+                remaining--;
+            } else
+            {
+                remaining -= skipped;
+            }
+        }
+    }
+
+    /**
+     * A record that was read from the log.
+     */
+    public static final class Entry
+    {
+        private final SurveyLogRecordType type;
+        private final long offset;
+        private final SurveyRecordEnvelope<Message> envelope;
+
+        Entry(SurveyLogRecordType type, long offset, SurveyRecordEnvelope<Message> envelope)
+        {
+            this.type = type;
+            this.offset = offset;
+            this.envelope = envelope;
+        }
+
+        public SurveyLogRecordType getType()
+        {
+            return type;
+        }
+
+        /**
+         * @return The file offset of the record entry.
+         */
+        public long getOffset()
+        {
+            return offset;
+        }
+
+        /**
+         * @return The record, along with the wire bytes it was read from.
+         */
+        public SurveyRecordEnvelope<Message> getEnvelope()
+        {
+            return envelope;
+        }
+
+        public Message getRecord()
+        {
+            return envelope.getRecord();
+        }
+    }
+
+    /**
+     * The records to read from the log. By default, all of them are read. The index blocks are used to skip over the
+     * parts of the file that can't match, and then each record is checked against the query.
+     */
+    public static final class Query
+    {
+        private int typeMask = -1;
+        private long startTimeMs = Long.MIN_VALUE;
+        private long endTimeMs = Long.MAX_VALUE;
+        private boolean timeRangeSet;
+        private double minLatitude;
+        private double minLongitude;
+        private double maxLatitude;
+        private double maxLongitude;
+        private boolean boundsSet;
+
+        /**
+         * Only reads the records of the provided types.
+         */
+        public Query withTypes(SurveyLogRecordType... types)
+        {
+            typeMask = 0;
+            for (SurveyLogRecordType type : types)
+            {
+                typeMask |= type.getMask();
+            }
+            return this;
+        }
+
+        /**
+         * Only reads the records with a device time in the provided range (inclusive).
+         *
+         * @param startTimeMs The start of the range, in milliseconds since the Unix Epoch.
+         * @param endTimeMs   The end of the range, in milliseconds since the Unix Epoch.
+         */
+        public Query withTimeRange(long startTimeMs, long endTimeMs)
+        {
+            this.startTimeMs = startTimeMs;
+            this.endTimeMs = endTimeMs;
+            timeRangeSet = true;
+            return this;
+        }
+
+        /**
+         * Only reads the records with a location in the provided bounding box (inclusive).
+         */
+        public Query withBounds(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude)
+        {
+            this.minLatitude = minLatitude;
+            this.minLongitude = minLongitude;
+            this.maxLatitude = maxLatitude;
+            this.maxLongitude = maxLongitude;
+            boundsSet = true;
+            return this;
+        }
+
+        boolean matches(SurveyLogIndexBlock indexBlock)
+        {
+            if ((indexBlock.getTypeMask() & typeMask) == 0) return false;
+            if (timeRangeSet && !indexBlock.overlapsTime(startTimeMs, endTimeMs)) return false;
+            return !boundsSet || indexBlock.overlapsBounds(minLatitude, minLongitude, maxLatitude, maxLongitude);
+        }
+
+        boolean matches(SurveyLogRecordType type)
+        {
+            return (typeMask & type.getMask()) != 0;
+        }
+
+        boolean matches(SurveyLogRecordType type, Message record)
+        {
+            if (timeRangeSet)
+            {
+                final long timeMs = SurveyLogWriter.parseTime(type.getDeviceTime(record));
+                if (timeMs == SurveyLogIndexBlock.NO_TIME || timeMs < startTimeMs || timeMs > endTimeMs) return false;
+            }
+
+            if (boundsSet)
+            {
+                final double latitude = type.getLatitude(record);
+                final double longitude = type.getLongitude(record);
+                return SurveyLogIndexBlock.hasLocation(latitude, longitude)
+                        && latitude >= minLatitude && latitude <= maxLatitude
+                        && longitude >= minLongitude && longitude <= maxLongitude;
+            }
+
+            return true;
+        }
+    }
+}
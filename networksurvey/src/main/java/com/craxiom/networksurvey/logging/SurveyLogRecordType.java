@@ -0,0 +1,138 @@
+package com.craxiom.networksurvey.logging;
+
+import com.craxiom.messaging.BluetoothRecord;
+import com.craxiom.messaging.CdmaRecord;
+import com.craxiom.messaging.GnssRecord;
+import com.craxiom.messaging.GsmRecord;
+import com.craxiom.messaging.LteRecord;
+import com.craxiom.messaging.NrRecord;
+import com.craxiom.messaging.UmtsRecord;
+import com.craxiom.messaging.WifiBeaconRecord;
+import com.google.protobuf.Message;
+
+/**
+ * The types of survey records that can be written to a protobuf survey log (see {@link SurveyLogWriter}).
+ * <p>
+ * The code of each type is what is written to the file, so the codes must never change, and a new type must get a
+ * new code. There is room for 32 types because the index blocks keep track of the types in an int bit mask.
+ *
+ * @since 1.31.0
+ */
+public enum SurveyLogRecordType
+{
+    GSM(1, GsmRecord.getDefaultInstance()),
+    CDMA(2, CdmaRecord.getDefaultInstance()),
+    UMTS(3, UmtsRecord.getDefaultInstance()),
+    LTE(4, LteRecord.getDefaultInstance()),
+    NR(5, NrRecord.getDefaultInstance()),
+    WIFI_BEACON(6, WifiBeaconRecord.getDefaultInstance()),
+    BLUETOOTH(7, BluetoothRecord.getDefaultInstance()),
+    GNSS(8, GnssRecord.getDefaultInstance());
+
+    private static final SurveyLogRecordType[] BY_CODE = new SurveyLogRecordType[Integer.SIZE];
+
+    static
+    {
+        for (SurveyLogRecordType type : values())
+        {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    private final int code;
+    private final Message defaultInstance;
+
+    SurveyLogRecordType(int code, Message defaultInstance)
+    {
+        this.code = code;
+        this.defaultInstance = defaultInstance;
+    }
+
+    /**
+     * @return The code that is written to the log file for this type.
+     */
+    public int getCode()
+    {
+        return code;
+    }
+
+    /**
+     * @return The bit for this type in the index block type mask.
+     */
+    int getMask()
+    {
+        return 1 << code;
+    }
+
+    /**
+     * @return The default instance of the protobuf message for this type, which can be used to get the parser or the
+     * descriptor.
+     */
+    public Message getDefaultInstance()
+    {
+        return defaultInstance;
+    }
+
+    /**
+     * @param code The code that was read from the log file.
+     * @return The type for the provided code, or null if the code is not known (e.g. it was added in a newer version).
+     */
+    public static SurveyLogRecordType fromCode(int code)
+    {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    /**
+     * @return The device time of the provided record, which must be of this type.
+     */
+    String getDeviceTime(Message record)
+    {
+        return switch (this)
+        {
+            case GSM -> ((GsmRecord) record).getData().getDeviceTime();
+            case CDMA -> ((CdmaRecord) record).getData().getDeviceTime();
+            case UMTS -> ((UmtsRecord) record).getData().getDeviceTime();
+            case LTE -> ((LteRecord) record).getData().getDeviceTime();
+            case NR -> ((NrRecord) record).getData().getDeviceTime();
+            case WIFI_BEACON -> ((WifiBeaconRecord) record).getData().getDeviceTime();
+            case BLUETOOTH -> ((BluetoothRecord) record).getData().getDeviceTime();
+            case GNSS -> ((GnssRecord) record).getData().getDeviceTime();
+        };
+    }
+
+    /**
+     * @return The latitude of the provided record, which must be of this type.
+     */
+    double getLatitude(Message record)
+    {
+        return switch (this)
+        {
+            case GSM -> ((GsmRecord) record).getData().getLatitude();
+            case CDMA -> ((CdmaRecord) record).getData().getLatitude();
+            case UMTS -> ((UmtsRecord) record).getData().getLatitude();
+            case LTE -> ((LteRecord) record).getData().getLatitude();
+            case NR -> ((NrRecord) record).getData().getLatitude();
+            case WIFI_BEACON -> ((WifiBeaconRecord) record).getData().getLatitude();
+            case BLUETOOTH -> ((BluetoothRecord) record).getData().getLatitude();
+            case GNSS -> ((GnssRecord) record).getData().getLatitude();
+        };
+    }
+
+    /**
+     * @return The longitude of the provided record, which must be of this type.
+     */
+    double getLongitude(Message record)
+    {
+        return switch (this)
+        {
+            case GSM -> ((GsmRecord) record).getData().getLongitude();
+            case CDMA -> ((CdmaRecord) record).getData().getLongitude();
+            case UMTS -> ((UmtsRecord) record).getData().getLongitude();
+            case LTE -> ((LteRecord) record).getData().getLongitude();
+            case NR -> ((NrRecord) record).getData().getLongitude();
+            case WIFI_BEACON -> ((WifiBeaconRecord) record).getData().getLongitude();
+            case BLUETOOTH -> ((BluetoothRecord) record).getData().getLongitude();
+            case GNSS -> ((GnssRecord) record).getData().getLongitude();
+        };
+    }
+}
@@ -0,0 +1,219 @@
+package com.craxiom.networksurvey.logging;
+
+import com.craxiom.networksurvey.model.SurveyRecordEnvelope;
+import com.craxiom.networksurvey.util.Rfc3339Codec;
+import com.google.protobuf.Message;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes survey records to a protobuf survey log, which is the cheapest way to get the records to a file. Each record
+ * is written as the network survey messaging protobuf wire bytes that are already cached in its
+ * {@link SurveyRecordEnvelope}, so logging a record costs about as much as copying it, and no structure is lost.
+ * <p>
+ * The file is append only, and is made up of:
+ * <ul>
+ *     <li>A header: the magic bytes {@code "NSPBLOG\n"}, the format version (2 bytes), and the name of the
+ *     application that created the file (2 byte length and then UTF-8).</li>
+ *     <li>Record entries: the byte {@link #RECORD_ENTRY}, the {@link SurveyLogRecordType} code (1 byte), and then the
+ *     record as a length-delimited protobuf (varint length and then the wire bytes), the same as
+ *     {@link Message#writeDelimitedTo(OutputStream)}.</li>
+ *     <li>Index entries: the byte {@link #INDEX_ENTRY}, a varint length, and then a {@link SurveyLogIndexBlock}. One
+ *     is written every {@link #DEFAULT_INDEX_INTERVAL_RECORDS} records or {@link #DEFAULT_INDEX_INTERVAL_BYTES} bytes,
+ *     whichever comes first, and it summarizes the records written since the previous one.</li>
+ *     <li>A footer once the file is closed: the byte {@link #FOOTER_ENTRY}, the offset of the last index block (8
+ *     bytes), the number of index blocks (4 bytes), the number of records (8 bytes), and the magic bytes
+ *     {@code "NSPBEND\n"}.</li>
+ * </ul>
+ * All the fixed size numbers are big-endian. If the app is killed before the file is closed, everything up to the
+ * last complete entry can still be read; {@link SurveyLogReader} finds the index blocks by scanning the file instead.
+ * <p>
+ * This class is NOT thread safe.
+ *
+ * @since 1.31.0
+ */
+public final class SurveyLogWriter implements Closeable
+{
+    static final byte[] HEADER_MAGIC = "NSPBLOG\n".getBytes(StandardCharsets.US_ASCII);
+    static final byte[] FOOTER_MAGIC = "NSPBEND\n".getBytes(StandardCharsets.US_ASCII);
+    static final int FORMAT_VERSION = 1;
+
+    static final int RECORD_ENTRY = 1;
+    static final int INDEX_ENTRY = 2;
+    static final int FOOTER_ENTRY = 3;
+    static final int FOOTER_SIZE = 1 + 8 + 4 + 8 + 8;
+
+    static final int DEFAULT_INDEX_INTERVAL_RECORDS = 1024;
+    static final int DEFAULT_INDEX_INTERVAL_BYTES = 256 * 1024;
+    private static final int WRITE_BUFFER_SIZE_BYTES = 64 * 1024;
+
+    private final OutputStream outputStream;
+    private final int indexIntervalRecords;
+    private final int indexIntervalBytes;
+    private final SurveyLogIndexBlock.Accumulator indexAccumulator = new SurveyLogIndexBlock.Accumulator();
+    private final ByteBuffer entryBuffer = ByteBuffer.allocate(Math.max(FOOTER_SIZE, 2 + SurveyLogIndexBlock.ENCODED_SIZE));
+
+    private long position;
+    private long recordCount;
+    private long lastIndexOffset = -1;
+    private int indexBlockCount;
+    private boolean closed;
+
+    /**
+     * Creates the writer and writes the file header.
+     *
+     * @param outputStream The stream for the new log file. It is buffered by this writer, and closed when this writer
+     *                     is closed.
+     * @param creator      The name and version of the application that is creating the file.
+     * @throws IOException If the header could not be written.
+     */
+    public SurveyLogWriter(OutputStream outputStream, String creator) throws IOException
+    {
+        this(outputStream, creator, DEFAULT_INDEX_INTERVAL_RECORDS, DEFAULT_INDEX_INTERVAL_BYTES);
+    }
+
+    SurveyLogWriter(OutputStream outputStream, String creator, int indexIntervalRecords, int indexIntervalBytes)
+            throws IOException
+    {
+        this.outputStream = new BufferedOutputStream(outputStream, WRITE_BUFFER_SIZE_BYTES);
+        this.indexIntervalRecords = indexIntervalRecords;
+        this.indexIntervalBytes = indexIntervalBytes;
+
+        final byte[] creatorBytes = creator.getBytes(StandardCharsets.UTF_8);
+        final int creatorLength = Math.min(creatorBytes.length, 0xFFFF);
+        this.outputStream.write(HEADER_MAGIC);
+        writeShort(FORMAT_VERSION);
+        writeShort(creatorLength);
+        this.outputStream.write(creatorBytes, 0, creatorLength);
+        position = HEADER_MAGIC.length + 4L + creatorLength;
+
+        indexAccumulator.reset(position);
+    }
+
+    /**
+     * Writes a record to the file, and then an index block if the current run of records is long enough.
+     *
+     * @param type     The type of the record.
+     * @param envelope The record, which must be of the provided type.
+     * @return The number of bytes written for the record, not including any index block.
+     * @throws IOException If the record could not be written.
+     */
+    public int append(SurveyLogRecordType type, SurveyRecordEnvelope<?> envelope) throws IOException
+    {
+        if (closed) throw new IOException("The survey log has already been closed");
+
+        final Message record = envelope.getRecord();
+
+        outputStream.write(RECORD_ENTRY);
+        outputStream.write(type.getCode());
+        final int entrySize = 2 + envelope.writeDelimitedTo(outputStream);
+        position += entrySize;
+        recordCount++;
+
+        indexAccumulator.add(type, parseTime(type.getDeviceTime(record)), type.getLatitude(record),
+                type.getLongitude(record));
+
+        if (indexAccumulator.getRecordCount() >= indexIntervalRecords
+                || position - indexAccumulator.getFirstRecordOffset() >= indexIntervalBytes)
+        {
+            writeIndexBlock();
+        }
+
+        return entrySize;
+    }
+
+    /**
+     * Flushes the buffered entries to the file. The records that are not covered by an index block yet can still be
+     * read if the file is never closed.
+     *
+     * @throws IOException If the entries could not be written.
+     */
+    public void flush() throws IOException
+    {
+        if (!closed) outputStream.flush();
+    }
+
+    /**
+     * @return The size of the file so far, including the entries that are still buffered.
+     */
+    public long getBytesWritten()
+    {
+        return position;
+    }
+
+    public long getRecordCount()
+    {
+        return recordCount;
+    }
+
+    /**
+     * Writes an index block for any records that are not covered by one yet, and then the footer, and closes the
+     * file.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (closed) return;
+
+        try
+        {
+            if (indexAccumulator.getRecordCount() > 0) writeIndexBlock();
+
+            entryBuffer.clear();
+            entryBuffer.put((byte) FOOTER_ENTRY)
+                    .putLong(lastIndexOffset)
+                    .putInt(indexBlockCount)
+                    .putLong(recordCount)
+                    .put(FOOTER_MAGIC);
+            outputStream.write(entryBuffer.array(), 0, entryBuffer.position());
+            position += FOOTER_SIZE;
+        } finally
+        {
+            closed = true;
+            outputStream.close();
+        }
+    }
+
+    private void writeIndexBlock() throws IOException
+    {
+        final SurveyLogIndexBlock indexBlock = indexAccumulator.build(position, lastIndexOffset);
+
+        entryBuffer.clear();
+        entryBuffer.put((byte) INDEX_ENTRY).put((byte) SurveyLogIndexBlock.ENCODED_SIZE); // Small enough for 1 varint byte
+        indexBlock.writeTo(entryBuffer);
+        outputStream.write(entryBuffer.array(), 0, entryBuffer.position());
+
+        lastIndexOffset = position;
+        indexBlockCount++;
+        position += entryBuffer.position();
+        indexAccumulator.reset(position);
+    }
+
+    private void writeShort(int value) throws IOException
+    {
+        outputStream.write((value >>> 8) & 0xFF);
+        outputStream.write(value & 0xFF);
+    }
+
+    /**
+     * @return The device time in milliseconds since the Unix Epoch, or {@link SurveyLogIndexBlock#NO_TIME} if the
+     * time is missing or invalid.
+     */
+    static long parseTime(String deviceTime)
+    {
+        if (deviceTime == null || deviceTime.isEmpty()) return SurveyLogIndexBlock.NO_TIME;
+
+        try
+        {
+            return Rfc3339Codec.parseEpochMillis(deviceTime);
+        } catch (RuntimeException e)
+        {
+            return SurveyLogIndexBlock.NO_TIME;
+        }
+    }
+}
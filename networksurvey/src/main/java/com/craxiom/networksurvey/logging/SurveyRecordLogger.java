@@ -3,16 +3,16 @@ package com.craxiom.networksurvey.logging;
 import android.content.Context;
 import android.os.Environment;
 import android.os.Handler;
-import android.os.Looper;
+import android.os.SystemClock;
 import android.widget.Toast;
 
-import com.craxiom.messaging.LteBandwidth;
 import com.craxiom.networksurvey.constants.CellularMessageConstants;
-import com.craxiom.networksurvey.constants.LteMessageConstants;
 import com.craxiom.networksurvey.constants.MessageConstants;
 import com.craxiom.networksurvey.constants.NetworkSurveyConstants;
 import com.craxiom.networksurvey.constants.csv.CellularCsvConstants;
 import com.craxiom.networksurvey.constants.csv.CsvConstants;
+import com.craxiom.networksurvey.listeners.ILosslessSurveyListener;
+import com.craxiom.networksurvey.model.GeoPackageIndexMode;
 import com.craxiom.networksurvey.services.NetworkSurveyService;
 import com.craxiom.networksurvey.services.SurveyRecordProcessor;
 import com.craxiom.networksurvey.util.PreferenceUtils;
@@ -20,8 +20,11 @@ import com.craxiom.networksurvey.util.PreferenceUtils;
 import java.io.File;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 
@@ -35,6 +38,7 @@ import mil.nga.geopackage.db.GeoPackageDataType;
 import mil.nga.geopackage.features.columns.GeometryColumns;
 import mil.nga.geopackage.features.columns.GeometryColumnsDao;
 import mil.nga.geopackage.features.user.FeatureColumn;
+import mil.nga.geopackage.features.user.FeatureDao;
 import mil.nga.geopackage.features.user.FeatureRow;
 import mil.nga.geopackage.features.user.FeatureTable;
 import mil.nga.geopackage.srs.SpatialReferenceSystem;
@@ -49,21 +53,29 @@ import timber.log.Timber;
  *
  * @since 0.0.5
  */
-public abstract class SurveyRecordLogger
+public abstract class SurveyRecordLogger implements ILosslessSurveyListener
 {
     private static final String JOURNAL_FILE_SUFFIX = "-journal";
     private static final int RECORD_COUNT_INTERVAL = 5000;
+    private static final long WRITE_QUEUE_DRAIN_TIMEOUT_MS = 5_000;
     static final long WGS84_SRS = 4326;
 
     private NetworkSurveyService networkSurveyService;
     private Context applicationContext;
-    Handler handler;
+    private final LogWriterThread writerThread;
+    private Handler handler;
     private final String logDirectoryName;
     private final String fileNamePrefix;
     private final GeoPackageManager geoPackageManager;
     private final RolloverWorker rolloverWorker = new RolloverWorker();
+    private final StandbyFileRollover<GeoPackage> standbyRollover;
+    private volatile GeoPackageIndexMode indexMode = GeoPackageIndexMode.NONE;
 
     GeoPackage geoPackage;
+    /**
+     * Maintains the indexes of the {@link #geoPackage}, or null if it is not indexed.
+     */
+    private GeoPackageIndexer geoPackageIndexer;
     volatile boolean loggingEnabled;
     private String logFileDirectoryPath;
 
@@ -73,19 +85,41 @@ public abstract class SurveyRecordLogger
      */
     protected final Object geoPackageLock = new Object();
 
+    /**
+     * The rows that have been created but not yet written to the GeoPackage file. Rows are written in a single
+     * transaction when a scan group ends, or when the batch size or age limit is reached. Only access this list while
+     * holding the {@link #geoPackageLock}.
+     */
+    private final List<PendingRow> pendingRows = new ArrayList<>();
+
+    /**
+     * The row encoders for the tables in the current GeoPackage file. They hold compiled statements, so they are
+     * closed and recreated each time a new file is opened.
+     */
+    private final List<GeoPackageRowEncoder<?>> rowEncoders = new ArrayList<>();
+    private int batchMaxRows = NetworkSurveyConstants.DEFAULT_GEOPACKAGE_BATCH_MAX_ROWS;
+    private long batchMaxAgeMs = NetworkSurveyConstants.DEFAULT_GEOPACKAGE_BATCH_MAX_AGE_MS;
+    private final Runnable batchTimeoutFlusher = this::flushPendingRowsWithLock;
+
     /**
      * Constructs a Logger that writes Survey records to a GeoPackage SQLite database.
+     * <p>
+     * Each logger gets its own writer thread so that writing to the file never delays the scans, which are scheduled
+     * on the service's looper.
      *
      * @param networkSurveyService The Service instance that is running this logger.
-     * @param serviceLooper        The Looper associated with the service that can be used to do any background processing.
      * @param logDirectoryName     The parent directory name to write all the files in.
      * @param fileNamePrefix       The prefix to use for the GeoPackage file name.
      */
-    SurveyRecordLogger(NetworkSurveyService networkSurveyService, Looper serviceLooper, String logDirectoryName, String fileNamePrefix)
+    SurveyRecordLogger(NetworkSurveyService networkSurveyService, String logDirectoryName, String fileNamePrefix)
     {
         this.networkSurveyService = networkSurveyService;
         applicationContext = networkSurveyService.getApplicationContext();
-        handler = new Handler(serviceLooper);
+        writerThread = new LogWriterThread("GeoPackageWriter-" + getClass().getSimpleName());
+        handler = writerThread.getHandler();
+        networkSurveyService.registerLogWriterThread(writerThread);
+        standbyRollover = new StandbyFileRollover<>(getClass().getSimpleName(), this::createGeoPackage,
+                this::discardGeoPackage, () -> postWrite(this::rolloverToStandbyIfPending));
         this.logDirectoryName = logDirectoryName;
         this.fileNamePrefix = fileNamePrefix;
 
@@ -94,13 +128,20 @@ public abstract class SurveyRecordLogger
 
     public void onDestroy()
     {
+        networkSurveyService.unregisterLogWriterThread(writerThread);
         networkSurveyService = null;
         applicationContext = null;
         handler = null;
+        standbyRollover.shutdown();
+        // Let any writes that are already queued finish before the thread exits
+        writerThread.quitSafely();
     }
 
     /**
      * Create all GeoPackage table(s) that can be populated with records.
+     * <p>
+     * This is called from a background thread when the standby file for a rollover is created, so it must only work
+     * with the provided GeoPackage and not change the state of this logger.
      *
      * @param geoPackage The GeoPackage to create the table in.
      * @param srs        The SRS to use for the table coordinates.
@@ -108,6 +149,19 @@ public abstract class SurveyRecordLogger
      */
     abstract void createTables(GeoPackage geoPackage, SpatialReferenceSystem srs) throws SQLException;
 
+    /**
+     * Creates the row encoders for the tables in the provided GeoPackage, which is about to become the file that is
+     * logged to. Encoders should be registered with {@link #registerRowEncoder(GeoPackageRowEncoder)}.
+     * <p>
+     * This method is called while holding the {@link #geoPackageLock}.
+     *
+     * @param geoPackage The GeoPackage that the tables have already been created in.
+     * @since 1.31.0
+     */
+    void createRowEncoders(GeoPackage geoPackage)
+    {
+    }
+
     /**
      * Sets up all the GeoPackage stuff so that the survey records can be written to a log file.
      * <p>
@@ -119,6 +173,9 @@ public abstract class SurveyRecordLogger
      */
     public boolean enableLogging(boolean enable)
     {
+        // Let the writer thread finish with the records that were already posted so that they end up in the file
+        if (!enable && loggingEnabled) awaitPostedWrites();
+
         synchronized (geoPackageLock)
         {
             try
@@ -128,9 +185,15 @@ public abstract class SurveyRecordLogger
                     if (loggingEnabled)
                     {
                         loggingEnabled = false;
-                        geoPackage.close();
+                        flushPendingRows();
+                        closeRowEncoders();
+                        final boolean indexing = geoPackageIndexer != null;
+                        closeGeoPackage(geoPackage, geoPackageIndexer);
                         geoPackage = null;
-                        removeTempFiles();
+                        geoPackageIndexer = null;
+                        standbyRollover.cancel();
+                        // Leave the journal alone if the file is still being indexed in the background
+                        if (!indexing) removeTempFiles();
                         rolloverWorker.reset();
                         return true;
                     }
@@ -140,6 +203,8 @@ public abstract class SurveyRecordLogger
 
                 if (!isExternalStorageWritable()) return false;
 
+                updateIndexMode();
+                updateBatchLimits();
                 boolean fileCreated = prepareGeoPackageForLogging();
 
                 updateRolloverWorker();
@@ -148,16 +213,43 @@ public abstract class SurveyRecordLogger
             } catch (Exception e)
             {
                 Timber.e(e, "Caught an exception when trying prepare GeoPackage file for logging");
+                clearPendingRows();
+                closeRowEncoders();
                 if (geoPackage != null)
                 {
                     geoPackage.close();
                     geoPackage = null;
                 }
+                geoPackageIndexer = null;
                 return false;
             }
         }
     }
 
+    /**
+     * Waits for the writes that have already been posted to the writer thread to run. The writes hold the lock on the
+     * {@link #geoPackageLock}, so this must be called without holding it.
+     */
+    private void awaitPostedWrites()
+    {
+        if (Thread.currentThread() == writerThread) return;
+
+        final CountDownLatch written = new CountDownLatch(1);
+        if (!writerThread.post(written::countDown)) return;
+
+        try
+        {
+            if (!written.await(WRITE_QUEUE_DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+            {
+                Timber.w("Timed out waiting for the GeoPackage writer to finish the queued records, %d writes outstanding",
+                        writerThread.getBacklog());
+            }
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * Creates and sets up a GeoPackage file to be ready for survey logging.
      * <p>
@@ -168,38 +260,175 @@ public abstract class SurveyRecordLogger
      * @throws SQLException Thrown if database manipulations resulted in failure.
      */
     private boolean prepareGeoPackageForLogging() throws SQLException
+    {
+        final GeoPackage newGeoPackage = createGeoPackage();
+
+        if (newGeoPackage == null)
+        {
+            final String errorMessage = "Error: Unable to create the GeoPackage file.  No logging will be recorded.";
+            Toast.makeText(networkSurveyService.getApplicationContext(), errorMessage, Toast.LENGTH_SHORT).show();
+            return false;
+        }
+
+        activateGeoPackage(newGeoPackage);
+        return true;
+    }
+
+    /**
+     * Creates a new GeoPackage file with all the tables. This does not touch the file that is currently being logged
+     * to, so it can be called from any thread.
+     *
+     * @return The new GeoPackage, or null if it could not be created.
+     * @throws SQLException Thrown if database manipulations resulted in failure.
+     * @since 1.31.0
+     */
+    private GeoPackage createGeoPackage() throws SQLException
     {
         final String loggingFile = createPublicStorageFilePath();
 
         Timber.i("Creating the log file: %s", loggingFile);
 
         final boolean created = geoPackageManager.create(loggingFile);
-        final Context applicationContext = networkSurveyService.getApplicationContext();
 
         if (!created)
         {
-            final String errorMessage = "Error: Unable to create the GeoPackage file.  No logging will be recorded.";
-            Timber.e(errorMessage);
-            Toast.makeText(applicationContext, errorMessage, Toast.LENGTH_SHORT).show();
-            return false;
+            Timber.e("Unable to create the GeoPackage file %s", loggingFile);
+            return null;
         }
 
-        geoPackage = geoPackageManager.open(loggingFile);
-        if (geoPackage == null)
+        final GeoPackage newGeoPackage = geoPackageManager.open(loggingFile);
+        if (newGeoPackage == null)
         {
-            final String errorMessage = "Error: Unable to open the GeoPackage file.  No logging will be recorded.";
-            Timber.e(errorMessage);
-            Toast.makeText(applicationContext, errorMessage, Toast.LENGTH_SHORT).show();
-            return false;
+            Timber.e("Unable to open the GeoPackage file %s", loggingFile);
+            return null;
         }
 
-        final SpatialReferenceSystem spatialReferenceSystem = geoPackage.getSpatialReferenceSystemDao()
-                .getOrCreateCode(ProjectionConstants.AUTHORITY_EPSG, ProjectionConstants.EPSG_WORLD_GEODETIC_SYSTEM);
+        try
+        {
+            final SpatialReferenceSystem spatialReferenceSystem = newGeoPackage.getSpatialReferenceSystemDao()
+                    .getOrCreateCode(ProjectionConstants.AUTHORITY_EPSG, ProjectionConstants.EPSG_WORLD_GEODETIC_SYSTEM);
 
-        geoPackage.createGeometryColumnsTable();
-        createTables(geoPackage, spatialReferenceSystem);
+            newGeoPackage.createGeometryColumnsTable();
+            createTables(newGeoPackage, spatialReferenceSystem);
 
-        return true;
+            if (indexMode == GeoPackageIndexMode.INCREMENTAL) GeoPackageIndexer.createEmptyIndexes(newGeoPackage);
+        } catch (SQLException | RuntimeException e)
+        {
+            newGeoPackage.close();
+            throw e;
+        }
+
+        return newGeoPackage;
+    }
+
+    /**
+     * Makes the provided GeoPackage the file that is logged to.
+     * <p>
+     * This method is NOT thread safe and it is assumed the caller has already gotten a lock on the
+     * {@link #geoPackageLock} before making a call to this method.
+     */
+    private void activateGeoPackage(GeoPackage newGeoPackage)
+    {
+        geoPackage = newGeoPackage;
+        createRowEncoders(newGeoPackage);
+
+        try
+        {
+            geoPackageIndexer = GeoPackageIndexer.create(newGeoPackage, indexMode);
+        } catch (Exception e)
+        {
+            Timber.e(e, "Could not set up the indexes for the GeoPackage file %s", newGeoPackage.getName());
+            geoPackageIndexer = null;
+        }
+    }
+
+    /**
+     * Closes a GeoPackage file that is no longer being logged to. If the file is indexed, the indexes are completed
+     * on a background thread first so that the writers don't have to wait for it.
+     *
+     * @param closingGeoPackage The GeoPackage to close.
+     * @param indexer           The indexer for the GeoPackage, or null if it is not indexed.
+     */
+    private void closeGeoPackage(GeoPackage closingGeoPackage, GeoPackageIndexer indexer)
+    {
+        if (indexer == null)
+        {
+            closingGeoPackage.close();
+            return;
+        }
+
+        standbyRollover.runInBackground(() -> {
+            try
+            {
+                indexer.completeIndexes();
+            } catch (Exception e)
+            {
+                Timber.e(e, "Could not complete the indexes for the GeoPackage file %s", closingGeoPackage.getName());
+            } finally
+            {
+                closingGeoPackage.close();
+            }
+        });
+    }
+
+    /**
+     * Closes and deletes a standby GeoPackage that was never logged to.
+     */
+    private void discardGeoPackage(GeoPackage standbyGeoPackage)
+    {
+        try
+        {
+            final String name = standbyGeoPackage.getName();
+            final File file = geoPackageManager.getFile(name);
+            standbyGeoPackage.close();
+            geoPackageManager.delete(name);
+            if (file != null && file.exists() && !file.delete())
+            {
+                Timber.w("Could not delete the unused standby GeoPackage file %s", file);
+            }
+        } catch (Exception e)
+        {
+            Timber.e(e, "Could not discard the standby GeoPackage file");
+        }
+    }
+
+    /**
+     * Switches to the standby GeoPackage file. This only swaps the file that the rows are written to, so the writers
+     * are held up for about as long as it takes to close the old file.
+     * <p>
+     * This method is NOT thread safe and it is assumed the caller has already gotten a lock on the
+     * {@link #geoPackageLock} before making a call to this method.
+     */
+    private void rolloverToGeoPackage(GeoPackage standbyGeoPackage)
+    {
+        if (!loggingEnabled || geoPackage == null)
+        {
+            discardGeoPackage(standbyGeoPackage);
+            return;
+        }
+
+        Timber.i("Rolling over to the GeoPackage file %s", standbyGeoPackage.getName());
+
+        // Write out any pending rows so that they end up in the file that they were queued for
+        flushPendingRows();
+        closeRowEncoders();
+        final GeoPackage oldGeoPackage = geoPackage;
+        final GeoPackageIndexer oldIndexer = geoPackageIndexer;
+        activateGeoPackage(standbyGeoPackage);
+        closeGeoPackage(oldGeoPackage, oldIndexer);
+    }
+
+    /**
+     * Switches to the standby file if the current file already reached the rollover size before the standby file was
+     * ready. Run on the writer thread once the standby file is ready.
+     */
+    private void rolloverToStandbyIfPending()
+    {
+        synchronized (geoPackageLock)
+        {
+            final GeoPackage standbyGeoPackage = standbyRollover.takeStandbyIfRolloverPending();
+            if (standbyGeoPackage != null) rolloverToGeoPackage(standbyGeoPackage);
+        }
     }
 
     /**
@@ -214,6 +443,16 @@ public abstract class SurveyRecordLogger
         rolloverWorker.update(logRolloverSize);
     }
 
+    /**
+     * Reads the GeoPackage index mode preference. A change only applies to the files created after it.
+     *
+     * @since 1.31.0
+     */
+    private void updateIndexMode()
+    {
+        indexMode = PreferenceUtils.getGeoPackageIndexModePreference(applicationContext);
+    }
+
     /**
      * Checks to see if the rollover worker needs to initiate the creation of a new log file.
      *
@@ -225,23 +464,225 @@ public abstract class SurveyRecordLogger
     }
 
     /**
-     * Update the max log size if the preference has changed via shared preferences.
+     * Reads the limits used to decide when a batch of pending rows is committed to the GeoPackage file from the
+     * SharedPreferences, or the MDM properties if enabled. A batch is always committed at the end of a scan group, but
+     * dense environments (e.g. hundreds of BLE devices) or records that don't come in groups also rely on these limits.
+     *
+     * @since 1.31.0
+     */
+    private void updateBatchLimits()
+    {
+        final int maxRows = PreferenceUtils.getGeoPackageBatchMaxRowsPreference(applicationContext);
+        final int maxAgeMs = PreferenceUtils.getGeoPackageBatchMaxAgeMsPreference(applicationContext);
+
+        synchronized (geoPackageLock)
+        {
+            batchMaxRows = maxRows;
+            batchMaxAgeMs = maxAgeMs;
+        }
+    }
+
+    /**
+     * Adds the provided row to the pending batch. The batch is written to the GeoPackage file in a single transaction
+     * once the size or time limit is reached, or when {@link #flushPendingRows()} is called.
+     * <p>
+     * This method is NOT thread safe and it is assumed the caller has already gotten a lock on the
+     * {@link #geoPackageLock} before making a call to this method.
+     *
+     * @param featureDao The DAO for the table that the row belongs to.
+     * @param row        The fully populated row to write.
+     * @since 1.31.0
+     */
+    void queueRow(FeatureDao featureDao, FeatureRow row)
+    {
+        addPendingRow(new PendingRow(featureDao, row, null, null));
+    }
+
+    /**
+     * Adds the provided record data to the pending batch. The data is bound to the encoder's prepared statement when
+     * the batch is written, so no {@link FeatureRow} is created for it.
+     * <p>
+     * This method is NOT thread safe and it is assumed the caller has already gotten a lock on the
+     * {@link #geoPackageLock} before making a call to this method.
+     *
+     * @param encoder The encoder for the table that the record belongs to.
+     * @param data    The record data to write.
+     * @since 1.31.0
+     */
+    <T> void queueRow(GeoPackageRowEncoder<T> encoder, T data)
+    {
+        addPendingRow(new PendingRow(null, null, encoder, data));
+    }
+
+    private void addPendingRow(PendingRow pendingRow)
+    {
+        pendingRows.add(pendingRow);
+
+        final int pendingRowCount = pendingRows.size();
+        if (pendingRowCount >= batchMaxRows)
+        {
+            flushPendingRows();
+        } else if (pendingRowCount == 1 && handler != null)
+        {
+            handler.postAtTime(batchTimeoutFlusher, this, SystemClock.uptimeMillis() + batchMaxAgeMs);
+        }
+    }
+
+    /**
+     * Posts a write to this logger's writer thread. All the reads and writes of the GeoPackage file should go through
+     * here so that they are kept off the service's looper.
+     *
+     * @param write The task that writes to the GeoPackage file.
+     * @since 1.31.0
+     */
+    void postWrite(Runnable write)
+    {
+        writerThread.post(write);
+    }
+
+    /**
+     * Keeps track of the provided encoder so that its statement is closed along with the GeoPackage file. Should be
+     * called from {@link #createRowEncoders(GeoPackage)}.
+     *
+     * @param encoder The encoder to register.
+     * @return The provided encoder, for convenience.
+     * @since 1.31.0
+     */
+    <E extends GeoPackageRowEncoder<?>> E registerRowEncoder(E encoder)
+    {
+        rowEncoders.add(encoder);
+        return encoder;
+    }
+
+    /**
+     * Closes the compiled statements for the current GeoPackage file.
+     * <p>
+     * This method is NOT thread safe and it is assumed the caller has already gotten a lock on the
+     * {@link #geoPackageLock} before making a call to this method.
+     */
+    private void closeRowEncoders()
+    {
+        for (GeoPackageRowEncoder<?> encoder : rowEncoders)
+        {
+            try
+            {
+                encoder.close();
+            } catch (Exception e)
+            {
+                Timber.w(e, "Could not close the row encoder for the %s table", encoder.getTableName());
+            }
+        }
+        rowEncoders.clear();
+    }
+
+    /**
+     * Posts a request to the writer thread to write out all the pending rows. Because the write tasks are posted to
+     * the same thread, calling this after posting all the records for a scan group results in one transaction per group.
+     *
+     * @since 1.31.0
+     */
+    void onScanGroupComplete()
+    {
+        if (!loggingEnabled) return;
+
+        postWrite(this::flushPendingRowsWithLock);
+    }
+
+    /**
+     * Gets the {@link #geoPackageLock} and then writes out all the pending rows.
+     */
+    private void flushPendingRowsWithLock()
+    {
+        synchronized (geoPackageLock)
+        {
+            flushPendingRows();
+        }
+    }
+
+    /**
+     * Writes all the pending rows to the GeoPackage file in a single transaction.
+     * <p>
+     * This method is NOT thread safe and it is assumed the caller has already gotten a lock on the
+     * {@link #geoPackageLock} before making a call to this method.
+     *
+     * @since 1.31.0
+     */
+    void flushPendingRows()
+    {
+        if (handler != null) handler.removeCallbacksAndMessages(this);
+
+        if (pendingRows.isEmpty()) return;
+
+        if (geoPackage == null)
+        {
+            Timber.w("Dropping %d pending GeoPackage rows because the GeoPackage file is closed", pendingRows.size());
+            clearPendingRows();
+            return;
+        }
+
+        geoPackage.beginTransaction();
+        try
+        {
+            for (PendingRow pendingRow : pendingRows)
+            {
+                try
+                {
+                    pendingRow.insert();
+                } catch (Exception e)
+                {
+                    // Don't let one bad row cause the rest of the batch to be rolled back
+                    Timber.e(e, "Unable to write a row to the %s GeoPackage table", pendingRow.getTableName());
+                }
+            }
+        } finally
+        {
+            geoPackage.endTransaction(true);
+            clearPendingRows();
+        }
+
+        if (geoPackageIndexer != null)
+        {
+            try
+            {
+                geoPackageIndexer.indexNewRows();
+            } catch (Exception e)
+            {
+                Timber.e(e, "Unable to add the new rows to the GeoPackage indexes");
+            }
+        }
+    }
+
+    /**
+     * Removes all the pending rows without writing them.
+     */
+    private void clearPendingRows()
+    {
+        pendingRows.clear();
+    }
+
+    /**
+     * Update the max log size, the index mode, and the batch limits if the preferences have changed via shared
+     * preferences.
      *
      * @since 0.4.0
      */
     public void onSharedPreferenceChanged()
     {
         updateRolloverWorker();
+        updateIndexMode();
+        updateBatchLimits();
     }
 
     /**
-     * Update the max log size if the preference has changed via MDM.
+     * Update the max log size, the index mode, and the batch limits if the preferences have changed via MDM.
      *
      * @since 0.4.0
      */
     public void onMdmPreferenceChanged()
     {
         updateRolloverWorker();
+        updateIndexMode();
+        updateBatchLimits();
     }
 
     /**
@@ -305,21 +746,6 @@ public abstract class SurveyRecordLogger
         geometryColumnsDao.create(geometryColumns);
     }
 
-    /**
-     * Converts the LTE Bandwidth to a float and sets it on the provided row.
-     *
-     * @param featureRow   The row of the GeoPackage file to set the LTE Bandwidth on.
-     * @param lteBandwidth The LTE Bandwidth enum to convert to a float.
-     */
-    void setLteBandwidth(FeatureRow featureRow, LteBandwidth lteBandwidth)
-    {
-        final String lteBandwidthString = LteMessageConstants.getLteBandwidth(lteBandwidth);
-        if (!lteBandwidthString.isEmpty())
-        {
-            featureRow.setValue(LteMessageConstants.BANDWIDTH_COLUMN, lteBandwidthString);
-        }
-    }
-
     /**
      * Sets the provided value on the row at the specified column as an int ({@link GeoPackageDataType#MEDIUMINT}).
      *
@@ -480,33 +906,29 @@ public abstract class SurveyRecordLogger
 
                 if (recordCount.compareAndSet(RECORD_COUNT_INTERVAL, 0))
                 {
-                    File file;
-                    // Need to synchronize so that we don't try to get the file while a new one is being created.
+                    // Need to synchronize so that we don't try to get the file while a new one is being swapped in.
                     synchronized (geoPackageLock)
                     {
-                        file = geoPackageManager.getFile(geoPackage.getName());
-                    }
-                    final long fileSizeBytes = file.length();
+                        if (geoPackage == null) return;
 
-                    Timber.v("Checking GeoPackage file size, currently at: %s bytes", fileSizeBytes);
-                    if (fileSizeBytes >= rolloverSizeBytes)
-                    {
-                        // This task is protected by the {@link #geoPackageLock} to prevent closing a file that is
-                        // currently being logged to.
-                        synchronized (geoPackageLock)
+                        // Write out any pending rows so that the file size is accurate, and so that they end up in
+                        // the current file if a rollover is needed.
+                        flushPendingRows();
+                        final long fileSizeBytes = geoPackageManager.getFile(geoPackage.getName()).length();
+
+                        Timber.v("Checking GeoPackage file size, currently at: %s bytes", fileSizeBytes);
+
+                        // The standby file is created on a background thread once the current file gets close to the
+                        // rollover size, so all that is left to do here is swap it in.
+                        final GeoPackage standbyGeoPackage = standbyRollover.check(fileSizeBytes, rolloverSizeBytes);
+                        if (standbyGeoPackage != null)
                         {
                             try
                             {
-                                geoPackage.close();
-
-                                boolean fileCreated = prepareGeoPackageForLogging();
-                                if (!fileCreated)
-                                {
-                                    Timber.e("Failed to create a new GeoPackage file");
-                                }
+                                rolloverToGeoPackage(standbyGeoPackage);
                             } catch (Exception e)
                             {
-                                Timber.e(e, "Error occurred while trying to create a GeoPackage file");
+                                Timber.e(e, "Error occurred while trying to roll over to a new GeoPackage file");
                             }
                         }
                     }
@@ -526,4 +948,41 @@ public abstract class SurveyRecordLogger
             recordCount.set(0);
         }
     }
+
+    /**
+     * A row that is waiting to be written to the GeoPackage file. It is either a fully populated {@link FeatureRow},
+     * or record data that is bound to a {@link GeoPackageRowEncoder} when it is written.
+     */
+    private static final class PendingRow
+    {
+        private final FeatureDao featureDao;
+        private final FeatureRow featureRow;
+        private final GeoPackageRowEncoder<Object> encoder;
+        private final Object data;
+
+        @SuppressWarnings("unchecked")
+        private PendingRow(FeatureDao featureDao, FeatureRow featureRow, GeoPackageRowEncoder<?> encoder, Object data)
+        {
+            this.featureDao = featureDao;
+            this.featureRow = featureRow;
+            this.encoder = (GeoPackageRowEncoder<Object>) encoder;
+            this.data = data;
+        }
+
+        private void insert()
+        {
+            if (encoder != null)
+            {
+                encoder.insert(data);
+            } else
+            {
+                featureDao.insert(featureRow);
+            }
+        }
+
+        private String getTableName()
+        {
+            return encoder != null ? encoder.getTableName() : featureDao.getTableName();
+        }
+    }
 }
@@ -29,9 +29,11 @@ import com.craxiom.messaging.UmtsRecord;
 import com.craxiom.messaging.UmtsRecordData;
 import com.craxiom.networksurvey.constants.NetworkSurveyConstants;
 import com.craxiom.networksurvey.listeners.ICellularSurveyRecordListener;
+import com.craxiom.networksurvey.model.CellularRecordWrapper;
 import com.craxiom.networksurvey.services.NetworkSurveyService;
 
 import java.io.IOException;
+import java.util.List;
 
 import timber.log.Timber;
 
@@ -73,6 +75,12 @@ public class UmtsCsvLogger extends CsvRecordLogger implements ICellularSurveyRec
         }
     }
 
+    @Override
+    public void onCellularBatch(List<CellularRecordWrapper> cellularGroup, int subscriptionId)
+    {
+        flushRecords();
+    }
+
     /**
      * @return A String array that contains the UMTS record values that can be written out as a CSV
      * row.
@@ -86,13 +86,7 @@ public class WifiCsvLogger extends CsvRecordLogger implements IWifiSurveyRecordL
             }
         });
 
-        try
-        {
-            printer.flush();
-        } catch (IOException e)
-        {
-            Timber.e(e, "Could not flush the Wi-Fi records to the CSV file");
-        }
+        flushRecords();
     }
 
     /**
@@ -1,10 +1,9 @@
 package com.craxiom.networksurvey.logging;
 
-import android.os.Looper;
-
 import com.craxiom.messaging.WifiBeaconRecordData;
 import com.craxiom.messaging.wifi.CipherSuite;
 import com.craxiom.messaging.wifi.EncryptionType;
+import com.craxiom.networksurvey.constants.MessageConstants;
 import com.craxiom.networksurvey.constants.NetworkSurveyConstants;
 import com.craxiom.networksurvey.constants.WifiBeaconMessageConstants;
 import com.craxiom.networksurvey.constants.csv.WifiCsvConstants;
@@ -21,11 +20,7 @@ import java.util.stream.Collectors;
 import mil.nga.geopackage.GeoPackage;
 import mil.nga.geopackage.db.GeoPackageDataType;
 import mil.nga.geopackage.features.user.FeatureColumn;
-import mil.nga.geopackage.features.user.FeatureDao;
-import mil.nga.geopackage.features.user.FeatureRow;
-import mil.nga.geopackage.geom.GeoPackageGeometryData;
 import mil.nga.geopackage.srs.SpatialReferenceSystem;
-import mil.nga.sf.Point;
 import timber.log.Timber;
 
 /**
@@ -35,21 +30,23 @@ import timber.log.Timber;
  */
 public class WifiSurveyRecordLogger extends SurveyRecordLogger implements IWifiSurveyRecordListener
 {
+    private WifiBeaconRowEncoder wifiBeaconRowEncoder;
+
     /**
      * Constructs a Logger that writes 802.11 Survey records to a GeoPackage SQLite database.
      *
      * @param networkSurveyService The Service instance that is running this logger.
-     * @param serviceLooper        The Looper associated with the service that can be used to do any background processing.
      */
-    public WifiSurveyRecordLogger(NetworkSurveyService networkSurveyService, Looper serviceLooper)
+    public WifiSurveyRecordLogger(NetworkSurveyService networkSurveyService)
     {
-        super(networkSurveyService, serviceLooper, NetworkSurveyConstants.LOG_DIRECTORY_NAME, NetworkSurveyConstants.WIFI_FILE_NAME_PREFIX);
+        super(networkSurveyService, NetworkSurveyConstants.LOG_DIRECTORY_NAME, NetworkSurveyConstants.WIFI_FILE_NAME_PREFIX);
     }
 
     @Override
     public void onWifiBeaconSurveyRecords(List<WifiRecordWrapper> wifiBeaconRecords)
     {
         wifiBeaconRecords.forEach(this::writeWifiBeaconRecordToLogFile);
+        onScanGroupComplete();
     }
 
     @Override
@@ -58,6 +55,12 @@ public class WifiSurveyRecordLogger extends SurveyRecordLogger implements IWifiS
         createWifiBeaconRecordTable(geoPackage, srs);
     }
 
+    @Override
+    void createRowEncoders(GeoPackage geoPackage)
+    {
+        wifiBeaconRowEncoder = registerRowEncoder(new WifiBeaconRowEncoder(geoPackage));
+    }
+
     /**
      * Creates an GeoPackage Table that can be populated with 802.11 Beacon Records.
      *
@@ -93,93 +96,14 @@ public class WifiSurveyRecordLogger extends SurveyRecordLogger implements IWifiS
     {
         if (!loggingEnabled) return;
 
-        handler.post(() -> {
+        postWrite(() -> {
             synchronized (geoPackageLock)
             {
                 try
                 {
                     if (geoPackage != null)
                     {
-                        final WifiBeaconRecordData data = wifiRecordWrapper.getWifiBeaconRecord().getData();
-                        FeatureDao featureDao = geoPackage.getFeatureDao(WifiBeaconMessageConstants.WIFI_BEACON_RECORDS_TABLE_NAME);
-                        FeatureRow row = featureDao.newRow();
-
-                        Point fix = new Point(data.getLongitude(), data.getLatitude(), (double) data.getAltitude());
-
-                        GeoPackageGeometryData geomData = new GeoPackageGeometryData(WGS84_SRS);
-                        geomData.setGeometry(fix);
-
-                        row.setGeometry(geomData);
-
-                        row.setValue(WifiCsvConstants.DEVICE_SERIAL_NUMBER, data.getDeviceSerialNumber());
-                        row.setValue(WifiBeaconMessageConstants.TIME_COLUMN, NsUtils.getEpochFromRfc3339(data.getDeviceTime()));
-                        row.setValue(WifiBeaconMessageConstants.MISSION_ID_COLUMN, data.getMissionId());
-                        row.setValue(WifiBeaconMessageConstants.RECORD_NUMBER_COLUMN, data.getRecordNumber());
-                        row.setValue(WifiCsvConstants.SPEED, data.getSpeed());
-                        row.setValue(WifiBeaconMessageConstants.ACCURACY, MathUtils.roundAccuracy(data.getAccuracy()));
-
-                        final String sourceAddress = data.getSourceAddress();
-                        if (!sourceAddress.isEmpty())
-                        {
-                            row.setValue(WifiBeaconMessageConstants.SOURCE_ADDRESS_COLUMN, sourceAddress);
-                        }
-
-                        final String bssid = data.getBssid();
-                        if (!bssid.isEmpty())
-                        {
-                            row.setValue(WifiBeaconMessageConstants.BSSID_COLUMN, bssid);
-                        }
-
-                        final String ssid = data.getSsid();
-                        if (!ssid.isEmpty())
-                        {
-                            row.setValue(WifiBeaconMessageConstants.SSID_COLUMN, ssid);
-                        }
-
-                        if (data.hasSignalStrength())
-                        {
-                            row.setValue(WifiBeaconMessageConstants.SIGNAL_STRENGTH_COLUMN, data.getSignalStrength().getValue());
-                        }
-
-                        if (data.hasChannel())
-                        {
-                            setShortValue(row, WifiBeaconMessageConstants.CHANNEL_COLUMN, data.getChannel().getValue());
-                        }
-
-                        if (data.hasFrequencyMhz())
-                        {
-                            setIntValue(row, WifiBeaconMessageConstants.FREQUENCY_MHZ_COLUMN, data.getFrequencyMhz().getValue());
-                        }
-
-                        final EncryptionType encryptionType = data.getEncryptionType();
-                        if (encryptionType != EncryptionType.UNKNOWN)
-                        {
-                            row.setValue(WifiBeaconMessageConstants.ENCRYPTION_TYPE_COLUMN, WifiBeaconMessageConstants.getEncryptionTypeString(encryptionType));
-                        }
-
-                        if (data.hasWps())
-                        {
-                            row.setValue(WifiBeaconMessageConstants.WPS_COLUMN, data.getWps().getValue());
-                        }
-
-                        row.setValue(WifiCsvConstants.STANDARD, data.getStandard().toString());
-
-                        if (data.hasPasspoint())
-                        {
-                            row.setValue(WifiCsvConstants.PASSPOINT, data.getPasspoint().getValue());
-                        }
-
-                        row.setValue(WifiCsvConstants.BANDWIDTH, data.getBandwidth().toString());
-
-                        final List<CipherSuite> cipherSuitesList = data.getCipherSuitesList();
-                        if (!cipherSuitesList.isEmpty())
-                        {
-                            row.setValue(WifiBeaconMessageConstants.CIPHER_SUITES_COLUMN,
-                                    cipherSuitesList.stream().map(WifiBeaconMessageConstants::getCipherSuiteString)
-                                            .collect(Collectors.joining(";")));
-                        }
-
-                        featureDao.insert(row);
+                        queueRow(wifiBeaconRowEncoder, wifiRecordWrapper.getWifiBeaconRecord().getData());
 
                         checkIfRolloverNeeded();
                     }
@@ -190,4 +114,98 @@ public class WifiSurveyRecordLogger extends SurveyRecordLogger implements IWifiS
             }
         });
     }
+
+    /**
+     * Binds the fields of an 802.11 beacon record to the Wi-Fi table's insert statement.
+     *
+     * @since 1.31.0
+     */
+    private static final class WifiBeaconRowEncoder extends GeoPackageRowEncoder<WifiBeaconRecordData>
+    {
+        private final int geometryIndex;
+        private final int deviceSerialNumberIndex;
+        private final int timeIndex;
+        private final int missionIdIndex;
+        private final int recordNumberIndex;
+        private final int speedIndex;
+        private final int accuracyIndex;
+        private final int bssidIndex;
+        private final int ssidIndex;
+        private final int signalStrengthIndex;
+        private final int channelIndex;
+        private final int frequencyIndex;
+        private final int encryptionTypeIndex;
+        private final int wpsIndex;
+        private final int standardIndex;
+        private final int passpointIndex;
+        private final int bandwidthIndex;
+        private final int cipherSuitesIndex;
+
+        WifiBeaconRowEncoder(GeoPackage geoPackage)
+        {
+            super(geoPackage, WifiBeaconMessageConstants.WIFI_BEACON_RECORDS_TABLE_NAME);
+
+            geometryIndex = bindIndex(MessageConstants.GEOMETRY_COLUMN);
+            deviceSerialNumberIndex = bindIndex(WifiCsvConstants.DEVICE_SERIAL_NUMBER);
+            timeIndex = bindIndex(WifiBeaconMessageConstants.TIME_COLUMN);
+            missionIdIndex = bindIndex(WifiBeaconMessageConstants.MISSION_ID_COLUMN);
+            recordNumberIndex = bindIndex(WifiBeaconMessageConstants.RECORD_NUMBER_COLUMN);
+            speedIndex = bindIndex(WifiCsvConstants.SPEED);
+            accuracyIndex = bindIndex(WifiBeaconMessageConstants.ACCURACY);
+            bssidIndex = bindIndex(WifiBeaconMessageConstants.BSSID_COLUMN);
+            ssidIndex = bindIndex(WifiBeaconMessageConstants.SSID_COLUMN);
+            signalStrengthIndex = bindIndex(WifiBeaconMessageConstants.SIGNAL_STRENGTH_COLUMN);
+            channelIndex = bindIndex(WifiBeaconMessageConstants.CHANNEL_COLUMN);
+            frequencyIndex = bindIndex(WifiBeaconMessageConstants.FREQUENCY_MHZ_COLUMN);
+            encryptionTypeIndex = bindIndex(WifiBeaconMessageConstants.ENCRYPTION_TYPE_COLUMN);
+            wpsIndex = bindIndex(WifiBeaconMessageConstants.WPS_COLUMN);
+            standardIndex = bindIndex(WifiCsvConstants.STANDARD);
+            passpointIndex = bindIndex(WifiCsvConstants.PASSPOINT);
+            bandwidthIndex = bindIndex(WifiCsvConstants.BANDWIDTH);
+            cipherSuitesIndex = bindIndex(WifiBeaconMessageConstants.CIPHER_SUITES_COLUMN);
+        }
+
+        @Override
+        void bind(WifiBeaconRecordData data)
+        {
+            bindPoint(geometryIndex, data.getLongitude(), data.getLatitude(), data.getAltitude());
+
+            bindText(deviceSerialNumberIndex, data.getDeviceSerialNumber());
+            bindLong(timeIndex, NsUtils.getEpochFromRfc3339(data.getDeviceTime()));
+            bindText(missionIdIndex, data.getMissionId());
+            bindLong(recordNumberIndex, data.getRecordNumber());
+            bindDouble(speedIndex, data.getSpeed());
+            bindLong(accuracyIndex, MathUtils.roundAccuracy(data.getAccuracy()));
+
+            // The Wi-Fi table does not have a source address column, so it is not written
+
+            bindOptionalText(bssidIndex, data.getBssid());
+            bindOptionalText(ssidIndex, data.getSsid());
+
+            if (data.hasSignalStrength()) bindDouble(signalStrengthIndex, data.getSignalStrength().getValue());
+            if (data.hasChannel()) bindLong(channelIndex, (short) data.getChannel().getValue());
+            if (data.hasFrequencyMhz()) bindLong(frequencyIndex, data.getFrequencyMhz().getValue());
+
+            final EncryptionType encryptionType = data.getEncryptionType();
+            if (encryptionType != EncryptionType.UNKNOWN)
+            {
+                bindText(encryptionTypeIndex, WifiBeaconMessageConstants.getEncryptionTypeString(encryptionType));
+            }
+
+            if (data.hasWps()) bindBoolean(wpsIndex, data.getWps().getValue());
+
+            bindText(standardIndex, data.getStandard().toString());
+
+            if (data.hasPasspoint()) bindBoolean(passpointIndex, data.getPasspoint().getValue());
+
+            bindText(bandwidthIndex, data.getBandwidth().toString());
+
+            final List<CipherSuite> cipherSuitesList = data.getCipherSuitesList();
+            if (!cipherSuitesList.isEmpty())
+            {
+                bindText(cipherSuitesIndex, cipherSuitesList.stream().map(WifiBeaconMessageConstants::getCipherSuiteString)
+                        .collect(Collectors.joining(";")));
+            }
+        }
+    }
 }
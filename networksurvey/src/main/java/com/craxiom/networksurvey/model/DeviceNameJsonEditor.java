@@ -0,0 +1,254 @@
+package com.craxiom.networksurvey.model;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageOrBuilder;
+import com.google.protobuf.StringValue;
+import com.google.protobuf.util.JsonFormat;
+
+/**
+ * Sets the device name in the JSON of a survey record without copying the record.
+ * <p>
+ * The device name is set by each publisher (e.g. MQTT) rather than when the record is made, so without this every
+ * record has to be copied with {@code toBuilder()...setDeviceName(...).build()} and printed again just to change one
+ * field. Instead, the record is printed to JSON once and the device name is then set directly in the JSON text. The
+ * output is identical to printing the copied record: the device name member is placed in field number order inside
+ * the {@code data} object, and it is left out when the device name is empty (the same as protobuf does for a default
+ * value).
+ * <p>
+ * This class is thread safe.
+ *
+ * @since 1.31.0
+ */
+public final class DeviceNameJsonEditor
+{
+    private static final String DATA_FIELD_NAME = "data";
+    private static final String DEVICE_NAME_FIELD_NAME = "deviceName";
+
+    // Matches the printer used by SurveyRecordEnvelope so the escaping is the same as in the rest of the JSON
+    private static final JsonFormat.Printer JSON_PRINTER = JsonFormat.printer()
+            .preservingProtoFieldNames()
+            .omittingInsignificantWhitespace();
+
+    /**
+     * The last device name that was escaped; the device name rarely (if ever) changes, so it is only escaped once.
+     */
+    private static volatile EscapedValue cachedDeviceName;
+
+    private DeviceNameJsonEditor()
+    {
+    }
+
+    /**
+     * @param record     The record that the JSON was printed from.
+     * @param json       The record's JSON.
+     * @param deviceName The device name to set in the record's data, or null to leave the record as is.
+     * @return The JSON with the device name set, the same as printing a copy of the record with the device name set.
+     * @throws InvalidProtocolBufferException If the device name could not be converted to JSON.
+     */
+    public static String setDeviceName(MessageOrBuilder record, String json, String deviceName)
+            throws InvalidProtocolBufferException
+    {
+        if (deviceName == null) return json;
+
+        final Descriptors.Descriptor recordDescriptor = record.getDescriptorForType();
+        final Descriptors.FieldDescriptor dataField = recordDescriptor.findFieldByName(DATA_FIELD_NAME);
+        if (dataField == null || dataField.getJavaType() != Descriptors.FieldDescriptor.JavaType.MESSAGE) return json;
+
+        final Descriptors.Descriptor dataDescriptor = dataField.getMessageType();
+        final Descriptors.FieldDescriptor deviceNameField = dataDescriptor.findFieldByName(DEVICE_NAME_FIELD_NAME);
+        if (deviceNameField == null) return json;
+
+        // An empty device name is the protobuf default, so it is not printed at all
+        final String escapedDeviceName = deviceName.isEmpty() ? null : escape(deviceName);
+
+        final int dataStart = findMemberValue(json, DATA_FIELD_NAME);
+        if (dataStart < 0)
+        {
+            // Setting the device name on the data builder always results in a data object, even if it is empty
+            final String data = escapedDeviceName == null ? "{}" : "{\"" + DEVICE_NAME_FIELD_NAME + "\":" + escapedDeviceName + "}";
+            return setMember(json, recordDescriptor, DATA_FIELD_NAME, dataField.getNumber(), data);
+        }
+
+        final int dataEnd = skipValue(json, dataStart);
+        final String data = setMember(json.substring(dataStart, dataEnd), dataDescriptor, DEVICE_NAME_FIELD_NAME,
+                deviceNameField.getNumber(), escapedDeviceName);
+
+        return new StringBuilder(json.length() + data.length())
+                .append(json, 0, dataStart)
+                .append(data)
+                .append(json, dataEnd, json.length())
+                .toString();
+    }
+
+    /**
+     * @return The JSON string literal for the value, escaped the same way the protobuf JSON printer escapes strings.
+     */
+    private static String escape(String value) throws InvalidProtocolBufferException
+    {
+        final EscapedValue cached = cachedDeviceName;
+        if (cached != null && cached.value.equals(value)) return cached.json;
+
+        // A StringValue wrapper is printed as a bare JSON string
+        final String json = JSON_PRINTER.print(StringValue.of(value));
+        cachedDeviceName = new EscapedValue(value, json);
+        return json;
+    }
+
+    /**
+     * @return The index of the start of the value for the named member of the top level object, or -1 if the object
+     * does not have the member.
+     */
+    private static int findMemberValue(String json, String name)
+    {
+        int index = 1;
+        while (json.charAt(index) != '}')
+        {
+            final int keyEnd = skipString(json, index);
+            final int valueStart = keyEnd + 1; // Skip the ':'
+            if (isKey(json, index, keyEnd, name)) return valueStart;
+
+            index = skipValue(json, valueStart);
+            if (json.charAt(index) == ',') index++;
+        }
+        return -1;
+    }
+
+    /**
+     * Sets, adds, or removes a member of a JSON object. A new member is added in field number order.
+     *
+     * @param objectJson The JSON object without any insignificant whitespace.
+     * @param descriptor The descriptor for the message that the JSON object represents.
+     * @param name       The name of the member.
+     * @param number     The field number of the member.
+     * @param value      The JSON value to set, or null to remove the member.
+     * @return The updated JSON object.
+     */
+    private static String setMember(String objectJson, Descriptors.Descriptor descriptor, String name, int number, String value)
+    {
+        int index = 1;
+        while (objectJson.charAt(index) != '}')
+        {
+            final int memberStart = index;
+            final int keyEnd = skipString(objectJson, index);
+            final int valueStart = keyEnd + 1;
+            final int valueEnd = skipValue(objectJson, valueStart);
+
+            if (isKey(objectJson, memberStart, keyEnd, name))
+            {
+                if (value != null)
+                {
+                    return objectJson.substring(0, valueStart) + value + objectJson.substring(valueEnd);
+                }
+
+                // Remove the member along with one of the commas around it
+                if (objectJson.charAt(valueEnd) == ',')
+                {
+                    return objectJson.substring(0, memberStart) + objectJson.substring(valueEnd + 1);
+                }
+                if (objectJson.charAt(memberStart - 1) == ',')
+                {
+                    return objectJson.substring(0, memberStart - 1) + objectJson.substring(valueEnd);
+                }
+                return objectJson.substring(0, memberStart) + objectJson.substring(valueEnd);
+            }
+
+            final Descriptors.FieldDescriptor field = descriptor.findFieldByName(
+                    objectJson.substring(memberStart + 1, keyEnd - 1));
+            if (value != null && field != null && field.getNumber() > number)
+            {
+                return objectJson.substring(0, memberStart) + '"' + name + "\":" + value + ','
+                        + objectJson.substring(memberStart);
+            }
+
+            index = objectJson.charAt(valueEnd) == ',' ? valueEnd + 1 : valueEnd;
+        }
+
+        if (value == null) return objectJson;
+
+        final String separator = index == 1 ? "" : ",";
+        return objectJson.substring(0, index) + separator + '"' + name + "\":" + value + objectJson.substring(index);
+    }
+
+    /**
+     * @return True if the quoted key that spans from start to end is equal to the name.
+     */
+    private static boolean isKey(String json, int start, int end, String name)
+    {
+        return end - start - 2 == name.length() && json.startsWith(name, start + 1);
+    }
+
+    /**
+     * @param json  The JSON text.
+     * @param index The index of the opening quote of a JSON string.
+     * @return The index just after the closing quote.
+     */
+    private static int skipString(String json, int index)
+    {
+        for (int i = index + 1; i < json.length(); i++)
+        {
+            final char c = json.charAt(i);
+            if (c == '\\')
+            {
+                i++;
+            } else if (c == '"')
+            {
+                return i + 1;
+            }
+        }
+        throw new IllegalArgumentException("The JSON string starting at " + index + " is not terminated");
+    }
+
+    /**
+     * @param json  The JSON text without any insignificant whitespace.
+     * @param index The index of the first character of a JSON value.
+     * @return The index just after the end of the value.
+     */
+    private static int skipValue(String json, int index)
+    {
+        final char first = json.charAt(index);
+        if (first == '"') return skipString(json, index);
+
+        if (first == '{' || first == '[')
+        {
+            int depth = 0;
+            for (int i = index; i < json.length(); i++)
+            {
+                final char c = json.charAt(i);
+                if (c == '"')
+                {
+                    i = skipString(json, i) - 1;
+                } else if (c == '{' || c == '[')
+                {
+                    depth++;
+                } else if ((c == '}' || c == ']') && --depth == 0)
+                {
+                    return i + 1;
+                }
+            }
+            throw new IllegalArgumentException("The JSON value starting at " + index + " is not terminated");
+        }
+
+        // A number, boolean, or null
+        int i = index;
+        while (i < json.length())
+        {
+            final char c = json.charAt(i);
+            if (c == ',' || c == '}' || c == ']') break;
+            i++;
+        }
+        return i;
+    }
+
+    private static final class EscapedValue
+    {
+        final String value;
+        final String json;
+
+        EscapedValue(String value, String json)
+        {
+            this.value = value;
+            this.json = json;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.craxiom.networksurvey.model;
+
+/**
+ * The options for maintaining the spatial (RTree) and time indexes on the GeoPackage survey tables.
+ *
+ * @since 1.31.0
+ */
+public enum GeoPackageIndexMode
+{
+    /**
+     * No indexes are created, which keeps the cost of writing each record as low as possible.
+     */
+    NONE,
+    /**
+     * The indexes are created along with the tables and updated each time a batch of records is written, so the file
+     * is always indexed, at the cost of a little extra work for each batch.
+     */
+    INCREMENTAL,
+    /**
+     * The indexes are built all at once when the file is closed, which happens on rollover or when logging is turned
+     * off. Writing records costs the same as without indexes, but the file is not indexed until it is closed.
+     */
+    ON_CLOSE
+}
@@ -7,10 +7,17 @@ public class LogTypeState
 {
     public final boolean csv;
     public final boolean geoPackage;
+    /**
+     * The length-delimited protobuf log file, see {@link com.craxiom.networksurvey.logging.SurveyLogWriter}.
+     *
+     * @since 1.31.0
+     */
+    public final boolean protobuf;
 
-    public LogTypeState(boolean csv, boolean geoPackage)
+    public LogTypeState(boolean csv, boolean geoPackage, boolean protobuf)
     {
         this.csv = csv;
         this.geoPackage = geoPackage;
+        this.protobuf = protobuf;
     }
 }
@@ -3,30 +3,59 @@ package com.craxiom.networksurvey.model;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.SortedList;
 
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
 /**
  * Creating our own implementation for the {@link SortedList} because while the SortedList acts sort of like a set, it
  * depends on the current sort order on how it evicts old items (it uses the compare method too which means that the
- * current sorting option will change which records get added). Note that we have only implemented the {@link #add(Object)}
- * method, so don't use the addAll or any other add methods from the parent class if you want to make sure to evict
- * old duplicate records.
+ * current sorting option will change which records get added). The {@link #add(Object)} and {@link #addAll(Object[],
+ * boolean)} methods (and so all the other addAll methods) evict any old duplicate of an item being added.
+ * <p>
+ * If a key function is provided (e.g. the Bluetooth source address or the Wi-Fi BSSID), the items are also kept in a
+ * map by their key so that the old duplicate of an item is found with a lookup and a binary search rather than by
+ * checking every item in the list. Without a key function the duplicates are found using
+ * {@link androidx.recyclerview.widget.SortedList.Callback#areItemsTheSame(Object, Object)} on each item in the list.
  *
  * @since 1.0.0
  */
 public class SortedSet<T> extends SortedList<T>
 {
+    @NonNull
+    private final Class<T> klass;
     @NonNull
     private final Callback<T> callback;
+    private final Function<T, Object> keyFunction;
+    private final Map<Object, T> itemsByKey;
+    private int batchDepth;
 
     public SortedSet(@NonNull Class<T> klass, @NonNull Callback<T> callback)
+    {
+        this(klass, callback, null);
+    }
+
+    /**
+     * @param keyFunction Returns the key that identifies an item (two items with the same key are the same item), or
+     *                    null to find duplicates with the callback instead.
+     * @since 1.31.0
+     */
+    public SortedSet(@NonNull Class<T> klass, @NonNull Callback<T> callback, Function<T, Object> keyFunction)
     {
         super(klass, callback);
+        this.klass = klass;
         this.callback = callback;
+        this.keyFunction = keyFunction;
+        itemsByKey = keyFunction == null ? null : new HashMap<>();
     }
 
     /**
-     * This method first removes any item that is found to match the item being added (based on the
-     * {@link androidx.recyclerview.widget.SortedList.Callback#areItemsTheSame(Object, Object)} method). Then, the new
-     * item is added to this list.
+     * This method first removes any item that is found to match the item being added (based on the key function, or
+     * the {@link androidx.recyclerview.widget.SortedList.Callback#areItemsTheSame(Object, Object)} method if there is
+     * no key function). Then, the new item is added to this list.
      *
      * @param item The item to add (and remove the old matching item if found).
      * @return The index of the newly added item.
@@ -34,18 +63,222 @@ public class SortedSet<T> extends SortedList<T>
     @Override
     public int add(T item)
     {
-        final int sortedListSize = size();
-        for (int i = 0; i < sortedListSize; ++i)
+        removeExisting(item);
+
+        final int index = super.add(item);
+        if (itemsByKey != null) itemsByKey.put(keyFunction.apply(item), item);
+        return index;
+    }
+
+    /**
+     * Adds all the items in one batched update, evicting any old duplicates. If the items themselves contain
+     * duplicates, the last one wins.
+     *
+     * @since 1.31.0
+     */
+    @Override
+    public void addAll(@NonNull T[] items, boolean mayModifyInput)
+    {
+        if (items.length == 0) return;
+
+        beginBatchedUpdates();
+        try
         {
-            final T existingItem = get(i);
+            if (itemsByKey == null)
+            {
+                for (T item : items)
+                {
+                    add(item);
+                }
+                return;
+            }
 
-            if (callback.areItemsTheSame(existingItem, item))
+            final Collection<T> uniqueItems = removeDuplicates(items);
+            for (T item : uniqueItems)
             {
-                removeItemAt(i);
+                removeExisting(item);
+            }
+
+            //noinspection unchecked
+            super.addAll(uniqueItems.toArray((T[]) Array.newInstance(klass, uniqueItems.size())), true);
+            for (T item : uniqueItems)
+            {
+                itemsByKey.put(keyFunction.apply(item), item);
+            }
+        } finally
+        {
+            endBatchedUpdates();
+        }
+    }
+
+    @Override
+    public void replaceAll(@NonNull T[] items, boolean mayModifyInput)
+    {
+        if (itemsByKey == null)
+        {
+            super.replaceAll(items, mayModifyInput);
+            return;
+        }
+
+        final Collection<T> uniqueItems = removeDuplicates(items);
+        itemsByKey.clear();
+        //noinspection unchecked
+        super.replaceAll(uniqueItems.toArray((T[]) Array.newInstance(klass, uniqueItems.size())), true);
+        for (T item : uniqueItems)
+        {
+            itemsByKey.put(keyFunction.apply(item), item);
+        }
+    }
+
+    @Override
+    public boolean remove(T item)
+    {
+        if (itemsByKey == null) return super.remove(item);
+
+        return removeByKey(keyFunction.apply(item));
+    }
+
+    @Override
+    public T removeItemAt(int index)
+    {
+        final T removed = super.removeItemAt(index);
+        if (itemsByKey != null) itemsByKey.remove(keyFunction.apply(removed), removed);
+        return removed;
+    }
+
+    @Override
+    public void updateItemAt(int index, T item)
+    {
+        final T old = get(index);
+        super.updateItemAt(index, item);
+        if (itemsByKey != null)
+        {
+            itemsByKey.remove(keyFunction.apply(old), old);
+            itemsByKey.put(keyFunction.apply(item), item);
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        super.clear();
+        if (itemsByKey != null) itemsByKey.clear();
+    }
+
+    /**
+     * Unlike the {@link SortedList}, calls to this method can be nested; the updates are only dispatched once the
+     * outermost batch ends.
+     */
+    @Override
+    public void beginBatchedUpdates()
+    {
+        if (batchDepth++ == 0) super.beginBatchedUpdates();
+    }
+
+    @Override
+    public void endBatchedUpdates()
+    {
+        if (batchDepth == 0) return;
+        if (--batchDepth == 0) super.endBatchedUpdates();
+    }
+
+    /**
+     * Removes the item in this list that matches the provided item, if there is one.
+     */
+    private void removeExisting(T item)
+    {
+        if (itemsByKey == null)
+        {
+            final int sortedListSize = size();
+            for (int i = 0; i < sortedListSize; ++i)
+            {
+                final T existingItem = get(i);
+
+                if (callback.areItemsTheSame(existingItem, item))
+                {
+                    removeItemAt(i);
+                    break;
+                }
+            }
+            return;
+        }
+
+        removeByKey(keyFunction.apply(item));
+    }
+
+    /**
+     * @return True if an item with the key was found and removed.
+     */
+    private boolean removeByKey(Object key)
+    {
+        final T existing = itemsByKey.get(key);
+        if (existing == null) return false;
+
+        final int index = indexOfExisting(existing);
+        if (index < 0)
+        {
+            // Should not happen, but don't let a stale entry stop new items from being added
+            itemsByKey.remove(key);
+            return false;
+        }
+
+        removeItemAt(index);
+        return true;
+    }
+
+    /**
+     * Finds an item that is known to be in this list. A binary search is used to find the items that sort the same as
+     * the item, and then those are checked for the item itself. If the item is not found that way (e.g. the sort order
+     * was changed without re-sorting the list), every item in the list is checked.
+     *
+     * @return The index of the item, or -1 if it is not in this list.
+     */
+    private int indexOfExisting(T existing)
+    {
+        int low = 0;
+        int high = size();
+        while (low < high)
+        {
+            final int middle = (low + high) >>> 1;
+            final int comparison = callback.compare(get(middle), existing);
+            if (comparison < 0)
+            {
+                low = middle + 1;
+            } else if (comparison > 0)
+            {
+                high = middle;
+            } else
+            {
+                for (int i = middle; i >= 0 && callback.compare(get(i), existing) == 0; i--)
+                {
+                    if (get(i) == existing) return i;
+                }
+                for (int i = middle + 1; i < size() && callback.compare(get(i), existing) == 0; i++)
+                {
+                    if (get(i) == existing) return i;
+                }
                 break;
             }
         }
 
-        return super.add(item);
+        final int sortedListSize = size();
+        for (int i = 0; i < sortedListSize; ++i)
+        {
+            if (get(i) == existing) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return The items with only the last item for each key, in the order they were provided.
+     */
+    private Collection<T> removeDuplicates(T[] items)
+    {
+        final Map<Object, T> uniqueItems = new LinkedHashMap<>();
+        for (T item : items)
+        {
+            uniqueItems.put(keyFunction.apply(item), item);
+        }
+        return uniqueItems.values();
     }
 }
@@ -0,0 +1,189 @@
+package com.craxiom.networksurvey.model;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.UnsafeByteOperations;
+import com.google.protobuf.util.JsonFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Wraps a survey record as it is handed out to the listeners, and caches the serialized forms of the record the first
+ * time they are needed.
+ * <p>
+ * The same record is usually sent to more than one place: streamed over gRPC, spooled to disk while the gRPC server is
+ * unreachable, written to a log file, and published as JSON over MQTT. Without the envelope, each of those serializes
+ * the record on its own. With it, the protobuf wire bytes and the JSON are each created at most once per record, no
+ * matter how many listeners need them. The JSON with the publisher's device name set is cached as well.
+ * <p>
+ * The record is immutable, so the cached forms can never go stale. This class is thread safe; if two threads ask for
+ * the same form at the same time it might be created twice, but both get the same content.
+ *
+ * @param <T> The type of survey record.
+ * @since 1.31.0
+ */
+public final class SurveyRecordEnvelope<T extends Message>
+{
+    /**
+     * The JSON printer shared by all the envelopes. Matches the format that is published over MQTT.
+     */
+    private static final JsonFormat.Printer JSON_PRINTER = JsonFormat.printer()
+            .preservingProtoFieldNames()
+            .omittingInsignificantWhitespace();
+
+    private final T record;
+    /**
+     * Never modified once set, and never handed out except as a read only {@link ByteString}.
+     */
+    private volatile byte[] wireBytes;
+    private volatile String json;
+    private volatile DeviceNamedJson deviceNamedJson;
+
+    public SurveyRecordEnvelope(T record)
+    {
+        this(record, null);
+    }
+
+    /**
+     * Creates an envelope for a record that has already been serialized, such as one that was just parsed.
+     *
+     * @param record    The record.
+     * @param wireBytes The protobuf wire bytes for the record, or null if they are not known yet. The array is kept
+     *                  as is, so it must not be modified after this call.
+     */
+    public SurveyRecordEnvelope(T record, byte[] wireBytes)
+    {
+        if (record == null) throw new IllegalArgumentException("The record cannot be null");
+        this.record = record;
+        this.wireBytes = wireBytes;
+    }
+
+    public T getRecord()
+    {
+        return record;
+    }
+
+    /**
+     * @return The size of the record's protobuf wire bytes, without serializing the record.
+     */
+    public int getSerializedSize()
+    {
+        final byte[] bytes = wireBytes;
+        return bytes == null ? record.getSerializedSize() : bytes.length;
+    }
+
+    /**
+     * @return A read only view of the protobuf wire bytes for the record, serializing the record only on the first
+     * call.
+     */
+    public ByteString getWireBytes()
+    {
+        return UnsafeByteOperations.unsafeWrap(getOrCreateWireBytes());
+    }
+
+    /**
+     * Writes the record's wire bytes, the same as {@link Message#writeTo(OutputStream)} does, but using the cached
+     * wire bytes.
+     *
+     * @param outputStream The stream to write to.
+     * @return The number of bytes written.
+     * @throws IOException If the bytes could not be written.
+     */
+    public int writeTo(OutputStream outputStream) throws IOException
+    {
+        // Written straight from the array; ByteString.writeTo would copy the bytes first to protect them
+        final byte[] bytes = getOrCreateWireBytes();
+        outputStream.write(bytes);
+        return bytes.length;
+    }
+
+    /**
+     * Writes the record's size followed by its wire bytes, the same as {@link Message#writeDelimitedTo(OutputStream)}
+     * does, but using the cached wire bytes.
+     *
+     * @param outputStream The stream to write to.
+     * @return The number of bytes written.
+     * @throws IOException If the bytes could not be written.
+     */
+    public int writeDelimitedTo(OutputStream outputStream) throws IOException
+    {
+        final byte[] bytes = getOrCreateWireBytes();
+        final int size = bytes.length;
+
+        // The size is written as a varint, 7 bits at a time starting with the lowest bits
+        int remaining = size;
+        while ((remaining & ~0x7F) != 0)
+        {
+            outputStream.write((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        outputStream.write(remaining);
+
+        outputStream.write(bytes);
+        return CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+    }
+
+    /**
+     * @return The record as JSON with the proto field names and no insignificant whitespace, printing the record only
+     * on the first call.
+     * @throws InvalidProtocolBufferException If the record could not be converted to JSON.
+     */
+    public String getJson() throws InvalidProtocolBufferException
+    {
+        String printed = json;
+        if (printed == null)
+        {
+            printed = JSON_PRINTER.print(record);
+            json = printed;
+        }
+        return printed;
+    }
+
+    /**
+     * Same as {@link #getJson()}, but with the device name set in the record's data, the same as printing a copy of
+     * the record with the device name set. The device named JSON is created from the cached JSON (see
+     * {@link DeviceNameJsonEditor}) and is itself cached, so the record is not copied or printed again for each
+     * publisher that sets the same device name.
+     *
+     * @param deviceName The device name to set in the record's data, or null to leave the record as is.
+     * @return The record as JSON with the device name set.
+     * @throws InvalidProtocolBufferException If the record could not be converted to JSON.
+     */
+    public String getJson(String deviceName) throws InvalidProtocolBufferException
+    {
+        if (deviceName == null) return getJson();
+
+        final DeviceNamedJson cached = deviceNamedJson;
+        if (cached != null && cached.deviceName.equals(deviceName)) return cached.json;
+
+        final String named = DeviceNameJsonEditor.setDeviceName(record, getJson(), deviceName);
+        deviceNamedJson = new DeviceNamedJson(deviceName, named);
+        return named;
+    }
+
+    private byte[] getOrCreateWireBytes()
+    {
+        byte[] bytes = wireBytes;
+        if (bytes == null)
+        {
+            bytes = record.toByteArray();
+            wireBytes = bytes;
+        }
+        return bytes;
+    }
+
+    private static final class DeviceNamedJson
+    {
+        final String deviceName;
+        final String json;
+
+        DeviceNamedJson(String deviceName, String json)
+        {
+            this.deviceName = deviceName;
+            this.json = json;
+        }
+    }
+}
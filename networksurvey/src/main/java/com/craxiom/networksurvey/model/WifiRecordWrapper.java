@@ -14,6 +14,10 @@ public class WifiRecordWrapper implements Serializable
 {
     private final WifiBeaconRecord wifiBeaconRecord;
     private final String capabilitiesString;
+    /**
+     * Not serialized; it is created again the first time it is needed after the wrapper is deserialized.
+     */
+    private transient volatile SurveyRecordEnvelope<WifiBeaconRecord> envelope;
 
     /**
      * @param wifiBeaconRecord   The protobuf defined Wi-Fi record object.
@@ -23,6 +27,7 @@ public class WifiRecordWrapper implements Serializable
     {
         this.wifiBeaconRecord = wifiBeaconRecord;
         this.capabilitiesString = capabilitiesString;
+        envelope = new SurveyRecordEnvelope<>(wifiBeaconRecord);
     }
 
     public WifiBeaconRecord getWifiBeaconRecord()
@@ -34,4 +39,19 @@ public class WifiRecordWrapper implements Serializable
     {
         return capabilitiesString;
     }
+
+    /**
+     * @return The Wi-Fi record along with its cached serialized forms, which are shared by all the listeners.
+     * @since 1.31.0
+     */
+    public SurveyRecordEnvelope<WifiBeaconRecord> getEnvelope()
+    {
+        SurveyRecordEnvelope<WifiBeaconRecord> currentEnvelope = envelope;
+        if (currentEnvelope == null)
+        {
+            currentEnvelope = new SurveyRecordEnvelope<>(wifiBeaconRecord);
+            envelope = currentEnvelope;
+        }
+        return currentEnvelope;
+    }
 }
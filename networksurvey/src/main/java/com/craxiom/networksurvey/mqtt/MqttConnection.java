@@ -1,5 +1,7 @@
 package com.craxiom.networksurvey.mqtt;
 
+import android.content.Context;
+
 import com.craxiom.messaging.BluetoothRecord;
 import com.craxiom.messaging.CdmaRecord;
 import com.craxiom.messaging.DeviceStatus;
@@ -10,14 +12,20 @@ import com.craxiom.messaging.NrRecord;
 import com.craxiom.messaging.PhoneState;
 import com.craxiom.messaging.UmtsRecord;
 import com.craxiom.messaging.WifiBeaconRecord;
+import com.craxiom.mqttlibrary.connection.BrokerConnectionInfo;
+import com.craxiom.mqttlibrary.connection.ConnectionState;
 import com.craxiom.mqttlibrary.connection.DefaultMqttConnection;
 import com.craxiom.networksurvey.listeners.IBluetoothSurveyRecordListener;
 import com.craxiom.networksurvey.listeners.ICellularSurveyRecordListener;
 import com.craxiom.networksurvey.listeners.IDeviceStatusListener;
 import com.craxiom.networksurvey.listeners.IGnssSurveyRecordListener;
 import com.craxiom.networksurvey.listeners.IWifiSurveyRecordListener;
+import com.craxiom.networksurvey.model.SurveyRecordEnvelope;
 import com.craxiom.networksurvey.model.WifiRecordWrapper;
+import com.craxiom.networksurvey.util.PreferenceUtils;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -38,143 +46,162 @@ public class MqttConnection extends DefaultMqttConnection implements ICellularSu
     private static final String MQTT_GNSS_MESSAGE_TOPIC = "gnss_message";
     private static final String MQTT_DEVICE_STATUS_MESSAGE_TOPIC = "device_status_message";
 
+    private static final String MQTT_OUTBOX_DIRECTORY = "mqtt_outbox";
+
+    private final MqttStoreAndForward storeAndForward = new MqttStoreAndForward(this::publishMessage,
+            () -> getConnectionState() == ConnectionState.CONNECTED);
+    private final MqttRecordPublisher recordPublisher = new MqttRecordPublisher(storeAndForward);
+
+    /**
+     * Opens the outbox that holds the messages published while the broker is not connected, and then connects to the
+     * broker. Any messages left in the outbox from a previous connection to the same broker and topic prefix are
+     * published once the connection is made.
+     */
+    @Override
+    public synchronized void connect(Context context, BrokerConnectionInfo connectionInfo)
+    {
+        final long maxOutboxBytes = PreferenceUtils.getMqttOutboxSizePreference(context) * 1024L * 1024L;
+        storeAndForward.open(new File(context.getFilesDir(), MQTT_OUTBOX_DIRECTORY),
+                ((MqttConnectionInfo) connectionInfo).getOutboxTarget(), maxOutboxBytes,
+                PreferenceUtils.getMqttOutboxDrainRatePreference(context));
+
+        super.connect(context, connectionInfo);
+    }
+
+    /**
+     * Sets the topic to publish the records from each Wi-Fi and Bluetooth scan on as a single batch message. When not
+     * set, each record is published as its own message on the record type's topic.
+     *
+     * @param batchTopic The batch topic (without the topic prefix), or null/empty to turn off batching.
+     * @since 1.31.0
+     */
+    public void setBatchTopic(String batchTopic)
+    {
+        recordPublisher.setBatchTopic(batchTopic);
+    }
+
+    // The device name is set to the user entered value in the MQTT connection UI (or the value provided via MDM). It
+    // is set when the record is converted to JSON rather than by copying each record. The envelope versions of the
+    // listener methods are the ones the survey record processor calls; they publish the device named JSON that is
+    // cached in the envelope, so each record is printed at most once.
+
     @Override
     public void onGsmSurveyRecord(GsmRecord gsmRecord)
     {
-        // Set the device name to the user entered value in the MQTT connection UI (or the value provided via MDM)
-        if (mqttClientId != null)
-        {
-            final GsmRecord.Builder recordBuilder = gsmRecord.toBuilder();
-            gsmRecord = recordBuilder.setData(recordBuilder.getDataBuilder().setDeviceName(mqttClientId)).build();
-        }
+        recordPublisher.publishRecord(MQTT_GSM_MESSAGE_TOPIC, gsmRecord, mqttClientId);
+    }
 
-        publishMessage(MQTT_GSM_MESSAGE_TOPIC, gsmRecord);
+    @Override
+    public void onGsmSurveyRecord(SurveyRecordEnvelope<GsmRecord> gsmRecord)
+    {
+        recordPublisher.publishRecord(MQTT_GSM_MESSAGE_TOPIC, gsmRecord, mqttClientId);
     }
 
     @Override
     public void onCdmaSurveyRecord(CdmaRecord cdmaRecord)
     {
-        // Set the device name to the user entered value in the MQTT connection UI (or the value provided via MDM)
-        if (mqttClientId != null)
-        {
-            final CdmaRecord.Builder recordBuilder = cdmaRecord.toBuilder();
-            cdmaRecord = recordBuilder.setData(recordBuilder.getDataBuilder().setDeviceName(mqttClientId)).build();
-        }
+        recordPublisher.publishRecord(MQTT_CDMA_MESSAGE_TOPIC, cdmaRecord, mqttClientId);
+    }
 
-        publishMessage(MQTT_CDMA_MESSAGE_TOPIC, cdmaRecord);
+    @Override
+    public void onCdmaSurveyRecord(SurveyRecordEnvelope<CdmaRecord> cdmaRecord)
+    {
+        recordPublisher.publishRecord(MQTT_CDMA_MESSAGE_TOPIC, cdmaRecord, mqttClientId);
     }
 
     @Override
     public void onUmtsSurveyRecord(UmtsRecord umtsRecord)
     {
-        // Set the device name to the user entered value in the MQTT connection UI (or the value provided via MDM)
-        if (mqttClientId != null)
-        {
-            final UmtsRecord.Builder recordBuilder = umtsRecord.toBuilder();
-            umtsRecord = recordBuilder.setData(recordBuilder.getDataBuilder().setDeviceName(mqttClientId)).build();
-        }
+        recordPublisher.publishRecord(MQTT_UMTS_MESSAGE_TOPIC, umtsRecord, mqttClientId);
+    }
 
-        publishMessage(MQTT_UMTS_MESSAGE_TOPIC, umtsRecord);
+    @Override
+    public void onUmtsSurveyRecord(SurveyRecordEnvelope<UmtsRecord> umtsRecord)
+    {
+        recordPublisher.publishRecord(MQTT_UMTS_MESSAGE_TOPIC, umtsRecord, mqttClientId);
     }
 
     @Override
     public void onLteSurveyRecord(LteRecord lteRecord)
     {
-        // Set the device name to the user entered value in the MQTT connection UI (or the value provided via MDM)
-        if (mqttClientId != null)
-        {
-            final LteRecord.Builder recordBuilder = lteRecord.toBuilder();
-            lteRecord = recordBuilder.setData(recordBuilder.getDataBuilder().setDeviceName(mqttClientId)).build();
-        }
+        recordPublisher.publishRecord(MQTT_LTE_MESSAGE_TOPIC, lteRecord, mqttClientId);
+    }
 
-        publishMessage(MQTT_LTE_MESSAGE_TOPIC, lteRecord);
+    @Override
+    public void onLteSurveyRecord(SurveyRecordEnvelope<LteRecord> lteRecord)
+    {
+        recordPublisher.publishRecord(MQTT_LTE_MESSAGE_TOPIC, lteRecord, mqttClientId);
     }
 
     @Override
     public void onNrSurveyRecord(NrRecord nrRecord)
     {
-        if (mqttClientId != null)
-        {
-            final NrRecord.Builder recordBuilder = nrRecord.toBuilder();
-            nrRecord = recordBuilder.setData(recordBuilder.getDataBuilder().setDeviceName(mqttClientId)).build();
-        }
+        recordPublisher.publishRecord(MQTT_NR_MESSAGE_TOPIC, nrRecord, mqttClientId);
+    }
 
-        publishMessage(MQTT_NR_MESSAGE_TOPIC, nrRecord);
+    @Override
+    public void onNrSurveyRecord(SurveyRecordEnvelope<NrRecord> nrRecord)
+    {
+        recordPublisher.publishRecord(MQTT_NR_MESSAGE_TOPIC, nrRecord, mqttClientId);
     }
 
     @Override
     public void onWifiBeaconSurveyRecords(List<WifiRecordWrapper> wifiBeaconRecords)
     {
-        wifiBeaconRecords.forEach(wifiRecord -> {
-            WifiBeaconRecord wifiBeaconRecord = wifiRecord.getWifiBeaconRecord();
-            if (mqttClientId != null)
-            {
-                final WifiBeaconRecord.Builder recordBuilder = wifiBeaconRecord.toBuilder();
-                wifiBeaconRecord = recordBuilder.setData(recordBuilder.getDataBuilder().setDeviceName(mqttClientId)).build();
-            }
-            publishMessage(MQTT_WIFI_BEACON_MESSAGE_TOPIC, wifiBeaconRecord);
-        });
+        final List<SurveyRecordEnvelope<WifiBeaconRecord>> records = new ArrayList<>(wifiBeaconRecords.size());
+        for (WifiRecordWrapper wifiRecord : wifiBeaconRecords)
+        {
+            records.add(wifiRecord.getEnvelope());
+        }
+
+        recordPublisher.publishEnvelopes(MQTT_WIFI_BEACON_MESSAGE_TOPIC, records, mqttClientId);
     }
 
     @Override
     public void onBluetoothSurveyRecord(BluetoothRecord bluetoothRecord)
     {
-        // Set the device name to the user entered value in the MQTT connection UI (or the value provided via MDM)
-        if (mqttClientId != null)
-        {
-            final BluetoothRecord.Builder recordBuilder = bluetoothRecord.toBuilder();
-            bluetoothRecord = recordBuilder.setData(recordBuilder.getDataBuilder().setDeviceName(mqttClientId)).build();
-        }
+        recordPublisher.publishRecord(MQTT_BLUETOOTH_MESSAGE_TOPIC, bluetoothRecord, mqttClientId);
+    }
 
-        publishMessage(MQTT_BLUETOOTH_MESSAGE_TOPIC, bluetoothRecord);
+    @Override
+    public void onBluetoothSurveyRecord(SurveyRecordEnvelope<BluetoothRecord> bluetoothRecord)
+    {
+        recordPublisher.publishRecord(MQTT_BLUETOOTH_MESSAGE_TOPIC, bluetoothRecord, mqttClientId);
     }
 
     @Override
     public void onBluetoothSurveyRecords(List<BluetoothRecord> bluetoothRecords)
     {
-        bluetoothRecords.forEach(bluetoothRecord -> {
-            if (mqttClientId != null)
-            {
-                final BluetoothRecord.Builder recordBuilder = bluetoothRecord.toBuilder();
-                bluetoothRecord = recordBuilder.setData(recordBuilder.getDataBuilder().setDeviceName(mqttClientId)).build();
-            }
-            publishMessage(MQTT_BLUETOOTH_MESSAGE_TOPIC, bluetoothRecord);
-        });
+        recordPublisher.publishRecords(MQTT_BLUETOOTH_MESSAGE_TOPIC, bluetoothRecords, mqttClientId);
+    }
+
+    @Override
+    public void onBluetoothSurveyRecordEnvelopes(List<SurveyRecordEnvelope<BluetoothRecord>> bluetoothRecords)
+    {
+        recordPublisher.publishEnvelopes(MQTT_BLUETOOTH_MESSAGE_TOPIC, bluetoothRecords, mqttClientId);
     }
 
     @Override
     public void onGnssSurveyRecord(GnssRecord gnssRecord)
     {
-        if (mqttClientId != null)
-        {
-            final GnssRecord.Builder gnssRecordBuilder = gnssRecord.toBuilder();
-            gnssRecord = gnssRecordBuilder.setData(gnssRecordBuilder.getDataBuilder().setDeviceName(mqttClientId)).build();
-        }
+        recordPublisher.publishRecord(MQTT_GNSS_MESSAGE_TOPIC, gnssRecord, mqttClientId);
+    }
 
-        publishMessage(MQTT_GNSS_MESSAGE_TOPIC, gnssRecord);
+    @Override
+    public void onGnssSurveyRecord(SurveyRecordEnvelope<GnssRecord> gnssRecord)
+    {
+        recordPublisher.publishRecord(MQTT_GNSS_MESSAGE_TOPIC, gnssRecord, mqttClientId);
     }
 
     @Override
     public void onDeviceStatus(DeviceStatus deviceStatus)
     {
-        if (mqttClientId != null)
-        {
-            final DeviceStatus.Builder deviceStatusBuilder = deviceStatus.toBuilder();
-            deviceStatus = deviceStatusBuilder.setData(deviceStatusBuilder.getDataBuilder().setDeviceName(mqttClientId)).build();
-        }
-
-        publishMessage(MQTT_DEVICE_STATUS_MESSAGE_TOPIC, deviceStatus);
+        recordPublisher.publishRecord(MQTT_DEVICE_STATUS_MESSAGE_TOPIC, deviceStatus, mqttClientId);
     }
 
     @Override
     public void onPhoneState(PhoneState phoneState)
     {
-        if (mqttClientId != null)
-        {
-            final PhoneState.Builder messageBuilder = phoneState.toBuilder();
-            phoneState = messageBuilder.setData(messageBuilder.getDataBuilder().setDeviceName(mqttClientId)).build();
-        }
-
-        publishMessage(MQTT_DEVICE_STATUS_MESSAGE_TOPIC, phoneState);
+        recordPublisher.publishRecord(MQTT_DEVICE_STATUS_MESSAGE_TOPIC, phoneState, mqttClientId);
     }
 }
\ No newline at end of file
@@ -9,11 +9,27 @@ public class MqttConnectionInfo extends BrokerConnectionInfo
     private final boolean isBluetoothStreamEnabled;
     private final boolean isGnssStreamEnabled;
     private final boolean isDeviceStatusStreamEnabled;
+    private final String batchTopic;
+    private final String outboxTarget;
 
     public MqttConnectionInfo(String mqttBrokerHost, int portNumber, boolean tlsEnabled, String mqttClientId, String mqttUsername,
                               String mqttPassword, boolean isCellularStreamEnabled, boolean isWifiStreamEnabled,
                               boolean isBluetoothStreamEnabled, boolean isGnssStreamEnabled, boolean isDeviceStatusStreamEnabled,
                               String topicPrefix)
+    {
+        this(mqttBrokerHost, portNumber, tlsEnabled, mqttClientId, mqttUsername, mqttPassword, isCellularStreamEnabled,
+                isWifiStreamEnabled, isBluetoothStreamEnabled, isGnssStreamEnabled, isDeviceStatusStreamEnabled, topicPrefix, "");
+    }
+
+    /**
+     * @param batchTopic The topic to publish the Wi-Fi and Bluetooth records from each scan on as a single message, or
+     *                   empty to publish each record on its own.
+     * @since 1.31.0
+     */
+    public MqttConnectionInfo(String mqttBrokerHost, int portNumber, boolean tlsEnabled, String mqttClientId, String mqttUsername,
+                              String mqttPassword, boolean isCellularStreamEnabled, boolean isWifiStreamEnabled,
+                              boolean isBluetoothStreamEnabled, boolean isGnssStreamEnabled, boolean isDeviceStatusStreamEnabled,
+                              String topicPrefix, String batchTopic)
     {
         super(mqttBrokerHost, portNumber, tlsEnabled, mqttClientId, mqttUsername, mqttPassword, topicPrefix);
         this.isCellularStreamEnabled = isCellularStreamEnabled;
@@ -21,6 +37,8 @@ public class MqttConnectionInfo extends BrokerConnectionInfo
         this.isBluetoothStreamEnabled = isBluetoothStreamEnabled;
         this.isGnssStreamEnabled = isGnssStreamEnabled;
         this.isDeviceStatusStreamEnabled = isDeviceStatusStreamEnabled;
+        this.batchTopic = batchTopic == null ? "" : batchTopic;
+        outboxTarget = (tlsEnabled ? "ssl://" : "tcp://") + mqttBrokerHost + ":" + portNumber + "/" + topicPrefix;
     }
 
     public boolean isCellularStreamEnabled()
@@ -47,4 +65,19 @@ public class MqttConnectionInfo extends BrokerConnectionInfo
     {
         return isDeviceStatusStreamEnabled;
     }
-}
+
+    public String getBatchTopic()
+    {
+        return batchTopic;
+    }
+
+    /**
+     * @return The broker address and topic prefix that the messages in the MQTT outbox are meant for, so that the
+     * messages queued for one broker are never published to another.
+     * @since 1.31.0
+     */
+    public String getOutboxTarget()
+    {
+        return outboxTarget;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,548 @@
+package com.craxiom.networksurvey.mqtt;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * A persistent first in, first out queue of MQTT messages that could not be published because the broker was not
+ * connected.
+ * <p>
+ * Messages are appended to segment files, and a segment is memory mapped once it is time to read it back. Each message
+ * is stored as the length of the topic, the topic, the length of the payload, and the payload. A segment file is
+ * deleted once all of its messages have been removed. The segment that is being written to is read in place, and once
+ * all of its messages have been removed it is emptied and reused rather than replaced with a new file.
+ * <p>
+ * The segment files are left in place when the app stops, so the messages are picked up again the next time an outbox
+ * is created for the same directory and target. The topics are stored without the topic prefix, so the messages are
+ * only meant for the broker and topic prefix they were added for; if the outbox is created for a different target, the
+ * messages left from the previous target are deleted.
+ * <p>
+ * The total size of the outbox is capped; once the cap is reached the oldest segment is dropped to make room.
+ * <p>
+ * This class is not thread safe; the owning {@link MqttStoreAndForward} guards all access to it.
+ *
+ * @since 1.31.0
+ */
+final class MqttOutbox
+{
+    static final String SEGMENT_FILE_EXTENSION = ".outbox";
+    /**
+     * The file in the outbox directory that holds the target the messages in the outbox are meant for.
+     */
+    static final String TARGET_FILE_NAME = "target";
+
+    /**
+     * The size of the two length fields stored with each message.
+     */
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    private final File directory;
+    private final long maxSegmentBytes;
+    private final long maxOutboxBytes;
+
+    /**
+     * The segments in the order they were created. Only the last segment can be open for writing, and only the first
+     * segment can be mapped for reading.
+     */
+    private final Deque<Segment> segments = new ArrayDeque<>();
+
+    private DataOutputStream writer;
+    private MappedByteBuffer reader;
+    private OutboundMessage peeked;
+    private long nextSequence;
+    private int messageCount;
+    private long byteCount;
+    private long droppedCount;
+
+    /**
+     * @param directory       The directory to store the segment files in. It is created if it does not exist, and any
+     *                        segment files that are already in it for the same target are loaded.
+     * @param target          Identifies where the messages are published to (e.g. the broker address and topic
+     *                        prefix). Any messages left in the directory for a different target are deleted.
+     * @param maxSegmentBytes A new segment file is started once the current one reaches this size.
+     * @param maxOutboxBytes  The max number of bytes to keep across all the segment files.
+     * @throws IOException If the directory could not be created, or the target could not be saved.
+     */
+    MqttOutbox(File directory, String target, long maxSegmentBytes, long maxOutboxBytes) throws IOException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Could not create the MQTT outbox directory " + directory);
+        }
+
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxOutboxBytes = maxOutboxBytes;
+
+        if (isForTarget(target))
+        {
+            loadExistingSegments();
+        } else
+        {
+            deleteExistingSegments();
+            Files.write(new File(directory, TARGET_FILE_NAME).toPath(), target.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    boolean isEmpty()
+    {
+        return messageCount == 0;
+    }
+
+    /**
+     * @return The number of messages in the outbox.
+     */
+    int size()
+    {
+        return messageCount;
+    }
+
+    /**
+     * @return The number of bytes of messages in the outbox.
+     */
+    long getByteCount()
+    {
+        return byteCount;
+    }
+
+    /**
+     * @return The number of messages that were thrown away because the outbox was full or a segment was corrupt.
+     */
+    long getDroppedCount()
+    {
+        return droppedCount;
+    }
+
+    /**
+     * Appends the message to the end of the outbox.
+     *
+     * @param topic   The topic to publish the message on, without the topic prefix.
+     * @param payload The message.
+     * @throws IOException If the message could not be written.
+     */
+    void add(String topic, String payload) throws IOException
+    {
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.sealed || tail.fileBytes >= maxSegmentBytes)
+        {
+            sealTail();
+            tail = startSegment();
+        }
+
+        final byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        final byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        writer.writeInt(topicBytes.length);
+        writer.write(topicBytes);
+        writer.writeInt(payloadBytes.length);
+        writer.write(payloadBytes);
+        // Flush every message so that it is in the file (and not our buffer) if the process dies
+        writer.flush();
+
+        final int messageBytes = HEADER_BYTES + topicBytes.length + payloadBytes.length;
+        tail.fileBytes += messageBytes;
+        tail.unreadBytes += messageBytes;
+        tail.messageCount++;
+        messageCount++;
+        byteCount += messageBytes;
+
+        while (byteCount > maxOutboxBytes && segments.size() > 1)
+        {
+            final Segment dropped = segments.peekFirst();
+            Timber.w("The MQTT outbox in %s is full, dropping %d of the oldest messages", directory, dropped.messageCount);
+            droppedCount += dropped.messageCount;
+            removeHead();
+        }
+    }
+
+    /**
+     * Returns the oldest message without removing it, so that it stays in the outbox if it can't be published.
+     *
+     * @return The oldest message, or null if the outbox is empty.
+     */
+    OutboundMessage peek()
+    {
+        if (peeked != null) return peeked;
+
+        while (true)
+        {
+            final Segment head = segments.peekFirst();
+            if (head == null) return null;
+
+            // The segment that is being written to has been fully read, so wait for more messages to be added to it
+            if (!head.sealed && head.messageCount == 0) return null;
+
+            if (head.messageCount > 0)
+            {
+                try
+                {
+                    // Every message is flushed as soon as it is added, so the segment that is still being written to
+                    // can be read in place. The mapping only covers the file as it was when it was mapped, so map it
+                    // again to pick up the messages added since.
+                    if (reader == null || !reader.hasRemaining()) reader = map(head.file, head.fileBytes - head.unreadBytes);
+
+                    peeked = readMessage(reader);
+                    if (peeked != null) return peeked;
+
+                    Timber.w("Skipping the rest of the MQTT outbox segment %s because it is corrupt", head.file);
+                } catch (IOException e)
+                {
+                    Timber.e(e, "Could not read the MQTT outbox segment %s", head.file);
+                }
+            }
+
+            // Either the segment is fully read, or the rest of it can't be read
+            droppedCount += head.messageCount;
+            removeHead();
+        }
+    }
+
+    /**
+     * Removes the message that was returned from the last call to {@link #peek()}.
+     */
+    void remove()
+    {
+        final OutboundMessage removed = peeked;
+        if (removed == null) return;
+        peeked = null;
+
+        final Segment head = segments.peekFirst();
+        if (head == null) return;
+
+        head.unreadBytes -= removed.sizeBytes;
+        head.messageCount--;
+        messageCount--;
+        byteCount -= removed.sizeBytes;
+
+        if (head.messageCount == 0)
+        {
+            if (head.sealed)
+            {
+                removeHead();
+            } else
+            {
+                emptyTail(head);
+            }
+        }
+    }
+
+    /**
+     * Closes any open files. The segment files are kept so they can be loaded again later.
+     */
+    void close()
+    {
+        closeReader();
+        try
+        {
+            sealTail();
+        } catch (IOException e)
+        {
+            Timber.e(e, "Could not close the MQTT outbox segment");
+        }
+    }
+
+    /**
+     * @return True if the messages in the outbox directory were added for the provided target.
+     */
+    private boolean isForTarget(String target)
+    {
+        final File targetFile = new File(directory, TARGET_FILE_NAME);
+        if (!targetFile.isFile()) return false;
+
+        try
+        {
+            return target.equals(new String(Files.readAllBytes(targetFile.toPath()), StandardCharsets.UTF_8));
+        } catch (IOException e)
+        {
+            Timber.w(e, "Could not read the MQTT outbox target");
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the segment files left in the outbox directory for a different target.
+     */
+    private void deleteExistingSegments()
+    {
+        final File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_FILE_EXTENSION));
+        if (files == null || files.length == 0) return;
+
+        Timber.i("Deleting the MQTT outbox in %s because it was for a different broker or topic prefix", directory);
+        for (File file : files)
+        {
+            deleteFile(file);
+        }
+    }
+
+    private void loadExistingSegments()
+    {
+        final File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_FILE_EXTENSION));
+        if (files == null) return;
+
+        final List<Segment> existing = new ArrayList<>();
+        for (File file : files)
+        {
+            final Segment segment = Segment.fromFile(file);
+            if (segment == null)
+            {
+                Timber.w("Ignoring the unrecognized MQTT outbox file %s", file);
+                continue;
+            }
+
+            countMessages(segment);
+            if (segment.messageCount == 0)
+            {
+                deleteFile(segment.file);
+                continue;
+            }
+
+            existing.add(segment);
+        }
+
+        existing.sort((first, second) -> Long.compare(first.sequence, second.sequence));
+        for (Segment segment : existing)
+        {
+            segments.addLast(segment);
+            messageCount += segment.messageCount;
+            byteCount += segment.unreadBytes;
+            nextSequence = segment.sequence + 1;
+        }
+
+        if (messageCount > 0)
+        {
+            Timber.i("Loaded %d MQTT messages from the outbox in %s", messageCount, directory);
+        }
+    }
+
+    /**
+     * Counts the complete messages in a segment file. A partial message at the end of the file (e.g. if the process
+     * died in the middle of a write) is not counted.
+     */
+    private static void countMessages(Segment segment)
+    {
+        try
+        {
+            final MappedByteBuffer buffer = map(segment.file, 0);
+            while (buffer.hasRemaining())
+            {
+                final int start = buffer.position();
+                if (readMessage(buffer) == null)
+                {
+                    Timber.w("Found a partial message at the end of the MQTT outbox segment %s", segment.file);
+                    break;
+                }
+
+                segment.messageCount++;
+                segment.unreadBytes += buffer.position() - start;
+            }
+        } catch (IOException e)
+        {
+            Timber.w(e, "Could not read the MQTT outbox segment %s", segment.file);
+        }
+
+        segment.fileBytes = segment.unreadBytes;
+        segment.sealed = true;
+    }
+
+    /**
+     * Reads the message at the buffer's position, and moves the position past it.
+     *
+     * @return The message, or null if there is not a complete message at the buffer's position.
+     */
+    private static OutboundMessage readMessage(ByteBuffer buffer)
+    {
+        final int start = buffer.position();
+        try
+        {
+            final String topic = readString(buffer);
+            final String payload = readString(buffer);
+            return new OutboundMessage(topic, payload, buffer.position() - start);
+        } catch (BufferUnderflowException e)
+        {
+            buffer.position(start);
+            return null;
+        }
+    }
+
+    private static String readString(ByteBuffer buffer)
+    {
+        final int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) throw new BufferUnderflowException();
+
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Maps the file for reading, with the position set to the provided offset.
+     */
+    private static MappedByteBuffer map(File file, long offset) throws IOException
+    {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel())
+        {
+            // The mapping stays valid after the channel is closed
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.position((int) Math.min(offset, buffer.limit()));
+            return buffer;
+        }
+    }
+
+    private Segment startSegment() throws IOException
+    {
+        final Segment segment = Segment.create(directory, nextSequence++, System.currentTimeMillis());
+        writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segment.file, true)));
+        segments.addLast(segment);
+        return segment;
+    }
+
+    private void sealTail() throws IOException
+    {
+        final Segment tail = segments.peekLast();
+        if (tail != null) tail.sealed = true;
+
+        if (writer != null)
+        {
+            final DataOutputStream toClose = writer;
+            writer = null;
+            toClose.close();
+        }
+    }
+
+    /**
+     * Empties the segment that is being written to once all of its messages have been removed, so that the next
+     * message is written to the start of the same file instead of a new segment file being created.
+     */
+    private void emptyTail(Segment tail)
+    {
+        // The mapping must not be used once the file is truncated
+        closeReader();
+
+        try
+        {
+            // The writer appends, so truncating the file moves the next write back to the start of the file
+            new FileOutputStream(tail.file).close();
+            tail.fileBytes = 0;
+            tail.unreadBytes = 0;
+        } catch (IOException e)
+        {
+            // Leave the read messages in the file; a new segment is started for the next message instead
+            Timber.w(e, "Could not empty the MQTT outbox segment %s", tail.file);
+            removeHead();
+        }
+    }
+
+    private void removeHead()
+    {
+        final Segment head = segments.pollFirst();
+        if (head == null) return;
+
+        closeReader();
+        peeked = null;
+        if (!head.sealed)
+        {
+            try
+            {
+                sealTail();
+            } catch (IOException e)
+            {
+                Timber.w(e, "Could not close the MQTT outbox segment %s", head.file);
+            }
+        }
+
+        messageCount -= head.messageCount;
+        byteCount -= head.unreadBytes;
+        deleteFile(head.file);
+    }
+
+    private void closeReader()
+    {
+        // There is no way to unmap a buffer, so just let it be garbage collected
+        reader = null;
+    }
+
+    private static void deleteFile(File file)
+    {
+        if (!file.delete() && file.exists())
+        {
+            Timber.w("Could not delete the MQTT outbox segment %s", file);
+        }
+    }
+
+    /**
+     * A message read back from the outbox.
+     */
+    static final class OutboundMessage
+    {
+        final String topic;
+        final String payload;
+        final int sizeBytes;
+
+        OutboundMessage(String topic, String payload, int sizeBytes)
+        {
+            this.topic = topic;
+            this.payload = payload;
+            this.sizeBytes = sizeBytes;
+        }
+    }
+
+    /**
+     * A single segment file. The file name is the sequence number followed by the time the segment was started; the
+     * sequence number keeps the order of the segments across an app restart.
+     */
+    private static final class Segment
+    {
+        final File file;
+        final long sequence;
+
+        int messageCount;
+        long fileBytes;
+        long unreadBytes;
+        boolean sealed;
+
+        private Segment(File file, long sequence)
+        {
+            this.file = file;
+            this.sequence = sequence;
+        }
+
+        static Segment create(File directory, long sequence, long createdTimeMillis)
+        {
+            return new Segment(new File(directory, sequence + "-" + createdTimeMillis + SEGMENT_FILE_EXTENSION), sequence);
+        }
+
+        /**
+         * @return The segment for the file, or null if the file name is not a valid segment name.
+         */
+        static Segment fromFile(File file)
+        {
+            final String name = file.getName();
+            final String[] parts = name.substring(0, name.length() - SEGMENT_FILE_EXTENSION.length()).split("-");
+            if (parts.length != 2) return null;
+
+            try
+            {
+                return new Segment(file, Long.parseLong(parts[0]));
+            } catch (NumberFormatException e)
+            {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.craxiom.networksurvey.mqtt;
+
+import com.craxiom.networksurvey.model.SurveyRecordEnvelope;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageOrBuilder;
+
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * Converts survey records to JSON and hands them off to be published to the MQTT broker.
+ * <p>
+ * By default each record is published as its own message on the record type's topic. When a batch topic is set, the
+ * records from a single scan (e.g. all the Bluetooth devices found in one scan) are instead published as one message
+ * on the batch topic, which saves a broker round trip per record. The batch message looks like:
+ * <pre>
+ * {"messageType":"SurveyRecordBatch","topic":"bluetooth_message","records":[{...},{...}]}
+ * </pre>
+ * where {@code topic} is the topic the records would have been published on, and each entry in {@code records} is the
+ * same JSON that would have been published for that record.
+ *
+ * @since 1.31.0
+ */
+final class MqttRecordPublisher
+{
+    static final String BATCH_MESSAGE_TYPE = "SurveyRecordBatch";
+
+    /**
+     * Where the JSON messages are sent; normally the MQTT client.
+     */
+    interface MessageSink
+    {
+        /**
+         * @param topic The topic to publish the message on, without the topic prefix.
+         * @param json  The message.
+         */
+        void publish(String topic, String json);
+    }
+
+    /**
+     * Converts a record to JSON.
+     */
+    private interface JsonConverter<R>
+    {
+        String toJson(R record, String deviceName) throws InvalidProtocolBufferException;
+    }
+
+    private final MessageSink messageSink;
+    private final MqttRecordSerializer recordSerializer = new MqttRecordSerializer();
+    private volatile String batchTopic = "";
+
+    MqttRecordPublisher(MessageSink messageSink)
+    {
+        this.messageSink = messageSink;
+    }
+
+    /**
+     * @param batchTopic The topic to publish the batch messages on, or null/empty to publish each record on its own.
+     */
+    void setBatchTopic(String batchTopic)
+    {
+        this.batchTopic = batchTopic == null ? "" : batchTopic.trim();
+    }
+
+    String getBatchTopic()
+    {
+        return batchTopic;
+    }
+
+    /**
+     * Publishes a single record.
+     *
+     * @param topic      The topic for the record type.
+     * @param record     The record to publish.
+     * @param deviceName The device name to set in the record, or null to leave it as is.
+     */
+    void publishRecord(String topic, MessageOrBuilder record, String deviceName)
+    {
+        publish(topic, record, recordSerializer::toJson, deviceName);
+    }
+
+    /**
+     * Publishes a single record, reusing the JSON cached in the envelope.
+     *
+     * @param topic      The topic for the record type.
+     * @param record     The record to publish.
+     * @param deviceName The device name to set in the record, or null to leave it as is.
+     * @since 1.31.0
+     */
+    void publishRecord(String topic, SurveyRecordEnvelope<?> record, String deviceName)
+    {
+        publish(topic, record, recordSerializer::toJson, deviceName);
+    }
+
+    /**
+     * Publishes the records from a single scan, either one message per record, or as one batch message if a batch
+     * topic is set.
+     *
+     * @param topic      The topic for the record type.
+     * @param records    The records to publish.
+     * @param deviceName The device name to set in each record, or null to leave them as is.
+     */
+    void publishRecords(String topic, List<? extends MessageOrBuilder> records, String deviceName)
+    {
+        publishAll(topic, records, recordSerializer::toJson, deviceName);
+    }
+
+    /**
+     * Same as {@link #publishRecords(String, List, String)}, but reuses the JSON cached in each envelope.
+     *
+     * @param topic      The topic for the record type.
+     * @param records    The records to publish.
+     * @param deviceName The device name to set in each record, or null to leave them as is.
+     * @since 1.31.0
+     */
+    void publishEnvelopes(String topic, List<? extends SurveyRecordEnvelope<?>> records, String deviceName)
+    {
+        publishAll(topic, records, recordSerializer::toJson, deviceName);
+    }
+
+    private <R> void publish(String topic, R record, JsonConverter<? super R> converter, String deviceName)
+    {
+        try
+        {
+            messageSink.publish(topic, converter.toJson(record, deviceName));
+        } catch (InvalidProtocolBufferException e)
+        {
+            Timber.e(e, "Could not convert a record to JSON for the MQTT topic %s", topic);
+        }
+    }
+
+    private <R> void publishAll(String topic, List<? extends R> records, JsonConverter<? super R> converter,
+                                String deviceName)
+    {
+        if (records.isEmpty()) return;
+
+        final String currentBatchTopic = batchTopic;
+        if (currentBatchTopic.isEmpty())
+        {
+            for (R record : records)
+            {
+                publish(topic, record, converter, deviceName);
+            }
+            return;
+        }
+
+        final StringBuilder batch = new StringBuilder(records.size() * 512)
+                .append("{\"messageType\":\"").append(BATCH_MESSAGE_TYPE)
+                .append("\",\"topic\":\"").append(topic)
+                .append("\",\"records\":[");
+        int recordCount = 0;
+        for (R record : records)
+        {
+            try
+            {
+                final String json = converter.toJson(record, deviceName);
+                if (recordCount > 0) batch.append(',');
+                batch.append(json);
+                recordCount++;
+            } catch (InvalidProtocolBufferException e)
+            {
+                Timber.e(e, "Could not convert a record to JSON for the MQTT batch topic %s", currentBatchTopic);
+            }
+        }
+
+        if (recordCount == 0) return;
+
+        messageSink.publish(currentBatchTopic, batch.append("]}").toString());
+    }
+}
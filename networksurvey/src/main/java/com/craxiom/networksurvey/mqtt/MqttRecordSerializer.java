@@ -0,0 +1,52 @@
+package com.craxiom.networksurvey.mqtt;
+
+import com.craxiom.networksurvey.model.DeviceNameJsonEditor;
+import com.craxiom.networksurvey.model.SurveyRecordEnvelope;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageOrBuilder;
+import com.google.protobuf.util.JsonFormat;
+
+/**
+ * Converts survey records to the JSON that is published to the MQTT broker.
+ * <p>
+ * Each record is printed to JSON once, and the device name is then set directly in the JSON text (see
+ * {@link DeviceNameJsonEditor}) instead of copying every record just to change the device name. For the records that
+ * come in a {@link SurveyRecordEnvelope}, both the JSON and the device named JSON are cached in the envelope.
+ * <p>
+ * This class is thread safe.
+ *
+ * @since 1.31.0
+ */
+final class MqttRecordSerializer
+{
+    // Matches the printer used by DefaultMqttConnection (and SurveyRecordEnvelope) so the JSON is the same as what it publishes
+    private final JsonFormat.Printer jsonPrinter = JsonFormat.printer().preservingProtoFieldNames().omittingInsignificantWhitespace();
+
+    /**
+     * @param record     The record to convert to JSON.
+     * @param deviceName The device name to set in the record's data, or null to leave the record as is.
+     * @return The JSON for the record.
+     * @throws InvalidProtocolBufferException If the record could not be converted to JSON.
+     */
+    String toJson(MessageOrBuilder record, String deviceName) throws InvalidProtocolBufferException
+    {
+        final String json = jsonPrinter.print(record);
+        if (deviceName == null) return json;
+
+        return DeviceNameJsonEditor.setDeviceName(record, json, deviceName);
+    }
+
+    /**
+     * Same as {@link #toJson(MessageOrBuilder, String)}, but uses the JSON that is cached in the envelope, so the
+     * record is only printed if no other listener has needed the JSON yet.
+     *
+     * @param record     The record to convert to JSON.
+     * @param deviceName The device name to set in the record's data, or null to leave the record as is.
+     * @return The JSON for the record.
+     * @throws InvalidProtocolBufferException If the record could not be converted to JSON.
+     */
+    String toJson(SurveyRecordEnvelope<?> record, String deviceName) throws InvalidProtocolBufferException
+    {
+        return record.getJson(deviceName);
+    }
+}
@@ -0,0 +1,189 @@
+package com.craxiom.networksurvey.mqtt;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import timber.log.Timber;
+
+/**
+ * Sits between the {@link MqttRecordPublisher} and the MQTT client so that messages are not lost while the broker is
+ * not connected.
+ * <p>
+ * While the broker is connected, messages are handed straight to the client. While it is not, the messages are written
+ * to an {@link MqttOutbox} on disk instead, and once the connection comes back they are replayed in order. The replay
+ * is rate limited so that a long stretch without a connection (e.g. a drive through a dead zone) does not flood the
+ * broker all at once. Any new messages that arrive during the replay are added to the end of the outbox so that the
+ * order is kept.
+ * <p>
+ * A message is only removed from the outbox after it has been handed to the client while the broker is connected.
+ * Since the client publishes at QoS 1 (at least once), a message that was in flight when the app stopped can be sent
+ * a second time, but it is never skipped.
+ * <p>
+ * Until {@link #open(File, long, int)} is called, or if the outbox could not be created, messages are passed straight
+ * to the client the same as if there was no outbox.
+ *
+ * @since 1.31.0
+ */
+final class MqttStoreAndForward implements MqttRecordPublisher.MessageSink
+{
+    private static final long MAX_SEGMENT_BYTES = 1024 * 1024;
+    private static final long DRAIN_INTERVAL_MS = 100;
+
+    private final MqttRecordPublisher.MessageSink client;
+    private final BooleanSupplier isConnected;
+    private final ScheduledExecutorService executorService;
+
+    private MqttOutbox outbox;
+    private int messagesPerDrain = 1;
+    private ScheduledFuture<?> drainFuture;
+
+    /**
+     * @param client      Publishes a message to the broker.
+     * @param isConnected Returns true if the broker is connected and a message handed to the client will be sent.
+     */
+    MqttStoreAndForward(MqttRecordPublisher.MessageSink client, BooleanSupplier isConnected)
+    {
+        this.client = client;
+        this.isConnected = isConnected;
+
+        executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "MQTT Outbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens the outbox, and starts replaying any messages that were left in it from a previous connection. If an
+     * outbox is already open, it is closed first so that the new settings are used.
+     *
+     * @param directory          The directory to store the outbox files in.
+     * @param target             The broker address and topic prefix the messages are published to. Any messages left
+     *                           in the outbox for a different target are deleted rather than replayed.
+     * @param maxOutboxBytes     The max number of bytes to keep in the outbox. If 0, no outbox is used.
+     * @param drainRatePerSecond The max number of messages per second to publish from the outbox once the broker is
+     *                           connected again.
+     */
+    synchronized void open(File directory, String target, long maxOutboxBytes, int drainRatePerSecond)
+    {
+        close();
+        if (maxOutboxBytes <= 0) return;
+
+        messagesPerDrain = Math.max(1, (int) (drainRatePerSecond * DRAIN_INTERVAL_MS / TimeUnit.SECONDS.toMillis(1)));
+        try
+        {
+            outbox = new MqttOutbox(directory, target, Math.min(MAX_SEGMENT_BYTES, Math.max(1, maxOutboxBytes / 4)), maxOutboxBytes);
+            if (!outbox.isEmpty()) scheduleDrain();
+        } catch (IOException e)
+        {
+            Timber.e(e, "Could not create the MQTT outbox, messages will be lost while the broker is not connected");
+        }
+    }
+
+    /**
+     * Closes the outbox files. Any messages that have not been sent are kept on disk and loaded the next time the
+     * outbox is opened.
+     */
+    synchronized void close()
+    {
+        cancelDrain();
+        if (outbox != null)
+        {
+            outbox.close();
+            outbox = null;
+        }
+    }
+
+    /**
+     * @return The number of messages waiting in the outbox.
+     */
+    synchronized int getOutboxSize()
+    {
+        return outbox == null ? 0 : outbox.size();
+    }
+
+    /**
+     * @return The number of messages that were thrown away because the outbox was full.
+     */
+    synchronized long getDroppedCount()
+    {
+        return outbox == null ? 0 : outbox.getDroppedCount();
+    }
+
+    @Override
+    public synchronized void publish(String topic, String json)
+    {
+        if (outbox == null || (outbox.isEmpty() && isConnected.getAsBoolean()))
+        {
+            client.publish(topic, json);
+            return;
+        }
+
+        try
+        {
+            outbox.add(topic, json);
+            scheduleDrain();
+        } catch (IOException e)
+        {
+            Timber.e(e, "Could not add a message for the MQTT topic %s to the outbox", topic);
+        }
+    }
+
+    /**
+     * Publishes the next few messages from the outbox, if the broker is connected.
+     */
+    private synchronized void drain()
+    {
+        if (outbox == null || !isConnected.getAsBoolean()) return;
+
+        try
+        {
+            for (int i = 0; i < messagesPerDrain; i++)
+            {
+                final MqttOutbox.OutboundMessage message = outbox.peek();
+                if (message == null) break;
+
+                client.publish(message.topic, message.payload);
+                outbox.remove();
+            }
+        } catch (RuntimeException e)
+        {
+            // Leave the message in the outbox and try again on the next drain
+            Timber.e(e, "Could not publish a message from the MQTT outbox");
+            return;
+        }
+
+        if (outbox.isEmpty())
+        {
+            Timber.i("Finished publishing the messages from the MQTT outbox");
+            cancelDrain();
+        }
+    }
+
+    /**
+     * Must be called while holding the lock on this object.
+     */
+    private void scheduleDrain()
+    {
+        if (drainFuture != null) return;
+
+        drainFuture = executorService.scheduleWithFixedDelay(this::drain, DRAIN_INTERVAL_MS, DRAIN_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Must be called while holding the lock on this object.
+     */
+    private void cancelDrain()
+    {
+        if (drainFuture == null) return;
+
+        drainFuture.cancel(false);
+        drainFuture = null;
+    }
+}
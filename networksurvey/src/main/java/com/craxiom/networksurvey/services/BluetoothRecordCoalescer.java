@@ -0,0 +1,244 @@
+package com.craxiom.networksurvey.services;
+
+import com.craxiom.messaging.BluetoothRecord;
+import com.craxiom.messaging.BluetoothRecordData;
+import com.google.protobuf.FloatValue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+import timber.log.Timber;
+
+/**
+ * Combines the Bluetooth records for the same device (by source address) that are reported within a window of time
+ * into a single record. A BLE batch scan and the classic discovery broadcasts can report the same device many times
+ * within one report delay, and without this every one of those becomes a record that is logged, streamed, and
+ * displayed.
+ * <p>
+ * The record that is emitted for a device is the latest record seen for it (so it has the latest location, time, and
+ * device name), with the signal strength set according to the {@link RssiMode}. The records are numbered as they are
+ * emitted so that the record numbers don't have gaps for the records that were combined.
+ *
+ * @since 1.31.0
+ */
+final class BluetoothRecordCoalescer
+{
+    /**
+     * How to combine the signal strength of the records for a device.
+     */
+    enum RssiMode
+    {
+        STRONGEST,
+        LATEST,
+        AVERAGE;
+
+        /**
+         * @return The mode for the index used in the preferences, or {@link #STRONGEST} if the index is not valid.
+         */
+        static RssiMode fromIndex(int index)
+        {
+            final RssiMode[] modes = values();
+            return index >= 0 && index < modes.length ? modes[index] : STRONGEST;
+        }
+    }
+
+    private final long windowMs;
+    private final RssiMode rssiMode;
+    private final IntSupplier recordNumbers;
+    private final Consumer<List<BluetoothRecord>> emitter;
+    private final Map<String, DeviceSamples> pendingDevices = new LinkedHashMap<>();
+
+    private ScheduledExecutorService flushExecutor;
+    private long recordsIn;
+    private long recordsOut;
+
+    /**
+     * @param windowMs      How long to collect the records for before emitting them.
+     * @param rssiMode      How to combine the signal strength values.
+     * @param recordNumbers Provides the record number for each emitted record.
+     * @param emitter       Called with the combined records at the end of each window.
+     */
+    BluetoothRecordCoalescer(long windowMs, RssiMode rssiMode, IntSupplier recordNumbers, Consumer<List<BluetoothRecord>> emitter)
+    {
+        this.windowMs = windowMs;
+        this.rssiMode = rssiMode;
+        this.recordNumbers = recordNumbers;
+        this.emitter = emitter;
+    }
+
+    long getWindowMs()
+    {
+        return windowMs;
+    }
+
+    RssiMode getRssiMode()
+    {
+        return rssiMode;
+    }
+
+    /**
+     * Starts the thread that emits the combined records at the end of each window.
+     */
+    synchronized void start()
+    {
+        if (flushExecutor != null) return;
+
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "Bluetooth Coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor.scheduleWithFixedDelay(this::flushSafely, windowMs, windowMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the flush thread and emits any records that are still waiting.
+     */
+    void stop()
+    {
+        final ScheduledExecutorService executor;
+        synchronized (this)
+        {
+            executor = flushExecutor;
+            flushExecutor = null;
+        }
+        if (executor != null) executor.shutdown();
+
+        flush();
+        Timber.i("Bluetooth coalescer stopped; combined %d records into %d", getRecordsIn(), getRecordsOut());
+    }
+
+    /**
+     * Adds records to the current window.
+     */
+    void add(List<BluetoothRecord> records)
+    {
+        synchronized (this)
+        {
+            for (BluetoothRecord record : records)
+            {
+                if (record == null) continue;
+                recordsIn++;
+                final String sourceAddress = record.getData().getSourceAddress();
+                final DeviceSamples samples = pendingDevices.get(sourceAddress);
+                if (samples == null)
+                {
+                    pendingDevices.put(sourceAddress, new DeviceSamples(record));
+                } else
+                {
+                    samples.add(record);
+                }
+            }
+        }
+    }
+
+    /**
+     * Emits one record for each device that was seen since the last flush.
+     */
+    void flush()
+    {
+        final List<BluetoothRecord> combined;
+        synchronized (this)
+        {
+            if (pendingDevices.isEmpty()) return;
+
+            combined = new ArrayList<>(pendingDevices.size());
+            for (DeviceSamples samples : pendingDevices.values())
+            {
+                combined.add(samples.toRecord(rssiMode, recordNumbers.getAsInt()));
+            }
+            pendingDevices.clear();
+            recordsOut += combined.size();
+        }
+
+        emitter.accept(combined);
+    }
+
+    synchronized long getRecordsIn()
+    {
+        return recordsIn;
+    }
+
+    synchronized long getRecordsOut()
+    {
+        return recordsOut;
+    }
+
+    private void flushSafely()
+    {
+        try
+        {
+            flush();
+        } catch (Throwable t)
+        {
+            // An exception would stop the scheduled flushes, so log it and keep going
+            Timber.e(t, "Could not emit the combined Bluetooth records");
+        }
+    }
+
+    /**
+     * The records seen for a single device in the current window.
+     */
+    private static final class DeviceSamples
+    {
+        private BluetoothRecord latest;
+        private int sampleCount;
+        private int rssiCount;
+        private float strongestRssi = Float.NEGATIVE_INFINITY;
+        private float latestRssi;
+        private double rssiSum;
+
+        DeviceSamples(BluetoothRecord record)
+        {
+            add(record);
+        }
+
+        void add(BluetoothRecord record)
+        {
+            latest = record;
+            sampleCount++;
+
+            final BluetoothRecordData data = record.getData();
+            if (data.hasSignalStrength())
+            {
+                final float rssi = data.getSignalStrength().getValue();
+                rssiCount++;
+                rssiSum += rssi;
+                latestRssi = rssi;
+                strongestRssi = Math.max(strongestRssi, rssi);
+            }
+        }
+
+        BluetoothRecord toRecord(RssiMode rssiMode, int recordNumber)
+        {
+            final BluetoothRecord.Builder recordBuilder = latest.toBuilder();
+            final BluetoothRecordData.Builder dataBuilder = recordBuilder.getDataBuilder();
+            dataBuilder.setRecordNumber(recordNumber);
+
+            if (rssiCount > 0)
+            {
+                final float rssi = switch (rssiMode)
+                {
+                    case STRONGEST -> strongestRssi;
+                    case LATEST -> latestRssi;
+                    case AVERAGE -> (float) (rssiSum / rssiCount);
+                };
+                dataBuilder.setSignalStrength(FloatValue.newBuilder().setValue(rssi).build());
+            }
+
+            if (sampleCount > 1)
+            {
+                Timber.v("Combined %d Bluetooth records for %s", sampleCount, dataBuilder.getSourceAddress());
+            }
+
+            return recordBuilder.build();
+        }
+    }
+}
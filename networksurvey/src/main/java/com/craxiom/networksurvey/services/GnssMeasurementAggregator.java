@@ -0,0 +1,214 @@
+package com.craxiom.networksurvey.services;
+
+import android.location.GnssStatus;
+
+import java.util.Arrays;
+
+/**
+ * Collects the GNSS measurements that are received between two logging intervals so that the logged record for each
+ * satellite signal summarizes all of them instead of only using the measurement that happened to arrive when the
+ * interval was up.
+ * <p>
+ * The measurements are usually delivered at 1 Hz, so this class keeps its state in primitive arrays that are reused
+ * from one interval to the next, and nothing is allocated per measurement once the arrays have grown to fit the
+ * number of signals in view.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @param <T> The type of the measurement object that is kept for the latest measurement of each signal.
+ * @since 1.31.0
+ */
+final class GnssMeasurementAggregator<T>
+{
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int INITIAL_AGC_CAPACITY = 16;
+
+    /**
+     * Receives the summary for a single satellite signal.
+     */
+    interface SignalSummaryConsumer<T>
+    {
+        /**
+         * @param latestMeasurement The latest measurement for the signal, used for the fields that are not summarized.
+         * @param minCn0DbHz        The lowest C/N0 seen for the signal during the interval.
+         * @param meanCn0DbHz       The mean C/N0.
+         * @param maxCn0DbHz        The highest C/N0.
+         * @param measurementCount  The number of measurements of the signal during the interval.
+         * @param agcDb             The latest AGC level reported for the signal's constellation and frequency, or
+         *                          {@link Float#NaN} if there was none.
+         */
+        void accept(T latestMeasurement, float minCn0DbHz, float meanCn0DbHz, float maxCn0DbHz, int measurementCount,
+                    float agcDb);
+    }
+
+    private long[] signalKeys = new long[INITIAL_CAPACITY];
+    private float[] minCn0 = new float[INITIAL_CAPACITY];
+    private float[] maxCn0 = new float[INITIAL_CAPACITY];
+    private double[] sumCn0 = new double[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private long[] agcKeys = new long[INITIAL_CAPACITY];
+    private Object[] latestMeasurements = new Object[INITIAL_CAPACITY];
+    private int signalCount;
+
+    private long[] agcTableKeys = new long[INITIAL_AGC_CAPACITY];
+    private float[] agcTableLevels = new float[INITIAL_AGC_CAPACITY];
+    private int agcCount;
+
+    private int eventCount;
+
+    /**
+     * Called once for each measurements event, before the measurements in it are added.
+     */
+    void onEvent()
+    {
+        eventCount++;
+    }
+
+    /**
+     * @return The number of measurement events since the last {@link #drain(SignalSummaryConsumer)}.
+     */
+    int getEventCount()
+    {
+        return eventCount;
+    }
+
+    /**
+     * @return The number of distinct signals seen since the last {@link #drain(SignalSummaryConsumer)}.
+     */
+    int getSignalCount()
+    {
+        return signalCount;
+    }
+
+    /**
+     * Adds a single satellite measurement.
+     *
+     * @param constellationType  The {@link GnssStatus} constellation type.
+     * @param svid               The satellite ID.
+     * @param carrierFrequencyHz The carrier frequency, or {@link Double#NaN} if it was not reported.
+     * @param cn0DbHz            The carrier to noise density.
+     * @param measurement        The measurement object itself.
+     */
+    void addMeasurement(int constellationType, int svid, double carrierFrequencyHz, double cn0DbHz, T measurement)
+    {
+        final long frequencyKey = Double.isNaN(carrierFrequencyHz) ? 0 : getFrequencyKey(constellationType, (long) carrierFrequencyHz);
+        final long signalKey = ((long) constellationType << 56) | ((long) (svid & 0xFFFF) << 40) | frequencyKey;
+
+        int index = indexOf(signalKeys, signalCount, signalKey);
+        if (index < 0)
+        {
+            if (signalCount == signalKeys.length) growSignals();
+            index = signalCount++;
+            signalKeys[index] = signalKey;
+            minCn0[index] = Float.POSITIVE_INFINITY;
+            maxCn0[index] = Float.NEGATIVE_INFINITY;
+            sumCn0[index] = 0;
+            counts[index] = 0;
+            agcKeys[index] = getAgcKey(constellationType, frequencyKey);
+        }
+
+        final float cn0 = (float) cn0DbHz;
+        minCn0[index] = Math.min(minCn0[index], cn0);
+        maxCn0[index] = Math.max(maxCn0[index], cn0);
+        sumCn0[index] += cn0DbHz;
+        counts[index]++;
+        latestMeasurements[index] = measurement;
+    }
+
+    /**
+     * Sets the AGC level reported for a constellation and carrier frequency, replacing any earlier level.
+     */
+    void putAgc(int constellationType, long carrierFrequencyHz, double levelDb)
+    {
+        final long key = getAgcKey(constellationType, getFrequencyKey(constellationType, carrierFrequencyHz));
+        int index = indexOf(agcTableKeys, agcCount, key);
+        if (index < 0)
+        {
+            if (agcCount == agcTableKeys.length)
+            {
+                agcTableKeys = Arrays.copyOf(agcTableKeys, agcCount * 2);
+                agcTableLevels = Arrays.copyOf(agcTableLevels, agcCount * 2);
+            }
+            index = agcCount++;
+            agcTableKeys[index] = key;
+        }
+        agcTableLevels[index] = (float) levelDb;
+    }
+
+    /**
+     * @return The AGC level for the constellation and carrier frequency, or {@link Float#NaN} if none was reported.
+     */
+    float getAgc(int constellationType, long carrierFrequencyHz)
+    {
+        final int index = indexOf(agcTableKeys, agcCount, getAgcKey(constellationType, getFrequencyKey(constellationType, carrierFrequencyHz)));
+        return index < 0 ? Float.NaN : agcTableLevels[index];
+    }
+
+    /**
+     * Passes the summary of each signal to the consumer, in the order the signals were first seen, and then clears
+     * everything for the next interval.
+     */
+    @SuppressWarnings("unchecked")
+    void drain(SignalSummaryConsumer<T> consumer)
+    {
+        try
+        {
+            for (int i = 0; i < signalCount; i++)
+            {
+                final int agcIndex = indexOf(agcTableKeys, agcCount, agcKeys[i]);
+                consumer.accept((T) latestMeasurements[i], minCn0[i], (float) (sumCn0[i] / counts[i]), maxCn0[i],
+                        counts[i], agcIndex < 0 ? Float.NaN : agcTableLevels[agcIndex]);
+            }
+        } finally
+        {
+            // Let go of the measurement objects, but keep the arrays for the next interval
+            Arrays.fill(latestMeasurements, 0, signalCount, null);
+            signalCount = 0;
+            agcCount = 0;
+            eventCount = 0;
+        }
+    }
+
+    /**
+     * GLONASS satellites each transmit on their own frequency within a band, but the AGC is reported once for the
+     * whole band, so GLONASS frequencies are keyed by band. All the other frequencies are keyed to the kHz.
+     */
+    static long getFrequencyKey(int constellationType, long carrierFrequencyHz)
+    {
+        if (constellationType == GnssStatus.CONSTELLATION_GLONASS)
+        {
+            final double carrierFrequencyMhz = carrierFrequencyHz / 1e6;
+            // Allow some padding around the band edges for float comparisons
+            if (carrierFrequencyMhz >= 1598.0 && carrierFrequencyMhz <= 1606.0) return 1_602_000;
+            if (carrierFrequencyMhz >= 1242.0 && carrierFrequencyMhz <= 1249.0) return 1_246_000;
+        }
+        return carrierFrequencyHz / 1_000;
+    }
+
+    private static long getAgcKey(int constellationType, long frequencyKey)
+    {
+        return ((long) constellationType << 56) | frequencyKey;
+    }
+
+    private static int indexOf(long[] keys, int count, long key)
+    {
+        // Only a few dozen signals are in view at once, so a linear scan is as fast as hashing and allocates nothing
+        for (int i = 0; i < count; i++)
+        {
+            if (keys[i] == key) return i;
+        }
+        return -1;
+    }
+
+    private void growSignals()
+    {
+        final int capacity = signalKeys.length * 2;
+        signalKeys = Arrays.copyOf(signalKeys, capacity);
+        minCn0 = Arrays.copyOf(minCn0, capacity);
+        maxCn0 = Arrays.copyOf(maxCn0, capacity);
+        sumCn0 = Arrays.copyOf(sumCn0, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        agcKeys = Arrays.copyOf(agcKeys, capacity);
+        latestMeasurements = Arrays.copyOf(latestMeasurements, capacity);
+    }
+}
@@ -1,6 +1,5 @@
 package com.craxiom.networksurvey.services;
 
-import android.annotation.SuppressLint;
 import android.app.IntentService;
 import android.app.Notification;
 import android.app.NotificationManager;
@@ -11,7 +10,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.ServiceConnection;
 import android.content.pm.ServiceInfo;
-import android.os.AsyncTask;
 import android.os.Binder;
 import android.os.Build;
 import android.os.Handler;
@@ -58,26 +56,30 @@ import com.craxiom.networksurvey.listeners.IDeviceStatusListener;
 import com.craxiom.networksurvey.listeners.IGnssSurveyRecordListener;
 import com.craxiom.networksurvey.listeners.IWifiSurveyRecordListener;
 import com.craxiom.networksurvey.messaging.NetworkSurveyStatusGrpc;
+import com.craxiom.networksurvey.model.SurveyRecordEnvelope;
 import com.craxiom.networksurvey.model.WifiRecordWrapper;
+import com.craxiom.networksurvey.services.grpc.GrpcRecordQueue;
+import com.craxiom.networksurvey.services.grpc.GrpcStreamingEngine;
+import com.craxiom.networksurvey.services.grpc.LatencyTracker;
 import com.craxiom.networksurvey.util.LegacyRecordConversion;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
 
-import java.lang.ref.WeakReference;
+import java.io.File;
+import java.io.IOException;
 import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import io.grpc.ManagedChannel;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import io.grpc.android.AndroidChannelBuilder;
-import io.grpc.stub.StreamObserver;
 import timber.log.Timber;
 
 /**
@@ -89,10 +91,12 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
         IWifiSurveyRecordListener, IBluetoothSurveyRecordListener, IGnssSurveyRecordListener
 {
     public static final long RECONNECTION_ATTEMPT_BACKOFF_TIME = 10_000L;
+    private static final String SPOOL_DIRECTORY_NAME = "grpc_spool";
+    /**
+     * The file in the spool directory that holds the server address the spooled records are meant for.
+     */
+    private static final String SPOOL_TARGET_FILE_NAME = "target";
     private static final int DEVICE_STATUS_REFRESH_RATE_MS = 15_000;
-    // number of concurrent linked queues. Does not take into account the old queues
-    private static final int NUMBER_OF_QUEUES_TO_PROCESS = 10;
-    private static final int QUEUE_PROCESSING_SLEEP_TIME = 1_000;
 
     private static ConnectionState connectionState = ConnectionState.DISCONNECTED;
 
@@ -107,44 +111,45 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
     private final Handler uiThreadHandler;
     private final SurveyServiceConnection surveyServiceConnection;
     private NetworkSurveyService networkSurveyService;
-    private final ScheduledExecutorService executorService;
-
-    private final ConcurrentLinkedQueue<DeviceStatus> deviceStatusQueue = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<PhoneState> phoneStateQueue = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<GsmRecord> gsmRecordQueue = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<CdmaRecord> cdmaRecordQueue = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<UmtsRecord> umtsRecordQueue = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<LteRecord> lteRecordQueue = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<NrRecord> nrRecordQueue = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<WifiBeaconRecord> wifiBeaconRecordQueue = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<BluetoothRecord> bluetoothRecordQueue = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<GnssRecord> gnssRecordQueue = new ConcurrentLinkedQueue<>();
+    private final GrpcStreamingEngine streamingEngine;
+    private final List<GrpcRecordQueue<?>> recordQueues = new CopyOnWriteArrayList<>();
+
+    private GrpcRecordQueue<DeviceStatus> deviceStatusQueue;
+    private GrpcRecordQueue<PhoneState> phoneStateQueue;
+    private GrpcRecordQueue<GsmRecord> gsmRecordQueue;
+    private GrpcRecordQueue<CdmaRecord> cdmaRecordQueue;
+    private GrpcRecordQueue<UmtsRecord> umtsRecordQueue;
+    private GrpcRecordQueue<LteRecord> lteRecordQueue;
+    private GrpcRecordQueue<NrRecord> nrRecordQueue;
+    private GrpcRecordQueue<WifiBeaconRecord> wifiBeaconRecordQueue;
+    private GrpcRecordQueue<BluetoothRecord> bluetoothRecordQueue;
+    private GrpcRecordQueue<GnssRecord> gnssRecordQueue;
 
     private final List<IConnectionStateListener> grpcConnectionListeners = new CopyOnWriteArrayList<>();
 
     // Old connection approach, delete this when we can update all the grpc code
-    private final ConcurrentLinkedQueue<com.craxiom.networksurvey.messaging.DeviceStatus> oldDeviceStatusQueue = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<com.craxiom.networksurvey.messaging.GsmRecord> oldGsmRecordQueue = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<com.craxiom.networksurvey.messaging.CdmaRecord> oldCdmaRecordQueue = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<com.craxiom.networksurvey.messaging.UmtsRecord> oldUmtsRecordQueue = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<com.craxiom.networksurvey.messaging.LteRecord> oldLteRecordQueue = new ConcurrentLinkedQueue<>();
-    private GrpcTask<com.craxiom.networksurvey.messaging.DeviceStatus, com.craxiom.networksurvey.messaging.StatusUpdateReply> oldDeviceStatusGrpcTask;
-    private GrpcTask<com.craxiom.networksurvey.messaging.GsmRecord, com.craxiom.networksurvey.messaging.GsmSurveyResponse> oldGsmRecordGrpcTask;
-    private GrpcTask<com.craxiom.networksurvey.messaging.CdmaRecord, com.craxiom.networksurvey.messaging.CdmaSurveyResponse> oldCdmaRecordGrpcTask;
-    private GrpcTask<com.craxiom.networksurvey.messaging.UmtsRecord, com.craxiom.networksurvey.messaging.UmtsSurveyResponse> oldUmtsRecordGrpcTask;
-    private GrpcTask<com.craxiom.networksurvey.messaging.LteRecord, com.craxiom.networksurvey.messaging.LteSurveyResponse> oldLteRecordGrpcTask;
+    private GrpcRecordQueue<com.craxiom.networksurvey.messaging.DeviceStatus> oldDeviceStatusQueue;
+    private GrpcRecordQueue<com.craxiom.networksurvey.messaging.GsmRecord> oldGsmRecordQueue;
+    private GrpcRecordQueue<com.craxiom.networksurvey.messaging.CdmaRecord> oldCdmaRecordQueue;
+    private GrpcRecordQueue<com.craxiom.networksurvey.messaging.UmtsRecord> oldUmtsRecordQueue;
+    private GrpcRecordQueue<com.craxiom.networksurvey.messaging.LteRecord> oldLteRecordQueue;
+    private GrpcStreamingEngine.RecordStream<com.craxiom.networksurvey.messaging.DeviceStatus, com.craxiom.networksurvey.messaging.StatusUpdateReply> oldDeviceStatusStream;
+    private GrpcStreamingEngine.RecordStream<com.craxiom.networksurvey.messaging.GsmRecord, com.craxiom.networksurvey.messaging.GsmSurveyResponse> oldGsmRecordStream;
+    private GrpcStreamingEngine.RecordStream<com.craxiom.networksurvey.messaging.CdmaRecord, com.craxiom.networksurvey.messaging.CdmaSurveyResponse> oldCdmaRecordStream;
+    private GrpcStreamingEngine.RecordStream<com.craxiom.networksurvey.messaging.UmtsRecord, com.craxiom.networksurvey.messaging.UmtsSurveyResponse> oldUmtsRecordStream;
+    private GrpcStreamingEngine.RecordStream<com.craxiom.networksurvey.messaging.LteRecord, com.craxiom.networksurvey.messaging.LteSurveyResponse> oldLteRecordStream;
 
     // New connection approach
-    private GrpcTask<DeviceStatus, StatusUpdateReply> deviceStatusGrpcTask;
-    private GrpcTask<PhoneState, PhoneStateResponse> phoneStateGrpcTask;
-    private GrpcTask<GsmRecord, GsmSurveyResponse> gsmRecordGrpcTask;
-    private GrpcTask<CdmaRecord, CdmaSurveyResponse> cdmaRecordGrpcTask;
-    private GrpcTask<UmtsRecord, UmtsSurveyResponse> umtsRecordGrpcTask;
-    private GrpcTask<LteRecord, LteSurveyResponse> lteRecordGrpcTask;
-    private GrpcTask<NrRecord, NrSurveyResponse> nrRecordGrpcTask;
-    private GrpcTask<WifiBeaconRecord, WifiBeaconSurveyResponse> wifiBeaconRecordGrpcTask;
-    private GrpcTask<BluetoothRecord, BluetoothSurveyResponse> bluetoothRecordGrpcTask;
-    private GrpcTask<GnssRecord, GnssSurveyResponse> gnssRecordGrpcTask;
+    private GrpcStreamingEngine.RecordStream<DeviceStatus, StatusUpdateReply> deviceStatusStream;
+    private GrpcStreamingEngine.RecordStream<PhoneState, PhoneStateResponse> phoneStateStream;
+    private GrpcStreamingEngine.RecordStream<GsmRecord, GsmSurveyResponse> gsmRecordStream;
+    private GrpcStreamingEngine.RecordStream<CdmaRecord, CdmaSurveyResponse> cdmaRecordStream;
+    private GrpcStreamingEngine.RecordStream<UmtsRecord, UmtsSurveyResponse> umtsRecordStream;
+    private GrpcStreamingEngine.RecordStream<LteRecord, LteSurveyResponse> lteRecordStream;
+    private GrpcStreamingEngine.RecordStream<NrRecord, NrSurveyResponse> nrRecordStream;
+    private GrpcStreamingEngine.RecordStream<WifiBeaconRecord, WifiBeaconSurveyResponse> wifiBeaconRecordStream;
+    private GrpcStreamingEngine.RecordStream<BluetoothRecord, BluetoothSurveyResponse> bluetoothRecordStream;
+    private GrpcStreamingEngine.RecordStream<GnssRecord, GnssSurveyResponse> gnssRecordStream;
     private ManagedChannel channel;
 
     /**
@@ -181,7 +186,7 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
 
         surveyServiceConnection = new SurveyServiceConnection();
 
-        executorService = Executors.newScheduledThreadPool(NUMBER_OF_QUEUES_TO_PROCESS);
+        streamingEngine = new GrpcStreamingEngine(GrpcStreamingEngine.DEFAULT_THREAD_COUNT);
     }
 
     /**
@@ -241,6 +246,8 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
     {
         super.onCreate();
 
+        createRecordQueues();
+
         // Bind to the survey service
         final Context applicationContext = getApplicationContext();
         final Intent serviceIntent = new Intent(applicationContext, NetworkSurveyService.class);
@@ -303,6 +310,8 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
         }
 
         disconnectFromGrpcServer(true);
+        streamingEngine.shutdown();
+        recordQueues.forEach(GrpcRecordQueue::close);
 
         super.onDestroy();
     }
@@ -310,12 +319,12 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
     @Override
     public void onDeviceStatus(DeviceStatus deviceStatus)
     {
-        if (isConnected() && deviceStatus != null)
+        if (isQueueingRecords() && deviceStatus != null)
         {
-            if (deviceStatusGrpcTask != null && deviceStatusGrpcTask.getStatus() != AsyncTask.Status.FINISHED)
+            if (!oldConnectionApproach)
             {
-                deviceStatusQueue.add(deviceStatus);
-            } else if (oldConnectionApproach && oldDeviceStatusGrpcTask != null && oldDeviceStatusGrpcTask.getStatus() != AsyncTask.Status.FINISHED)
+                if (deviceStatusStreamEnabled) deviceStatusQueue.add(deviceStatus);
+            } else if (isOpen(oldDeviceStatusStream))
             {
                 oldDeviceStatusQueue.add(LegacyRecordConversion.convertDeviceStatus(deviceStatus));
             }
@@ -325,7 +334,7 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
     @Override
     public void onPhoneState(PhoneState phoneState)
     {
-        if (isConnected() && phoneState != null && phoneStateGrpcTask != null && phoneStateGrpcTask.getStatus() != AsyncTask.Status.FINISHED)
+        if (isQueueingRecords() && phoneState != null && !oldConnectionApproach && phoneStateStreamEnabled)
         {
             phoneStateQueue.add(phoneState);
         }
@@ -334,14 +343,20 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
     @Override
     public void onGsmSurveyRecord(GsmRecord gsmRecord)
     {
-        if (isConnected() && gsmRecord != null)
+        if (gsmRecord != null) onGsmSurveyRecord(new SurveyRecordEnvelope<>(gsmRecord));
+    }
+
+    @Override
+    public void onGsmSurveyRecord(SurveyRecordEnvelope<GsmRecord> gsmRecord)
+    {
+        if (isQueueingRecords())
         {
-            if (gsmRecordGrpcTask != null && gsmRecordGrpcTask.getStatus() != AsyncTask.Status.FINISHED)
+            if (!oldConnectionApproach)
             {
                 gsmRecordQueue.add(gsmRecord);
-            } else if (oldConnectionApproach && oldGsmRecordGrpcTask != null && oldGsmRecordGrpcTask.getStatus() != AsyncTask.Status.FINISHED)
+            } else if (isOpen(oldGsmRecordStream))
             {
-                oldGsmRecordQueue.add(LegacyRecordConversion.convertGsmRecord(gsmRecord));
+                oldGsmRecordQueue.add(LegacyRecordConversion.convertGsmRecord(gsmRecord.getRecord()));
             }
         }
     }
@@ -349,14 +364,20 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
     @Override
     public void onCdmaSurveyRecord(CdmaRecord cdmaRecord)
     {
-        if (isConnected() && cdmaRecord != null)
+        if (cdmaRecord != null) onCdmaSurveyRecord(new SurveyRecordEnvelope<>(cdmaRecord));
+    }
+
+    @Override
+    public void onCdmaSurveyRecord(SurveyRecordEnvelope<CdmaRecord> cdmaRecord)
+    {
+        if (isQueueingRecords())
         {
-            if (cdmaRecordGrpcTask != null && cdmaRecordGrpcTask.getStatus() != AsyncTask.Status.FINISHED)
+            if (!oldConnectionApproach)
             {
                 cdmaRecordQueue.add(cdmaRecord);
-            } else if (oldConnectionApproach && oldCdmaRecordGrpcTask != null && oldCdmaRecordGrpcTask.getStatus() != AsyncTask.Status.FINISHED)
+            } else if (isOpen(oldCdmaRecordStream))
             {
-                oldCdmaRecordQueue.add(LegacyRecordConversion.convertCdmaRecord(cdmaRecord));
+                oldCdmaRecordQueue.add(LegacyRecordConversion.convertCdmaRecord(cdmaRecord.getRecord()));
             }
         }
     }
@@ -364,14 +385,20 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
     @Override
     public void onUmtsSurveyRecord(UmtsRecord umtsRecord)
     {
-        if (isConnected() && umtsRecord != null)
+        if (umtsRecord != null) onUmtsSurveyRecord(new SurveyRecordEnvelope<>(umtsRecord));
+    }
+
+    @Override
+    public void onUmtsSurveyRecord(SurveyRecordEnvelope<UmtsRecord> umtsRecord)
+    {
+        if (isQueueingRecords())
         {
-            if (umtsRecordGrpcTask != null && umtsRecordGrpcTask.getStatus() != AsyncTask.Status.FINISHED)
+            if (!oldConnectionApproach)
             {
                 umtsRecordQueue.add(umtsRecord);
-            } else if (oldConnectionApproach && oldUmtsRecordGrpcTask != null && oldUmtsRecordGrpcTask.getStatus() != AsyncTask.Status.FINISHED)
+            } else if (isOpen(oldUmtsRecordStream))
             {
-                oldUmtsRecordQueue.add(LegacyRecordConversion.convertUmtsRecord(umtsRecord));
+                oldUmtsRecordQueue.add(LegacyRecordConversion.convertUmtsRecord(umtsRecord.getRecord()));
             }
         }
     }
@@ -379,14 +406,20 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
     @Override
     public void onLteSurveyRecord(LteRecord lteRecord)
     {
-        if (isConnected() && lteRecord != null)
+        if (lteRecord != null) onLteSurveyRecord(new SurveyRecordEnvelope<>(lteRecord));
+    }
+
+    @Override
+    public void onLteSurveyRecord(SurveyRecordEnvelope<LteRecord> lteRecord)
+    {
+        if (isQueueingRecords())
         {
-            if (lteRecordGrpcTask != null && lteRecordGrpcTask.getStatus() != AsyncTask.Status.FINISHED)
+            if (!oldConnectionApproach)
             {
                 lteRecordQueue.add(lteRecord);
-            } else if (oldConnectionApproach && oldLteRecordGrpcTask != null && oldLteRecordGrpcTask.getStatus() != AsyncTask.Status.FINISHED)
+            } else if (isOpen(oldLteRecordStream))
             {
-                oldLteRecordQueue.add(LegacyRecordConversion.convertLteRecord(lteRecord));
+                oldLteRecordQueue.add(LegacyRecordConversion.convertLteRecord(lteRecord.getRecord()));
             }
         }
     }
@@ -394,7 +427,13 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
     @Override
     public void onNrSurveyRecord(NrRecord nrRecord)
     {
-        if (isConnected() && nrRecord != null && nrRecordGrpcTask != null && nrRecordGrpcTask.getStatus() != AsyncTask.Status.FINISHED)
+        if (nrRecord != null) onNrSurveyRecord(new SurveyRecordEnvelope<>(nrRecord));
+    }
+
+    @Override
+    public void onNrSurveyRecord(SurveyRecordEnvelope<NrRecord> nrRecord)
+    {
+        if (isQueueingRecords() && !oldConnectionApproach)
         {
             nrRecordQueue.add(nrRecord);
         }
@@ -403,17 +442,23 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
     @Override
     public void onWifiBeaconSurveyRecords(List<WifiRecordWrapper> wifiBeaconRecords)
     {
-        if (isConnected() && wifiBeaconRecordGrpcTask != null && wifiBeaconRecordGrpcTask.getStatus() != AsyncTask.Status.FINISHED)
+        if (isQueueingRecords() && !oldConnectionApproach)
         {
-            wifiBeaconRecordQueue.addAll(
-                    wifiBeaconRecords.stream().map(WifiRecordWrapper::getWifiBeaconRecord).collect(Collectors.toList()));
+            wifiBeaconRecordQueue.addAllEnvelopes(
+                    wifiBeaconRecords.stream().map(WifiRecordWrapper::getEnvelope).collect(Collectors.toList()));
         }
     }
 
     @Override
     public void onBluetoothSurveyRecord(BluetoothRecord bluetoothRecord)
     {
-        if (isConnected() && bluetoothRecordGrpcTask != null && bluetoothRecordGrpcTask.getStatus() != AsyncTask.Status.FINISHED)
+        if (bluetoothRecord != null) onBluetoothSurveyRecord(new SurveyRecordEnvelope<>(bluetoothRecord));
+    }
+
+    @Override
+    public void onBluetoothSurveyRecord(SurveyRecordEnvelope<BluetoothRecord> bluetoothRecord)
+    {
+        if (isQueueingRecords() && !oldConnectionApproach)
         {
             bluetoothRecordQueue.add(bluetoothRecord);
         }
@@ -422,16 +467,31 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
     @Override
     public void onBluetoothSurveyRecords(List<BluetoothRecord> bluetoothRecords)
     {
-        if (isConnected() && bluetoothRecordGrpcTask != null && bluetoothRecordGrpcTask.getStatus() != AsyncTask.Status.FINISHED)
+        if (isQueueingRecords() && !oldConnectionApproach)
         {
             bluetoothRecordQueue.addAll(bluetoothRecords);
         }
     }
 
+    @Override
+    public void onBluetoothSurveyRecordEnvelopes(List<SurveyRecordEnvelope<BluetoothRecord>> bluetoothRecords)
+    {
+        if (isQueueingRecords() && !oldConnectionApproach)
+        {
+            bluetoothRecordQueue.addAllEnvelopes(bluetoothRecords);
+        }
+    }
+
     @Override
     public void onGnssSurveyRecord(GnssRecord gnssRecord)
     {
-        if (isConnected() && gnssRecord != null && gnssRecordGrpcTask != null && gnssRecordGrpcTask.getStatus() != AsyncTask.Status.FINISHED)
+        if (gnssRecord != null) onGnssSurveyRecord(new SurveyRecordEnvelope<>(gnssRecord));
+    }
+
+    @Override
+    public void onGnssSurveyRecord(SurveyRecordEnvelope<GnssRecord> gnssRecord)
+    {
+        if (isQueueingRecords() && !oldConnectionApproach)
         {
             gnssRecordQueue.add(gnssRecord);
         }
@@ -457,6 +517,25 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
         grpcConnectionListeners.remove(connectionStateListener);
     }
 
+    /**
+     * @return The time it takes for a record to go from being queued to being written to the gRPC stream, across all
+     * the open streams.
+     * @since 1.31.0
+     */
+    public LatencyTracker getStreamLatencyTracker()
+    {
+        return streamingEngine.getLatencyTracker();
+    }
+
+    /**
+     * @return The queue for each stream type, which can be used to get the spool size and age metrics.
+     * @since 1.31.0
+     */
+    public List<GrpcRecordQueue<?>> getRecordQueues()
+    {
+        return Collections.unmodifiableList(recordQueues);
+    }
+
     /**
      * Synchronized because the connection state can be updated from multiple threads.
      *
@@ -467,6 +546,18 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
         return connectionState == ConnectionState.CONNECTED;
     }
 
+    /**
+     * Records are queued while connected, and also while waiting to reconnect so that they are spooled and then sent
+     * once the connection is back. Synchronized because the connection state can be updated from multiple threads.
+     *
+     * @return True if new survey records should be added to the record queues.
+     * @since 1.31.0
+     */
+    synchronized boolean isQueueingRecords()
+    {
+        return !userCanceled && (connectionState == ConnectionState.CONNECTED || connectionState == ConnectionState.CONNECTING);
+    }
+
     /**
      * Connect to a gRPC server by establishing the {@link ManagedChannel}, and then kick off the appropriate tasks so
      * that streaming is started.
@@ -496,6 +587,8 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
             this.gnssStreamEnabled = gnssStreamEnabled;
             this.deviceStatusStreamEnabled = deviceStatusStreamEnabled;
 
+            clearSpoolIfTargetChanged(host + ":" + port);
+
             notifyConnectionStateChange(ConnectionState.CONNECTING);
 
             new Thread(() -> {
@@ -530,67 +623,54 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
                     if (oldConnectionApproach)
                     {
                         // TODO Delete all this old approach code once we have a chance to update any older gPRC code
-                        oldDeviceStatusGrpcTask = new GrpcTask<>(this, oldDeviceStatusQueue,
-                                statusUpdateReplyStreamObserver -> NetworkSurveyStatusGrpc.newStub(channel).statusUpdate(statusUpdateReplyStreamObserver));
-                        oldDeviceStatusGrpcTask.executeOnExecutor(executorService);
-
-                        final com.craxiom.networksurvey.messaging.WirelessSurveyGrpc.WirelessSurveyStub wirelessSurveyStub = com.craxiom.networksurvey.messaging.WirelessSurveyGrpc.newStub(channel);
+                        oldDeviceStatusStream = streamingEngine.openStream(oldDeviceStatusQueue, channel,
+                                NetworkSurveyStatusGrpc.getStatusUpdateMethod(), this::onStreamClosed);
 
-                        oldGsmRecordGrpcTask = new GrpcTask<>(this, oldGsmRecordQueue, wirelessSurveyStub::streamGsmSurvey);
-                        oldGsmRecordGrpcTask.executeOnExecutor(executorService);
+                        oldGsmRecordStream = streamingEngine.openStream(oldGsmRecordQueue, channel,
+                                com.craxiom.networksurvey.messaging.WirelessSurveyGrpc.getStreamGsmSurveyMethod(), this::onStreamClosed);
 
-                        oldCdmaRecordGrpcTask = new GrpcTask<>(this, oldCdmaRecordQueue, wirelessSurveyStub::streamCdmaSurvey);
-                        oldCdmaRecordGrpcTask.executeOnExecutor(executorService);
+                        oldCdmaRecordStream = streamingEngine.openStream(oldCdmaRecordQueue, channel,
+                                com.craxiom.networksurvey.messaging.WirelessSurveyGrpc.getStreamCdmaSurveyMethod(), this::onStreamClosed);
 
-                        oldUmtsRecordGrpcTask = new GrpcTask<>(this, oldUmtsRecordQueue, wirelessSurveyStub::streamUmtsSurvey);
-                        oldUmtsRecordGrpcTask.executeOnExecutor(executorService);
+                        oldUmtsRecordStream = streamingEngine.openStream(oldUmtsRecordQueue, channel,
+                                com.craxiom.networksurvey.messaging.WirelessSurveyGrpc.getStreamUmtsSurveyMethod(), this::onStreamClosed);
 
-                        oldLteRecordGrpcTask = new GrpcTask<>(this, oldLteRecordQueue, wirelessSurveyStub::streamLteSurvey);
-                        oldLteRecordGrpcTask.executeOnExecutor(executorService);
+                        oldLteRecordStream = streamingEngine.openStream(oldLteRecordQueue, channel,
+                                com.craxiom.networksurvey.messaging.WirelessSurveyGrpc.getStreamLteSurveyMethod(), this::onStreamClosed);
                     } else
                     {
-                        final WirelessSurveyGrpc.WirelessSurveyStub wirelessSurveyStub = WirelessSurveyGrpc.newStub(channel);
-
                         if (cellularStreamEnabled)
                         {
-                            gsmRecordGrpcTask = new GrpcTask<>(this, gsmRecordQueue, wirelessSurveyStub::streamGsmSurvey);
-                            gsmRecordGrpcTask.executeOnExecutor(executorService);
+                            gsmRecordStream = streamingEngine.openStream(gsmRecordQueue, channel, WirelessSurveyGrpc.getStreamGsmSurveyMethod(), this::onStreamClosed);
 
-                            cdmaRecordGrpcTask = new GrpcTask<>(this, cdmaRecordQueue, wirelessSurveyStub::streamCdmaSurvey);
-                            cdmaRecordGrpcTask.executeOnExecutor(executorService);
+                            cdmaRecordStream = streamingEngine.openStream(cdmaRecordQueue, channel, WirelessSurveyGrpc.getStreamCdmaSurveyMethod(), this::onStreamClosed);
 
-                            umtsRecordGrpcTask = new GrpcTask<>(this, umtsRecordQueue, wirelessSurveyStub::streamUmtsSurvey);
-                            umtsRecordGrpcTask.executeOnExecutor(executorService);
+                            umtsRecordStream = streamingEngine.openStream(umtsRecordQueue, channel, WirelessSurveyGrpc.getStreamUmtsSurveyMethod(), this::onStreamClosed);
 
-                            lteRecordGrpcTask = new GrpcTask<>(this, lteRecordQueue, wirelessSurveyStub::streamLteSurvey);
-                            lteRecordGrpcTask.executeOnExecutor(executorService);
+                            lteRecordStream = streamingEngine.openStream(lteRecordQueue, channel, WirelessSurveyGrpc.getStreamLteSurveyMethod(), this::onStreamClosed);
 
-                            nrRecordGrpcTask = new GrpcTask<>(this, nrRecordQueue, wirelessSurveyStub::streamNrSurvey);
-                            nrRecordGrpcTask.executeOnExecutor(executorService);
+                            nrRecordStream = streamingEngine.openStream(nrRecordQueue, channel, WirelessSurveyGrpc.getStreamNrSurveyMethod(), this::onStreamClosed);
 
                             networkSurveyService.registerCellularSurveyRecordListener(this);
                         }
 
                         if (wifiStreamEnabled)
                         {
-                            wifiBeaconRecordGrpcTask = new GrpcTask<>(this, wifiBeaconRecordQueue, wirelessSurveyStub::streamWifiBeaconSurvey);
-                            wifiBeaconRecordGrpcTask.executeOnExecutor(executorService);
+                            wifiBeaconRecordStream = streamingEngine.openStream(wifiBeaconRecordQueue, channel, WirelessSurveyGrpc.getStreamWifiBeaconSurveyMethod(), this::onStreamClosed);
 
                             networkSurveyService.registerWifiSurveyRecordListener(this);
                         }
 
                         if (bluetoothStreamEnabled)
                         {
-                            bluetoothRecordGrpcTask = new GrpcTask<>(this, bluetoothRecordQueue, wirelessSurveyStub::streamBluetoothSurvey);
-                            bluetoothRecordGrpcTask.executeOnExecutor(executorService);
+                            bluetoothRecordStream = streamingEngine.openStream(bluetoothRecordQueue, channel, WirelessSurveyGrpc.getStreamBluetoothSurveyMethod(), this::onStreamClosed);
 
                             networkSurveyService.registerBluetoothSurveyRecordListener(this);
                         }
 
                         if (gnssStreamEnabled)
                         {
-                            gnssRecordGrpcTask = new GrpcTask<>(this, gnssRecordQueue, wirelessSurveyStub::streamGnssSurvey);
-                            gnssRecordGrpcTask.executeOnExecutor(executorService);
+                            gnssRecordStream = streamingEngine.openStream(gnssRecordQueue, channel, WirelessSurveyGrpc.getStreamGnssSurveyMethod(), this::onStreamClosed);
 
                             networkSurveyService.registerGnssSurveyRecordListener(this);
                         }
@@ -599,15 +679,13 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
                         {
                             if (deviceStatusStreamEnabled)
                             {
-                                deviceStatusGrpcTask = new GrpcTask<>(this, deviceStatusQueue,
-                                        statusUpdateReplyStreamObserver -> DeviceStatusGrpc.newStub(channel).statusUpdate(statusUpdateReplyStreamObserver));
-                                deviceStatusGrpcTask.executeOnExecutor(executorService);
+                                deviceStatusStream = streamingEngine.openStream(deviceStatusQueue, channel,
+                                        DeviceStatusGrpc.getStatusUpdateMethod(), this::onStreamClosed);
                             }
 
                             if (phoneStateStreamEnabled)
                             {
-                                phoneStateGrpcTask = new GrpcTask<>(this, phoneStateQueue, wirelessSurveyStub::streamPhoneState);
-                                phoneStateGrpcTask.executeOnExecutor(executorService);
+                                phoneStateStream = streamingEngine.openStream(phoneStateQueue, channel, WirelessSurveyGrpc.getStreamPhoneStateMethod(), this::onStreamClosed);
                             }
 
                             networkSurveyService.registerDeviceStatusListener(this);
@@ -651,87 +729,92 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
     {
         if (stopService) notifyConnectionStateChange(ConnectionState.DISCONNECTING);
 
-        networkSurveyService.unregisterDeviceStatusListener(this);
-        networkSurveyService.unregisterCellularSurveyRecordListener(this);
-        networkSurveyService.unregisterWifiSurveyRecordListener(this);
-        networkSurveyService.unregisterBluetoothSurveyRecordListener(this);
-        networkSurveyService.unregisterGnssSurveyRecordListener(this);
+        // Stay registered for the survey records when reconnecting so that the records are spooled until the connection
+        // is back. They are registered again after connecting, which is a no-op if they are still registered.
+        if (stopService)
+        {
+            networkSurveyService.unregisterDeviceStatusListener(this);
+            networkSurveyService.unregisterCellularSurveyRecordListener(this);
+            networkSurveyService.unregisterWifiSurveyRecordListener(this);
+            networkSurveyService.unregisterBluetoothSurveyRecordListener(this);
+            networkSurveyService.unregisterGnssSurveyRecordListener(this);
+        }
 
-        if (oldDeviceStatusGrpcTask != null)
+        if (oldDeviceStatusStream != null)
         {
-            oldDeviceStatusGrpcTask.cancel(true);
-            oldDeviceStatusGrpcTask = null;
+            oldDeviceStatusStream.close();
+            oldDeviceStatusStream = null;
         }
-        if (oldGsmRecordGrpcTask != null)
+        if (oldGsmRecordStream != null)
         {
-            oldGsmRecordGrpcTask.cancel(true);
-            oldGsmRecordGrpcTask = null;
+            oldGsmRecordStream.close();
+            oldGsmRecordStream = null;
         }
-        if (oldCdmaRecordGrpcTask != null)
+        if (oldCdmaRecordStream != null)
         {
-            oldCdmaRecordGrpcTask.cancel(true);
-            oldCdmaRecordGrpcTask = null;
+            oldCdmaRecordStream.close();
+            oldCdmaRecordStream = null;
         }
-        if (oldUmtsRecordGrpcTask != null)
+        if (oldUmtsRecordStream != null)
         {
-            oldUmtsRecordGrpcTask.cancel(true);
-            oldUmtsRecordGrpcTask = null;
+            oldUmtsRecordStream.close();
+            oldUmtsRecordStream = null;
         }
-        if (oldLteRecordGrpcTask != null)
+        if (oldLteRecordStream != null)
         {
-            oldLteRecordGrpcTask.cancel(true);
-            oldLteRecordGrpcTask = null;
+            oldLteRecordStream.close();
+            oldLteRecordStream = null;
         }
 
-        if (deviceStatusGrpcTask != null)
+        if (deviceStatusStream != null)
         {
-            deviceStatusGrpcTask.cancel(true);
-            deviceStatusGrpcTask = null;
+            deviceStatusStream.close();
+            deviceStatusStream = null;
         }
-        if (phoneStateGrpcTask != null)
+        if (phoneStateStream != null)
         {
-            phoneStateGrpcTask.cancel(true);
-            phoneStateGrpcTask = null;
+            phoneStateStream.close();
+            phoneStateStream = null;
         }
-        if (gsmRecordGrpcTask != null)
+        if (gsmRecordStream != null)
         {
-            gsmRecordGrpcTask.cancel(true);
-            gsmRecordGrpcTask = null;
+            gsmRecordStream.close();
+            gsmRecordStream = null;
         }
-        if (cdmaRecordGrpcTask != null)
+        if (cdmaRecordStream != null)
         {
-            cdmaRecordGrpcTask.cancel(true);
-            cdmaRecordGrpcTask = null;
+            cdmaRecordStream.close();
+            cdmaRecordStream = null;
         }
-        if (umtsRecordGrpcTask != null)
+        if (umtsRecordStream != null)
         {
-            umtsRecordGrpcTask.cancel(true);
-            umtsRecordGrpcTask = null;
+            umtsRecordStream.close();
+            umtsRecordStream = null;
         }
-        if (lteRecordGrpcTask != null)
+        if (lteRecordStream != null)
         {
-            lteRecordGrpcTask.cancel(true);
-            lteRecordGrpcTask = null;
+            lteRecordStream.close();
+            lteRecordStream = null;
         }
-        if (nrRecordGrpcTask != null)
+        if (nrRecordStream != null)
         {
-            nrRecordGrpcTask.cancel(true);
-            nrRecordGrpcTask = null;
+            nrRecordStream.close();
+            nrRecordStream = null;
         }
-        if (wifiBeaconRecordGrpcTask != null)
+        if (wifiBeaconRecordStream != null)
         {
-            wifiBeaconRecordGrpcTask.cancel(true);
-            wifiBeaconRecordGrpcTask = null;
+            wifiBeaconRecordStream.close();
+            wifiBeaconRecordStream = null;
         }
-        if (bluetoothRecordGrpcTask != null)
+        if (bluetoothRecordStream != null)
         {
-            bluetoothRecordGrpcTask.cancel(true);
-            bluetoothRecordGrpcTask = null;
+            bluetoothRecordStream.close();
+            bluetoothRecordStream = null;
         }
-        if (gnssRecordGrpcTask != null)
+        if (gnssRecordStream != null)
         {
-            gnssRecordGrpcTask.cancel(true);
-            gnssRecordGrpcTask = null;
+            gnssRecordStream.close();
+            gnssRecordStream = null;
         }
 
         shutdownChannel(!stopService);
@@ -739,6 +822,120 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
         if (stopService) stopService();
     }
 
+    /**
+     * Creates the queues that hold the records for each stream. Records that don't fit in memory (e.g. while waiting to
+     * reconnect) are spooled to the app's files directory, and any records spooled by a previous run are loaded so that
+     * they are sent once a connection is made.
+     */
+    private void createRecordQueues()
+    {
+        deviceStatusQueue = createRecordQueue("device_status", DeviceStatus.parser());
+        phoneStateQueue = createRecordQueue("phone_state", PhoneState.parser());
+        gsmRecordQueue = createRecordQueue("gsm", GsmRecord.parser());
+        cdmaRecordQueue = createRecordQueue("cdma", CdmaRecord.parser());
+        umtsRecordQueue = createRecordQueue("umts", UmtsRecord.parser());
+        lteRecordQueue = createRecordQueue("lte", LteRecord.parser());
+        nrRecordQueue = createRecordQueue("nr", NrRecord.parser());
+        wifiBeaconRecordQueue = createRecordQueue("wifi_beacon", WifiBeaconRecord.parser());
+        bluetoothRecordQueue = createRecordQueue("bluetooth", BluetoothRecord.parser());
+        gnssRecordQueue = createRecordQueue("gnss", GnssRecord.parser());
+
+        oldDeviceStatusQueue = createRecordQueue("old_device_status", com.craxiom.networksurvey.messaging.DeviceStatus.parser());
+        oldGsmRecordQueue = createRecordQueue("old_gsm", com.craxiom.networksurvey.messaging.GsmRecord.parser());
+        oldCdmaRecordQueue = createRecordQueue("old_cdma", com.craxiom.networksurvey.messaging.CdmaRecord.parser());
+        oldUmtsRecordQueue = createRecordQueue("old_umts", com.craxiom.networksurvey.messaging.UmtsRecord.parser());
+        oldLteRecordQueue = createRecordQueue("old_lte", com.craxiom.networksurvey.messaging.LteRecord.parser());
+    }
+
+    private <T extends Message> GrpcRecordQueue<T> createRecordQueue(String name, Parser<T> parser)
+    {
+        final GrpcRecordQueue<T> queue = new GrpcRecordQueue<>(name, parser, new File(getFilesDir(), SPOOL_DIRECTORY_NAME));
+        recordQueues.add(queue);
+        return queue;
+    }
+
+    /**
+     * The spooled records were queued for a specific server, so they are thrown away if the connection settings now
+     * point to a different server rather than being sent to it.
+     *
+     * @param target The host and port of the server that is being connected to.
+     * @since 1.31.0
+     */
+    private void clearSpoolIfTargetChanged(String target)
+    {
+        final File spoolDirectory = new File(getFilesDir(), SPOOL_DIRECTORY_NAME);
+        final File targetFile = new File(spoolDirectory, SPOOL_TARGET_FILE_NAME);
+
+        String spooledTarget = null;
+        try
+        {
+            if (targetFile.isFile())
+            {
+                spooledTarget = new String(Files.readAllBytes(targetFile.toPath()), StandardCharsets.UTF_8);
+            }
+        } catch (IOException e)
+        {
+            Timber.w(e, "Could not read the gRPC spool target");
+        }
+
+        if (target.equals(spooledTarget)) return;
+
+        final int spooledCount = recordQueues.stream().mapToInt(GrpcRecordQueue::size).sum();
+        if (spooledCount > 0)
+        {
+            Timber.i("Discarding %d queued gRPC records that were for %s instead of %s", spooledCount, spooledTarget, target);
+            recordQueues.forEach(GrpcRecordQueue::clear);
+        }
+
+        try
+        {
+            if (!spoolDirectory.isDirectory() && !spoolDirectory.mkdirs())
+            {
+                throw new IOException("Could not create the gRPC spool directory " + spoolDirectory);
+            }
+            Files.write(targetFile.toPath(), target.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e)
+        {
+            Timber.e(e, "Could not write the gRPC spool target");
+        }
+    }
+
+    /**
+     * @return True if the stream has been opened and has not been closed yet.
+     */
+    private static boolean isOpen(GrpcStreamingEngine.RecordStream<?, ?> stream)
+    {
+        return stream != null && stream.isOpen();
+    }
+
+    /**
+     * Called when one of the gRPC streams is closed by the server, or because the connection was lost. Unless the RPC
+     * is not implemented on the server, the connection is torn down and a reconnect is attempted.
+     *
+     * @param stream The stream that closed.
+     * @param error  The reason the stream closed, or null if the server completed the stream.
+     * @since 1.31.0
+     */
+    private void onStreamClosed(GrpcStreamingEngine.RecordStream<?, ?> stream, Throwable error)
+    {
+        final boolean unimplemented = error instanceof StatusRuntimeException
+                && ((StatusRuntimeException) error).getStatus().getCode() == Status.Code.UNIMPLEMENTED;
+
+        Timber.i("Completed the %s gRPC stream, userCanceled=%s, unimplemented=%s", stream.getName(), userCanceled, unimplemented);
+
+        if (unimplemented) return;
+
+        uiThreadHandler.post(() -> {
+            // Several streams can fail when the connection drops, but only the first one needs to trigger a reconnect;
+            // the disconnect closes all the other streams
+            if (stream.isClosedLocally()) return;
+
+            disconnectFromGrpcServer(userCanceled);
+
+            if (!userCanceled) reconnectToGrpcServer();
+        });
+    }
+
     /**
      * Tries to perform a handshake with the gRPC Server. This should be done anytime we start a new connection with the
      * server. First, a connection is attempted using the newer connection approach. If the method is unimplemented
@@ -959,144 +1156,6 @@ public class GrpcConnectionService extends Service implements IDeviceStatusListe
         }
     }
 
-    /**
-     * A task that can be run for each RPC stream that needs to be opened.
-     *
-     * @param <MessageType> The type of message that will be streamed to the remote gRPC server.
-     * @param <Reply>       The reply type that will come back from gRPC server once the stream is complete.
-     */
-    @SuppressLint("StaticFieldLeak")
-    private class GrpcTask<MessageType, Reply> extends AsyncTask<Void, Void, Boolean>
-    {
-        private final WeakReference<GrpcConnectionService> serviceWeakReference;
-        private final ConcurrentLinkedQueue<MessageType> messageQueue;
-        private final Function<StreamObserver<Reply>, StreamObserver<MessageType>> asyncStubCall;
-
-        private Throwable failed;
-
-        private GrpcTask(GrpcConnectionService serviceWeakReference, ConcurrentLinkedQueue<MessageType> queue,
-                         Function<StreamObserver<Reply>, StreamObserver<MessageType>> asyncStubCall)
-        {
-            this.serviceWeakReference = new WeakReference<>(serviceWeakReference);
-            messageQueue = queue;
-            this.asyncStubCall = asyncStubCall;
-        }
-
-        @Override
-        protected Boolean doInBackground(Void... nothing)
-        {
-            try
-            {
-                final CountDownLatch finishLatch = new CountDownLatch(1);
-                final StreamObserver<Reply> responseObserver = new StreamObserver<Reply>()
-                {
-                    @Override
-                    public void onNext(Reply value)
-                    {
-
-                    }
-
-                    @Override
-                    public void onError(Throwable t)
-                    {
-                        failed = t;
-                        Timber.e(t, "An error occurred in a gRPC stream");
-                        finishLatch.countDown();
-                    }
-
-                    @Override
-                    public void onCompleted()
-                    {
-                        Timber.i("Completed a gRPC stream");
-                        finishLatch.countDown();
-                    }
-                };
-
-                final StreamObserver<MessageType> outgoingMessageStream = asyncStubCall.apply(responseObserver);
-
-                try
-                {
-                    while (finishLatch.getCount() != 0 && !isCancelled())
-                    {
-                        final GrpcConnectionService grpcConnectionService = serviceWeakReference.get();
-                        if (grpcConnectionService == null)
-                        {
-                            finishLatch.countDown();
-                            break;
-                        }
-
-                        final MessageType nextMessageToSend = messageQueue.poll();
-
-                        // I know Thread.sleep() is bad, but after working through a couple different solutions using a
-                        // scheduled executor service, I found that solution to be a bit more complicated than I wanted.
-                        // Eventually, we could get away from using an error in the gRPC stream to indicate that the
-                        // remote server is no longer reachable, but when I added a listener for state changes via
-                        // channel.notifyWhenStateChanged(), I seemed to have run into a bug because that call was
-                        // actually changing the channel connection state. Therefore, until we can reliable come up with
-                        // a way to know when the connection drops, this sleep seems like the best approach.
-                        if (nextMessageToSend == null)
-                        {
-                            Thread.sleep(QUEUE_PROCESSING_SLEEP_TIME);
-                            continue;
-                        }
-
-                        //Timber.v("Sending a message to the remote gRPC server: %s", nextMessageToSend);
-
-                        outgoingMessageStream.onNext(nextMessageToSend);
-                    }
-                } catch (InterruptedException ignore)
-                {
-                    Timber.i("The gRPC task was interrupted");
-                } catch (RuntimeException e)
-                {
-                    // Cancel RPC
-                    outgoingMessageStream.onError(e);
-                    throw e;
-                }
-
-                // Mark the end of the stream
-                outgoingMessageStream.onCompleted();
-
-                // Receiving happens asynchronously
-                if (!finishLatch.await(1, TimeUnit.MINUTES))
-                {
-                    throw new RuntimeException("Could not finish rpc within 1 minute, the server is likely down");
-                }
-
-                if (failed instanceof StatusRuntimeException)
-                {
-                    return ((StatusRuntimeException) failed).getStatus().getCode() == io.grpc.Status.Code.UNIMPLEMENTED;
-                }
-
-                return false;
-            } catch (Throwable e)
-            {
-                Timber.e(e, "The connection to the remote gRPC server closed with an exception");
-                return true;
-            }
-        }
-
-        /**
-         * @param unimplemented True if the remote procedure call (RPC) associated with this async task is unimplemented
-         *                      on the remote server. In that event, we don't want to attempt a reconnect.
-         */
-        @Override
-        protected void onPostExecute(Boolean unimplemented)
-        {
-            Timber.i("Completed a gRPC Task, userCanceled=%s, unimplemented=%s", userCanceled, unimplemented);
-
-            if (unimplemented) return;
-
-            GrpcConnectionService grpcConnectionService = serviceWeakReference.get();
-            if (grpcConnectionService != null)
-            {
-                grpcConnectionService.disconnectFromGrpcServer(userCanceled);
-
-                if (!userCanceled) grpcConnectionService.reconnectToGrpcServer();
-            }
-        }
-    }
-
     /**
      * A {@link ServiceConnection} implementation for binding to the {@link GrpcConnectionService}.
      */
@@ -0,0 +1,212 @@
+package com.craxiom.networksurvey.services;
+
+import timber.log.Timber;
+
+/**
+ * Works out whether the device is stationary, being carried by someone walking, or in a vehicle from the speed
+ * reported with each location fix and the amount of movement seen by the accelerometer.
+ * <p>
+ * The motion state is used to pick the location request interval and minimum distance so that we don't keep the GNSS
+ * receiver busy while sitting still, but still get frequent fixes while driving. Moving to a more active state (e.g.
+ * from stationary to walking) happens right away so that the start of a drive is not missed. Moving to a less active
+ * state only happens once the new state has been seen for {@link #STATE_HOLD_MS}, which stops a red light from
+ * changing the location request.
+ *
+ * @since 1.31.0
+ */
+final class MotionStateDetector
+{
+    /**
+     * About 25 km/h.
+     */
+    static final float DRIVING_SPEED_MPS = 7f;
+    /**
+     * A slow walk.
+     */
+    static final float WALKING_SPEED_MPS = 0.8f;
+
+    /**
+     * The standard deviation of the acceleration magnitude (in m/s^2) above which the device is being carried by
+     * someone walking, and below which the device is sitting still.
+     */
+    static final double WALKING_ACCELERATION_STD_DEV = 1.0;
+    static final double STILL_ACCELERATION_STD_DEV = 0.15;
+
+    /**
+     * Speed and accelerometer values older than this are ignored.
+     */
+    static final long SAMPLE_MAX_AGE_MS = 30_000;
+    static final long STATE_HOLD_MS = 15_000;
+
+    /**
+     * The weight given to each new accelerometer sample in the moving average.
+     */
+    private static final double ACCELERATION_ALPHA = 0.1;
+
+    /**
+     * The motion states, and the location request settings that go with each one.
+     */
+    enum MotionState
+    {
+        STATIONARY(0, 10f),
+        /**
+         * There is not enough information yet, so the location request is left as it was before motion detection.
+         */
+        UNKNOWN(1, 0f),
+        WALKING(2, 5f),
+        DRIVING(3, 0f);
+
+        /**
+         * The longest location request interval used while stationary.
+         */
+        static final int MAX_STATIONARY_INTERVAL_MS = 120_000;
+        static final int MIN_DRIVING_INTERVAL_MS = 4_000;
+
+        private final int activityLevel;
+        private final float minDistanceMeters;
+
+        MotionState(int activityLevel, float minDistanceMeters)
+        {
+            this.activityLevel = activityLevel;
+            this.minDistanceMeters = minDistanceMeters;
+        }
+
+        /**
+         * @param baseIntervalMs The location request interval derived from the scan rates.
+         * @return The location request interval to use for this motion state.
+         */
+        int getLocationIntervalMs(int baseIntervalMs)
+        {
+            return switch (this)
+            {
+                case STATIONARY -> Math.max(baseIntervalMs, Math.min(baseIntervalMs * 4, MAX_STATIONARY_INTERVAL_MS));
+                case DRIVING -> Math.min(baseIntervalMs, Math.max(MIN_DRIVING_INTERVAL_MS, baseIntervalMs / 2));
+                default -> baseIntervalMs;
+            };
+        }
+
+        /**
+         * @return The minimum distance between location updates for this motion state.
+         */
+        float getMinDistanceMeters()
+        {
+            return minDistanceMeters;
+        }
+    }
+
+    private MotionState motionState = MotionState.UNKNOWN;
+    private MotionState candidateState = MotionState.UNKNOWN;
+    private long candidateSinceMs;
+
+    private float latestSpeedMps = Float.NaN;
+    private long latestSpeedTimeMs;
+
+    private boolean accelerationKnown;
+    private double accelerationMean;
+    private double accelerationVariance;
+    private long latestAccelerationTimeMs;
+
+    synchronized MotionState getMotionState()
+    {
+        return motionState;
+    }
+
+    /**
+     * Forgets everything that has been seen so far.
+     */
+    synchronized void reset()
+    {
+        motionState = MotionState.UNKNOWN;
+        candidateState = MotionState.UNKNOWN;
+        latestSpeedMps = Float.NaN;
+        accelerationKnown = false;
+        accelerationMean = 0;
+        accelerationVariance = 0;
+    }
+
+    /**
+     * Adds the speed from a location fix.
+     *
+     * @param speedMps The speed in meters per second.
+     * @param nowMs    The time of the fix, using the elapsed realtime clock.
+     * @return True if the motion state changed.
+     */
+    synchronized boolean onSpeed(float speedMps, long nowMs)
+    {
+        latestSpeedMps = speedMps;
+        latestSpeedTimeMs = nowMs;
+        return evaluate(nowMs);
+    }
+
+    /**
+     * Adds an accelerometer sample.
+     *
+     * @param nowMs The time of the sample, using the elapsed realtime clock.
+     * @return True if the motion state changed.
+     */
+    synchronized boolean onAcceleration(float x, float y, float z, long nowMs)
+    {
+        final double magnitude = Math.sqrt(x * x + y * y + z * z);
+        if (!accelerationKnown)
+        {
+            accelerationMean = magnitude;
+            accelerationVariance = 0;
+            accelerationKnown = true;
+        } else
+        {
+            // Exponentially weighted mean and variance so that no samples need to be kept around
+            final double delta = magnitude - accelerationMean;
+            accelerationMean += ACCELERATION_ALPHA * delta;
+            accelerationVariance = (1 - ACCELERATION_ALPHA) * (accelerationVariance + ACCELERATION_ALPHA * delta * delta);
+        }
+        latestAccelerationTimeMs = nowMs;
+        return evaluate(nowMs);
+    }
+
+    synchronized double getAccelerationStdDev()
+    {
+        return Math.sqrt(accelerationVariance);
+    }
+
+    private boolean evaluate(long nowMs)
+    {
+        final MotionState detectedState = detect(nowMs);
+
+        if (detectedState == motionState)
+        {
+            candidateState = detectedState;
+            return false;
+        }
+
+        if (detectedState != candidateState)
+        {
+            candidateState = detectedState;
+            candidateSinceMs = nowMs;
+        }
+
+        if (detectedState.activityLevel > motionState.activityLevel || nowMs - candidateSinceMs >= STATE_HOLD_MS)
+        {
+            Timber.i("Motion state changed from %s to %s (speed=%.1fm/s, accelerationStdDev=%.2f)",
+                    motionState, detectedState, latestSpeedMps, getAccelerationStdDev());
+            motionState = detectedState;
+            return true;
+        }
+
+        return false;
+    }
+
+    private MotionState detect(long nowMs)
+    {
+        final boolean speedKnown = !Float.isNaN(latestSpeedMps) && nowMs - latestSpeedTimeMs <= SAMPLE_MAX_AGE_MS;
+        final boolean accelerationFresh = accelerationKnown && nowMs - latestAccelerationTimeMs <= SAMPLE_MAX_AGE_MS;
+        final double accelerationStdDev = getAccelerationStdDev();
+
+        if (speedKnown && latestSpeedMps >= DRIVING_SPEED_MPS) return MotionState.DRIVING;
+        if (accelerationFresh && accelerationStdDev >= WALKING_ACCELERATION_STD_DEV) return MotionState.WALKING;
+        if (speedKnown && latestSpeedMps >= WALKING_SPEED_MPS) return MotionState.WALKING;
+        if (accelerationFresh && accelerationStdDev < STILL_ACCELERATION_STD_DEV) return MotionState.STATIONARY;
+        if (speedKnown && !accelerationFresh) return MotionState.STATIONARY;
+
+        return MotionState.UNKNOWN;
+    }
+}
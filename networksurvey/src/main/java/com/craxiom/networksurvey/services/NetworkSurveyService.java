@@ -18,6 +18,10 @@ import android.content.RestrictionsManager;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.content.pm.ServiceInfo;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
 import android.location.Location;
 import android.location.LocationListener;
 import android.location.LocationManager;
@@ -61,6 +65,8 @@ import com.craxiom.networksurvey.listeners.IGnssFailureListener;
 import com.craxiom.networksurvey.listeners.IGnssSurveyRecordListener;
 import com.craxiom.networksurvey.listeners.ILoggingChangeListener;
 import com.craxiom.networksurvey.listeners.IWifiSurveyRecordListener;
+import com.craxiom.networksurvey.logging.CsvWriteQueue;
+import com.craxiom.networksurvey.logging.LogWriterThread;
 import com.craxiom.networksurvey.logging.DeviceStatusCsvLogger;
 import com.craxiom.networksurvey.model.LogTypeState;
 import com.craxiom.networksurvey.mqtt.MqttConnection;
@@ -77,12 +83,13 @@ import com.google.gson.Gson;
 import com.google.protobuf.BoolValue;
 import com.google.protobuf.Int32Value;
 
-import java.time.ZonedDateTime;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -105,6 +112,16 @@ public class NetworkSurveyService extends Service implements IConnectionStateLis
     public static final String ACTION_START_SURVEY = "com.craxiom.networksurvey.START_SURVEY";
     public static final String ACTION_STOP_SURVEY = "com.craxiom.networksurvey.STOP_SURVEY";
 
+    /**
+     * How long the accelerometer samples can be held by the sensor hub before they are delivered.
+     */
+    private static final int ACCELEROMETER_MAX_REPORT_LATENCY_US = 2_000_000;
+
+    /**
+     * How often the backlog of the log writer threads is written to the log.
+     */
+    private static final long LOG_WRITER_REPORT_INTERVAL_MS = 60_000;
+
     private final AtomicBoolean deviceStatusActive = new AtomicBoolean(false);
 
     private final AtomicInteger deviceStatusGeneratorTaskId = new AtomicInteger();
@@ -124,6 +141,32 @@ public class NetworkSurveyService extends Service implements IConnectionStateLis
     private GpsListener primaryLocationListener;
     private ExtraLocationListener gnssLocationListener;
     private ExtraLocationListener networkLocationListener;
+    private final MotionStateDetector motionStateDetector = new MotionStateDetector();
+    private final SensorEventListener accelerometerListener = new SensorEventListener()
+    {
+        @Override
+        public void onSensorChanged(SensorEvent event)
+        {
+            if (motionStateDetector.onAcceleration(event.values[0], event.values[1], event.values[2],
+                    TimeUnit.NANOSECONDS.toMillis(event.timestamp)))
+            {
+                updateLocationListener();
+            }
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy)
+        {
+        }
+    };
+    private final LocationListener motionSpeedListener = location -> {
+        if (location != null && location.hasSpeed()
+                && motionStateDetector.onSpeed(location.getSpeed(), TimeUnit.NANOSECONDS.toMillis(location.getElapsedRealtimeNanos())))
+        {
+            updateLocationListener();
+        }
+    };
+    private boolean motionDetectionActive = false;
 
     private DeviceStatusCsvLogger deviceStatusCsvLogger;
     private Looper serviceLooper;
@@ -133,6 +176,17 @@ public class NetworkSurveyService extends Service implements IConnectionStateLis
     private boolean mdmOverride = false;
 
     private final Set<ILoggingChangeListener> loggingChangeListeners = new CopyOnWriteArraySet<>();
+    private final Set<CsvWriteQueue> csvWriteQueues = new CopyOnWriteArraySet<>();
+    private final Set<LogWriterThread> logWriterThreads = new CopyOnWriteArraySet<>();
+    private final Runnable logWriterReport = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            reportLogWriterBacklogs();
+            serviceHandler.postDelayed(this, LOG_WRITER_REPORT_INTERVAL_MS);
+        }
+    };
 
     private int locationProviderPreference = NetworkSurveyConstants.DEFAULT_LOCATION_PROVIDER;
 
@@ -156,11 +210,13 @@ public class NetworkSurveyService extends Service implements IConnectionStateLis
 
         serviceLooper = handlerThread.getLooper();
         serviceHandler = new Handler(serviceLooper);
+        serviceHandler.postDelayed(logWriterReport, LOG_WRITER_REPORT_INTERVAL_MS);
 
         deviceId = createDeviceId();
         deviceStatusCsvLogger = new DeviceStatusCsvLogger(this, serviceLooper);
 
         primaryLocationListener = new GpsListener();
+        primaryLocationListener.registerListener(motionSpeedListener);
         gnssLocationListener = new ExtraLocationListener(LocationManager.GPS_PROVIDER);
         networkLocationListener = new ExtraLocationListener(LocationManager.NETWORK_PROVIDER);
 
@@ -339,6 +395,10 @@ public class NetworkSurveyService extends Service implements IConnectionStateLis
         stopDeviceStatusReport();
         stopAllLogging();
 
+        serviceHandler.removeCallbacks(logWriterReport);
+        logWriterThreads.clear();
+        csvWriteQueues.clear();
+
         serviceLooper.quitSafely();
         shutdownNotifications();
         executorService.shutdown();
@@ -347,6 +407,7 @@ public class NetworkSurveyService extends Service implements IConnectionStateLis
         wifiController.onDestroy();
         bluetoothController.onDestroy();
         gnssController.onDestroy();
+        surveyRecordProcessor.onDestroy();
 
         surveyServiceBinder.onDestroy();
         surveyServiceBinder = null;
@@ -362,6 +423,11 @@ public class NetworkSurveyService extends Service implements IConnectionStateLis
         switch (key)
         {
             case NetworkSurveyConstants.PROPERTY_LOG_ROLLOVER_SIZE_MB:
+            case NetworkSurveyConstants.PROPERTY_GEOPACKAGE_INDEX_MODE:
+            case NetworkSurveyConstants.PROPERTY_GEOPACKAGE_BATCH_MAX_ROWS:
+            case NetworkSurveyConstants.PROPERTY_GEOPACKAGE_BATCH_MAX_AGE_MS:
+            case NetworkSurveyConstants.PROPERTY_CSV_MAX_FLUSH_DELAY_MS:
+            case NetworkSurveyConstants.PROPERTY_CSV_WRITE_QUEUE_OVERFLOW_POLICY:
                 cellularController.onRolloverPreferenceChanged();
                 wifiController.onRolloverPreferenceChanged();
                 bluetoothController.onRolloverPreferenceChanged();
@@ -450,8 +516,9 @@ public class NetworkSurveyService extends Service implements IConnectionStateLis
     @Override
     public void connectToMqttBroker(BrokerConnectionInfo connectionInfo)
     {
-        mqttConnection.connect(getApplicationContext(), connectionInfo);
         MqttConnectionInfo networkSurveyConnection = (MqttConnectionInfo) connectionInfo;
+        mqttConnection.setBatchTopic(networkSurveyConnection.getBatchTopic());
+        mqttConnection.connect(getApplicationContext(), connectionInfo);
 
         // Saving the MQTT protocol streaming flags here allows the Dashboard UI to get notified
         // of the updates since otherwise MDM specified flags won't get propagated to the Dashboard
@@ -583,6 +650,88 @@ public class NetworkSurveyService extends Service implements IConnectionStateLis
         return deviceId;
     }
 
+    /**
+     * Called by each CSV logger when it is created so that the health of its write queue can be monitored.
+     *
+     * @param writeQueue The write queue of the CSV logger.
+     * @since 1.31.0
+     */
+    public void registerCsvWriteQueue(CsvWriteQueue writeQueue)
+    {
+        csvWriteQueues.add(writeQueue);
+    }
+
+    /**
+     * Called by each CSV logger when it is destroyed so that its write queue is no longer monitored.
+     *
+     * @param writeQueue The write queue of the CSV logger.
+     * @since 1.31.0
+     */
+    public void unregisterCsvWriteQueue(CsvWriteQueue writeQueue)
+    {
+        csvWriteQueues.remove(writeQueue);
+    }
+
+    /**
+     * @return The write queues for all the CSV loggers, which provide the queue depth and the dropped record counts.
+     * @since 1.31.0
+     */
+    public Set<CsvWriteQueue> getCsvWriteQueues()
+    {
+        return Collections.unmodifiableSet(csvWriteQueues);
+    }
+
+    /**
+     * Called by each GeoPackage logger when it is created so that the backlog of its writer thread can be monitored.
+     *
+     * @param writerThread The writer thread of the GeoPackage logger.
+     * @since 1.31.0
+     */
+    public void registerLogWriterThread(LogWriterThread writerThread)
+    {
+        logWriterThreads.add(writerThread);
+    }
+
+    /**
+     * Called by each GeoPackage logger when it is destroyed so that its writer thread is no longer monitored.
+     *
+     * @param writerThread The writer thread of the GeoPackage logger.
+     * @since 1.31.0
+     */
+    public void unregisterLogWriterThread(LogWriterThread writerThread)
+    {
+        logWriterThreads.remove(writerThread);
+    }
+
+    /**
+     * @return The writer threads for all the GeoPackage loggers, which provide the backlog of each writer.
+     * @since 1.31.0
+     */
+    public Set<LogWriterThread> getLogWriterThreads()
+    {
+        return Collections.unmodifiableSet(logWriterThreads);
+    }
+
+    /**
+     * Logs the backlog, max backlog, and max queue time of each log writer thread that had writes posted to it since
+     * the last report, and then resets the maximums for the next {@link #LOG_WRITER_REPORT_INTERVAL_MS} window.
+     *
+     * @since 1.31.0
+     */
+    private void reportLogWriterBacklogs()
+    {
+        for (LogWriterThread writerThread : getLogWriterThreads())
+        {
+            // A max backlog of 0 means nothing was posted to the writer in this window
+            if (writerThread.getMaxBacklog() == 0) continue;
+
+            Timber.i("%s writes over the last %ds: backlog=%d, max backlog=%d, max queue time=%dms, completed=%d",
+                    writerThread.getName(), LOG_WRITER_REPORT_INTERVAL_MS / 1_000, writerThread.getBacklog(),
+                    writerThread.getMaxBacklog(), writerThread.getMaxQueueTimeMs(), writerThread.getCompletedCount());
+            writerThread.resetMaximums();
+        }
+    }
+
     /**
      * Registers a new listener for changes to the location information.
      *
@@ -1137,10 +1286,17 @@ public class NetworkSurveyService extends Service implements IConnectionStateLis
      * if any of that changes we need to update the rate at which we request location updates.
      * <p>
      * If none of the scanning is active, then this method does nothing an returns immediately.
+     * <p>
+     * The request interval and minimum distance also depend on the {@link MotionStateDetector.MotionState}, so this
+     * is called again whenever the motion state changes.
      */
     public void updateLocationListener()
     {
-        if (!isBeingUsed()) return;
+        if (!isBeingUsed())
+        {
+            stopMotionDetection();
+            return;
+        }
 
         Timber.d("Registering the location listener");
 
@@ -1194,7 +1350,13 @@ public class NetworkSurveyService extends Service implements IConnectionStateLis
 
             if (smallestScanRate < 8_000) smallestScanRate = 8_000;
 
-            Timber.d("Setting the location update rate to %d", smallestScanRate);
+            startMotionDetection();
+            final MotionStateDetector.MotionState motionState = motionStateDetector.getMotionState();
+            final int locationIntervalMs = motionState.getLocationIntervalMs(smallestScanRate);
+            final float minDistanceMeters = motionState.getMinDistanceMeters();
+
+            Timber.d("Setting the location update rate to %d ms and min distance to %.0f m (scan rate based %d ms, motion state %s)",
+                    locationIntervalMs, minDistanceMeters, smallestScanRate, motionState);
 
             try
             {
@@ -1219,9 +1381,9 @@ public class NetworkSurveyService extends Service implements IConnectionStateLis
                 {
                     provider = LocationManager.PASSIVE_PROVIDER;
                 }
-                locationManager.requestLocationUpdates(provider, smallestScanRate, 0f, primaryLocationListener, serviceLooper);
+                locationManager.requestLocationUpdates(provider, locationIntervalMs, minDistanceMeters, primaryLocationListener, serviceLooper);
 
-                updateOtherLocationListeners(locationProviderPreference, locationManager, smallestScanRate);
+                updateOtherLocationListeners(locationProviderPreference, locationManager, locationIntervalMs, minDistanceMeters);
             } catch (Throwable t)
             {
                 // An IllegalArgumentException was occurring on phones that don't have a GPS provider, so some defensive coding here
@@ -1270,13 +1432,13 @@ public class NetworkSurveyService extends Service implements IConnectionStateLis
     @SuppressLint("MissingPermission")
     // Only called from updateLocationListener, which checks the permission
     private void updateOtherLocationListeners(int locationProviderPreference, LocationManager
-            locationManager, int scanRate)
+            locationManager, int scanRate, float minDistanceMeters)
     {
         if (locationProviderPreference == LOCATION_PROVIDER_ALL)
         {
 
-            locationManager.requestLocationUpdates(gnssLocationListener.getProvider(), scanRate, 0f, gnssLocationListener, serviceLooper);
-            locationManager.requestLocationUpdates(networkLocationListener.getProvider(), scanRate, 0f, networkLocationListener, serviceLooper);
+            locationManager.requestLocationUpdates(gnssLocationListener.getProvider(), scanRate, minDistanceMeters, gnssLocationListener, serviceLooper);
+            locationManager.requestLocationUpdates(networkLocationListener.getProvider(), scanRate, minDistanceMeters, networkLocationListener, serviceLooper);
         } else
         {
             locationManager.removeUpdates(gnssLocationListener);
@@ -1302,6 +1464,49 @@ public class NetworkSurveyService extends Service implements IConnectionStateLis
         {
             if (locationManager != null) locationManager.removeUpdates(networkLocationListener);
         }
+
+        stopMotionDetection();
+    }
+
+    /**
+     * Registers for accelerometer updates so that the {@link MotionStateDetector} can tell when the device starts or
+     * stops moving. The samples are batched by the sensor hub so that the application processor is not woken up for
+     * each one.
+     *
+     * @since 1.31.0
+     */
+    private synchronized void startMotionDetection()
+    {
+        if (motionDetectionActive) return;
+
+        final SensorManager sensorManager = (SensorManager) getSystemService(SENSOR_SERVICE);
+        final Sensor accelerometer = sensorManager == null ? null : sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        if (accelerometer == null)
+        {
+            // Without an accelerometer the motion state is based on the location speed alone
+            Timber.w("No accelerometer is available for motion detection");
+            motionDetectionActive = true;
+            return;
+        }
+
+        motionDetectionActive = sensorManager.registerListener(accelerometerListener, accelerometer,
+                SensorManager.SENSOR_DELAY_NORMAL, ACCELEROMETER_MAX_REPORT_LATENCY_US, serviceHandler);
+        if (!motionDetectionActive) Timber.w("Could not register for accelerometer updates");
+    }
+
+    /**
+     * Stops the accelerometer updates and forgets the current motion state.
+     *
+     * @since 1.31.0
+     */
+    private synchronized void stopMotionDetection()
+    {
+        if (!motionDetectionActive) return;
+
+        final SensorManager sensorManager = (SensorManager) getSystemService(SENSOR_SERVICE);
+        if (sensorManager != null) sensorManager.unregisterListener(accelerometerListener);
+        motionDetectionActive = false;
+        motionStateDetector.reset();
     }
 
     /**
@@ -1432,7 +1637,7 @@ public class NetworkSurveyService extends Service implements IConnectionStateLis
     {
         final DeviceStatusData.Builder dataBuilder = DeviceStatusData.newBuilder();
         dataBuilder.setDeviceSerialNumber(deviceId)
-                .setDeviceTime(NsUtils.getRfc3339String(ZonedDateTime.now()));
+                .setDeviceTime(NsUtils.getRfc3339String(System.currentTimeMillis()));
         dataBuilder.setMdmOverride(BoolValue.newBuilder().setValue(mdmOverride).build());
 
         if (primaryLocationListener != null)
@@ -1697,6 +1902,7 @@ public class NetworkSurveyService extends Service implements IConnectionStateLis
                 wifiController.onMdmPreferenceChanged();
                 bluetoothController.onMdmPreferenceChanged();
                 gnssController.onMdmPreferenceChanged();
+                surveyRecordProcessor.onMdmPreferenceChanged();
 
                 deviceStatusCsvLogger.onMdmPreferenceChanged();
             }
@@ -1767,6 +1973,7 @@ public class NetworkSurveyService extends Service implements IConnectionStateLis
             final boolean gnssStreamEnabled = mdmProperties.getBoolean(NetworkSurveyConstants.PROPERTY_MQTT_GNSS_STREAM_ENABLED, NetworkSurveyConstants.DEFAULT_MQTT_GNSS_STREAM_SETTING);
             final boolean deviceStatusStreamEnabled = mdmProperties.getBoolean(NetworkSurveyConstants.PROPERTY_MQTT_DEVICE_STATUS_STREAM_ENABLED, NetworkSurveyConstants.DEFAULT_MQTT_DEVICE_STATUS_STREAM_SETTING);
             final String topicPrefix = mdmProperties.getString(MqttConstants.PROPERTY_MQTT_TOPIC_PREFIX, MqttConstants.DEFAULT_MQTT_TOPIC_PREFIX);
+            final String batchTopic = mdmProperties.getString(NetworkSurveyConstants.PROPERTY_MQTT_BATCH_TOPIC, "");
 
             if (mqttBrokerHost == null || clientId == null)
             {
@@ -1774,7 +1981,8 @@ public class NetworkSurveyService extends Service implements IConnectionStateLis
             }
 
             return new MqttConnectionInfo(mqttBrokerHost, portNumber, tlsEnabled, clientId, username, password,
-                    cellularStreamEnabled, wifiStreamEnabled, bluetoothStreamEnabled, gnssStreamEnabled, deviceStatusStreamEnabled, topicPrefix);
+                    cellularStreamEnabled, wifiStreamEnabled, bluetoothStreamEnabled, gnssStreamEnabled, deviceStatusStreamEnabled, topicPrefix,
+                    batchTopic);
         }
 
         return null;
@@ -1809,9 +2017,11 @@ public class NetworkSurveyService extends Service implements IConnectionStateLis
         final boolean gnssStreamEnabled = preferences.getBoolean(NetworkSurveyConstants.PROPERTY_MQTT_GNSS_STREAM_ENABLED, NetworkSurveyConstants.DEFAULT_MQTT_GNSS_STREAM_SETTING);
         final boolean deviceStatusStreamEnabled = preferences.getBoolean(NetworkSurveyConstants.PROPERTY_MQTT_DEVICE_STATUS_STREAM_ENABLED, NetworkSurveyConstants.DEFAULT_MQTT_DEVICE_STATUS_STREAM_SETTING);
         final String topicPrefix = preferences.getString(MqttConstants.PROPERTY_MQTT_TOPIC_PREFIX, MqttConstants.DEFAULT_MQTT_TOPIC_PREFIX);
+        final String batchTopic = preferences.getString(NetworkSurveyConstants.PROPERTY_MQTT_BATCH_TOPIC, "");
 
         return new MqttConnectionInfo(mqttBrokerHost, portNumber, tlsEnabled, clientId, username, password,
-                cellularStreamEnabled, wifiStreamEnabled, bluetoothStreamEnabled, gnssStreamEnabled, deviceStatusStreamEnabled, topicPrefix);
+                cellularStreamEnabled, wifiStreamEnabled, bluetoothStreamEnabled, gnssStreamEnabled, deviceStatusStreamEnabled, topicPrefix,
+                batchTopic);
     }
 
     /**
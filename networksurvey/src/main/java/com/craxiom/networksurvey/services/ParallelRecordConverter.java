@@ -0,0 +1,172 @@
+package com.craxiom.networksurvey.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Converts a batch of raw survey results (e.g. the {@link android.telephony.CellInfo} objects from a single cellular
+ * scan) to records, splitting the work across several threads when the batch is large.
+ * <p>
+ * The output is always in the same order as the input no matter how the work was split up, so anything done with the
+ * output afterwards (e.g. assigning the record numbers) is the same as if the batch was converted on a single thread.
+ * The calling thread converts the first chunk of the batch itself, so a batch is never left waiting for a free thread.
+ * <p>
+ * The converter function is called from several threads at once, so it must not change any shared state.
+ *
+ * @since 1.31.0
+ */
+final class ParallelRecordConverter
+{
+    /**
+     * Batches smaller than this are converted on the calling thread; handing the work off to another thread costs more
+     * than it saves for a handful of records.
+     */
+    static final int DEFAULT_PARALLEL_THRESHOLD = 16;
+
+    private final int parallelThreshold;
+    private final int threadCount;
+    private ExecutorService executorService;
+    private boolean shutdown;
+
+    ParallelRecordConverter()
+    {
+        this(DEFAULT_PARALLEL_THRESHOLD, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * @param parallelThreshold The smallest batch that is split across threads.
+     * @param threadCount       The number of worker threads to use in addition to the calling thread. If 0 or less,
+     *                          every batch is converted on the calling thread.
+     */
+    ParallelRecordConverter(int parallelThreshold, int threadCount)
+    {
+        this.parallelThreshold = Math.max(2, parallelThreshold);
+        this.threadCount = Math.max(0, threadCount);
+    }
+
+    /**
+     * Converts each of the inputs.
+     *
+     * @param inputs    The raw survey results.
+     * @param converter Converts a single input, returning null if the input could not be converted.
+     * @return The converted outputs in the same order as the inputs, without any nulls.
+     * @throws RuntimeException If the converter threw an exception for any of the inputs.
+     */
+    <I, O> List<O> convert(List<I> inputs, Function<I, O> converter)
+    {
+        final int size = inputs.size();
+        final Object[] outputs = new Object[size];
+
+        final ExecutorService workers = size >= parallelThreshold ? getExecutorService() : null;
+        final int chunkCount = workers == null ? 1 : Math.min(threadCount + 1, size / (parallelThreshold / 2));
+        if (chunkCount <= 1)
+        {
+            convertRange(inputs, converter, outputs, 0, size);
+        } else
+        {
+            final int chunkSize = (size + chunkCount - 1) / chunkCount;
+            final List<Future<?>> futures = new ArrayList<>(chunkCount - 1);
+            for (int start = chunkSize; start < size; start += chunkSize)
+            {
+                final int from = start;
+                final int to = Math.min(size, start + chunkSize);
+                try
+                {
+                    futures.add(workers.submit(() -> convertRange(inputs, converter, outputs, from, to)));
+                } catch (RejectedExecutionException e)
+                {
+                    // Shut down while a batch was in flight, so just finish the work here
+                    convertRange(inputs, converter, outputs, from, to);
+                }
+            }
+
+            convertRange(inputs, converter, outputs, 0, Math.min(size, chunkSize));
+            awaitAll(futures);
+        }
+
+        final List<O> converted = new ArrayList<>(size);
+        for (Object output : outputs)
+        {
+            //noinspection unchecked
+            if (output != null) converted.add((O) output);
+        }
+        return converted;
+    }
+
+    /**
+     * Stops the worker threads. Any batches converted after this are converted on the calling thread.
+     */
+    synchronized void shutdown()
+    {
+        shutdown = true;
+        if (executorService != null)
+        {
+            executorService.shutdown();
+            executorService = null;
+        }
+    }
+
+    private synchronized ExecutorService getExecutorService()
+    {
+        if (shutdown || threadCount == 0) return null;
+
+        if (executorService == null)
+        {
+            final AtomicInteger threadNumber = new AtomicInteger(1);
+            executorService = Executors.newFixedThreadPool(threadCount, runnable -> {
+                final Thread thread = new Thread(runnable, "Record Converter " + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executorService;
+    }
+
+    private static <I, O> void convertRange(List<I> inputs, Function<I, O> converter, Object[] outputs, int from, int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            outputs[i] = converter.apply(inputs.get(i));
+        }
+    }
+
+    private static void awaitAll(List<Future<?>> futures)
+    {
+        RuntimeException failure = null;
+        boolean interrupted = false;
+        for (Future<?> future : futures)
+        {
+            while (true)
+            {
+                try
+                {
+                    future.get();
+                    break;
+                } catch (InterruptedException e)
+                {
+                    // The chunks write into the shared output array, so they have to finish before it is used
+                    interrupted = true;
+                } catch (ExecutionException e)
+                {
+                    if (failure == null)
+                    {
+                        final Throwable cause = e.getCause();
+                        failure = cause instanceof RuntimeException ? (RuntimeException) cause
+                                : new IllegalStateException("Could not convert a survey record", cause);
+                    }
+                    break;
+                }
+            }
+        }
+
+        if (interrupted) Thread.currentThread().interrupt();
+        if (failure != null) throw failure;
+    }
+}
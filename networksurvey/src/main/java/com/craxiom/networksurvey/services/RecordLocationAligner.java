@@ -0,0 +1,234 @@
+package com.craxiom.networksurvey.services;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import timber.log.Timber;
+
+/**
+ * Holds survey records back for a short time so that they can be given a position that is interpolated between the
+ * location fixes before and after the time the record was made, instead of the position of the last fix.
+ * <p>
+ * Each record (or batch of records) is submitted with its timestamp and a task that sets the location on the records
+ * and sends them on to the listeners. The task is run as soon as a location fix newer than the record has been
+ * received, or once the record has been held for the maximum delay, in which case the task has to make do with the
+ * position projected from the latest fix.
+ * <p>
+ * This class only decides when each task runs; the tasks look up the location themselves.
+ *
+ * @since 1.31.0
+ */
+final class RecordLocationAligner
+{
+    /**
+     * The longest time between checks for records that have been held for the maximum delay.
+     */
+    private static final long MAX_CHECK_INTERVAL_MS = 1_000;
+
+    private final long maxDelayMs;
+    private final LongSupplier clockMs;
+    private final List<PendingRecord> pendingRecords = new LinkedList<>();
+
+    private ScheduledExecutorService checkExecutor;
+    private long latestFixMs = Long.MIN_VALUE;
+    private long alignedCount;
+    private long timedOutCount;
+
+    /**
+     * @param maxDelayMs The longest time to hold a record while waiting for the next location fix.
+     * @param clockMs    The current time using the same clock as the record and fix times (the elapsed realtime
+     *                   clock).
+     */
+    RecordLocationAligner(long maxDelayMs, LongSupplier clockMs)
+    {
+        this.maxDelayMs = maxDelayMs;
+        this.clockMs = clockMs;
+    }
+
+    long getMaxDelayMs()
+    {
+        return maxDelayMs;
+    }
+
+    /**
+     * Starts the thread that releases the records that have been held for the maximum delay.
+     */
+    synchronized void start()
+    {
+        if (checkExecutor != null) return;
+
+        checkExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "Record Location Aligner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long checkIntervalMs = Math.max(1, Math.min(MAX_CHECK_INTERVAL_MS, maxDelayMs / 4));
+        checkExecutor.scheduleWithFixedDelay(this::releaseTimedOutSafely, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the check thread and releases all the records that are still being held.
+     */
+    void stop()
+    {
+        final ScheduledExecutorService executor;
+        final List<Runnable> released = new ArrayList<>();
+        synchronized (this)
+        {
+            executor = checkExecutor;
+            checkExecutor = null;
+
+            for (PendingRecord pendingRecord : pendingRecords)
+            {
+                released.add(pendingRecord.task);
+            }
+            timedOutCount += pendingRecords.size();
+            pendingRecords.clear();
+        }
+        if (executor != null) executor.shutdown();
+
+        runAll(released);
+        Timber.i("Record location aligner stopped; %d records were aligned to a later fix and %d were not",
+                getAlignedCount(), getTimedOutCount());
+    }
+
+    /**
+     * Submits a record to be released once its location can be worked out.
+     *
+     * @param recordTimeMs The time the record was made. For a batch of records this should be the latest time.
+     * @param task         Sets the location on the record and sends it to the listeners.
+     */
+    void submit(long recordTimeMs, Runnable task)
+    {
+        synchronized (this)
+        {
+            if (recordTimeMs > latestFixMs)
+            {
+                pendingRecords.add(new PendingRecord(recordTimeMs, clockMs.getAsLong() + maxDelayMs, task));
+                return;
+            }
+            alignedCount++;
+        }
+
+        // There is already a fix after the record, so there is nothing to wait for
+        task.run();
+    }
+
+    /**
+     * Called when a new location fix is received, which releases all the records that were made before the fix.
+     *
+     * @param fixTimeMs The time of the fix.
+     */
+    void onLocationFix(long fixTimeMs)
+    {
+        final List<Runnable> released = new ArrayList<>();
+        synchronized (this)
+        {
+            if (fixTimeMs <= latestFixMs) return;
+            latestFixMs = fixTimeMs;
+
+            final Iterator<PendingRecord> iterator = pendingRecords.iterator();
+            while (iterator.hasNext())
+            {
+                final PendingRecord pendingRecord = iterator.next();
+                if (pendingRecord.recordTimeMs <= fixTimeMs)
+                {
+                    released.add(pendingRecord.task);
+                    iterator.remove();
+                }
+            }
+            alignedCount += released.size();
+        }
+
+        runAll(released);
+    }
+
+    /**
+     * Releases the records that have been held for the maximum delay.
+     */
+    void releaseTimedOut()
+    {
+        final List<Runnable> released = new ArrayList<>();
+        synchronized (this)
+        {
+            final long nowMs = clockMs.getAsLong();
+            final Iterator<PendingRecord> iterator = pendingRecords.iterator();
+            while (iterator.hasNext())
+            {
+                final PendingRecord pendingRecord = iterator.next();
+                // The records are in the order they were submitted, so the rest have not timed out yet
+                if (pendingRecord.deadlineMs > nowMs) break;
+
+                released.add(pendingRecord.task);
+                iterator.remove();
+            }
+            timedOutCount += released.size();
+        }
+
+        runAll(released);
+    }
+
+    synchronized int getPendingCount()
+    {
+        return pendingRecords.size();
+    }
+
+    synchronized long getAlignedCount()
+    {
+        return alignedCount;
+    }
+
+    synchronized long getTimedOutCount()
+    {
+        return timedOutCount;
+    }
+
+    private void releaseTimedOutSafely()
+    {
+        try
+        {
+            releaseTimedOut();
+        } catch (Throwable t)
+        {
+            // An exception would stop the scheduled checks, so log it and keep going
+            Timber.e(t, "Could not release the survey records that were waiting for a location");
+        }
+    }
+
+    private static void runAll(List<Runnable> tasks)
+    {
+        for (Runnable task : tasks)
+        {
+            try
+            {
+                task.run();
+            } catch (Throwable t)
+            {
+                Timber.e(t, "Could not send a survey record after setting its location");
+            }
+        }
+    }
+
+    /**
+     * A record that is waiting for a location fix.
+     */
+    private static final class PendingRecord
+    {
+        final long recordTimeMs;
+        final long deadlineMs;
+        final Runnable task;
+
+        PendingRecord(long recordTimeMs, long deadlineMs, Runnable task)
+        {
+            this.recordTimeMs = recordTimeMs;
+            this.deadlineMs = deadlineMs;
+            this.task = task;
+        }
+    }
+}
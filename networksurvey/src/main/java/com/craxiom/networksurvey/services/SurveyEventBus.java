@@ -0,0 +1,454 @@
+package com.craxiom.networksurvey.services;
+
+import com.craxiom.networksurvey.listeners.ILosslessSurveyListener;
+import com.craxiom.networksurvey.listeners.ISynchronousSurveyListener;
+import com.craxiom.networksurvey.services.grpc.LatencyTracker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import timber.log.Timber;
+
+/**
+ * Hands the survey events from the {@link SurveyRecordProcessor} to its listeners.
+ * <p>
+ * Each listener gets its own bounded mailbox and consumer thread, so a slow listener (e.g. one writing to a file) does
+ * not hold up the scan that produced the record, nor any of the other listeners. The events for a listener are always
+ * delivered in the order they were produced. When a mailbox is full the oldest event in it is dropped to make room,
+ * so the listener always gets the most recent data; the number of dropped events is part of the listener's stats.
+ * <p>
+ * A listener that implements {@link ILosslessSurveyListener} (e.g. the loggers) never has events dropped; instead the
+ * producer waits for room in the mailbox.
+ * <p>
+ * A listener that implements {@link ISynchronousSurveyListener} does not get a mailbox; instead it is called directly
+ * on the thread that produced the event.
+ * <p>
+ * A single listener object is often registered for several types of events (e.g. cellular and Wi-Fi), so there is one
+ * mailbox per listener object, and it is shared across all the event types the listener is registered for. The
+ * mailbox is closed once the listener has been removed for every type. Any events still waiting in the mailbox when it
+ * is closed are thrown away, so a listener is not called after it has been unregistered unless a call was already in
+ * progress. The exception is a lossless listener: the events it already accepted are delivered before the close
+ * returns, so a logger that is unregistered and then closes its file still writes every record it was given.
+ * <p>
+ * Any listener that had events dropped, or that held up a producer, is logged every {@link #REPORT_INTERVAL_MS} while
+ * events are being published.
+ *
+ * @since 1.31.0
+ */
+final class SurveyEventBus
+{
+    static final int DEFAULT_MAILBOX_CAPACITY = 256;
+    static final long REPORT_INTERVAL_MS = 60_000;
+
+    private final int mailboxCapacity;
+    private final Map<Object, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final AtomicLong nextReportNanos = new AtomicLong(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(REPORT_INTERVAL_MS));
+
+    SurveyEventBus()
+    {
+        this(DEFAULT_MAILBOX_CAPACITY);
+    }
+
+    SurveyEventBus(int mailboxCapacity)
+    {
+        this.mailboxCapacity = mailboxCapacity;
+    }
+
+    /**
+     * Adds the listener to the set, and opens a mailbox for it if it does not already have one.
+     *
+     * @return True if the listener was added, false if it was already in the set.
+     */
+    synchronized <L> boolean register(Set<L> listeners, L listener)
+    {
+        if (listener == null || listeners.contains(listener)) return false;
+
+        Mailbox mailbox = mailboxes.get(listener);
+        if (mailbox == null)
+        {
+            mailbox = new Mailbox(getListenerName(listener), listener instanceof ISynchronousSurveyListener,
+                    listener instanceof ILosslessSurveyListener, mailboxCapacity);
+            mailboxes.put(listener, mailbox);
+        }
+
+        // The mailbox has to be in place before the listener is in the set, otherwise the first event could be missed
+        mailbox.registrationCount++;
+        listeners.add(listener);
+        return true;
+    }
+
+    /**
+     * Removes the listener from the set, and closes its mailbox if it is not registered for any other events.
+     *
+     * @return True if the listener was removed, false if it was not in the set.
+     */
+    synchronized <L> boolean unregister(Set<L> listeners, L listener)
+    {
+        if (listener == null || !listeners.remove(listener)) return false;
+
+        final Mailbox mailbox = mailboxes.get(listener);
+        if (mailbox != null && --mailbox.registrationCount <= 0)
+        {
+            mailboxes.remove(listener);
+            mailbox.close();
+        }
+        return true;
+    }
+
+    /**
+     * Delivers an event to every listener in the set.
+     *
+     * @param listeners    The listeners to notify.
+     * @param event        Calls the listener with the event.
+     * @param errorMessage The message to log if the listener throws an exception.
+     */
+    <L> void publish(Set<L> listeners, Consumer<L> event, String errorMessage)
+    {
+        for (L listener : listeners)
+        {
+            final Mailbox mailbox = mailboxes.get(listener);
+            if (mailbox == null) continue; // The listener is in the middle of being removed
+
+            mailbox.deliver(() -> {
+                try
+                {
+                    event.accept(listener);
+                } catch (Throwable t)
+                {
+                    Timber.e(t, errorMessage);
+                }
+            });
+        }
+
+        reportIfDue();
+    }
+
+    /**
+     * @return A snapshot of the stats for each registered listener.
+     */
+    List<ListenerStats> getListenerStats()
+    {
+        final List<ListenerStats> stats = new ArrayList<>();
+        for (Mailbox mailbox : mailboxes.values())
+        {
+            stats.add(mailbox.getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * Closes all the mailboxes; the listeners are not called again. This does not remove the listeners from the sets
+     * they were registered in, so it should only be called when the sets are no longer used.
+     */
+    synchronized void shutdown()
+    {
+        for (Mailbox mailbox : mailboxes.values())
+        {
+            mailbox.close();
+        }
+        mailboxes.clear();
+    }
+
+    /**
+     * Logs the listeners that had events dropped, or that made a producer wait, since the last report. Only one of the
+     * publishing threads does the report.
+     */
+    private void reportIfDue()
+    {
+        final long nowNanos = System.nanoTime();
+        final long reportNanos = nextReportNanos.get();
+        if (nowNanos - reportNanos < 0) return;
+        if (!nextReportNanos.compareAndSet(reportNanos, nowNanos + TimeUnit.MILLISECONDS.toNanos(REPORT_INTERVAL_MS))) return;
+
+        for (Mailbox mailbox : mailboxes.values())
+        {
+            final long dropped = mailbox.takeNewDroppedCount();
+            final long waited = mailbox.takeNewWaitedCount();
+            if (dropped > 0 || waited > 0)
+            {
+                Timber.w("Survey listener %s fell behind over the last %ds: dropped=%d, producer waits=%d (%s)",
+                        mailbox.listenerName, REPORT_INTERVAL_MS / 1_000, dropped, waited, mailbox.getStats());
+            }
+        }
+    }
+
+    private static String getListenerName(Object listener)
+    {
+        final String simpleName = listener.getClass().getSimpleName();
+        return simpleName.isEmpty() ? listener.getClass().getName() : simpleName;
+    }
+
+    /**
+     * The stats for a single listener at the time they were requested.
+     */
+    static final class ListenerStats
+    {
+        final String listenerName;
+        final boolean synchronous;
+        final boolean lossless;
+        final int queuedCount;
+        final long deliveredCount;
+        final long droppedCount;
+        /**
+         * The number of events that a producer had to wait to put in a full mailbox, which only happens for a
+         * lossless listener.
+         */
+        final long waitedCount;
+        final long medianLagNanos;
+        final long p99LagNanos;
+        final double eventsPerSecond;
+
+        ListenerStats(String listenerName, boolean synchronous, boolean lossless, int queuedCount, long deliveredCount,
+                      long droppedCount, long waitedCount, long medianLagNanos, long p99LagNanos, double eventsPerSecond)
+        {
+            this.listenerName = listenerName;
+            this.synchronous = synchronous;
+            this.lossless = lossless;
+            this.queuedCount = queuedCount;
+            this.deliveredCount = deliveredCount;
+            this.droppedCount = droppedCount;
+            this.waitedCount = waitedCount;
+            this.medianLagNanos = medianLagNanos;
+            this.p99LagNanos = p99LagNanos;
+            this.eventsPerSecond = eventsPerSecond;
+        }
+
+        @Override
+        public String toString()
+        {
+            return listenerName + (synchronous ? " (synchronous)" : "") + (lossless ? " (lossless)" : "")
+                    + ": queued=" + queuedCount
+                    + ", delivered=" + deliveredCount
+                    + ", dropped=" + droppedCount
+                    + ", waited=" + waitedCount
+                    + ", lagMedianMs=" + TimeUnit.NANOSECONDS.toMillis(medianLagNanos)
+                    + ", lagP99Ms=" + TimeUnit.NANOSECONDS.toMillis(p99LagNanos)
+                    + ", eventsPerSecond=" + String.format("%.1f", eventsPerSecond);
+        }
+    }
+
+    /**
+     * The queue of events and the consumer thread for a single listener.
+     */
+    private static final class Mailbox
+    {
+        private static final Envelope CLOSE = new Envelope(null, 0);
+        private static final long WAIT_CHECK_INTERVAL_MS = 100;
+        private static final long CLOSE_DRAIN_TIMEOUT_MS = 5_000;
+
+        private final String listenerName;
+        private final boolean synchronous;
+        private final boolean lossless;
+        private final BlockingQueue<Envelope> queue;
+        private final Thread consumerThread;
+        private final LatencyTracker lagTracker = new LatencyTracker();
+        private final AtomicLong deliveredCount = new AtomicLong();
+        private final AtomicLong droppedCount = new AtomicLong();
+        private final AtomicLong waitedCount = new AtomicLong();
+        private final AtomicLong reportedDroppedCount = new AtomicLong();
+        private final AtomicLong reportedWaitedCount = new AtomicLong();
+        private final long createdNanos = System.nanoTime();
+
+        /**
+         * The number of listener sets this listener is in; guarded by the lock on the {@link SurveyEventBus}.
+         */
+        int registrationCount;
+
+        private volatile boolean closed;
+
+        Mailbox(String listenerName, boolean synchronous, boolean lossless, int capacity)
+        {
+            this.listenerName = listenerName;
+            this.synchronous = synchronous;
+            this.lossless = lossless;
+
+            if (synchronous)
+            {
+                queue = null;
+                consumerThread = null;
+            } else
+            {
+                queue = new ArrayBlockingQueue<>(capacity);
+                consumerThread = new Thread(this::consume, "Survey Listener " + listenerName);
+                consumerThread.setDaemon(true);
+                consumerThread.start();
+            }
+        }
+
+        void deliver(Runnable event)
+        {
+            if (closed) return;
+
+            if (synchronous)
+            {
+                run(event, System.nanoTime());
+                return;
+            }
+
+            final Envelope envelope = new Envelope(event, System.nanoTime());
+            if (queue.offer(envelope)) return;
+
+            if (lossless)
+            {
+                waitForRoom(envelope);
+                return;
+            }
+
+            do
+            {
+                // Make room by dropping the oldest event
+                if (queue.poll() != null) droppedCount.incrementAndGet();
+            } while (!queue.offer(envelope));
+        }
+
+        /**
+         * Waits until there is room in the mailbox for the event, or until the mailbox is closed.
+         */
+        private void waitForRoom(Envelope envelope)
+        {
+            waitedCount.incrementAndGet();
+            try
+            {
+                // Check for the close every so often; the consumer stops taking events once the mailbox is closed
+                while (!queue.offer(envelope, WAIT_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS))
+                {
+                    if (closed) return;
+                }
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                Timber.w("Interrupted while waiting to deliver a survey event to %s, the event is lost", listenerName);
+                droppedCount.incrementAndGet();
+            }
+        }
+
+        /**
+         * @return The number of events dropped since the last call.
+         */
+        long takeNewDroppedCount()
+        {
+            final long dropped = droppedCount.get();
+            return dropped - reportedDroppedCount.getAndSet(dropped);
+        }
+
+        /**
+         * @return The number of times a producer had to wait for room since the last call.
+         */
+        long takeNewWaitedCount()
+        {
+            final long waited = waitedCount.get();
+            return waited - reportedWaitedCount.getAndSet(waited);
+        }
+
+        void close()
+        {
+            closed = true;
+            if (queue == null) return;
+
+            if (lossless)
+            {
+                closeAfterPendingEvents();
+                return;
+            }
+
+            clearAndClose();
+        }
+
+        /**
+         * Queues the close behind the events that are already in the mailbox, and waits for the consumer to deliver
+         * them. If the listener does not keep up within {@link #CLOSE_DRAIN_TIMEOUT_MS}, the rest of the events are
+         * counted as dropped.
+         */
+        private void closeAfterPendingEvents()
+        {
+            // The listener is unregistering itself; the consumer stops once it has delivered the rest of the events
+            if (Thread.currentThread() == consumerThread) return;
+
+            try
+            {
+                if (queue.offer(CLOSE, CLOSE_DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+                {
+                    consumerThread.join(CLOSE_DRAIN_TIMEOUT_MS);
+                }
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            if (consumerThread.isAlive())
+            {
+                final int pending = queue.size();
+                Timber.w("Timed out delivering the survey events to %s, dropping %d pending events", listenerName, pending);
+                droppedCount.addAndGet(pending);
+                clearAndClose();
+            }
+        }
+
+        private void clearAndClose()
+        {
+            // Clear again if a producer filled the queue in the meantime, the consumer has to see the close
+            do
+            {
+                queue.clear();
+            } while (!queue.offer(CLOSE));
+        }
+
+        ListenerStats getStats()
+        {
+            final long delivered = deliveredCount.get();
+            final double elapsedSeconds = (System.nanoTime() - createdNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+            return new ListenerStats(listenerName, synchronous, lossless, queue == null ? 0 : queue.size(), delivered,
+                    droppedCount.get(), waitedCount.get(), lagTracker.getMedianNanos(), lagTracker.getP99Nanos(),
+                    elapsedSeconds > 0 ? delivered / elapsedSeconds : 0);
+        }
+
+        private void consume()
+        {
+            try
+            {
+                while (true)
+                {
+                    final Envelope envelope = queue.take();
+                    if (envelope == CLOSE || (closed && !lossless)) break;
+
+                    run(envelope.event, envelope.enqueuedNanos);
+
+                    // A lossless listener that closed its own mailbox has no close queued behind its events
+                    if (closed && lossless && queue.isEmpty()) break;
+                }
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            Timber.d("Stopped the survey event thread for %s", listenerName);
+        }
+
+        private void run(Runnable event, long enqueuedNanos)
+        {
+            lagTracker.record(System.nanoTime() - enqueuedNanos);
+            event.run();
+            deliveredCount.incrementAndGet();
+        }
+    }
+
+    private static final class Envelope
+    {
+        final Runnable event;
+        final long enqueuedNanos;
+
+        Envelope(Runnable event, long enqueuedNanos)
+        {
+            this.event = event;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+}
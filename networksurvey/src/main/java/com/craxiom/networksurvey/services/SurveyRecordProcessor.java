@@ -12,6 +12,7 @@ import android.location.GnssAutomaticGainControl;
 import android.location.GnssMeasurement;
 import android.location.GnssMeasurementsEvent;
 import android.location.Location;
+import android.location.LocationListener;
 import android.location.LocationManager;
 import android.net.wifi.ScanResult;
 import android.os.Build;
@@ -95,8 +96,8 @@ import com.craxiom.networksurvey.model.CdrEvent;
 import com.craxiom.networksurvey.model.CdrEventType;
 import com.craxiom.networksurvey.model.CellularProtocol;
 import com.craxiom.networksurvey.model.CellularRecordWrapper;
-import com.craxiom.networksurvey.model.ConstellationFreqKey;
 import com.craxiom.networksurvey.model.NrRecordWrapper;
+import com.craxiom.networksurvey.model.SurveyRecordEnvelope;
 import com.craxiom.networksurvey.model.WifiRecordWrapper;
 import com.craxiom.networksurvey.services.controller.CellularController;
 import com.craxiom.networksurvey.util.FormatUtils;
@@ -115,20 +116,21 @@ import com.google.protobuf.UInt64Value;
 
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 
 import timber.log.Timber;
@@ -152,7 +154,12 @@ public class SurveyRecordProcessor
     private static final int UNSET_RSSI = 127;
     private static final int MAX_CDR_LOCATION_WAIT_TIME = 5_000;
 
-    private final Object cellInfoProcessingLock = new Object();
+    /**
+     * A lock for each subscription ID (aka SIM ID) so that only one list of Cell Info objects is processed at a time
+     * for each SIM, but the SIMs don't have to wait on each other.
+     */
+    private final Map<Integer, Object> cellInfoProcessingLocks = new ConcurrentHashMap<>();
+    private final ParallelRecordConverter cellInfoConverter = new ParallelRecordConverter();
     private final Object activityUpdateLock = new Object();
 
     private final GpsListener gpsListener;
@@ -162,6 +169,17 @@ public class SurveyRecordProcessor
     private final Set<IGnssSurveyRecordListener> gnssSurveyRecordListeners = new CopyOnWriteArraySet<>();
     private final Set<ICdrEventListener> cdrListeners = new CopyOnWriteArraySet<>();
     private final Set<IDeviceStatusListener> deviceStatusListeners = new CopyOnWriteArraySet<>();
+    private final SurveyEventBus eventBus = new SurveyEventBus();
+    private volatile BluetoothRecordCoalescer bluetoothCoalescer;
+    private volatile RecordLocationAligner locationAligner;
+    private volatile boolean locationProjectionEnabled;
+    private final LocationListener locationAlignerFixListener = location -> {
+        final RecordLocationAligner aligner = locationAligner;
+        if (aligner != null && location != null)
+        {
+            aligner.onLocationFix(NANOSECONDS.toMillis(location.getElapsedRealtimeNanos()));
+        }
+    };
     private volatile NetworkSurveyActivity networkSurveyActivity;
 
     private final ExecutorService executorService;
@@ -169,17 +187,18 @@ public class SurveyRecordProcessor
     private final String missionId;
     private final Context context;
 
-    private int recordNumber = 1;
-    private int groupNumber = 0; // This will be incremented to 1 the first time it is used.
+    private final AtomicInteger cellularRecordNumber = new AtomicInteger(1);
+    private final AtomicInteger cellularGroupNumber = new AtomicInteger(0); // This will be incremented to 1 the first time it is used.
 
     private int wifiRecordNumber = 1;
-    private int bluetoothRecordNumber = 1;
+    private final AtomicInteger bluetoothRecordNumber = new AtomicInteger(1);
 
     private int gnssRecordNumber = 1;
     private int gnssGroupNumber = 0; // This will be incremented to 1 the first time it is used.
 
     private int phoneStateRecordNumber = 1;
 
+    private final GnssMeasurementAggregator<GnssMeasurement> gnssAggregator = new GnssMeasurementAggregator<>();
     private long lastGnssLogTimeMs;
     private int gnssScanRateMs;
 
@@ -205,36 +224,42 @@ public class SurveyRecordProcessor
 
         gnssScanRateMs = PreferenceUtils.getScanRatePreferenceMs(NetworkSurveyConstants.PROPERTY_GNSS_SCAN_INTERVAL_SECONDS,
                 NetworkSurveyConstants.DEFAULT_GNSS_SCAN_INTERVAL_SECONDS, context);
+
+        if (gpsListener != null) gpsListener.registerListener(locationAlignerFixListener);
+
+        locationProjectionEnabled = PreferenceUtils.getLocationProjectionEnabledPreference(context);
+        updateBluetoothCoalescer();
+        updateLocationAligner();
     }
 
     void registerCellularSurveyRecordListener(ICellularSurveyRecordListener surveyRecordListener)
     {
-        cellularSurveyRecordListeners.add(surveyRecordListener);
+        eventBus.register(cellularSurveyRecordListeners, surveyRecordListener);
     }
 
     void unregisterCellularSurveyRecordListener(ICellularSurveyRecordListener surveyRecordListener)
     {
-        cellularSurveyRecordListeners.remove(surveyRecordListener);
+        eventBus.unregister(cellularSurveyRecordListeners, surveyRecordListener);
     }
 
     void registerWifiSurveyRecordListener(IWifiSurveyRecordListener surveyRecordListener)
     {
-        wifiSurveyRecordListeners.add(surveyRecordListener);
+        eventBus.register(wifiSurveyRecordListeners, surveyRecordListener);
     }
 
     void unregisterWifiSurveyRecordListener(IWifiSurveyRecordListener surveyRecordListener)
     {
-        wifiSurveyRecordListeners.remove(surveyRecordListener);
+        eventBus.unregister(wifiSurveyRecordListeners, surveyRecordListener);
     }
 
     void registerBluetoothSurveyRecordListener(IBluetoothSurveyRecordListener surveyRecordListener)
     {
-        bluetoothSurveyRecordListeners.add(surveyRecordListener);
+        eventBus.register(bluetoothSurveyRecordListeners, surveyRecordListener);
     }
 
     void unregisterBluetoothSurveyRecordListener(IBluetoothSurveyRecordListener surveyRecordListener)
     {
-        bluetoothSurveyRecordListeners.remove(surveyRecordListener);
+        eventBus.unregister(bluetoothSurveyRecordListeners, surveyRecordListener);
     }
 
     /**
@@ -245,7 +270,7 @@ public class SurveyRecordProcessor
      */
     void registerGnssSurveyRecordListener(IGnssSurveyRecordListener surveyRecordListener)
     {
-        gnssSurveyRecordListeners.add(surveyRecordListener);
+        eventBus.register(gnssSurveyRecordListeners, surveyRecordListener);
     }
 
     /**
@@ -256,7 +281,7 @@ public class SurveyRecordProcessor
      */
     void unregisterGnssSurveyRecordListener(IGnssSurveyRecordListener surveyRecordListener)
     {
-        gnssSurveyRecordListeners.remove(surveyRecordListener);
+        eventBus.unregister(gnssSurveyRecordListeners, surveyRecordListener);
     }
 
     /**
@@ -267,7 +292,7 @@ public class SurveyRecordProcessor
      */
     void registerCdrEventListener(ICdrEventListener listener)
     {
-        cdrListeners.add(listener);
+        eventBus.register(cdrListeners, listener);
     }
 
     /**
@@ -278,7 +303,7 @@ public class SurveyRecordProcessor
      */
     void unregisterCdrEventListener(ICdrEventListener listener)
     {
-        cdrListeners.remove(listener);
+        eventBus.unregister(cdrListeners, listener);
     }
 
     /**
@@ -289,7 +314,7 @@ public class SurveyRecordProcessor
      */
     void registerDeviceStatusListener(IDeviceStatusListener deviceStatusListener)
     {
-        deviceStatusListeners.add(deviceStatusListener);
+        eventBus.register(deviceStatusListeners, deviceStatusListener);
     }
 
     /**
@@ -300,7 +325,57 @@ public class SurveyRecordProcessor
      */
     void unregisterDeviceStatusListener(IDeviceStatusListener deviceStatusListener)
     {
-        deviceStatusListeners.remove(deviceStatusListener);
+        eventBus.unregister(deviceStatusListeners, deviceStatusListener);
+    }
+
+    /**
+     * Each listener is called from its own thread (unless it implements
+     * {@link com.craxiom.networksurvey.listeners.ISynchronousSurveyListener}), so these stats show if any of the
+     * listeners are falling behind.
+     *
+     * @return The lag, throughput, and drop stats for each registered listener.
+     * @since 1.31.0
+     */
+    List<SurveyEventBus.ListenerStats> getListenerStats()
+    {
+        return eventBus.getListenerStats();
+    }
+
+    /**
+     * Stops the threads that deliver the survey records to the listeners. No listeners are notified after this call.
+     *
+     * @since 1.31.0
+     */
+    void onDestroy()
+    {
+        for (SurveyEventBus.ListenerStats stats : eventBus.getListenerStats())
+        {
+            Timber.i("Survey listener stats at shutdown: %s", stats);
+        }
+        // Stop the aligner first since it sends the records it is holding on to the coalescer
+        final RecordLocationAligner aligner = locationAligner;
+        locationAligner = null;
+        if (aligner != null) aligner.stop();
+        if (gpsListener != null) gpsListener.unregisterListener(locationAlignerFixListener);
+
+        final BluetoothRecordCoalescer coalescer = bluetoothCoalescer;
+        bluetoothCoalescer = null;
+        if (coalescer != null) coalescer.stop();
+
+        eventBus.shutdown();
+        cellInfoConverter.shutdown();
+    }
+
+    /**
+     * Called to indicate that an MDM preference changed, which should trigger a re-read of the preferences.
+     *
+     * @since 1.31.0
+     */
+    void onMdmPreferenceChanged()
+    {
+        locationProjectionEnabled = PreferenceUtils.getLocationProjectionEnabledPreference(context);
+        updateBluetoothCoalescer();
+        updateLocationAligner();
     }
 
     /**
@@ -414,8 +489,8 @@ public class SurveyRecordProcessor
                                  int subscriptionId, String networkOperatorName, SignalStrength signalStrength,
                                  String overrideNetworkType) throws SecurityException
     {
-        // synchronized to make sure that we are only processing one list of Cell Info objects at a time.
-        synchronized (cellInfoProcessingLock)
+        // synchronized to make sure that we are only processing one list of Cell Info objects at a time for each SIM.
+        synchronized (cellInfoProcessingLocks.computeIfAbsent(subscriptionId, id -> new Object()))
         {
             try
             {
@@ -426,14 +501,10 @@ public class SurveyRecordProcessor
 
                 if (allCellInfo != null && !allCellInfo.isEmpty())
                 {
-                    groupNumber++; // Group all the records found in this scan iteration.
-                    final List<CellularRecordWrapper> cellularRecords = new ArrayList<>(allCellInfo.size());
-
-                    for (CellInfo cellInfo : allCellInfo)
-                    {
-                        final CellularRecordWrapper cellularRecord = processCellInfo(cellInfo, subscriptionId, networkOperatorName, signalStrength);
-                        if (cellularRecord != null) cellularRecords.add(cellularRecord);
-                    }
+                    // Group all the records found in this scan iteration.
+                    final int groupNumber = cellularGroupNumber.incrementAndGet();
+                    final List<CellularRecordWrapper> cellularRecords = processCellInfo(allCellInfo, subscriptionId,
+                            networkOperatorName, signalStrength, groupNumber);
 
                     // processCellInfo notifies listeners of the individual records, but we also
                     // want to notify the batch listeners (eg. the UI) of the entire batch.
@@ -651,7 +722,7 @@ public class SurveyRecordProcessor
 
         if (gpsListener != null)
         {
-            @SuppressLint("MissingPermission") final Location lastKnownLocation = gpsListener.getLatestLocation();
+            @SuppressLint("MissingPermission") final Location lastKnownLocation = getRecordLocation();
             if (lastKnownLocation != null)
             {
                 dataBuilder.setLatitude(lastKnownLocation.getLatitude());
@@ -670,7 +741,7 @@ public class SurveyRecordProcessor
         }
 
         dataBuilder.setDeviceSerialNumber(deviceId);
-        dataBuilder.setDeviceTime(NsUtils.getRfc3339String(ZonedDateTime.now()));
+        dataBuilder.setDeviceTime(NsUtils.getRfc3339String(System.currentTimeMillis()));
 
         dataBuilder.setMissionId(missionId);
         dataBuilder.setRecordNumber(phoneStateRecordNumber++);
@@ -711,61 +782,113 @@ public class SurveyRecordProcessor
     }
 
     /**
-     * Given a {@link CellInfo} record, convert it to the appropriate ProtoBuf defined message.  Then, notify any
-     * listeners so it can be written to a log file and/or sent to any servers if those services are enabled.
+     * Given a list of {@link CellInfo} records from a single scan, convert them to the appropriate ProtoBuf defined
+     * messages. Then, notify any listeners so they can be written to a log file and/or sent to any servers if those
+     * services are enabled.
+     * <p>
+     * A large list (e.g. a dense urban area with a lot of neighbor cells) is converted across several threads, but
+     * the record numbers are assigned afterwards in the order of the list, and the listeners are notified in that same
+     * order, so the output is the same as if the list was converted on a single thread.
      *
-     * @param cellInfo       The Cell Info object with the details.
-     * @param subscriptionId The subscription ID (aka SIM ID) associated with the cell info record.
-     * @since 0.0.5
+     * @param allCellInfo    The Cell Info objects from a single scan.
+     * @param subscriptionId The subscription ID (aka SIM ID) associated with the cell info records.
+     * @param groupNumber    The group number to set on each of the records.
+     * @return The converted records.
+     * @since 1.31.0
      */
-    private CellularRecordWrapper processCellInfo(CellInfo cellInfo, int subscriptionId, String networkOperatorName, SignalStrength signalStrength)
+    private List<CellularRecordWrapper> processCellInfo(List<CellInfo> allCellInfo, int subscriptionId,
+                                                        String networkOperatorName, SignalStrength signalStrength,
+                                                        int groupNumber)
     {
         // We only want to take the time to process a record if we are going to do something with it.  Currently, that
         // means logging, sending to a server, or updating the UI with the latest LTE information.
-        if (!cellularSurveyRecordListeners.isEmpty())
+        if (cellularSurveyRecordListeners.isEmpty()) return Collections.emptyList();
+
+        final List<IntFunction<CellularRecordWrapper>> unnumberedRecords = cellInfoConverter.convert(allCellInfo,
+                cellInfo -> convertCellInfo(cellInfo, subscriptionId, networkOperatorName, signalStrength, groupNumber));
+        if (unnumberedRecords.isEmpty()) return Collections.emptyList();
+
+        // Reserve a block of record numbers for this scan so that the records from a scan are numbered in order
+        int recordNumber = cellularRecordNumber.getAndAdd(unnumberedRecords.size());
+        final List<CellularRecordWrapper> cellularRecords = new ArrayList<>(unnumberedRecords.size());
+        for (IntFunction<CellularRecordWrapper> unnumberedRecord : unnumberedRecords)
         {
-            final String carrierName = getCarrierName(cellInfo, networkOperatorName);
+            cellularRecords.add(unnumberedRecord.apply(recordNumber++));
+        }
+        return cellularRecords;
+    }
+
+    /**
+     * Given a {@link CellInfo} record, convert it to the appropriate ProtoBuf defined message. This is called from
+     * several threads at once, so it must not change any of the state in this class.
+     *
+     * @param cellInfo       The Cell Info object with the details.
+     * @param subscriptionId The subscription ID (aka SIM ID) associated with the cell info record.
+     * @param groupNumber    The group number to set on the record.
+     * @return A function that sets the record number on the record, notifies the listeners of the record, and then
+     * returns it; or null if the cell info could not be converted.
+     * @since 0.0.5
+     */
+    private IntFunction<CellularRecordWrapper> convertCellInfo(CellInfo cellInfo, int subscriptionId,
+                                                               String networkOperatorName, SignalStrength signalStrength,
+                                                               int groupNumber)
+    {
+        final String carrierName = getCarrierName(cellInfo, networkOperatorName);
 
-            if (cellInfo instanceof CellInfoLte)
+        if (cellInfo instanceof CellInfoLte)
+        {
+            final IntFunction<LteRecord> lteSurveyRecord = generateLteSurveyRecord((CellInfoLte) cellInfo, subscriptionId, carrierName, signalStrength, groupNumber);
+            if (lteSurveyRecord != null)
             {
-                final LteRecord lteSurveyRecord = generateLteSurveyRecord((CellInfoLte) cellInfo, subscriptionId, carrierName, signalStrength);
-                if (lteSurveyRecord != null)
-                {
-                    notifyLteRecordListeners(lteSurveyRecord);
-                    return new CellularRecordWrapper(CellularProtocol.LTE, lteSurveyRecord);
-                }
-            } else if (cellInfo instanceof CellInfoGsm)
+                return recordNumber -> {
+                    final LteRecord lteRecord = lteSurveyRecord.apply(recordNumber);
+                    notifyLteRecordListeners(lteRecord);
+                    return new CellularRecordWrapper(CellularProtocol.LTE, lteRecord);
+                };
+            }
+        } else if (cellInfo instanceof CellInfoGsm)
+        {
+            final IntFunction<GsmRecord> gsmSurveyRecord = generateGsmSurveyRecord((CellInfoGsm) cellInfo, subscriptionId, carrierName, groupNumber);
+            if (gsmSurveyRecord != null)
             {
-                final GsmRecord gsmRecord = generateGsmSurveyRecord((CellInfoGsm) cellInfo, subscriptionId, carrierName);
-                if (gsmRecord != null)
-                {
+                return recordNumber -> {
+                    final GsmRecord gsmRecord = gsmSurveyRecord.apply(recordNumber);
                     notifyGsmRecordListeners(gsmRecord);
                     return new CellularRecordWrapper(CellularProtocol.GSM, gsmRecord);
-                }
-            } else if (cellInfo instanceof CellInfoCdma)
+                };
+            }
+        } else if (cellInfo instanceof CellInfoCdma)
+        {
+            final IntFunction<CdmaRecord> cdmaSurveyRecord = generateCdmaSurveyRecord((CellInfoCdma) cellInfo, subscriptionId, carrierName, groupNumber);
+            if (cdmaSurveyRecord != null)
             {
-                final CdmaRecord cdmaRecord = generateCdmaSurveyRecord((CellInfoCdma) cellInfo, subscriptionId, carrierName);
-                if (cdmaRecord != null)
-                {
+                return recordNumber -> {
+                    final CdmaRecord cdmaRecord = cdmaSurveyRecord.apply(recordNumber);
                     notifyCdmaRecordListeners(cdmaRecord);
                     return new CellularRecordWrapper(CellularProtocol.CDMA, cdmaRecord);
-                }
-            } else if (cellInfo instanceof CellInfoWcdma)
+                };
+            }
+        } else if (cellInfo instanceof CellInfoWcdma)
+        {
+            final IntFunction<UmtsRecord> umtsSurveyRecord = generateUmtsSurveyRecord((CellInfoWcdma) cellInfo, subscriptionId, carrierName, groupNumber);
+            if (umtsSurveyRecord != null)
             {
-                final UmtsRecord umtsRecord = generateUmtsSurveyRecord((CellInfoWcdma) cellInfo, subscriptionId, carrierName);
-                if (umtsRecord != null)
-                {
+                return recordNumber -> {
+                    final UmtsRecord umtsRecord = umtsSurveyRecord.apply(recordNumber);
                     notifyUmtsRecordListeners(umtsRecord);
                     return new CellularRecordWrapper(CellularProtocol.UMTS, umtsRecord);
-                }
-            } else if (android.os.Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && cellInfo instanceof CellInfoNr)
+                };
+            }
+        } else if (android.os.Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && cellInfo instanceof CellInfoNr)
+        {
+            final IntFunction<NrRecordWrapper> nrSurveyRecord = generateNrSurveyRecord((CellInfoNr) cellInfo, subscriptionId, carrierName, groupNumber);
+            if (nrSurveyRecord != null)
             {
-                final NrRecordWrapper nrRecordWrapper = generateNrSurveyRecord((CellInfoNr) cellInfo, subscriptionId, carrierName);
-                if (nrRecordWrapper != null)
-                {
+                return recordNumber -> {
+                    final NrRecordWrapper nrRecordWrapper = nrSurveyRecord.apply(recordNumber);
                     notifyNrRecordListeners((NrRecord) nrRecordWrapper.cellularRecord);
                     return nrRecordWrapper;
-                }
+                };
             }
         }
 
@@ -807,7 +930,31 @@ public class SurveyRecordProcessor
         final List<WifiRecordWrapper> wifiBeaconRecords = apScanResults.stream()
                 .map(this::generateWiFiBeaconSurveyRecord)
                 .collect(Collectors.toList());
-        notifyWifiBeaconRecordListeners(wifiBeaconRecords);
+
+        final RecordLocationAligner aligner = locationAligner;
+        if (aligner == null || wifiBeaconRecords.isEmpty())
+        {
+            notifyWifiBeaconRecordListeners(wifiBeaconRecords);
+            return;
+        }
+
+        // The scan result timestamps are in microseconds since boot, and can be several seconds old
+        final long[] recordTimesMs = new long[apScanResults.size()];
+        long latestRecordTimeMs = Long.MIN_VALUE;
+        for (int i = 0; i < recordTimesMs.length; i++)
+        {
+            recordTimesMs[i] = TimeUnit.MICROSECONDS.toMillis(apScanResults.get(i).timestamp);
+            latestRecordTimeMs = Math.max(latestRecordTimeMs, recordTimesMs[i]);
+        }
+
+        aligner.submit(latestRecordTimeMs, () -> {
+            final List<WifiRecordWrapper> alignedRecords = new ArrayList<>(wifiBeaconRecords.size());
+            for (int i = 0; i < wifiBeaconRecords.size(); i++)
+            {
+                alignedRecords.add(setLocationAt(wifiBeaconRecords.get(i), recordTimesMs[i]));
+            }
+            notifyWifiBeaconRecordListeners(alignedRecords);
+        });
     }
 
     /**
@@ -819,7 +966,17 @@ public class SurveyRecordProcessor
      */
     private void processBluetoothClassicResult(BluetoothDevice device, int rssi)
     {
-        notifyBluetoothRecordListeners(generateBluetoothSurveyRecord(device, rssi, UNSET_TX_POWER_LEVEL));
+        final BluetoothRecord bluetoothRecord = generateBluetoothSurveyRecord(device, rssi, UNSET_TX_POWER_LEVEL);
+
+        final RecordLocationAligner aligner = locationAligner;
+        if (aligner == null || bluetoothRecord == null)
+        {
+            sendBluetoothRecord(bluetoothRecord);
+            return;
+        }
+
+        final long recordTimeMs = SystemClock.elapsedRealtime();
+        aligner.submit(recordTimeMs, () -> sendBluetoothRecord(setLocationAt(bluetoothRecord, recordTimeMs)));
     }
 
     /**
@@ -830,7 +987,17 @@ public class SurveyRecordProcessor
      */
     private void processBluetoothResult(android.bluetooth.le.ScanResult result)
     {
-        notifyBluetoothRecordListeners(generateBluetoothSurveyRecord(result));
+        final BluetoothRecord bluetoothRecord = generateBluetoothSurveyRecord(result);
+
+        final RecordLocationAligner aligner = locationAligner;
+        if (aligner == null || bluetoothRecord == null)
+        {
+            sendBluetoothRecord(bluetoothRecord);
+            return;
+        }
+
+        final long recordTimeMs = NANOSECONDS.toMillis(result.getTimestampNanos());
+        aligner.submit(recordTimeMs, () -> sendBluetoothRecord(setLocationAt(bluetoothRecord, recordTimeMs)));
     }
 
     /**
@@ -844,7 +1011,181 @@ public class SurveyRecordProcessor
         final List<BluetoothRecord> bluetoothRecords = results.stream()
                 .map(this::generateBluetoothSurveyRecord)
                 .collect(Collectors.toList());
-        notifyBluetoothRecordListeners(bluetoothRecords);
+
+        final RecordLocationAligner aligner = locationAligner;
+        if (aligner == null || bluetoothRecords.isEmpty())
+        {
+            sendBluetoothRecords(bluetoothRecords);
+            return;
+        }
+
+        // A batch scan can hold on to results for the whole report delay, so each one gets its own location
+        final long[] recordTimesMs = new long[results.size()];
+        long latestRecordTimeMs = Long.MIN_VALUE;
+        for (int i = 0; i < recordTimesMs.length; i++)
+        {
+            recordTimesMs[i] = NANOSECONDS.toMillis(results.get(i).getTimestampNanos());
+            latestRecordTimeMs = Math.max(latestRecordTimeMs, recordTimesMs[i]);
+        }
+
+        aligner.submit(latestRecordTimeMs, () -> {
+            final List<BluetoothRecord> alignedRecords = new ArrayList<>(bluetoothRecords.size());
+            for (int i = 0; i < bluetoothRecords.size(); i++)
+            {
+                alignedRecords.add(setLocationAt(bluetoothRecords.get(i), recordTimesMs[i]));
+            }
+            sendBluetoothRecords(alignedRecords);
+        });
+    }
+
+    /**
+     * Sends a single Bluetooth record to the coalescer if it is turned on, or straight to the listeners if not.
+     *
+     * @since 1.31.0
+     */
+    private void sendBluetoothRecord(BluetoothRecord bluetoothRecord)
+    {
+        final BluetoothRecordCoalescer coalescer = bluetoothCoalescer;
+        if (coalescer != null)
+        {
+            coalescer.add(Collections.singletonList(bluetoothRecord));
+        } else
+        {
+            notifyBluetoothRecordListeners(bluetoothRecord);
+        }
+    }
+
+    /**
+     * Sends a group of Bluetooth records to the coalescer if it is turned on, or straight to the listeners if not.
+     *
+     * @since 1.31.0
+     */
+    private void sendBluetoothRecords(List<BluetoothRecord> bluetoothRecords)
+    {
+        final BluetoothRecordCoalescer coalescer = bluetoothCoalescer;
+        if (coalescer != null)
+        {
+            coalescer.add(bluetoothRecords);
+        } else
+        {
+            notifyBluetoothRecordListeners(bluetoothRecords);
+        }
+    }
+
+    /**
+     * @return A copy of the Wi-Fi record with the location at the provided time, or the record as is if it is null or
+     * there is no location.
+     * @since 1.31.0
+     */
+    private WifiRecordWrapper setLocationAt(WifiRecordWrapper wifiRecord, long elapsedRealtimeMs)
+    {
+        if (wifiRecord == null) return null;
+
+        final Location location = gpsListener.getLocationAt(elapsedRealtimeMs);
+        if (location == null) return wifiRecord;
+
+        final WifiBeaconRecord.Builder recordBuilder = wifiRecord.getWifiBeaconRecord().toBuilder();
+        final WifiBeaconRecordData.Builder dataBuilder = recordBuilder.getDataBuilder();
+        dataBuilder.setLatitude(location.getLatitude());
+        dataBuilder.setLongitude(location.getLongitude());
+        dataBuilder.setAltitude((float) location.getAltitude());
+        dataBuilder.setAccuracy(MathUtils.roundAccuracy(location.getAccuracy()));
+
+        return new WifiRecordWrapper(recordBuilder.build(), wifiRecord.getCapabilitiesString());
+    }
+
+    /**
+     * @return A copy of the Bluetooth record with the location at the provided time, or the record as is if it is null
+     * or there is no location.
+     * @since 1.31.0
+     */
+    private BluetoothRecord setLocationAt(BluetoothRecord bluetoothRecord, long elapsedRealtimeMs)
+    {
+        if (bluetoothRecord == null) return null;
+
+        final Location location = gpsListener.getLocationAt(elapsedRealtimeMs);
+        if (location == null) return bluetoothRecord;
+
+        final BluetoothRecord.Builder recordBuilder = bluetoothRecord.toBuilder();
+        final BluetoothRecordData.Builder dataBuilder = recordBuilder.getDataBuilder();
+        dataBuilder.setLatitude(location.getLatitude());
+        dataBuilder.setLongitude(location.getLongitude());
+        dataBuilder.setAltitude((float) location.getAltitude());
+        dataBuilder.setAccuracy(MathUtils.roundAccuracy(location.getAccuracy()));
+
+        return recordBuilder.build();
+    }
+
+    /**
+     * @return The location to add to a record made now. This is the latest fix, or the latest fix projected forward
+     * along its bearing when location projection is turned on in the preferences. Null if there is no fix yet.
+     * @since 1.31.0
+     */
+    private Location getRecordLocation()
+    {
+        return locationProjectionEnabled ? gpsListener.getEstimatedLocation() : gpsListener.getLatestLocation();
+    }
+
+    /**
+     * Starts, stops, or replaces the record location aligner based on the current preferences. When the maximum delay
+     * is 0 the aligner is turned off and the records are sent to the listeners with the location from
+     * {@link #getRecordLocation()} as soon as they are made.
+     *
+     * @since 1.31.0
+     */
+    private synchronized void updateLocationAligner()
+    {
+        final long maxDelayMs = TimeUnit.SECONDS.toMillis(PreferenceUtils.getLocationAlignmentMaxDelaySecondsPreference(context));
+
+        final RecordLocationAligner current = locationAligner;
+        if (current != null && current.getMaxDelayMs() == maxDelayMs) return;
+
+        if (maxDelayMs > 0 && gpsListener != null)
+        {
+            Timber.i("Holding the Wi-Fi and Bluetooth records for up to %d ms to align them with the location fixes", maxDelayMs);
+            final RecordLocationAligner aligner = new RecordLocationAligner(maxDelayMs, SystemClock::elapsedRealtime);
+            final long latestFixMs = gpsListener.getLatestFixElapsedRealtimeMs();
+            if (latestFixMs != Long.MIN_VALUE) aligner.onLocationFix(latestFixMs);
+            aligner.start();
+            locationAligner = aligner;
+        } else
+        {
+            locationAligner = null;
+        }
+
+        // Sends anything the old aligner was holding on to
+        if (current != null) current.stop();
+    }
+
+    /**
+     * Starts, stops, or replaces the Bluetooth record coalescer based on the current preferences. When the coalescing
+     * window is 0 the coalescer is turned off and every Bluetooth record is sent to the listeners as is.
+     *
+     * @since 1.31.0
+     */
+    private synchronized void updateBluetoothCoalescer()
+    {
+        final long windowMs = TimeUnit.SECONDS.toMillis(PreferenceUtils.getBluetoothCoalesceWindowSecondsPreference(context));
+        final BluetoothRecordCoalescer.RssiMode rssiMode = BluetoothRecordCoalescer.RssiMode.fromIndex(
+                PreferenceUtils.getBluetoothCoalesceRssiModePreference(context));
+
+        final BluetoothRecordCoalescer current = bluetoothCoalescer;
+        if (current != null && current.getWindowMs() == windowMs && current.getRssiMode() == rssiMode) return;
+
+        if (windowMs > 0)
+        {
+            Timber.i("Combining the Bluetooth records for each device every %d ms using the %s signal strength", windowMs, rssiMode);
+            final BluetoothRecordCoalescer coalescer = new BluetoothRecordCoalescer(windowMs, rssiMode,
+                    bluetoothRecordNumber::getAndIncrement, this::notifyBluetoothRecordListeners);
+            coalescer.start();
+            bluetoothCoalescer = coalescer;
+        } else
+        {
+            bluetoothCoalescer = null;
+        }
+
+        // Emits anything the old coalescer was holding on to
+        if (current != null) current.stop();
     }
 
     /**
@@ -860,35 +1201,39 @@ public class SurveyRecordProcessor
     private void processGnssMeasurements(GnssMeasurementsEvent event)
     {
         // Ideally we would tell the Android OS that we only want GNSS Measurement Events every n seconds, but since
-        // there does not seem to be any option for that we simply ignore any updates until the interval has been reached
-        if (lastGnssLogTimeMs + gnssScanRateMs > System.currentTimeMillis()) return;
-
-        lastGnssLogTimeMs = System.currentTimeMillis();
-
-        final Collection<GnssMeasurement> gnssMeasurements = event.getMeasurements();
-        //Timber.i("GnssMeasurement length=%s", (long) gnssMeasurements.size());
-        //gnssMeasurements.forEach(m -> Timber.i("GnssMeasurement: Constellation=%s, CarrierFreq=%s, AGC=%s", GnssMessageConstants.getProtobufConstellation(m.getConstellationType()), (long) m.getCarrierFrequencyHz(), m.getAutomaticGainControlLevelDb()));
-
-        final Map<ConstellationFreqKey, Float> agcMap = new HashMap<>();
-        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.TIRAMISU)
+        // there does not seem to be any option for that we collect the measurements until the interval has been
+        // reached and then log a summary of them
+        synchronized (gnssAggregator)
         {
-            Collection<GnssAutomaticGainControl> gnssAgcs = event.getGnssAutomaticGainControls();
-            //Timber.i("GnssAutomaticGainControls length=%s", (long) gnssAgcs.size());
-            //gnssAgcs.forEach(g -> Timber.i("GnssAutomaticGainControl: Constellation=%s, CarrierFreq=%s, AGC=%s", GnssMessageConstants.getProtobufConstellation(g.getConstellationType()), g.getCarrierFrequencyHz(), g.getLevelDb()));
+            gnssAggregator.onEvent();
+            for (final GnssMeasurement gnssMeasurement : event.getMeasurements())
+            {
+                gnssAggregator.addMeasurement(gnssMeasurement.getConstellationType(), gnssMeasurement.getSvid(),
+                        gnssMeasurement.hasCarrierFrequencyHz() ? gnssMeasurement.getCarrierFrequencyHz() : Double.NaN,
+                        gnssMeasurement.getCn0DbHz(), gnssMeasurement);
+            }
 
-            for (GnssAutomaticGainControl agc : gnssAgcs)
+            if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.TIRAMISU)
             {
-                ConstellationFreqKey key = new ConstellationFreqKey(agc.getConstellationType(), agc.getCarrierFrequencyHz());
-                agcMap.put(key, (float) agc.getLevelDb());
+                for (GnssAutomaticGainControl agc : event.getGnssAutomaticGainControls())
+                {
+                    gnssAggregator.putAgc(agc.getConstellationType(), agc.getCarrierFrequencyHz(), agc.getLevelDb());
+                }
             }
-        }
 
-        gnssGroupNumber++; // Group all the records found in this scan iteration.
+            if (lastGnssLogTimeMs + gnssScanRateMs > System.currentTimeMillis()) return;
 
-        for (final GnssMeasurement gnssMeasurement : gnssMeasurements)
-        {
-            final GnssRecord gnssRecord = generateGnssSurveyRecord(gnssMeasurement, agcMap);
-            notifyGnssRecordListeners(gnssRecord);
+            lastGnssLogTimeMs = System.currentTimeMillis();
+
+            Timber.v("Logging %d GNSS signals summarized from %d measurement events", gnssAggregator.getSignalCount(),
+                    gnssAggregator.getEventCount());
+
+            gnssGroupNumber++; // Group all the records found in this scan iteration.
+
+            gnssAggregator.drain((gnssMeasurement, minCn0DbHz, meanCn0DbHz, maxCn0DbHz, measurementCount, agcDb) -> {
+                final GnssRecord gnssRecord = generateGnssSurveyRecord(gnssMeasurement, meanCn0DbHz, agcDb);
+                notifyGnssRecordListeners(gnssRecord);
+            });
         }
     }
 
@@ -944,9 +1289,11 @@ public class SurveyRecordProcessor
      * Given a {@link CellInfoGsm} object, pull out the values and generate a {@link GsmRecord}.
      *
      * @param cellInfoGsm The object that contains the GSM Cell info.  This can be a serving cell or a neighbor cell.
-     * @return The survey record.
+     * @param groupNumber The group number for the scan the cell info is from.
+     * @return A function that sets the record number and builds the survey record, or null if the cell info is not
+     * valid. The record number is set separately so that the cell info can be converted on any thread.
      */
-    private GsmRecord generateGsmSurveyRecord(CellInfoGsm cellInfoGsm, int subscriptionId, String carrierName)
+    private IntFunction<GsmRecord> generateGsmSurveyRecord(CellInfoGsm cellInfoGsm, int subscriptionId, String carrierName, int groupNumber)
     {
         final CellIdentityGsm cellIdentity = cellInfoGsm.getCellIdentity();
         final int mcc = cellIdentity.getMcc();
@@ -976,7 +1323,7 @@ public class SurveyRecordProcessor
 
         if (gpsListener != null)
         {
-            @SuppressLint("MissingPermission") final Location lastKnownLocation = gpsListener.getLatestLocation();
+            @SuppressLint("MissingPermission") final Location lastKnownLocation = getRecordLocation();
             if (lastKnownLocation != null)
             {
                 dataBuilder.setLatitude(lastKnownLocation.getLatitude());
@@ -995,9 +1342,8 @@ public class SurveyRecordProcessor
         }
 
         dataBuilder.setDeviceSerialNumber(deviceId);
-        dataBuilder.setDeviceTime(NsUtils.getRfc3339String(ZonedDateTime.now()));
+        dataBuilder.setDeviceTime(NsUtils.getRfc3339String(System.currentTimeMillis()));
         dataBuilder.setMissionId(missionId);
-        dataBuilder.setRecordNumber(recordNumber++);
         dataBuilder.setGroupNumber(groupNumber);
         dataBuilder.setServingCell(BoolValue.newBuilder().setValue(cellInfoGsm.isRegistered()).build());
         if (provider != null) dataBuilder.setProvider(provider.toString());
@@ -1035,21 +1381,27 @@ public class SurveyRecordProcessor
             dataBuilder.setTa(Int32Value.newBuilder().setValue(timingAdvance).build());
         }
 
-        final GsmRecord.Builder recordBuilder = GsmRecord.newBuilder();
-        recordBuilder.setMessageType(GsmMessageConstants.GSM_RECORD_MESSAGE_TYPE);
-        recordBuilder.setVersion(BuildConfig.MESSAGING_API_VERSION);
-        recordBuilder.setData(dataBuilder);
+        return recordNumber -> {
+            dataBuilder.setRecordNumber(recordNumber);
 
-        return recordBuilder.build();
+            final GsmRecord.Builder recordBuilder = GsmRecord.newBuilder();
+            recordBuilder.setMessageType(GsmMessageConstants.GSM_RECORD_MESSAGE_TYPE);
+            recordBuilder.setVersion(BuildConfig.MESSAGING_API_VERSION);
+            recordBuilder.setData(dataBuilder);
+
+            return recordBuilder.build();
+        };
     }
 
     /**
      * Given a {@link CellInfoCdma} object, pull out the values and generate a {@link CdmaRecord}.
      *
      * @param cellInfoCdma The object that contains the GSM Cell info.  This can be a serving cell or a neighbor cell.
-     * @return The survey record.
+     * @param groupNumber The group number for the scan the cell info is from.
+     * @return A function that sets the record number and builds the survey record, or null if the cell info is not
+     * valid. The record number is set separately so that the cell info can be converted on any thread.
      */
-    private CdmaRecord generateCdmaSurveyRecord(CellInfoCdma cellInfoCdma, int subscriptionId, String carrierName)
+    private IntFunction<CdmaRecord> generateCdmaSurveyRecord(CellInfoCdma cellInfoCdma, int subscriptionId, String carrierName, int groupNumber)
     {
         final CellIdentityCdma cellIdentity = cellInfoCdma.getCellIdentity();
         final int sid = cellIdentity.getSystemId();
@@ -1080,7 +1432,7 @@ public class SurveyRecordProcessor
 
         if (gpsListener != null)
         {
-            @SuppressLint("MissingPermission") final Location lastKnownLocation = gpsListener.getLatestLocation();
+            @SuppressLint("MissingPermission") final Location lastKnownLocation = getRecordLocation();
             if (lastKnownLocation != null)
             {
                 dataBuilder.setLatitude(lastKnownLocation.getLatitude());
@@ -1099,9 +1451,8 @@ public class SurveyRecordProcessor
         }
 
         dataBuilder.setDeviceSerialNumber(deviceId);
-        dataBuilder.setDeviceTime(NsUtils.getRfc3339String(ZonedDateTime.now()));
+        dataBuilder.setDeviceTime(NsUtils.getRfc3339String(System.currentTimeMillis()));
         dataBuilder.setMissionId(missionId);
-        dataBuilder.setRecordNumber(recordNumber++);
         dataBuilder.setGroupNumber(groupNumber);
         dataBuilder.setServingCell(BoolValue.newBuilder().setValue(cellInfoCdma.isRegistered()).build());
         if (provider != null) dataBuilder.setProvider(provider.toString());
@@ -1126,21 +1477,27 @@ public class SurveyRecordProcessor
         dataBuilder.setSignalStrength(FloatValue.newBuilder().setValue(signalStrength).build());
         dataBuilder.setEcio(FloatValue.newBuilder().setValue(ecioFloat).build());
 
-        final CdmaRecord.Builder recordBuilder = CdmaRecord.newBuilder();
-        recordBuilder.setMessageType(CdmaMessageConstants.CDMA_RECORD_MESSAGE_TYPE);
-        recordBuilder.setVersion(BuildConfig.MESSAGING_API_VERSION);
-        recordBuilder.setData(dataBuilder);
+        return recordNumber -> {
+            dataBuilder.setRecordNumber(recordNumber);
 
-        return recordBuilder.build();
+            final CdmaRecord.Builder recordBuilder = CdmaRecord.newBuilder();
+            recordBuilder.setMessageType(CdmaMessageConstants.CDMA_RECORD_MESSAGE_TYPE);
+            recordBuilder.setVersion(BuildConfig.MESSAGING_API_VERSION);
+            recordBuilder.setData(dataBuilder);
+
+            return recordBuilder.build();
+        };
     }
 
     /**
      * Given a {@link CellInfoWcdma} object, pull out the values and generate an {@link UmtsRecord}.
      *
      * @param cellInfoWcdma The object that contains the UMTS Cell info.  This can be a serving cell, or a neighbor cell.
-     * @return The survey record.
+     * @param groupNumber The group number for the scan the cell info is from.
+     * @return A function that sets the record number and builds the survey record, or null if the cell info is not
+     * valid. The record number is set separately so that the cell info can be converted on any thread.
      */
-    private UmtsRecord generateUmtsSurveyRecord(CellInfoWcdma cellInfoWcdma, int subscriptionId, String carrierName)
+    private IntFunction<UmtsRecord> generateUmtsSurveyRecord(CellInfoWcdma cellInfoWcdma, int subscriptionId, String carrierName, int groupNumber)
     {
         final CellIdentityWcdma cellIdentity = cellInfoWcdma.getCellIdentity();
         final int mcc = cellIdentity.getMcc();
@@ -1171,7 +1528,7 @@ public class SurveyRecordProcessor
 
         if (gpsListener != null)
         {
-            @SuppressLint("MissingPermission") final Location lastKnownLocation = gpsListener.getLatestLocation();
+            @SuppressLint("MissingPermission") final Location lastKnownLocation = getRecordLocation();
             if (lastKnownLocation != null)
             {
                 dataBuilder.setLatitude(lastKnownLocation.getLatitude());
@@ -1190,9 +1547,8 @@ public class SurveyRecordProcessor
         }
 
         dataBuilder.setDeviceSerialNumber(deviceId);
-        dataBuilder.setDeviceTime(NsUtils.getRfc3339String(ZonedDateTime.now()));
+        dataBuilder.setDeviceTime(NsUtils.getRfc3339String(System.currentTimeMillis()));
         dataBuilder.setMissionId(missionId);
-        dataBuilder.setRecordNumber(recordNumber++);
         dataBuilder.setGroupNumber(groupNumber);
         dataBuilder.setServingCell(BoolValue.newBuilder().setValue(cellInfoWcdma.isRegistered()).build());
         if (provider != null) dataBuilder.setProvider(provider.toString());
@@ -1239,21 +1595,28 @@ public class SurveyRecordProcessor
         dataBuilder.setUarfcn(Int32Value.newBuilder().setValue(uarfcn).build());
         dataBuilder.setPsc(Int32Value.newBuilder().setValue(psc).build());
 
-        final UmtsRecord.Builder recordBuilder = UmtsRecord.newBuilder();
-        recordBuilder.setMessageType(UmtsMessageConstants.UMTS_RECORD_MESSAGE_TYPE);
-        recordBuilder.setVersion(BuildConfig.MESSAGING_API_VERSION);
-        recordBuilder.setData(dataBuilder);
+        return recordNumber -> {
+            dataBuilder.setRecordNumber(recordNumber);
 
-        return recordBuilder.build();
+            final UmtsRecord.Builder recordBuilder = UmtsRecord.newBuilder();
+            recordBuilder.setMessageType(UmtsMessageConstants.UMTS_RECORD_MESSAGE_TYPE);
+            recordBuilder.setVersion(BuildConfig.MESSAGING_API_VERSION);
+            recordBuilder.setData(dataBuilder);
+
+            return recordBuilder.build();
+        };
     }
 
     /**
      * Given a {@link CellInfoLte} object, pull out the values and generate an {@link LteRecord}.
      *
      * @param cellInfoLte The object that contains the LTE Cell info.  This can be a serving cell, or a neighbor cell.
-     * @return The survey record.
+     * @param groupNumber The group number for the scan the cell info is from.
+     * @return A function that sets the record number and builds the survey record, or null if the cell info is not
+     * valid. The record number is set separately so that the cell info can be converted on any thread.
      */
-    private LteRecord generateLteSurveyRecord(CellInfoLte cellInfoLte, int subscriptionId, String carrierName, SignalStrength signalStrength)
+    private IntFunction<LteRecord> generateLteSurveyRecord(CellInfoLte cellInfoLte, int subscriptionId, String carrierName,
+                                                           SignalStrength signalStrength, int groupNumber)
     {
         final CellIdentityLte cellIdentity = cellInfoLte.getCellIdentity();
         final int mcc = cellIdentity.getMcc();
@@ -1291,7 +1654,7 @@ public class SurveyRecordProcessor
 
         if (gpsListener != null)
         {
-            @SuppressLint("MissingPermission") final Location lastKnownLocation = gpsListener.getLatestLocation();
+            @SuppressLint("MissingPermission") final Location lastKnownLocation = getRecordLocation();
             if (lastKnownLocation != null)
             {
                 dataBuilder.setLatitude(lastKnownLocation.getLatitude());
@@ -1310,9 +1673,8 @@ public class SurveyRecordProcessor
         }
 
         dataBuilder.setDeviceSerialNumber(deviceId);
-        dataBuilder.setDeviceTime(NsUtils.getRfc3339String(ZonedDateTime.now()));
+        dataBuilder.setDeviceTime(NsUtils.getRfc3339String(System.currentTimeMillis()));
         dataBuilder.setMissionId(missionId);
-        dataBuilder.setRecordNumber(recordNumber++);
         dataBuilder.setGroupNumber(groupNumber);
         dataBuilder.setServingCell(BoolValue.newBuilder().setValue(cellInfoLte.isRegistered()).build());
         if (provider != null) dataBuilder.setProvider(provider.toString());
@@ -1393,12 +1755,16 @@ public class SurveyRecordProcessor
 
         setBandwidth(dataBuilder, cellIdentity);
 
-        final LteRecord.Builder recordBuilder = LteRecord.newBuilder();
-        recordBuilder.setMessageType(LteMessageConstants.LTE_RECORD_MESSAGE_TYPE);
-        recordBuilder.setVersion(BuildConfig.MESSAGING_API_VERSION);
-        recordBuilder.setData(dataBuilder);
+        return recordNumber -> {
+            dataBuilder.setRecordNumber(recordNumber);
 
-        return recordBuilder.build();
+            final LteRecord.Builder recordBuilder = LteRecord.newBuilder();
+            recordBuilder.setMessageType(LteMessageConstants.LTE_RECORD_MESSAGE_TYPE);
+            recordBuilder.setVersion(BuildConfig.MESSAGING_API_VERSION);
+            recordBuilder.setData(dataBuilder);
+
+            return recordBuilder.build();
+        };
     }
 
     private int getLteRssnr(SignalStrength signalStrengths)
@@ -1431,11 +1797,13 @@ public class SurveyRecordProcessor
      * Given a {@link CellInfoNr} object, pull out the values and generate a {@link NrRecord}.
      *
      * @param cellInfoNr The object that contains the NR(5G) Cell info.  This can be a serving cell, or a neighbor cell.
-     * @return The survey record.
+     * @param groupNumber The group number for the scan the cell info is from.
+     * @return A function that sets the record number and builds the survey record, or null if the cell info is not
+     * valid. The record number is set separately so that the cell info can be converted on any thread.
      * @since 1.5.0
      */
     @RequiresApi(api = Build.VERSION_CODES.Q)
-    private NrRecordWrapper generateNrSurveyRecord(CellInfoNr cellInfoNr, int subscriptionId, String carrierName)
+    private IntFunction<NrRecordWrapper> generateNrSurveyRecord(CellInfoNr cellInfoNr, int subscriptionId, String carrierName, int groupNumber)
     {
         // safe to cast as per: https://developer.android.com/reference/android/telephony/CellInfoNr#getCellIdentity()
         final CellIdentityNr cellIdentity = (CellIdentityNr) cellInfoNr.getCellIdentity();
@@ -1488,7 +1856,7 @@ public class SurveyRecordProcessor
 
         if (gpsListener != null)
         {
-            @SuppressLint("MissingPermission") final Location lastKnownLocation = gpsListener.getLatestLocation();
+            @SuppressLint("MissingPermission") final Location lastKnownLocation = getRecordLocation();
             if (lastKnownLocation != null)
             {
                 dataBuilder.setLatitude(lastKnownLocation.getLatitude());
@@ -1507,9 +1875,8 @@ public class SurveyRecordProcessor
         }
 
         dataBuilder.setDeviceSerialNumber(deviceId);
-        dataBuilder.setDeviceTime(NsUtils.getRfc3339String(ZonedDateTime.now()));
+        dataBuilder.setDeviceTime(NsUtils.getRfc3339String(System.currentTimeMillis()));
         dataBuilder.setMissionId(missionId);
-        dataBuilder.setRecordNumber(recordNumber++);
         dataBuilder.setGroupNumber(groupNumber);
         dataBuilder.setServingCell(BoolValue.newBuilder().setValue(cellInfoNr.isRegistered()).build());
         if (provider != null) dataBuilder.setProvider(provider.toString());
@@ -1574,13 +1941,18 @@ public class SurveyRecordProcessor
             dataBuilder.setSlot(Int32Value.newBuilder().setValue(subscriptionId).build());
         }
 
-        final NrRecord.Builder recordBuilder = NrRecord.newBuilder();
+        final int[] nrBands = bands;
+        return recordNumber -> {
+            dataBuilder.setRecordNumber(recordNumber);
 
-        recordBuilder.setMessageType(NrMessageConstants.NR_RECORD_MESSAGE_TYPE);
-        recordBuilder.setVersion(BuildConfig.MESSAGING_API_VERSION);
-        recordBuilder.setData(dataBuilder);
+            final NrRecord.Builder recordBuilder = NrRecord.newBuilder();
+
+            recordBuilder.setMessageType(NrMessageConstants.NR_RECORD_MESSAGE_TYPE);
+            recordBuilder.setVersion(BuildConfig.MESSAGING_API_VERSION);
+            recordBuilder.setData(dataBuilder);
 
-        return new NrRecordWrapper(recordBuilder.build(), bands);
+            return new NrRecordWrapper(recordBuilder.build(), nrBands);
+        };
     }
 
     /**
@@ -1602,7 +1974,7 @@ public class SurveyRecordProcessor
 
         if (gpsListener != null)
         {
-            @SuppressLint("MissingPermission") final Location lastKnownLocation = gpsListener.getLatestLocation();
+            @SuppressLint("MissingPermission") final Location lastKnownLocation = getRecordLocation();
             if (lastKnownLocation != null)
             {
                 dataBuilder.setLatitude(lastKnownLocation.getLatitude());
@@ -1621,7 +1993,7 @@ public class SurveyRecordProcessor
         }
 
         dataBuilder.setDeviceSerialNumber(deviceId);
-        dataBuilder.setDeviceTime(NsUtils.getRfc3339String(ZonedDateTime.now()));
+        dataBuilder.setDeviceTime(NsUtils.getRfc3339String(System.currentTimeMillis()));
         dataBuilder.setMissionId(missionId);
         dataBuilder.setRecordNumber(wifiRecordNumber++);
 
@@ -1707,7 +2079,7 @@ public class SurveyRecordProcessor
 
         if (gpsListener != null)
         {
-            @SuppressLint("MissingPermission") final Location lastKnownLocation = gpsListener.getLatestLocation();
+            @SuppressLint("MissingPermission") final Location lastKnownLocation = getRecordLocation();
             if (lastKnownLocation != null)
             {
                 dataBuilder.setLatitude(lastKnownLocation.getLatitude());
@@ -1726,9 +2098,10 @@ public class SurveyRecordProcessor
         }
 
         dataBuilder.setDeviceSerialNumber(deviceId);
-        dataBuilder.setDeviceTime(NsUtils.getRfc3339String(ZonedDateTime.now()));
+        dataBuilder.setDeviceTime(NsUtils.getRfc3339String(System.currentTimeMillis()));
         dataBuilder.setMissionId(missionId);
-        dataBuilder.setRecordNumber(bluetoothRecordNumber++);
+        // When the records are being combined, they are numbered as they are sent to the listeners instead
+        if (bluetoothCoalescer == null) dataBuilder.setRecordNumber(bluetoothRecordNumber.getAndIncrement());
 
         dataBuilder.setSourceAddress(sourceAddress);
 
@@ -1773,18 +2146,20 @@ public class SurveyRecordProcessor
     /**
      * Pull out the appropriate values from the {@link GnssMeasurement}, and create a {@link GnssRecord}.
      *
-     * @param gnss   The GNSS measurement object to pull the data from.
-     * @param agcMap The map of AGC values keyed by the constellation and frequency.
+     * @param gnss    The latest GNSS measurement object to pull the data from.
+     * @param cn0DbHz The C/N0 to use for the record, which is the mean over the logging interval.
+     * @param agcDb   The AGC level reported for the constellation and frequency, or {@link Float#NaN} if none was
+     *                reported. This is only used if the measurement does not include its own AGC level.
      * @return The GNSS record to send to any listeners.
      * @since 0.3.0
      */
-    private GnssRecord generateGnssSurveyRecord(GnssMeasurement gnss, Map<ConstellationFreqKey, Float> agcMap)
+    private GnssRecord generateGnssSurveyRecord(GnssMeasurement gnss, float cn0DbHz, float agcDb)
     {
         final GnssRecordData.Builder dataBuilder = GnssRecordData.newBuilder();
 
         if (gpsListener != null)
         {
-            final Location lastKnownLocation = gpsListener.getLatestLocation();
+            final Location lastKnownLocation = getRecordLocation();
             if (lastKnownLocation != null)
             {
                 dataBuilder.setLatitude(lastKnownLocation.getLatitude());
@@ -1817,7 +2192,7 @@ public class SurveyRecordProcessor
         }
 
         dataBuilder.setDeviceSerialNumber(deviceId);
-        dataBuilder.setDeviceTime(NsUtils.getRfc3339String(ZonedDateTime.now()));
+        dataBuilder.setDeviceTime(NsUtils.getRfc3339String(System.currentTimeMillis()));
         dataBuilder.setMissionId(missionId);
         dataBuilder.setRecordNumber(gnssRecordNumber++);
         dataBuilder.setGroupNumber(gnssGroupNumber);
@@ -1840,16 +2215,12 @@ public class SurveyRecordProcessor
         if (gnss.hasAutomaticGainControlLevelDb())
         {
             dataBuilder.setAgcDb(FloatValue.newBuilder().setValue((float) gnss.getAutomaticGainControlLevelDb()));
-        } else
+        } else if (!Float.isNaN(agcDb))
         {
-            Float agc = agcMap.get(new ConstellationFreqKey(gnss.getConstellationType(), (long) gnss.getCarrierFrequencyHz()));
-            if (agc != null)
-            {
-                dataBuilder.setAgcDb(FloatValue.newBuilder().setValue(agc));
-            }
+            dataBuilder.setAgcDb(FloatValue.newBuilder().setValue(agcDb));
         }
 
-        dataBuilder.setCn0DbHz(FloatValue.newBuilder().setValue((float) gnss.getCn0DbHz()));
+        dataBuilder.setCn0DbHz(FloatValue.newBuilder().setValue(cn0DbHz));
 
         // TODO dataBuilder.setHdop(FloatValue.newBuilder().setValue());
         // TODO dataBuilder.setVdop(FloatValue.newBuilder().setValue());
@@ -1874,7 +2245,7 @@ public class SurveyRecordProcessor
 
         if (gpsListener != null)
         {
-            final Location lastKnownLocation = gpsListener.getLatestLocation();
+            final Location lastKnownLocation = getRecordLocation();
             if (lastKnownLocation != null)
             {
                 dataBuilder.setLatitude(lastKnownLocation.getLatitude());
@@ -1907,7 +2278,7 @@ public class SurveyRecordProcessor
         }
 
         dataBuilder.setDeviceSerialNumber(deviceId);
-        dataBuilder.setDeviceTime(NsUtils.getRfc3339String(ZonedDateTime.now()));
+        dataBuilder.setDeviceTime(NsUtils.getRfc3339String(System.currentTimeMillis()));
         dataBuilder.setMissionId(missionId);
         dataBuilder.setRecordNumber(gnssRecordNumber++);
         dataBuilder.setGroupNumber(gnssGroupNumber);
@@ -2274,16 +2645,9 @@ public class SurveyRecordProcessor
     private void notifyGsmRecordListeners(GsmRecord gsmRecord)
     {
         if (gsmRecord == null) return;
-        for (ICellularSurveyRecordListener listener : cellularSurveyRecordListeners)
-        {
-            try
-            {
-                listener.onGsmSurveyRecord(gsmRecord);
-            } catch (Exception e)
-            {
-                Timber.e(e, "Unable to notify a Cellular Survey Record Listener because of an exception");
-            }
-        }
+        final SurveyRecordEnvelope<GsmRecord> envelope = new SurveyRecordEnvelope<>(gsmRecord);
+        eventBus.publish(cellularSurveyRecordListeners, listener -> listener.onGsmSurveyRecord(envelope),
+                "Unable to notify a Cellular Survey Record Listener because of an exception");
     }
 
     /**
@@ -2294,16 +2658,9 @@ public class SurveyRecordProcessor
     private void notifyCdmaRecordListeners(CdmaRecord cdmaRecord)
     {
         if (cdmaRecord == null) return;
-        for (ICellularSurveyRecordListener listener : cellularSurveyRecordListeners)
-        {
-            try
-            {
-                listener.onCdmaSurveyRecord(cdmaRecord);
-            } catch (Exception e)
-            {
-                Timber.e(e, "Unable to notify a Cellular Survey Record Listener because of an exception");
-            }
-        }
+        final SurveyRecordEnvelope<CdmaRecord> envelope = new SurveyRecordEnvelope<>(cdmaRecord);
+        eventBus.publish(cellularSurveyRecordListeners, listener -> listener.onCdmaSurveyRecord(envelope),
+                "Unable to notify a Cellular Survey Record Listener because of an exception");
     }
 
     /**
@@ -2314,16 +2671,9 @@ public class SurveyRecordProcessor
     private void notifyUmtsRecordListeners(UmtsRecord umtsRecord)
     {
         if (umtsRecord == null) return;
-        for (ICellularSurveyRecordListener listener : cellularSurveyRecordListeners)
-        {
-            try
-            {
-                listener.onUmtsSurveyRecord(umtsRecord);
-            } catch (Exception e)
-            {
-                Timber.e(e, "Unable to notify a Cellular Survey Record Listener because of an exception");
-            }
-        }
+        final SurveyRecordEnvelope<UmtsRecord> envelope = new SurveyRecordEnvelope<>(umtsRecord);
+        eventBus.publish(cellularSurveyRecordListeners, listener -> listener.onUmtsSurveyRecord(envelope),
+                "Unable to notify a Cellular Survey Record Listener because of an exception");
     }
 
     /**
@@ -2334,16 +2684,9 @@ public class SurveyRecordProcessor
     private void notifyLteRecordListeners(LteRecord lteRecord)
     {
         if (lteRecord == null) return;
-        for (ICellularSurveyRecordListener listener : cellularSurveyRecordListeners)
-        {
-            try
-            {
-                listener.onLteSurveyRecord(lteRecord);
-            } catch (Exception e)
-            {
-                Timber.e(e, "Unable to notify a Cellular Survey Record Listener because of an exception");
-            }
-        }
+        final SurveyRecordEnvelope<LteRecord> envelope = new SurveyRecordEnvelope<>(lteRecord);
+        eventBus.publish(cellularSurveyRecordListeners, listener -> listener.onLteSurveyRecord(envelope),
+                "Unable to notify a Cellular Survey Record Listener because of an exception");
     }
 
     /**
@@ -2356,15 +2699,9 @@ public class SurveyRecordProcessor
     {
         if (nrRecord == null) return;
 
-        cellularSurveyRecordListeners.forEach(l -> {
-            try
-            {
-                l.onNrSurveyRecord(nrRecord);
-            } catch (Exception e)
-            {
-                Timber.e(e, "Unable to notify a Cellular Survey Record Listener because of an exception");
-            }
-        });
+        final SurveyRecordEnvelope<NrRecord> envelope = new SurveyRecordEnvelope<>(nrRecord);
+        eventBus.publish(cellularSurveyRecordListeners, listener -> listener.onNrSurveyRecord(envelope),
+                "Unable to notify a Cellular Survey Record Listener because of an exception");
     }
 
     /**
@@ -2378,15 +2715,9 @@ public class SurveyRecordProcessor
      */
     private void notifyCellularListeners(List<CellularRecordWrapper> cellularRecords, int subscriptionId)
     {
-        cellularSurveyRecordListeners.forEach(l -> {
-            try
-            {
-                l.onCellularBatch(cellularRecords, subscriptionId);
-            } catch (Throwable t)
-            {
-                Timber.e(t, "Unable to notify a Cellular Survey Record Listener because of an exception");
-            }
-        });
+        eventBus.publish(cellularSurveyRecordListeners,
+                listener -> listener.onCellularBatch(cellularRecords, subscriptionId),
+                "Unable to notify a Cellular Survey Record Listener because of an exception");
     }
 
     /**
@@ -2400,15 +2731,9 @@ public class SurveyRecordProcessor
     private void notifyNetworkTypeListeners(String dataNetworkType, String voiceNetworkType,
                                             int subscriptionId, String overrideNetworkType)
     {
-        cellularSurveyRecordListeners.forEach(l -> {
-            try
-            {
-                l.onNetworkType(dataNetworkType, voiceNetworkType, subscriptionId, overrideNetworkType);
-            } catch (Exception e)
-            {
-                Timber.e(e, "Unable to notify a Cellular Survey Record Listener because of an exception");
-            }
-        });
+        eventBus.publish(cellularSurveyRecordListeners,
+                listener -> listener.onNetworkType(dataNetworkType, voiceNetworkType, subscriptionId, overrideNetworkType),
+                "Unable to notify a Cellular Survey Record Listener because of an exception");
     }
 
     /**
@@ -2421,16 +2746,8 @@ public class SurveyRecordProcessor
     {
         if (wifiBeaconRecords == null || wifiBeaconRecords.isEmpty()) return;
 
-        for (IWifiSurveyRecordListener listener : wifiSurveyRecordListeners)
-        {
-            try
-            {
-                listener.onWifiBeaconSurveyRecords(wifiBeaconRecords);
-            } catch (Exception e)
-            {
-                Timber.e(e, "Unable to notify a Wi-Fi Survey Record Listener because of an exception");
-            }
-        }
+        eventBus.publish(wifiSurveyRecordListeners, listener -> listener.onWifiBeaconSurveyRecords(wifiBeaconRecords),
+                "Unable to notify a Wi-Fi Survey Record Listener because of an exception");
     }
 
     /**
@@ -2443,16 +2760,9 @@ public class SurveyRecordProcessor
     {
         if (bluetoothRecord == null) return;
 
-        for (IBluetoothSurveyRecordListener listener : bluetoothSurveyRecordListeners)
-        {
-            try
-            {
-                listener.onBluetoothSurveyRecord(bluetoothRecord);
-            } catch (Exception e)
-            {
-                Timber.e(e, "Unable to notify a Bluetooth Survey Record Listener because of an exception");
-            }
-        }
+        final SurveyRecordEnvelope<BluetoothRecord> envelope = new SurveyRecordEnvelope<>(bluetoothRecord);
+        eventBus.publish(bluetoothSurveyRecordListeners, listener -> listener.onBluetoothSurveyRecord(envelope),
+                "Unable to notify a Bluetooth Survey Record Listener because of an exception");
     }
 
     /**
@@ -2465,16 +2775,13 @@ public class SurveyRecordProcessor
     {
         if (bluetoothRecords == null || bluetoothRecords.isEmpty()) return;
 
-        for (IBluetoothSurveyRecordListener listener : bluetoothSurveyRecordListeners)
+        final List<SurveyRecordEnvelope<BluetoothRecord>> envelopes = new ArrayList<>(bluetoothRecords.size());
+        for (BluetoothRecord bluetoothRecord : bluetoothRecords)
         {
-            try
-            {
-                listener.onBluetoothSurveyRecords(bluetoothRecords);
-            } catch (Exception e)
-            {
-                Timber.e(e, "Unable to notify a Bluetooth Survey Record Listener because of an exception");
-            }
+            envelopes.add(new SurveyRecordEnvelope<>(bluetoothRecord));
         }
+        eventBus.publish(bluetoothSurveyRecordListeners, listener -> listener.onBluetoothSurveyRecordEnvelopes(envelopes),
+                "Unable to notify a Bluetooth Survey Record Listener because of an exception");
     }
 
     /**
@@ -2486,16 +2793,9 @@ public class SurveyRecordProcessor
     private void notifyGnssRecordListeners(GnssRecord gnssRecord)
     {
         if (gnssRecord == null) return;
-        for (IGnssSurveyRecordListener listener : gnssSurveyRecordListeners)
-        {
-            try
-            {
-                listener.onGnssSurveyRecord(gnssRecord);
-            } catch (Exception e)
-            {
-                Timber.e(e, "Unable to notify a GNSS Survey Record Listener because of an exception");
-            }
-        }
+        final SurveyRecordEnvelope<GnssRecord> envelope = new SurveyRecordEnvelope<>(gnssRecord);
+        eventBus.publish(gnssSurveyRecordListeners, listener -> listener.onGnssSurveyRecord(envelope),
+                "Unable to notify a GNSS Survey Record Listener because of an exception");
     }
 
     private void finishCdrEvent(CdrEvent cdrEvent)
@@ -2512,16 +2812,8 @@ public class SurveyRecordProcessor
      */
     private void notifyCdrListeners(CdrEvent cdrEvent)
     {
-        for (ICdrEventListener listener : cdrListeners)
-        {
-            try
-            {
-                listener.onCdrEvent(cdrEvent);
-            } catch (Exception e)
-            {
-                Timber.e(e, "Unable to notify a CDR Event Listener because of an exception");
-            }
-        }
+        eventBus.publish(cdrListeners, listener -> listener.onCdrEvent(cdrEvent),
+                "Unable to notify a CDR Event Listener because of an exception");
     }
 
     /**
@@ -2615,16 +2907,8 @@ public class SurveyRecordProcessor
     private void notifyDeviceStatusListeners(DeviceStatus deviceStatus)
     {
         if (deviceStatus == null) return;
-        for (IDeviceStatusListener listener : deviceStatusListeners)
-        {
-            try
-            {
-                listener.onDeviceStatus(deviceStatus);
-            } catch (Exception e)
-            {
-                Timber.e(e, "Unable to notify a Device Status Listener because of an exception");
-            }
-        }
+        eventBus.publish(deviceStatusListeners, listener -> listener.onDeviceStatus(deviceStatus),
+                "Unable to notify a Device Status Listener because of an exception");
     }
 
     /**
@@ -2636,15 +2920,7 @@ public class SurveyRecordProcessor
     private void notifyPhoneStateListeners(PhoneState phoneState)
     {
         if (phoneState == null) return;
-        for (IDeviceStatusListener listener : deviceStatusListeners)
-        {
-            try
-            {
-                listener.onPhoneState(phoneState);
-            } catch (Exception e)
-            {
-                Timber.e(e, "Unable to notify a Phone State Listener because of an exception");
-            }
-        }
+        eventBus.publish(deviceStatusListeners, listener -> listener.onPhoneState(phoneState),
+                "Unable to notify a Phone State Listener because of an exception");
     }
 }
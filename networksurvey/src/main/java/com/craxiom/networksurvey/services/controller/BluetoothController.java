@@ -14,17 +14,22 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.pm.PackageManager;
+import android.location.Location;
+import android.os.BatteryManager;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.widget.Toast;
 
 import androidx.core.app.ActivityCompat;
 
+import com.craxiom.networksurvey.GpsListener;
 import com.craxiom.networksurvey.R;
 import com.craxiom.networksurvey.constants.NetworkSurveyConstants;
 import com.craxiom.networksurvey.logging.BluetoothCsvLogger;
 import com.craxiom.networksurvey.logging.BluetoothSurveyRecordLogger;
+import com.craxiom.networksurvey.logging.ProtobufRecordLogger;
 import com.craxiom.networksurvey.model.LogTypeState;
 import com.craxiom.networksurvey.services.NetworkSurveyService;
 import com.craxiom.networksurvey.services.SurveyRecordProcessor;
@@ -33,6 +38,7 @@ import com.craxiom.networksurvey.util.PreferenceUtils;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -46,9 +52,15 @@ import timber.log.Timber;
  */
 public class BluetoothController extends AController
 {
+    /**
+     * Locations older than this are not used for the current speed.
+     */
+    private static final long MAX_SPEED_AGE_NANOS = TimeUnit.SECONDS.toNanos(30);
+
     private final AtomicBoolean bluetoothScanningActive = new AtomicBoolean(false);
     private final AtomicBoolean bluetoothLoggingEnabled = new AtomicBoolean(false);
     private final AtomicInteger bluetoothScanningTaskId = new AtomicInteger();
+    private final ScanTickMonitor scanTickMonitor = new ScanTickMonitor("Bluetooth");
 
     private final Handler serviceHandler;
     private final SurveyRecordProcessor surveyRecordProcessor;
@@ -56,6 +68,8 @@ public class BluetoothController extends AController
 
     private final BluetoothSurveyRecordLogger bluetoothSurveyRecordLogger;
     private final BluetoothCsvLogger bluetoothCsvLogger;
+    private final ProtobufRecordLogger protobufRecordLogger;
+    private final BluetoothScanScheduler scanScheduler;
     private volatile int bluetoothScanRateMs;
     private ScanCallback bluetoothScanCallback;
     private BroadcastReceiver bluetoothBroadcastReceiver;
@@ -70,8 +84,10 @@ public class BluetoothController extends AController
         this.surveyRecordProcessor = surveyRecordProcessor;
         this.uiThreadHandler = uiThreadHandler;
 
-        bluetoothSurveyRecordLogger = new BluetoothSurveyRecordLogger(surveyService, serviceLooper);
+        bluetoothSurveyRecordLogger = new BluetoothSurveyRecordLogger(surveyService);
         bluetoothCsvLogger = new BluetoothCsvLogger(surveyService, serviceLooper);
+        protobufRecordLogger = new ProtobufRecordLogger(surveyService, NetworkSurveyConstants.BLUETOOTH_FILE_NAME_PREFIX);
+        scanScheduler = new BluetoothScanScheduler(bluetoothScanRateMs);
     }
 
     @Override
@@ -83,6 +99,7 @@ public class BluetoothController extends AController
         {
             bluetoothSurveyRecordLogger.onDestroy();
             bluetoothCsvLogger.onDestroy();
+            protobufRecordLogger.onDestroy();
 
             bluetoothBroadcastReceiver = null;
             bluetoothScanCallback = null;
@@ -110,6 +127,7 @@ public class BluetoothController extends AController
     {
         bluetoothSurveyRecordLogger.onSharedPreferenceChanged();
         bluetoothCsvLogger.onSharedPreferenceChanged();
+        protobufRecordLogger.onSharedPreferenceChanged();
     }
 
     /**
@@ -120,6 +138,7 @@ public class BluetoothController extends AController
     {
         bluetoothSurveyRecordLogger.onMdmPreferenceChanged();
         bluetoothCsvLogger.onMdmPreferenceChanged();
+        protobufRecordLogger.onMdmPreferenceChanged();
     }
 
     public void onLogFileTypePreferenceChanged()
@@ -150,6 +169,7 @@ public class BluetoothController extends AController
 
         bluetoothScanRateMs = PreferenceUtils.getScanRatePreferenceMs(NetworkSurveyConstants.PROPERTY_BLUETOOTH_SCAN_INTERVAL_SECONDS,
                 NetworkSurveyConstants.DEFAULT_BLUETOOTH_SCAN_INTERVAL_SECONDS, surveyService.getApplicationContext());
+        scanScheduler.setBaseReportDelayMs(bluetoothScanRateMs);
     }
 
     /**
@@ -181,13 +201,19 @@ public class BluetoothController extends AController
                 if (!bluetoothEnabled) return null;
 
                 LogTypeState types = PreferenceUtils.getLogTypePreference(surveyService.getApplicationContext());
+                // Start from true when there is something to log, and let any logger that fails to start turn it off
+                successful = types.geoPackage || types.csv || types.protobuf;
                 if (types.geoPackage)
                 {
-                    successful = bluetoothSurveyRecordLogger.enableLogging(true);
+                    successful &= bluetoothSurveyRecordLogger.enableLogging(true);
                 }
                 if (types.csv)
                 {
-                    successful = bluetoothCsvLogger.enableLogging(true);
+                    successful &= bluetoothCsvLogger.enableLogging(true);
+                }
+                if (types.protobuf)
+                {
+                    successful &= protobufRecordLogger.enableLogging(true);
                 }
 
                 if (successful)
@@ -199,14 +225,16 @@ public class BluetoothController extends AController
                     // disable all of them and set local config to false
                     bluetoothSurveyRecordLogger.enableLogging(false);
                     bluetoothCsvLogger.enableLogging(false);
+                    protobufRecordLogger.enableLogging(false);
                     toggleBtConfig(false, null);
                 }
             } else
             {
-                // If we are disabling logging, then we need to disable both geoPackage and CSV just
+                // If we are disabling logging, then we need to disable all the log file types just
                 // in case the user changed the setting after they started logging.
                 bluetoothSurveyRecordLogger.enableLogging(false);
                 bluetoothCsvLogger.enableLogging(false);
+                protobufRecordLogger.enableLogging(false);
                 toggleBtConfig(false, null);
                 successful = true;
             }
@@ -268,6 +296,7 @@ public class BluetoothController extends AController
 
                         if (rssi == Short.MIN_VALUE) return;
 
+                        scanScheduler.onDeviceSeen(device.getAddress(), true, SystemClock.elapsedRealtime());
                         surveyRecordProcessor.onBluetoothClassicScanUpdate(device, rssi);
                     }
                 }
@@ -278,12 +307,18 @@ public class BluetoothController extends AController
                 @Override
                 public void onScanResult(int callbackType, android.bluetooth.le.ScanResult result)
                 {
+                    scanScheduler.onDeviceSeen(result.getDevice().getAddress(), false, SystemClock.elapsedRealtime());
                     surveyRecordProcessor.onBluetoothScanUpdate(result);
                 }
 
                 @Override
                 public void onBatchScanResults(List<ScanResult> results)
                 {
+                    final long nowMs = SystemClock.elapsedRealtime();
+                    for (ScanResult result : results)
+                    {
+                        scanScheduler.onDeviceSeen(result.getDevice().getAddress(), false, nowMs);
+                    }
                     surveyRecordProcessor.onBluetoothScanUpdate(results);
                 }
 
@@ -348,6 +383,10 @@ public class BluetoothController extends AController
     /**
      * Register a listener for Bluetooth scans, and then kick off a scheduled Bluetooth scan.
      * <p>
+     * The BLE scan mode, the BLE report delay, and whether classic discovery is run are picked by the
+     * {@link BluetoothScanScheduler} each scan cycle based on the number of new devices, the current speed, and the
+     * battery state.
+     * <p>
      * This method only starts scanning if the scan is not already active and we have the required permissions.
      */
     // We should not be able to get here without the permissions already granted, but we also check at the beginning of the method
@@ -392,13 +431,14 @@ public class BluetoothController extends AController
             intentFilter.addAction(BluetoothAdapter.ACTION_DISCOVERY_FINISHED);
             surveyService.registerReceiver(bluetoothBroadcastReceiver, intentFilter);
 
-            final ScanSettings.Builder scanSettingsBuilder = new ScanSettings.Builder();
-            scanSettingsBuilder.setScanMode(ScanSettings.SCAN_MODE_LOW_POWER);
-            scanSettingsBuilder.setReportDelay(bluetoothScanRateMs);
-            bluetoothLeScanner.startScan(Collections.emptyList(), scanSettingsBuilder.build(), bluetoothScanCallback);
+            scanScheduler.reset();
+            final BluetoothScanScheduler.Decision initialDecision = evaluateScanSchedule();
+            bluetoothLeScanner.startScan(Collections.emptyList(), buildScanSettings(initialDecision), bluetoothScanCallback);
 
             final int handlerTaskId = bluetoothScanningTaskId.incrementAndGet();
 
+            scanTickMonitor.reset();
+            scanTickMonitor.onTickScheduled(1_000, SystemClock.uptimeMillis());
             serviceHandler.postDelayed(new Runnable()
             {
                 @Override
@@ -412,9 +452,22 @@ public class BluetoothController extends AController
                             return;
                         }
 
+                        scanTickMonitor.onTick(SystemClock.uptimeMillis());
+
+                        final BluetoothScanScheduler.Decision decision = evaluateScanSchedule();
+                        if (decision.scanSettingsChanged)
+                        {
+                            // The scan settings can't be changed on a running scan, so restart it with the new ones
+                            bluetoothLeScanner.stopScan(bluetoothScanCallback);
+                            bluetoothLeScanner.startScan(Collections.emptyList(), buildScanSettings(decision), bluetoothScanCallback);
+                        }
+
                         // Calling start Discovery scans for BT Classic (BR/EDR) devices as well. However, it also seems
                         // it allows for getting some BLE devices as well, but we seem to get more with the BLE scanner above
-                        if (!bluetoothAdapter.isDiscovering())
+                        if (!decision.classicDiscovery)
+                        {
+                            Timber.d("Skipping Bluetooth discovery for this scan cycle.");
+                        } else if (!bluetoothAdapter.isDiscovering())
                         {
                             bluetoothAdapter.startDiscovery();
                         } else
@@ -422,6 +475,7 @@ public class BluetoothController extends AController
                             Timber.d("Bluetooth discovery already in progress, not starting a new discovery.");
                         }
 
+                        scanTickMonitor.onTickScheduled(bluetoothScanRateMs, SystemClock.uptimeMillis());
                         serviceHandler.postDelayed(this, bluetoothScanRateMs);
                     } catch (Exception e)
                     {
@@ -484,6 +538,50 @@ public class BluetoothController extends AController
         toggleLogging(false);
     }
 
+    /**
+     * Asks the scan scheduler how the Bluetooth scan should be run for the next scan cycle, using the current speed
+     * from the primary location listener and the current battery state.
+     *
+     * @since 1.31.0
+     */
+    private BluetoothScanScheduler.Decision evaluateScanSchedule()
+    {
+        float speedMps = Float.NaN;
+        int batteryPercent = -1;
+        boolean charging = false;
+
+        final NetworkSurveyService service = surveyService;
+        if (service != null)
+        {
+            final GpsListener locationListener = service.getPrimaryLocationListener();
+            final Location location = locationListener == null ? null : locationListener.getLatestLocation();
+            if (location != null && location.hasSpeed()
+                    && SystemClock.elapsedRealtimeNanos() - location.getElapsedRealtimeNanos() < MAX_SPEED_AGE_NANOS)
+            {
+                speedMps = location.getSpeed();
+            }
+
+            final Intent batteryStatus = service.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+            if (batteryStatus != null)
+            {
+                final int level = batteryStatus.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+                final int scale = batteryStatus.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+                if (level >= 0 && scale > 0) batteryPercent = (int) ((level / (float) scale) * 100);
+                charging = batteryStatus.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+            }
+        }
+
+        return scanScheduler.evaluate(speedMps, batteryPercent, charging, SystemClock.elapsedRealtime());
+    }
+
+    private static ScanSettings buildScanSettings(BluetoothScanScheduler.Decision decision)
+    {
+        final ScanSettings.Builder scanSettingsBuilder = new ScanSettings.Builder();
+        scanSettingsBuilder.setScanMode(decision.scanMode.scanSettingsMode);
+        scanSettingsBuilder.setReportDelay(decision.reportDelayMs);
+        return scanSettingsBuilder.build();
+    }
+
     private void toggleBtConfig(boolean enable, LogTypeState types)
     {
         if (surveyService == null) return;
@@ -501,6 +599,10 @@ public class BluetoothController extends AController
                 {
                     surveyService.registerBluetoothSurveyRecordListener(bluetoothCsvLogger);
                 }
+                if (types.protobuf)
+                {
+                    surveyService.registerBluetoothSurveyRecordListener(protobufRecordLogger);
+                }
             } else
             {
                 throw new IllegalArgumentException("LogTypeState cannot be null when enabling Bluetooth logging");
@@ -509,6 +611,7 @@ public class BluetoothController extends AController
         {
             surveyService.unregisterBluetoothSurveyRecordListener(bluetoothSurveyRecordLogger);
             surveyService.unregisterBluetoothSurveyRecordListener(bluetoothCsvLogger);
+            surveyService.unregisterBluetoothSurveyRecordListener(protobufRecordLogger);
         }
     }
 
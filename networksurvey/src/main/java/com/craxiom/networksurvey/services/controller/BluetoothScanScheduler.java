@@ -0,0 +1,287 @@
+package com.craxiom.networksurvey.services.controller;
+
+import android.bluetooth.le.ScanSettings;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import timber.log.Timber;
+
+/**
+ * Decides how the Bluetooth scan should be run: the BLE scan mode, the BLE report delay, and whether Bluetooth classic
+ * discovery should be run this cycle.
+ * <p>
+ * The decision is based on how many new devices have been seen recently, how fast we are moving, and the battery
+ * state. When new devices keep showing up (e.g. driving through a busy area) the scan is more aggressive so that
+ * devices that are only in range for a few seconds are not missed. When we are sitting still and have already seen
+ * everything around us, the scan backs off to the low power mode and classic discovery (which keeps the radio busy for
+ * around 12 seconds) only runs every few cycles.
+ * <p>
+ * The BLE scan has to be restarted to change its settings, and Android stops scans for apps that start a scan more
+ * than 5 times in 30 seconds, so the scan settings are only changed at most once every
+ * {@link #MIN_SCAN_SETTINGS_CHANGE_INTERVAL_MS}.
+ *
+ * @since 1.31.0
+ */
+final class BluetoothScanScheduler
+{
+    static final long NEW_DEVICE_WINDOW_MS = 60_000;
+    static final long MIN_SCAN_SETTINGS_CHANGE_INTERVAL_MS = 30_000;
+
+    /**
+     * Faster than walking.
+     */
+    static final float MOVING_SPEED_MPS = 2f;
+    /**
+     * About 30 km/h.
+     */
+    static final float DRIVING_SPEED_MPS = 8f;
+
+    /**
+     * New devices per {@link #NEW_DEVICE_WINDOW_MS}.
+     */
+    static final int HIGH_NEW_DEVICE_COUNT = 20;
+    static final int LOW_NEW_DEVICE_COUNT = 2;
+
+    static final int LOW_BATTERY_PERCENT = 20;
+
+    /**
+     * When nothing new is being found, classic discovery is only run on every Nth scan cycle.
+     */
+    static final int IDLE_CLASSIC_DISCOVERY_INTERVAL = 4;
+
+    /**
+     * The shortest report delay used while moving. Shorter delays mean the records are tagged with a location closer
+     * to where the device was actually heard.
+     */
+    static final int MIN_MOVING_REPORT_DELAY_MS = 1_000;
+
+    /**
+     * Bounds the memory used to remember which devices have already been seen on a long survey. Once full, the
+     * devices that have not been seen for the longest time are forgotten.
+     */
+    static final int MAX_TRACKED_DEVICES = 10_000;
+
+    /**
+     * The BLE scan modes, from the least to the most power hungry.
+     */
+    enum ScanMode
+    {
+        LOW_POWER(ScanSettings.SCAN_MODE_LOW_POWER),
+        BALANCED(ScanSettings.SCAN_MODE_BALANCED),
+        LOW_LATENCY(ScanSettings.SCAN_MODE_LOW_LATENCY);
+
+        final int scanSettingsMode;
+
+        ScanMode(int scanSettingsMode)
+        {
+            this.scanSettingsMode = scanSettingsMode;
+        }
+    }
+
+    /**
+     * The result of a scheduler evaluation.
+     */
+    static final class Decision
+    {
+        final ScanMode scanMode;
+        final int reportDelayMs;
+        final boolean classicDiscovery;
+        /**
+         * True if the scan mode or report delay are different from the previous decision, which means the BLE scan
+         * needs to be restarted.
+         */
+        final boolean scanSettingsChanged;
+        final String reason;
+
+        Decision(ScanMode scanMode, int reportDelayMs, boolean classicDiscovery, boolean scanSettingsChanged, String reason)
+        {
+            this.scanMode = scanMode;
+            this.reportDelayMs = reportDelayMs;
+            this.classicDiscovery = classicDiscovery;
+            this.scanSettingsChanged = scanSettingsChanged;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Decision{" +
+                    "scanMode=" + scanMode +
+                    ", reportDelayMs=" + reportDelayMs +
+                    ", classicDiscovery=" + classicDiscovery +
+                    ", scanSettingsChanged=" + scanSettingsChanged +
+                    ", reason='" + reason + '\'' +
+                    '}';
+        }
+    }
+
+    private final Map<String, Boolean> seenDevices = new LinkedHashMap<>(256, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest)
+        {
+            return size() > MAX_TRACKED_DEVICES;
+        }
+    };
+    private final ArrayDeque<Long> newDeviceTimes = new ArrayDeque<>();
+    private final ArrayDeque<Long> newClassicDeviceTimes = new ArrayDeque<>();
+
+    private int baseReportDelayMs;
+    private Decision currentDecision;
+    private long lastScanSettingsChangeMs;
+    private int idleCycleCount;
+
+    /**
+     * @param baseReportDelayMs The report delay to use when there is no reason to change it, which is the Bluetooth
+     *                          scan rate the user picked.
+     */
+    BluetoothScanScheduler(int baseReportDelayMs)
+    {
+        this.baseReportDelayMs = baseReportDelayMs;
+    }
+
+    synchronized void setBaseReportDelayMs(int baseReportDelayMs)
+    {
+        this.baseReportDelayMs = baseReportDelayMs;
+    }
+
+    /**
+     * Forgets the previous decision so that the next evaluation is applied right away. Called when a new scan is
+     * started. The devices that have already been seen are remembered.
+     */
+    synchronized void reset()
+    {
+        currentDecision = null;
+        idleCycleCount = 0;
+    }
+
+    /**
+     * Records that a device was seen by either the BLE scan or classic discovery.
+     *
+     * @param address The MAC address of the device.
+     * @param classic True if the device was found with classic discovery.
+     * @param nowMs   The current time.
+     */
+    synchronized void onDeviceSeen(String address, boolean classic, long nowMs)
+    {
+        if (address == null) return;
+
+        final Boolean seenWithClassic = seenDevices.get(address);
+        if (seenWithClassic == null)
+        {
+            seenDevices.put(address, classic);
+            newDeviceTimes.addLast(nowMs);
+            if (classic) newClassicDeviceTimes.addLast(nowMs);
+        } else if (classic && !seenWithClassic)
+        {
+            // Seen over BLE before, but classic discovery is still turning up something
+            seenDevices.put(address, true);
+            newClassicDeviceTimes.addLast(nowMs);
+        }
+    }
+
+    /**
+     * @return The number of new devices seen in the last {@link #NEW_DEVICE_WINDOW_MS}.
+     */
+    synchronized int getNewDeviceCount(long nowMs)
+    {
+        prune(newDeviceTimes, nowMs);
+        return newDeviceTimes.size();
+    }
+
+    /**
+     * Works out how the Bluetooth scan should be run for the next cycle.
+     *
+     * @param speedMps       The current speed in meters per second, or {@link Float#NaN} if it is not known.
+     * @param batteryPercent The battery level, or -1 if it is not known.
+     * @param charging       True if the device is plugged in.
+     * @param nowMs          The current time.
+     * @return The decision. This is never null.
+     */
+    synchronized Decision evaluate(float speedMps, int batteryPercent, boolean charging, long nowMs)
+    {
+        prune(newDeviceTimes, nowMs);
+        prune(newClassicDeviceTimes, nowMs);
+        final int newDeviceCount = newDeviceTimes.size();
+        final boolean newClassicDevices = !newClassicDeviceTimes.isEmpty();
+        final boolean speedKnown = !Float.isNaN(speedMps);
+
+        final ScanMode scanMode;
+        int reportDelayMs = baseReportDelayMs;
+        boolean classicDiscovery = true;
+        boolean idle = false;
+        final String reason;
+
+        if (!charging && batteryPercent >= 0 && batteryPercent <= LOW_BATTERY_PERCENT)
+        {
+            scanMode = ScanMode.LOW_POWER;
+            reportDelayMs = baseReportDelayMs * 2;
+            classicDiscovery = false;
+            reason = "battery low";
+        } else if (speedKnown && speedMps >= DRIVING_SPEED_MPS)
+        {
+            scanMode = charging || newDeviceCount >= HIGH_NEW_DEVICE_COUNT ? ScanMode.LOW_LATENCY : ScanMode.BALANCED;
+            reportDelayMs = Math.min(baseReportDelayMs, Math.max(MIN_MOVING_REPORT_DELAY_MS, baseReportDelayMs / 2));
+            reason = "driving";
+        } else if (speedKnown && speedMps >= MOVING_SPEED_MPS)
+        {
+            scanMode = charging ? ScanMode.LOW_LATENCY : ScanMode.BALANCED;
+            reason = "moving";
+        } else if (newDeviceCount >= HIGH_NEW_DEVICE_COUNT)
+        {
+            scanMode = charging ? ScanMode.LOW_LATENCY : ScanMode.BALANCED;
+            reason = "many new devices";
+        } else if (newDeviceCount <= LOW_NEW_DEVICE_COUNT)
+        {
+            scanMode = charging ? ScanMode.BALANCED : ScanMode.LOW_POWER;
+            idle = true;
+            classicDiscovery = newClassicDevices || idleCycleCount++ % IDLE_CLASSIC_DISCOVERY_INTERVAL == 0;
+            reason = "stationary with few new devices";
+        } else
+        {
+            scanMode = charging ? ScanMode.BALANCED : ScanMode.LOW_POWER;
+            reason = "stationary";
+        }
+
+        if (!idle) idleCycleCount = 0;
+
+        final String inputs = String.format(Locale.US, "%s (speed=%s, battery=%s%s, newDevices=%d)", reason,
+                speedKnown ? String.format(Locale.US, "%.1fm/s", speedMps) : "unknown",
+                batteryPercent >= 0 ? batteryPercent + "%" : "unknown", charging ? " charging" : "", newDeviceCount);
+
+        final Decision previous = currentDecision;
+        if (previous != null && (previous.scanMode != scanMode || previous.reportDelayMs != reportDelayMs)
+                && nowMs - lastScanSettingsChangeMs < MIN_SCAN_SETTINGS_CHANGE_INTERVAL_MS)
+        {
+            // Too soon to restart the scan again, so keep the current scan settings for now
+            currentDecision = new Decision(previous.scanMode, previous.reportDelayMs, classicDiscovery, false, previous.reason);
+            return currentDecision;
+        }
+
+        final boolean scanSettingsChanged = previous == null || previous.scanMode != scanMode || previous.reportDelayMs != reportDelayMs;
+        currentDecision = new Decision(scanMode, reportDelayMs, classicDiscovery, scanSettingsChanged, inputs);
+
+        if (scanSettingsChanged)
+        {
+            lastScanSettingsChangeMs = nowMs;
+            Timber.i("Bluetooth scan schedule: mode=%s, reportDelay=%dms, classicDiscovery=%s because %s",
+                    scanMode, reportDelayMs, classicDiscovery, inputs);
+        } else if (previous.classicDiscovery != classicDiscovery)
+        {
+            Timber.d("Bluetooth classic discovery %s because %s", classicDiscovery ? "resumed" : "skipped", inputs);
+        }
+
+        return currentDecision;
+    }
+
+    private static void prune(ArrayDeque<Long> times, long nowMs)
+    {
+        while (!times.isEmpty() && nowMs - times.peekFirst() > NEW_DEVICE_WINDOW_MS)
+        {
+            times.removeFirst();
+        }
+    }
+}
@@ -13,6 +13,7 @@ import android.database.ContentObserver;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.telephony.CellInfo;
 import android.telephony.PhoneStateListener;
 import android.telephony.ServiceState;
@@ -40,6 +41,7 @@ import com.craxiom.networksurvey.logging.LteCsvLogger;
 import com.craxiom.networksurvey.logging.NrCsvLogger;
 import com.craxiom.networksurvey.logging.PhoneStateCsvLogger;
 import com.craxiom.networksurvey.logging.PhoneStateRecordLogger;
+import com.craxiom.networksurvey.logging.ProtobufRecordLogger;
 import com.craxiom.networksurvey.logging.UmtsCsvLogger;
 import com.craxiom.networksurvey.model.LogTypeState;
 import com.craxiom.networksurvey.services.NetworkSurveyService;
@@ -75,6 +77,7 @@ public class CellularController extends AController
     private final AtomicBoolean cellularLoggingEnabled = new AtomicBoolean(false);
 
     private final AtomicInteger cellularScanningTaskId = new AtomicInteger();
+    private final ScanTickMonitor scanTickMonitor = new ScanTickMonitor("Cellular");
 
     private final Handler serviceHandler;
     private final SurveyRecordProcessor surveyRecordProcessor;
@@ -95,6 +98,7 @@ public class CellularController extends AController
     private final UmtsCsvLogger umtsCsvLogger;
     private final CdmaCsvLogger cdmaCsvLogger;
     private final GsmCsvLogger gsmCsvLogger;
+    private final ProtobufRecordLogger protobufRecordLogger;
     private final Map<Integer, PhoneStateListener> phoneStateListenerMap = new HashMap<>();
     private BroadcastReceiver simBroadcastReceiver;
 
@@ -112,14 +116,15 @@ public class CellularController extends AController
         this.serviceHandler = serviceHandler;
         this.surveyRecordProcessor = surveyRecordProcessor;
 
-        cellularSurveyRecordLogger = new CellularSurveyRecordLogger(surveyService, serviceLooper);
-        phoneStateRecordLogger = new PhoneStateRecordLogger(surveyService, serviceLooper);
+        cellularSurveyRecordLogger = new CellularSurveyRecordLogger(surveyService);
+        phoneStateRecordLogger = new PhoneStateRecordLogger(surveyService);
         phoneStateCsvLogger = new PhoneStateCsvLogger(surveyService, serviceLooper);
         nrCsvLogger = new NrCsvLogger(surveyService, serviceLooper);
         lteCsvLogger = new LteCsvLogger(surveyService, serviceLooper);
         umtsCsvLogger = new UmtsCsvLogger(surveyService, serviceLooper);
         cdmaCsvLogger = new CdmaCsvLogger(surveyService, serviceLooper);
         gsmCsvLogger = new GsmCsvLogger(surveyService, serviceLooper);
+        protobufRecordLogger = new ProtobufRecordLogger(surveyService, NetworkSurveyConstants.CELLULAR_FILE_NAME_PREFIX);
         cdrLogger = new CdrLogger(surveyService, serviceLooper);
     }
 
@@ -138,6 +143,7 @@ public class CellularController extends AController
             umtsCsvLogger.onDestroy();
             cdmaCsvLogger.onDestroy();
             gsmCsvLogger.onDestroy();
+            protobufRecordLogger.onDestroy();
             super.onDestroy();
         }
     }
@@ -188,6 +194,7 @@ public class CellularController extends AController
         umtsCsvLogger.onSharedPreferenceChanged();
         cdmaCsvLogger.onSharedPreferenceChanged();
         gsmCsvLogger.onSharedPreferenceChanged();
+        protobufRecordLogger.onSharedPreferenceChanged();
         cdrLogger.onSharedPreferenceChanged();
     }
 
@@ -205,6 +212,7 @@ public class CellularController extends AController
         umtsCsvLogger.onSharedPreferenceChanged();
         cdmaCsvLogger.onSharedPreferenceChanged();
         gsmCsvLogger.onSharedPreferenceChanged();
+        protobufRecordLogger.onMdmPreferenceChanged();
         cdrLogger.onMdmPreferenceChanged();
     }
 
@@ -263,21 +271,27 @@ public class CellularController extends AController
             if (enable)
             {
                 LogTypeState types = PreferenceUtils.getLogTypePreference(surveyService.getApplicationContext());
+                // Start from true when there is something to log, and let any logger that fails to start turn it off
+                successful = types.geoPackage || types.csv || types.protobuf;
 
                 if (types.geoPackage)
                 {
-                    successful = cellularSurveyRecordLogger.enableLogging(true) &&
+                    successful &= cellularSurveyRecordLogger.enableLogging(true) &&
                             phoneStateRecordLogger.enableLogging(true);
                 }
                 if (types.csv)
                 {
-                    successful = phoneStateCsvLogger.enableLogging(true) &&
+                    successful &= phoneStateCsvLogger.enableLogging(true) &&
                             nrCsvLogger.enableLogging(true) &&
                             lteCsvLogger.enableLogging(true) &&
                             umtsCsvLogger.enableLogging(true) &&
                             cdmaCsvLogger.enableLogging(true) &&
                             gsmCsvLogger.enableLogging(true);
                 }
+                if (types.protobuf)
+                {
+                    successful &= protobufRecordLogger.enableLogging(true);
+                }
 
                 if (successful)
                 {
@@ -295,11 +309,12 @@ public class CellularController extends AController
                     umtsCsvLogger.enableLogging(false);
                     cdmaCsvLogger.enableLogging(false);
                     gsmCsvLogger.enableLogging(false);
+                    protobufRecordLogger.enableLogging(false);
                     toggleCellularConfig(false, null);
                 }
             } else
             {
-                // If we are disabling logging, then we need to disable both geoPackage and CSV just
+                // If we are disabling logging, then we need to disable all the log file types just
                 // in case the user changed the setting after they started logging.
                 cellularSurveyRecordLogger.enableLogging(false);
                 phoneStateRecordLogger.enableLogging(false);
@@ -309,6 +324,7 @@ public class CellularController extends AController
                 umtsCsvLogger.enableLogging(false);
                 cdmaCsvLogger.enableLogging(false);
                 gsmCsvLogger.enableLogging(false);
+                protobufRecordLogger.enableLogging(false);
                 toggleCellularConfig(false, null);
                 successful = true;
             }
@@ -753,6 +769,8 @@ public class CellularController extends AController
                 }
             }
 
+            scanTickMonitor.reset();
+            scanTickMonitor.onTickScheduled(1_000, SystemClock.uptimeMillis());
             serviceHandler.postDelayed(new Runnable()
             {
                 @Override
@@ -766,6 +784,8 @@ public class CellularController extends AController
                             return;
                         }
 
+                        scanTickMonitor.onTick(SystemClock.uptimeMillis());
+
                         // Need to synchronize because we use resources that are initialized on SIM
                         // changes such as telephonyManagerList
                         synchronized (activeSubscriptionInfoListLock)
@@ -814,6 +834,7 @@ public class CellularController extends AController
                             }
                         }
 
+                        scanTickMonitor.onTickScheduled(cellularScanRateMs, SystemClock.uptimeMillis());
                         serviceHandler.postDelayed(this, cellularScanRateMs);
                     } catch (SecurityException e)
                     {
@@ -890,6 +911,10 @@ public class CellularController extends AController
                     surveyService.registerCellularSurveyRecordListener(cdmaCsvLogger);
                     surveyService.registerCellularSurveyRecordListener(gsmCsvLogger);
                 }
+                if (types.protobuf)
+                {
+                    surveyService.registerCellularSurveyRecordListener(protobufRecordLogger);
+                }
             } else
             {
                 throw new IllegalArgumentException("LogTypeState cannot be null when enabling cellular logging");
@@ -903,6 +928,7 @@ public class CellularController extends AController
             surveyService.unregisterCellularSurveyRecordListener(umtsCsvLogger);
             surveyService.unregisterCellularSurveyRecordListener(cdmaCsvLogger);
             surveyService.unregisterCellularSurveyRecordListener(gsmCsvLogger);
+            surveyService.unregisterCellularSurveyRecordListener(protobufRecordLogger);
             surveyService.unregisterDeviceStatusListener(phoneStateRecordLogger);
         }
     }
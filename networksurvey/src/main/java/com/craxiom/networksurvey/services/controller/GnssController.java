@@ -10,6 +10,7 @@ import android.location.LocationManager;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 
 import androidx.core.content.ContextCompat;
 
@@ -19,6 +20,7 @@ import com.craxiom.networksurvey.constants.NetworkSurveyConstants;
 import com.craxiom.networksurvey.listeners.IGnssFailureListener;
 import com.craxiom.networksurvey.logging.GnssCsvLogger;
 import com.craxiom.networksurvey.logging.GnssRecordLogger;
+import com.craxiom.networksurvey.logging.ProtobufRecordLogger;
 import com.craxiom.networksurvey.model.LogTypeState;
 import com.craxiom.networksurvey.services.NetworkSurveyService;
 import com.craxiom.networksurvey.services.SurveyRecordProcessor;
@@ -54,6 +56,7 @@ public class GnssController extends AController
     private final AtomicBoolean gnssLoggingEnabled = new AtomicBoolean(false);
     private final AtomicBoolean gnssStarted = new AtomicBoolean(false);
     private final AtomicInteger gnssScanningTaskId = new AtomicInteger();
+    private final ScanTickMonitor scanTickMonitor = new ScanTickMonitor("GNSS");
     private final AtomicInteger batteryOptimizedMeasurementCount = new AtomicInteger(0);
 
     private final ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(1);
@@ -69,6 +72,7 @@ public class GnssController extends AController
     private IGnssFailureListener gnssFailureListener;
     private final GnssRecordLogger gnssRecordLogger;
     private final GnssCsvLogger gnssCsvLogger;
+    private final ProtobufRecordLogger protobufRecordLogger;
     private long firstGpsAcqTime = Long.MIN_VALUE;
     private boolean gnssRawSupportKnown = false;
     private boolean hasGnssRawFailureNagLaunched = false;
@@ -81,8 +85,9 @@ public class GnssController extends AController
         this.serviceHandler = serviceHandler;
         this.surveyRecordProcessor = surveyRecordProcessor;
 
-        gnssRecordLogger = new GnssRecordLogger(surveyService, serviceLooper);
+        gnssRecordLogger = new GnssRecordLogger(surveyService);
         gnssCsvLogger = new GnssCsvLogger(surveyService, serviceLooper);
+        protobufRecordLogger = new ProtobufRecordLogger(surveyService, NetworkSurveyConstants.GNSS_FILE_NAME_PREFIX);
     }
 
     @Override
@@ -94,6 +99,7 @@ public class GnssController extends AController
         {
             gnssRecordLogger.onDestroy();
             gnssCsvLogger.onDestroy();
+            protobufRecordLogger.onDestroy();
             super.onDestroy();
         }
     }
@@ -117,6 +123,7 @@ public class GnssController extends AController
     {
         gnssRecordLogger.onSharedPreferenceChanged();
         gnssCsvLogger.onSharedPreferenceChanged();
+        protobufRecordLogger.onSharedPreferenceChanged();
     }
 
     /**
@@ -127,6 +134,7 @@ public class GnssController extends AController
     {
         gnssRecordLogger.onMdmPreferenceChanged();
         gnssCsvLogger.onMdmPreferenceChanged();
+        protobufRecordLogger.onMdmPreferenceChanged();
     }
 
     public void onLogFileTypePreferenceChanged()
@@ -184,13 +192,19 @@ public class GnssController extends AController
             if (enable)
             {
                 LogTypeState types = PreferenceUtils.getLogTypePreference(surveyService.getApplicationContext());
+                // Start from true when there is something to log, and let any logger that fails to start turn it off
+                successful = types.geoPackage || types.csv || types.protobuf;
                 if (types.geoPackage)
                 {
-                    successful = gnssRecordLogger.enableLogging(true);
+                    successful &= gnssRecordLogger.enableLogging(true);
                 }
                 if (types.csv)
                 {
-                    successful = gnssCsvLogger.enableLogging(true);
+                    successful &= gnssCsvLogger.enableLogging(true);
+                }
+                if (types.protobuf)
+                {
+                    successful &= protobufRecordLogger.enableLogging(true);
                 }
 
                 if (successful)
@@ -202,14 +216,16 @@ public class GnssController extends AController
                     // disable all of them and set local config to false
                     gnssRecordLogger.enableLogging(false);
                     gnssCsvLogger.enableLogging(false);
+                    protobufRecordLogger.enableLogging(false);
                     toggleGnssConfig(false, null);
                 }
             } else
             {
-                // If we are disabling logging, then we need to disable both geoPackage and CSV just
+                // If we are disabling logging, then we need to disable all the log file types just
                 // in case the user changed the setting after they started logging.
                 gnssRecordLogger.enableLogging(false);
                 gnssCsvLogger.enableLogging(false);
+                protobufRecordLogger.enableLogging(false);
                 toggleGnssConfig(false, null);
                 successful = true;
             }
@@ -304,6 +320,8 @@ public class GnssController extends AController
                     Timber.w("The location manager was null when registering the GNSS listeners");
                 }
 
+                scanTickMonitor.reset();
+                scanTickMonitor.onTickScheduled(getGnssTimeoutIntervalMs(gnssScanRateMs), SystemClock.uptimeMillis());
                 serviceHandler.postDelayed(new Runnable()
                 {
                     @Override
@@ -317,8 +335,11 @@ public class GnssController extends AController
                                 return;
                             }
 
+                            scanTickMonitor.onTick(SystemClock.uptimeMillis());
+
                             surveyRecordProcessor.checkForMissedGnssMeasurement();
 
+                            scanTickMonitor.onTickScheduled(getGnssTimeoutIntervalMs(gnssScanRateMs), SystemClock.uptimeMillis());
                             serviceHandler.postDelayed(this, getGnssTimeoutIntervalMs(gnssScanRateMs));
                         } catch (SecurityException e)
                         {
@@ -395,6 +416,10 @@ public class GnssController extends AController
                 {
                     surveyService.registerGnssSurveyRecordListener(gnssCsvLogger);
                 }
+                if (types.protobuf)
+                {
+                    surveyService.registerGnssSurveyRecordListener(protobufRecordLogger);
+                }
             } else
             {
                 throw new IllegalArgumentException("LogTypeState cannot be null when enabling GNSS logging");
@@ -403,6 +428,7 @@ public class GnssController extends AController
         {
             surveyService.unregisterGnssSurveyRecordListener(gnssRecordLogger);
             surveyService.unregisterGnssSurveyRecordListener(gnssCsvLogger);
+            surveyService.unregisterGnssSurveyRecordListener(protobufRecordLogger);
         }
     }
 
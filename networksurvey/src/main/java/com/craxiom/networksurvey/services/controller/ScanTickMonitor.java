@@ -0,0 +1,101 @@
+package com.craxiom.networksurvey.services.controller;
+
+import timber.log.Timber;
+
+/**
+ * Measures how late each tick of a scan loop runs compared to when it was scheduled.
+ * <p>
+ * The scan loops are scheduled on the service's looper, so anything else that runs on that looper (or a busy device)
+ * delays the scans. This keeps track of the lateness of the ticks and logs a summary every
+ * {@link #REPORT_INTERVAL_MS} so that the scan jitter can be monitored.
+ *
+ * @since 1.31.0
+ */
+final class ScanTickMonitor
+{
+    static final long REPORT_INTERVAL_MS = 60_000;
+
+    private final String name;
+
+    private long expectedTickMs = -1;
+    private long windowStartMs = -1;
+    private int tickCount;
+    private long totalLatenessMs;
+    private long maxLatenessMs;
+
+    /**
+     * @param name The name of the scan loop, used in the log messages.
+     */
+    ScanTickMonitor(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Called when the next tick is posted.
+     *
+     * @param delayMs The delay that the tick was posted with.
+     * @param nowMs   The current time, using the same clock as the handler (the uptime clock).
+     */
+    synchronized void onTickScheduled(long delayMs, long nowMs)
+    {
+        expectedTickMs = nowMs + delayMs;
+    }
+
+    /**
+     * Called at the start of each tick.
+     *
+     * @param nowMs The current time, using the same clock as {@link #onTickScheduled(long, long)}.
+     */
+    synchronized void onTick(long nowMs)
+    {
+        if (expectedTickMs < 0) return;
+
+        final long latenessMs = Math.max(0, nowMs - expectedTickMs);
+        expectedTickMs = -1;
+
+        if (windowStartMs < 0) windowStartMs = nowMs;
+        tickCount++;
+        totalLatenessMs += latenessMs;
+        maxLatenessMs = Math.max(maxLatenessMs, latenessMs);
+
+        if (nowMs - windowStartMs >= REPORT_INTERVAL_MS)
+        {
+            Timber.i("%s scan ticks over the last %ds: count=%d, mean lateness=%dms, max lateness=%dms", name,
+                    (nowMs - windowStartMs) / 1_000, tickCount, getMeanLatenessMs(), maxLatenessMs);
+            resetWindow(nowMs);
+        }
+    }
+
+    /**
+     * Forgets the scheduled tick and the current window, for when the scan loop is restarted.
+     */
+    synchronized void reset()
+    {
+        expectedTickMs = -1;
+        resetWindow(-1);
+    }
+
+    synchronized int getTickCount()
+    {
+        return tickCount;
+    }
+
+    synchronized long getMeanLatenessMs()
+    {
+        return tickCount == 0 ? 0 : totalLatenessMs / tickCount;
+    }
+
+    synchronized long getMaxLatenessMs()
+    {
+        return maxLatenessMs;
+    }
+
+    private void resetWindow(long windowStartMs)
+    {
+        this.windowStartMs = windowStartMs;
+        tickCount = 0;
+        totalLatenessMs = 0;
+        maxLatenessMs = 0;
+    }
+}
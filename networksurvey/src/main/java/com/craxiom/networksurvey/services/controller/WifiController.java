@@ -11,6 +11,7 @@ import android.net.wifi.WifiManager;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.widget.Toast;
 
@@ -18,6 +19,7 @@ import androidx.core.app.ActivityCompat;
 
 import com.craxiom.networksurvey.R;
 import com.craxiom.networksurvey.constants.NetworkSurveyConstants;
+import com.craxiom.networksurvey.logging.ProtobufRecordLogger;
 import com.craxiom.networksurvey.logging.WifiCsvLogger;
 import com.craxiom.networksurvey.logging.WifiSurveyRecordLogger;
 import com.craxiom.networksurvey.model.LogTypeState;
@@ -43,6 +45,7 @@ public class WifiController extends AController
     private final AtomicBoolean wifiScanningActive = new AtomicBoolean(false);
     private final AtomicBoolean wifiLoggingEnabled = new AtomicBoolean(false);
     private final AtomicInteger wifiScanningTaskId = new AtomicInteger();
+    private final ScanTickMonitor scanTickMonitor = new ScanTickMonitor("Wi-Fi");
 
     private final Handler serviceHandler;
     private final SurveyRecordProcessor surveyRecordProcessor;
@@ -51,6 +54,7 @@ public class WifiController extends AController
     private volatile int wifiScanRateMs;
     private final WifiSurveyRecordLogger wifiSurveyRecordLogger;
     private final WifiCsvLogger wifiCsvLogger;
+    private final ProtobufRecordLogger protobufRecordLogger;
     private BroadcastReceiver wifiScanReceiver;
 
     public WifiController(NetworkSurveyService surveyService, ExecutorService executorService,
@@ -63,8 +67,9 @@ public class WifiController extends AController
         this.surveyRecordProcessor = surveyRecordProcessor;
         this.uiThreadHandler = uiThreadHandler;
 
-        wifiSurveyRecordLogger = new WifiSurveyRecordLogger(surveyService, serviceLooper);
+        wifiSurveyRecordLogger = new WifiSurveyRecordLogger(surveyService);
         wifiCsvLogger = new WifiCsvLogger(surveyService, serviceLooper);
+        protobufRecordLogger = new ProtobufRecordLogger(surveyService, NetworkSurveyConstants.WIFI_FILE_NAME_PREFIX);
     }
 
     @Override
@@ -76,6 +81,7 @@ public class WifiController extends AController
         {
             wifiSurveyRecordLogger.onDestroy();
             wifiCsvLogger.onDestroy();
+            protobufRecordLogger.onDestroy();
             super.onDestroy();
         }
     }
@@ -99,6 +105,7 @@ public class WifiController extends AController
     {
         wifiSurveyRecordLogger.onSharedPreferenceChanged();
         wifiCsvLogger.onSharedPreferenceChanged();
+        protobufRecordLogger.onSharedPreferenceChanged();
     }
 
     /**
@@ -109,6 +116,7 @@ public class WifiController extends AController
     {
         wifiSurveyRecordLogger.onMdmPreferenceChanged();
         wifiCsvLogger.onMdmPreferenceChanged();
+        protobufRecordLogger.onMdmPreferenceChanged();
     }
 
     public void onLogFileTypePreferenceChanged()
@@ -170,13 +178,19 @@ public class WifiController extends AController
                 if (!wifiEnabled) return null;
 
                 LogTypeState types = PreferenceUtils.getLogTypePreference(surveyService.getApplicationContext());
+                // Start from true when there is something to log, and let any logger that fails to start turn it off
+                successful = types.geoPackage || types.csv || types.protobuf;
                 if (types.geoPackage)
                 {
-                    successful = wifiSurveyRecordLogger.enableLogging(true);
+                    successful &= wifiSurveyRecordLogger.enableLogging(true);
                 }
                 if (types.csv)
                 {
-                    successful = wifiCsvLogger.enableLogging(true);
+                    successful &= wifiCsvLogger.enableLogging(true);
+                }
+                if (types.protobuf)
+                {
+                    successful &= protobufRecordLogger.enableLogging(true);
                 }
 
                 if (successful)
@@ -188,14 +202,16 @@ public class WifiController extends AController
                     // disable all of them and set local config to false
                     wifiSurveyRecordLogger.enableLogging(false);
                     wifiCsvLogger.enableLogging(false);
+                    protobufRecordLogger.enableLogging(false);
                     toggleWifiConfig(false, null);
                 }
             } else
             {
-                // If we are disabling logging, then we need to disable both geoPackage and CSV just
+                // If we are disabling logging, then we need to disable all the log file types just
                 // in case the user changed the setting after they started logging.
                 wifiSurveyRecordLogger.enableLogging(false);
                 wifiCsvLogger.enableLogging(false);
+                protobufRecordLogger.enableLogging(false);
                 toggleWifiConfig(false, null);
                 successful = true;
             }
@@ -293,6 +309,8 @@ public class WifiController extends AController
 
             final int handlerTaskId = wifiScanningTaskId.incrementAndGet();
 
+            scanTickMonitor.reset();
+            scanTickMonitor.onTickScheduled(2_000, SystemClock.uptimeMillis());
             serviceHandler.postDelayed(new Runnable()
             {
                 @Override
@@ -306,10 +324,13 @@ public class WifiController extends AController
                             return;
                         }
 
+                        scanTickMonitor.onTick(SystemClock.uptimeMillis());
+
                         boolean success = wifiManager.startScan();
 
                         if (!success) Timber.e("Kicking off a Wi-Fi scan failed");
 
+                        scanTickMonitor.onTickScheduled(wifiScanRateMs, SystemClock.uptimeMillis());
                         serviceHandler.postDelayed(this, wifiScanRateMs);
                     } catch (Exception e)
                     {
@@ -375,6 +396,10 @@ public class WifiController extends AController
                 {
                     surveyService.registerWifiSurveyRecordListener(wifiCsvLogger);
                 }
+                if (types.protobuf)
+                {
+                    surveyService.registerWifiSurveyRecordListener(protobufRecordLogger);
+                }
             } else
             {
                 throw new IllegalArgumentException("LogTypeState cannot be null when enabling wifi logging");
@@ -383,6 +408,7 @@ public class WifiController extends AController
         {
             surveyService.unregisterWifiSurveyRecordListener(wifiSurveyRecordLogger);
             surveyService.unregisterWifiSurveyRecordListener(wifiCsvLogger);
+            surveyService.unregisterWifiSurveyRecordListener(protobufRecordLogger);
         }
     }
 
@@ -0,0 +1,128 @@
+package com.craxiom.networksurvey.services.grpc;
+
+import com.craxiom.networksurvey.model.SurveyRecordEnvelope;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+
+/**
+ * A gRPC marshaller that writes the wire bytes cached in a {@link SurveyRecordEnvelope}, so a record that was already
+ * serialized (for example to spool it, or by another listener) is not serialized again when it is sent.
+ * <p>
+ * The bytes are the same as what the generated protobuf marshaller sends, so the server cannot tell the difference.
+ *
+ * @param <T> The type of message that is sent.
+ * @since 1.31.0
+ */
+final class EnvelopeMarshaller<T extends Message> implements MethodDescriptor.Marshaller<SurveyRecordEnvelope<T>>
+{
+    private final MethodDescriptor.Marshaller<T> messageMarshaller;
+
+    /**
+     * @param messageMarshaller The generated marshaller for the message, which is used to parse any incoming messages.
+     */
+    EnvelopeMarshaller(MethodDescriptor.Marshaller<T> messageMarshaller)
+    {
+        this.messageMarshaller = messageMarshaller;
+    }
+
+    /**
+     * Creates a copy of a generated method descriptor that sends envelopes instead of messages.
+     *
+     * @param method The method descriptor from the generated gRPC class (e.g. {@code getStreamLteSurveyMethod()}).
+     * @return The method descriptor that uses this marshaller for the requests.
+     */
+    static <T extends Message, R> MethodDescriptor<SurveyRecordEnvelope<T>, R> forMethod(MethodDescriptor<T, R> method)
+    {
+        return method.toBuilder(new EnvelopeMarshaller<>(method.getRequestMarshaller()), method.getResponseMarshaller())
+                .build();
+    }
+
+    @Override
+    public InputStream stream(SurveyRecordEnvelope<T> value)
+    {
+        return new WireBytesInputStream(value);
+    }
+
+    @Override
+    public SurveyRecordEnvelope<T> parse(InputStream stream)
+    {
+        return new SurveyRecordEnvelope<>(messageMarshaller.parse(stream));
+    }
+
+    /**
+     * Reports its length and can drain straight to gRPC's output buffer, which lets gRPC frame the message without
+     * first copying it into a buffer of its own.
+     */
+    private static final class WireBytesInputStream extends InputStream implements Drainable, KnownLength
+    {
+        private final SurveyRecordEnvelope<?> envelope;
+        private final int size;
+        private ByteString bytes;
+        private int position;
+
+        WireBytesInputStream(SurveyRecordEnvelope<?> envelope)
+        {
+            this.envelope = envelope;
+            size = envelope.getSerializedSize();
+        }
+
+        @Override
+        public int drainTo(OutputStream target) throws IOException
+        {
+            final int count = size - position;
+            if (position == 0)
+            {
+                envelope.writeTo(target);
+            } else
+            {
+                getBytes().substring(position).writeTo(target);
+            }
+            position = size;
+            return count;
+        }
+
+        @Override
+        public int read()
+        {
+            if (position >= size) return -1;
+
+            return getBytes().byteAt(position++) & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length)
+        {
+            if (length == 0) return 0;
+
+            final int count = Math.min(length, size - position);
+            if (count <= 0) return -1;
+
+            getBytes().substring(position, position + count).copyTo(buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available()
+        {
+            return size - position;
+        }
+
+        /**
+         * Only needed if the transport reads the stream rather than draining it.
+         */
+        private ByteString getBytes()
+        {
+            if (bytes == null) bytes = envelope.getWireBytes();
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package com.craxiom.networksurvey.services.grpc;
+
+import com.craxiom.networksurvey.model.SurveyRecordEnvelope;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import timber.log.Timber;
+
+/**
+ * Holds the messages for one gRPC stream type until they can be sent to the server. The queue outlives any single
+ * stream, so messages that have not been sent yet are sent on the next stream once a reconnection succeeds.
+ * <p>
+ * The stream that is currently attached is woken up whenever a message is added, so there is no need to poll.
+ * <p>
+ * Only a limited number of messages are kept in memory. When a spool directory is provided, any messages past that
+ * limit are written to a {@link RecordSpool} and read back in order once the messages ahead of them have been sent. The
+ * spool survives a process restart, so messages queued while the server is unreachable are not lost. Without a spool
+ * directory, the oldest message is dropped once the limit is reached.
+ * <p>
+ * The messages are held in {@link SurveyRecordEnvelope}s so that the wire bytes that are spooled and sent to the
+ * server are shared with any other listener that serializes the same record.
+ *
+ * @param <T> The type of message that is queued.
+ * @since 1.31.0
+ */
+public class GrpcRecordQueue<T extends Message>
+{
+    public static final int DEFAULT_MEMORY_CAPACITY = 1_024;
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 1024 * 1024;
+    public static final long DEFAULT_MAX_SPOOL_BYTES = 32 * 1024 * 1024;
+
+    /**
+     * The max number of messages to move from the spool to memory at once.
+     */
+    private static final int SPOOL_READ_BATCH_SIZE = 256;
+
+    private final String name;
+    private final int memoryCapacity;
+    private final Deque<QueuedMessage<T>> memoryQueue = new ArrayDeque<>();
+    private final RecordSpool<T> spool;
+    private long droppedCount;
+    private final AtomicReference<Runnable> onMessageAdded = new AtomicReference<>();
+
+    /**
+     * Creates a memory only queue.
+     *
+     * @param name The name of the stream type, used for logging and metrics.
+     */
+    public GrpcRecordQueue(String name)
+    {
+        this(name, DEFAULT_MEMORY_CAPACITY, null, null, DEFAULT_MAX_SEGMENT_BYTES, DEFAULT_MAX_SPOOL_BYTES);
+    }
+
+    /**
+     * Creates a queue that spools to disk once the in memory limit is reached.
+     *
+     * @param name           The name of the stream type, used for logging, metrics, and the spool directory name.
+     * @param parser         The parser for reading the messages back from the spool.
+     * @param spoolDirectory The parent directory for the spool. Each queue uses its own subdirectory.
+     */
+    public GrpcRecordQueue(String name, Parser<T> parser, File spoolDirectory)
+    {
+        this(name, DEFAULT_MEMORY_CAPACITY, parser, spoolDirectory, DEFAULT_MAX_SEGMENT_BYTES, DEFAULT_MAX_SPOOL_BYTES);
+    }
+
+    GrpcRecordQueue(String name, int memoryCapacity, Parser<T> parser, File spoolDirectory, long maxSegmentBytes,
+                    long maxSpoolBytes)
+    {
+        this.name = name;
+        this.memoryCapacity = memoryCapacity;
+
+        RecordSpool<T> recordSpool = null;
+        if (spoolDirectory != null)
+        {
+            try
+            {
+                recordSpool = new RecordSpool<>(new File(spoolDirectory, name), parser, maxSegmentBytes, maxSpoolBytes);
+            } catch (IOException e)
+            {
+                Timber.e(e, "Could not create the gRPC spool for %s, only keeping messages in memory", name);
+            }
+        }
+        spool = recordSpool;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Adds the message to the end of the queue, and wakes up the attached stream (if any).
+     *
+     * @param message The message to send.
+     */
+    public void add(T message)
+    {
+        add(new SurveyRecordEnvelope<>(message));
+    }
+
+    /**
+     * Adds the message to the end of the queue, and wakes up the attached stream (if any).
+     *
+     * @param message The message to send, along with its cached wire bytes.
+     * @since 1.31.0
+     */
+    public void add(SurveyRecordEnvelope<T> message)
+    {
+        synchronized (this)
+        {
+            enqueue(message, System.nanoTime());
+        }
+
+        notifyMessageAdded();
+    }
+
+    /**
+     * Adds all the messages to the end of the queue, and wakes up the attached stream once.
+     *
+     * @param messages The messages to send.
+     */
+    public void addAll(Collection<? extends T> messages)
+    {
+        if (messages.isEmpty()) return;
+
+        synchronized (this)
+        {
+            final long enqueueTimeNanos = System.nanoTime();
+            for (T message : messages)
+            {
+                enqueue(new SurveyRecordEnvelope<>(message), enqueueTimeNanos);
+            }
+        }
+
+        notifyMessageAdded();
+    }
+
+    /**
+     * Adds all the messages to the end of the queue, and wakes up the attached stream once.
+     *
+     * @param messages The messages to send, along with their cached wire bytes.
+     * @since 1.31.0
+     */
+    public void addAllEnvelopes(Collection<SurveyRecordEnvelope<T>> messages)
+    {
+        if (messages.isEmpty()) return;
+
+        synchronized (this)
+        {
+            final long enqueueTimeNanos = System.nanoTime();
+            for (SurveyRecordEnvelope<T> message : messages)
+            {
+                enqueue(message, enqueueTimeNanos);
+            }
+        }
+
+        notifyMessageAdded();
+    }
+
+    /**
+     * @return The message at the head of the queue, or null if the queue is empty.
+     */
+    synchronized QueuedMessage<T> poll()
+    {
+        if (memoryQueue.isEmpty() && spool != null && !spool.isEmpty()) readFromSpool();
+
+        return memoryQueue.poll();
+    }
+
+    /**
+     * Returns the message at the head of the queue without removing it. Call {@link #remove(QueuedMessage)} once the
+     * message has been sent, so that a message that fails to send stays at the head of the queue.
+     *
+     * @return The message at the head of the queue, or null if the queue is empty.
+     */
+    synchronized QueuedMessage<T> peek()
+    {
+        if (memoryQueue.isEmpty() && spool != null && !spool.isEmpty()) readFromSpool();
+
+        return memoryQueue.peek();
+    }
+
+    /**
+     * Removes the provided message if it is still at the head of the queue. It might not be if it was dropped to make
+     * room for newer messages while it was being sent.
+     *
+     * @param message The message returned from {@link #peek()}.
+     */
+    synchronized void remove(QueuedMessage<T> message)
+    {
+        if (memoryQueue.peek() == message) memoryQueue.poll();
+    }
+
+    public synchronized boolean isEmpty()
+    {
+        return memoryQueue.isEmpty() && (spool == null || spool.isEmpty());
+    }
+
+    /**
+     * @return The number of messages waiting to be sent, including the ones in the spool.
+     */
+    public synchronized int size()
+    {
+        return memoryQueue.size() + getSpooledCount();
+    }
+
+    /**
+     * @return The number of messages waiting to be sent that are in the spool on disk.
+     */
+    public synchronized int getSpooledCount()
+    {
+        return spool == null ? 0 : spool.size();
+    }
+
+    /**
+     * @return The size in bytes of the messages waiting to be sent that are in the spool on disk.
+     */
+    public synchronized long getSpooledBytes()
+    {
+        return spool == null ? 0 : spool.getByteCount();
+    }
+
+    /**
+     * @return The number of messages that were thrown away because the queue (or spool) was full, or could not be
+     * written to or read from the spool.
+     */
+    public synchronized long getDroppedCount()
+    {
+        return droppedCount + (spool == null ? 0 : spool.getDroppedCount());
+    }
+
+    /**
+     * @return How long (in millis) the oldest message has been waiting to be sent, or 0 if the queue is empty.
+     */
+    public synchronized long getOldestMessageAgeMillis()
+    {
+        final QueuedMessage<T> head = memoryQueue.peek();
+        if (head != null) return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - head.enqueueTimeNanos);
+
+        if (spool != null && !spool.isEmpty())
+        {
+            return Math.max(0, System.currentTimeMillis() - spool.getOldestSegmentTimeMillis());
+        }
+
+        return 0;
+    }
+
+    /**
+     * Throws away all the messages waiting to be sent, including the ones in the spool.
+     */
+    public synchronized void clear()
+    {
+        memoryQueue.clear();
+        if (spool != null) spool.clear();
+    }
+
+    /**
+     * Moves any messages still in memory to the front of the spool and closes the spool files. The spooled messages
+     * are kept on disk and loaded the next time a queue is created for the same spool directory. Without a spool, the
+     * messages still in memory are lost.
+     */
+    public synchronized void close()
+    {
+        if (spool == null) return;
+
+        if (!memoryQueue.isEmpty())
+        {
+            final List<SurveyRecordEnvelope<T>> unsent = new ArrayList<>(memoryQueue.size());
+            for (QueuedMessage<T> queuedMessage : memoryQueue)
+            {
+                unsent.add(queuedMessage.envelope);
+            }
+
+            try
+            {
+                spool.prepend(unsent);
+            } catch (IOException e)
+            {
+                Timber.e(e, "Could not spool the %d unsent %s gRPC messages", unsent.size(), name);
+                droppedCount += unsent.size();
+            }
+            memoryQueue.clear();
+        }
+
+        spool.close();
+    }
+
+    /**
+     * Sets the callback that is run every time a message is added. Only one stream is attached at a time, so this
+     * replaces the callback of any stream that was attached before.
+     *
+     * @param onMessageAdded The callback to run.
+     */
+    void setOnMessageAdded(Runnable onMessageAdded)
+    {
+        this.onMessageAdded.set(onMessageAdded);
+    }
+
+    /**
+     * Removes the callback, but only if it is still the one that is set. A stream that is closing uses this to detach
+     * itself without removing the callback of a newer stream that was already attached to this queue.
+     *
+     * @param onMessageAdded The callback that was passed to {@link #setOnMessageAdded(Runnable)}.
+     */
+    void clearOnMessageAdded(Runnable onMessageAdded)
+    {
+        this.onMessageAdded.compareAndSet(onMessageAdded, null);
+    }
+
+    /**
+     * Must be called while holding the lock on this queue.
+     */
+    private void enqueue(SurveyRecordEnvelope<T> message, long enqueueTimeNanos)
+    {
+        // Once anything is in the spool, everything after it has to go to the spool too so the order is kept
+        if (spool != null && (!spool.isEmpty() || memoryQueue.size() >= memoryCapacity))
+        {
+            try
+            {
+                spool.append(message);
+            } catch (IOException e)
+            {
+                Timber.e(e, "Could not write a message to the %s gRPC spool", name);
+                droppedCount++;
+            }
+            return;
+        }
+
+        if (memoryQueue.size() >= memoryCapacity)
+        {
+            memoryQueue.poll();
+            droppedCount++;
+        }
+
+        memoryQueue.add(new QueuedMessage<>(message, enqueueTimeNanos));
+    }
+
+    /**
+     * Moves the next batch of messages from the spool into memory. Must be called while holding the lock on this queue.
+     */
+    private void readFromSpool()
+    {
+        final long nowNanos = System.nanoTime();
+        final long nowMillis = System.currentTimeMillis();
+        final int batchSize = Math.min(memoryCapacity, SPOOL_READ_BATCH_SIZE);
+
+        for (int i = 0; i < batchSize; i++)
+        {
+            final RecordSpool.SpooledMessage<T> spooled = spool.poll();
+            if (spooled == null) break;
+
+            // The spool only knows the wall clock time, so convert it to the nano time used for the latency metrics
+            final long ageNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, nowMillis - spooled.spooledTimeMillis));
+            memoryQueue.add(new QueuedMessage<>(spooled.message, nowNanos - ageNanos));
+        }
+    }
+
+    private void notifyMessageAdded()
+    {
+        final Runnable listener = onMessageAdded.get();
+        if (listener != null) listener.run();
+    }
+
+    /**
+     * A message along with the time it was added to the queue so that the latency to the wire can be measured.
+     */
+    static final class QueuedMessage<T extends Message>
+    {
+        final T message;
+        final SurveyRecordEnvelope<T> envelope;
+        final long enqueueTimeNanos;
+
+        QueuedMessage(SurveyRecordEnvelope<T> envelope, long enqueueTimeNanos)
+        {
+            this.message = envelope.getRecord();
+            this.envelope = envelope;
+            this.enqueueTimeNanos = enqueueTimeNanos;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.craxiom.networksurvey.services.grpc;
+
+import com.craxiom.networksurvey.model.SurveyRecordEnvelope;
+import com.google.protobuf.Message;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.MethodDescriptor;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ClientResponseObserver;
+import timber.log.Timber;
+
+/**
+ * Sends the messages from each {@link GrpcRecordQueue} to the remote server over client streaming RPCs.
+ * <p>
+ * Rather than dedicating a thread to each stream that polls its queue, all the streams share a small, fixed pool of
+ * threads. A stream is only scheduled to run when there is something to do: when a message is added to its queue, or
+ * when gRPC reports that the stream is ready for more messages. Messages are only written while
+ * {@link ClientCallStreamObserver#isReady()} is true, so a slow network or server results in the messages staying in
+ * the queue instead of being buffered without limit inside gRPC.
+ * <p>
+ * The time from when a message is added to the queue until it is handed to gRPC is tracked for each stream, and for
+ * all the streams combined.
+ * <p>
+ * The messages are sent using the wire bytes cached in each {@link SurveyRecordEnvelope} (see
+ * {@link EnvelopeMarshaller}) rather than having gRPC serialize each message again.
+ *
+ * @since 1.31.0
+ */
+public class GrpcStreamingEngine
+{
+    public static final int DEFAULT_THREAD_COUNT = 2;
+
+    /**
+     * The max number of messages to send in one go before giving the other streams a chance to run.
+     */
+    private static final int MAX_MESSAGES_PER_DRAIN = 128;
+
+    private final ExecutorService executorService;
+    private final LatencyTracker latencyTracker = new LatencyTracker();
+    private final Set<RecordStream<?, ?>> openStreams = new CopyOnWriteArraySet<>();
+
+    /**
+     * Listens for a stream to close because of the server or the network, as opposed to a call to
+     * {@link RecordStream#close()}.
+     */
+    public interface StreamClosedListener
+    {
+        /**
+         * @param stream The stream that closed.
+         * @param error  The error that caused the stream to close, or null if the server completed the stream.
+         */
+        void onStreamClosed(RecordStream<?, ?> stream, Throwable error);
+    }
+
+    public GrpcStreamingEngine(int threadCount)
+    {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        final ThreadFactory threadFactory = runnable -> {
+            final Thread thread = new Thread(runnable, "gRPC Stream " + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executorService = Executors.newFixedThreadPool(threadCount, threadFactory);
+    }
+
+    /**
+     * Opens a client streaming RPC and starts sending the messages from the provided queue.
+     *
+     * @param queue          The queue of messages to send. Any messages already in the queue are sent right away.
+     * @param channel        The channel to open the RPC on.
+     * @param method         The generated method descriptor for the RPC (e.g.
+     *                       {@code WirelessSurveyGrpc.getStreamLteSurveyMethod()}).
+     * @param closedListener Notified if the stream is closed by the server or the network.
+     * @param <T>            The type of message that is streamed to the server.
+     * @param <R>            The type of the reply from the server.
+     * @return The open stream.
+     */
+    public <T extends Message, R> RecordStream<T, R> openStream(GrpcRecordQueue<T> queue, Channel channel,
+                                                                MethodDescriptor<T, R> method,
+                                                                StreamClosedListener closedListener)
+    {
+        final RecordStream<T, R> stream = new RecordStream<>(queue, closedListener);
+        openStreams.add(stream);
+        ClientCalls.asyncClientStreamingCall(
+                channel.newCall(EnvelopeMarshaller.forMethod(method), CallOptions.DEFAULT), stream);
+        queue.setOnMessageAdded(stream.onMessageAdded);
+        stream.scheduleDrain();
+        return stream;
+    }
+
+    /**
+     * @return The enqueue to wire latency across all the streams.
+     */
+    public LatencyTracker getLatencyTracker()
+    {
+        return latencyTracker;
+    }
+
+    /**
+     * Closes any open streams and stops the worker threads. The engine cannot be used after this call.
+     */
+    public void shutdown()
+    {
+        for (RecordStream<?, ?> stream : openStreams)
+        {
+            stream.close();
+        }
+        executorService.shutdown();
+    }
+
+    /**
+     * A single client streaming RPC that is fed by a {@link GrpcRecordQueue}.
+     * <p>
+     * All the calls to the request observer happen inside {@link #drain()}, and only one drain can be scheduled at a
+     * time, so the request observer is never called from more than one thread at once.
+     *
+     * @param <T> The type of message that is streamed to the server.
+     * @param <R> The type of the reply from the server.
+     */
+    public final class RecordStream<T extends Message, R> implements ClientResponseObserver<SurveyRecordEnvelope<T>, R>
+    {
+        private final GrpcRecordQueue<T> queue;
+        private final StreamClosedListener closedListener;
+        private final LatencyTracker streamLatencyTracker = new LatencyTracker();
+        private final AtomicBoolean drainScheduled = new AtomicBoolean();
+        /**
+         * The callback this stream sets on the queue. Kept so that the stream can tell whether the queue's callback is
+         * still its own when it detaches.
+         */
+        private final Runnable onMessageAdded = this::scheduleDrain;
+
+        private volatile ClientCallStreamObserver<SurveyRecordEnvelope<T>> requestStream;
+        private volatile boolean closeRequested;
+        private volatile boolean finished;
+
+        private RecordStream(GrpcRecordQueue<T> queue, StreamClosedListener closedListener)
+        {
+            this.queue = queue;
+            this.closedListener = closedListener;
+        }
+
+        public String getName()
+        {
+            return queue.getName();
+        }
+
+        /**
+         * @return True if the stream has not been closed by either side.
+         */
+        public boolean isOpen()
+        {
+            return !finished && !closeRequested;
+        }
+
+        /**
+         * @return True if {@link #close()} was called on this stream.
+         */
+        public boolean isClosedLocally()
+        {
+            return closeRequested;
+        }
+
+        /**
+         * @return The enqueue to wire latency for this stream.
+         */
+        public LatencyTracker getLatencyTracker()
+        {
+            return streamLatencyTracker;
+        }
+
+        /**
+         * Half closes the stream. Any messages that have not been sent yet are left in the queue so they can be sent on
+         * the next stream.
+         */
+        public void close()
+        {
+            closeRequested = true;
+            scheduleDrain();
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<SurveyRecordEnvelope<T>> requestStream)
+        {
+            this.requestStream = requestStream;
+            requestStream.setOnReadyHandler(this::scheduleDrain);
+        }
+
+        @Override
+        public void onNext(R value)
+        {
+        }
+
+        @Override
+        public void onError(Throwable t)
+        {
+            Timber.e(t, "An error occurred in the %s gRPC stream", getName());
+            onFinished(t);
+        }
+
+        @Override
+        public void onCompleted()
+        {
+            Timber.i("Completed the %s gRPC stream", getName());
+            onFinished(null);
+        }
+
+        private void onFinished(Throwable error)
+        {
+            finished = true;
+            detach();
+
+            if (!closeRequested && closedListener != null)
+            {
+                try
+                {
+                    closedListener.onStreamClosed(this, error);
+                } catch (Exception e)
+                {
+                    Timber.e(e, "Unable to notify the listener that the %s gRPC stream closed", getName());
+                }
+            }
+        }
+
+        private void detach()
+        {
+            openStreams.remove(this);
+            // A new stream might have been attached to the queue before this one finished closing
+            queue.clearOnMessageAdded(onMessageAdded);
+        }
+
+        private void scheduleDrain()
+        {
+            if (finished) return;
+
+            if (drainScheduled.compareAndSet(false, true))
+            {
+                try
+                {
+                    executorService.execute(this::drain);
+                } catch (RejectedExecutionException e)
+                {
+                    drainScheduled.set(false);
+                    Timber.w("Could not schedule the %s gRPC stream because the engine is shut down", getName());
+                }
+            }
+        }
+
+        private void drain()
+        {
+            final ClientCallStreamObserver<SurveyRecordEnvelope<T>> observer = requestStream;
+            try
+            {
+                if (finished || observer == null) return;
+
+                if (closeRequested)
+                {
+                    finished = true;
+                    detach();
+                    observer.onCompleted();
+                    return;
+                }
+
+                int sent = 0;
+                while (sent < MAX_MESSAGES_PER_DRAIN && observer.isReady())
+                {
+                    // Only take the message off the queue once it has been handed to gRPC, so that it is sent on
+                    // the next stream if this one fails
+                    final GrpcRecordQueue.QueuedMessage<T> next = queue.peek();
+                    if (next == null) break;
+
+                    observer.onNext(next.envelope);
+                    queue.remove(next);
+
+                    final long latencyNanos = System.nanoTime() - next.enqueueTimeNanos;
+                    streamLatencyTracker.record(latencyNanos);
+                    latencyTracker.record(latencyNanos);
+                    sent++;
+                }
+            } catch (RuntimeException e)
+            {
+                Timber.e(e, "Could not send a message on the %s gRPC stream", getName());
+                finished = true;
+                detach();
+                observer.onError(e);
+                return;
+            } finally
+            {
+                drainScheduled.set(false);
+            }
+
+            // A message could have been added, or the stream could have become ready, after the loop above stopped
+            if (closeRequested || (!queue.isEmpty() && observer.isReady())) scheduleDrain();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.craxiom.networksurvey.services.grpc;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent latency samples so that percentiles (e.g. the median and p99) can be reported.
+ * <p>
+ * Only a fixed number of samples are kept, so the percentiles reflect recent behavior and the memory use is bounded.
+ *
+ * @since 1.31.0
+ */
+public class LatencyTracker
+{
+    static final int DEFAULT_SAMPLE_CAPACITY = 2_048;
+
+    private final long[] samples;
+    private int nextIndex;
+    private int sampleCount;
+    private long totalCount;
+
+    public LatencyTracker()
+    {
+        this(DEFAULT_SAMPLE_CAPACITY);
+    }
+
+    LatencyTracker(int sampleCapacity)
+    {
+        samples = new long[sampleCapacity];
+    }
+
+    /**
+     * @param latencyNanos The latency of a single message, in nanoseconds.
+     */
+    public synchronized void record(long latencyNanos)
+    {
+        samples[nextIndex] = latencyNanos;
+        nextIndex = (nextIndex + 1) % samples.length;
+        if (sampleCount < samples.length) sampleCount++;
+        totalCount++;
+    }
+
+    /**
+     * @return The total number of samples that have been recorded, including the ones that are no longer kept.
+     */
+    public synchronized long getCount()
+    {
+        return totalCount;
+    }
+
+    /**
+     * @return The median of the recent samples in nanoseconds, or 0 if there are no samples.
+     */
+    public long getMedianNanos()
+    {
+        return getPercentileNanos(50);
+    }
+
+    /**
+     * @return The 99th percentile of the recent samples in nanoseconds, or 0 if there are no samples.
+     */
+    public long getP99Nanos()
+    {
+        return getPercentileNanos(99);
+    }
+
+    /**
+     * Calculates the percentile using the nearest-rank method.
+     *
+     * @param percentile The percentile to calculate, between 0 (exclusive) and 100 (inclusive).
+     * @return The percentile of the recent samples in nanoseconds, or 0 if there are no samples.
+     */
+    public long getPercentileNanos(double percentile)
+    {
+        final long[] sorted;
+        synchronized (this)
+        {
+            if (sampleCount == 0) return 0;
+            sorted = Arrays.copyOf(samples, sampleCount);
+        }
+
+        Arrays.sort(sorted);
+        final int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    /**
+     * Removes all the samples.
+     */
+    public synchronized void reset()
+    {
+        nextIndex = 0;
+        sampleCount = 0;
+        totalCount = 0;
+    }
+}
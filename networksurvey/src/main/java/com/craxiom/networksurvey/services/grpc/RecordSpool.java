@@ -0,0 +1,604 @@
+package com.craxiom.networksurvey.services.grpc;
+
+import com.craxiom.networksurvey.model.SurveyRecordEnvelope;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * An on disk overflow area for a {@link GrpcRecordQueue}. Messages are appended to segment files as length-delimited
+ * protobuf messages (the same format as {@link MessageLite#writeDelimitedTo(OutputStream)}), and they are read back in
+ * the order they were written. A segment file is deleted once all of its messages have been read. The segment that is
+ * being written to is read in place, and once it has been fully read it is emptied and reused rather than replaced
+ * with a new file.
+ * <p>
+ * The segment files are left in place when the app stops, so any messages that were not sent before the process died
+ * are picked up the next time the spool is created for the same directory.
+ * <p>
+ * The total size of the spool is capped; once the cap is reached the oldest segment is dropped to make room.
+ * <p>
+ * This class is not thread safe; the owning {@link GrpcRecordQueue} guards all access to it.
+ *
+ * @param <T> The type of message that is spooled.
+ * @since 1.31.0
+ */
+final class RecordSpool<T extends Message>
+{
+    static final String SEGMENT_FILE_EXTENSION = ".spool";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+    private final File directory;
+    private final Parser<T> parser;
+    private final long maxSegmentBytes;
+    private final long maxSpoolBytes;
+
+    /**
+     * The segments in the order they were created. Only the last segment can be open for writing, and only the first
+     * segment can be open for reading.
+     */
+    private final Deque<Segment> segments = new ArrayDeque<>();
+
+    private OutputStream writer;
+    private InputStream reader;
+    private long nextSequence;
+    private int messageCount;
+    private long byteCount;
+    private long droppedCount;
+
+    /**
+     * @param directory       The directory to store the segment files in. It is created if it does not exist, and any
+     *                        segment files that are already in it are loaded.
+     * @param parser          The parser for reading the messages back from the segment files.
+     * @param maxSegmentBytes A new segment file is started once the current one reaches this size.
+     * @param maxSpoolBytes   The max number of bytes to keep across all the segment files.
+     * @throws IOException If the directory could not be created.
+     */
+    RecordSpool(File directory, Parser<T> parser, long maxSegmentBytes, long maxSpoolBytes) throws IOException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Could not create the gRPC spool directory " + directory);
+        }
+
+        this.directory = directory;
+        this.parser = parser;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSpoolBytes = maxSpoolBytes;
+
+        loadExistingSegments();
+    }
+
+    boolean isEmpty()
+    {
+        return messageCount == 0;
+    }
+
+    /**
+     * @return The number of messages in the spool.
+     */
+    int size()
+    {
+        return messageCount;
+    }
+
+    /**
+     * @return The number of bytes of messages in the spool that have not been read yet.
+     */
+    long getByteCount()
+    {
+        return byteCount;
+    }
+
+    /**
+     * @return The number of messages that were thrown away because the spool was full or a segment was corrupt.
+     */
+    long getDroppedCount()
+    {
+        return droppedCount;
+    }
+
+    /**
+     * @return The wall clock time (in millis) when the oldest segment was started, or 0 if the spool is empty. All the
+     * messages in the spool were added at or after this time.
+     */
+    long getOldestSegmentTimeMillis()
+    {
+        final Segment head = segments.peekFirst();
+        return head == null ? 0 : head.firstMessageTimeMillis;
+    }
+
+    /**
+     * Appends the message to the end of the spool. The wire bytes cached in the envelope are written, so a message
+     * that was already serialized is not serialized again.
+     *
+     * @param message The message to write.
+     * @throws IOException If the message could not be written.
+     */
+    void append(SurveyRecordEnvelope<T> message) throws IOException
+    {
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.sealed || tail.fileBytes >= maxSegmentBytes)
+        {
+            sealTail();
+            tail = startSegment();
+        }
+
+        final int delimitedSize = message.writeDelimitedTo(writer);
+        // Flush every message so that it is in the file (and not our buffer) if the process dies, and so that it can
+        // be read back while the segment is still being written to
+        writer.flush();
+
+        if (tail.messageCount == 0) tail.firstMessageTimeMillis = System.currentTimeMillis();
+        tail.fileBytes += delimitedSize;
+        tail.unreadBytes += delimitedSize;
+        tail.messageCount++;
+        messageCount++;
+        byteCount += delimitedSize;
+
+        while (byteCount > maxSpoolBytes && segments.size() > 1)
+        {
+            final Segment dropped = segments.peekFirst();
+            Timber.w("The gRPC spool in %s is full, dropping %d of the oldest messages", directory, dropped.messageCount);
+            droppedCount += dropped.messageCount;
+            removeHead();
+        }
+    }
+
+    /**
+     * Removes and returns the oldest message in the spool.
+     *
+     * @return The oldest message, or null if the spool is empty.
+     */
+    SpooledMessage<T> poll()
+    {
+        while (true)
+        {
+            final Segment head = segments.peekFirst();
+            if (head == null) return null;
+
+            // The segment that is being written to has been fully read, so wait for more messages to be appended to it
+            if (!head.sealed && head.messageCount == 0) return null;
+
+            try
+            {
+                // Every message is flushed as soon as it is appended, so the segment that is still being written to
+                // can be read in place up to its last complete message
+                if (reader == null) reader = openReader(head);
+
+                final byte[] wireBytes = head.messageCount == 0 ? null : readDelimited(reader);
+                if (wireBytes != null)
+                {
+                    // Keep the bytes with the message so it does not have to be serialized again to send it
+                    final SurveyRecordEnvelope<T> message = new SurveyRecordEnvelope<>(parser.parseFrom(wireBytes), wireBytes);
+                    final int serializedSize = wireBytes.length;
+                    final int delimitedSize = CodedOutputStream.computeUInt32SizeNoTag(serializedSize) + serializedSize;
+                    head.unreadBytes -= delimitedSize;
+                    head.messageCount--;
+                    messageCount--;
+                    byteCount -= delimitedSize;
+
+                    final long spooledTimeMillis = head.firstMessageTimeMillis;
+                    if (head.messageCount == 0)
+                    {
+                        if (head.sealed)
+                        {
+                            removeHead();
+                        } else
+                        {
+                            emptyTail(head);
+                        }
+                    }
+
+                    return new SpooledMessage<>(message, spooledTimeMillis);
+                }
+            } catch (InvalidProtocolBufferException e)
+            {
+                Timber.w(e, "Skipping the rest of the gRPC spool segment %s because it is corrupt", head.file);
+            } catch (IOException e)
+            {
+                Timber.e(e, "Could not read the gRPC spool segment %s", head.file);
+            }
+
+            // Either the segment is fully read, or the rest of it can't be read
+            droppedCount += head.messageCount;
+            removeHead();
+        }
+    }
+
+    /**
+     * Puts the provided messages back at the front of the spool, ahead of the messages that are already in it. This is
+     * used to keep the messages that were read from the spool (or never made it to the spool) but were not sent.
+     * <p>
+     * The oldest segment is rewritten with the provided messages followed by its unread messages, so the messages
+     * that were already read from it are not loaded again later.
+     *
+     * @param messages The messages to add, in the order they should be read.
+     * @throws IOException If the messages could not be written. The spool is left unchanged.
+     */
+    void prepend(List<SurveyRecordEnvelope<T>> messages) throws IOException
+    {
+        if (messages.isEmpty()) return;
+
+        final Segment head = segments.peekFirst();
+        if (head == null)
+        {
+            for (SurveyRecordEnvelope<T> message : messages)
+            {
+                append(message);
+            }
+            return;
+        }
+
+        closeReader();
+        if (!head.sealed) sealTail();
+
+        final File rewrittenFile = new File(directory, head.file.getName() + TEMP_FILE_EXTENSION);
+        long prependedBytes = 0;
+        try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(rewrittenFile)))
+        {
+            for (SurveyRecordEnvelope<T> message : messages)
+            {
+                prependedBytes += message.writeDelimitedTo(outputStream);
+            }
+
+            try (InputStream inputStream = openReader(head))
+            {
+                final byte[] buffer = new byte[8192];
+                long remaining = head.unreadBytes;
+                while (remaining > 0)
+                {
+                    final int read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read == -1) throw new IOException("The gRPC spool segment " + head.file + " is shorter than expected");
+                    outputStream.write(buffer, 0, read);
+                    remaining -= read;
+                }
+            }
+        } catch (IOException e)
+        {
+            deleteFile(rewrittenFile);
+            throw e;
+        }
+
+        if (!rewrittenFile.renameTo(head.file))
+        {
+            deleteFile(rewrittenFile);
+            throw new IOException("Could not replace the gRPC spool segment " + head.file);
+        }
+
+        head.messageCount += messages.size();
+        head.unreadBytes += prependedBytes;
+        head.fileBytes = head.unreadBytes;
+        head.firstMessageTimeMillis = head.createdTimeMillis;
+        messageCount += messages.size();
+        byteCount += prependedBytes;
+    }
+
+    /**
+     * Deletes all the messages in the spool.
+     */
+    void clear()
+    {
+        closeReader();
+        try
+        {
+            sealTail();
+        } catch (IOException e)
+        {
+            Timber.w(e, "Could not close the gRPC spool segment");
+        }
+
+        for (Segment segment : segments)
+        {
+            deleteFile(segment.file);
+        }
+        segments.clear();
+        messageCount = 0;
+        byteCount = 0;
+    }
+
+    /**
+     * Reads the next length-delimited message, in the format written by {@link SurveyRecordEnvelope#writeDelimitedTo}.
+     *
+     * @return The wire bytes of the message, or null if the end of the file was reached.
+     * @throws InvalidProtocolBufferException If the file ends part way through the message.
+     */
+    private static byte[] readDelimited(InputStream inputStream) throws IOException
+    {
+        final int firstByte = inputStream.read();
+        if (firstByte == -1) return null;
+
+        final int size = CodedInputStream.readRawVarint32(firstByte, inputStream);
+        final byte[] bytes = new byte[size];
+        int offset = 0;
+        while (offset < size)
+        {
+            final int read = inputStream.read(bytes, offset, size - offset);
+            if (read == -1) throw new InvalidProtocolBufferException("The spooled message is truncated");
+            offset += read;
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Closes any open files. The segment files are kept so they can be loaded again later.
+     */
+    void close()
+    {
+        closeReader();
+        try
+        {
+            sealTail();
+        } catch (IOException e)
+        {
+            Timber.e(e, "Could not close the gRPC spool segment");
+        }
+    }
+
+    private void loadExistingSegments()
+    {
+        // Remove any segment that was being rewritten when the process died; the original segment is still in place
+        final File[] tempFiles = directory.listFiles((dir, name) -> name.endsWith(TEMP_FILE_EXTENSION));
+        if (tempFiles != null)
+        {
+            for (File tempFile : tempFiles)
+            {
+                deleteFile(tempFile);
+            }
+        }
+
+        final File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_FILE_EXTENSION));
+        if (files == null) return;
+
+        final List<Segment> existing = new ArrayList<>();
+        for (File file : files)
+        {
+            final Segment segment = Segment.fromFile(file);
+            if (segment == null)
+            {
+                Timber.w("Ignoring the unrecognized gRPC spool file %s", file);
+                continue;
+            }
+
+            countMessages(segment);
+            if (segment.messageCount == 0)
+            {
+                deleteFile(segment.file);
+                continue;
+            }
+
+            existing.add(segment);
+        }
+
+        existing.sort((first, second) -> Long.compare(first.sequence, second.sequence));
+        for (Segment segment : existing)
+        {
+            segments.addLast(segment);
+            messageCount += segment.messageCount;
+            byteCount += segment.unreadBytes;
+            nextSequence = segment.sequence + 1;
+        }
+
+        if (messageCount > 0)
+        {
+            Timber.i("Loaded %d spooled gRPC messages from %s", messageCount, directory);
+        }
+    }
+
+    /**
+     * Counts the complete messages in a segment file without parsing them. A partial message at the end of the file
+     * (e.g. if the process died in the middle of a write) is not counted.
+     */
+    private static void countMessages(Segment segment)
+    {
+        final long fileLength = segment.file.length();
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(segment.file)))
+        {
+            final CodedInputStream codedInputStream = CodedInputStream.newInstance(inputStream);
+            codedInputStream.setSizeLimit(Integer.MAX_VALUE);
+            while (!codedInputStream.isAtEnd())
+            {
+                final int start = codedInputStream.getTotalBytesRead();
+                final int length = codedInputStream.readRawVarint32();
+                final long end = (long) codedInputStream.getTotalBytesRead() + length;
+                if (length < 0 || end > fileLength)
+                {
+                    Timber.w("Found a partial message at the end of the gRPC spool segment %s", segment.file);
+                    break;
+                }
+                codedInputStream.skipRawBytes(length);
+
+                segment.messageCount++;
+                segment.unreadBytes += end - start;
+            }
+        } catch (IOException e)
+        {
+            Timber.w(e, "Found a partial message at the end of the gRPC spool segment %s", segment.file);
+        }
+
+        segment.fileBytes = segment.unreadBytes;
+        segment.sealed = true;
+    }
+
+    private Segment startSegment() throws IOException
+    {
+        final Segment segment = Segment.create(directory, nextSequence++, System.currentTimeMillis());
+        writer = new BufferedOutputStream(new FileOutputStream(segment.file, true));
+        segments.addLast(segment);
+        return segment;
+    }
+
+    private void sealTail() throws IOException
+    {
+        final Segment tail = segments.peekLast();
+        if (tail != null) tail.sealed = true;
+
+        if (writer != null)
+        {
+            final OutputStream toClose = writer;
+            writer = null;
+            toClose.close();
+        }
+    }
+
+    /**
+     * Empties the segment that is being written to once all of its messages have been read, so that the next message
+     * is written to the start of the same file instead of a new segment file being created.
+     */
+    private void emptyTail(Segment tail) throws IOException
+    {
+        closeReader();
+
+        // The writer appends, so truncating the file moves the next write back to the start of the file
+        new FileOutputStream(tail.file).close();
+        tail.fileBytes = 0;
+        tail.unreadBytes = 0;
+    }
+
+    /**
+     * Opens the segment file, positioned at its first unread message.
+     */
+    private static InputStream openReader(Segment segment) throws IOException
+    {
+        final FileInputStream inputStream = new FileInputStream(segment.file);
+        try
+        {
+            inputStream.getChannel().position(segment.fileBytes - segment.unreadBytes);
+        } catch (IOException e)
+        {
+            inputStream.close();
+            throw e;
+        }
+        return new BufferedInputStream(inputStream);
+    }
+
+    private void removeHead()
+    {
+        final Segment head = segments.pollFirst();
+        if (head == null) return;
+
+        closeReader();
+        if (!head.sealed)
+        {
+            try
+            {
+                sealTail();
+            } catch (IOException e)
+            {
+                Timber.w(e, "Could not close the gRPC spool segment %s", head.file);
+            }
+        }
+
+        messageCount -= head.messageCount;
+        byteCount -= head.unreadBytes;
+        deleteFile(head.file);
+    }
+
+    private void closeReader()
+    {
+        if (reader == null) return;
+
+        try
+        {
+            reader.close();
+        } catch (IOException e)
+        {
+            Timber.w(e, "Could not close the gRPC spool reader");
+        }
+        reader = null;
+    }
+
+    private static void deleteFile(File file)
+    {
+        if (!file.delete() && file.exists())
+        {
+            Timber.w("Could not delete the gRPC spool segment %s", file);
+        }
+    }
+
+    /**
+     * A message read back from the spool.
+     */
+    static final class SpooledMessage<T extends Message>
+    {
+        final SurveyRecordEnvelope<T> message;
+        final long spooledTimeMillis;
+
+        SpooledMessage(SurveyRecordEnvelope<T> message, long spooledTimeMillis)
+        {
+            this.message = message;
+            this.spooledTimeMillis = spooledTimeMillis;
+        }
+    }
+
+    /**
+     * A single segment file. The file name is the sequence number followed by the time the segment was started, so
+     * the order and age of the segments survives an app restart.
+     */
+    private static final class Segment
+    {
+        final File file;
+        final long sequence;
+        final long createdTimeMillis;
+
+        int messageCount;
+        long fileBytes;
+        long unreadBytes;
+        boolean sealed;
+        /**
+         * The wall clock time (in millis) when the oldest unread message was added, or the creation time if that is
+         * not known. It is reset when the segment is emptied and reused.
+         */
+        long firstMessageTimeMillis;
+
+        private Segment(File file, long sequence, long createdTimeMillis)
+        {
+            this.file = file;
+            this.sequence = sequence;
+            this.createdTimeMillis = createdTimeMillis;
+            firstMessageTimeMillis = createdTimeMillis;
+        }
+
+        static Segment create(File directory, long sequence, long createdTimeMillis)
+        {
+            final File file = new File(directory, sequence + "-" + createdTimeMillis + SEGMENT_FILE_EXTENSION);
+            return new Segment(file, sequence, createdTimeMillis);
+        }
+
+        /**
+         * @return The segment for the file, or null if the file name is not a valid segment name.
+         */
+        static Segment fromFile(File file)
+        {
+            final String name = file.getName();
+            final String[] parts = name.substring(0, name.length() - SEGMENT_FILE_EXTENSION.length()).split("-");
+            if (parts.length != 2) return null;
+
+            try
+            {
+                return new Segment(file, Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            } catch (NumberFormatException e)
+            {
+                return null;
+            }
+        }
+    }
+}
@@ -47,17 +47,19 @@ import com.craxiom.messaging.UmtsRecord
 import com.craxiom.networksurvey.BuildConfig
 import com.craxiom.networksurvey.R
 import com.craxiom.networksurvey.model.CellularProtocol
+import com.craxiom.networksurvey.ui.cellular.model.ApiTowerFetcher
 import com.craxiom.networksurvey.ui.cellular.model.CustomLocationOverlay
 import com.craxiom.networksurvey.ui.cellular.model.FollowMyLocationChangeListener
 import com.craxiom.networksurvey.ui.cellular.model.ServingCellInfo
 import com.craxiom.networksurvey.ui.cellular.model.ServingSignalInfo
 import com.craxiom.networksurvey.ui.cellular.model.TowerMapViewModel
 import com.craxiom.networksurvey.ui.cellular.model.TowerMarker
+import com.craxiom.networksurvey.ui.cellular.model.TowerTileCache
 import com.google.gson.annotations.SerializedName
 import com.google.protobuf.GeneratedMessage
-import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
-import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlinx.coroutines.withContext
 import okhttp3.OkHttpClient
 import org.osmdroid.bonuspack.clustering.RadiusMarkerClusterer
 import org.osmdroid.events.DelayedMapListener
@@ -72,13 +74,13 @@ import org.osmdroid.views.MapView
 import org.osmdroid.views.overlay.mylocation.GpsMyLocationProvider
 import org.osmdroid.views.overlay.mylocation.IMyLocationConsumer
 import org.osmdroid.views.overlay.mylocation.MyLocationNewOverlay
-import retrofit2.Response
+import retrofit2.Call
 import retrofit2.Retrofit
 import retrofit2.converter.gson.GsonConverterFactory
 import retrofit2.http.GET
 import retrofit2.http.Query
 import timber.log.Timber
-import java.util.Collections
+import java.io.File
 import kotlin.math.atan2
 import kotlin.math.cos
 import kotlin.math.sin
@@ -90,6 +92,7 @@ const val MIN_ZOOM_LEVEL = 13.0
 const val MAX_AREA_SQ_METERS = 400_000_000.0
 
 private const val MAX_TOWERS_ON_MAP = 5000
+private const val TOWER_TILE_CACHE_DIRECTORY = "tower_tiles"
 
 /**
  * Creates the map view for displaying the tower locations. The tower locations are pulled from the
@@ -506,10 +509,12 @@ private suspend fun runTowerQuery(viewModel: TowerMapViewModel) {
 
     Timber.i("Running the towerQuery")
 
-    val towerPoints = getTowersFromServer(viewModel)
+    val towerPoints = getTowers(viewModel)
     Timber.d("Loaded ${towerPoints.size} towers")
 
     val towers = viewModel.towers.value
+    val bounds = viewModel.lastQueriedBounds.value
+    if (bounds != null) evictTowersOutsideOfView(towers, bounds, towerPoints.size)
 
     towerPoints.forEach {
         val towerMarker = TowerMarker(viewModel.mapView, it)
@@ -532,6 +537,30 @@ private suspend fun runTowerQuery(viewModel: TowerMapViewModel) {
     viewModel.setIsLoadingInProgress(false)
 }
 
+/**
+ * Makes room for the towers that are about to be added by removing the towers that are outside of
+ * the current view, oldest first. This keeps the towers that are in view on the map even when the
+ * user has panned around a lot.
+ */
+private fun evictTowersOutsideOfView(
+    towers: LinkedHashSet<TowerMarker>,
+    bounds: BoundingBox,
+    newTowerCount: Int
+) {
+    var overflow = towers.size + newTowerCount - MAX_TOWERS_ON_MAP
+    if (overflow <= 0) return
+
+    val iterator = towers.iterator()
+    while (overflow > 0 && iterator.hasNext()) {
+        val tower = iterator.next()
+        if (!bounds.contains(tower.position)) {
+            iterator.remove()
+            tower.destroy()
+            overflow--
+        }
+    }
+}
+
 /**
  * The listener that is called when the map is idle. This is where we will load the towers for the
  * current map view.
@@ -570,48 +599,28 @@ private fun runListener(
 }
 
 /**
- * Loads the towers from the NS backend for the given bounding box.
+ * Loads the towers for the last queried bounding box. The towers come from the local tower cache,
+ * which only goes to the NS backend for the areas that it does not already have.
  */
-@OptIn(ExperimentalCoroutinesApi::class)
-private suspend fun getTowersFromServer(
+private suspend fun getTowers(
     viewModel: TowerMapViewModel
 ): List<Tower> {
-    return suspendCancellableCoroutine { continuation ->
+    val bounds = viewModel.lastQueriedBounds.value ?: return emptyList()
+    val radio = viewModel.selectedRadioType.value
+    val context = viewModel.mapView.context
+
+    return withContext(Dispatchers.IO) {
         try {
-            viewModel.viewModelScope.launch {
-                try {
-                    val bounds = viewModel.lastQueriedBounds.value ?: return@launch
-
-                    // Format the bounding box coordinates to the required "bbox" string format
-                    val bbox =
-                        "${bounds.latSouth},${bounds.lonWest},${bounds.latNorth},${bounds.lonEast}"
-                    val response = nsApi.getTowers(bbox, viewModel.selectedRadioType.value)
-
-                    // Process the response
-                    if (response.code() == 204) {
-                        // No towers found, return an empty list
-                        Timber.w("No towers found; raw: ${response.raw()}")
-                        continuation.resume(Collections.emptyList(), onCancellation = null)
-                        Collections.emptyList<GeoPoint>()
-                    } else if (response.isSuccessful && response.body() != null) {
-                        Timber.i("Successfully loaded towers")
-                        val towerData = response.body()!!
-
-                        continuation.resume(towerData.cells, onCancellation = {
-                            Timber.e("The tower data fetch was cancelled")
-                        })
-                    } else {
-                        Timber.w("Failed to load towers; raw: ${response.raw()}")
-                        continuation.resume(Collections.emptyList(), onCancellation = null)
-                    }
-                } catch (e: Exception) {
-                    Timber.e(e, "Failed to fetch towers")
-                    continuation.resume(Collections.emptyList(), onCancellation = null)
-                }
-            }
+            getTowerTileCache(context).getTowers(
+                bounds.latSouth,
+                bounds.lonWest,
+                bounds.latNorth,
+                bounds.lonEast,
+                radio
+            )
         } catch (e: Exception) {
             Timber.e(e, "Failed to fetch towers")
-            continuation.resume(Collections.emptyList(), onCancellation = null)
+            emptyList()
         }
     }
 }
@@ -705,10 +714,10 @@ fun CircleButtonWithLine(
 // The API definition for the NS Tower Service
 interface Api {
     @GET("cells/area")
-    suspend fun getTowers(
+    fun getTowers(
         @Query("bbox") bbox: String,
         @Query("radio") radio: String
-    ): Response<TowerResponse>
+    ): Call<TowerResponse>
 }
 
 val okHttpClient = OkHttpClient.Builder()
@@ -729,6 +738,23 @@ val retrofit: Retrofit = Retrofit.Builder()
 
 val nsApi: Api = retrofit.create(Api::class.java)
 
+private var towerTileCache: TowerTileCache? = null
+
+/**
+ * Returns the tower cache, which is shared by every tower map so that the towers loaded on one
+ * visit to the map are still around on the next one.
+ */
+@Synchronized
+private fun getTowerTileCache(context: Context): TowerTileCache {
+    return towerTileCache ?: TowerTileCache(
+        File(context.cacheDir, TOWER_TILE_CACHE_DIRECTORY),
+        ApiTowerFetcher(nsApi)
+    ).also {
+        towerTileCache = it
+        it.pruneExpiredTiles()
+    }
+}
+
 /**
  * The data class that represents a tower from the NS backend. Needs to stay in sync with the API.
  */
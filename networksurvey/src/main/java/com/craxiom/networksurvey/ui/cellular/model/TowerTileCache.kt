@@ -0,0 +1,306 @@
+package com.craxiom.networksurvey.ui.cellular.model
+
+import com.craxiom.networksurvey.ui.cellular.Api
+import com.craxiom.networksurvey.ui.cellular.Tower
+import com.google.gson.Gson
+import timber.log.Timber
+import java.io.File
+import java.util.function.LongSupplier
+import kotlin.math.floor
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Fetches the towers in a bounding box from the NS backend.
+ */
+fun interface TowerFetcher {
+    /**
+     * @param bbox The bounding box in the "latSouth,lonWest,latNorth,lonEast" format.
+     * @param radio The radio type (e.g. LTE).
+     * @return The towers in the bounding box, or null if they could not be fetched.
+     */
+    fun fetchTowers(bbox: String, radio: String): List<Tower>?
+}
+
+/**
+ * The [TowerFetcher] that uses the NS backend API.
+ */
+class ApiTowerFetcher(private val api: Api) : TowerFetcher {
+    override fun fetchTowers(bbox: String, radio: String): List<Tower>? {
+        val response = api.getTowers(bbox, radio).execute()
+
+        if (response.code() == 204) {
+            Timber.d("No towers found for $bbox")
+            return emptyList()
+        }
+
+        val body = response.body()
+        if (response.isSuccessful && body != null) return body.cells
+
+        Timber.w("Failed to load towers; raw: ${response.raw()}")
+        return null
+    }
+}
+
+/**
+ * A local cache of the towers from the NS backend so that the tower map does not have to go back
+ * to the server every time the map is panned or zoomed.
+ *
+ * The world is split up into tiles of [TILE_SIZE_DEGREES] on each side, and the towers are cached
+ * per tile and radio type. When the towers for a bounding box are requested, only the tiles that
+ * are not already cached are fetched from the server, and the tiles themselves act as a grid index
+ * for pulling out the towers that are in the bounding box.
+ *
+ * The most recently used tiles are kept in memory, and every tile is also written to disk so that
+ * it survives the app being restarted. Tiles older than the TTL are fetched again.
+ *
+ * The methods in this class block on disk and network I/O, so they must not be called from the
+ * main thread.
+ *
+ * @param cacheDirectory The directory to store the tiles in, or null to only cache in memory.
+ * @param fetcher Fetches the towers for the tiles that are not cached.
+ * @param ttlMs How long a tile is used for before it is fetched again.
+ * @param maxTilesInMemory The number of tiles to keep in memory.
+ * @param clockMs The current wall clock time.
+ * @since 1.31.0
+ */
+class TowerTileCache @JvmOverloads constructor(
+    private val cacheDirectory: File?,
+    private val fetcher: TowerFetcher,
+    private val ttlMs: Long = DEFAULT_TTL_MS,
+    private val maxTilesInMemory: Int = DEFAULT_MAX_TILES_IN_MEMORY,
+    private val clockMs: LongSupplier = LongSupplier { System.currentTimeMillis() }
+) {
+    companion object {
+        /**
+         * About 2.2 km north to south. The largest map area we query (400 km²) covers around 100
+         * tiles at the equator.
+         */
+        const val TILE_SIZE_DEGREES = 0.02
+
+        /**
+         * The most tiles fetched on a side in a single request so that a fetch never covers much
+         * more area than the map allows a single query to cover.
+         */
+        const val MAX_TILES_PER_FETCH_SIDE = 8
+
+        const val DEFAULT_TTL_MS = 7L * 24 * 60 * 60 * 1000
+        const val DEFAULT_MAX_TILES_IN_MEMORY = 1024
+
+        private const val TILE_FILE_EXTENSION = ".json"
+    }
+
+    /**
+     * Identifies a tile; x counts east from the antimeridian and y counts north from the south
+     * pole.
+     */
+    private data class TileKey(val radio: String, val x: Int, val y: Int) {
+        val fileName: String
+            get() = "${radio}_${x}_${y}$TILE_FILE_EXTENSION"
+    }
+
+    /**
+     * The cached towers for a single tile, which is also the format of the file on disk.
+     */
+    private class Tile(val fetchedAtMs: Long, val towers: List<Tower>)
+
+    private val gson = Gson()
+
+    private val memoryTiles = object : LinkedHashMap<TileKey, Tile>(256, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<TileKey, Tile>?): Boolean {
+            return size > maxTilesInMemory
+        }
+    }
+
+    /**
+     * Gets the towers in the bounding box, fetching any tiles that are not cached from the server.
+     *
+     * If a fetch fails, the towers from the tiles that are cached are still returned, and the
+     * tiles that failed will be fetched again on the next call.
+     */
+    fun getTowers(
+        latSouth: Double,
+        lonWest: Double,
+        latNorth: Double,
+        lonEast: Double,
+        radio: String
+    ): List<Tower> {
+        if (lonWest > lonEast) {
+            // The bounding box crosses the antimeridian, which the tiles don't handle, so skip the
+            // cache for this rare case
+            return fetcher.fetchTowers(toBbox(latSouth, lonWest, latNorth, lonEast), radio)
+                ?: emptyList()
+        }
+
+        val minX = toTileX(lonWest)
+        val maxX = toTileX(lonEast)
+        val minY = toTileY(latSouth)
+        val maxY = toTileY(latNorth)
+
+        val tiles = HashMap<TileKey, Tile>()
+        val missingKeys = ArrayList<TileKey>()
+        for (x in minX..maxX) {
+            for (y in minY..maxY) {
+                val key = TileKey(radio, x, y)
+                val tile = getCachedTile(key)
+                if (tile == null) {
+                    missingKeys.add(key)
+                } else {
+                    tiles[key] = tile
+                }
+            }
+        }
+
+        if (missingKeys.isNotEmpty()) {
+            Timber.d("Fetching %d of %d tower tiles", missingKeys.size, tiles.size + missingKeys.size)
+            fetchTiles(missingKeys, radio, tiles)
+        }
+
+        val towers = ArrayList<Tower>()
+        tiles.values.forEach { tile ->
+            tile.towers.filterTo(towers) {
+                it.lat in latSouth..latNorth && it.lon in lonWest..lonEast
+            }
+        }
+        return towers
+    }
+
+    /**
+     * Deletes the tile files that are older than the TTL.
+     */
+    fun pruneExpiredTiles() {
+        val files = cacheDirectory?.listFiles() ?: return
+
+        val now = clockMs.asLong
+        var deletedCount = 0
+        files.forEach { file ->
+            if (now - file.lastModified() > ttlMs && file.delete()) deletedCount++
+        }
+        if (deletedCount > 0) Timber.i("Deleted %d expired tower tiles", deletedCount)
+    }
+
+    private fun getCachedTile(key: TileKey): Tile? {
+        val now = clockMs.asLong
+
+        synchronized(memoryTiles) {
+            val tile = memoryTiles[key]
+            if (tile != null) {
+                if (!isExpired(tile, now)) return tile
+                memoryTiles.remove(key)
+            }
+        }
+
+        val tile = readTile(key) ?: return null
+        if (isExpired(tile, now)) return null
+
+        synchronized(memoryTiles) {
+            memoryTiles[key] = tile
+        }
+        return tile
+    }
+
+    /**
+     * Fetches the missing tiles in blocks of up to [MAX_TILES_PER_FETCH_SIDE] tiles on a side,
+     * using one request for the bounding box of the missing tiles in each block.
+     */
+    private fun fetchTiles(missingKeys: List<TileKey>, radio: String, tiles: MutableMap<TileKey, Tile>) {
+        val blocks = missingKeys.groupBy {
+            Pair(
+                Math.floorDiv(it.x, MAX_TILES_PER_FETCH_SIDE),
+                Math.floorDiv(it.y, MAX_TILES_PER_FETCH_SIDE)
+            )
+        }
+
+        blocks.values.forEach { blockKeys ->
+            val minX = blockKeys.minOf { it.x }
+            val maxX = blockKeys.maxOf { it.x }
+            val minY = blockKeys.minOf { it.y }
+            val maxY = blockKeys.maxOf { it.y }
+
+            val bbox = toBbox(
+                tileSouth(minY), tileWest(minX), tileSouth(maxY + 1), tileWest(maxX + 1)
+            )
+            val towers = try {
+                fetcher.fetchTowers(bbox, radio)
+            } catch (e: Exception) {
+                Timber.e(e, "Failed to fetch the towers for $bbox")
+                null
+            } ?: return@forEach
+
+            val towersByTile = HashMap<TileKey, MutableList<Tower>>()
+            towers.forEach {
+                towersByTile.getOrPut(TileKey(radio, toTileX(it.lon), toTileY(it.lat))) {
+                    ArrayList()
+                }.add(it)
+            }
+
+            // Empty tiles are cached too so that areas without towers are not fetched again
+            val fetchedAtMs = clockMs.asLong
+            blockKeys.forEach { key ->
+                val tile = Tile(fetchedAtMs, towersByTile[key] ?: emptyList())
+                tiles[key] = tile
+                synchronized(memoryTiles) {
+                    memoryTiles[key] = tile
+                }
+                writeTile(key, tile)
+            }
+        }
+    }
+
+    private fun isExpired(tile: Tile, nowMs: Long): Boolean {
+        return nowMs - tile.fetchedAtMs > ttlMs
+    }
+
+    private fun readTile(key: TileKey): Tile? {
+        val file = File(cacheDirectory ?: return null, key.fileName)
+        if (!file.exists()) return null
+
+        return try {
+            file.bufferedReader().use { gson.fromJson(it, Tile::class.java) }
+        } catch (e: Exception) {
+            Timber.w(e, "Could not read the tower tile %s, deleting it", file.name)
+            file.delete()
+            null
+        }
+    }
+
+    private fun writeTile(key: TileKey, tile: Tile) {
+        val directory = cacheDirectory ?: return
+
+        try {
+            if (!directory.exists() && !directory.mkdirs()) {
+                Timber.w("Could not create the tower tile cache directory %s", directory)
+                return
+            }
+
+            // Write to a temporary file first so that a partially written tile is never read
+            val tempFile = File(directory, key.fileName + ".tmp")
+            tempFile.bufferedWriter().use { gson.toJson(tile, it) }
+            if (!tempFile.renameTo(File(directory, key.fileName))) {
+                tempFile.delete()
+                Timber.w("Could not save the tower tile %s", key.fileName)
+            }
+        } catch (e: Exception) {
+            Timber.w(e, "Could not save the tower tile %s", key.fileName)
+        }
+    }
+
+    private fun toTileX(longitude: Double): Int {
+        return max(0, min(floor((longitude + 180) / TILE_SIZE_DEGREES).toInt(), tileCount(360) - 1))
+    }
+
+    private fun toTileY(latitude: Double): Int {
+        return max(0, min(floor((latitude + 90) / TILE_SIZE_DEGREES).toInt(), tileCount(180) - 1))
+    }
+
+    private fun tileCount(degrees: Int): Int = Math.round(degrees / TILE_SIZE_DEGREES).toInt()
+
+    // Rounded so that the bounding box does not end up with values like 38.900000000000006
+    private fun tileWest(x: Int): Double = Math.round((x * TILE_SIZE_DEGREES - 180) * 1e6) / 1e6
+
+    private fun tileSouth(y: Int): Double = Math.round((y * TILE_SIZE_DEGREES - 90) * 1e6) / 1e6
+
+    private fun toBbox(latSouth: Double, lonWest: Double, latNorth: Double, lonEast: Double): String {
+        return "${latSouth},${lonWest},${latNorth},${lonEast}"
+    }
+}
@@ -0,0 +1,97 @@
+package com.craxiom.networksurvey.util;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import com.craxiom.networksurvey.BuildConfig;
+import com.craxiom.networksurvey.services.grpc.LatencyTracker;
+
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+/**
+ * Records how long each frame of a window takes to draw while a screen is showing, and logs the median and p99 frame
+ * times (and how many frames missed the 60 Hz budget) when the screen is hidden. This is used to check that large scan
+ * results (e.g. 1,000 Bluetooth devices) don't cause the list screens to drop frames.
+ * <p>
+ * The frame metrics are only collected in debug builds; in release builds this class does nothing.
+ *
+ * @since 1.31.0
+ */
+public class FrameTimeMonitor
+{
+    private static final long FRAME_BUDGET_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+
+    private final String screenName;
+    private final Window.OnFrameMetricsAvailableListener frameMetricsListener = this::onFrameMetricsAvailable;
+
+    private LatencyTracker frameTimes;
+    private long slowFrameCount;
+    private int droppedReportCount;
+    private Window window;
+    private HandlerThread handlerThread;
+
+    /**
+     * @param screenName The name of the screen to include in the log message.
+     */
+    public FrameTimeMonitor(String screenName)
+    {
+        this.screenName = screenName;
+    }
+
+    /**
+     * Starts recording the frame times for the provided window. Call {@link #stop()} when the screen is hidden.
+     */
+    public synchronized void start(Window window)
+    {
+        if (!BuildConfig.DEBUG || window == null || this.window != null) return;
+
+        frameTimes = new LatencyTracker();
+        slowFrameCount = 0;
+        droppedReportCount = 0;
+
+        handlerThread = new HandlerThread("Frame Metrics " + screenName);
+        handlerThread.start();
+        this.window = window;
+        window.addOnFrameMetricsAvailableListener(frameMetricsListener, new Handler(handlerThread.getLooper()));
+    }
+
+    /**
+     * Stops recording the frame times and logs a summary of the frames recorded since {@link #start(Window)}.
+     */
+    public synchronized void stop()
+    {
+        if (window == null) return;
+
+        try
+        {
+            window.removeOnFrameMetricsAvailableListener(frameMetricsListener);
+        } catch (Exception e)
+        {
+            Timber.w(e, "Could not remove the frame metrics listener for %s", screenName);
+        }
+        window = null;
+        handlerThread.quitSafely();
+        handlerThread = null;
+
+        final long frameCount = frameTimes.getCount();
+        if (frameCount == 0) return;
+
+        Timber.d("%s frame times: %d frames, median %.1f ms, p99 %.1f ms, %d frames over %.1f ms, %d reports dropped",
+                screenName, frameCount, frameTimes.getMedianNanos() / 1e6, frameTimes.getP99Nanos() / 1e6,
+                slowFrameCount, FRAME_BUDGET_NANOS / 1e6, droppedReportCount);
+    }
+
+    private synchronized void onFrameMetricsAvailable(Window window, FrameMetrics frameMetrics, int dropCountSinceLastInvocation)
+    {
+        if (this.window == null) return;
+
+        final long totalDurationNanos = frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION);
+        frameTimes.record(totalDurationNanos);
+        if (totalDurationNanos > FRAME_BUDGET_NANOS) slowFrameCount++;
+        droppedReportCount += dropCountSinceLastInvocation;
+    }
+}
@@ -15,6 +15,7 @@ import androidx.core.app.ActivityCompat;
 import com.craxiom.networksurvey.Application;
 import com.craxiom.networksurvey.R;
 
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -37,6 +38,21 @@ public class NsUtils
         return DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(date);
     }
 
+    /**
+     * Return an ISO 8601 combined date and time string for the specified time in the system default time zone.
+     * <p>
+     * This produces the same result as {@link #getRfc3339String(ZonedDateTime)}, but it is much faster, so prefer it
+     * for anything that is done per survey record.
+     *
+     * @param epochMillis The time to format, in milliseconds since the Unix Epoch.
+     * @return String with format {@link DateTimeFormatter#ISO_OFFSET_DATE_TIME} (e.g. "2020-08-19T18:13:22.548-04:00")
+     * @since 1.31.0
+     */
+    public static String getRfc3339String(long epochMillis)
+    {
+        return Rfc3339Codec.format(epochMillis, ZoneId.systemDefault());
+    }
+
     /**
      * Converts an RFC3339 formatted timestamp to Unix Epoch time. More specifically, it converts a date time string in
      * the {@link DateTimeFormatter#ISO_OFFSET_DATE_TIME} format to Unix Epoch time.
@@ -49,7 +65,7 @@ public class NsUtils
     {
         try
         {
-            return ZonedDateTime.parse(dateTimeString, DateTimeFormatter.ISO_OFFSET_DATE_TIME).toInstant().toEpochMilli();
+            return Rfc3339Codec.parseEpochMillis(dateTimeString);
         } catch (Exception e)
         {
             Timber.e(e, "Could not convert the String date/time to Epoch");
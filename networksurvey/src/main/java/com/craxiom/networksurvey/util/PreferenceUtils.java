@@ -38,6 +38,8 @@ import com.craxiom.networksurvey.Application;
 import com.craxiom.networksurvey.R;
 import com.craxiom.networksurvey.constants.NetworkSurveyConstants;
 import com.craxiom.networksurvey.fragments.model.MqttConnectionSettings;
+import com.craxiom.networksurvey.logging.CsvWriteQueue;
+import com.craxiom.networksurvey.model.GeoPackageIndexMode;
 import com.craxiom.networksurvey.model.GnssType;
 import com.craxiom.networksurvey.model.LogTypeState;
 import com.craxiom.networksurvey.mqtt.MqttConnectionInfo;
@@ -286,6 +288,44 @@ public class PreferenceUtils
         return convertIndexToLogTypeState(preferences.getString(NetworkSurveyConstants.PROPERTY_LOG_FILE_TYPE, "2"));
     }
 
+    /**
+     * Gets the preference for how the spatial and time indexes on the GeoPackage survey tables are maintained.
+     * <p>
+     * First, this method tries to pull the MDM provided index mode. If it is not set (either because the device is not
+     * under MDM control, or if that specific value is not set by the MDM administrator) then the value is pulled from
+     * the Android Shared Preferences (aka from the user settings). If it is not set there then the default value is
+     * used.
+     * <p>
+     * The only exception to this sequence is that if the user has toggled the MDM override switch in user settings,
+     * then the user preference value will be used instead of the MDM value.
+     *
+     * @param context The context to use when getting the Shared Preferences and Restriction Manager.
+     * @return The GeoPackage index mode to use.
+     * @since 1.31.0
+     */
+    public static GeoPackageIndexMode getGeoPackageIndexModePreference(Context context)
+    {
+        final RestrictionsManager restrictionsManager = (RestrictionsManager) context.getSystemService(Context.RESTRICTIONS_SERVICE);
+
+        final boolean mdmOverride = PreferenceManager.getDefaultSharedPreferences(context).getBoolean(NetworkSurveyConstants.PROPERTY_MDM_OVERRIDE_KEY, false);
+
+        // First try to use the MDM provided value.
+        if (restrictionsManager != null && !mdmOverride)
+        {
+            final Bundle mdmProperties = restrictionsManager.getApplicationRestrictions();
+
+            if (mdmProperties.containsKey(NetworkSurveyConstants.PROPERTY_GEOPACKAGE_INDEX_MODE))
+            {
+                return convertIndexToGeoPackageIndexMode(String.valueOf(mdmProperties.getInt(NetworkSurveyConstants.PROPERTY_GEOPACKAGE_INDEX_MODE)));
+            }
+        }
+
+        final SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+
+        // Next, try to use the value from user preferences, with a default fallback
+        return convertIndexToGeoPackageIndexMode(preferences.getString(NetworkSurveyConstants.PROPERTY_GEOPACKAGE_INDEX_MODE, NetworkSurveyConstants.DEFAULT_GEOPACKAGE_INDEX_MODE));
+    }
+
     /**
      * Gets the location provider preference
      * <p>
@@ -416,6 +456,7 @@ public class PreferenceUtils
     {
         boolean csv = false;
         boolean geoPackage = false;
+        boolean protobuf = false;
         switch (index)
         {
             case "0" -> // CSV Only
@@ -427,6 +468,14 @@ public class PreferenceUtils
                 csv = true;
                 geoPackage = true;
             }
+            case "3" -> // Protobuf Only
+                    protobuf = true;
+            case "4" ->
+            { // All
+                csv = true;
+                geoPackage = true;
+                protobuf = true;
+            }
             default ->
             {
                 Timber.wtf("Unhandled log type setting=%s", index);
@@ -435,7 +484,250 @@ public class PreferenceUtils
             }
         }
 
-        return new LogTypeState(csv, geoPackage);
+        return new LogTypeState(csv, geoPackage, protobuf);
+    }
+
+    /**
+     * Converts the index of the GeoPackage index mode option (see {@code values/arrays.xml:geopackage_index_mode_index})
+     * to the index mode.
+     */
+    private static GeoPackageIndexMode convertIndexToGeoPackageIndexMode(String index)
+    {
+        return switch (index)
+        {
+            case "0" -> GeoPackageIndexMode.NONE;
+            case "1" -> GeoPackageIndexMode.INCREMENTAL;
+            case "2" -> GeoPackageIndexMode.ON_CLOSE;
+            default ->
+            {
+                Timber.wtf("Unhandled GeoPackage index mode setting=%s", index);
+                yield GeoPackageIndexMode.NONE;
+            }
+        };
+    }
+
+    /**
+     * Gets the number of pending GeoPackage rows that triggers a commit of the batch to the file.
+     * <p>
+     * The MDM provided value is used first, followed by the user preference, and then the default value. If the user
+     * has toggled the MDM override switch in user settings, then the user preference value is used instead of the MDM
+     * value.
+     *
+     * @param context The context to use when getting the Shared Preferences and Restriction Manager.
+     * @return The max number of rows in a batch, where 1 effectively turns off batching.
+     * @since 1.31.0
+     */
+    public static int getGeoPackageBatchMaxRowsPreference(Context context)
+    {
+        final int maxRows = getMdmOrUserInt(NetworkSurveyConstants.PROPERTY_GEOPACKAGE_BATCH_MAX_ROWS,
+                NetworkSurveyConstants.DEFAULT_GEOPACKAGE_BATCH_MAX_ROWS, context);
+        return maxRows > 0 ? maxRows : NetworkSurveyConstants.DEFAULT_GEOPACKAGE_BATCH_MAX_ROWS;
+    }
+
+    /**
+     * Gets the longest time a pending GeoPackage row can wait before its batch is committed to the file.
+     * <p>
+     * The MDM provided value is used first, followed by the user preference, and then the default value. If the user
+     * has toggled the MDM override switch in user settings, then the user preference value is used instead of the MDM
+     * value.
+     *
+     * @param context The context to use when getting the Shared Preferences and Restriction Manager.
+     * @return The max age of a batch in milliseconds.
+     * @since 1.31.0
+     */
+    public static int getGeoPackageBatchMaxAgeMsPreference(Context context)
+    {
+        return getMdmOrUserInt(NetworkSurveyConstants.PROPERTY_GEOPACKAGE_BATCH_MAX_AGE_MS,
+                NetworkSurveyConstants.DEFAULT_GEOPACKAGE_BATCH_MAX_AGE_MS, context);
+    }
+
+    /**
+     * Gets the longest time a CSV record can sit in the write buffer before it is flushed to the file.
+     * <p>
+     * The MDM provided value is used first, followed by the user preference, and then the default value. If the user
+     * has toggled the MDM override switch in user settings, then the user preference value is used instead of the MDM
+     * value.
+     *
+     * @param context The context to use when getting the Shared Preferences and Restriction Manager.
+     * @return The max flush delay in milliseconds, where 0 means each record is flushed as soon as it is written.
+     * @since 1.31.0
+     */
+    public static int getCsvMaxFlushDelayMsPreference(Context context)
+    {
+        return getMdmOrUserInt(NetworkSurveyConstants.PROPERTY_CSV_MAX_FLUSH_DELAY_MS,
+                NetworkSurveyConstants.DEFAULT_CSV_MAX_FLUSH_DELAY_MS, context);
+    }
+
+    /**
+     * Gets what the CSV loggers should do with new records when their writer thread has fallen behind and the write
+     * queue is full.
+     * <p>
+     * The MDM provided value is used first, followed by the user preference, and then the default value. If the user
+     * has toggled the MDM override switch in user settings, then the user preference value is used instead of the MDM
+     * value.
+     *
+     * @param context The context to use when getting the Shared Preferences and Restriction Manager.
+     * @return The overflow policy for the CSV write queues.
+     * @since 1.31.0
+     */
+    public static CsvWriteQueue.OverflowPolicy getCsvWriteQueueOverflowPolicyPreference(Context context)
+    {
+        final int policy = getMdmOrUserInt(NetworkSurveyConstants.PROPERTY_CSV_WRITE_QUEUE_OVERFLOW_POLICY,
+                NetworkSurveyConstants.DEFAULT_CSV_WRITE_QUEUE_OVERFLOW_POLICY, context);
+        return switch (policy)
+        {
+            case 0 -> CsvWriteQueue.OverflowPolicy.BLOCK;
+            case 1 -> CsvWriteQueue.OverflowPolicy.DROP_OLDEST;
+            case 2 -> CsvWriteQueue.OverflowPolicy.SPILL;
+            default ->
+            {
+                Timber.wtf("Unhandled CSV write queue overflow policy setting=%s", policy);
+                yield CsvWriteQueue.OverflowPolicy.BLOCK;
+            }
+        };
+    }
+
+    /**
+     * Gets the max size of the MQTT outbox, which holds the messages that are published while the MQTT broker is not
+     * connected.
+     * <p>
+     * The MDM provided value is used first, followed by the user preference, and then the default value. If the user
+     * has toggled the MDM override switch in user settings, then the user preference value is used instead of the MDM
+     * value.
+     *
+     * @param context The context to use when getting the Shared Preferences and Restriction Manager.
+     * @return The max outbox size in megabytes, where 0 means messages are not kept while disconnected.
+     * @since 1.31.0
+     */
+    public static int getMqttOutboxSizePreference(Context context)
+    {
+        return getMdmOrUserInt(NetworkSurveyConstants.PROPERTY_MQTT_OUTBOX_SIZE_MB,
+                NetworkSurveyConstants.DEFAULT_MQTT_OUTBOX_SIZE_MB, context);
+    }
+
+    /**
+     * Gets the max rate to publish the messages in the MQTT outbox at once the MQTT broker is connected again.
+     * <p>
+     * The MDM provided value is used first, followed by the user preference, and then the default value. If the user
+     * has toggled the MDM override switch in user settings, then the user preference value is used instead of the MDM
+     * value.
+     *
+     * @param context The context to use when getting the Shared Preferences and Restriction Manager.
+     * @return The max number of messages per second to publish from the outbox.
+     * @since 1.31.0
+     */
+    public static int getMqttOutboxDrainRatePreference(Context context)
+    {
+        final int drainRate = getMdmOrUserInt(NetworkSurveyConstants.PROPERTY_MQTT_OUTBOX_DRAIN_RATE,
+                NetworkSurveyConstants.DEFAULT_MQTT_OUTBOX_DRAIN_RATE, context);
+        return drainRate > 0 ? drainRate : NetworkSurveyConstants.DEFAULT_MQTT_OUTBOX_DRAIN_RATE;
+    }
+
+    /**
+     * Gets the window of time to combine the Bluetooth records for the same device over.
+     * <p>
+     * The MDM provided value is used first, followed by the user preference, and then the default value. If the user
+     * has toggled the MDM override switch in user settings, then the user preference value is used instead of the MDM
+     * value.
+     *
+     * @param context The context to use when getting the Shared Preferences and Restriction Manager.
+     * @return The window in seconds, where 0 means the Bluetooth records are not combined.
+     * @since 1.31.0
+     */
+    public static int getBluetoothCoalesceWindowSecondsPreference(Context context)
+    {
+        return getMdmOrUserInt(NetworkSurveyConstants.PROPERTY_BLUETOOTH_COALESCE_WINDOW_SECONDS,
+                NetworkSurveyConstants.DEFAULT_BLUETOOTH_COALESCE_WINDOW_SECONDS, context);
+    }
+
+    /**
+     * Gets how the signal strength of a combined Bluetooth record is picked.
+     * <p>
+     * The MDM provided value is used first, followed by the user preference, and then the default value. If the user
+     * has toggled the MDM override switch in user settings, then the user preference value is used instead of the MDM
+     * value.
+     *
+     * @param context The context to use when getting the Shared Preferences and Restriction Manager.
+     * @return 0 for the strongest signal strength, 1 for the latest, or 2 for the average.
+     * @since 1.31.0
+     */
+    public static int getBluetoothCoalesceRssiModePreference(Context context)
+    {
+        return getMdmOrUserInt(NetworkSurveyConstants.PROPERTY_BLUETOOTH_COALESCE_RSSI_MODE,
+                NetworkSurveyConstants.DEFAULT_BLUETOOTH_COALESCE_RSSI_MODE, context);
+    }
+
+    /**
+     * Gets the longest time to hold the Wi-Fi and Bluetooth records while waiting for the next location fix, so that
+     * they can be given a location interpolated to the time they were made.
+     * <p>
+     * The MDM provided value is used first, followed by the user preference, and then the default value. If the user
+     * has toggled the MDM override switch in user settings, then the user preference value is used instead of the MDM
+     * value.
+     *
+     * @param context The context to use when getting the Shared Preferences and Restriction Manager.
+     * @return The maximum delay in seconds, where 0 means the records are not held.
+     * @since 1.31.0
+     */
+    public static int getLocationAlignmentMaxDelaySecondsPreference(Context context)
+    {
+        return getMdmOrUserInt(NetworkSurveyConstants.PROPERTY_LOCATION_ALIGNMENT_MAX_DELAY_SECONDS,
+                NetworkSurveyConstants.DEFAULT_LOCATION_ALIGNMENT_MAX_DELAY_SECONDS, context);
+    }
+
+    /**
+     * Gets whether the location added to the survey records is projected forward from the latest fix using its speed
+     * and bearing. When off, the latest fix is used as is.
+     * <p>
+     * The MDM provided value is used first, followed by the user preference, and then the default value. If the user
+     * has toggled the MDM override switch in user settings, then the user preference value is used instead of the MDM
+     * value.
+     *
+     * @param context The context to use when getting the Shared Preferences and Restriction Manager.
+     * @return True if the record locations should be projected forward from the latest fix, false otherwise.
+     * @since 1.31.0
+     */
+    public static boolean getLocationProjectionEnabledPreference(Context context)
+    {
+        final SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        final boolean mdmOverride = preferences.getBoolean(NetworkSurveyConstants.PROPERTY_MDM_OVERRIDE_KEY, false);
+
+        final RestrictionsManager restrictionsManager = (RestrictionsManager) context.getSystemService(Context.RESTRICTIONS_SERVICE);
+        if (restrictionsManager != null && !mdmOverride)
+        {
+            final Bundle mdmProperties = restrictionsManager.getApplicationRestrictions();
+            if (mdmProperties.containsKey(NetworkSurveyConstants.PROPERTY_LOCATION_PROJECTION_ENABLED))
+            {
+                return mdmProperties.getBoolean(NetworkSurveyConstants.PROPERTY_LOCATION_PROJECTION_ENABLED);
+            }
+        }
+
+        return preferences.getBoolean(NetworkSurveyConstants.PROPERTY_LOCATION_PROJECTION_ENABLED,
+                NetworkSurveyConstants.DEFAULT_LOCATION_PROJECTION_ENABLED);
+    }
+
+    /**
+     * @return The non-negative MDM value for the key, or the user preference value if there is no MDM value (or the
+     * user has overridden the MDM values), or the default value if neither is set.
+     */
+    private static int getMdmOrUserInt(String key, int defaultValue, Context context)
+    {
+        final SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        final boolean mdmOverride = preferences.getBoolean(NetworkSurveyConstants.PROPERTY_MDM_OVERRIDE_KEY, false);
+
+        final RestrictionsManager restrictionsManager = (RestrictionsManager) context.getSystemService(Context.RESTRICTIONS_SERVICE);
+        if (restrictionsManager != null && !mdmOverride)
+        {
+            final Bundle mdmProperties = restrictionsManager.getApplicationRestrictions();
+            if (mdmProperties.containsKey(key))
+            {
+                final int mdmValue = mdmProperties.getInt(key);
+                if (mdmValue >= 0) return mdmValue;
+            }
+        }
+
+        final int userValue = preferences.getInt(key, defaultValue);
+        return userValue >= 0 ? userValue : defaultValue;
     }
 
     /**
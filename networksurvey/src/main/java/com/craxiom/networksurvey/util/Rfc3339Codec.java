@@ -0,0 +1,349 @@
+package com.craxiom.networksurvey.util;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * A fast formatter and parser for the {@link DateTimeFormatter#ISO_OFFSET_DATE_TIME} timestamps that are used as the
+ * device time in all the survey records (e.g. "2020-08-19T18:13:22.548-04:00").
+ * <p>
+ * Every record is formatted once when it is created, and then parsed again by each GeoPackage logger. Going through
+ * {@link ZonedDateTime} and {@link DateTimeFormatter} for each of those calls allocates a lot of short-lived
+ * objects, so this class handles the common case directly. The parser does not allocate at all, and the formatter
+ * only allocates the resulting string. The zone offset is cached until the next transition (e.g. daylight saving
+ * time) of the zone.
+ * <p>
+ * Anything outside the common case (e.g. years before 0 or after 9999, or unusual input) is passed on to
+ * {@link DateTimeFormatter#ISO_OFFSET_DATE_TIME}, so the results are always the same as the java.time path.
+ *
+ * @since 1.31.0
+ */
+public class Rfc3339Codec
+{
+    private static final int SECONDS_PER_DAY = 86_400;
+    private static final int MAX_OFFSET_SECONDS = 18 * 3600;
+
+    /**
+     * The days from 0000-03-01 to 1970-01-01, used to convert between the epoch day and a civil date.
+     */
+    private static final long DAYS_0000_TO_1970 = 719_468;
+    private static final int DAYS_PER_ERA = 146_097;
+
+    private static volatile OffsetCacheEntry offsetCache;
+
+    private Rfc3339Codec()
+    {
+    }
+
+    /**
+     * Formats the provided time in the provided zone. The result is the same as
+     * {@code DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(Instant.ofEpochMilli(epochMillis).atZone(zone))}.
+     *
+     * @param epochMillis The time to format, in milliseconds since the Unix Epoch.
+     * @param zone        The zone to use for the local date and time, and the offset.
+     * @return The RFC3339 formatted date and time.
+     */
+    public static String format(long epochMillis, ZoneId zone)
+    {
+        final long epochSecond = Math.floorDiv(epochMillis, 1000);
+        final int millis = (int) Math.floorMod(epochMillis, 1000);
+
+        final OffsetCacheEntry offset = getOffset(epochSecond, zone);
+
+        final long localSecond = epochSecond + offset.offsetSeconds;
+        final long epochDay = Math.floorDiv(localSecond, SECONDS_PER_DAY);
+        final int secondOfDay = (int) Math.floorMod(localSecond, SECONDS_PER_DAY);
+
+        // Convert the epoch day to a civil date, see http://howardhinnant.github.io/date_algorithms.html#civil_from_days
+        final long shiftedDay = epochDay + DAYS_0000_TO_1970;
+        final long era = Math.floorDiv(shiftedDay, DAYS_PER_ERA);
+        final int dayOfEra = (int) (shiftedDay - era * DAYS_PER_ERA);
+        final int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        final int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        final int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        final int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        final long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        if (year < 0 || year > 9999)
+        {
+            return DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(Instant.ofEpochMilli(epochMillis).atZone(zone));
+        }
+
+        final String offsetId = offset.offsetId;
+        final char[] chars = new char[23 + offsetId.length()];
+        int i = 0;
+        i = writeDigits(chars, i, (int) year, 4);
+        chars[i++] = '-';
+        i = writeDigits(chars, i, month, 2);
+        chars[i++] = '-';
+        i = writeDigits(chars, i, day, 2);
+        chars[i++] = 'T';
+        i = writeDigits(chars, i, secondOfDay / 3600, 2);
+        chars[i++] = ':';
+        i = writeDigits(chars, i, (secondOfDay / 60) % 60, 2);
+        chars[i++] = ':';
+        i = writeDigits(chars, i, secondOfDay % 60, 2);
+
+        // Match the java.time formatter, which drops the fraction if it is zero and removes any trailing zeros
+        if (millis != 0)
+        {
+            chars[i++] = '.';
+            if (millis % 100 == 0)
+            {
+                i = writeDigits(chars, i, millis / 100, 1);
+            } else if (millis % 10 == 0)
+            {
+                i = writeDigits(chars, i, millis / 10, 2);
+            } else
+            {
+                i = writeDigits(chars, i, millis, 3);
+            }
+        }
+
+        offsetId.getChars(0, offsetId.length(), chars, i);
+        i += offsetId.length();
+
+        return new String(chars, 0, i);
+    }
+
+    /**
+     * Parses the provided timestamp in the {@link DateTimeFormatter#ISO_OFFSET_DATE_TIME} format. The result is the
+     * same as {@code ZonedDateTime.parse(text, DateTimeFormatter.ISO_OFFSET_DATE_TIME).toInstant().toEpochMilli()},
+     * including throwing a {@link java.time.format.DateTimeParseException} for invalid input.
+     *
+     * @param text The timestamp to parse.
+     * @return The time in milliseconds since the Unix Epoch.
+     */
+    public static long parseEpochMillis(String text)
+    {
+        final long epochMillis = tryParseEpochMillis(text);
+        if (epochMillis != Long.MIN_VALUE) return epochMillis;
+
+        return ZonedDateTime.parse(text, DateTimeFormatter.ISO_OFFSET_DATE_TIME).toInstant().toEpochMilli();
+    }
+
+    /**
+     * The allocation free parser for the common timestamp layout. Input that this method does not handle is
+     * reported by returning {@link Long#MIN_VALUE}, which the caller then passes on to java.time.
+     */
+    private static long tryParseEpochMillis(String text)
+    {
+        final int length = text.length();
+        // The shortest input handled here is "yyyy-MM-ddTHH:mmZ"
+        if (length < 17) return Long.MIN_VALUE;
+
+        final int year = readDigits(text, 0, 4);
+        final int month = readDigits(text, 5, 2);
+        final int day = readDigits(text, 8, 2);
+        final int hour = readDigits(text, 11, 2);
+        final int minute = readDigits(text, 14, 2);
+        if ((year | month | day | hour | minute) < 0
+                || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T' || text.charAt(13) != ':')
+        {
+            return Long.MIN_VALUE;
+        }
+
+        int i = 16;
+        int second = 0;
+        int nanos = 0;
+        if (i < length && text.charAt(i) == ':')
+        {
+            second = readDigits(text, i + 1, 2);
+            if (second < 0) return Long.MIN_VALUE;
+            i += 3;
+
+            if (i < length && text.charAt(i) == '.')
+            {
+                i++;
+                int digits = 0;
+                while (i < length && digits < 9)
+                {
+                    final int digit = text.charAt(i) - '0';
+                    if (digit < 0 || digit > 9) break;
+                    nanos = nanos * 10 + digit;
+                    digits++;
+                    i++;
+                }
+                if (digits == 0) return Long.MIN_VALUE;
+                for (int d = digits; d < 9; d++)
+                {
+                    nanos *= 10;
+                }
+            }
+        }
+
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour > 23 || minute > 59 || second > 59)
+        {
+            return Long.MIN_VALUE;
+        }
+
+        if (i >= length) return Long.MIN_VALUE;
+
+        final int offsetSeconds;
+        final char sign = text.charAt(i);
+        if (sign == 'Z')
+        {
+            if (i + 1 != length) return Long.MIN_VALUE;
+            offsetSeconds = 0;
+        } else if (sign == '+' || sign == '-')
+        {
+            final int remaining = length - i;
+            if (remaining != 6 && remaining != 9) return Long.MIN_VALUE;
+
+            final int offsetHours = readDigits(text, i + 1, 2);
+            final int offsetMinutes = readDigits(text, i + 4, 2);
+            if (offsetHours < 0 || offsetMinutes < 0 || offsetMinutes > 59 || text.charAt(i + 3) != ':')
+            {
+                return Long.MIN_VALUE;
+            }
+
+            int offsetSecondsPart = 0;
+            if (remaining == 9)
+            {
+                offsetSecondsPart = readDigits(text, i + 7, 2);
+                if (offsetSecondsPart < 0 || offsetSecondsPart > 59 || text.charAt(i + 6) != ':')
+                {
+                    return Long.MIN_VALUE;
+                }
+            }
+
+            final int totalSeconds = offsetHours * 3600 + offsetMinutes * 60 + offsetSecondsPart;
+            if (totalSeconds > MAX_OFFSET_SECONDS) return Long.MIN_VALUE;
+            offsetSeconds = sign == '-' ? -totalSeconds : totalSeconds;
+        } else
+        {
+            return Long.MIN_VALUE;
+        }
+
+        final long epochSecond = toEpochDay(year, month, day) * SECONDS_PER_DAY
+                + hour * 3600 + minute * 60 + second - offsetSeconds;
+        return epochSecond * 1000 + nanos / 1_000_000;
+    }
+
+    /**
+     * Returns the offset for the zone at the provided time, reusing the cached offset if the time falls in the same
+     * period between transitions.
+     */
+    private static OffsetCacheEntry getOffset(long epochSecond, ZoneId zone)
+    {
+        final OffsetCacheEntry cached = offsetCache;
+        if (cached != null && cached.zone.equals(zone)
+                && epochSecond >= cached.validFromEpochSecond && epochSecond < cached.validUntilEpochSecond)
+        {
+            return cached;
+        }
+
+        final ZoneRules rules = zone.getRules();
+        final Instant instant = Instant.ofEpochSecond(epochSecond);
+        final ZoneOffset offset = rules.getOffset(instant);
+
+        final long validFrom;
+        final long validUntil;
+        if (rules.isFixedOffset())
+        {
+            validFrom = Long.MIN_VALUE;
+            validUntil = Long.MAX_VALUE;
+        } else
+        {
+            // Look one second ahead so that a time that is exactly on a transition gets that transition back
+            final ZoneOffsetTransition previous = rules.previousTransition(instant.plusSeconds(1));
+            final ZoneOffsetTransition next = rules.nextTransition(instant);
+            validFrom = previous != null && previous.getOffsetAfter().equals(offset)
+                    ? previous.getInstant().getEpochSecond() : epochSecond;
+            validUntil = next == null ? Long.MAX_VALUE : next.getInstant().getEpochSecond();
+        }
+
+        final OffsetCacheEntry entry = new OffsetCacheEntry(zone, validFrom, validUntil, offset);
+        offsetCache = entry;
+        return entry;
+    }
+
+    /**
+     * Converts a civil date to the epoch day, see http://howardhinnant.github.io/date_algorithms.html#days_from_civil
+     */
+    private static long toEpochDay(int year, int month, int day)
+    {
+        final int shiftedYear = month <= 2 ? year - 1 : year;
+        final int era = Math.floorDiv(shiftedYear, 400);
+        final int yearOfEra = shiftedYear - era * 400;
+        final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return (long) era * DAYS_PER_ERA + dayOfEra - DAYS_0000_TO_1970;
+    }
+
+    private static int lengthOfMonth(int year, int month)
+    {
+        switch (month)
+        {
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * @return The value of the digits, or -1 if the text is too short or any of the characters is not a digit.
+     */
+    private static int readDigits(String text, int start, int count)
+    {
+        if (start + count > text.length()) return -1;
+
+        int value = 0;
+        for (int i = start; i < start + count; i++)
+        {
+            final int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Writes the value as zero padded digits.
+     *
+     * @return The index after the last digit that was written.
+     */
+    private static int writeDigits(char[] chars, int start, int value, int count)
+    {
+        for (int i = start + count - 1; i >= start; i--)
+        {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return start + count;
+    }
+
+    /**
+     * The offset of a zone, and the period of time it is valid for.
+     */
+    private static final class OffsetCacheEntry
+    {
+        private final ZoneId zone;
+        private final long validFromEpochSecond;
+        private final long validUntilEpochSecond;
+        private final int offsetSeconds;
+        private final String offsetId;
+
+        private OffsetCacheEntry(ZoneId zone, long validFromEpochSecond, long validUntilEpochSecond, ZoneOffset offset)
+        {
+            this.zone = zone;
+            this.validFromEpochSecond = validFromEpochSecond;
+            this.validUntilEpochSecond = validUntilEpochSecond;
+            offsetSeconds = offset.getTotalSeconds();
+            offsetId = offset.getId();
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.craxiom.networksurvey.logging;
+
+import com.craxiom.networksurvey.constants.BluetoothMessageConstants;
+import com.craxiom.networksurvey.constants.CdmaMessageConstants;
+import com.craxiom.networksurvey.constants.GnssMessageConstants;
+import com.craxiom.networksurvey.constants.GsmMessageConstants;
+import com.craxiom.networksurvey.constants.LteMessageConstants;
+import com.craxiom.networksurvey.constants.MessageConstants;
+import com.craxiom.networksurvey.constants.NrMessageConstants;
+import com.craxiom.networksurvey.constants.UmtsMessageConstants;
+import com.craxiom.networksurvey.constants.WifiBeaconMessageConstants;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.GeoPackageManager;
+import mil.nga.geopackage.contents.Contents;
+import mil.nga.geopackage.contents.ContentsDataType;
+import mil.nga.geopackage.db.GeoPackageDataType;
+import mil.nga.geopackage.features.columns.GeometryColumns;
+import mil.nga.geopackage.features.user.FeatureColumn;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.features.user.FeatureTable;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.srs.SpatialReferenceSystem;
+import mil.nga.proj.ProjectionConstants;
+import mil.nga.sf.GeometryType;
+import mil.nga.sf.Point;
+
+/**
+ * Converts a protobuf survey log (see {@link SurveyLogWriter}) to a GeoPackage file on a computer, with one feature
+ * table for each type of record in the log. The tables have the same names as the ones the GeoPackage loggers create
+ * on the device (e.g. {@link LteMessageConstants#LTE_RECORDS_TABLE_NAME}), and each record is a point at its
+ * location.
+ * <p>
+ * The columns are the fields of the record's {@code data} message, the same as {@link SurveyLogCsvConverter}, rather
+ * than the columns the GeoPackage loggers write, so that nothing in the log is lost. Wrapped values (e.g.
+ * {@code Int32Value}) are unwrapped and left NULL when they are not set, enums are written by name, and any other
+ * nested or repeated fields are written as JSON.
+ * <p>
+ * This class uses the pure Java GeoPackage library instead of the Android one the app uses, so it is kept out of the
+ * app and is only compiled for the {@code convertSurveyLogToGeoPackage} Gradle task.
+ *
+ * @since 1.31.0
+ */
+public final class SurveyLogGeoPackageConverter
+{
+    private static final String GEOPACKAGE_FILE_EXTENSION = ".gpkg";
+    private static final String ALTITUDE_FIELD_NAME = "altitude";
+    private static final long WGS84_SRS = ProjectionConstants.EPSG_WORLD_GEODETIC_SYSTEM;
+    /**
+     * The number of rows that are inserted in each transaction, which is what keeps SQLite from syncing the file to
+     * disk for every row.
+     */
+    private static final int ROWS_PER_TRANSACTION = 1_000;
+
+    private SurveyLogGeoPackageConverter()
+    {
+    }
+
+    /**
+     * Converts protobuf survey logs to GeoPackage from the command line, which is how the
+     * {@code convertSurveyLogToGeoPackage} Gradle task runs it.
+     * <p>
+     * Usage: {@code <log file or directory> [output directory]}. When a directory is provided, every {@code .nspb}
+     * file in it is converted. The GeoPackage files are written next to each log unless an output directory is
+     * provided.
+     *
+     * @param args The log file or directory, followed by the optional output directory.
+     */
+    public static void main(String[] args) throws IOException, SQLException
+    {
+        if (args.length < 1 || args.length > 2)
+        {
+            System.err.println("Usage: SurveyLogGeoPackageConverter <log file or directory> [output directory]");
+            System.exit(2);
+        }
+
+        final File input = new File(args[0]);
+        final File[] logFiles = input.isDirectory()
+                ? input.listFiles((directory, name) -> name.endsWith(SurveyLogCsvConverter.LOG_FILE_EXTENSION))
+                : new File[]{input};
+        if (logFiles == null || logFiles.length == 0 || !logFiles[0].isFile())
+        {
+            System.err.println("No protobuf survey logs found at " + input);
+            System.exit(1);
+        }
+
+        for (File logFile : logFiles)
+        {
+            final File outputDirectory = args.length == 2 ? new File(args[1]) : logFile.getAbsoluteFile().getParentFile();
+            System.out.println(logFile + " -> " + convert(logFile, outputDirectory));
+        }
+    }
+
+    /**
+     * Converts all the records in the log to a GeoPackage file in the provided directory. The file is named after the
+     * log file (e.g. {@code craxiom-cellular-20240101-120000.gpkg}), and it is replaced if it already exists.
+     *
+     * @param logFile         The protobuf survey log to convert.
+     * @param outputDirectory The directory to write the GeoPackage file to. It is created if needed.
+     * @return The GeoPackage file that was written.
+     * @throws IOException  If the log could not be read, or the GeoPackage file could not be created.
+     * @throws SQLException If there is a problem working with the GeoPackage SQLite DB.
+     */
+    public static File convert(File logFile, File outputDirectory) throws IOException, SQLException
+    {
+        Files.createDirectories(outputDirectory.toPath());
+
+        String baseName = logFile.getName();
+        if (baseName.endsWith(SurveyLogCsvConverter.LOG_FILE_EXTENSION))
+        {
+            baseName = baseName.substring(0, baseName.length() - SurveyLogCsvConverter.LOG_FILE_EXTENSION.length());
+        }
+
+        final File geoPackageFile = new File(outputDirectory, baseName + GEOPACKAGE_FILE_EXTENSION);
+        Files.deleteIfExists(geoPackageFile.toPath());
+        if (!GeoPackageManager.create(geoPackageFile))
+        {
+            throw new IOException("Unable to create the GeoPackage file " + geoPackageFile);
+        }
+
+        final GeoPackage geoPackage = GeoPackageManager.open(geoPackageFile);
+        try (SurveyLogReader reader = SurveyLogReader.open(logFile))
+        {
+            final SpatialReferenceSystem srs = geoPackage.getSpatialReferenceSystemDao()
+                    .getOrCreateCode(ProjectionConstants.AUTHORITY_EPSG, ProjectionConstants.EPSG_WORLD_GEODETIC_SYSTEM);
+            geoPackage.createGeometryColumnsTable();
+
+            final Map<SurveyLogRecordType, FeatureDao> featureDaos = new EnumMap<>(SurveyLogRecordType.class);
+            final int[] pendingRows = new int[1];
+            geoPackage.beginTransaction();
+            try
+            {
+                reader.readAll(entry -> {
+                    try
+                    {
+                        FeatureDao featureDao = featureDaos.get(entry.getType());
+                        if (featureDao == null)
+                        {
+                            featureDao = createTable(geoPackage, srs, entry.getType());
+                            featureDaos.put(entry.getType(), featureDao);
+                        }
+
+                        featureDao.insert(toRow(featureDao, entry.getType(), entry.getRecord()));
+                    } catch (SQLException e)
+                    {
+                        throw new IOException("Unable to write a " + entry.getType() + " record to " + geoPackageFile, e);
+                    }
+
+                    if (++pendingRows[0] == ROWS_PER_TRANSACTION)
+                    {
+                        geoPackage.endTransaction(true);
+                        geoPackage.beginTransaction();
+                        pendingRows[0] = 0;
+                    }
+                    return true;
+                });
+                geoPackage.endTransaction(true);
+            } catch (IOException | RuntimeException e)
+            {
+                geoPackage.endTransaction(false);
+                throw e;
+            }
+        } finally
+        {
+            geoPackage.close();
+        }
+
+        return geoPackageFile;
+    }
+
+    /**
+     * @return The name of the GeoPackage table for the provided record type, which is the same one that the
+     * GeoPackage loggers use on the device.
+     */
+    static String getTableName(SurveyLogRecordType type)
+    {
+        return switch (type)
+        {
+            case GSM -> GsmMessageConstants.GSM_RECORDS_TABLE_NAME;
+            case CDMA -> CdmaMessageConstants.CDMA_RECORDS_TABLE_NAME;
+            case UMTS -> UmtsMessageConstants.UMTS_RECORDS_TABLE_NAME;
+            case LTE -> LteMessageConstants.LTE_RECORDS_TABLE_NAME;
+            case NR -> NrMessageConstants.NR_RECORDS_TABLE_NAME;
+            case WIFI_BEACON -> WifiBeaconMessageConstants.WIFI_BEACON_RECORDS_TABLE_NAME;
+            case BLUETOOTH -> BluetoothMessageConstants.BLUETOOTH_RECORDS_TABLE_NAME;
+            case GNSS -> GnssMessageConstants.GNSS_RECORDS_TABLE_NAME;
+        };
+    }
+
+    /**
+     * Creates the feature table for the provided record type, the same way that the GeoPackage loggers do on the
+     * device (see {@code SurveyRecordLogger#createTable}).
+     */
+    private static FeatureDao createTable(GeoPackage geoPackage, SpatialReferenceSystem srs, SurveyLogRecordType type)
+            throws SQLException
+    {
+        final String tableName = getTableName(type);
+
+        final Contents contents = new Contents();
+        contents.setTableName(tableName);
+        contents.setDataType(ContentsDataType.FEATURES);
+        contents.setIdentifier(tableName);
+        contents.setDescription(tableName);
+        contents.setSrs(srs);
+
+        int columnNumber = 0;
+        final List<FeatureColumn> tableColumns = new LinkedList<>();
+        tableColumns.add(FeatureColumn.createPrimaryKeyColumn(columnNumber++, MessageConstants.ID_COLUMN));
+        tableColumns.add(FeatureColumn.createGeometryColumn(columnNumber++, MessageConstants.GEOMETRY_COLUMN, GeometryType.POINT, false, null));
+        for (Descriptors.FieldDescriptor field : getDataDescriptor(type).getFields())
+        {
+            tableColumns.add(FeatureColumn.createColumn(columnNumber++, field.getName(), getDataType(field), false, null));
+        }
+
+        geoPackage.createFeatureTable(new FeatureTable(tableName, tableColumns));
+        geoPackage.getContentsDao().create(contents);
+
+        final GeometryColumns geometryColumns = new GeometryColumns();
+        geometryColumns.setContents(contents);
+        geometryColumns.setColumnName(MessageConstants.GEOMETRY_COLUMN);
+        geometryColumns.setGeometryType(GeometryType.POINT);
+        geometryColumns.setSrs(srs);
+        geometryColumns.setZ((byte) 0);
+        geometryColumns.setM((byte) 0);
+        geoPackage.getGeometryColumnsDao().create(geometryColumns);
+
+        return geoPackage.getFeatureDao(tableName);
+    }
+
+    private static FeatureRow toRow(FeatureDao featureDao, SurveyLogRecordType type, Message record)
+    {
+        final Descriptors.FieldDescriptor dataField = record.getDescriptorForType()
+                .findFieldByName(SurveyLogCsvConverter.DATA_FIELD_NAME);
+        final Message data = (Message) record.getField(dataField);
+
+        final FeatureRow row = featureDao.newRow();
+
+        final Descriptors.FieldDescriptor altitudeField = data.getDescriptorForType().findFieldByName(ALTITUDE_FIELD_NAME);
+        final Point fix = altitudeField != null && data.getField(altitudeField) instanceof Number
+                ? new Point(type.getLongitude(record), type.getLatitude(record), ((Number) data.getField(altitudeField)).doubleValue())
+                : new Point(type.getLongitude(record), type.getLatitude(record));
+        final GeoPackageGeometryData geomData = new GeoPackageGeometryData(WGS84_SRS);
+        geomData.setGeometry(fix);
+        row.setGeometry(geomData);
+
+        for (Descriptors.FieldDescriptor field : data.getDescriptorForType().getFields())
+        {
+            row.setValue(field.getName(), toValue(data, field));
+        }
+
+        return row;
+    }
+
+    /**
+     * @return The value of the field in the type that matches {@link #getDataType(Descriptors.FieldDescriptor)}, or
+     * null if the field is not set.
+     */
+    static Object toValue(Message data, Descriptors.FieldDescriptor field)
+    {
+        if (field.isRepeated())
+        {
+            final String json = SurveyLogCsvConverter.toValue(data, field);
+            return json.isEmpty() ? null : json;
+        }
+
+        if (field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE)
+        {
+            if (!data.hasField(field)) return null;
+
+            final Message value = (Message) data.getField(field);
+            final Descriptors.FieldDescriptor valueField = getWrappedValueField(field);
+            if (valueField != null) return toScalarValue(value.getField(valueField), valueField);
+
+            return SurveyLogCsvConverter.printJson(value);
+        }
+
+        return toScalarValue(data.getField(field), field);
+    }
+
+    /**
+     * @return The GeoPackage type of the column for the field. Wrapped values use the type of the value they wrap,
+     * and the values that are written as text (e.g. enums and JSON) use {@link GeoPackageDataType#TEXT}.
+     */
+    static GeoPackageDataType getDataType(Descriptors.FieldDescriptor field)
+    {
+        if (field.isRepeated()) return GeoPackageDataType.TEXT;
+
+        Descriptors.FieldDescriptor valueField = field;
+        if (field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE)
+        {
+            valueField = getWrappedValueField(field);
+            if (valueField == null) return GeoPackageDataType.TEXT;
+        }
+
+        return switch (valueField.getJavaType())
+        {
+            case INT -> GeoPackageDataType.MEDIUMINT;
+            case LONG -> GeoPackageDataType.INTEGER;
+            case FLOAT -> GeoPackageDataType.FLOAT;
+            case DOUBLE -> GeoPackageDataType.DOUBLE;
+            case BOOLEAN -> GeoPackageDataType.BOOLEAN;
+            default -> GeoPackageDataType.TEXT;
+        };
+    }
+
+    private static Object toScalarValue(Object value, Descriptors.FieldDescriptor field)
+    {
+        return switch (field.getJavaType())
+        {
+            case INT, LONG, FLOAT, DOUBLE, BOOLEAN -> value;
+            default -> SurveyLogCsvConverter.toScalarValue(value);
+        };
+    }
+
+    /**
+     * @return The {@code value} field of the wrapper message (e.g. {@code Int32Value}) that the field holds, or null
+     * if it does not hold a wrapper.
+     */
+    private static Descriptors.FieldDescriptor getWrappedValueField(Descriptors.FieldDescriptor field)
+    {
+        final Descriptors.Descriptor messageType = field.getMessageType();
+        if (!messageType.getFullName().startsWith(SurveyLogCsvConverter.WRAPPER_PACKAGE)) return null;
+
+        return messageType.findFieldByName(SurveyLogCsvConverter.WRAPPER_VALUE_FIELD_NAME);
+    }
+
+    private static Descriptors.Descriptor getDataDescriptor(SurveyLogRecordType type)
+    {
+        return type.getDefaultInstance().getDescriptorForType()
+                .findFieldByName(SurveyLogCsvConverter.DATA_FIELD_NAME).getMessageType();
+    }
+}
@@ -0,0 +1,98 @@
+package com.craxiom.networksurvey;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class LocationHistoryTest
+{
+    private static final double DELTA = 1e-9;
+
+    private final LocationHistory<String> history = new LocationHistory<>();
+
+    @Test
+    public void interpolatesBetweenFixes()
+    {
+        assertNull(history.getPositionAt(1_000));
+
+        history.add(fix(10_000, 35.0, -80.0, 100, 5f, "first"));
+        history.add(fix(20_000, 35.1, -80.2, 200, 10f, "second"));
+
+        final LocationHistory.Position<String> position = history.getPositionAt(12_500);
+        assertEquals(LocationHistory.Source.INTERPOLATED, position.source);
+        assertEquals(35.025, position.latitude, DELTA);
+        assertEquals(-80.05, position.longitude, DELTA);
+        assertEquals(125, position.altitude, DELTA);
+        assertEquals(10f, position.accuracy, 0f);
+        assertEquals("first", position.nearestFix.source);
+
+        // Before the first fix the first fix is used
+        final LocationHistory.Position<String> early = history.getPositionAt(5_000);
+        assertEquals(LocationHistory.Source.NEAREST, early.source);
+        assertEquals("first", early.nearestFix.source);
+    }
+
+    @Test
+    public void findsTheRightFixesOnceTheHistoryWrapsAround()
+    {
+        for (int i = 0; i < LocationHistory.CAPACITY * 2; i++)
+        {
+            history.add(fix(i * 1_000L, i, 0, 0, 1f, "fix " + i));
+        }
+        // Out of order fixes are ignored
+        history.add(fix(0, 90, 90, 0, 1f, "old"));
+
+        final long lastTimeMs = (LocationHistory.CAPACITY * 2 - 1) * 1_000L;
+        assertEquals(lastTimeMs, history.getLatestFixElapsedMs());
+
+        final LocationHistory.Position<String> position = history.getPositionAt(100_250);
+        assertEquals(100.25, position.latitude, DELTA);
+
+        // Anything older than the history gets the oldest fix that is still kept
+        final LocationHistory.Position<String> oldest = history.getPositionAt(1_000);
+        assertEquals("fix " + LocationHistory.CAPACITY, oldest.nearestFix.source);
+    }
+
+    @Test
+    public void doesNotInterpolateAcrossLargeGapsOrTheAntimeridianTheLongWay()
+    {
+        history.add(fix(0, 0, 179.5, 0, 1f, "east"));
+        history.add(fix(10_000, 0, -179.5, 0, 1f, "west"));
+        assertEquals(180, Math.abs(history.getPositionAt(5_000).longitude), 1e-6);
+
+        history.add(fix(10_000 + LocationHistory.MAX_INTERPOLATION_GAP_MS + 1, 10, 10, 0, 1f, "later"));
+        final LocationHistory.Position<String> inGap = history.getPositionAt(20_000);
+        assertEquals(LocationHistory.Source.NEAREST, inGap.source);
+        assertEquals("west", inGap.nearestFix.source);
+    }
+
+    @Test
+    public void projectsForwardFromAMovingFix()
+    {
+        history.add(new LocationHistory.Fix<>(0, 35, -80, 0, 5f, 20f, 0f, "moving"));
+
+        final LocationHistory.Position<String> position = history.getPositionAt(5_000);
+        assertEquals(LocationHistory.Source.PROJECTED, position.source);
+        // 100 m north is about 0.0009 degrees of latitude
+        assertEquals(35.000899, position.latitude, 1e-6);
+        assertEquals(-80, position.longitude, DELTA);
+        assertEquals(5f + 100 * LocationHistory.PROJECTION_ACCURACY_FACTOR, position.accuracy, 0.001f);
+
+        // Too long after the fix to trust the speed and bearing
+        assertEquals(LocationHistory.Source.NEAREST, history.getPositionAt(LocationHistory.MAX_PROJECTION_MS + 1).source);
+
+        // Not moving, or no bearing
+        history.clear();
+        history.add(new LocationHistory.Fix<>(0, 35, -80, 0, 5f, 0.5f, 0f, "slow"));
+        assertEquals(LocationHistory.Source.NEAREST, history.getPositionAt(5_000).source);
+        history.add(new LocationHistory.Fix<>(1_000, 35, -80, 0, 5f, 20f, Float.NaN, "no bearing"));
+        assertEquals(LocationHistory.Source.NEAREST, history.getPositionAt(5_000).source);
+    }
+
+    private static LocationHistory.Fix<String> fix(long elapsedMs, double latitude, double longitude, double altitude,
+                                                   float accuracy, String source)
+    {
+        return new LocationHistory.Fix<>(elapsedMs, latitude, longitude, altitude, accuracy, Float.NaN, Float.NaN, source);
+    }
+}
@@ -15,6 +15,11 @@ import org.junit.Test;
 
 import java.lang.reflect.Field;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Test for the custom {@link com.craxiom.networksurvey.model.SortedSet} class.
@@ -38,17 +43,7 @@ public class SortedSetTest
         final BluetoothRecord record3 = getFakeBluetoothRecord("E1:A1:19:A9:68:B3", -73f);
         final BluetoothRecord record4 = getFakeBluetoothRecord("E1:A1:19:A9:68:B4", -74f);
 
-        SortedSet<BluetoothRecord> bluetoothRecordSortedSet = null;
-        try
-        {
-            final BluetoothViewModel bluetoothViewModel = new BluetoothViewModel();
-            Field bluetoothRecordSortedSetField = BluetoothViewModel.class.getDeclaredField("bluetoothSortedList");
-            bluetoothRecordSortedSetField.setAccessible(true);
-            bluetoothRecordSortedSet = (SortedSet) bluetoothRecordSortedSetField.get(bluetoothViewModel);
-        } catch (NoSuchFieldException | IllegalAccessException e)
-        {
-            Assert.fail("Could not get the bluetoothSortedSet field from the BluetoothViewModel class");
-        }
+        final SortedSet<BluetoothRecord> bluetoothRecordSortedSet = getBluetoothSortedSet(new BluetoothViewModel());
 
         bluetoothRecordSortedSet.add(record1);
         Assert.assertEquals(1, bluetoothRecordSortedSet.size());
@@ -77,6 +72,122 @@ public class SortedSetTest
         Assert.assertEquals(4, bluetoothRecordSortedSet.size());
     }
 
+    @Test
+    public void validateAddAllReplacesMatchingItems()
+    {
+        final SortedSet<BluetoothRecord> bluetoothRecordSortedSet = getBluetoothSortedSet(new BluetoothViewModel());
+
+        bluetoothRecordSortedSet.add(getFakeBluetoothRecord("E1:A1:19:A9:68:B1", -71f));
+        bluetoothRecordSortedSet.add(getFakeBluetoothRecord("E1:A1:19:A9:68:B2", -72f));
+
+        // One existing device, one new device, and the new device twice in the same scan (the last one wins)
+        bluetoothRecordSortedSet.addAll(Arrays.asList(
+                getFakeBluetoothRecord("E1:A1:19:A9:68:B1", -90f),
+                getFakeBluetoothRecord("E1:A1:19:A9:68:B3", -60f),
+                getFakeBluetoothRecord("E1:A1:19:A9:68:B3", -65f)));
+
+        Assert.assertEquals(3, bluetoothRecordSortedSet.size());
+        assertRecord(bluetoothRecordSortedSet.get(0), "E1:A1:19:A9:68:B3", -65f);
+        assertRecord(bluetoothRecordSortedSet.get(1), "E1:A1:19:A9:68:B2", -72f);
+        assertRecord(bluetoothRecordSortedSet.get(2), "E1:A1:19:A9:68:B1", -90f);
+
+        // Removing a record also removes it from the key index, so adding it again does not evict anything else
+        Assert.assertTrue(bluetoothRecordSortedSet.remove(bluetoothRecordSortedSet.get(1)));
+        bluetoothRecordSortedSet.add(getFakeBluetoothRecord("E1:A1:19:A9:68:B2", -50f));
+        Assert.assertEquals(3, bluetoothRecordSortedSet.size());
+        assertRecord(bluetoothRecordSortedSet.get(0), "E1:A1:19:A9:68:B2", -50f);
+    }
+
+    @Test
+    public void validateReplacementAfterTheSortOrderChanges()
+    {
+        final BluetoothViewModel bluetoothViewModel = new BluetoothViewModel();
+        final SortedSet<BluetoothRecord> bluetoothRecordSortedSet = getBluetoothSortedSet(bluetoothViewModel);
+        for (int i = 0; i < 20; i++)
+        {
+            bluetoothRecordSortedSet.add(getFakeBluetoothRecord(getSourceAddress(i), -40f - i));
+        }
+
+        // Sort by source address, but don't re-sort the list, so the binary search can't find the old record
+        bluetoothViewModel.setSortByIndex(1);
+        bluetoothRecordSortedSet.add(getFakeBluetoothRecord(getSourceAddress(7), -30f));
+
+        Assert.assertEquals(20, bluetoothRecordSortedSet.size());
+        Assert.assertEquals(20, getSourceAddresses(bluetoothRecordSortedSet).size());
+    }
+
+    /**
+     * A scan of 5,000 Bluetooth devices that are all already in the list should give the same list when using the key
+     * index as when checking every item in the list for a match.
+     */
+    @Test
+    public void validateKeyIndexMatchesTheLinearScanWith5000Devices()
+    {
+        final int deviceCount = 5_000;
+        final BluetoothViewModel bluetoothViewModel = new BluetoothViewModel();
+        final SortedSet<BluetoothRecord> indexedSet = getBluetoothSortedSet(bluetoothViewModel);
+        final SortedSet<BluetoothRecord> linearSet = new SortedSet<>(BluetoothRecord.class,
+                bluetoothViewModel.new RecordSortedListCallback());
+
+        final List<BluetoothRecord> firstScan = new ArrayList<>(deviceCount);
+        final List<BluetoothRecord> secondScan = new ArrayList<>(deviceCount);
+        for (int i = 0; i < deviceCount; i++)
+        {
+            firstScan.add(getFakeBluetoothRecord(getSourceAddress(i), -40f - (i % 60)));
+            secondScan.add(getFakeBluetoothRecord(getSourceAddress(i), -40f - ((i * 7) % 60)));
+        }
+
+        indexedSet.addAll(firstScan);
+        firstScan.forEach(linearSet::add);
+
+        indexedSet.addAll(secondScan);
+        secondScan.forEach(linearSet::add);
+
+        Assert.assertEquals(deviceCount, indexedSet.size());
+        Assert.assertEquals(deviceCount, getSourceAddresses(indexedSet).size());
+        for (int i = 0; i < deviceCount; i++)
+        {
+            Assert.assertEquals(linearSet.get(i).getData().getSignalStrength().getValue(),
+                    indexedSet.get(i).getData().getSignalStrength().getValue(), FLOAT_TOLERANCE);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SortedSet<BluetoothRecord> getBluetoothSortedSet(BluetoothViewModel bluetoothViewModel)
+    {
+        try
+        {
+            Field bluetoothRecordSortedSetField = BluetoothViewModel.class.getDeclaredField("bluetoothSortedList");
+            bluetoothRecordSortedSetField.setAccessible(true);
+            return (SortedSet<BluetoothRecord>) bluetoothRecordSortedSetField.get(bluetoothViewModel);
+        } catch (NoSuchFieldException | IllegalAccessException e)
+        {
+            Assert.fail("Could not get the bluetoothSortedSet field from the BluetoothViewModel class");
+            return null;
+        }
+    }
+
+    private static String getSourceAddress(int deviceNumber)
+    {
+        return String.format("E1:A1:19:A9:%02X:%02X", (deviceNumber >> 8) & 0xFF, deviceNumber & 0xFF);
+    }
+
+    private static Set<String> getSourceAddresses(SortedSet<BluetoothRecord> bluetoothRecordSortedSet)
+    {
+        final Set<String> sourceAddresses = new HashSet<>();
+        for (int i = 0; i < bluetoothRecordSortedSet.size(); i++)
+        {
+            sourceAddresses.add(bluetoothRecordSortedSet.get(i).getData().getSourceAddress());
+        }
+        return sourceAddresses;
+    }
+
+    private static void assertRecord(BluetoothRecord record, String sourceAddress, float signalStrength)
+    {
+        Assert.assertEquals(sourceAddress, record.getData().getSourceAddress());
+        Assert.assertEquals(signalStrength, record.getData().getSignalStrength().getValue(), FLOAT_TOLERANCE);
+    }
+
     /**
      * Create a fake BluetoothRecord that can be used for testing.
      * <p>
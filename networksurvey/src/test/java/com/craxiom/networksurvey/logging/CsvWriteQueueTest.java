@@ -0,0 +1,164 @@
+package com.craxiom.networksurvey.logging;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the {@link CsvWriteQueue} overflow policies.
+ *
+ * @since 1.31.0
+ */
+public class CsvWriteQueueTest
+{
+    private static final long TIMEOUT_MS = 10_000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void validateSpilledRowsAreWrittenInOrder() throws Exception
+    {
+        final CountDownLatch writerGate = new CountDownLatch(1);
+        final RecordingWriter writer = new RecordingWriter(writerGate);
+        final CsvWriteQueue queue = new CsvWriteQueue("SpillTest", 4, temporaryFolder.getRoot(), writer);
+        queue.setOverflowPolicy(CsvWriteQueue.OverflowPolicy.SPILL);
+
+        for (int i = 0; i < 100; i++)
+        {
+            queue.enqueue(new String[]{String.valueOf(i), "value,with \"quotes\""});
+        }
+
+        Assert.assertTrue(queue.getSpilledCount() > 0);
+
+        writerGate.countDown();
+        Assert.assertTrue(queue.awaitDrained(TIMEOUT_MS));
+
+        Assert.assertEquals(100, writer.rows.size());
+        for (int i = 0; i < 100; i++)
+        {
+            Assert.assertEquals(String.valueOf(i), writer.rows.get(i)[0]);
+            Assert.assertEquals("value,with \"quotes\"", writer.rows.get(i)[1]);
+        }
+        Assert.assertEquals(0, queue.getDroppedCount());
+        Assert.assertEquals(0, queue.getDepth());
+
+        queue.shutdown();
+    }
+
+    @Test
+    public void validateDropOldestKeepsTheNewestRows() throws Exception
+    {
+        final CountDownLatch writerGate = new CountDownLatch(1);
+        final RecordingWriter writer = new RecordingWriter(writerGate);
+        final CsvWriteQueue queue = new CsvWriteQueue("DropTest", 10, temporaryFolder.getRoot(), writer);
+        queue.setOverflowPolicy(CsvWriteQueue.OverflowPolicy.DROP_OLDEST);
+
+        // The first row is taken by the consumer thread, which then blocks on the gate
+        queue.enqueue(new String[]{"first"});
+        Assert.assertTrue(writer.firstRowStarted.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+        for (int i = 0; i < 50; i++)
+        {
+            queue.enqueue(new String[]{String.valueOf(i)});
+        }
+
+        Assert.assertEquals(40, queue.getDroppedCount());
+
+        writerGate.countDown();
+        Assert.assertTrue(queue.awaitDrained(TIMEOUT_MS));
+
+        Assert.assertEquals(11, writer.rows.size());
+        Assert.assertEquals("first", writer.rows.get(0)[0]);
+        Assert.assertEquals("40", writer.rows.get(1)[0]);
+        Assert.assertEquals("49", writer.rows.get(10)[0]);
+
+        queue.shutdown();
+    }
+
+    @Test
+    public void validateDroppedFlushRequestStillFlushes() throws Exception
+    {
+        final CountDownLatch writerGate = new CountDownLatch(1);
+        final RecordingWriter writer = new RecordingWriter(writerGate);
+        final CsvWriteQueue queue = new CsvWriteQueue("DroppedFlushTest", 10, temporaryFolder.getRoot(), writer);
+        queue.setOverflowPolicy(CsvWriteQueue.OverflowPolicy.DROP_OLDEST);
+
+        queue.enqueue(new String[]{"first"});
+        Assert.assertTrue(writer.firstRowStarted.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+        // The flush request is the oldest entry in the queue, so it is the first one evicted
+        queue.requestFlush();
+        for (int i = 0; i < 20; i++)
+        {
+            queue.enqueue(new String[]{String.valueOf(i)});
+        }
+
+        writerGate.countDown();
+        Assert.assertTrue(queue.awaitDrained(TIMEOUT_MS));
+        Assert.assertTrue(writer.flushed.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+        queue.shutdown();
+    }
+
+    @Test
+    public void validateFlushHappensAfterQueuedRows() throws Exception
+    {
+        final RecordingWriter writer = new RecordingWriter(new CountDownLatch(0));
+        final CsvWriteQueue queue = new CsvWriteQueue("FlushTest", 16, temporaryFolder.getRoot(), writer);
+
+        queue.enqueue(new String[]{"a"});
+        queue.enqueue(new String[]{"b"});
+        queue.requestFlush();
+
+        Assert.assertTrue(queue.awaitDrained(TIMEOUT_MS));
+        Assert.assertTrue(writer.flushed.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(2, writer.rowCountAtFirstFlush);
+
+        queue.shutdown();
+    }
+
+    /**
+     * A writer that records every row and waits on a gate before writing, so that the tests can back up the queue.
+     */
+    private static class RecordingWriter implements CsvWriteQueue.RowWriter
+    {
+        private final List<Object[]> rows = new CopyOnWriteArrayList<>();
+        private final CountDownLatch gate;
+        private final CountDownLatch firstRowStarted = new CountDownLatch(1);
+        private final CountDownLatch flushed = new CountDownLatch(1);
+        private volatile int rowCountAtFirstFlush = -1;
+
+        RecordingWriter(CountDownLatch gate)
+        {
+            this.gate = gate;
+        }
+
+        @Override
+        public void writeRow(Object[] row)
+        {
+            firstRowStarted.countDown();
+            try
+            {
+                gate.await();
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            rows.add(row);
+        }
+
+        @Override
+        public void flush()
+        {
+            if (flushed.getCount() > 0) rowCountAtFirstFlush = rows.size();
+            flushed.countDown();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.craxiom.networksurvey.logging;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.sf.Point;
+
+public class GeoPackagePointEncoderTest
+{
+    private static final double[][] LOCATIONS = {
+            {-77.0365, 38.8977, 17.5f},
+            {0, 0, 0},
+            {180, -90, -412.25f},
+            {-180, 90, 8848.86f},
+            {151.2093, -33.8688, Float.MIN_VALUE},
+            {-0.000001, 0.000001, -0.5f},
+    };
+
+    @Test
+    public void encode_matchesLibraryBytes() throws Exception
+    {
+        final GeoPackagePointEncoder encoder = new GeoPackagePointEncoder(SurveyRecordLogger.WGS84_SRS);
+
+        for (double[] location : LOCATIONS)
+        {
+            final GeoPackageGeometryData geomData = new GeoPackageGeometryData(SurveyRecordLogger.WGS84_SRS);
+            geomData.setGeometry(new Point(location[0], location[1], location[2]));
+
+            assertArrayEquals(geomData.toBytes(), encoder.encode(location[0], location[1], location[2]));
+        }
+    }
+
+    @Test
+    public void encode_roundTripsThroughLibraryParser() throws Exception
+    {
+        final GeoPackagePointEncoder encoder = new GeoPackagePointEncoder(SurveyRecordLogger.WGS84_SRS);
+
+        for (double[] location : LOCATIONS)
+        {
+            final GeoPackageGeometryData parsed = new GeoPackageGeometryData(encoder.encode(location[0], location[1], location[2]));
+
+            assertEquals(SurveyRecordLogger.WGS84_SRS, parsed.getSrsId());
+            assertFalse(parsed.isEmpty());
+
+            final Point point = (Point) parsed.getGeometry();
+            assertTrue(point.hasZ());
+            assertEquals(location[0], point.getX(), 0.0);
+            assertEquals(location[1], point.getY(), 0.0);
+            assertEquals(location[2], point.getZ(), 0.0);
+        }
+    }
+
+    @Test
+    public void encode_reusesBuffer()
+    {
+        final GeoPackagePointEncoder encoder = new GeoPackagePointEncoder(SurveyRecordLogger.WGS84_SRS);
+
+        final byte[] first = encoder.encode(1, 2, 3);
+        final byte[] second = encoder.encode(4, 5, 6);
+
+        assertSame(first, second);
+        assertEquals(GeoPackagePointEncoder.BLOB_LENGTH, second.length);
+    }
+}
@@ -0,0 +1,226 @@
+package com.craxiom.networksurvey.logging;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.craxiom.networksurvey.constants.MessageConstants;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks what {@link GeoPackageRowEncoder} binds for each column, using a statement that records the bindings instead
+ * of an Android SQLite database. The text columns must end up the same as they did with the
+ * {@link mil.nga.geopackage.features.user.FeatureRow} path: an empty string that was always set on the row is written
+ * as an empty string, and an optional one that was only set when it had a value is left as NULL.
+ */
+public class GeoPackageRowEncoderTest
+{
+    private static final String TABLE_NAME = "Encoder";
+    private static final String DEVICE_SERIAL_NUMBER_COLUMN = "DeviceSerialNumber";
+    private static final String PROVIDER_COLUMN = "Provider";
+    private static final String SERVING_CELL_COLUMN = "ServingCell";
+    private static final String[] COLUMN_NAMES = {
+            MessageConstants.ID_COLUMN,
+            MessageConstants.GEOMETRY_COLUMN,
+            DEVICE_SERIAL_NUMBER_COLUMN,
+            MessageConstants.TIME_COLUMN,
+            MessageConstants.MISSION_ID_COLUMN,
+            PROVIDER_COLUMN,
+            SERVING_CELL_COLUMN,
+    };
+
+    @Test
+    public void compilesAnInsertForEveryColumnExceptThePrimaryKey()
+    {
+        final RecordingInsertStatement statement = new RecordingInsertStatement();
+        new TestRowEncoder(statement);
+
+        assertEquals("INSERT INTO \"Encoder\" (\"geom\",\"DeviceSerialNumber\",\"Time\",\"MissionId\",\"Provider\",\"ServingCell\") VALUES (?,?,?,?,?,?)",
+                statement.sql);
+    }
+
+    @Test
+    public void writesEmptyTextAsAnEmptyString()
+    {
+        final RecordingInsertStatement statement = new RecordingInsertStatement();
+        final TestRowEncoder encoder = new TestRowEncoder(statement);
+
+        encoder.insert(new TestRecord("", "", 1_700_000_000_000L, "Provider", true));
+
+        final Map<Integer, Object> row = statement.rows.get(0);
+        assertEquals("", row.get(encoder.bindIndex(DEVICE_SERIAL_NUMBER_COLUMN)));
+        assertEquals("", row.get(encoder.bindIndex(MessageConstants.MISSION_ID_COLUMN)));
+    }
+
+    @Test
+    public void leavesEmptyOptionalTextAsNull()
+    {
+        final RecordingInsertStatement statement = new RecordingInsertStatement();
+        final TestRowEncoder encoder = new TestRowEncoder(statement);
+
+        encoder.insert(new TestRecord("device", "mission", 1_700_000_000_000L, "", true));
+        encoder.insert(new TestRecord("device", "mission", 1_700_000_001_000L, null, true));
+
+        final int providerIndex = encoder.bindIndex(PROVIDER_COLUMN);
+        assertFalse(statement.rows.get(0).containsKey(providerIndex));
+        assertFalse(statement.rows.get(1).containsKey(providerIndex));
+    }
+
+    @Test
+    public void clearsTheBindingsBeforeEachRow()
+    {
+        final RecordingInsertStatement statement = new RecordingInsertStatement();
+        final TestRowEncoder encoder = new TestRowEncoder(statement);
+
+        encoder.insert(new TestRecord("device", "mission", 1_700_000_000_000L, "Provider", true));
+        encoder.insert(new TestRecord("device", "mission", 1_700_000_001_000L, "", false));
+
+        final int providerIndex = encoder.bindIndex(PROVIDER_COLUMN);
+        assertEquals("Provider", statement.rows.get(0).get(providerIndex));
+        assertNull("The provider from the previous row is not written again", statement.rows.get(1).get(providerIndex));
+    }
+
+    @Test
+    public void bindsTheValuesTheWayTheGeoPackageLibraryStoresThem()
+    {
+        final RecordingInsertStatement statement = new RecordingInsertStatement();
+        final TestRowEncoder encoder = new TestRowEncoder(statement);
+
+        encoder.insert(new TestRecord("device", "mission", 1_700_000_000_000L, "Provider", true));
+        encoder.insert(new TestRecord("device", "mission", 1_700_000_001_000L, "Provider", false));
+
+        final int servingCellIndex = encoder.bindIndex(SERVING_CELL_COLUMN);
+        assertEquals(1L, statement.rows.get(0).get(servingCellIndex));
+        assertEquals(0L, statement.rows.get(1).get(servingCellIndex));
+        assertEquals(1_700_000_000_000L, statement.rows.get(0).get(encoder.bindIndex(MessageConstants.TIME_COLUMN)));
+        assertArrayEquals(new GeoPackagePointEncoder(SurveyRecordLogger.WGS84_SRS).encode(-77.0365, 38.8977, 17.5),
+                (byte[]) statement.rows.get(0).get(encoder.bindIndex(MessageConstants.GEOMETRY_COLUMN)));
+    }
+
+    @Test
+    public void rejectsAColumnThatIsNotInTheTable()
+    {
+        final TestRowEncoder encoder = new TestRowEncoder(new RecordingInsertStatement());
+
+        assertThrows(IllegalArgumentException.class, () -> encoder.bindIndex("Missing"));
+        assertThrows(IllegalArgumentException.class, () -> encoder.bindIndex(MessageConstants.ID_COLUMN));
+    }
+
+    @Test
+    public void closesTheStatement()
+    {
+        final RecordingInsertStatement statement = new RecordingInsertStatement();
+        new TestRowEncoder(statement).close();
+
+        assertTrue(statement.closed);
+    }
+
+    /**
+     * Binds the columns the same way the survey record encoders do: the device serial number and mission ID are
+     * always written, and the provider only when it has a value.
+     */
+    private static final class TestRowEncoder extends GeoPackageRowEncoder<TestRecord>
+    {
+        private final int geometryIndex;
+        private final int deviceSerialNumberIndex;
+        private final int timeIndex;
+        private final int missionIdIndex;
+        private final int providerIndex;
+        private final int servingCellIndex;
+
+        TestRowEncoder(RecordingInsertStatement statement)
+        {
+            super(TABLE_NAME, COLUMN_NAMES, sql -> {
+                statement.sql = sql;
+                return statement;
+            });
+
+            geometryIndex = bindIndex(MessageConstants.GEOMETRY_COLUMN);
+            deviceSerialNumberIndex = bindIndex(DEVICE_SERIAL_NUMBER_COLUMN);
+            timeIndex = bindIndex(MessageConstants.TIME_COLUMN);
+            missionIdIndex = bindIndex(MessageConstants.MISSION_ID_COLUMN);
+            providerIndex = bindIndex(PROVIDER_COLUMN);
+            servingCellIndex = bindIndex(SERVING_CELL_COLUMN);
+        }
+
+        @Override
+        void bind(TestRecord record)
+        {
+            bindPoint(geometryIndex, -77.0365, 38.8977, 17.5);
+            bindText(deviceSerialNumberIndex, record.deviceSerialNumber());
+            bindLong(timeIndex, record.timeMs());
+            bindText(missionIdIndex, record.missionId());
+            bindOptionalText(providerIndex, record.provider());
+            bindBoolean(servingCellIndex, record.servingCell());
+        }
+    }
+
+    private record TestRecord(String deviceSerialNumber, String missionId, long timeMs, String provider,
+                              boolean servingCell)
+    {
+    }
+
+    /**
+     * Keeps the values that were bound for each row that was inserted.
+     */
+    private static final class RecordingInsertStatement implements GeoPackageRowEncoder.InsertStatement
+    {
+        private final List<Map<Integer, Object>> rows = new ArrayList<>();
+        private final Map<Integer, Object> bindings = new HashMap<>();
+        private String sql;
+        private boolean closed;
+
+        @Override
+        public void clearBindings()
+        {
+            bindings.clear();
+        }
+
+        @Override
+        public void bindLong(int index, long value)
+        {
+            bindings.put(index, value);
+        }
+
+        @Override
+        public void bindDouble(int index, double value)
+        {
+            bindings.put(index, value);
+        }
+
+        @Override
+        public void bindString(int index, String value)
+        {
+            bindings.put(index, value);
+        }
+
+        @Override
+        public void bindBlob(int index, byte[] value)
+        {
+            // The point encoder reuses its array, so keep a copy like SQLite does
+            bindings.put(index, value.clone());
+        }
+
+        @Override
+        public long executeInsert()
+        {
+            rows.add(new HashMap<>(bindings));
+            return rows.size();
+        }
+
+        @Override
+        public void close()
+        {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.craxiom.networksurvey.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+public class StandbyFileRolloverTest
+{
+    private static final long ROLLOVER_SIZE = 1_000;
+    /**
+     * How long it takes to create each file, which stands in for creating the GeoPackage schema.
+     */
+    private static final long FILE_CREATION_MS = 500;
+    /**
+     * The longest a write may take while the standby file is created and swapped in. Each write only adds to a
+     * counter, so this leaves plenty of room for a slow machine while staying well under {@link #FILE_CREATION_MS}.
+     */
+    private static final long MAX_WRITE_MS = FILE_CREATION_MS / 5;
+
+    private final AtomicInteger fileNumbers = new AtomicInteger(1);
+    private final List<String> discardedFiles = new CopyOnWriteArrayList<>();
+    private StandbyFileRollover<String> rollover;
+
+    @After
+    public void tearDown()
+    {
+        if (rollover != null) rollover.shutdown();
+    }
+
+    @Test
+    public void writesAreNeverBlockedByCreatingTheNextFile() throws InterruptedException
+    {
+        final CountDownLatch creationStarted = new CountDownLatch(1);
+        final CountDownLatch releaseCreation = new CountDownLatch(1);
+        final Object writeLock = new Object();
+        final String[] currentFile = {"file-0"};
+        final List<String> usedFiles = new CopyOnWriteArrayList<>();
+        usedFiles.add(currentFile[0]);
+
+        rollover = new StandbyFileRollover<>("Test", () -> {
+            creationStarted.countDown();
+            releaseCreation.await();
+            return "file-" + fileNumbers.getAndIncrement();
+        }, discardedFiles::add, () -> {
+            synchronized (writeLock)
+            {
+                final String standbyFile = rollover.takeStandbyIfRolloverPending();
+                if (standbyFile != null)
+                {
+                    currentFile[0] = standbyFile;
+                    usedFiles.add(standbyFile);
+                }
+            }
+        });
+
+        // Write past the rollover size while the standby file can't be created, checking the size every 10 writes
+        // like the loggers do. If a write waited on the file creation, the writes would never finish.
+        final int writeCount = 200;
+        final CountDownLatch writesDone = new CountDownLatch(1);
+        final Thread writer = new Thread(() -> {
+            long fileSize = 0;
+            for (int write = 1; write <= writeCount; write++)
+            {
+                synchronized (writeLock)
+                {
+                    fileSize += 10;
+                    if (write % 10 == 0)
+                    {
+                        final String standbyFile = rollover.check(fileSize, ROLLOVER_SIZE);
+                        if (standbyFile != null) usedFiles.add(standbyFile);
+                    }
+                }
+            }
+            writesDone.countDown();
+        });
+        writer.start();
+
+        assertTrue(creationStarted.await(5, TimeUnit.SECONDS));
+        assertTrue(writesDone.await(5, TimeUnit.SECONDS));
+        assertFalse(rollover.isStandbyReady());
+        assertEquals(List.of("file-0"), usedFiles);
+
+        // Once the standby file is ready it is swapped in, since the rollover size was already reached
+        releaseCreation.countDown();
+        waitFor(() -> usedFiles.size() == 2);
+        assertEquals(List.of("file-0", "file-1"), usedFiles);
+        assertEquals("file-1", currentFile[0]);
+    }
+
+    @Test
+    public void writesStayFastWhileTheStandbyFileIsCreatedAndSwappedIn() throws InterruptedException
+    {
+        final Object writeLock = new Object();
+        final long[] fileSize = {0};
+        final List<String> usedFiles = new CopyOnWriteArrayList<>();
+        usedFiles.add("file-0");
+
+        // Swaps the standby file in the same way the logger does: take it while holding the lock the writes use
+        rollover = new StandbyFileRollover<>("Test", this::slowlyCreateFile, discardedFiles::add, () -> {
+            synchronized (writeLock)
+            {
+                final String standbyFile = rollover.takeStandbyIfRolloverPending();
+                if (standbyFile != null)
+                {
+                    usedFiles.add(standbyFile);
+                    fileSize[0] = 0;
+                }
+            }
+        });
+
+        // Keep writing through the creation of the standby file and the swap, timing each write including the wait
+        // for the lock. A write that waited on the file creation would take at least FILE_CREATION_MS.
+        final List<Long> writeDurationsNs = new ArrayList<>();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        int writesAfterSwap = 0;
+        for (int write = 1; writesAfterSwap < 20 && System.nanoTime() < deadline; write++)
+        {
+            final long startNs = System.nanoTime();
+            synchronized (writeLock)
+            {
+                fileSize[0] += 10;
+                if (write % 10 == 0)
+                {
+                    final String standbyFile = rollover.check(fileSize[0], ROLLOVER_SIZE);
+                    if (standbyFile != null) usedFiles.add(standbyFile);
+                }
+            }
+            writeDurationsNs.add(System.nanoTime() - startNs);
+
+            if (usedFiles.size() > 1) writesAfterSwap++;
+            Thread.sleep(1);
+        }
+
+        assertEquals(List.of("file-0", "file-1"), usedFiles);
+
+        final long slowestWriteMs = TimeUnit.NANOSECONDS.toMillis(Collections.max(writeDurationsNs));
+        assertTrue("The slowest of " + writeDurationsNs.size() + " writes took " + slowestWriteMs + " ms",
+                slowestWriteMs < MAX_WRITE_MS);
+    }
+
+    @Test
+    public void swapsInTheStandbyOnceItIsReadyIfTheRolloverSizeWasAlreadyReached() throws InterruptedException
+    {
+        final CountDownLatch readyLatch = new CountDownLatch(1);
+        rollover = new StandbyFileRollover<>("Test", this::slowlyCreateFile, discardedFiles::add, readyLatch::countDown);
+
+        // The size jumped straight past the limit, so there is no standby file yet
+        assertNull(rollover.check(ROLLOVER_SIZE + 1, ROLLOVER_SIZE));
+
+        assertTrue(readyLatch.await(5, TimeUnit.SECONDS));
+        assertEquals("file-1", rollover.takeStandbyIfRolloverPending());
+        assertNull(rollover.takeStandbyIfRolloverPending());
+    }
+
+    @Test
+    public void discardsTheStandbyFileWhenCancelled() throws InterruptedException
+    {
+        rollover = new StandbyFileRollover<>("Test", this::slowlyCreateFile, discardedFiles::add, () -> {
+        });
+
+        // Cancelled while the file is still being created
+        assertNull(rollover.check(950, ROLLOVER_SIZE));
+        rollover.cancel();
+        waitFor(() -> discardedFiles.size() == 1);
+        assertEquals(List.of("file-1"), discardedFiles);
+
+        // Cancelled once the file is ready
+        assertNull(rollover.check(950, ROLLOVER_SIZE));
+        waitFor(rollover::isStandbyReady);
+        rollover.cancel();
+        assertEquals(List.of("file-1", "file-2"), discardedFiles);
+
+        // Nothing is created below the threshold, or when rollover is turned off
+        assertNull(rollover.check(800, ROLLOVER_SIZE));
+        assertNull(rollover.check(5_000, 0));
+        Thread.sleep(FILE_CREATION_MS * 2);
+        assertEquals(3, fileNumbers.get());
+    }
+
+    @Test
+    public void usesTheStandbyFileThatWasAlreadyCreated()
+    {
+        rollover = new StandbyFileRollover<>("Test", this::slowlyCreateFile, discardedFiles::add, () -> {
+        });
+
+        assertNull(rollover.check(900, ROLLOVER_SIZE));
+        waitFor(rollover::isStandbyReady);
+        assertEquals("file-1", rollover.check(1_000, ROLLOVER_SIZE));
+        assertTrue(discardedFiles.isEmpty());
+    }
+
+    @Test
+    public void runsBackgroundTasksAfterTheStandbyFileThatIsBeingCreated() throws InterruptedException
+    {
+        rollover = new StandbyFileRollover<>("Test", this::slowlyCreateFile, discardedFiles::add, () -> {
+        });
+
+        assertNull(rollover.check(900, ROLLOVER_SIZE));
+        final CountDownLatch taskLatch = new CountDownLatch(1);
+        final boolean[] standbyReadyForTask = {false};
+        rollover.runInBackground(() -> {
+            standbyReadyForTask[0] = rollover.isStandbyReady();
+            taskLatch.countDown();
+        });
+
+        assertTrue(taskLatch.await(5, TimeUnit.SECONDS));
+        assertTrue(standbyReadyForTask[0]);
+    }
+
+    private String slowlyCreateFile() throws InterruptedException
+    {
+        Thread.sleep(FILE_CREATION_MS);
+        return "file-" + fileNumbers.getAndIncrement();
+    }
+
+    private static void waitFor(BooleanSupplier condition)
+    {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean())
+        {
+            if (System.nanoTime() > deadline) throw new AssertionError("Timed out waiting for the condition");
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.craxiom.networksurvey.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.craxiom.messaging.BluetoothRecord;
+import com.craxiom.messaging.BluetoothRecordData;
+import com.craxiom.messaging.GnssRecord;
+import com.craxiom.messaging.GnssRecordData;
+import com.craxiom.messaging.LteRecord;
+import com.craxiom.messaging.LteRecordData;
+import com.craxiom.messaging.WifiBeaconRecord;
+import com.craxiom.messaging.WifiBeaconRecordData;
+import com.craxiom.messaging.gnss.Constellation;
+import com.craxiom.networksurvey.model.SurveyRecordEnvelope;
+import com.google.protobuf.FloatValue;
+import com.google.protobuf.Int32Value;
+import com.google.protobuf.Message;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SurveyLogReaderTest
+{
+    private static final int RECORD_COUNT = 2_000;
+    private static final int INDEX_INTERVAL_RECORDS = 100;
+    // The entry type, the varint length, and the index block
+    private static final int INDEX_ENTRY_SIZE = 2 + SurveyLogIndexBlock.ENCODED_SIZE;
+    private static final long START_TIME_MS = 1_704_067_200_000L; // 2024-01-01T00:00:00Z
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void readsBackEveryRecordInOrder() throws IOException
+    {
+        final List<Message> records = createRecords();
+        final File logFile = writeLog(records, true);
+
+        try (SurveyLogReader reader = SurveyLogReader.open(logFile))
+        {
+            assertTrue(reader.isComplete());
+            assertEquals("Network Survey version=test", reader.getCreator());
+            assertEquals(RECORD_COUNT / INDEX_INTERVAL_RECORDS, reader.getIndexBlocks().size());
+
+            final List<SurveyLogReader.Entry> entries = readAll(reader, new SurveyLogReader.Query());
+            assertEquals(records.size(), entries.size());
+            for (int i = 0; i < records.size(); i++)
+            {
+                final SurveyLogReader.Entry entry = entries.get(i);
+                assertEquals(records.get(i), entry.getRecord());
+                assertEquals(typeOf(records.get(i)), entry.getType());
+                assertEquals(records.get(i).toByteString(), entry.getEnvelope().getWireBytes());
+            }
+        }
+    }
+
+    @Test
+    public void queriesReturnTheSameRecordsAsFilteringEveryRecord() throws IOException
+    {
+        final List<Message> records = createRecords();
+        final File logFile = writeLog(records, true);
+
+        final long startTimeMs = START_TIME_MS + 500_000;
+        final long endTimeMs = START_TIME_MS + 800_000;
+        final SurveyLogReader.Query timeQuery = new SurveyLogReader.Query()
+                .withTypes(SurveyLogRecordType.LTE)
+                .withTimeRange(startTimeMs, endTimeMs);
+        final SurveyLogReader.Query boundsQuery = new SurveyLogReader.Query()
+                .withBounds(51.5005, -0.1210, 51.5010, -0.1200);
+
+        final List<Message> expectedTime = new ArrayList<>();
+        final List<Message> expectedBounds = new ArrayList<>();
+        for (Message record : records)
+        {
+            final SurveyLogRecordType type = typeOf(record);
+            final long timeMs = SurveyLogWriter.parseTime(type.getDeviceTime(record));
+            if (type == SurveyLogRecordType.LTE && timeMs >= startTimeMs && timeMs <= endTimeMs)
+            {
+                expectedTime.add(record);
+            }
+
+            final double latitude = type.getLatitude(record);
+            final double longitude = type.getLongitude(record);
+            if (SurveyLogIndexBlock.hasLocation(latitude, longitude) && latitude >= 51.5005 && latitude <= 51.5010
+                    && longitude >= -0.1210 && longitude <= -0.1200)
+            {
+                expectedBounds.add(record);
+            }
+        }
+        assertFalse(expectedTime.isEmpty());
+        assertFalse(expectedBounds.isEmpty());
+
+        try (SurveyLogReader reader = SurveyLogReader.open(logFile))
+        {
+            assertEquals(expectedTime, toRecords(readAll(reader, timeQuery)));
+            assertEquals(expectedBounds, toRecords(readAll(reader, boundsQuery)));
+
+            // The index should rule out most of the file for the time query
+            int matchingBlocks = 0;
+            for (SurveyLogIndexBlock indexBlock : reader.getIndexBlocks())
+            {
+                if (timeQuery.matches(indexBlock)) matchingBlocks++;
+            }
+            assertTrue("Read " + matchingBlocks + " index blocks", matchingBlocks < reader.getIndexBlocks().size() / 2);
+        }
+    }
+
+    @Test
+    public void readsTheCompleteRecordsOfAFileThatWasNeverClosed() throws IOException
+    {
+        final List<Message> records = createRecords();
+        final File logFile = writeLog(records, false);
+
+        // The record count is a multiple of the index interval, so the last record is followed by an index block. Cut
+        // that block off and the last record in half, the same as if the app was killed in the middle of a write.
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "rw"))
+        {
+            file.setLength(file.length() - INDEX_ENTRY_SIZE - records.get(records.size() - 1).getSerializedSize() / 2);
+        }
+
+        try (SurveyLogReader reader = SurveyLogReader.open(logFile))
+        {
+            assertFalse(reader.isComplete());
+            assertEquals((RECORD_COUNT - 1) / INDEX_INTERVAL_RECORDS, reader.getIndexBlocks().size());
+            assertEquals(records.subList(0, records.size() - 1), toRecords(readAll(reader, new SurveyLogReader.Query())));
+        }
+    }
+
+    @Test
+    public void convertsToOneCsvFilePerRecordType() throws IOException
+    {
+        final List<Message> records = createRecords();
+        final File logFile = writeLog(records, true);
+
+        final List<File> csvFiles = SurveyLogCsvConverter.convert(logFile, temporaryFolder.newFolder("csv"));
+        assertEquals(4, csvFiles.size());
+
+        final File lteFile = csvFiles.get(0);
+        assertEquals("craxiom-test-lte.csv", lteFile.getName());
+
+        final List<String> lines = Files.readAllLines(lteFile.toPath(), StandardCharsets.UTF_8);
+        assertTrue(lines.get(0).startsWith("# Converted from a protobuf survey log created by Network Survey"));
+        assertEquals(String.join(",", SurveyLogCsvConverter.getHeaders(SurveyLogRecordType.LTE)), lines.get(1));
+
+        final LteRecord firstLte = (LteRecord) records.get(0);
+        final String[] row = SurveyLogCsvConverter.toRow(firstLte);
+        final List<String> headers = List.of(SurveyLogCsvConverter.getHeaders(SurveyLogRecordType.LTE));
+        assertEquals(firstLte.getData().getDeviceTime(), row[headers.indexOf("deviceTime")]);
+        assertEquals("310", row[headers.indexOf("mcc")]);
+        assertEquals("-90.0", row[headers.indexOf("rsrp")]);
+        assertEquals("", row[headers.indexOf("cqi")]);
+        assertEquals(String.join(",", row), lines.get(2));
+    }
+
+    private File writeLog(List<Message> records, boolean close) throws IOException
+    {
+        final File logFile = new File(temporaryFolder.getRoot(), "craxiom-test.nspb");
+        final SurveyLogWriter writer = new SurveyLogWriter(new FileOutputStream(logFile), "Network Survey version=test",
+                INDEX_INTERVAL_RECORDS, Integer.MAX_VALUE);
+        for (Message record : records)
+        {
+            writer.append(typeOf(record), new SurveyRecordEnvelope<>(record));
+        }
+
+        if (close)
+        {
+            writer.close();
+        } else
+        {
+            writer.flush();
+        }
+        return logFile;
+    }
+
+    private static List<SurveyLogReader.Entry> readAll(SurveyLogReader reader, SurveyLogReader.Query query) throws IOException
+    {
+        final List<SurveyLogReader.Entry> entries = new ArrayList<>();
+        reader.read(query, entries::add);
+        return entries;
+    }
+
+    private static List<Message> toRecords(List<SurveyLogReader.Entry> entries)
+    {
+        final List<Message> records = new ArrayList<>(entries.size());
+        for (SurveyLogReader.Entry entry : entries)
+        {
+            records.add(entry.getRecord());
+        }
+        return records;
+    }
+
+    private static SurveyLogRecordType typeOf(Message record)
+    {
+        if (record instanceof LteRecord) return SurveyLogRecordType.LTE;
+        if (record instanceof WifiBeaconRecord) return SurveyLogRecordType.WIFI_BEACON;
+        if (record instanceof BluetoothRecord) return SurveyLogRecordType.BLUETOOTH;
+        return SurveyLogRecordType.GNSS;
+    }
+
+    /**
+     * Creates a drive heading north east, with one record a second that cycles through the record types.
+     */
+    private static List<Message> createRecords()
+    {
+        final List<Message> records = new ArrayList<>(RECORD_COUNT);
+        for (int i = 0; i < RECORD_COUNT; i++)
+        {
+            final String deviceTime = Instant.ofEpochMilli(START_TIME_MS + i * 1_000L).atOffset(ZoneOffset.UTC).toString();
+            final double latitude = 51.5 + i / 1e6;
+            final double longitude = -0.121 + i / 1e6;
+
+            switch (i % 4)
+            {
+                case 0 -> records.add(LteRecord.newBuilder()
+                        .setVersion("1.0")
+                        .setMessageType("LteRecord")
+                        .setData(LteRecordData.newBuilder()
+                                .setDeviceSerialNumber("serial")
+                                .setDeviceTime(deviceTime)
+                                .setLatitude(latitude)
+                                .setLongitude(longitude)
+                                .setRecordNumber(i)
+                                .setMcc(Int32Value.of(310))
+                                .setMnc(Int32Value.of(410))
+                                .setEci(Int32Value.of(123456 + i % 50))
+                                .setPci(Int32Value.of(i % 504))
+                                .setRsrp(FloatValue.of(-90f - i % 30)))
+                        .build());
+                case 1 -> records.add(WifiBeaconRecord.newBuilder()
+                        .setVersion("1.0")
+                        .setMessageType("WifiBeaconRecord")
+                        .setData(WifiBeaconRecordData.newBuilder()
+                                .setDeviceTime(deviceTime)
+                                .setLatitude(latitude)
+                                .setLongitude(longitude)
+                                .setBssid("00:11:22:33:44:" + String.format("%02x", i % 256))
+                                .setSsid("Survey")
+                                .setChannel(Int32Value.of(6))
+                                .setSignalStrength(FloatValue.of(-60f)))
+                        .build());
+                case 2 -> records.add(BluetoothRecord.newBuilder()
+                        .setVersion("1.0")
+                        .setMessageType("BluetoothRecord")
+                        .setData(BluetoothRecordData.newBuilder()
+                                .setDeviceTime(deviceTime)
+                                // Some records don't have a location yet
+                                .setLatitude(i % 10 == 2 ? 0 : latitude)
+                                .setLongitude(i % 10 == 2 ? 0 : longitude)
+                                .setSourceAddress("AA:BB:CC:DD:EE:" + String.format("%02x", i % 256))
+                                .setSignalStrength(FloatValue.of(-70f)))
+                        .build());
+                default -> records.add(GnssRecord.newBuilder()
+                        .setVersion("1.0")
+                        .setMessageType("GnssRecord")
+                        .setData(GnssRecordData.newBuilder()
+                                .setDeviceTime(deviceTime)
+                                .setLatitude(latitude)
+                                .setLongitude(longitude)
+                                .setConstellation(Constellation.GPS))
+                        .build());
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,214 @@
+package com.craxiom.networksurvey.mqtt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.craxiom.messaging.BluetoothRecord;
+import com.craxiom.messaging.BluetoothRecordData;
+import com.craxiom.messaging.DeviceStatus;
+import com.craxiom.messaging.LteRecord;
+import com.craxiom.messaging.LteRecordData;
+import com.craxiom.messaging.WifiBeaconRecord;
+import com.craxiom.messaging.WifiBeaconRecordData;
+import com.craxiom.networksurvey.model.SurveyRecordEnvelope;
+import com.google.protobuf.FloatValue;
+import com.google.protobuf.Int32Value;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MqttRecordPublisherTest
+{
+    private static final String BLUETOOTH_TOPIC = "bluetooth_message";
+    private static final String BATCH_TOPIC = "survey_batch";
+    private static final int SCAN_SIZE = 300;
+
+    private final JsonFormat.Printer jsonPrinter = JsonFormat.printer().preservingProtoFieldNames().omittingInsignificantWhitespace();
+    private final MqttRecordSerializer serializer = new MqttRecordSerializer();
+
+    @Test
+    public void setsTheDeviceNameTheSameAsCopyingTheRecord() throws InvalidProtocolBufferException
+    {
+        final List<Message> records = new ArrayList<>();
+        records.add(lteRecord(1));
+        records.add(LteRecord.newBuilder().setVersion("1.0").setMessageType("LteRecord").build());
+        records.add(LteRecord.getDefaultInstance());
+        records.add(bluetoothRecord(2));
+        records.add(bluetoothRecord(3).toBuilder().setData(bluetoothRecord(3).getData().toBuilder().setDeviceName("old name")).build());
+        records.add(WifiBeaconRecord.newBuilder().setMessageType("WifiBeaconRecord")
+                .setData(WifiBeaconRecordData.newBuilder().setDeviceSerialNumber("serial").setSsid("{\"not\":\"json\"}")).build());
+        records.add(DeviceStatus.newBuilder().setMessageType("DeviceStatus").build());
+
+        final String[] deviceNames = {null, "", "Pixel", "A \"quoted\" name {with} [brackets], \\ and <unicode> \u00e9"};
+        for (Message record : records)
+        {
+            for (String deviceName : deviceNames)
+            {
+                assertEquals(copyAndPrint(record, deviceName), serializer.toJson(record, deviceName));
+                assertEquals(copyAndPrint(record, deviceName), serializer.toJson(new SurveyRecordEnvelope<>(record), deviceName));
+            }
+        }
+    }
+
+    @Test
+    public void publishesEachRecordWithoutABatchTopic()
+    {
+        final StandInBroker broker = new StandInBroker();
+        final MqttRecordPublisher publisher = new MqttRecordPublisher(broker);
+
+        publisher.publishRecords(BLUETOOTH_TOPIC, bluetoothScan(), "Pixel");
+
+        assertEquals(SCAN_SIZE, broker.topics.size());
+        for (String topic : broker.topics)
+        {
+            assertEquals(BLUETOOTH_TOPIC, topic);
+        }
+    }
+
+    @Test
+    public void publishesOneBatchPerScanWithABatchTopic() throws InvalidProtocolBufferException
+    {
+        final StandInBroker broker = new StandInBroker();
+        final MqttRecordPublisher publisher = new MqttRecordPublisher(broker);
+        publisher.setBatchTopic(BATCH_TOPIC);
+
+        final List<BluetoothRecord> scan = bluetoothScan();
+        publisher.publishRecords(BLUETOOTH_TOPIC, scan, "Pixel");
+        publisher.publishRecords(BLUETOOTH_TOPIC, new ArrayList<BluetoothRecord>(), "Pixel");
+
+        assertEquals(1, broker.topics.size());
+        assertEquals(BATCH_TOPIC, broker.topics.get(0));
+
+        final StringBuilder expected = new StringBuilder("{\"messageType\":\"SurveyRecordBatch\",\"topic\":\"bluetooth_message\",\"records\":[");
+        for (int i = 0; i < scan.size(); i++)
+        {
+            if (i > 0) expected.append(',');
+            expected.append(copyAndPrint(scan.get(i), "Pixel"));
+        }
+        expected.append("]}");
+        assertEquals(expected.toString(), broker.payloads.get(0));
+
+        // Single records are never batched
+        publisher.publishRecord(BLUETOOTH_TOPIC, scan.get(0), "Pixel");
+        assertEquals(BLUETOOTH_TOPIC, broker.topics.get(1));
+    }
+
+    /**
+     * Publishes the same scan to two stand-in brokers, the way two MQTT connections would, and measures what reaches
+     * them. Each record's device named JSON is created once and then shared, rather than being copied and printed again
+     * for each publish.
+     */
+    @Test
+    public void publishesTheDeviceNamedJsonCachedInEachEnvelope() throws InvalidProtocolBufferException
+    {
+        final List<SurveyRecordEnvelope<BluetoothRecord>> scan = new ArrayList<>();
+        long expectedBytes = 0;
+        for (BluetoothRecord record : bluetoothScan())
+        {
+            scan.add(new SurveyRecordEnvelope<>(record));
+            expectedBytes += copyAndPrint(record, "Pixel").getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        final StandInBroker firstBroker = new StandInBroker();
+        final StandInBroker secondBroker = new StandInBroker();
+        new MqttRecordPublisher(firstBroker).publishEnvelopes(BLUETOOTH_TOPIC, scan, "Pixel");
+        new MqttRecordPublisher(secondBroker).publishEnvelopes(BLUETOOTH_TOPIC, scan, "Pixel");
+
+        assertEquals(SCAN_SIZE, firstBroker.payloads.size());
+        assertEquals(SCAN_SIZE, secondBroker.payloads.size());
+        assertEquals(expectedBytes, firstBroker.payloadBytes());
+        assertEquals(expectedBytes, secondBroker.payloadBytes());
+        for (int i = 0; i < SCAN_SIZE; i++)
+        {
+            assertSame(scan.get(i).getJson("Pixel"), firstBroker.payloads.get(i));
+            assertSame(firstBroker.payloads.get(i), secondBroker.payloads.get(i));
+        }
+
+        // The JSON without the device name is still the plain record JSON
+        assertEquals(copyAndPrint(scan.get(0).getRecord(), null), scan.get(0).getJson());
+    }
+
+    private String copyAndPrint(Message record, String deviceName) throws InvalidProtocolBufferException
+    {
+        if (deviceName == null) return jsonPrinter.print(record);
+
+        final Message.Builder builder = record.toBuilder();
+        final Message.Builder dataBuilder = builder.getFieldBuilder(record.getDescriptorForType().findFieldByName("data"));
+        dataBuilder.setField(dataBuilder.getDescriptorForType().findFieldByName("deviceName"), deviceName);
+        return jsonPrinter.print(builder.build());
+    }
+
+    private static List<BluetoothRecord> bluetoothScan()
+    {
+        final List<BluetoothRecord> records = new ArrayList<>();
+        for (int i = 0; i < SCAN_SIZE; i++)
+        {
+            records.add(bluetoothRecord(i));
+        }
+        return records;
+    }
+
+    private static BluetoothRecord bluetoothRecord(int recordNumber)
+    {
+        return BluetoothRecord.newBuilder()
+                .setVersion("1.0")
+                .setMessageType("BluetoothRecord")
+                .setData(BluetoothRecordData.newBuilder()
+                        .setDeviceSerialNumber("serial")
+                        .setDeviceTime("2024-01-01T00:00:00.000Z")
+                        .setLatitude(51.5)
+                        .setLongitude(-0.12)
+                        .setRecordNumber(recordNumber)
+                        .setSourceAddress(String.format("AA:BB:CC:DD:%02X:%02X", recordNumber >> 8, recordNumber & 0xFF))
+                        .setSignalStrength(FloatValue.of(-70f - recordNumber % 20))
+                        .setOtaDeviceName("Device " + recordNumber))
+                .build();
+    }
+
+    private static LteRecord lteRecord(int recordNumber)
+    {
+        return LteRecord.newBuilder()
+                .setVersion("1.0")
+                .setMessageType("LteRecord")
+                .setData(LteRecordData.newBuilder()
+                        .setDeviceSerialNumber("serial")
+                        .setDeviceTime("2024-01-01T00:00:00.000Z")
+                        .setLatitude(51.5)
+                        .setRecordNumber(recordNumber)
+                        .setMcc(Int32Value.of(310))
+                        .setEarfcn(Int32Value.of(5230)))
+                .build();
+    }
+
+    /**
+     * Stands in for the MQTT broker by keeping everything that is published.
+     */
+    private static final class StandInBroker implements MqttRecordPublisher.MessageSink
+    {
+        final List<String> topics = new ArrayList<>();
+        final List<String> payloads = new ArrayList<>();
+
+        @Override
+        public void publish(String topic, String json)
+        {
+            topics.add(topic);
+            payloads.add(json);
+        }
+
+        long payloadBytes()
+        {
+            long bytes = 0;
+            for (String payload : payloads)
+            {
+                bytes += payload.getBytes(StandardCharsets.UTF_8).length;
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.craxiom.networksurvey.mqtt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt3.Mqtt3AsyncClient;
+import com.hivemq.client.mqtt.mqtt3.Mqtt3Client;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+public class MqttStoreAndForwardTest
+{
+    private static final String TOPIC = "bluetooth_message";
+    private static final String TARGET = "tcp://broker.example.com:1883/survey/";
+    private static final int DRAIN_RATE_PER_SECOND = 200;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<MqttStoreAndForward> toClose = new ArrayList<>();
+
+    @After
+    public void tearDown()
+    {
+        for (MqttStoreAndForward storeAndForward : toClose)
+        {
+            storeAndForward.close();
+        }
+    }
+
+    @Test
+    public void replaysTheMessagesFromADeadZoneInOrderAtTheDrainRate() throws Exception
+    {
+        final EmbeddedBroker broker = new EmbeddedBroker();
+        broker.start();
+
+        final Mqtt3AsyncClient client = Mqtt3Client.builder()
+                .identifier("store-and-forward-test")
+                .serverHost(InetAddress.getLoopbackAddress().getHostAddress())
+                .serverPort(broker.port)
+                .automaticReconnect()
+                .initialDelay(50, TimeUnit.MILLISECONDS)
+                .maxDelay(200, TimeUnit.MILLISECONDS)
+                .applyAutomaticReconnect()
+                .buildAsync();
+        client.connect().get(5, TimeUnit.SECONDS);
+
+        try
+        {
+            final File outboxDirectory = temporaryFolder.newFolder();
+            final MqttStoreAndForward storeAndForward = open(new MqttStoreAndForward(
+                    (topic, json) -> client.publishWith()
+                            .topic(topic)
+                            .qos(MqttQos.AT_LEAST_ONCE)
+                            .payload(json.getBytes(StandardCharsets.UTF_8))
+                            .send(),
+                    () -> client.getState().isConnected()), outboxDirectory, 1024 * 1024);
+
+            publish(storeAndForward, 0, 10);
+            assertTrue(waitFor(() -> broker.received.size() == 10));
+            assertEquals(0, storeAndForward.getOutboxSize());
+
+            // Drive into the dead zone
+            broker.stop();
+            assertTrue(waitFor(() -> !client.getState().isConnected()));
+
+            publish(storeAndForward, 10, 210);
+            assertEquals(200, storeAndForward.getOutboxSize());
+            assertEquals(10, broker.received.size());
+
+            // Back in coverage; the client reconnects on its own and the outbox is replayed
+            final long reconnectNanos = System.nanoTime();
+            broker.start();
+            assertTrue(waitFor(() -> broker.received.size() == 210));
+            final long drainMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - reconnectNanos);
+
+            assertEquals(expectedPayloads(0, 210), new ArrayList<>(broker.received));
+            assertEquals(0, storeAndForward.getOutboxSize());
+            assertEquals(0, storeAndForward.getDroppedCount());
+            assertTrue(waitFor(() -> countSegmentBytes(outboxDirectory) == 0));
+
+            // 200 messages at 200 per second should take about a second, rather than being sent all at once
+            assertTrue("The outbox drained in " + drainMillis + "ms", drainMillis >= 800);
+        } finally
+        {
+            client.disconnect();
+            broker.stop();
+        }
+    }
+
+    @Test
+    public void keepsTheOutboxAcrossARestart() throws IOException
+    {
+        final File outboxDirectory = temporaryFolder.newFolder();
+        final List<String> published = Collections.synchronizedList(new ArrayList<>());
+
+        final MqttStoreAndForward offline = new MqttStoreAndForward((topic, json) -> published.add(json), () -> false);
+        open(offline, outboxDirectory, 1024 * 1024);
+        publish(offline, 0, 50);
+        offline.close();
+        assertTrue(published.isEmpty());
+
+        final MqttStoreAndForward restarted = open(new MqttStoreAndForward((topic, json) -> published.add(json), () -> true),
+                outboxDirectory, 1024 * 1024);
+        assertEquals(50, restarted.getOutboxSize());
+
+        // New messages go behind the ones that were already waiting
+        publish(restarted, 50, 60);
+
+        assertTrue(waitFor(() -> published.size() == 60));
+        assertEquals(expectedPayloads(0, 60), new ArrayList<>(published));
+        assertTrue(waitFor(() -> countSegmentBytes(outboxDirectory) == 0));
+    }
+
+    @Test
+    public void readsTheSegmentBeingWrittenWithoutStartingANewOne() throws Exception
+    {
+        final File outboxDirectory = temporaryFolder.newFolder();
+        final List<String> published = Collections.synchronizedList(new ArrayList<>());
+        final AtomicBoolean connected = new AtomicBoolean();
+
+        final MqttStoreAndForward storeAndForward = open(new MqttStoreAndForward(
+                (topic, json) -> published.add(json), connected::get), outboxDirectory, 1024 * 1024);
+        publish(storeAndForward, 0, 20);
+        connected.set(true);
+
+        // Keep adding while the outbox is replayed so the replay reads the segment that is still being written to
+        for (int i = 20; i < 200; i++)
+        {
+            publish(storeAndForward, i, i + 1);
+            assertEquals(1, countSegmentFiles(outboxDirectory));
+            Thread.sleep(5);
+        }
+
+        assertTrue(waitFor(() -> published.size() == 200));
+        assertEquals(expectedPayloads(0, 200), new ArrayList<>(published));
+        assertEquals(1, countSegmentFiles(outboxDirectory));
+    }
+
+    @Test
+    public void deletesTheOutboxForADifferentTarget() throws IOException
+    {
+        final File outboxDirectory = temporaryFolder.newFolder();
+        final List<String> published = Collections.synchronizedList(new ArrayList<>());
+
+        final MqttStoreAndForward offline = new MqttStoreAndForward((topic, json) -> published.add(json), () -> false);
+        open(offline, outboxDirectory, 1024 * 1024);
+        publish(offline, 0, 50);
+        offline.close();
+
+        final MqttStoreAndForward otherBroker = new MqttStoreAndForward((topic, json) -> published.add(json), () -> true);
+        otherBroker.open(outboxDirectory, "tcp://other.example.com:1883/survey/", 1024 * 1024, DRAIN_RATE_PER_SECOND);
+        toClose.add(otherBroker);
+        assertEquals(0, otherBroker.getOutboxSize());
+        assertEquals(0, countSegmentFiles(outboxDirectory));
+
+        publish(otherBroker, 50, 60);
+        assertEquals(expectedPayloads(50, 60), new ArrayList<>(published));
+    }
+
+    @Test
+    public void dropsTheOldestMessagesWhenTheOutboxIsFull() throws IOException
+    {
+        final File outboxDirectory = temporaryFolder.newFolder();
+        final List<String> published = Collections.synchronizedList(new ArrayList<>());
+        final AtomicBoolean connected = new AtomicBoolean();
+
+        final MqttStoreAndForward storeAndForward = open(new MqttStoreAndForward(
+                (topic, json) -> published.add(json), connected::get), outboxDirectory, 4 * 1024);
+        publish(storeAndForward, 0, 1_000);
+
+        assertTrue(storeAndForward.getDroppedCount() > 0);
+        assertEquals(1_000, storeAndForward.getOutboxSize() + storeAndForward.getDroppedCount());
+
+        final int kept = storeAndForward.getOutboxSize();
+        connected.set(true);
+        assertTrue(waitFor(() -> published.size() == kept));
+
+        // The newest messages are always kept, and the order is unchanged
+        assertEquals(expectedPayloads(1_000 - kept, 1_000), new ArrayList<>(published));
+    }
+
+    private MqttStoreAndForward open(MqttStoreAndForward storeAndForward, File directory, long maxOutboxBytes)
+    {
+        storeAndForward.open(directory, TARGET, maxOutboxBytes, DRAIN_RATE_PER_SECOND);
+        toClose.add(storeAndForward);
+        return storeAndForward;
+    }
+
+    private static void publish(MqttStoreAndForward storeAndForward, int from, int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            storeAndForward.publish(TOPIC, payload(i));
+        }
+    }
+
+    private static String payload(int recordNumber)
+    {
+        return "{\"messageType\":\"BluetoothRecord\",\"data\":{\"recordNumber\":" + recordNumber + "}}";
+    }
+
+    private static List<String> expectedPayloads(int from, int to)
+    {
+        final List<String> payloads = new ArrayList<>();
+        for (int i = from; i < to; i++)
+        {
+            payloads.add(payload(i));
+        }
+        return payloads;
+    }
+
+    private static File[] listSegmentFiles(File directory)
+    {
+        final File[] files = directory.listFiles((dir, name) -> name.endsWith(MqttOutbox.SEGMENT_FILE_EXTENSION));
+        return files == null ? new File[0] : files;
+    }
+
+    private static int countSegmentFiles(File directory)
+    {
+        return listSegmentFiles(directory).length;
+    }
+
+    private static long countSegmentBytes(File directory)
+    {
+        long bytes = 0;
+        for (File file : listSegmentFiles(directory))
+        {
+            bytes += file.length();
+        }
+        return bytes;
+    }
+
+    private static boolean waitFor(BooleanSupplier condition)
+    {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean())
+        {
+            if (System.nanoTime() > deadline) return false;
+            try
+            {
+                Thread.sleep(10);
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A minimal MQTT 3.1.1 broker that accepts any connection and keeps the payload of every message published to it.
+     * It can be stopped and started again on the same port to simulate losing the connection to the broker.
+     */
+    private static final class EmbeddedBroker
+    {
+        private static final int CONNECT = 1;
+        private static final int PUBLISH = 3;
+        private static final int PINGREQ = 12;
+        private static final int DISCONNECT = 14;
+
+        final List<String> received = new CopyOnWriteArrayList<>();
+        private final List<Socket> clients = new CopyOnWriteArrayList<>();
+        private volatile ServerSocket serverSocket;
+        int port;
+
+        void start() throws IOException
+        {
+            final ServerSocket socket = new ServerSocket();
+            socket.setReuseAddress(true);
+            socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            port = socket.getLocalPort();
+            serverSocket = socket;
+
+            final Thread acceptThread = new Thread(() -> {
+                while (!socket.isClosed())
+                {
+                    try
+                    {
+                        final Socket client = socket.accept();
+                        clients.add(client);
+                        final Thread clientThread = new Thread(() -> serve(client), "Embedded MQTT Broker Client");
+                        clientThread.setDaemon(true);
+                        clientThread.start();
+                    } catch (IOException e)
+                    {
+                        return;
+                    }
+                }
+            }, "Embedded MQTT Broker");
+            acceptThread.setDaemon(true);
+            acceptThread.start();
+        }
+
+        void stop() throws IOException
+        {
+            final ServerSocket socket = serverSocket;
+            if (socket != null) socket.close();
+            for (Socket client : clients)
+            {
+                client.close();
+            }
+            clients.clear();
+        }
+
+        private void serve(Socket client)
+        {
+            try (Socket ignored = client)
+            {
+                final DataInputStream in = new DataInputStream(client.getInputStream());
+                final OutputStream out = client.getOutputStream();
+                while (true)
+                {
+                    final int header = in.readUnsignedByte();
+                    final byte[] body = new byte[readRemainingLength(in)];
+                    in.readFully(body);
+
+                    switch (header >> 4)
+                    {
+                        case CONNECT:
+                            out.write(new byte[]{0x20, 0x02, 0x00, 0x00});
+                            break;
+                        case PUBLISH:
+                            final int qos = (header >> 1) & 0x03;
+                            final int topicLength = ((body[0] & 0xFF) << 8) | (body[1] & 0xFF);
+                            int offset = 2 + topicLength;
+                            if (qos > 0)
+                            {
+                                out.write(new byte[]{0x40, 0x02, body[offset], body[offset + 1]});
+                                offset += 2;
+                            }
+                            received.add(new String(body, offset, body.length - offset, StandardCharsets.UTF_8));
+                            break;
+                        case PINGREQ:
+                            out.write(new byte[]{(byte) 0xD0, 0x00});
+                            break;
+                        case DISCONNECT:
+                            return;
+                        default:
+                            break;
+                    }
+                    out.flush();
+                }
+            } catch (IOException e)
+            {
+                // The client disconnected or the broker was stopped
+            }
+        }
+
+        private static int readRemainingLength(DataInputStream in) throws IOException
+        {
+            int length = 0;
+            int multiplier = 1;
+            int encoded;
+            do
+            {
+                encoded = in.readUnsignedByte();
+                length += (encoded & 0x7F) * multiplier;
+                multiplier *= 128;
+            } while ((encoded & 0x80) != 0);
+            return length;
+        }
+    }
+}
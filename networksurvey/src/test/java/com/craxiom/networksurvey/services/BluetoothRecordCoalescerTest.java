@@ -0,0 +1,139 @@
+package com.craxiom.networksurvey.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.craxiom.messaging.BluetoothRecord;
+import com.craxiom.messaging.BluetoothRecordData;
+import com.google.protobuf.FloatValue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BluetoothRecordCoalescerTest
+{
+    private final List<List<BluetoothRecord>> emitted = new CopyOnWriteArrayList<>();
+    private final AtomicInteger recordNumbers = new AtomicInteger(1);
+    private BluetoothRecordCoalescer coalescer;
+
+    @After
+    public void tearDown()
+    {
+        if (coalescer != null) coalescer.stop();
+    }
+
+    @Test
+    public void emitsOneRecordPerDeviceWithTheStrongestSignal()
+    {
+        coalescer = newCoalescer(BluetoothRecordCoalescer.RssiMode.STRONGEST);
+
+        coalescer.add(Arrays.asList(record("AA", -80f, "first"), record("BB", -60f, "b"), record("AA", -50f, "second")));
+        coalescer.add(Arrays.asList(record("AA", -70f, "third"), null));
+        coalescer.flush();
+
+        assertEquals(1, emitted.size());
+        final List<BluetoothRecord> records = emitted.get(0);
+        assertEquals(2, records.size());
+
+        final BluetoothRecordData aa = records.get(0).getData();
+        assertEquals("AA", aa.getSourceAddress());
+        assertEquals(-50f, aa.getSignalStrength().getValue(), 0f);
+        assertEquals("third", aa.getOtaDeviceName()); // Everything else comes from the latest record
+        assertEquals(1, aa.getRecordNumber());
+
+        final BluetoothRecordData bb = records.get(1).getData();
+        assertEquals("BB", bb.getSourceAddress());
+        assertEquals(-60f, bb.getSignalStrength().getValue(), 0f);
+        assertEquals(2, bb.getRecordNumber());
+
+        assertEquals(4, coalescer.getRecordsIn());
+        assertEquals(2, coalescer.getRecordsOut());
+    }
+
+    @Test
+    public void canUseTheLatestOrAverageSignal()
+    {
+        final List<BluetoothRecord> samples = Arrays.asList(record("AA", -80f, "a"), record("AA", -50f, "a"),
+                record("AA", null, "a"), record("AA", -62f, "a"));
+
+        coalescer = newCoalescer(BluetoothRecordCoalescer.RssiMode.LATEST);
+        coalescer.add(samples);
+        coalescer.flush();
+        assertEquals(-62f, emitted.get(0).get(0).getData().getSignalStrength().getValue(), 0f);
+
+        coalescer = newCoalescer(BluetoothRecordCoalescer.RssiMode.AVERAGE);
+        coalescer.add(samples);
+        coalescer.flush();
+        assertEquals(-64f, emitted.get(1).get(0).getData().getSignalStrength().getValue(), 0.001f);
+    }
+
+    @Test
+    public void leavesTheSignalUnsetIfNoRecordHadOne()
+    {
+        coalescer = newCoalescer(BluetoothRecordCoalescer.RssiMode.AVERAGE);
+        coalescer.add(Arrays.asList(record("AA", null, "a"), record("AA", null, "a")));
+        coalescer.flush();
+
+        assertFalse(emitted.get(0).get(0).getData().hasSignalStrength());
+    }
+
+    @Test
+    public void emitsEachWindowOnItsOwn() throws InterruptedException
+    {
+        coalescer = new BluetoothRecordCoalescer(50, BluetoothRecordCoalescer.RssiMode.STRONGEST,
+                recordNumbers::getAndIncrement, emitted::add);
+        coalescer.start();
+
+        coalescer.add(Arrays.asList(record("AA", -80f, "a"), record("AA", -70f, "a")));
+        assertTrue(waitForEmits(1));
+        coalescer.add(Arrays.asList(record("AA", -90f, "a"), record("BB", -40f, "b")));
+        assertTrue(waitForEmits(2));
+
+        assertEquals(1, emitted.get(0).size());
+        assertEquals(-70f, emitted.get(0).get(0).getData().getSignalStrength().getValue(), 0f);
+        assertEquals(2, emitted.get(1).size());
+        assertEquals(-90f, emitted.get(1).get(0).getData().getSignalStrength().getValue(), 0f);
+
+        // Nothing is emitted for an empty window, and stopping emits whatever is left
+        coalescer.add(List.of(record("CC", -55f, "c")));
+        coalescer.stop();
+        final List<String> lastAddresses = new ArrayList<>();
+        emitted.get(emitted.size() - 1).forEach(record -> lastAddresses.add(record.getData().getSourceAddress()));
+        assertEquals(List.of("CC"), lastAddresses);
+        coalescer = null;
+    }
+
+    private BluetoothRecordCoalescer newCoalescer(BluetoothRecordCoalescer.RssiMode rssiMode)
+    {
+        return new BluetoothRecordCoalescer(TimeUnit.MINUTES.toMillis(1), rssiMode, recordNumbers::getAndIncrement, emitted::add);
+    }
+
+    private boolean waitForEmits(int count) throws InterruptedException
+    {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (emitted.size() < count)
+        {
+            if (System.nanoTime() > deadline) return false;
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    private static BluetoothRecord record(String sourceAddress, Float rssi, String otaDeviceName)
+    {
+        final BluetoothRecordData.Builder dataBuilder = BluetoothRecordData.newBuilder()
+                .setSourceAddress(sourceAddress)
+                .setOtaDeviceName(otaDeviceName);
+        if (rssi != null) dataBuilder.setSignalStrength(FloatValue.newBuilder().setValue(rssi).build());
+
+        return BluetoothRecord.newBuilder().setMessageType("BluetoothRecord").setData(dataBuilder).build();
+    }
+}
@@ -0,0 +1,85 @@
+package com.craxiom.networksurvey.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.location.GnssStatus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class GnssMeasurementAggregatorTest
+{
+    private static final double GPS_L1_HZ = 1_575_420_000d;
+    private static final double GPS_L5_HZ = 1_176_450_000d;
+
+    private final GnssMeasurementAggregator<String> aggregator = new GnssMeasurementAggregator<>();
+    private final List<String> summaries = new ArrayList<>();
+
+    @Test
+    public void summarizesEachSignalOverTheInterval()
+    {
+        aggregator.onEvent();
+        aggregator.addMeasurement(GnssStatus.CONSTELLATION_GPS, 5, GPS_L1_HZ, 30, "gps5 L1 first");
+        aggregator.addMeasurement(GnssStatus.CONSTELLATION_GPS, 5, GPS_L5_HZ, 25, "gps5 L5");
+        aggregator.onEvent();
+        aggregator.addMeasurement(GnssStatus.CONSTELLATION_GPS, 5, GPS_L1_HZ, 40, "gps5 L1 second");
+        aggregator.addMeasurement(GnssStatus.CONSTELLATION_GALILEO, 5, GPS_L1_HZ, 35, "gal5");
+        aggregator.onEvent();
+        aggregator.addMeasurement(GnssStatus.CONSTELLATION_GPS, 5, GPS_L1_HZ, 35, "gps5 L1 third");
+
+        assertEquals(3, aggregator.getEventCount());
+        assertEquals(3, aggregator.getSignalCount());
+
+        drain();
+        assertEquals(List.of("gps5 L1 third 30.0/35.0/40.0 x3 agc=NaN", "gps5 L5 25.0/25.0/25.0 x1 agc=NaN",
+                "gal5 35.0/35.0/35.0 x1 agc=NaN"), summaries);
+
+        // Everything is cleared for the next interval
+        assertEquals(0, aggregator.getEventCount());
+        summaries.clear();
+        aggregator.addMeasurement(GnssStatus.CONSTELLATION_GPS, 5, GPS_L1_HZ, 20, "next");
+        drain();
+        assertEquals(List.of("next 20.0/20.0/20.0 x1 agc=NaN"), summaries);
+    }
+
+    @Test
+    public void matchesTheAgcByConstellationAndFrequency()
+    {
+        aggregator.putAgc(GnssStatus.CONSTELLATION_GPS, (long) GPS_L1_HZ, 40);
+        aggregator.putAgc(GnssStatus.CONSTELLATION_GPS, (long) GPS_L1_HZ, 42); // The latest level wins
+        aggregator.putAgc(GnssStatus.CONSTELLATION_GLONASS, 1_602_000_000L, 47);
+
+        assertEquals(42f, aggregator.getAgc(GnssStatus.CONSTELLATION_GPS, (long) GPS_L1_HZ), 0f);
+        assertTrue(Float.isNaN(aggregator.getAgc(GnssStatus.CONSTELLATION_GPS, (long) GPS_L5_HZ)));
+        // GLONASS is matched by band since each satellite has its own frequency
+        assertEquals(47f, aggregator.getAgc(GnssStatus.CONSTELLATION_GLONASS, 1_598_062_464L), 0f);
+        assertTrue(Float.isNaN(aggregator.getAgc(GnssStatus.CONSTELLATION_GLONASS, 1_246_000_000L)));
+
+        aggregator.addMeasurement(GnssStatus.CONSTELLATION_GLONASS, 3, 1_605_374_976d, 33, "glo3");
+        aggregator.addMeasurement(GnssStatus.CONSTELLATION_GPS, 7, Double.NaN, 33, "gps7 no frequency");
+        drain();
+        assertEquals(List.of("glo3 33.0/33.0/33.0 x1 agc=47.0", "gps7 no frequency 33.0/33.0/33.0 x1 agc=NaN"), summaries);
+    }
+
+    @Test
+    public void growsToFitManySignals()
+    {
+        for (int svid = 1; svid <= 200; svid++)
+        {
+            aggregator.addMeasurement(GnssStatus.CONSTELLATION_GPS, svid, GPS_L1_HZ, svid, "sv" + svid);
+        }
+        drain();
+
+        assertEquals(200, summaries.size());
+        assertEquals("sv200 200.0/200.0/200.0 x1 agc=NaN", summaries.get(199));
+    }
+
+    private void drain()
+    {
+        aggregator.drain((measurement, min, mean, max, count, agc) ->
+                summaries.add(measurement + " " + min + "/" + mean + "/" + max + " x" + count + " agc=" + agc));
+    }
+}
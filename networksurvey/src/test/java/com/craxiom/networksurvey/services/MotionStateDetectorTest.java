@@ -0,0 +1,85 @@
+package com.craxiom.networksurvey.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.craxiom.networksurvey.services.MotionStateDetector.MotionState;
+
+import org.junit.Test;
+
+public class MotionStateDetectorTest
+{
+    private static final float GRAVITY = 9.81f;
+
+    private final MotionStateDetector detector = new MotionStateDetector();
+
+    @Test
+    public void detectsStationaryFromAStillAccelerometer()
+    {
+        assertEquals(MotionState.UNKNOWN, detector.getMotionState());
+
+        // Moving to a less active state has to be held for a while first
+        long nowMs = addStillSamples(0, 10_000);
+        assertEquals(MotionState.UNKNOWN, detector.getMotionState());
+
+        addStillSamples(nowMs, MotionStateDetector.STATE_HOLD_MS);
+        assertEquals(MotionState.STATIONARY, detector.getMotionState());
+    }
+
+    @Test
+    public void leavesStationaryRightAwayWhenMovingFast()
+    {
+        addStillSamples(0, 30_000);
+        assertEquals(MotionState.STATIONARY, detector.getMotionState());
+
+        assertTrue(detector.onSpeed(15f, 30_000));
+        assertEquals(MotionState.DRIVING, detector.getMotionState());
+
+        // A short stop at a light does not change the state
+        assertFalse(detector.onSpeed(0f, 35_000));
+        assertFalse(detector.onSpeed(0f, 40_000));
+        assertEquals(MotionState.DRIVING, detector.getMotionState());
+        assertFalse(detector.onSpeed(12f, 45_000));
+    }
+
+    @Test
+    public void detectsWalkingFromTheAccelerometer()
+    {
+        long nowMs = 0;
+        for (int i = 0; i < 50; i++, nowMs += 200)
+        {
+            // Steps show up as a large swing in the acceleration magnitude
+            final float z = i % 2 == 0 ? GRAVITY + 4f : GRAVITY - 4f;
+            detector.onAcceleration(0f, 0f, z, nowMs);
+        }
+
+        assertEquals(MotionState.WALKING, detector.getMotionState());
+    }
+
+    @Test
+    public void picksTheLocationRequestForEachState()
+    {
+        assertEquals(32_000, MotionState.STATIONARY.getLocationIntervalMs(8_000));
+        assertEquals(MotionState.MAX_STATIONARY_INTERVAL_MS, MotionState.STATIONARY.getLocationIntervalMs(60_000));
+        assertEquals(200_000, MotionState.STATIONARY.getLocationIntervalMs(200_000));
+
+        assertEquals(8_000, MotionState.WALKING.getLocationIntervalMs(8_000));
+        assertEquals(8_000, MotionState.UNKNOWN.getLocationIntervalMs(8_000));
+        assertEquals(0f, MotionState.UNKNOWN.getMinDistanceMeters(), 0f);
+
+        assertEquals(MotionState.MIN_DRIVING_INTERVAL_MS, MotionState.DRIVING.getLocationIntervalMs(8_000));
+        assertEquals(15_000, MotionState.DRIVING.getLocationIntervalMs(30_000));
+        assertEquals(0f, MotionState.DRIVING.getMinDistanceMeters(), 0f);
+    }
+
+    private long addStillSamples(long startMs, long durationMs)
+    {
+        long nowMs = startMs;
+        for (; nowMs < startMs + durationMs; nowMs += 200)
+        {
+            detector.onAcceleration(0.01f, 0.02f, GRAVITY + (nowMs % 400 == 0 ? 0.02f : -0.02f), nowMs);
+        }
+        return nowMs;
+    }
+}
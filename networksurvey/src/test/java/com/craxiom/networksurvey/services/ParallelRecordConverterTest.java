@@ -0,0 +1,174 @@
+package com.craxiom.networksurvey.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+
+import com.craxiom.messaging.LteRecord;
+import com.craxiom.messaging.LteRecordData;
+import com.google.protobuf.BoolValue;
+import com.google.protobuf.FloatValue;
+import com.google.protobuf.Int32Value;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+public class ParallelRecordConverterTest
+{
+    private final List<ParallelRecordConverter> converters = new ArrayList<>();
+
+    @After
+    public void tearDown()
+    {
+        converters.forEach(ParallelRecordConverter::shutdown);
+    }
+
+    @Test
+    public void keepsTheInputOrderAndSkipsTheInvalidCells()
+    {
+        final ParallelRecordConverter converter = newConverter(4, 3);
+        final List<SyntheticCell> cells = syntheticCells(1_000);
+
+        final List<IntFunction<LteRecord>> unnumbered = converter.convert(cells, ParallelRecordConverterTest::convert);
+
+        // Numbering happens afterwards on the calling thread, the same as in the SurveyRecordProcessor
+        final List<LteRecord> records = number(unnumbered, 100);
+        final List<LteRecord> expected = number(newConverter(4, 0).convert(cells, ParallelRecordConverterTest::convert), 100);
+        assertEquals(expected, records);
+
+        int expectedPci = 0;
+        int expectedRecordNumber = 100;
+        for (LteRecord record : records)
+        {
+            if (expectedPci % 7 == 0) expectedPci++; // Every 7th cell is invalid
+            assertEquals(expectedPci++, record.getData().getPci().getValue());
+            assertEquals(expectedRecordNumber++, record.getData().getRecordNumber());
+        }
+        assertEquals(1_000 - 143, records.size());
+    }
+
+    @Test
+    public void convertsSmallBatchesOnTheCallingThread()
+    {
+        final ParallelRecordConverter converter = newConverter(16, 3);
+        final Thread caller = Thread.currentThread();
+
+        final List<Thread> threads = converter.convert(syntheticCells(15), cell -> Thread.currentThread());
+
+        assertEquals(15, threads.size());
+        threads.forEach(thread -> assertEquals(caller, thread));
+    }
+
+    @Test
+    public void throwsTheConverterException()
+    {
+        final ParallelRecordConverter converter = newConverter(4, 3);
+        try
+        {
+            converter.convert(syntheticCells(100), cell -> {
+                if (cell.pci == 90) throw new IllegalArgumentException("Bad cell " + cell.pci);
+                return cell;
+            });
+            fail("Expected the converter exception");
+        } catch (IllegalArgumentException e)
+        {
+            assertEquals("Bad cell 90", e.getMessage());
+        }
+    }
+
+    @Test
+    public void splitsLargeBatchesAcrossTheWorkerThreads()
+    {
+        final ParallelRecordConverter converter = newConverter(16, 3);
+        final Thread caller = Thread.currentThread();
+
+        final List<Thread> threads = converter.convert(syntheticCells(256), cell -> Thread.currentThread());
+
+        assertEquals(256, threads.size());
+        // The calling thread converts the first chunk, and the rest is handed to the workers
+        assertEquals(caller, threads.get(0));
+        assertNotEquals(caller, threads.get(threads.size() - 1));
+    }
+
+    private ParallelRecordConverter newConverter(int parallelThreshold, int threadCount)
+    {
+        final ParallelRecordConverter converter = new ParallelRecordConverter(parallelThreshold, threadCount);
+        converters.add(converter);
+        return converter;
+    }
+
+    private static List<LteRecord> number(List<IntFunction<LteRecord>> unnumbered, int firstRecordNumber)
+    {
+        final List<LteRecord> records = new ArrayList<>();
+        int recordNumber = firstRecordNumber;
+        for (IntFunction<LteRecord> record : unnumbered)
+        {
+            records.add(record.apply(recordNumber++));
+        }
+        return records;
+    }
+
+    private static List<SyntheticCell> syntheticCells(int count)
+    {
+        final List<SyntheticCell> cells = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            cells.add(new SyntheticCell(i));
+        }
+        return cells;
+    }
+
+    /**
+     * Mirrors the shape of the LTE conversion in the {@link SurveyRecordProcessor}: validate, fill in the data, and
+     * hand back a function that sets the record number.
+     */
+    private static IntFunction<LteRecord> convert(SyntheticCell cell)
+    {
+        if (cell.pci % 7 == 0) return null;
+
+        final LteRecordData.Builder dataBuilder = LteRecordData.newBuilder()
+                .setDeviceSerialNumber("synthetic")
+                .setMissionId("NS synthetic")
+                .setGroupNumber(1)
+                .setServingCell(BoolValue.newBuilder().setValue(cell.pci == 1).build())
+                .setMcc(Int32Value.newBuilder().setValue(cell.mcc).build())
+                .setMnc(Int32Value.newBuilder().setValue(cell.mnc).build())
+                .setTac(Int32Value.newBuilder().setValue(cell.tac).build())
+                .setEci(Int32Value.newBuilder().setValue(cell.eci).build())
+                .setEarfcn(Int32Value.newBuilder().setValue(cell.earfcn).build())
+                .setPci(Int32Value.newBuilder().setValue(cell.pci).build())
+                .setRsrp(FloatValue.newBuilder().setValue(cell.rsrp).build())
+                .setRsrq(FloatValue.newBuilder().setValue(cell.rsrq).build());
+
+        return recordNumber -> {
+            dataBuilder.setRecordNumber(recordNumber);
+            return LteRecord.newBuilder().setMessageType("LteRecord").setData(dataBuilder).build();
+        };
+    }
+
+    private static final class SyntheticCell
+    {
+        final int mcc = 310;
+        final int mnc = 410;
+        final int tac;
+        final int eci;
+        final int earfcn;
+        final int pci;
+        final float rsrp;
+        final float rsrq;
+
+        SyntheticCell(int index)
+        {
+            tac = 1_000 + index / 16;
+            eci = 2_000_000 + index;
+            earfcn = 5_110 + (index % 4) * 100;
+            pci = index;
+            rsrp = -80 - (index % 40);
+            rsrq = -5 - (index % 10);
+        }
+    }
+}
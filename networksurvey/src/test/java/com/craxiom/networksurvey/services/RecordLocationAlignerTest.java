@@ -0,0 +1,83 @@
+package com.craxiom.networksurvey.services;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class RecordLocationAlignerTest
+{
+    private static final long MAX_DELAY_MS = 10_000;
+
+    private final List<String> released = new ArrayList<>();
+    private long nowMs;
+    private final RecordLocationAligner aligner = new RecordLocationAligner(MAX_DELAY_MS, () -> nowMs);
+
+    @Test
+    public void holdsRecordsUntilALaterFix()
+    {
+        aligner.onLocationFix(1_000);
+
+        nowMs = 2_000;
+        aligner.submit(1_500, () -> released.add("a"));
+        aligner.submit(2_000, () -> released.add("b"));
+        assertEquals(List.of(), released);
+        assertEquals(2, aligner.getPendingCount());
+
+        // Only the records made before the fix are released
+        aligner.onLocationFix(1_800);
+        assertEquals(List.of("a"), released);
+
+        aligner.onLocationFix(9_000);
+        assertEquals(List.of("a", "b"), released);
+        assertEquals(2, aligner.getAlignedCount());
+        assertEquals(0, aligner.getTimedOutCount());
+    }
+
+    @Test
+    public void sendsOlderRecordsRightAway()
+    {
+        aligner.onLocationFix(5_000);
+        aligner.submit(4_000, () -> released.add("old"));
+
+        assertEquals(List.of("old"), released);
+        assertEquals(0, aligner.getPendingCount());
+    }
+
+    @Test
+    public void releasesRecordsAfterTheMaxDelay()
+    {
+        nowMs = 1_000;
+        aligner.submit(1_000, () -> released.add("a"));
+        nowMs = 4_000;
+        aligner.submit(4_000, () -> released.add("b"));
+
+        nowMs = 1_000 + MAX_DELAY_MS - 1;
+        aligner.releaseTimedOut();
+        assertEquals(List.of(), released);
+
+        nowMs = 1_000 + MAX_DELAY_MS;
+        aligner.releaseTimedOut();
+        assertEquals(List.of("a"), released);
+
+        // Stopping releases everything that is left
+        aligner.stop();
+        assertEquals(List.of("a", "b"), released);
+        assertEquals(2, aligner.getTimedOutCount());
+    }
+
+    @Test
+    public void keepsGoingIfARecordCannotBeSent()
+    {
+        nowMs = 1_000;
+        aligner.submit(1_000, () -> {
+            throw new IllegalStateException("Test exception");
+        });
+        aligner.submit(1_000, () -> released.add("b"));
+
+        aligner.onLocationFix(2_000);
+        assertEquals(List.of("b"), released);
+    }
+}
@@ -0,0 +1,252 @@
+package com.craxiom.networksurvey.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.craxiom.networksurvey.listeners.ILosslessSurveyListener;
+import com.craxiom.networksurvey.listeners.ISynchronousSurveyListener;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+public class SurveyEventBusTest
+{
+    private final SurveyEventBus eventBus = new SurveyEventBus(16);
+    private final Set<RecordingListener> listeners = new CopyOnWriteArraySet<>();
+
+    @After
+    public void tearDown()
+    {
+        eventBus.shutdown();
+    }
+
+    @Test
+    public void aSlowListenerDoesNotHoldUpTheOthers() throws InterruptedException
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingListener slow = new RecordingListener(release);
+        final RecordingListener fast = new RecordingListener(null);
+        eventBus.register(listeners, slow);
+        eventBus.register(listeners, fast);
+
+        final long start = System.nanoTime();
+        publish(0, 10);
+        final long publishMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(waitFor(() -> fast.received.size() == 10));
+        assertTrue("Publishing took " + publishMillis + "ms", publishMillis < 1_000);
+        assertTrue(slow.received.size() <= 1);
+
+        release.countDown();
+        assertTrue(waitFor(() -> slow.received.size() == 10));
+        assertEquals(range(0, 10), slow.received);
+        assertEquals(range(0, 10), fast.received);
+    }
+
+    @Test
+    public void dropsTheOldestEventsWhenAMailboxIsFull() throws InterruptedException
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingListener blocked = new RecordingListener(release);
+        eventBus.register(listeners, blocked);
+
+        publish(0, 1);
+        assertTrue(waitFor(() -> blocked.received.size() == 1)); // Stuck in the first call
+        publish(1, 101);
+
+        final SurveyEventBus.ListenerStats stats = eventBus.getListenerStats().get(0);
+        assertEquals(16, stats.queuedCount);
+        assertEquals(100 - 16, stats.droppedCount);
+
+        release.countDown();
+        assertTrue(waitFor(() -> blocked.received.size() == 17));
+
+        // The first event was already being delivered, after that only the newest events are kept
+        final List<Integer> expected = new ArrayList<>(range(0, 1));
+        expected.addAll(range(101 - 16, 101));
+        assertEquals(expected, blocked.received);
+        assertTrue(waitFor(() -> eventBus.getListenerStats().get(0).deliveredCount == 17));
+    }
+
+    @Test
+    public void waitsForRoomInsteadOfDroppingForALosslessListener() throws InterruptedException
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        final LosslessListener blocked = new LosslessListener(release);
+        eventBus.register(listeners, blocked);
+
+        publish(0, 1);
+        assertTrue(waitFor(() -> blocked.received.size() == 1)); // Stuck in the first call
+
+        final Thread producer = new Thread(() -> publish(1, 101));
+        producer.start();
+        assertTrue(waitFor(() -> eventBus.getListenerStats().get(0).waitedCount > 0));
+        assertTrue(producer.isAlive());
+
+        release.countDown();
+        producer.join(TimeUnit.SECONDS.toMillis(10));
+        assertTrue(waitFor(() -> blocked.received.size() == 101));
+
+        final SurveyEventBus.ListenerStats stats = eventBus.getListenerStats().get(0);
+        assertTrue(stats.lossless);
+        assertEquals(0, stats.droppedCount);
+        assertEquals(range(0, 101), blocked.received);
+    }
+
+    @Test
+    public void deliversThePendingEventsBeforeALosslessListenerIsUnregistered() throws InterruptedException
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        final LosslessListener blocked = new LosslessListener(release);
+        eventBus.register(listeners, blocked);
+
+        publish(0, 10);
+        assertTrue(waitFor(() -> blocked.received.size() == 1)); // Stuck in the first call, the rest are queued
+
+        final Thread unregister = new Thread(() -> eventBus.unregister(listeners, blocked));
+        unregister.start();
+        unregister.join(200);
+        assertTrue(unregister.isAlive()); // Waiting for the queued events to be delivered
+
+        release.countDown();
+        unregister.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(unregister.isAlive());
+        assertEquals(range(0, 10), blocked.received);
+
+        // Nothing is delivered after the unregister returns
+        publish(10, 20);
+        assertEquals(range(0, 10), blocked.received);
+    }
+
+    @Test
+    public void callsASynchronousListenerOnThePublishingThread()
+    {
+        final SynchronousListener listener = new SynchronousListener();
+        eventBus.register(listeners, listener);
+
+        publish(0, 5);
+
+        assertEquals(range(0, 5), listener.received);
+        assertEquals(Collections.nCopies(5, Thread.currentThread()), listener.threads);
+
+        final SurveyEventBus.ListenerStats stats = eventBus.getListenerStats().get(0);
+        assertTrue(stats.synchronous);
+        assertEquals(5, stats.deliveredCount);
+        assertEquals(0, stats.droppedCount);
+    }
+
+    @Test
+    public void sharesOneMailboxAcrossRegistrations()
+    {
+        final Set<RecordingListener> otherListeners = new CopyOnWriteArraySet<>();
+        final RecordingListener listener = new RecordingListener(null);
+        assertTrue(eventBus.register(listeners, listener));
+        assertTrue(eventBus.register(otherListeners, listener));
+        assertFalse(eventBus.register(listeners, listener));
+        assertEquals(1, eventBus.getListenerStats().size());
+
+        assertTrue(eventBus.unregister(listeners, listener));
+        assertEquals(1, eventBus.getListenerStats().size());
+
+        // Still registered for the other events, and they go to the same thread in order
+        eventBus.publish(otherListeners, l -> l.onEvent(1), "Test");
+        eventBus.publish(otherListeners, l -> l.onEvent(2), "Test");
+        assertTrue(waitFor(() -> listener.received.size() == 2));
+        assertEquals(range(1, 3), listener.received);
+        assertSame(listener.threads.get(0), listener.threads.get(1));
+
+        assertTrue(eventBus.unregister(otherListeners, listener));
+        assertTrue(eventBus.getListenerStats().isEmpty());
+    }
+
+    private void publish(int from, int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            final int event = i;
+            eventBus.publish(listeners, listener -> listener.onEvent(event), "Unable to notify a test listener");
+        }
+    }
+
+    private static List<Integer> range(int from, int to)
+    {
+        final List<Integer> values = new ArrayList<>();
+        for (int i = from; i < to; i++)
+        {
+            values.add(i);
+        }
+        return values;
+    }
+
+    private static boolean waitFor(BooleanSupplier condition)
+    {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean())
+        {
+            if (System.nanoTime() > deadline) return false;
+            try
+            {
+                Thread.sleep(5);
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class RecordingListener
+    {
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch release;
+
+        RecordingListener(CountDownLatch release)
+        {
+            this.release = release;
+        }
+
+        void onEvent(int event)
+        {
+            received.add(event);
+            threads.add(Thread.currentThread());
+            if (release == null) return;
+
+            try
+            {
+                release.await();
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class LosslessListener extends RecordingListener implements ILosslessSurveyListener
+    {
+        LosslessListener(CountDownLatch release)
+        {
+            super(release);
+        }
+    }
+
+    private static final class SynchronousListener extends RecordingListener implements ISynchronousSurveyListener
+    {
+        SynchronousListener()
+        {
+            super(null);
+        }
+    }
+}
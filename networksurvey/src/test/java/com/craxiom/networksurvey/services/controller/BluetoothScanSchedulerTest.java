@@ -0,0 +1,108 @@
+package com.craxiom.networksurvey.services.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.craxiom.networksurvey.services.controller.BluetoothScanScheduler.Decision;
+import com.craxiom.networksurvey.services.controller.BluetoothScanScheduler.ScanMode;
+
+import org.junit.Test;
+
+public class BluetoothScanSchedulerTest
+{
+    private static final int SCAN_RATE_MS = 8_000;
+    private static final float STATIONARY = 0f;
+    private static final float DRIVING = 15f;
+
+    private final BluetoothScanScheduler scheduler = new BluetoothScanScheduler(SCAN_RATE_MS);
+
+    @Test
+    public void backsOffWhenStationaryAndNothingNewIsSeen()
+    {
+        final Decision first = scheduler.evaluate(STATIONARY, 80, false, 0);
+        assertEquals(ScanMode.LOW_POWER, first.scanMode);
+        assertEquals(SCAN_RATE_MS, first.reportDelayMs);
+        assertTrue(first.scanSettingsChanged);
+
+        // Classic discovery only runs every few cycles
+        int discoveryCount = 0;
+        for (int cycle = 1; cycle <= 8; cycle++)
+        {
+            final Decision decision = scheduler.evaluate(STATIONARY, 80, false, cycle * SCAN_RATE_MS);
+            assertFalse(decision.scanSettingsChanged);
+            if (decision.classicDiscovery) discoveryCount++;
+        }
+        assertEquals(8 / BluetoothScanScheduler.IDLE_CLASSIC_DISCOVERY_INTERVAL, discoveryCount);
+    }
+
+    @Test
+    public void scansHarderWhileDrivingPastNewDevices()
+    {
+        scheduler.evaluate(STATIONARY, 80, false, 0);
+
+        final long now = BluetoothScanScheduler.MIN_SCAN_SETTINGS_CHANGE_INTERVAL_MS;
+        addNewDevices(0, BluetoothScanScheduler.HIGH_NEW_DEVICE_COUNT, now);
+        final Decision decision = scheduler.evaluate(DRIVING, 80, false, now);
+
+        assertEquals(ScanMode.LOW_LATENCY, decision.scanMode);
+        assertEquals(SCAN_RATE_MS / 2, decision.reportDelayMs);
+        assertTrue(decision.classicDiscovery);
+        assertTrue(decision.scanSettingsChanged);
+    }
+
+    @Test
+    public void savesPowerWhenTheBatteryIsLow()
+    {
+        addNewDevices(0, 50, 0);
+
+        final Decision decision = scheduler.evaluate(DRIVING, BluetoothScanScheduler.LOW_BATTERY_PERCENT, false, 0);
+        assertEquals(ScanMode.LOW_POWER, decision.scanMode);
+        assertEquals(SCAN_RATE_MS * 2, decision.reportDelayMs);
+        assertFalse(decision.classicDiscovery);
+
+        // Plugging in lifts the restriction
+        final Decision charging = scheduler.evaluate(DRIVING, BluetoothScanScheduler.LOW_BATTERY_PERCENT, true,
+                BluetoothScanScheduler.MIN_SCAN_SETTINGS_CHANGE_INTERVAL_MS);
+        assertEquals(ScanMode.LOW_LATENCY, charging.scanMode);
+    }
+
+    @Test
+    public void doesNotRestartTheScanTooOften()
+    {
+        scheduler.evaluate(STATIONARY, 80, false, 0);
+
+        addNewDevices(0, 30, 1_000);
+        final Decision tooSoon = scheduler.evaluate(DRIVING, 80, false, 1_000);
+        assertEquals(ScanMode.LOW_POWER, tooSoon.scanMode);
+        assertFalse(tooSoon.scanSettingsChanged);
+        assertTrue(tooSoon.classicDiscovery);
+
+        final Decision later = scheduler.evaluate(DRIVING, 80, false, BluetoothScanScheduler.MIN_SCAN_SETTINGS_CHANGE_INTERVAL_MS);
+        assertEquals(ScanMode.LOW_LATENCY, later.scanMode);
+        assertTrue(later.scanSettingsChanged);
+    }
+
+    @Test
+    public void onlyCountsDevicesOnceAndForgetsOldSightings()
+    {
+        addNewDevices(0, 10, 0);
+        addNewDevices(0, 10, 1_000);
+        assertEquals(10, scheduler.getNewDeviceCount(1_000));
+
+        final long afterWindow = BluetoothScanScheduler.NEW_DEVICE_WINDOW_MS + 1;
+        assertEquals(0, scheduler.getNewDeviceCount(afterWindow));
+
+        // Devices that were seen before are not new, even after they fall out of the window
+        addNewDevices(5, 15, afterWindow);
+        assertEquals(5, scheduler.getNewDeviceCount(afterWindow));
+    }
+
+    private void addNewDevices(int from, int to, long nowMs)
+    {
+        for (int i = from; i < to; i++)
+        {
+            scheduler.onDeviceSeen(String.format("00:11:22:33:%02X:%02X", i / 256, i % 256), false, nowMs);
+        }
+    }
+}
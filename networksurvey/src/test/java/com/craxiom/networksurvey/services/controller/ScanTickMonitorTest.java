@@ -0,0 +1,48 @@
+package com.craxiom.networksurvey.services.controller;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ScanTickMonitorTest
+{
+    @Test
+    public void measuresHowLateEachTickRuns()
+    {
+        final ScanTickMonitor monitor = new ScanTickMonitor("Test");
+
+        monitor.onTickScheduled(1_000, 0);
+        monitor.onTick(1_000);
+        monitor.onTickScheduled(5_000, 1_010);
+        monitor.onTick(6_310); // 300ms late
+        monitor.onTickScheduled(5_000, 6_320);
+        monitor.onTick(11_320);
+
+        assertEquals(3, monitor.getTickCount());
+        assertEquals(100, monitor.getMeanLatenessMs());
+        assertEquals(300, monitor.getMaxLatenessMs());
+    }
+
+    @Test
+    public void ignoresTicksThatWereNotScheduledAndStartsANewWindowAfterEachReport()
+    {
+        final ScanTickMonitor monitor = new ScanTickMonitor("Test");
+
+        monitor.onTick(500);
+        assertEquals(0, monitor.getTickCount());
+
+        monitor.onTickScheduled(1_000, 0);
+        monitor.onTick(3_000);
+        assertEquals(2_000, monitor.getMaxLatenessMs());
+
+        monitor.onTickScheduled(1_000, ScanTickMonitor.REPORT_INTERVAL_MS);
+        monitor.onTick(ScanTickMonitor.REPORT_INTERVAL_MS + 3_000);
+        assertEquals(0, monitor.getTickCount());
+        assertEquals(0, monitor.getMaxLatenessMs());
+
+        monitor.onTickScheduled(1_000, 100_000);
+        monitor.reset();
+        monitor.onTick(101_000);
+        assertEquals(0, monitor.getTickCount());
+    }
+}
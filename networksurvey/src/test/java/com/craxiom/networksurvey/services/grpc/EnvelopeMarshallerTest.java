@@ -0,0 +1,238 @@
+package com.craxiom.networksurvey.services.grpc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.craxiom.messaging.LteRecord;
+import com.craxiom.messaging.LteRecordData;
+import com.craxiom.networksurvey.model.SurveyRecordEnvelope;
+import com.google.protobuf.FloatValue;
+import com.google.protobuf.Int32Value;
+import com.google.protobuf.util.JsonFormat;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.protobuf.ProtoUtils;
+
+public class EnvelopeMarshallerTest
+{
+    private static final int RECORD_COUNT = 20_000;
+    /**
+     * The MQTT connection publishes the records with its client id as the device name.
+     */
+    private static final String MQTT_DEVICE_NAME = "mqtt-client-1";
+
+    private final MethodDescriptor.Marshaller<LteRecord> protoMarshaller = ProtoUtils.marshaller(LteRecord.getDefaultInstance());
+    private final EnvelopeMarshaller<LteRecord> envelopeMarshaller = new EnvelopeMarshaller<>(protoMarshaller);
+    private final JsonFormat.Printer jsonPrinter = JsonFormat.printer().preservingProtoFieldNames().omittingInsignificantWhitespace();
+
+    @Test
+    public void sendsTheSameBytesAsTheGeneratedMarshaller() throws IOException
+    {
+        final LteRecord record = lteRecord(1);
+        final SurveyRecordEnvelope<LteRecord> envelope = new SurveyRecordEnvelope<>(record);
+
+        final InputStream stream = envelopeMarshaller.stream(envelope);
+        assertEquals(record.getSerializedSize(), ((KnownLength) stream).available());
+        assertArrayEquals(drain(protoMarshaller.stream(record)), drain(stream));
+        assertEquals(record, envelopeMarshaller.parse(envelopeMarshaller.stream(envelope)).getRecord());
+
+        // Read a byte at a time, and then the rest, the same as a transport that does not drain the stream
+        final InputStream readStream = envelopeMarshaller.stream(envelope);
+        final ByteArrayOutputStream read = new ByteArrayOutputStream();
+        read.write(readStream.read());
+        final byte[] buffer = new byte[1024];
+        int count;
+        while ((count = readStream.read(buffer, 0, buffer.length)) != -1)
+        {
+            read.write(buffer, 0, count);
+        }
+        assertArrayEquals(record.toByteArray(), read.toByteArray());
+    }
+
+    @Test
+    public void writesTheSameDelimitedBytesAndJsonAsTheRecord() throws IOException
+    {
+        final LteRecord record = lteRecord(2);
+        final SurveyRecordEnvelope<LteRecord> envelope = new SurveyRecordEnvelope<>(record);
+
+        final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        record.writeDelimitedTo(recordBytes);
+        final ByteArrayOutputStream envelopeBytes = new ByteArrayOutputStream();
+        assertEquals(recordBytes.size(), envelope.writeDelimitedTo(envelopeBytes));
+        assertArrayEquals(recordBytes.toByteArray(), envelopeBytes.toByteArray());
+
+        assertEquals(jsonPrinter.print(record), envelope.getJson());
+        assertSame(envelope.getJson(), envelope.getJson());
+        assertEquals(jsonPrinter.print(withDeviceName(record)), envelope.getJson(MQTT_DEVICE_NAME));
+        assertSame(envelope.getJson(MQTT_DEVICE_NAME), envelope.getJson(MQTT_DEVICE_NAME));
+        assertEquals(record.toByteString(), envelope.getWireBytes());
+    }
+
+    /**
+     * Fans each record out the way the survey record processor's listeners do: it is sent over gRPC, written to the
+     * gRPC spool (while the server is unreachable), and published as JSON over MQTT with the connection's device name.
+     * Compares each listener serializing the record on its own (MQTT copying the record to set the device name) to the
+     * listeners sharing an envelope.
+     */
+    @Test
+    public void serializesEachRecordOnceWhenItIsFannedOut() throws IOException
+    {
+        final List<LteRecord> records = new ArrayList<>(RECORD_COUNT);
+        long recordBytes = 0;
+        for (int i = 0; i < RECORD_COUNT; i++)
+        {
+            final LteRecord record = lteRecord(i);
+            records.add(record);
+            recordBytes += record.getSerializedSize();
+        }
+
+        final com.sun.management.ThreadMXBean threadBean = getThreadBean();
+
+        // Warm up both paths so that the measurements are not skewed by class loading and JIT compilation
+        fanOutWithoutEnvelopes(records, threadBean, new FanOutCounts());
+        fanOutWithEnvelopes(records, threadBean, new FanOutCounts());
+
+        final FanOutCounts before = new FanOutCounts();
+        fanOutWithoutEnvelopes(records, threadBean, before);
+        final FanOutCounts after = new FanOutCounts();
+        fanOutWithEnvelopes(records, threadBean, after);
+
+        assertEquals(2 * recordBytes, before.protobufBytes);
+        assertEquals(recordBytes, after.protobufBytes);
+        assertTrue("Allocated " + after.protobufAllocated + " bytes for gRPC and the spool with envelopes, and "
+                + before.protobufAllocated + " without", after.protobufAllocated < before.protobufAllocated);
+
+        // MQTT publishes the same JSON either way, but with envelopes it comes from the envelope instead of a copy
+        assertEquals(RECORD_COUNT, before.mqttMessages);
+        assertEquals(RECORD_COUNT, after.mqttMessages);
+        assertEquals(before.mqttChars, after.mqttChars);
+    }
+
+    /**
+     * What the listeners sent while fanning out the records, and what gRPC and the spool allocated to send it.
+     */
+    private static final class FanOutCounts
+    {
+        long protobufBytes;
+        long protobufAllocated;
+        long mqttMessages;
+        long mqttChars;
+    }
+
+    private void fanOutWithoutEnvelopes(List<LteRecord> records, com.sun.management.ThreadMXBean threadBean,
+                                        FanOutCounts counts) throws IOException
+    {
+        final OutputStream sink = OutputStream.nullOutputStream();
+        final long startBytes = threadBean.getCurrentThreadAllocatedBytes();
+        for (LteRecord record : records)
+        {
+            // gRPC, then the spool
+            ((Drainable) protoMarshaller.stream(record)).drainTo(sink);
+            record.writeDelimitedTo(sink);
+            counts.protobufBytes += 2L * record.getSerializedSize();
+        }
+        counts.protobufAllocated = threadBean.getCurrentThreadAllocatedBytes() - startBytes;
+
+        for (LteRecord record : records)
+        {
+            final String json = jsonPrinter.print(withDeviceName(record));
+            counts.mqttMessages++;
+            counts.mqttChars += json.length();
+        }
+    }
+
+    private void fanOutWithEnvelopes(List<LteRecord> records, com.sun.management.ThreadMXBean threadBean,
+                                     FanOutCounts counts) throws IOException
+    {
+        final OutputStream sink = OutputStream.nullOutputStream();
+        final List<SurveyRecordEnvelope<LteRecord>> envelopes = new ArrayList<>(records.size());
+        final long startBytes = threadBean.getCurrentThreadAllocatedBytes();
+        for (LteRecord record : records)
+        {
+            final SurveyRecordEnvelope<LteRecord> envelope = new SurveyRecordEnvelope<>(record);
+            envelopes.add(envelope);
+
+            ((Drainable) envelopeMarshaller.stream(envelope)).drainTo(sink);
+            envelope.writeDelimitedTo(sink);
+
+            // The wire bytes are only created once, and then shared
+            counts.protobufBytes += envelope.getWireBytes().size();
+        }
+        counts.protobufAllocated = threadBean.getCurrentThreadAllocatedBytes() - startBytes;
+
+        for (SurveyRecordEnvelope<LteRecord> envelope : envelopes)
+        {
+            final String json = envelope.getJson(MQTT_DEVICE_NAME);
+            counts.mqttMessages++;
+            counts.mqttChars += json.length();
+        }
+    }
+
+    /**
+     * @return A copy of the record with the MQTT device name set, the way the MQTT connection used to set it.
+     */
+    private static LteRecord withDeviceName(LteRecord record)
+    {
+        return record.toBuilder().setData(record.getData().toBuilder().setDeviceName(MQTT_DEVICE_NAME)).build();
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadBean()
+    {
+        final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+
+        final com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        Assume.assumeTrue(allocationBean.isThreadAllocatedMemorySupported());
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+        return allocationBean;
+    }
+
+    private static byte[] drain(InputStream stream) throws IOException
+    {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ((Drainable) stream).drainTo(outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private static LteRecord lteRecord(int recordNumber)
+    {
+        return LteRecord.newBuilder()
+                .setVersion("1.0")
+                .setMessageType("LteRecord")
+                .setData(LteRecordData.newBuilder()
+                        .setDeviceSerialNumber("serial")
+                        .setDeviceName("Pixel")
+                        .setDeviceTime("2024-01-01T00:00:00.000Z")
+                        .setLatitude(51.5 + recordNumber / 1e6)
+                        .setLongitude(-0.12 - recordNumber / 1e6)
+                        .setAltitude(35.5f)
+                        .setAccuracy(4)
+                        .setRecordNumber(recordNumber)
+                        .setGroupNumber(recordNumber / 4)
+                        .setMcc(Int32Value.of(310))
+                        .setMnc(Int32Value.of(410))
+                        .setTac(Int32Value.of(1234))
+                        .setEci(Int32Value.of(123456 + recordNumber % 50))
+                        .setEarfcn(Int32Value.of(5230))
+                        .setPci(Int32Value.of(recordNumber % 504))
+                        .setRsrp(FloatValue.of(-90f - recordNumber % 30))
+                        .setRsrq(FloatValue.of(-10f - recordNumber % 8))
+                        .setTa(Int32Value.of(3)))
+                .build();
+    }
+}
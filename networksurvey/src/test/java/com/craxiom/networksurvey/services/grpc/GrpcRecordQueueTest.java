@@ -0,0 +1,242 @@
+package com.craxiom.networksurvey.services.grpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.craxiom.messaging.LteRecord;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class GrpcRecordQueueTest
+{
+    private static final int MEMORY_CAPACITY = 10;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void overflowsToTheSpoolAndKeepsTheOrder() throws IOException
+    {
+        final File spoolDirectory = temporaryFolder.newFolder();
+        final GrpcRecordQueue<LteRecord> queue = createQueue(spoolDirectory, 512, 1024 * 1024);
+
+        addRecords(queue, 0, 100);
+        assertEquals(100, queue.size());
+        assertEquals(100 - MEMORY_CAPACITY, queue.getSpooledCount());
+        assertTrue(queue.getSpooledBytes() > 0);
+
+        // Interleave adds with polls to make sure new records stay behind the spooled ones
+        final List<String> polled = pollRecords(queue, 50);
+        addRecords(queue, 100, 150);
+        polled.addAll(pollRecords(queue, Integer.MAX_VALUE));
+
+        assertEquals(expectedVersions(0, 150), polled);
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.getSpooledBytes());
+        assertEquals(0, queue.getDroppedCount());
+        // The segment that was being written to is emptied and kept for the next record
+        assertEquals(1, countSegmentFiles(spoolDirectory));
+    }
+
+    @Test
+    public void readsTheSegmentBeingWrittenWithoutStartingANewOne() throws IOException
+    {
+        final File spoolDirectory = temporaryFolder.newFolder();
+        final GrpcRecordQueue<LteRecord> queue = createQueue(spoolDirectory, 1024 * 1024, 1024 * 1024);
+        addRecords(queue, 0, MEMORY_CAPACITY);
+
+        // Add records faster than they are polled so the spool is read from while it is still being written to
+        final List<String> polled = new ArrayList<>();
+        for (int i = MEMORY_CAPACITY; i < 200; i += 2)
+        {
+            addRecords(queue, i, i + 2);
+            polled.addAll(pollRecords(queue, 1));
+            assertEquals(1, countSegmentFiles(spoolDirectory));
+        }
+        polled.addAll(pollRecords(queue, Integer.MAX_VALUE));
+
+        assertEquals(expectedVersions(0, 200), polled);
+        assertEquals(0, queue.getDroppedCount());
+    }
+
+    @Test
+    public void loadsTheSpoolAfterARestart() throws IOException
+    {
+        final File spoolDirectory = temporaryFolder.newFolder();
+        final GrpcRecordQueue<LteRecord> queue = createQueue(spoolDirectory, 512, 1024 * 1024);
+        addRecords(queue, 0, 100);
+        pollRecords(queue, 5);
+        queue.close();
+
+        // The records still in memory are moved to the front of the spool on close, so nothing is lost
+        final GrpcRecordQueue<LteRecord> restartedQueue = createQueue(spoolDirectory, 512, 1024 * 1024);
+        assertEquals(95, restartedQueue.size());
+        assertTrue(restartedQueue.getOldestMessageAgeMillis() >= 0);
+
+        addRecords(restartedQueue, 100, 110);
+        assertEquals(expectedVersions(5, 110), pollRecords(restartedQueue, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void ignoresAPartialRecordAtTheEndOfASegment() throws IOException
+    {
+        final File spoolDirectory = temporaryFolder.newFolder();
+        final GrpcRecordQueue<LteRecord> queue = createQueue(spoolDirectory, 1024 * 1024, 1024 * 1024);
+        addRecords(queue, 0, 20);
+        queue.close();
+
+        // Simulate the process dying part way through writing a record
+        final File[] segments = new File(spoolDirectory, "lte").listFiles();
+        assertEquals(1, segments.length);
+        try (FileOutputStream outputStream = new FileOutputStream(segments[0], true))
+        {
+            outputStream.write(new byte[]{50, 1, 2});
+        }
+
+        final GrpcRecordQueue<LteRecord> restartedQueue = createQueue(spoolDirectory, 1024 * 1024, 1024 * 1024);
+        assertEquals(20, restartedQueue.size());
+        assertEquals(expectedVersions(0, 20), pollRecords(restartedQueue, Integer.MAX_VALUE));
+        assertEquals(0, countSegmentFiles(spoolDirectory));
+    }
+
+    @Test
+    public void dropsTheOldestSegmentsWhenTheSpoolIsFull() throws IOException
+    {
+        final File spoolDirectory = temporaryFolder.newFolder();
+        final GrpcRecordQueue<LteRecord> queue = createQueue(spoolDirectory, 256, 1024);
+
+        addRecords(queue, 0, 1_000);
+
+        assertTrue(queue.getSpooledBytes() <= 1024);
+        assertTrue(queue.getDroppedCount() > 0);
+        assertEquals(1_000, queue.size() + queue.getDroppedCount());
+
+        // The newest records are always kept, and the order is unchanged
+        final List<String> polled = pollRecords(queue, Integer.MAX_VALUE);
+        assertEquals(expectedVersions(0, MEMORY_CAPACITY), polled.subList(0, MEMORY_CAPACITY));
+        final List<String> spooled = polled.subList(MEMORY_CAPACITY, polled.size());
+        assertEquals(expectedVersions(1_000 - spooled.size(), 1_000), spooled);
+    }
+
+    @Test
+    public void dropsTheOldestRecordWithoutASpool()
+    {
+        final GrpcRecordQueue<LteRecord> queue = new GrpcRecordQueue<>("lte", MEMORY_CAPACITY, null, null, 0, 0);
+
+        addRecords(queue, 0, 15);
+
+        assertEquals(MEMORY_CAPACITY, queue.size());
+        assertEquals(5, queue.getDroppedCount());
+        assertEquals(expectedVersions(5, 15), pollRecords(queue, Integer.MAX_VALUE));
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void aClosingStreamDoesNotDetachTheStreamThatReplacedIt()
+    {
+        final GrpcRecordQueue<LteRecord> queue = new GrpcRecordQueue<>("lte", MEMORY_CAPACITY, null, null, 0, 0);
+        final int[] oldStreamWakeUps = new int[1];
+        final int[] newStreamWakeUps = new int[1];
+        final Runnable oldStream = () -> oldStreamWakeUps[0]++;
+        final Runnable newStream = () -> newStreamWakeUps[0]++;
+
+        queue.setOnMessageAdded(oldStream);
+        addRecords(queue, 0, 1);
+        queue.setOnMessageAdded(newStream);
+        queue.clearOnMessageAdded(oldStream); // The old stream finishes closing after the new one is attached
+        addRecords(queue, 1, 3);
+
+        assertEquals(1, oldStreamWakeUps[0]);
+        assertEquals(2, newStreamWakeUps[0]);
+
+        queue.clearOnMessageAdded(newStream);
+        addRecords(queue, 3, 4);
+        assertEquals(2, newStreamWakeUps[0]);
+    }
+
+    @Test
+    public void clearDeletesTheSpooledRecords() throws IOException
+    {
+        final File spoolDirectory = temporaryFolder.newFolder();
+        final GrpcRecordQueue<LteRecord> queue = createQueue(spoolDirectory, 512, 1024 * 1024);
+        addRecords(queue, 0, 100);
+
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertEquals(0, countSegmentFiles(spoolDirectory));
+
+        addRecords(queue, 100, 120);
+        queue.close();
+        final GrpcRecordQueue<LteRecord> restartedQueue = createQueue(spoolDirectory, 512, 1024 * 1024);
+        assertEquals(expectedVersions(100, 120), pollRecords(restartedQueue, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void peekLeavesTheMessageAtTheHeadUntilItIsRemoved() throws IOException
+    {
+        final GrpcRecordQueue<LteRecord> queue = createQueue(temporaryFolder.newFolder(), 512, 1024 * 1024);
+        addRecords(queue, 0, 20);
+
+        final GrpcRecordQueue.QueuedMessage<LteRecord> head = queue.peek();
+        assertEquals("0", head.message.getVersion());
+        assertSame(head, queue.peek());
+        assertEquals(20, queue.size());
+
+        queue.remove(head);
+        assertEquals("1", queue.peek().message.getVersion());
+
+        // Removing a message that is no longer at the head does nothing
+        queue.remove(head);
+        assertEquals(expectedVersions(1, 20), pollRecords(queue, Integer.MAX_VALUE));
+    }
+
+    private static GrpcRecordQueue<LteRecord> createQueue(File spoolDirectory, long maxSegmentBytes, long maxSpoolBytes)
+    {
+        return new GrpcRecordQueue<>("lte", MEMORY_CAPACITY, LteRecord.parser(), spoolDirectory, maxSegmentBytes, maxSpoolBytes);
+    }
+
+    private static void addRecords(GrpcRecordQueue<LteRecord> queue, int from, int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            queue.add(LteRecord.newBuilder().setVersion(String.valueOf(i)).build());
+        }
+    }
+
+    private static List<String> pollRecords(GrpcRecordQueue<LteRecord> queue, int max)
+    {
+        final List<String> versions = new ArrayList<>();
+        GrpcRecordQueue.QueuedMessage<LteRecord> next;
+        while (versions.size() < max && (next = queue.poll()) != null)
+        {
+            versions.add(next.message.getVersion());
+        }
+        return versions;
+    }
+
+    private static List<String> expectedVersions(int from, int to)
+    {
+        final List<String> versions = new ArrayList<>();
+        for (int i = from; i < to; i++)
+        {
+            versions.add(String.valueOf(i));
+        }
+        return versions;
+    }
+
+    private static int countSegmentFiles(File spoolDirectory)
+    {
+        final File[] files = new File(spoolDirectory, "lte").listFiles();
+        return files == null ? 0 : files.length;
+    }
+}
@@ -0,0 +1,248 @@
+package com.craxiom.networksurvey.services.grpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.craxiom.messaging.LteRecord;
+import com.craxiom.messaging.grpc.LteSurveyResponse;
+import com.craxiom.messaging.grpc.WirelessSurveyGrpc;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+public class GrpcStreamingEngineTest
+{
+    private static final int MESSAGE_COUNT = 1_000;
+
+    private final List<String> received = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicReference<ServerCallStreamObserver<LteSurveyResponse>> serverStream = new AtomicReference<>();
+
+    private volatile int initialServerRequest = -1;
+    private volatile CountDownLatch receivedLatch = new CountDownLatch(MESSAGE_COUNT);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private String serverName;
+    private Server server;
+    private ManagedChannel channel;
+    private GrpcStreamingEngine engine;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        serverName = InProcessServerBuilder.generateName();
+        server = startServer();
+        channel = InProcessChannelBuilder.forName(serverName).build();
+        engine = new GrpcStreamingEngine(GrpcStreamingEngine.DEFAULT_THREAD_COUNT);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        engine.shutdown();
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void sendsEveryMessageInOrderAndTracksLatency() throws Exception
+    {
+        final GrpcRecordQueue<LteRecord> queue = new GrpcRecordQueue<>("lteRecord");
+        final GrpcStreamingEngine.RecordStream<LteRecord, LteSurveyResponse> stream =
+                engine.openStream(queue, channel, WirelessSurveyGrpc.getStreamLteSurveyMethod(), null);
+
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < MESSAGE_COUNT; i++)
+        {
+            expected.add(String.valueOf(i));
+            queue.add(LteRecord.newBuilder().setVersion(String.valueOf(i)).build());
+        }
+
+        assertTrue("Timed out waiting for the messages", receivedLatch.await(10, TimeUnit.SECONDS));
+        assertEquals(expected, new ArrayList<>(received));
+        assertTrue(queue.isEmpty());
+        assertTrue(stream.isOpen());
+
+        // The latency is recorded after the message is handed to gRPC, which can be after the server sees it
+        final LatencyTracker latency = stream.getLatencyTracker();
+        assertTrue(waitFor(() -> latency.getCount() == MESSAGE_COUNT));
+        assertEquals(MESSAGE_COUNT, engine.getLatencyTracker().getCount());
+        assertTrue(latency.getMedianNanos() <= latency.getP99Nanos());
+        assertTrue("p99 was " + latency.getP99Nanos() + "ns", latency.getP99Nanos() < TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void stopsWritingWhenTheServerIsNotReady() throws Exception
+    {
+        final int initialRequest = 5;
+        initialServerRequest = initialRequest;
+        receivedLatch = new CountDownLatch(initialRequest);
+
+        final GrpcRecordQueue<LteRecord> queue = new GrpcRecordQueue<>("lteRecord");
+        engine.openStream(queue, channel, WirelessSurveyGrpc.getStreamLteSurveyMethod(), null);
+
+        for (int i = 0; i < 100; i++)
+        {
+            queue.add(LteRecord.newBuilder().setVersion(String.valueOf(i)).build());
+        }
+
+        assertTrue(receivedLatch.await(5, TimeUnit.SECONDS));
+        // Give the engine a chance to (incorrectly) write more than the server asked for
+        Thread.sleep(200);
+        assertEquals(initialRequest, received.size());
+        assertEquals(100 - initialRequest, queue.size());
+
+        // Once the server asks for more, the rest of the messages are sent without any polling delay
+        receivedLatch = new CountDownLatch(100 - initialRequest);
+        serverStream.get().request(100 - initialRequest);
+
+        assertTrue(receivedLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(100, received.size());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void notifiesTheListenerWhenTheServerClosesTheStream() throws Exception
+    {
+        final CountDownLatch closedLatch = new CountDownLatch(1);
+        final GrpcRecordQueue<LteRecord> queue = new GrpcRecordQueue<>("lteRecord");
+        final GrpcStreamingEngine.RecordStream<LteRecord, LteSurveyResponse> stream = engine.openStream(queue,
+                channel, WirelessSurveyGrpc.getStreamLteSurveyMethod(), (closedStream, error) -> closedLatch.countDown());
+
+        queue.add(LteRecord.newBuilder().setVersion("0").build());
+        assertTrue(waitFor(() -> serverStream.get() != null));
+        serverStream.get().onNext(LteSurveyResponse.getDefaultInstance());
+        serverStream.get().onCompleted();
+
+        assertTrue(closedLatch.await(5, TimeUnit.SECONDS));
+        assertFalse(stream.isOpen());
+        assertFalse(stream.isClosedLocally());
+    }
+
+    @Test
+    public void replaysTheQueuedMessagesInOrderAfterTheServerRestarts() throws Exception
+    {
+        final GrpcRecordQueue<LteRecord> queue = new GrpcRecordQueue<>("lte", 10, LteRecord.parser(),
+                temporaryFolder.newFolder(), 1024, 1024 * 1024);
+        final CountDownLatch closedLatch = new CountDownLatch(1);
+        engine.openStream(queue, channel, WirelessSurveyGrpc.getStreamLteSurveyMethod(),
+                (closedStream, error) -> closedLatch.countDown());
+
+        receivedLatch = new CountDownLatch(10);
+        addRecords(queue, 0, 10);
+        assertTrue(receivedLatch.await(5, TimeUnit.SECONDS));
+
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        assertTrue(closedLatch.await(5, TimeUnit.SECONDS));
+
+        // While the server is down, everything past the memory limit is spooled to disk
+        addRecords(queue, 10, 500);
+        assertEquals(490, queue.size());
+        assertEquals(480, queue.getSpooledCount());
+        assertTrue(queue.getSpooledBytes() > 0);
+
+        // Reconnect the same way the connection service does, with a new channel
+        server = startServer();
+        channel.shutdownNow();
+        channel = InProcessChannelBuilder.forName(serverName).build();
+        receivedLatch = new CountDownLatch(490);
+        engine.openStream(queue, channel, WirelessSurveyGrpc.getStreamLteSurveyMethod(), null);
+
+        assertTrue(receivedLatch.await(10, TimeUnit.SECONDS));
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 500; i++)
+        {
+            expected.add(String.valueOf(i));
+        }
+        assertEquals(expected, new ArrayList<>(received));
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.getSpooledBytes());
+    }
+
+    private Server startServer() throws IOException
+    {
+        return InProcessServerBuilder.forName(serverName)
+                .directExecutor()
+                .addService(new LteSurveyService())
+                .build()
+                .start();
+    }
+
+    private static void addRecords(GrpcRecordQueue<LteRecord> queue, int from, int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            queue.add(LteRecord.newBuilder().setVersion(String.valueOf(i)).build());
+        }
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException
+    {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean())
+        {
+            if (System.nanoTime() > deadline) return false;
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private class LteSurveyService extends WirelessSurveyGrpc.WirelessSurveyImplBase
+    {
+        @Override
+        public StreamObserver<LteRecord> streamLteSurvey(StreamObserver<LteSurveyResponse> responseObserver)
+        {
+            final ServerCallStreamObserver<LteSurveyResponse> callObserver =
+                    (ServerCallStreamObserver<LteSurveyResponse>) responseObserver;
+            if (initialServerRequest > 0)
+            {
+                callObserver.disableAutoRequest();
+                callObserver.request(initialServerRequest);
+            }
+            serverStream.set(callObserver);
+
+            return new StreamObserver<LteRecord>()
+            {
+                @Override
+                public void onNext(LteRecord value)
+                {
+                    received.add(value.getVersion());
+                    receivedLatch.countDown();
+                }
+
+                @Override
+                public void onError(Throwable t)
+                {
+                }
+
+                @Override
+                public void onCompleted()
+                {
+                    responseObserver.onNext(LteSurveyResponse.getDefaultInstance());
+                    responseObserver.onCompleted();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.craxiom.networksurvey.ui.cellular.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.craxiom.networksurvey.ui.cellular.Api;
+import com.craxiom.networksurvey.ui.cellular.Tower;
+import com.craxiom.networksurvey.ui.cellular.TowerResponse;
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Tests the tower cache against a local HTTP server that stands in for the NS backend.
+ */
+public class TowerTileCacheTest
+{
+    private static final List<Tower> TOWERS = List.of(
+            tower(38.905, -77.035, 1),
+            tower(38.915, -77.025, 2),
+            tower(38.925, -77.005, 3), // One tile north east of the first query
+            tower(38.965, -77.035, 4)); // Outside of all the queries
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<String> requestedBoxes = new CopyOnWriteArrayList<>();
+    private final AtomicInteger responseCode = new AtomicInteger(200);
+    private final AtomicLong clockMs = new AtomicLong(1_000_000);
+    private HttpServer server;
+    private TowerFetcher fetcher;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/cells/area", exchange -> {
+            final Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            final String bbox = query.get("bbox");
+            requestedBoxes.add(bbox);
+
+            final int code = responseCode.get();
+            if (code != 200)
+            {
+                exchange.sendResponseHeaders(code, -1);
+                exchange.close();
+                return;
+            }
+
+            final String[] parts = bbox.split(",");
+            final double latSouth = Double.parseDouble(parts[0]);
+            final double lonWest = Double.parseDouble(parts[1]);
+            final double latNorth = Double.parseDouble(parts[2]);
+            final double lonEast = Double.parseDouble(parts[3]);
+            final List<Tower> towers = TOWERS.stream()
+                    .filter(t -> t.getLat() >= latSouth && t.getLat() <= latNorth && t.getLon() >= lonWest && t.getLon() <= lonEast)
+                    .collect(Collectors.toList());
+
+            final byte[] body = new Gson().toJson(new TowerResponse(towers.size(), towers)).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody())
+            {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+
+        final Api api = new Retrofit.Builder()
+                .baseUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/")
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(Api.class);
+        fetcher = new ApiTowerFetcher(api);
+    }
+
+    @After
+    public void tearDown()
+    {
+        server.stop(0);
+    }
+
+    @Test
+    public void onlyFetchesTheTilesThatAreNotCached()
+    {
+        final TowerTileCache cache = newCache();
+
+        assertEquals(List.of(1L, 2L), cids(cache.getTowers(38.901, -77.039, 38.919, -77.021, "LTE")));
+        assertEquals(1, requestedBoxes.size());
+        assertEquals("38.9,-77.04,38.92,-77.02", requestedBoxes.get(0));
+
+        // A smaller view within the cached tile does not go to the server, and only gets the towers in view
+        assertEquals(List.of(2L), cids(cache.getTowers(38.91, -77.03, 38.919, -77.021, "LTE")));
+        assertEquals(1, requestedBoxes.size());
+
+        // Panning north east only fetches the new tiles
+        assertEquals(List.of(2L, 3L), cids(cache.getTowers(38.911, -77.029, 38.929, -77.001, "LTE")));
+        assertEquals(2, requestedBoxes.size());
+        assertEquals("38.9,-77.04,38.94,-77.0", requestedBoxes.get(1));
+
+        // Everything is cached now
+        cache.getTowers(38.901, -77.039, 38.929, -77.001, "LTE");
+        assertEquals(2, requestedBoxes.size());
+
+        // The radio type is part of the key
+        cache.getTowers(38.901, -77.039, 38.919, -77.021, "NR");
+        assertEquals(3, requestedBoxes.size());
+    }
+
+    @Test
+    public void loadsTheTilesFromDiskAfterARestart()
+    {
+        newCache().getTowers(38.901, -77.039, 38.919, -77.021, "LTE");
+        assertEquals(1, requestedBoxes.size());
+
+        final TowerTileCache restartedCache = newCache();
+        assertEquals(List.of(1L, 2L), cids(restartedCache.getTowers(38.901, -77.039, 38.919, -77.021, "LTE")));
+        assertEquals(1, requestedBoxes.size());
+    }
+
+    @Test
+    public void fetchesExpiredTilesAgain()
+    {
+        final TowerTileCache cache = newCache();
+        cache.getTowers(38.901, -77.039, 38.919, -77.021, "LTE");
+
+        clockMs.addAndGet(TimeUnit.HOURS.toMillis(1));
+        cache.getTowers(38.901, -77.039, 38.919, -77.021, "LTE");
+        assertEquals(1, requestedBoxes.size());
+
+        clockMs.addAndGet(TowerTileCache.DEFAULT_TTL_MS);
+        assertEquals(List.of(1L, 2L), cids(cache.getTowers(38.901, -77.039, 38.919, -77.021, "LTE")));
+        assertEquals(2, requestedBoxes.size());
+    }
+
+    @Test
+    public void cachesEmptyAreasButNotFailures()
+    {
+        final TowerTileCache cache = newCache();
+
+        responseCode.set(500);
+        assertTrue(cache.getTowers(38.901, -77.039, 38.919, -77.021, "LTE").isEmpty());
+        assertEquals(1, requestedBoxes.size());
+
+        responseCode.set(200);
+        assertEquals(List.of(1L, 2L), cids(cache.getTowers(38.901, -77.039, 38.919, -77.021, "LTE")));
+        assertEquals(2, requestedBoxes.size());
+
+        responseCode.set(204);
+        assertTrue(cache.getTowers(10.0, 10.0, 10.01, 10.01, "LTE").isEmpty());
+        assertTrue(cache.getTowers(10.0, 10.0, 10.01, 10.01, "LTE").isEmpty());
+        assertEquals(3, requestedBoxes.size());
+    }
+
+    private TowerTileCache newCache()
+    {
+        return new TowerTileCache(temporaryFolder.getRoot(), fetcher, TowerTileCache.DEFAULT_TTL_MS,
+                TowerTileCache.DEFAULT_MAX_TILES_IN_MEMORY, clockMs::get);
+    }
+
+    private static List<Long> cids(List<Tower> towers)
+    {
+        final List<Long> cids = new ArrayList<>();
+        towers.forEach(tower -> cids.add(tower.getCid()));
+        cids.sort(null);
+        return cids;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery)
+    {
+        return Arrays.stream(rawQuery.split("&"))
+                .map(parameter -> parameter.split("=", 2))
+                .collect(Collectors.toMap(pair -> pair[0],
+                        pair -> URLDecoder.decode(pair[1], StandardCharsets.UTF_8)));
+    }
+
+    private static Tower tower(double lat, double lon, long cid)
+    {
+        return new Tower(lat, lon, 310, 410, 1234, cid, 0, -90, 1000, 10, 1, 0L, 0L, "LTE", "test");
+    }
+}
@@ -0,0 +1,214 @@
+package com.craxiom.networksurvey.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Random;
+
+public class Rfc3339CodecTest
+{
+    private static final long START_1900 = LocalDate.of(1900, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    private static final long END_2100 = LocalDate.of(2100, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    private static final long[] MILLIS_AROUND_TRANSITION = {-1001, -1000, -1, 0, 1, 999, 1000};
+
+    @Test
+    public void format_matchesDateTimeFormatterForAllZones()
+    {
+        final Random random = new Random(42);
+
+        for (String zoneIdString : ZoneId.getAvailableZoneIds())
+        {
+            final ZoneId zone = ZoneId.of(zoneIdString);
+
+            for (int i = 0; i < 200; i++)
+            {
+                final long epochMillis = START_1900 + (long) (random.nextDouble() * (END_2100 - START_1900));
+                assertFormatMatches(epochMillis, zone);
+            }
+
+            // The cache is only valid until the next transition, so check the times right around each one
+            final ZoneRules rules = zone.getRules();
+            ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochMilli(START_1900));
+            while (transition != null && transition.getInstant().toEpochMilli() < END_2100)
+            {
+                final long transitionMillis = transition.getInstant().toEpochMilli();
+                for (long delta : MILLIS_AROUND_TRANSITION)
+                {
+                    assertFormatMatches(transitionMillis + delta, zone);
+                }
+                // Going backwards in time should not reuse a cached offset from after the transition
+                for (int d = MILLIS_AROUND_TRANSITION.length - 1; d >= 0; d--)
+                {
+                    assertFormatMatches(transitionMillis + MILLIS_AROUND_TRANSITION[d], zone);
+                }
+                transition = rules.nextTransition(transition.getInstant());
+            }
+        }
+    }
+
+    @Test
+    public void format_matchesDateTimeFormatterForAllFractions()
+    {
+        final ZoneId zone = ZoneId.of("America/New_York");
+        final long base = 1_597_860_802_000L;
+
+        for (int millis = 0; millis < 1000; millis++)
+        {
+            assertFormatMatches(base + millis, zone);
+        }
+    }
+
+    @Test
+    public void format_matchesDateTimeFormatterOutsideFastPath()
+    {
+        final ZoneId zone = ZoneId.of("UTC");
+
+        assertFormatMatches(Instant.parse("-0001-12-31T23:59:59.999Z").toEpochMilli(), zone);
+        assertFormatMatches(Instant.parse("0000-01-01T00:00:00Z").toEpochMilli(), zone);
+        assertFormatMatches(Instant.parse("9999-12-31T23:59:59.999Z").toEpochMilli(), zone);
+        assertFormatMatches(Instant.parse("+10000-01-01T00:00:00Z").toEpochMilli(), zone);
+    }
+
+    @Test
+    public void parse_roundTripsFormattedTimes()
+    {
+        final Random random = new Random(7);
+        final ZoneId[] zones = {ZoneOffset.UTC, ZoneId.of("America/New_York"), ZoneId.of("Asia/Kolkata"),
+                ZoneId.of("Australia/Lord_Howe"), ZoneId.of("Pacific/Chatham"), ZoneId.of("Europe/Amsterdam"),
+                ZoneId.of("America/St_Johns"), ZoneOffset.ofHoursMinutesSeconds(-5, -30, -15)};
+
+        for (ZoneId zone : zones)
+        {
+            for (int i = 0; i < 20_000; i++)
+            {
+                final long epochMillis = START_1900 + (long) (random.nextDouble() * (END_2100 - START_1900));
+                final String text = DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(Instant.ofEpochMilli(epochMillis).atZone(zone));
+
+                assertEquals(text, epochMillis, Rfc3339Codec.parseEpochMillis(text));
+            }
+        }
+    }
+
+    @Test
+    public void parse_matchesDateTimeFormatterForEveryDay()
+    {
+        LocalDate date = LocalDate.of(1900, 1, 1);
+        final LocalDate end = LocalDate.of(2100, 1, 1);
+        while (date.isBefore(end))
+        {
+            assertParseMatches(date + "T00:00:00Z");
+            assertParseMatches(date + "T23:59:59.999999999-12:00");
+            date = date.plusDays(1);
+        }
+    }
+
+    @Test
+    public void parse_matchesDateTimeFormatterForVariants()
+    {
+        final String[] variants = {
+                "2020-08-19T18:13:22.548+00:00",
+                "2020-08-19T18:13:22.548-04:00",
+                "2020-08-19T18:13:22.548Z",
+                "2020-08-19T18:13:22Z",
+                "2020-08-19T18:13Z",
+                "2020-08-19T18:13+05:30",
+                "2020-08-19T18:13:22.5Z",
+                "2020-08-19T18:13:22.54Z",
+                "2020-08-19T18:13:22.5481Z",
+                "2020-08-19T18:13:22.54812Z",
+                "2020-08-19T18:13:22.548123Z",
+                "2020-08-19T18:13:22.5481234Z",
+                "2020-08-19T18:13:22.54812345Z",
+                "2020-08-19T18:13:22.548123456Z",
+                "2020-08-19T18:13:22.548-00:00",
+                "2020-08-19T18:13:22.548+18:00",
+                "2020-08-19T18:13:22.548-18:00",
+                "2020-08-19T18:13:22.548+05:30:15",
+                "2020-02-29T00:00:00Z",
+                "2000-02-29T00:00:00Z",
+                "1969-12-31T23:59:59.999Z",
+                "1970-01-01T00:00:00Z",
+                "0000-01-01T00:00:00Z",
+                "9999-12-31T23:59:59.999999999Z",
+                "+10000-01-01T00:00:00Z",
+                "2020-08-19t18:13:22.548Z",
+                "2020-08-19T18:13:22.548z",
+        };
+
+        for (String variant : variants)
+        {
+            assertParseMatches(variant);
+        }
+    }
+
+    @Test
+    public void parse_rejectsInvalidInputLikeDateTimeFormatter()
+    {
+        final String[] invalid = {
+                "",
+                "2020-08-19",
+                "2020-08-19T18:13:22.548",
+                "2020-13-19T18:13:22.548Z",
+                "2020-00-19T18:13:22.548Z",
+                "2019-02-29T18:13:22.548Z",
+                "1900-02-29T18:13:22.548Z",
+                "2020-04-31T18:13:22.548Z",
+                "2020-08-19T24:00:00Z",
+                "2020-08-19T18:60:00Z",
+                "2020-08-19T18:13:60Z",
+                "2020-08-19T18:13:22.Z",
+                "2020-08-19T18:13:22.5481234567Z",
+                "2020-08-19T18:13:22.548+18:01",
+                "2020-08-19T18:13:22.548+05:60",
+                "2020-08-19T18:13:22.548+0530",
+                "2020-08-19T18:13:22.548 Z",
+                "2020-08-19T18:13:22.548ZZ",
+                "2020/08/19T18:13:22.548Z",
+                "20a0-08-19T18:13:22.548Z",
+        };
+
+        for (String text : invalid)
+        {
+            boolean javaTimeFailed = false;
+            try
+            {
+                ZonedDateTime.parse(text, DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+            } catch (DateTimeParseException e)
+            {
+                javaTimeFailed = true;
+            }
+
+            try
+            {
+                final long epochMillis = Rfc3339Codec.parseEpochMillis(text);
+                if (javaTimeFailed) fail("Expected " + text + " to be rejected, but it was parsed as " + epochMillis);
+            } catch (DateTimeParseException e)
+            {
+                if (!javaTimeFailed) fail("Expected " + text + " to be parsed, but it was rejected");
+            }
+        }
+    }
+
+    private static void assertFormatMatches(long epochMillis, ZoneId zone)
+    {
+        final String expected = DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(Instant.ofEpochMilli(epochMillis).atZone(zone));
+        assertEquals(zone + " " + epochMillis, expected, Rfc3339Codec.format(epochMillis, zone));
+    }
+
+    private static void assertParseMatches(String text)
+    {
+        final long expected = ZonedDateTime.parse(text, DateTimeFormatter.ISO_OFFSET_DATE_TIME).toInstant().toEpochMilli();
+        assertEquals(text, expected, Rfc3339Codec.parseEpochMillis(text));
+    }
+}